@@ -23,9 +23,11 @@ package loon;
 import java.io.OutputStream;
 
 import loon.action.ActionControl;
+import loon.canvas.Canvas;
 import loon.canvas.Image;
 import loon.canvas.LColor;
 import loon.font.IFont;
+import loon.opengl.DirtyRegion;
 import loon.opengl.GLEx;
 import loon.utils.ArrayByte;
 import loon.utils.ArrayByteOutput;
@@ -245,6 +247,10 @@ public final class Display extends BaseIO implements LRelease {
 
 	private PaintAllPort _paintAllPort;
 
+	private DirtyRegion _dirtyRegion;
+
+	private final int[] _dirtyClip = new int[4];
+
 	private PaintPort _paintPort;
 
 	private UpdatePort _updatePort;
@@ -462,15 +468,18 @@ public final class Display extends BaseIO implements LRelease {
 		if (!_process.next()) {
 			return;
 		}
+		if (_setting.dirtyRegionRefresh) {
+			if (drawDirty(clock)) {
+				return;
+			}
+		} else if (_dirtyRegion != null) {
+			_glEx.setDirtyRegion(null);
+			_dirtyRegion = null;
+		}
 		try {
 			_glEx.saveTx();
 
-			// 在某些情况下,比如存在全局背景时，因为旧有画面已被遮挡，不必全局刷新Screen画面,应禁止全局刷新画布内容
-			if (_setting.allScreenRefresh) {
-				_glEx.reset(_cred, _cgreen, _cblue, _calpha);
-			} else {
-				_glEx.resetConfig();
-			}
+			resetCanvas();
 
 			_glEx.begin();
 
@@ -482,7 +491,7 @@ public final class Display extends BaseIO implements LRelease {
 			_process.draw(_glEx);
 
 			// 渲染debug信息
-			drawDebug(_glEx, _setting, clock.unscaledTimeSinceLastUpdate);
+			drawDebug(_glEx, _setting, clock.unscaledTimeSinceLastUpdate, true);
 
 			_process.drawEmulator(_glEx);
 			// 最后渲染的内容
@@ -490,29 +499,7 @@ public final class Display extends BaseIO implements LRelease {
 
 			_process.unload();
 
-			// 如果存在屏幕录像设置
-			if (_videoScreenToGif && !LSystem.PAUSED && _gifEncoder != null) {
-				if (_videoDelay.action(clock)) {
-					Image tmp = GLUtils.getScreenshot();
-					Image image = null;
-					if (LSystem.isDesktop()) {
-						image = tmp;
-					} else {
-						// 因为内存和速度关系,考虑到全平台录制,因此默认只录屏幕大小的一半(否则在手机上绝对抗不了5分钟以上……)
-						image = Image.getResize(tmp, MathUtils.iceil(_process.getWidth() * 0.5f),
-								MathUtils.iceil(_process.getHeight() * 0.5f));
-					}
-					_gifEncoder.addFrame(image);
-					if (tmp != null) {
-						tmp.close();
-						tmp = null;
-					}
-					if (image != null) {
-						image.close();
-						image = null;
-					}
-				}
-			}
+			captureVideo(clock);
 
 		} finally {
 			_glEx.end();
@@ -522,6 +509,154 @@ public final class Display extends BaseIO implements LRelease {
 		}
 	}
 
+	private void resetCanvas() {
+		// 在某些情况下,比如存在全局背景时，因为旧有画面已被遮挡，不必全局刷新Screen画面,应禁止全局刷新画布内容
+		if (_setting.allScreenRefresh) {
+			_glEx.reset(_cred, _cgreen, _cblue, _calpha);
+		} else {
+			_glEx.resetConfig();
+		}
+	}
+
+	/**
+	 * 以脏矩形方式渲染一帧,先在预测的区域内完整执行一次渲染并记录全部绘制,若记录到未预测的画面变化,再在这些区域内补绘.
+	 * 每次只以一个矩形为裁剪区,Java2D在矩形裁剪下才能直接复制像素.总的渲染次数由DirtyRegion.setMaxPasses限制,超过时全屏重绘一次
+	 *
+	 * @param clock
+	 * @return 画布不支持设备裁剪时返回false
+	 */
+	private boolean drawDirty(final LTimerContext clock) {
+		final Canvas canvas = _glEx.getCanvas();
+		if (_dirtyRegion == null) {
+			if (!canvas.setDeviceClip(null, 0)) {
+				return false;
+			}
+			_dirtyRegion = new DirtyRegion();
+			_glEx.setDirtyRegion(_dirtyRegion);
+		}
+		try {
+			final DirtyRegion.Rects predicted = _dirtyRegion.begin(MathUtils.iceil(canvas.getWidth()),
+					MathUtils.iceil(canvas.getHeight()));
+			boolean missed = false;
+			try {
+				// 没有预测区域时裁剪区为空,只记录绘制而不改变任何像素
+				canvas.setDeviceClip(predicted.data(), MathUtils.min(1, predicted.count()));
+				_glEx.saveTx();
+				resetCanvas();
+				_glEx.begin();
+				_process.drawFrist(_glEx);
+				_process.load();
+				_process.runTimer(clock);
+				_process.draw(_glEx);
+				drawDebug(_glEx, _setting, clock.unscaledTimeSinceLastUpdate, true);
+				_process.drawEmulator(_glEx);
+				_process.drawLast(_glEx);
+				_process.unload();
+			} finally {
+				_glEx.end();
+				_glEx.restoreTx();
+				missed = _dirtyRegion.end();
+			}
+			final DirtyRegion.Rects rects = _dirtyRegion.getMissed();
+			// 全屏补绘已包含其余的预测区域
+			if (!rects.isFull()) {
+				for (int i = 1; i < predicted.count(); i++) {
+					redrawDirty(canvas, predicted.data(), i, clock);
+				}
+			}
+			if (missed) {
+				for (int i = 0; i < rects.count(); i++) {
+					redrawDirty(canvas, rects.data(), i, clock);
+				}
+			}
+			captureVideo(clock);
+		} finally {
+			canvas.setDeviceClip(null, 0);
+			_process.resetTouch();
+			GraphicsDrawCall.clear();
+		}
+		return true;
+	}
+
+	/**
+	 * 在一个脏矩形内补绘,只执行渲染部分,不再重复更新
+	 */
+	private void redrawDirty(final Canvas canvas, final int[] rects, final int index, final LTimerContext clock) {
+		System.arraycopy(rects, index * 4, _dirtyClip, 0, 4);
+		try {
+			canvas.setDeviceClip(_dirtyClip, 1);
+			_glEx.saveTx();
+			resetCanvas();
+			_glEx.begin();
+			_process.drawFrist(_glEx);
+			_process.draw(_glEx);
+			drawDebug(_glEx, _setting, clock.unscaledTimeSinceLastUpdate, false);
+			_process.drawEmulator(_glEx);
+			_process.drawLast(_glEx);
+		} finally {
+			_glEx.end();
+			_glEx.restoreTx();
+		}
+	}
+
+	private void captureVideo(final LTimerContext clock) {
+		// 如果存在屏幕录像设置
+		if (_videoScreenToGif && !LSystem.PAUSED && _gifEncoder != null) {
+			if (_videoDelay.action(clock)) {
+				Image tmp = GLUtils.getScreenshot();
+				Image image = null;
+				if (LSystem.isDesktop()) {
+					image = tmp;
+				} else {
+					// 因为内存和速度关系,考虑到全平台录制,因此默认只录屏幕大小的一半(否则在手机上绝对抗不了5分钟以上……)
+					image = Image.getResize(tmp, MathUtils.iceil(_process.getWidth() * 0.5f),
+							MathUtils.iceil(_process.getHeight() * 0.5f));
+				}
+				_gifEncoder.addFrame(image);
+				if (tmp != null) {
+					tmp.close();
+					tmp = null;
+				}
+				if (image != null) {
+					image.close();
+					image = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 脏矩形刷新模式下的记录器,未开启LSetting.dirtyRegionRefresh或画布不支持时为null,可从中获得每帧的重绘统计
+	 *
+	 * @return
+	 */
+	public DirtyRegion getDirtyRegion() {
+		return _dirtyRegion;
+	}
+
+	/**
+	 * 脏矩形刷新模式下,报告下一帧需要重绘的区域(用于直接修改纹理像素等GLEx无法察觉的变化)
+	 *
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public Display invalidate(final float x, final float y, final float width, final float height) {
+		if (_dirtyRegion != null) {
+			_dirtyRegion.invalidate(x, y, width, height);
+		}
+		return this;
+	}
+
+	public Display invalidateAll() {
+		if (_dirtyRegion != null) {
+			_dirtyRegion.invalidateAll();
+		}
+		return this;
+	}
+
 	protected void onFrame() {
 		if (_closed) {
 			return;
@@ -595,8 +730,9 @@ public final class Display extends BaseIO implements LRelease {
 	 * @param gl
 	 * @param setting
 	 * @param delta
+	 * @param tick
 	 */
-	private final void drawDebug(final GLEx gl, final LSetting setting, final long delta) {
+	private final void drawDebug(final GLEx gl, final LSetting setting, final long delta, final boolean tick) {
 		if (_closed) {
 			return;
 		}
@@ -604,10 +740,12 @@ public final class Display extends BaseIO implements LRelease {
 
 		if (debug || setting.isFPS || setting.isMemory || setting.isSprites || setting.isDrawCall) {
 
-			this._frameCount++;
-			this._frameDelta += delta;
+			if (tick) {
+				this._frameCount++;
+				this._frameDelta += delta;
+			}
 
-			if (_frameCount % 60 == 0 && _frameDelta != 0) {
+			if (tick && _frameCount % 60 == 0 && _frameDelta != 0) {
 				final int dstFPS = setting.fps;
 				final int newFps = MathUtils
 						.round((_sinceRefreshMaxInterval * _frameCount * setting.getScaleFPS()) / _frameDelta) + 1;
@@ -843,6 +981,7 @@ public final class Display extends BaseIO implements LRelease {
 		if (_glEx != null) {
 			_glEx.resize();
 		}
+		invalidateAll();
 		return this;
 	}
 
@@ -167,6 +167,15 @@ public class LSetting {
 	 */
 	public boolean allScreenRefresh = true;
 
+	/**
+	 * 此项为true时采用脏矩形刷新,每帧只重绘画面发生变化的区域(需要画布支持设备裁剪,例如JavaSE在doubleBuffer模式下),不支持时自动改为全屏刷新.
+	 *
+	 * 开启后一帧内Screen的draw可能以不同的裁剪区执行多次(次数上限见DirtyRegion.setMaxPasses),只有第一次会执行alter等更新,
+	 * 所以绘制代码必须没有副作用:不能在draw中移动对象,推进动画,计数或修改任何状态,否则各裁剪区内的画面会不一致.
+	 * 直接修改纹理像素等GLEx无法察觉的变化需要调用Display.invalidate报告
+	 */
+	public boolean dirtyRegionRefresh = false;
+
 	/**
 	 * 此项为true时,画面翻转会触发screen的resize函数
 	 */
@@ -349,6 +358,7 @@ public class LSetting {
 		this.lockAllTouchEvent = setting.lockAllTouchEvent;
 		this.convertImagesOnLoad = setting.convertImagesOnLoad;
 		this.allScreenRefresh = setting.allScreenRefresh;
+		this.dirtyRegionRefresh = setting.dirtyRegionRefresh;
 		this.allowScreenResize = setting.allowScreenResize;
 		this.pathPrefix = setting.pathPrefix;
 		this.args = setting.args;
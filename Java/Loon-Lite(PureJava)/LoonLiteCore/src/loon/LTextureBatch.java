@@ -121,6 +121,8 @@ public final class LTextureBatch implements LRelease {
 
 	private int _drawCallCount;
 
+	private long _commitCount;
+
 	private MeshData _meshdata;
 
 	private String _source;
@@ -271,7 +273,10 @@ public final class LTextureBatch implements LRelease {
 			}
 			Canvas canvas = gl.getCanvas();
 			canvas.setTransform(gl.tx());
-			canvas.draw(_buffer.getImage(), x, y);
+			final Image image = _buffer.getImage();
+			canvas.draw(image, x, y);
+			// 缓冲区的内容随时可能改变,每次提交都视为画面变化
+			gl.recordDirty(++_commitCount, x, y, image.getWidth(), image.getHeight());
 			if (_updateBlend) {
 				gl.setBlendMode(curBlend);
 			}
@@ -324,6 +329,7 @@ public final class LTextureBatch implements LRelease {
 			Canvas canvas = gl.getCanvas();
 			canvas.setTransform(display);
 			canvas.draw(_buffer.snapshot(), x, y);
+			gl.recordDirty(++_commitCount, display, x, y, width, height);
 			GraphicsDrawCall.add(1);
 		}
 		return this;
@@ -619,6 +625,7 @@ public final class LTextureBatch implements LRelease {
 			Canvas canvas = gl.getCanvas();
 			canvas.setTransform(display);
 			canvas.draw(cache._image, x, y);
+			gl.recordDirty(System.identityHashCode(cache._image), display, x, y, width, height);
 			GraphicsDrawCall.add(1);
 		}
 		return this;
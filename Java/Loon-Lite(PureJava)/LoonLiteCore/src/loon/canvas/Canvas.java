@@ -154,6 +154,17 @@ public abstract class Canvas implements LRelease {
 
 	public abstract Canvas resetClip();
 
+	/**
+	 * 设置设备坐标下的基础裁剪区域(每4个int为x0,y0,x1,y1),此后包括clear与resetClip在内的全部绘制都被限制在其中,rects为null时取消
+	 *
+	 * @param rects
+	 * @param count
+	 * @return 当前平台不支持时返回false
+	 */
+	public boolean setDeviceClip(int[] rects, int count) {
+		return false;
+	}
+
 	public abstract Canvas clear();
 
 	public abstract Canvas clear(LColor color);
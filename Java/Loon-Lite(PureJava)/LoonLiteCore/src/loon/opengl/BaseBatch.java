@@ -24,9 +24,27 @@ import loon.LTexture;
 import loon.canvas.Canvas;
 import loon.canvas.LColor;
 import loon.geom.Affine2f;
+import loon.utils.MathUtils;
 
 public abstract class BaseBatch extends LTextureBind {
 
+	protected DirtyRegion dirtyRegion;
+
+	/**
+	 * 设置脏矩形记录器,此后每个四边形都以其设备坐标包围盒被记录
+	 *
+	 * @param region
+	 * @return
+	 */
+	public BaseBatch setDirtyRegion(DirtyRegion region) {
+		this.dirtyRegion = region;
+		return this;
+	}
+
+	public DirtyRegion getDirtyRegion() {
+		return dirtyRegion;
+	}
+
 	public abstract BaseBatch setBlendMode(int b);
 
 	public abstract int getBlendMode();
@@ -73,9 +91,40 @@ public abstract class BaseBatch extends LTextureBind {
 
 	public void addQuad(int tint, Affine2f xf, float left, float top, float right, float bottom, float sl, float st,
 			float sr, float sb) {
+		if (dirtyRegion != null && dirtyRegion.isRecording()) {
+			recordQuad(tint, xf, left, top, right, bottom, sl, st, sr, sb);
+		}
 		addQuad(tint, xf.m00, xf.m01, xf.m10, xf.m11, xf.tx, xf.ty, left, top, right, bottom, sl, st, sr, sb);
 	}
 
+	private void recordQuad(int tint, Affine2f xf, float left, float top, float right, float bottom, float sl,
+			float st, float sr, float sb) {
+		final float ax = xf.m00 * left + xf.m10 * top + xf.tx, ay = xf.m01 * left + xf.m11 * top + xf.ty;
+		final float bx = xf.m00 * right + xf.m10 * top + xf.tx, by = xf.m01 * right + xf.m11 * top + xf.ty;
+		final float cx = xf.m00 * right + xf.m10 * bottom + xf.tx, cy = xf.m01 * right + xf.m11 * bottom + xf.ty;
+		final float dx = xf.m00 * left + xf.m10 * bottom + xf.tx, dy = xf.m01 * left + xf.m11 * bottom + xf.ty;
+		long key = DirtyRegion.hash(0x51L, (long) tint);
+		key = DirtyRegion.hash(key, (long) getBlendMode());
+		key = DirtyRegion.hash(key, (long) curTexId);
+		key = DirtyRegion.hash(key, (long) System.identityHashCode(lastTexture));
+		key = DirtyRegion.hash(key, ax);
+		key = DirtyRegion.hash(key, ay);
+		key = DirtyRegion.hash(key, cx);
+		key = DirtyRegion.hash(key, cy);
+		key = DirtyRegion.hash(key, xf.m00);
+		key = DirtyRegion.hash(key, xf.m01);
+		key = DirtyRegion.hash(key, xf.m10);
+		key = DirtyRegion.hash(key, xf.m11);
+		key = DirtyRegion.hash(key, sl);
+		key = DirtyRegion.hash(key, st);
+		key = DirtyRegion.hash(key, sr);
+		key = DirtyRegion.hash(key, sb);
+		dirtyRegion.record(key, MathUtils.min(MathUtils.min(ax, bx), MathUtils.min(cx, dx)),
+				MathUtils.min(MathUtils.min(ay, by), MathUtils.min(cy, dy)),
+				MathUtils.max(MathUtils.max(ax, bx), MathUtils.max(cx, dx)),
+				MathUtils.max(MathUtils.max(ay, by), MathUtils.max(cy, dy)));
+	}
+
 	public abstract void addQuad(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float left,
 			float top, float right, float bottom, float sl, float st, float sr, float sb);
 
@@ -0,0 +1,589 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.utils.MathUtils;
+
+/**
+ * 脏矩形记录器,用于画布渲染时只重绘画面发生变化的区域.
+ *
+ * GLEx与BaseBatch的每次绘制都以设备坐标包围盒与绘制参数的签名记录在此,一帧结束时与上一帧的记录比较,新增,消失或前后顺序改变的绘制调用的包围盒即为本帧的损坏区域.
+ * 绘制前通过invalidate报告的区域会作为预测的重绘区域,在本帧首次绘制时就被重绘;未被预测到的损坏区域需要再绘制一次.
+ * 全部区域以x0,y0,x1,y1四个int一组保存,合并后最多maxRects个,总面积超过fullRatio时按全屏处理.
+ * 每个矩形都要完整执行一次渲染,所以一帧需要的绘制次数超过maxPasses时也按全屏处理,只再绘制一次.
+ */
+public class DirtyRegion {
+
+	public static final int DEFAULT_MAX_RECTS = 8;
+
+	public static final float DEFAULT_FULL_RATIO = 0.6f;
+
+	public static final int DEFAULT_MAX_PASSES = 6;
+
+	// 抗锯齿与取整带来的边缘扩展
+	private static final int PADDING = 2;
+
+	/**
+	 * 合并后的矩形集合
+	 */
+	public static class Rects {
+
+		private int[] _data = new int[4 * (DEFAULT_MAX_RECTS + 1)];
+
+		private int _count;
+
+		private boolean _full;
+
+		public int count() {
+			return _count;
+		}
+
+		public int[] data() {
+			return _data;
+		}
+
+		public boolean isEmpty() {
+			return _count == 0;
+		}
+
+		public boolean isFull() {
+			return _full;
+		}
+
+		public long area() {
+			long area = 0;
+			for (int i = 0; i < _count; i++) {
+				final int o = i * 4;
+				area += (long) (_data[o + 2] - _data[o]) * (_data[o + 3] - _data[o + 1]);
+			}
+			return area;
+		}
+
+		public boolean contains(int x0, int y0, int x1, int y1) {
+			for (int i = 0; i < _count; i++) {
+				final int o = i * 4;
+				if (_data[o] <= x0 && _data[o + 1] <= y0 && _data[o + 2] >= x1 && _data[o + 3] >= y1) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void clear() {
+			_count = 0;
+			_full = false;
+		}
+
+		void set(Rects other) {
+			if (_data.length < other._data.length) {
+				_data = new int[other._data.length];
+			}
+			System.arraycopy(other._data, 0, _data, 0, other._count * 4);
+			_count = other._count;
+			_full = other._full;
+		}
+
+		void full(int width, int height) {
+			_data[0] = 0;
+			_data[1] = 0;
+			_data[2] = width;
+			_data[3] = height;
+			_count = 1;
+			_full = true;
+		}
+
+		void add(int x0, int y0, int x1, int y1, int width, int height, int maxRects, float fullRatio) {
+			if (_full) {
+				return;
+			}
+			x0 = MathUtils.max(0, x0);
+			y0 = MathUtils.max(0, y0);
+			x1 = MathUtils.min(width, x1);
+			y1 = MathUtils.min(height, y1);
+			if (x0 >= x1 || y0 >= y1) {
+				return;
+			}
+			insert(x0, y0, x1, y1);
+			while (_count > maxRects) {
+				mergeCheapest();
+			}
+			if (area() > (long) (fullRatio * width * height)) {
+				full(width, height);
+			}
+		}
+
+		/**
+		 * 加入一个矩形,与已有矩形相交或相邻时合并,保证集合中的矩形互不重叠
+		 */
+		private void insert(int x0, int y0, int x1, int y1) {
+			for (int i = 0; i < _count;) {
+				final int o = i * 4;
+				if (_data[o] <= x1 && x0 <= _data[o + 2] && _data[o + 1] <= y1 && y0 <= _data[o + 3]) {
+					x0 = MathUtils.min(x0, _data[o]);
+					y0 = MathUtils.min(y0, _data[o + 1]);
+					x1 = MathUtils.max(x1, _data[o + 2]);
+					y1 = MathUtils.max(y1, _data[o + 3]);
+					remove(i);
+					i = 0;
+				} else {
+					i++;
+				}
+			}
+			if (_data.length < (_count + 1) * 4) {
+				final int[] data = new int[(_count + 1) * 8];
+				System.arraycopy(_data, 0, data, 0, _count * 4);
+				_data = data;
+			}
+			final int o = _count * 4;
+			_data[o] = x0;
+			_data[o + 1] = y0;
+			_data[o + 2] = x1;
+			_data[o + 3] = y1;
+			_count++;
+		}
+
+		private void remove(int i) {
+			_count--;
+			if (i != _count) {
+				System.arraycopy(_data, _count * 4, _data, i * 4, 4);
+			}
+		}
+
+		private void mergeCheapest() {
+			int bestA = 0, bestB = 1;
+			long best = Long.MAX_VALUE;
+			for (int a = 0; a < _count; a++) {
+				final int oa = a * 4;
+				final long areaA = (long) (_data[oa + 2] - _data[oa]) * (_data[oa + 3] - _data[oa + 1]);
+				for (int b = a + 1; b < _count; b++) {
+					final int ob = b * 4;
+					final long areaB = (long) (_data[ob + 2] - _data[ob]) * (_data[ob + 3] - _data[ob + 1]);
+					final long union = (long) (MathUtils.max(_data[oa + 2], _data[ob + 2])
+							- MathUtils.min(_data[oa], _data[ob]))
+							* (MathUtils.max(_data[oa + 3], _data[ob + 3]) - MathUtils.min(_data[oa + 1], _data[ob + 1]));
+					final long cost = union - areaA - areaB;
+					if (cost < best) {
+						best = cost;
+						bestA = a;
+						bestB = b;
+					}
+				}
+			}
+			final int oa = bestA * 4, ob = bestB * 4;
+			final int x0 = MathUtils.min(_data[oa], _data[ob]);
+			final int y0 = MathUtils.min(_data[oa + 1], _data[ob + 1]);
+			final int x1 = MathUtils.max(_data[oa + 2], _data[ob + 2]);
+			final int y1 = MathUtils.max(_data[oa + 3], _data[ob + 3]);
+			remove(bestB);
+			remove(bestA);
+			// 合并后的矩形可能覆盖其他矩形,重新插入
+			insert(x0, y0, x1, y1);
+		}
+	}
+
+	private long[] _keys = new long[128];
+
+	private int[] _bounds = new int[512];
+
+	private int _count;
+
+	private long[] _lastKeys = new long[128];
+
+	private int[] _lastBounds = new int[512];
+
+	private int _lastCount;
+
+	private int[] _heads = new int[0];
+
+	private int[] _next = new int[128];
+
+	private boolean[] _matched = new boolean[128];
+
+	private final Rects _pending = new Rects();
+
+	private final Rects _invalidated = new Rects();
+
+	private final Rects _predicted = new Rects();
+
+	private final Rects _damage = new Rects();
+
+	private final Rects _missed = new Rects();
+
+	private int _width, _height;
+
+	private int _maxRects = DEFAULT_MAX_RECTS;
+
+	private float _fullRatio = DEFAULT_FULL_RATIO;
+
+	private int _maxPasses = DEFAULT_MAX_PASSES;
+
+	private boolean _fullPending = true;
+
+	private boolean _recording;
+
+	private long _frames, _skippedFrames, _fullFrames, _missedFrames;
+
+	private long _lastPixels, _totalPixels;
+
+	public DirtyRegion setMaxRects(int max) {
+		this._maxRects = MathUtils.max(1, max);
+		return this;
+	}
+
+	public int getMaxRects() {
+		return _maxRects;
+	}
+
+	/**
+	 * 损坏区域占画面的比例超过此值时直接全屏重绘
+	 *
+	 * @param ratio
+	 * @return
+	 */
+	public DirtyRegion setFullRatio(float ratio) {
+		this._fullRatio = ratio;
+		return this;
+	}
+
+	public float getFullRatio() {
+		return _fullRatio;
+	}
+
+	/**
+	 * 一帧内最多执行几次渲染(首次绘制与每个补绘矩形各一次),超过时改为全屏重绘
+	 *
+	 * @param max
+	 * @return
+	 */
+	public DirtyRegion setMaxPasses(int max) {
+		this._maxPasses = MathUtils.max(1, max);
+		return this;
+	}
+
+	public int getMaxPasses() {
+		return _maxPasses;
+	}
+
+	/**
+	 * 报告需要重绘的设备坐标区域,用于GLEx无法察觉的变化(例如直接修改了纹理像素).在绘制前调用时作为下一帧的预测区域,
+	 * 在一帧的记录过程中(例如Screen的alter里)调用时,未被本帧预测区域覆盖的部分会在本帧补绘
+	 *
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public DirtyRegion invalidate(float x, float y, float width, float height) {
+		// 尚未开始第一帧时本来就会全屏重绘
+		if (_width == 0 || _height == 0) {
+			return this;
+		}
+		(_recording ? _invalidated : _pending).add(MathUtils.ifloor(x) - PADDING, MathUtils.ifloor(y) - PADDING,
+				MathUtils.iceil(x + width) + PADDING, MathUtils.iceil(y + height) + PADDING, _width, _height,
+				_maxRects, _fullRatio);
+		return this;
+	}
+
+	/**
+	 * 下一帧全屏重绘
+	 *
+	 * @return
+	 */
+	public DirtyRegion invalidateAll() {
+		_fullPending = true;
+		return this;
+	}
+
+	/**
+	 * 开始一帧,此后GLEx的绘制调用会被记录,返回本帧首次绘制应重绘的区域
+	 *
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public Rects begin(int width, int height) {
+		if (width != _width || height != _height) {
+			_width = width;
+			_height = height;
+			_fullPending = true;
+		}
+		if (_fullPending) {
+			_predicted.full(width, height);
+			_fullPending = false;
+		} else {
+			_predicted.clear();
+			final int[] data = _pending._data;
+			for (int i = 0; i < _pending._count; i++) {
+				final int o = i * 4;
+				_predicted.add(data[o], data[o + 1], data[o + 2], data[o + 3], width, height, _maxRects, _fullRatio);
+			}
+			if (_predicted._count > _maxPasses) {
+				_predicted.full(width, height);
+			}
+		}
+		_pending.clear();
+		_invalidated.clear();
+		_count = 0;
+		_recording = true;
+		return _predicted;
+	}
+
+	public boolean isRecording() {
+		return _recording;
+	}
+
+	public void setRecording(boolean recording) {
+		this._recording = recording;
+	}
+
+	/**
+	 * 记录一次绘制,key为绘制参数的签名,坐标为设备坐标下的包围盒
+	 *
+	 * @param key
+	 * @param x0
+	 * @param y0
+	 * @param x1
+	 * @param y1
+	 */
+	public void record(long key, float x0, float y0, float x1, float y1) {
+		if (!_recording) {
+			return;
+		}
+		final int ix0 = MathUtils.ifloor(x0) - PADDING;
+		final int iy0 = MathUtils.ifloor(y0) - PADDING;
+		final int ix1 = MathUtils.iceil(x1) + PADDING;
+		final int iy1 = MathUtils.iceil(y1) + PADDING;
+		if (ix1 <= 0 || iy1 <= 0 || ix0 >= _width || iy0 >= _height) {
+			return;
+		}
+		if (_count == _keys.length) {
+			final long[] keys = new long[_count * 2];
+			System.arraycopy(_keys, 0, keys, 0, _count);
+			_keys = keys;
+			final int[] bounds = new int[_count * 8];
+			System.arraycopy(_bounds, 0, bounds, 0, _count * 4);
+			_bounds = bounds;
+		}
+		key = hash(hash(hash(hash(key, ix0), iy0), ix1), iy1);
+		_keys[_count] = key;
+		final int o = _count * 4;
+		_bounds[o] = ix0;
+		_bounds[o + 1] = iy0;
+		_bounds[o + 2] = ix1;
+		_bounds[o + 3] = iy1;
+		_count++;
+	}
+
+	/**
+	 * 结束一帧,比较两帧的绘制记录得到损坏区域
+	 *
+	 * @return 存在未被预测到的损坏区域时返回true,此时应以getMissed()中的每个矩形为裁剪区再绘制一次,getMissed()为全屏时只需全屏重绘一次
+	 */
+	public boolean end() {
+		_recording = false;
+		_damage.clear();
+		_missed.clear();
+		if (!_predicted.isFull()) {
+			diff();
+			for (int i = 0; i < _invalidated._count; i++) {
+				damage(_invalidated._data, i);
+			}
+			final int[] data = _damage._data;
+			for (int i = 0; i < _damage._count; i++) {
+				final int o = i * 4;
+				if (!_predicted.contains(data[o], data[o + 1], data[o + 2], data[o + 3])) {
+					_missed.add(data[o], data[o + 1], data[o + 2], data[o + 3], _width, _height, _maxRects,
+							_fullRatio);
+				}
+			}
+			// 补绘次数过多时,一次全屏重绘比逐个矩形重复执行渲染更快
+			if (!_missed.isEmpty() && MathUtils.max(1, _predicted._count) + _missed._count > _maxPasses) {
+				_missed.full(_width, _height);
+			}
+		}
+		long[] keys = _lastKeys;
+		_lastKeys = _keys;
+		_keys = keys;
+		int[] bounds = _lastBounds;
+		_lastBounds = _bounds;
+		_bounds = bounds;
+		_lastCount = _count;
+		_count = 0;
+		_invalidated.clear();
+		_frames++;
+		if (_predicted.isFull() || _missed.isFull()) {
+			_fullFrames++;
+		} else if (_predicted.isEmpty() && _missed.isEmpty()) {
+			_skippedFrames++;
+		}
+		if (!_missed.isEmpty()) {
+			_missedFrames++;
+		}
+		_lastPixels = _missed.isFull() ? _missed.area() : _predicted.area() + _missed.area();
+		_totalPixels += _lastPixels;
+		return !_missed.isEmpty();
+	}
+
+	private void diff() {
+		final int lastCount = _lastCount;
+		int size = 16;
+		while (size < lastCount * 2) {
+			size <<= 1;
+		}
+		if (_heads.length != size) {
+			_heads = new int[size];
+		}
+		for (int i = 0; i < size; i++) {
+			_heads[i] = -1;
+		}
+		if (_next.length < lastCount) {
+			_next = new int[_lastKeys.length];
+			_matched = new boolean[_lastKeys.length];
+		}
+		final int mask = size - 1;
+		// 倒序插入,链表内的下标保持递增
+		for (int i = lastCount - 1; i >= 0; i--) {
+			final int slot = (int) (_lastKeys[i] ^ (_lastKeys[i] >>> 32)) & mask;
+			_next[i] = _heads[slot];
+			_heads[slot] = i;
+			_matched[i] = false;
+		}
+		int order = -1;
+		for (int i = 0; i < _count; i++) {
+			final long key = _keys[i];
+			int p = _heads[(int) (key ^ (key >>> 32)) & mask];
+			while (p != -1 && (_matched[p] || _lastKeys[p] != key)) {
+				p = _next[p];
+			}
+			if (p == -1) {
+				damage(_bounds, i);
+			} else {
+				_matched[p] = true;
+				// 与其他绘制的先后顺序改变时,重叠部分的结果也会改变
+				if (p < order) {
+					damage(_bounds, i);
+				} else {
+					order = p;
+				}
+			}
+		}
+		for (int i = 0; i < lastCount; i++) {
+			if (!_matched[i]) {
+				damage(_lastBounds, i);
+			}
+		}
+	}
+
+	private void damage(int[] bounds, int i) {
+		final int o = i * 4;
+		_damage.add(bounds[o], bounds[o + 1], bounds[o + 2], bounds[o + 3], _width, _height, _maxRects, _fullRatio);
+	}
+
+	public Rects getPredicted() {
+		return _predicted;
+	}
+
+	public Rects getDamage() {
+		return _damage;
+	}
+
+	public Rects getMissed() {
+		return _missed;
+	}
+
+	public int getRecordCount() {
+		return _lastCount;
+	}
+
+	public long getFrames() {
+		return _frames;
+	}
+
+	/**
+	 * 没有任何像素被重绘的帧数
+	 *
+	 * @return
+	 */
+	public long getSkippedFrames() {
+		return _skippedFrames;
+	}
+
+	public long getFullFrames() {
+		return _fullFrames;
+	}
+
+	/**
+	 * 因存在未预测的损坏区域而绘制了两次的帧数
+	 *
+	 * @return
+	 */
+	public long getMissedFrames() {
+		return _missedFrames;
+	}
+
+	/**
+	 * 上一帧重绘的像素数
+	 *
+	 * @return
+	 */
+	public long getLastPixels() {
+		return _lastPixels;
+	}
+
+	public long getTotalPixels() {
+		return _totalPixels;
+	}
+
+	/**
+	 * 平均每帧重绘像素占画面的比例
+	 *
+	 * @return
+	 */
+	public float getAverageRatio() {
+		if (_frames == 0 || _width == 0 || _height == 0) {
+			return 0f;
+		}
+		return (float) ((double) _totalPixels / _frames / ((double) _width * _height));
+	}
+
+	public DirtyRegion resetStats() {
+		_frames = _skippedFrames = _fullFrames = _missedFrames = 0;
+		_lastPixels = _totalPixels = 0;
+		return this;
+	}
+
+	public static long hash(long h, long v) {
+		h ^= v;
+		h *= 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	public static long hash(long h, float v) {
+		return hash(h, (long) Float.floatToIntBits(v));
+	}
+
+	@Override
+	public String toString() {
+		return "DirtyRegion[frames=" + _frames + ", skipped=" + _skippedFrames + ", full=" + _fullFrames
+				+ ", missed=" + _missedFrames + ", lastPixels=" + _lastPixels + ", avgRatio=" + getAverageRatio() + "]";
+	}
+}
@@ -134,6 +134,8 @@ public class GLEx implements LRelease {
 
 	private final Polygon _currentPolys = new Polygon();
 
+	private DirtyRegion _dirtyRegion;
+
 	public GLEx(Graphics gfx) {
 		this(gfx, createDefaultBatch(gfx.getCanvas()));
 	}
@@ -317,6 +319,102 @@ public class GLEx implements LRelease {
 		return lastTrans;
 	}
 
+	/**
+	 * 设置脏矩形记录器,设置后此GLEx与其batch的每次绘制都会被记录,以便只重绘画面变化的区域
+	 *
+	 * @param region
+	 * @return
+	 */
+	public GLEx setDirtyRegion(DirtyRegion region) {
+		this._dirtyRegion = region;
+		if (batch != null) {
+			batch.setDirtyRegion(region);
+		}
+		return this;
+	}
+
+	public DirtyRegion getDirtyRegion() {
+		return _dirtyRegion;
+	}
+
+	/**
+	 * 报告一次不经过GLEx与batch直接在画布上进行的绘制,key为绘制内容的签名,区域为xf变换前的坐标
+	 *
+	 * @param key
+	 * @param xf
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public GLEx recordDirty(long key, Affine2f xf, float x, float y, float width, float height) {
+		final DirtyRegion region = _dirtyRegion;
+		if (region == null || !region.isRecording()) {
+			return this;
+		}
+		final float r = x + width, b = y + height;
+		final float ax = xf.m00 * x + xf.m10 * y + xf.tx, ay = xf.m01 * x + xf.m11 * y + xf.ty;
+		final float bx = xf.m00 * r + xf.m10 * y + xf.tx, by = xf.m01 * r + xf.m11 * y + xf.ty;
+		final float cx = xf.m00 * r + xf.m10 * b + xf.tx, cy = xf.m01 * r + xf.m11 * b + xf.ty;
+		final float dx = xf.m00 * x + xf.m10 * b + xf.tx, dy = xf.m01 * x + xf.m11 * b + xf.ty;
+		key = DirtyRegion.hash(key, xf.m00);
+		key = DirtyRegion.hash(key, xf.m01);
+		key = DirtyRegion.hash(key, xf.m10);
+		key = DirtyRegion.hash(key, xf.m11);
+		key = DirtyRegion.hash(key, xf.tx);
+		key = DirtyRegion.hash(key, xf.ty);
+		key = DirtyRegion.hash(key, (long) lastBrush.blend);
+		key = DirtyRegion.hash(key, lastBrush.lineWidth);
+		region.record(key, MathUtils.min(MathUtils.min(ax, bx), MathUtils.min(cx, dx)),
+				MathUtils.min(MathUtils.min(ay, by), MathUtils.min(cy, dy)),
+				MathUtils.max(MathUtils.max(ax, bx), MathUtils.max(cx, dx)),
+				MathUtils.max(MathUtils.max(ay, by), MathUtils.max(cy, dy)));
+		return this;
+	}
+
+	public GLEx recordDirty(long key, float x, float y, float width, float height) {
+		return recordDirty(key, tx(), x, y, width, height);
+	}
+
+	/**
+	 * 记录一次图形绘制,描边按线宽向外扩展
+	 */
+	private void damage(long kind, float x, float y, float width, float height, int color) {
+		if (_dirtyRegion == null || !_dirtyRegion.isRecording()) {
+			return;
+		}
+		long key = DirtyRegion.hash(kind, x);
+		key = DirtyRegion.hash(key, y);
+		key = DirtyRegion.hash(key, width);
+		key = DirtyRegion.hash(key, height);
+		key = DirtyRegion.hash(key, (long) color);
+		final float pad = lastBrush.lineWidth / 2f + 1f;
+		recordDirty(key, MathUtils.min(x, x + width) - pad, MathUtils.min(y, y + height) - pad,
+				MathUtils.abs(width) + pad * 2f, MathUtils.abs(height) + pad * 2f);
+	}
+
+	/**
+	 * 记录一次路径绘制,全部顶点参与签名
+	 */
+	private void damage(long kind, float[] xs, float[] ys, int size, float x, float y, int color) {
+		if (_dirtyRegion == null || !_dirtyRegion.isRecording() || size <= 0) {
+			return;
+		}
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		long key = kind;
+		for (int i = 0; i < size; i++) {
+			final float px = ys == null ? xs[i * 2] : xs[i];
+			final float py = ys == null ? xs[i * 2 + 1] : ys[i];
+			key = DirtyRegion.hash(DirtyRegion.hash(key, px), py);
+			minX = MathUtils.min(minX, px);
+			minY = MathUtils.min(minY, py);
+			maxX = MathUtils.max(maxX, px);
+			maxY = MathUtils.max(maxY, py);
+		}
+		damage(key, minX + x, minY + y, maxX - minX, maxY - minY, color);
+	}
+
 	public Affine2f mulAffine(Affine2f aff) {
 		return lastTrans.multiply(aff, lastTrans);
 	}
@@ -485,6 +583,8 @@ public class GLEx implements LRelease {
 		if (scissorDepth > 0) {
 			synchTransform();
 			getCanvas().clipRect(r.x() - getScaleTransX(), r.y() - getScaleTransY(), r.width(), r.height());
+			// 裁剪区改变时,新旧裁剪区内的内容都视为变化
+			damage(0xA1L, r.x() - getScaleTransX(), r.y() - getScaleTransY(), r.width(), r.height(), scissorDepth);
 		}
 		return !r.isEmpty();
 	}
@@ -509,6 +609,7 @@ public class GLEx implements LRelease {
 			resetClip();
 		} else {
 			getCanvas().clipRect(r.x() - getScaleTransX(), r.y() - getScaleTransY(), r.width(), r.height());
+			damage(0xA2L, r.x() - getScaleTransX(), r.y() - getScaleTransY(), r.width(), r.height(), scissorDepth);
 		}
 		return this;
 	}
@@ -525,6 +626,7 @@ public class GLEx implements LRelease {
 		synchTransform();
 		Canvas g = getCanvas();
 		g.clearRect(x1, y1, w1, h1, clear);
+		damage(0xC2L, x1, y1, w1, h1, clear.getARGB());
 		return this;
 	}
 
@@ -959,15 +1061,24 @@ public class GLEx implements LRelease {
 		Canvas canvas = gfx.getCanvas();
 		currentColorTemp.setColor(red, green, blue, alpha);
 		canvas.clear(currentColorTemp);
+		damageClear(currentColorTemp.getARGB());
 		return this;
 	}
 
 	public final GLEx clear(LColor color) {
 		Canvas canvas = gfx.getCanvas();
 		canvas.clear(color);
+		damageClear(color.getARGB());
 		return this;
 	}
 
+	private void damageClear(int color) {
+		if (_dirtyRegion != null && _dirtyRegion.isRecording()) {
+			final Canvas canvas = gfx.getCanvas();
+			_dirtyRegion.record(DirtyRegion.hash(0xC1L, (long) color), 0f, 0f, canvas.getWidth(), canvas.getHeight());
+		}
+	}
+
 	public GLEx rect(RectF.Range rect, float x, float y, Paint paint) {
 		return rect(rect.x(), rect.y(), rect.width(), rect.height(), x, y, paint);
 	}
@@ -1797,6 +1908,11 @@ public class GLEx implements LRelease {
 		g.setLineWidth(width);
 		g.setTransform(tx());
 		g.drawLine(x0, y0, x1, y1);
+		if (_dirtyRegion != null && _dirtyRegion.isRecording()) {
+			final float pad = width / 2f + 1f;
+			damage(DirtyRegion.hash(0xD1L, pad), MathUtils.min(x0, x1) - pad, MathUtils.min(y0, y1) - pad,
+					MathUtils.abs(x1 - x0) + pad * 2f, MathUtils.abs(y1 - y0) + pad * 2f, color);
+		}
 		g.setLineWidth(old);
 		g.setColor(c);
 		drawCallCount++;
@@ -1997,6 +2113,7 @@ public class GLEx implements LRelease {
 	}
 
 	private BaseBatch beginBatch(BaseBatch batch) {
+		batch.setDirtyRegion(_dirtyRegion);
 		batch.begin(gfx.width(), gfx.height(), gfx.flip());
 		return batch;
 	}
@@ -2124,6 +2241,7 @@ public class GLEx implements LRelease {
 		canvas.setStrokeColor(syncBrushColor());
 		canvas.strokePath(path);
 		canvas.setStrokeColor(color);
+		damage(0xD2L, points, null, points.length / 2, x, y, syncBrushColorInt());
 		drawCallCount++;
 		return this;
 	}
@@ -2182,6 +2300,7 @@ public class GLEx implements LRelease {
 		canvas.setStrokeColor(syncBrushColor());
 		canvas.strokePath(path);
 		canvas.setStrokeColor(color);
+		damage(0xD3L, points, null, size / 2, x, y, syncBrushColorInt());
 		drawCallCount++;
 		return this;
 	}
@@ -2246,6 +2365,7 @@ public class GLEx implements LRelease {
 		canvas.setColor(syncBrushColor());
 		canvas.fillPath(path);
 		canvas.setColor(color);
+		damage(0xF1L, points, null, points.length / 2, x, y, syncBrushColorInt());
 		drawCallCount++;
 		return this;
 	}
@@ -2503,6 +2623,7 @@ public class GLEx implements LRelease {
 		canvas.setStrokeColor(syncBrushColorInt());
 		canvas.drawOval(x, y, width, height);
 		canvas.setStrokeColor(color);
+		damage(0xD4L, x, y, width, height, syncBrushColorInt());
 		return this;
 	}
 
@@ -2520,6 +2641,7 @@ public class GLEx implements LRelease {
 		final Canvas canvas = getCanvas();
 		canvas.setTransform(tx());
 		canvas.drawOval(x, y, width, height, c);
+		damage(0xD4L, x, y, width, height, c.getARGB());
 		return this;
 	}
 
@@ -2539,6 +2661,7 @@ public class GLEx implements LRelease {
 		canvas.setFillColor(syncBrushColorInt());
 		canvas.fillOval(x1, y1, width, height);
 		canvas.setFillColor(color);
+		damage(0xF2L, x1, y1, width, height, syncBrushColorInt());
 		return this;
 	}
 
@@ -2546,6 +2669,7 @@ public class GLEx implements LRelease {
 		final Canvas canvas = getCanvas();
 		canvas.setTransform(tx());
 		canvas.fillOval(x1, y1, width, height, c);
+		damage(0xF2L, x1, y1, width, height, c.getARGB());
 		return this;
 	}
 
@@ -2832,6 +2956,7 @@ public class GLEx implements LRelease {
 		canvas.setTransform(tx());
 		canvas.drawPoint(x, y);
 		canvas.setColor(tmp);
+		damage(0xD5L, x, y, 1f, 1f, color);
 		drawCallCount++;
 		return this;
 	}
@@ -2855,6 +2980,7 @@ public class GLEx implements LRelease {
 		path.close();
 		canvas.strokePath(path);
 		canvas.setColor(tmp);
+		damage(0xD6L, x, y, size, 0f, 0f, syncBrushColorInt());
 		drawCallCount++;
 		return this;
 	}
@@ -2934,6 +3060,7 @@ public class GLEx implements LRelease {
 		canvas.setTransform(tx());
 		canvas.drawRect(x1, y1, x2, y2, syncBrushColor(color));
 		canvas.setColor(tmp);
+		damage(0xD7L, x1, y1, x2, y2, color);
 		drawCallCount++;
 		return this;
 	}
@@ -3071,6 +3198,7 @@ public class GLEx implements LRelease {
 		final Canvas canvas = gfx.getCanvas();
 		canvas.setTransform(tx());
 		canvas.fillRect(x1, y1, x2, y2, syncBrushColor(color));
+		damage(0xF3L, x1, y1, x2, y2, color);
 		drawCallCount++;
 		return this;
 	}
@@ -3105,6 +3233,7 @@ public class GLEx implements LRelease {
 		final Canvas canvas = getCanvas();
 		canvas.setTransform(tx());
 		canvas.drawArc(x1, y1, width, height, start, end, syncBrushColor());
+		damage(DirtyRegion.hash(DirtyRegion.hash(0xD8L, start), end), x1, y1, width, height, syncBrushColorInt());
 		return this;
 	}
 
@@ -3129,6 +3258,7 @@ public class GLEx implements LRelease {
 		canvas.setColor(syncBrushColor());
 		canvas.fillArc(x1, y1, width, height, start, -end);
 		canvas.setColor(color);
+		damage(DirtyRegion.hash(DirtyRegion.hash(0xF4L, start), end), x1, y1, width, height, syncBrushColorInt());
 		return this;
 	}
 
@@ -3158,6 +3288,7 @@ public class GLEx implements LRelease {
 		canvas.setColor(syncBrushColor());
 		canvas.drawRoundRect(x, y, width, height, radius);
 		canvas.setColor(color);
+		damage(DirtyRegion.hash(0xD9L, (long) radius), x, y, width, height, syncBrushColorInt());
 		return this;
 	}
 
@@ -3199,6 +3330,7 @@ public class GLEx implements LRelease {
 		canvas.setColor(syncBrushColor());
 		canvas.fillRoundRect(x, y, width, height, radius);
 		canvas.setColor(color);
+		damage(DirtyRegion.hash(0xF5L, (long) radius), x, y, width, height, syncBrushColorInt());
 		return this;
 	}
 
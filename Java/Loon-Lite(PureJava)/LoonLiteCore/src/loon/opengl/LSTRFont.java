@@ -212,6 +212,14 @@ public final class LSTRFont extends FontTrans implements IFont, LRelease {
 			Canvas canvas = gl.getCanvas();
 			canvas.setFont(font);
 			canvas.drawText(newMessage, x, y, c);
+			if (gl.getDirtyRegion() != null && gl.getDirtyRegion().isRecording()) {
+				final int size = font.getSize();
+				final int lines = StringUtils.charCount(newMessage, LSystem.LF) + 1;
+				long key = DirtyRegion.hash(newMessage.hashCode(), (long) c.getARGB());
+				key = DirtyRegion.hash(key, (long) System.identityHashCode(font));
+				gl.recordDirty(key, x - size, y - size, font.stringWidth(newMessage) + size * 2,
+						font.getHeight() * lines + size * 2);
+			}
 		} finally {
 			gl.setBlendMode(blend);
 			gl.setTint(old);
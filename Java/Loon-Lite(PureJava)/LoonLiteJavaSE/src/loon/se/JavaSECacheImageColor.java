@@ -21,71 +21,331 @@
 package loon.se;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 import loon.LRelease;
 import loon.LSystem;
-import loon.canvas.LColor;
-import loon.utils.IntMap;
 
+/**
+ * 图像混色缓存.
+ *
+ * 颜色按quantize步长取整后作为键,缓存按最近使用顺序淘汰,单个图像的缓存受maxEntries与maxBytes限制,全部图像的缓存总量受全局字节上限限制.
+ * 请求次数未达到admission的颜色视为临时颜色(例如淡入淡出时每帧都不同的颜色),只渲染到一张复用的临时图像中而不缓存.
+ *
+ * PS:get返回的图像只保证在下一次调用get之前有效(临时颜色共用同一张图像,会被下一次请求覆盖,已缓存的图像也可能被淘汰),
+ * 请立即绘制,不要保存引用或跨线程使用.
+ */
 public class JavaSECacheImageColor implements LRelease {
 
-	protected final IntMap<BufferedImage> _colorImageCaches;
+	public static final long DEFAULT_MAX_BYTES = 8L * 1024L * 1024L;
+
+	public static final long DEFAULT_GLOBAL_MAX_BYTES = 64L * 1024L * 1024L;
+
+	private static final AtomicLong _globalBytes = new AtomicLong();
+
+	private static volatile long _globalMaxBytes = DEFAULT_GLOBAL_MAX_BYTES;
+
+	// 超过此像素数时并行混色
+	private static final int PARALLEL_PIXELS = 256 * 256;
+
+	private static final int PARALLEL_ROWS = 32;
+
+	/**
+	 * 设置全部图像混色缓存共用的字节上限
+	 *
+	 * @param bytes
+	 */
+	public static void setGlobalMaxBytes(long bytes) {
+		_globalMaxBytes = bytes;
+	}
+
+	public static long getGlobalMaxBytes() {
+		return _globalMaxBytes;
+	}
+
+	/**
+	 * 全部图像混色缓存当前占用的字节数
+	 *
+	 * @return
+	 */
+	public static long getGlobalBytes() {
+		return _globalBytes.get();
+	}
+
+	protected final LinkedHashMap<Integer, BufferedImage> _colorImageCaches;
+
+	// 尚未缓存颜色的请求次数
+	protected final LinkedHashMap<Integer, Integer> _colorRequests;
 
 	protected final JavaSEImage _superImage;
 
+	private BufferedImage _transientImage;
+
+	private int _quantize = 4;
+
+	private int _admission = 2;
+
+	private int _maxEntries = LSystem.DEFAULT_MAX_CACHE_SIZE;
+
+	private long _maxBytes = DEFAULT_MAX_BYTES;
+
+	private long _bytes;
+
 	private boolean closed;
 
 	public JavaSECacheImageColor(JavaSEImage image) {
-		_colorImageCaches = new IntMap<BufferedImage>();
+		_colorImageCaches = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true);
+		_colorRequests = new LinkedHashMap<Integer, Integer>(16, 0.75f, true);
 		_superImage = image;
 	}
 
-	public BufferedImage get(int r, int g, int b) {
-		int hashCodeValue = 1;
-		hashCodeValue = LSystem.unite(hashCodeValue, r);
-		hashCodeValue = LSystem.unite(hashCodeValue, g);
-		hashCodeValue = LSystem.unite(hashCodeValue, b);
-		BufferedImage buffer = _colorImageCaches.get(hashCodeValue);
-		if (buffer == null) {
-			final int[] rgbArrays = _superImage.getPixels();
-			for (int i = 0; i < rgbArrays.length; i++) {
-				int curARGB = rgbArrays[i];
-				int srcA = (curARGB >> 24) & 0xFF;
-				int srcR = (curARGB >> 16) & 0xFF;
-				int srcG = (curARGB >> 8) & 0xFF;
-				int srcB = (curARGB) & 0xFF;
-				srcR = (srcR * r) / 255;
-				srcG = (srcG * g) / 255;
-				srcB = (srcB * b) / 255;
-				rgbArrays[i] = LColor.getARGB(srcR, srcG, srcB, srcA);
+	private int quantize(int c) {
+		if (_quantize <= 1) {
+			return c & 0xFF;
+		}
+		final int q = ((c & 0xFF) + (_quantize >> 1)) / _quantize * _quantize;
+		return q > 255 ? 255 : q;
+	}
+
+	/**
+	 * 返回按指定颜色混色后的图像.
+	 *
+	 * 注意:返回值可能是共用的临时图像,下一次调用get(包括其它线程的调用)会直接改写其像素,因此只能立即用于绘制,不能缓存或长期持有.
+	 *
+	 * @param r
+	 * @param g
+	 * @param b
+	 * @return
+	 */
+	public synchronized BufferedImage get(int r, int g, int b) {
+		r = quantize(r);
+		g = quantize(g);
+		b = quantize(b);
+		final Integer key = Integer.valueOf((r << 16) | (g << 8) | b);
+		BufferedImage buffer = _colorImageCaches.get(key);
+		if (buffer != null) {
+			return buffer;
+		}
+		if (_admission > 1) {
+			Integer count = _colorRequests.get(key);
+			count = Integer.valueOf(count == null ? 1 : count.intValue() + 1);
+			if (count.intValue() < _admission) {
+				_colorRequests.put(key, count);
+				if (_colorRequests.size() > _maxEntries * 4) {
+					final Iterator<Integer> it = _colorRequests.keySet().iterator();
+					it.next();
+					it.remove();
+				}
+				return _transientImage = tint(_transientImage, r, g, b);
 			}
-			buffer = new BufferedImage(_superImage.getWidth(), _superImage.getHeight(),
-					BufferedImage.TYPE_INT_ARGB_PRE);
-			buffer.setRGB(0, 0, _superImage.getWidth(), _superImage.getHeight(), rgbArrays, 0, _superImage.getWidth());
-			_colorImageCaches.put(hashCodeValue, buffer);
+			_colorRequests.remove(key);
 		}
+		buffer = tint(null, r, g, b);
+		final long size = sizeOf(buffer);
+		if (size > _maxBytes || size > _globalMaxBytes) {
+			return _transientImage = tint(_transientImage, r, g, b);
+		}
+		_colorImageCaches.put(key, buffer);
+		_bytes += size;
+		_globalBytes.addAndGet(size);
+		trim();
 		return buffer;
 	}
 
-	public int count() {
-		if (_colorImageCaches == null) {
-			return 0;
+	private static long sizeOf(BufferedImage image) {
+		return (long) image.getWidth() * image.getHeight() * 4L;
+	}
+
+	private void trim() {
+		final Iterator<Map.Entry<Integer, BufferedImage>> it = _colorImageCaches.entrySet().iterator();
+		while (it.hasNext() && (_colorImageCaches.size() > _maxEntries || _bytes > _maxBytes
+				|| _globalBytes.get() > _globalMaxBytes) && _colorImageCaches.size() > 1) {
+			final BufferedImage eldest = it.next().getValue();
+			it.remove();
+			final long size = sizeOf(eldest);
+			_bytes -= size;
+			_globalBytes.addAndGet(-size);
+			eldest.flush();
+		}
+	}
+
+	private static int[] pixelsOf(BufferedImage image) {
+		if (image == null || !(image.getRaster().getDataBuffer() instanceof DataBufferInt)
+				|| !(image.getSampleModel() instanceof SinglePixelPackedSampleModel)
+				|| ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride() != image.getWidth()
+				|| image.getRaster().getSampleModelTranslateX() != 0
+				|| image.getRaster().getSampleModelTranslateY() != 0) {
+			return null;
+		}
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	private static int[] multiplyTable(int c) {
+		final int[] table = new int[256];
+		for (int i = 0; i < 256; i++) {
+			table[i] = (i * c + 127) / 255;
+		}
+		return table;
+	}
+
+	/**
+	 * 产生混色后的图像,dst尺寸与类型相符时直接复用
+	 */
+	private BufferedImage tint(BufferedImage dst, int r, int g, int b) {
+		final BufferedImage src = _superImage.seImage();
+		final int width = src.getWidth();
+		final int height = src.getHeight();
+		int type = src.getType();
+		int[] srcPixels = pixelsOf(src);
+		if (srcPixels == null || (type != BufferedImage.TYPE_INT_ARGB_PRE && type != BufferedImage.TYPE_INT_ARGB
+				&& type != BufferedImage.TYPE_INT_RGB)) {
+			type = BufferedImage.TYPE_INT_ARGB;
+			srcPixels = _superImage.getPixels();
+		}
+		if (dst == null || dst.getWidth() != width || dst.getHeight() != height || dst.getType() != type) {
+			dst = new BufferedImage(width, height, type);
+		}
+		final int[] dstPixels = pixelsOf(dst);
+		final int[] lutR = multiplyTable(r);
+		final int[] lutG = multiplyTable(g);
+		final int[] lutB = multiplyTable(b);
+		if (dstPixels == null) {
+			final int[] pixels = new int[width * height];
+			recolor(srcPixels, pixels, 0, pixels.length, lutR, lutG, lutB);
+			dst.setRGB(0, 0, width, height, pixels, 0, width);
+		} else if (width * height < PARALLEL_PIXELS) {
+			recolor(srcPixels, dstPixels, 0, dstPixels.length, lutR, lutG, lutB);
+		} else {
+			ForkJoinPool.commonPool().invoke(new Recolor(srcPixels, dstPixels, width, 0, height, lutR, lutG, lutB));
 		}
-		return _colorImageCaches.size;
+		return dst;
+	}
+
+	/**
+	 * 逐像素查表混色,预乘与非预乘的像素都只缩放rgb分量,alpha保持不变
+	 */
+	private static void recolor(int[] src, int[] dst, int from, int to, int[] lutR, int[] lutG, int[] lutB) {
+		for (int i = from; i < to; i++) {
+			final int argb = src[i];
+			dst[i] = (argb & 0xFF000000) | (lutR[(argb >> 16) & 0xFF] << 16) | (lutG[(argb >> 8) & 0xFF] << 8)
+					| lutB[argb & 0xFF];
+		}
+	}
+
+	private static final class Recolor extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] src, dst, lutR, lutG, lutB;
+
+		private final int width, rowStart, rowEnd;
+
+		Recolor(int[] src, int[] dst, int width, int rowStart, int rowEnd, int[] lutR, int[] lutG, int[] lutB) {
+			this.src = src;
+			this.dst = dst;
+			this.width = width;
+			this.rowStart = rowStart;
+			this.rowEnd = rowEnd;
+			this.lutR = lutR;
+			this.lutG = lutG;
+			this.lutB = lutB;
+		}
+
+		@Override
+		protected void compute() {
+			if (rowEnd - rowStart <= PARALLEL_ROWS) {
+				recolor(src, dst, rowStart * width, rowEnd * width, lutR, lutG, lutB);
+				return;
+			}
+			final int mid = (rowStart + rowEnd) >>> 1;
+			invokeAll(new Recolor(src, dst, width, rowStart, mid, lutR, lutG, lutB),
+					new Recolor(src, dst, width, mid, rowEnd, lutR, lutG, lutB));
+		}
+	}
+
+	/**
+	 * 颜色分量取整的步长,为1时每种颜色单独缓存
+	 *
+	 * @param step
+	 * @return
+	 */
+	public synchronized JavaSECacheImageColor setQuantize(int step) {
+		this._quantize = step < 1 ? 1 : step;
+		return this;
+	}
+
+	public int getQuantize() {
+		return _quantize;
+	}
+
+	/**
+	 * 同一颜色请求达到此次数后才缓存,为1时总是缓存
+	 *
+	 * @param count
+	 * @return
+	 */
+	public synchronized JavaSECacheImageColor setAdmission(int count) {
+		this._admission = count < 1 ? 1 : count;
+		return this;
+	}
+
+	public int getAdmission() {
+		return _admission;
+	}
+
+	public synchronized JavaSECacheImageColor setMaxEntries(int max) {
+		this._maxEntries = max < 1 ? 1 : max;
+		trim();
+		return this;
+	}
+
+	public int getMaxEntries() {
+		return _maxEntries;
+	}
+
+	public synchronized JavaSECacheImageColor setMaxBytes(long bytes) {
+		this._maxBytes = bytes;
+		trim();
+		return this;
+	}
+
+	public long getMaxBytes() {
+		return _maxBytes;
+	}
+
+	public synchronized long getBytes() {
+		return _bytes;
+	}
+
+	public synchronized int count() {
+		return _colorImageCaches.size();
 	}
 
 	public boolean isClosed() {
 		return closed;
 	}
 
-	public JavaSECacheImageColor free() {
-		for (BufferedImage buffer : _colorImageCaches) {
+	public synchronized JavaSECacheImageColor free() {
+		for (BufferedImage buffer : _colorImageCaches.values()) {
 			if (buffer != null) {
 				buffer.flush();
-				buffer = null;
 			}
 		}
 		_colorImageCaches.clear();
+		_colorRequests.clear();
+		_globalBytes.addAndGet(-_bytes);
+		_bytes = 0;
+		if (_transientImage != null) {
+			_transientImage.flush();
+			_transientImage = null;
+		}
 		closed = true;
 		return this;
 	}
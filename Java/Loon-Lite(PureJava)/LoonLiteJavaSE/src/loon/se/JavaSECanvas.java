@@ -22,12 +22,16 @@ package loon.se;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.LinkedList;
 
@@ -52,6 +56,11 @@ public class JavaSECanvas extends Canvas {
 	private boolean graphicsMain = false;
 
 	protected Graphics2D context;
+
+	// 设备裁剪矩形,每4个int为x0,y0,x1,y1
+	int[] deviceRects;
+
+	int deviceRectCount;
 	private Deque<JavaSECanvasState> stateStack = new LinkedList<JavaSECanvasState>();
 
 	private AffineTransform transform = new AffineTransform();
@@ -210,6 +219,70 @@ public class JavaSECanvas extends Canvas {
 		return clipRect(0, 0, width, height);
 	}
 
+	@Override
+	public boolean setDeviceClip(int[] rects, int count) {
+		// 直接绘制到BufferStrategy时画面内容不会保留,无法只重绘部分区域
+		if (context == null || (graphicsMain && setting != null && !setting.doubleBuffer)) {
+			return false;
+		}
+		Shape clip = null;
+		deviceRects = rects == null ? null : Arrays.copyOf(rects, count * 4);
+		deviceRectCount = rects == null ? 0 : count;
+		if (rects != null) {
+			if (count == 1) {
+				clip = new Rectangle(rects[0], rects[1], rects[2] - rects[0], rects[3] - rects[1]);
+			} else {
+				final Area area = new Area();
+				for (int i = 0; i < count; i++) {
+					final int o = i * 4;
+					area.add(new Area(new Rectangle(rects[o], rects[o + 1], rects[o + 2] - rects[o],
+							rects[o + 3] - rects[o + 1])));
+				}
+				clip = area;
+			}
+		}
+		for (JavaSECanvasState state : stateStack) {
+			state.deviceClip = clip;
+		}
+		currentState().prepareClear(context);
+		return true;
+	}
+
+	/**
+	 * 设备坐标下的区域是否完全位于设备裁剪区之外
+	 */
+	boolean isDeviceClipped(float x0, float y0, float x1, float y1) {
+		final int[] rects = deviceRects;
+		if (rects == null) {
+			return false;
+		}
+		for (int i = 0; i < deviceRectCount; i++) {
+			final int o = i * 4;
+			if (x0 < rects[o + 2] && x1 > rects[o] && y0 < rects[o + 3] && y1 > rects[o + 1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 设备坐标下的区域是否与设备裁剪区相交,且被裁剪区切掉了上边或左边
+	 */
+	boolean isDeviceClipCut(int x0, int y0, int x1, int y1) {
+		final int[] rects = deviceRects;
+		if (rects == null) {
+			return false;
+		}
+		for (int i = 0; i < deviceRectCount; i++) {
+			final int o = i * 4;
+			if (x0 < rects[o + 2] && x1 > rects[o] && y0 < rects[o + 3] && y1 > rects[o + 1]
+					&& (rects[o] > x0 || rects[o + 1] > y0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public Canvas clear() {
 		clear(LColor.black);
@@ -268,6 +341,8 @@ public class JavaSECanvas extends Canvas {
 			context.clearRect(-posX, -posY, cwidth + posX, cy + posY);
 		}
 		context.clipRect(cx, cy, cwidth, cheight);
+		currentState().skewClip = (tx.getType() & (AffineTransform.TYPE_GENERAL_ROTATION
+				| AffineTransform.TYPE_QUADRANT_ROTATION | AffineTransform.TYPE_GENERAL_TRANSFORM)) != 0;
 		isDirty = true;
 		return this;
 	}
@@ -536,7 +611,7 @@ public class JavaSECanvas extends Canvas {
 		return context;
 	}
 
-	private JavaSECanvasState currentState() {
+	JavaSECanvasState currentState() {
 		return stateStack.getFirst();
 	}
 
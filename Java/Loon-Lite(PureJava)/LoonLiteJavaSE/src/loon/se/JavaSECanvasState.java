@@ -24,6 +24,7 @@ import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 
 import loon.LSystem;
@@ -77,6 +78,10 @@ public class JavaSECanvasState {
 	Clipper clipper;
 	Composite composite;
 	float alpha;
+	// 设备坐标下的基础裁剪区域,见JavaSECanvas.setDeviceClip
+	Shape deviceClip;
+	// clipRect在旋转或倾斜的变换下设置了非矩形的裁剪区
+	boolean skewClip;
 
 	JavaSECanvasState() {
 		this(0xff000000, 0xffffffff, null, null, new AffineTransform(), 1f, LineCap.SQUARE, LineJoin.MITER, 10f, NOCLIP,
@@ -87,6 +92,7 @@ public class JavaSECanvasState {
 		this(toCopy.fillColor, toCopy.strokeColor, toCopy.fillGradient, toCopy.fillPattern, toCopy.transform,
 				toCopy.strokeWidth, toCopy.lineCap, toCopy.lineJoin, toCopy.miterLimit, toCopy.clipper,
 				toCopy.composite, toCopy.alpha);
+		this.deviceClip = toCopy.deviceClip;
 	}
 
 	JavaSECanvasState(int fillColor, int strokeColor, JavaSEGradient fillGradient, JavaSEPattern fillPattern,
@@ -107,13 +113,33 @@ public class JavaSECanvasState {
 	}
 
 	void prepareClear(Graphics2D gfx) {
+		skewClip = false;
 		clipper.setClip(gfx);
+		clipDevice(gfx);
+	}
+
+	/**
+	 * 除设备裁剪区外,当前的裁剪区是否为设备坐标下的矩形
+	 */
+	boolean isRectClip() {
+		return clipper == NOCLIP && !skewClip;
+	}
+
+	void clipDevice(Graphics2D gfx) {
+		if (deviceClip != null) {
+			final AffineTransform tx = gfx.getTransform();
+			gfx.setTransform(new AffineTransform());
+			gfx.clip(deviceClip);
+			gfx.setTransform(tx);
+		}
 	}
 
 	void prepareStroke(Graphics2D gfx) {
 		gfx.setStroke(new BasicStroke(strokeWidth, convertLineCap(), convertLineJoin(), miterLimit));
 		gfx.setColor(convertColor(strokeColor));
+		skewClip = false;
 		clipper.setClip(gfx);
+		clipDevice(gfx);
 		gfx.setComposite(convertComposite(composite, alpha));
 	}
 
@@ -125,7 +151,9 @@ public class JavaSECanvasState {
 		} else {
 			gfx.setPaint(convertColor(fillColor));
 		}
+		skewClip = false;
 		clipper.setClip(gfx);
+		clipDevice(gfx);
 		gfx.setColor(convertColor(fillColor));
 		gfx.setComposite(convertComposite(composite, alpha));
 	}
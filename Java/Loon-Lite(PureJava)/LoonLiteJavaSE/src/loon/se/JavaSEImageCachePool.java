@@ -20,13 +20,32 @@
  */
 package loon.se;
 
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 
-import loon.utils.MathUtils;
+import loon.LSysException;
+import loon.events.QueryEvent;
+import loon.utils.Array;
+import loon.utils.TArray;
 import loon.utils.cache.Pool;
 
+/**
+ * BufferedImage缓存池.
+ *
+ * 空闲图像按(类型,宽,高)分桶,查找为O(1),复用时直接在原有像素数组上清零.全部空闲图像另按最近使用顺序串联,
+ * 占用内存超过maxBytes时从最久未使用的图像开始丢弃.
+ */
 public class JavaSEImageCachePool extends Pool<BufferedImage> {
 
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+
 	private static JavaSEImageCachePool _instance;
 
 	public static void freeStatic() {
@@ -44,6 +63,32 @@ public class JavaSEImageCachePool extends Pool<BufferedImage> {
 		return _instance;
 	}
 
+	private static class Entry {
+
+		BufferedImage image;
+
+		Long key;
+
+		long bytes;
+
+		Entry lruPrev, lruNext;
+
+		Entry bucketNext, bucketPrev;
+	}
+
+	private final HashMap<Long, Entry> _buckets = new HashMap<Long, Entry>();
+
+	private final IdentityHashMap<BufferedImage, Entry> _entries = new IdentityHashMap<BufferedImage, Entry>();
+
+	// 链表头为最久未使用
+	private Entry _lruHead, _lruTail;
+
+	private long _maxBytes;
+
+	private long _residentBytes;
+
+	private long _hits, _misses, _evictions;
+
 	private int _imageWidth;
 
 	private int _imageHeight;
@@ -51,7 +96,25 @@ public class JavaSEImageCachePool extends Pool<BufferedImage> {
 	private int _bufferedType;
 
 	public JavaSEImageCachePool() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	public JavaSEImageCachePool(long maxBytes) {
 		super();
+		this._maxBytes = maxBytes;
+	}
+
+	private static int toType(int bufferedType) {
+		return bufferedType <= BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_ARGB_PRE : bufferedType;
+	}
+
+	private static Long toKey(int type, int w, int h) {
+		return Long.valueOf(((long) type << 48) | ((long) (w & 0xFFFFFF) << 24) | (h & 0xFFFFFF));
+	}
+
+	private static long sizeOf(BufferedImage image) {
+		final DataBuffer data = image.getRaster().getDataBuffer();
+		return (long) data.getSize() * data.getNumBanks() * (DataBuffer.getDataTypeSize(data.getDataType()) / 8);
 	}
 
 	public JavaSEImageCachePool findImage(int bufferedType, int w, int h) {
@@ -61,36 +124,51 @@ public class JavaSEImageCachePool extends Pool<BufferedImage> {
 		return this;
 	}
 
-	public BufferedImage find(int bufferedType, int w, int h) {
+	public synchronized BufferedImage find(int bufferedType, int w, int h) {
 		findImage(bufferedType, w, h);
 		return obtain();
 	}
 
 	@Override
-	public BufferedImage obtain() {
-		if (freeObjects.size == 0) {
+	public synchronized BufferedImage obtain() {
+		final Entry entry = _buckets.get(toKey(toType(_bufferedType), _imageWidth, _imageHeight));
+		if (entry == null) {
+			_misses++;
 			return newObject();
 		}
-		BufferedImage image = freeObjects.find((img) -> {
-			return MathUtils.equal(MathUtils.floor(img.getWidth()), _imageWidth)
-					&& MathUtils.equal(MathUtils.floor(img.getHeight()), _imageHeight);
-		});
-		if (image == null) {
-			return newObject();
+		_hits++;
+		unlink(entry);
+		final BufferedImage image = entry.image;
+		clearImage(image);
+		return image;
+	}
+
+	/**
+	 * 把复用的图像清为全透明,int与byte像素直接填充原数组
+	 *
+	 * @param image
+	 */
+	protected void clearImage(BufferedImage image) {
+		final DataBuffer data = image.getRaster().getDataBuffer();
+		if (data instanceof DataBufferInt) {
+			for (int i = 0; i < data.getNumBanks(); i++) {
+				Arrays.fill(((DataBufferInt) data).getData(i), 0);
+			}
+		} else if (data instanceof DataBufferByte) {
+			for (int i = 0; i < data.getNumBanks(); i++) {
+				Arrays.fill(((DataBufferByte) data).getData(i), (byte) 0);
+			}
 		} else {
-			int[] rgba = new int[_imageWidth * _imageHeight];
-			image.setRGB(0, 0, _imageWidth, _imageHeight, rgba, 0, _imageWidth);
-			freeObjects.remove(image);
+			Graphics2D g = image.createGraphics();
+			g.setComposite(AlphaComposite.Clear);
+			g.fillRect(0, 0, image.getWidth(), image.getHeight());
+			g.dispose();
 		}
-		return image;
 	}
 
 	@Override
 	protected BufferedImage newObject() {
-		if (_bufferedType != -1) {
-			return new BufferedImage(_imageWidth, _imageHeight, _bufferedType);
-		}
-		return new BufferedImage(_imageWidth, _imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+		return new BufferedImage(_imageWidth, _imageHeight, toType(_bufferedType));
 	}
 
 	@Override
@@ -106,4 +184,221 @@ public class JavaSEImageCachePool extends Pool<BufferedImage> {
 		return o;
 	}
 
+	@Override
+	public synchronized Pool<BufferedImage> free(BufferedImage o) {
+		if (o == null) {
+			throw new LSysException("Object cannot be null.");
+		}
+		if (isLimit(o, null) || _entries.containsKey(o) || o.getType() == BufferedImage.TYPE_CUSTOM) {
+			return this;
+		}
+		final long bytes = sizeOf(o);
+		if (bytes > _maxBytes) {
+			return this;
+		}
+		final Entry entry = new Entry();
+		entry.image = o;
+		entry.key = toKey(o.getType(), o.getWidth(), o.getHeight());
+		entry.bytes = bytes;
+		final Entry head = _buckets.get(entry.key);
+		if (head != null) {
+			head.bucketPrev = entry;
+			entry.bucketNext = head;
+		}
+		_buckets.put(entry.key, entry);
+		entry.lruPrev = _lruTail;
+		if (_lruTail == null) {
+			_lruHead = entry;
+		} else {
+			_lruTail.lruNext = entry;
+		}
+		_lruTail = entry;
+		_entries.put(o, entry);
+		_residentBytes += bytes;
+		while (_residentBytes > _maxBytes || _entries.size() > max) {
+			final Entry eldest = _lruHead;
+			unlink(eldest);
+			eldest.image.flush();
+			_evictions++;
+		}
+		peak = Math.max(peak, _entries.size());
+		return this;
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.bucketPrev == null) {
+			if (entry.bucketNext == null) {
+				_buckets.remove(entry.key);
+			} else {
+				_buckets.put(entry.key, entry.bucketNext);
+			}
+		} else {
+			entry.bucketPrev.bucketNext = entry.bucketNext;
+		}
+		if (entry.bucketNext != null) {
+			entry.bucketNext.bucketPrev = entry.bucketPrev;
+		}
+		if (entry.lruPrev == null) {
+			_lruHead = entry.lruNext;
+		} else {
+			entry.lruPrev.lruNext = entry.lruNext;
+		}
+		if (entry.lruNext == null) {
+			_lruTail = entry.lruPrev;
+		} else {
+			entry.lruNext.lruPrev = entry.lruPrev;
+		}
+		entry.bucketPrev = entry.bucketNext = entry.lruPrev = entry.lruNext = null;
+		_entries.remove(entry.image);
+		_residentBytes -= entry.bytes;
+	}
+
+	@Override
+	public synchronized Pool<BufferedImage> freeAll(TArray<BufferedImage> objects) {
+		if (objects == null) {
+			throw new LSysException("Object cannot be null.");
+		}
+		for (int i = objects.size - 1; i > -1; i--) {
+			final BufferedImage o = objects.get(i);
+			if (o != null) {
+				free(o);
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public synchronized Pool<BufferedImage> freeAll(Array<BufferedImage> objects) {
+		if (objects == null) {
+			throw new LSysException("Object cannot be null.");
+		}
+		for (; objects.hasNext();) {
+			final BufferedImage o = objects.next();
+			if (o != null) {
+				free(o);
+			}
+		}
+		objects.stopNext();
+		return this;
+	}
+
+	@Override
+	public synchronized TArray<BufferedImage> select(QueryEvent<BufferedImage> event) {
+		final TArray<BufferedImage> result = new TArray<BufferedImage>();
+		for (Entry entry = _lruTail; entry != null; entry = entry.lruPrev) {
+			if (event.hit(entry.image)) {
+				result.add(entry.image);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized Pool<BufferedImage> delete(QueryEvent<BufferedImage> event) {
+		for (Entry entry = _lruTail; entry != null;) {
+			final Entry prev = entry.lruPrev;
+			if (event.hit(entry.image)) {
+				unlink(entry);
+			}
+			entry = prev;
+		}
+		return this;
+	}
+
+	@Override
+	public synchronized BufferedImage pop() {
+		if (_lruTail == null) {
+			return null;
+		}
+		final Entry entry = _lruTail;
+		unlink(entry);
+		return entry.image;
+	}
+
+	@Override
+	public synchronized boolean remove(BufferedImage o) {
+		final Entry entry = _entries.get(o);
+		if (entry == null) {
+			return false;
+		}
+		unlink(entry);
+		return true;
+	}
+
+	@Override
+	public synchronized int size() {
+		return _entries.size();
+	}
+
+	@Override
+	public int getFree() {
+		return size();
+	}
+
+	@Override
+	public synchronized Pool<BufferedImage> clear() {
+		for (Entry entry = _lruHead; entry != null; entry = entry.lruNext) {
+			entry.image.flush();
+		}
+		_buckets.clear();
+		_entries.clear();
+		_lruHead = _lruTail = null;
+		_residentBytes = 0;
+		peak = 0;
+		return this;
+	}
+
+	/**
+	 * 设置空闲图像最多占用的字节数,超过时立即丢弃最久未使用的图像
+	 *
+	 * @param maxBytes
+	 * @return
+	 */
+	public synchronized JavaSEImageCachePool setMaxBytes(long maxBytes) {
+		this._maxBytes = maxBytes;
+		while (_lruHead != null && _residentBytes > _maxBytes) {
+			final Entry eldest = _lruHead;
+			unlink(eldest);
+			eldest.image.flush();
+			_evictions++;
+		}
+		return this;
+	}
+
+	public synchronized long getMaxBytes() {
+		return _maxBytes;
+	}
+
+	/**
+	 * 空闲图像当前占用的字节数
+	 *
+	 * @return
+	 */
+	public synchronized long getResidentBytes() {
+		return _residentBytes;
+	}
+
+	public synchronized long getHits() {
+		return _hits;
+	}
+
+	public synchronized long getMisses() {
+		return _misses;
+	}
+
+	public synchronized long getEvictions() {
+		return _evictions;
+	}
+
+	public synchronized JavaSEImageCachePool resetStats() {
+		_hits = _misses = _evictions = 0;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "JavaSEImageCachePool[free=" + size() + ", bytes=" + getResidentBytes() + "/" + getMaxBytes()
+				+ ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+
 }
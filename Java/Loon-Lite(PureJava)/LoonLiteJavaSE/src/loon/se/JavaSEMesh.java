@@ -23,13 +23,14 @@ package loon.se;
 import java.awt.AlphaComposite;
 import java.awt.Composite;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
 
 import loon.LSysException;
-import loon.LSystem;
 import loon.LTexture;
 import loon.canvas.Canvas;
 import loon.canvas.Image;
@@ -61,6 +62,12 @@ public class JavaSEMesh implements Mesh {
 
 	private int mode = 0;
 
+	private JavaSEMeshRasterizer rasterizer;
+
+	private boolean softwareRasterizer = true;
+
+	private BufferedImage scaledBuffer;
+
 	public JavaSEMesh(Canvas canvas) {
 		if (canvas == null) {
 			throw new LSysException("Canvas is null !");
@@ -76,6 +83,14 @@ public class JavaSEMesh implements Mesh {
 	@Override
 	public void paint() {
 		if (mesh != null) {
+			if (softwareRasterizer) {
+				if (rasterizer == null) {
+					rasterizer = new JavaSEMeshRasterizer();
+				}
+				if (rasterizer.draw(_canvas, mesh, mode == 0, transform)) {
+					return;
+				}
+			}
 			if (mode == 0) {
 				renderWithIndexes(mesh);
 			} else {
@@ -122,10 +137,9 @@ public class JavaSEMesh implements Mesh {
 		float[] vertices = mesh.vertices;
 		LTexture texture = mesh.texture;
 
-		Image source = texture.getImage();
+		// 子纹理的getImage会返回截取后的新图像,uv与xOff等比例都是相对整张图像的,这里必须使用原图
+		Image source = texture.getSourceImage();
 
-		float textureWidth = texture.pixelWidth();
-		float textureHeight = texture.pixelHeight();
 		float sourceWidth = source.getWidth();
 		float sourceHeight = source.getHeight();
 
@@ -195,6 +209,8 @@ public class JavaSEMesh implements Mesh {
 		final Graphics2D context = _canvas.context;
 
 		Composite oldComposite = context.getComposite();
+		AffineTransform oldTransform = context.getTransform();
+		Shape oldClip = context.getClip();
 
 		if (transform != null) {
 			newTransform.setTransform(transform.m00, transform.m01, transform.m10, transform.m11, transform.tx,
@@ -211,7 +227,7 @@ public class JavaSEMesh implements Mesh {
 		path.lineTo(x2, y2);
 		path.closePath();
 
-		context.setClip(path);
+		context.clip(path);
 
 		// 计算矩阵，将图片变形到合适的位置
 		float delta = (u0 * v1) + (v0 * u2) + (u1 * v2) - (v1 * u2) - (v0 * u1) - (u0 * v2);
@@ -229,12 +245,14 @@ public class JavaSEMesh implements Mesh {
 				deltaF * dDelta);
 		context.transform(newTransform);
 
-		context.drawImage(((JavaSEImage) source).buffer, MathUtils.ifloor(texture.widthRatio() * sourceWidth),
-				MathUtils.ifloor(texture.heightRatio() * sourceHeight), MathUtils.ifloor(textureWidth),
-				MathUtils.ifloor(textureHeight), MathUtils.ifloor(texture.widthRatio() * sourceWidth),
-				MathUtils.ifloor(texture.heightRatio() * sourceHeight), MathUtils.ifloor(textureWidth),
-				MathUtils.ifloor(textureHeight), null);
+		context.drawImage(((JavaSEImage) source).buffer, MathUtils.ifloor(texture.xOff() * sourceWidth),
+				MathUtils.ifloor(texture.yOff() * sourceHeight), MathUtils.ifloor(texture.widthRatio() * sourceWidth),
+				MathUtils.ifloor(texture.heightRatio() * sourceHeight), MathUtils.ifloor(texture.xOff() * sourceWidth),
+				MathUtils.ifloor(texture.yOff() * sourceHeight), MathUtils.ifloor(texture.widthRatio() * sourceWidth),
+				MathUtils.ifloor(texture.heightRatio() * sourceHeight), null);
 
+		context.setTransform(oldTransform);
+		context.setClip(oldClip);
 		context.setComposite(oldComposite);
 	}
 
@@ -243,6 +261,28 @@ public class JavaSEMesh implements Mesh {
 		return mesh;
 	}
 
+	/**
+	 * 是否优先使用JavaSEMeshRasterizer直接光栅化,不满足条件时仍然使用Java2D逐三角形绘制
+	 * 
+	 * @param use
+	 * @return
+	 */
+	public JavaSEMesh setSoftwareRasterizer(boolean use) {
+		this.softwareRasterizer = use;
+		return this;
+	}
+
+	public boolean isSoftwareRasterizer() {
+		return softwareRasterizer;
+	}
+
+	public JavaSEMeshRasterizer getRasterizer() {
+		if (rasterizer == null) {
+			rasterizer = new JavaSEMeshRasterizer();
+		}
+		return rasterizer;
+	}
+
 	@Override
 	public void setMesh(MeshData mesh) {
 		this.mesh = mesh;
@@ -293,6 +333,21 @@ public class JavaSEMesh implements Mesh {
 	public void paint(int tint, float m00, float m01, float m10, float m11, float tx, float ty, float left, float top,
 			float right, float bottom, float sl, float st, float sr, float sb) {
 
+		if (_canvas.deviceRects != null) {
+			final float ax = m00 * left + m10 * top, ay = m01 * left + m11 * top;
+			final float bx = m00 * right + m10 * top, by = m01 * right + m11 * top;
+			final float cx = m00 * right + m10 * bottom, cy = m01 * right + m11 * bottom;
+			final float dx = m00 * left + m10 * bottom, dy = m01 * left + m11 * bottom;
+			final float x0 = Math.min(Math.min(ax, bx), Math.min(cx, dx)) + tx - 1f;
+			final float y0 = Math.min(Math.min(ay, by), Math.min(cy, dy)) + ty - 1f;
+			final float x1 = Math.max(Math.max(ax, bx), Math.max(cx, dx)) + tx + 1f;
+			final float y1 = Math.max(Math.max(ay, by), Math.max(cy, dy)) + ty + 1f;
+			// 完全在脏矩形之外的四边形不必绘制
+			if (_canvas.isDeviceClipped(x0, y0, x1, y1)) {
+				return;
+			}
+		}
+
 		int r = (tint & 0x00FF0000) >> 16;
 		int g = (tint & 0x0000FF00) >> 8;
 		int b = (tint & 0x000000FF);
@@ -335,9 +390,8 @@ public class JavaSEMesh implements Mesh {
 				}
 				if (!isWhiteColor) {
 					JavaSECacheImageColor imageColor = ((JavaSEImage) img).getImageColor();
-					// 如果默认缓存数许可
-					if (imageColor.count() < LSystem.DEFAULT_MAX_CACHE_SIZE
-							&& (img.getWidth() <= 512 && img.getHeight() <= 512)) {
+					// 混色缓存有数量与内存上限,超出时淘汰最久未用的颜色
+					if (img.getWidth() <= 512 && img.getHeight() <= 512) {
 						// 如果图像颜色需要混色,产生一个指定色彩的缓存图
 						display = imageColor.get(r, g, b);
 					} else {
@@ -352,8 +406,9 @@ public class JavaSEMesh implements Mesh {
 				}
 			}
 			if (!texture.isChild() && sl == 0f && st == 0f && sr == 1f && sb == 1f) {
-				context.drawImage(display, MathUtils.ifloor(left), MathUtils.ifloor(top),
-						MathUtils.ifloor(right - left), MathUtils.ifloor(bottom - top), null);
+				final int x = MathUtils.ifloor(left), y = MathUtils.ifloor(top);
+				drawImage(context, display, x, y, x + MathUtils.ifloor(right - left), y + MathUtils.ifloor(bottom - top),
+						0, 0, display.getWidth(), display.getHeight());
 			} else {
 				float textureWidth = texture.getDisplayWidth();
 				float textureHeight = texture.getDisplayHeight();
@@ -367,12 +422,53 @@ public class JavaSEMesh implements Mesh {
 				if (dstHeight > textureHeight) {
 					dstHeight = textureHeight;
 				}
-				context.drawImage(display, MathUtils.ifloor(left), MathUtils.ifloor(top), MathUtils.iceil(right),
+				drawImage(context, display, MathUtils.ifloor(left), MathUtils.ifloor(top), MathUtils.iceil(right),
 						MathUtils.iceil(bottom), MathUtils.ifloor(dstX), MathUtils.ifloor(dstY),
-						MathUtils.iceil(dstWidth), MathUtils.iceil(dstHeight), null);
+						MathUtils.iceil(dstWidth), MathUtils.iceil(dstHeight));
 			}
 			context.setTransform(oldTransform);
 			context.setComposite(oldComposite);
 		}
 	}
+
+	/**
+	 * 最近邻插值下,整数位置的缩放绘制会走Java2D的缩放复制,它从裁剪区的起点重新计算采样位置,
+	 * 所以当设备裁剪区(脏矩形)切掉图像的上边或左边时,结果会与完整绘制相差一个纹素.此时先不带裁剪缩放到临时图像,再原样复制过去
+	 */
+	private void drawImage(Graphics2D context, BufferedImage img, int dx1, int dy1, int dx2, int dy2, int sx1,
+			int sy1, int sx2, int sy2) {
+		if (_canvas.deviceRects != null && (dx2 - dx1 != sx2 - sx1 || dy2 - dy1 != sy2 - sy1)) {
+			final AffineTransform tx = context.getTransform();
+			final Object interpolation = context.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+			if (tx.getShearX() == 0d && tx.getShearY() == 0d && tx.getScaleX() > 0d && tx.getScaleY() > 0d
+					&& (interpolation == null || interpolation == RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR)) {
+				final double x0 = tx.getScaleX() * dx1 + tx.getTranslateX();
+				final double y0 = tx.getScaleY() * dy1 + tx.getTranslateY();
+				final double x1 = tx.getScaleX() * dx2 + tx.getTranslateX();
+				final double y1 = tx.getScaleY() * dy2 + tx.getTranslateY();
+				final int ix0 = (int) Math.rint(x0), iy0 = (int) Math.rint(y0);
+				final int ix1 = (int) Math.rint(x1), iy1 = (int) Math.rint(y1);
+				if (ix0 == x0 && iy0 == y0 && ix1 == x1 && iy1 == y1 && ix1 > ix0 && iy1 > iy0
+						&& _canvas.isDeviceClipCut(ix0, iy0, ix1, iy1)) {
+					final int w = ix1 - ix0, h = iy1 - iy0;
+					if (scaledBuffer == null || scaledBuffer.getWidth() < w || scaledBuffer.getHeight() < h) {
+						scaledBuffer = new BufferedImage(MathUtils.max(w, scaledBuffer == null ? 0 : scaledBuffer.getWidth()),
+								MathUtils.max(h, scaledBuffer == null ? 0 : scaledBuffer.getHeight()),
+								BufferedImage.TYPE_INT_ARGB_PRE);
+					}
+					final Graphics2D g = scaledBuffer.createGraphics();
+					g.setComposite(AlphaComposite.Src);
+					g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+							RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+					g.drawImage(img, 0, 0, w, h, sx1, sy1, sx2, sy2, null);
+					g.dispose();
+					context.setTransform(new AffineTransform());
+					context.drawImage(scaledBuffer, ix0, iy0, ix1, iy1, 0, 0, w, h, null);
+					context.setTransform(tx);
+					return;
+				}
+			}
+		}
+		context.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+	}
 }
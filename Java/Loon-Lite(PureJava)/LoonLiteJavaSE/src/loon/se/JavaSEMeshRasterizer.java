@@ -0,0 +1,661 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.se;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import loon.LTexture;
+import loon.canvas.Image;
+import loon.geom.Affine2f;
+import loon.opengl.BlendMethod;
+import loon.opengl.MeshData;
+
+/**
+ * 直接在画布像素数组上光栅化MeshData的软件渲染器.
+ *
+ * 三角形经变换后用边函数求出每行覆盖的区间(左上填充规则,共用边的像素只绘制一次),UV按屏幕坐标仿射插值并最近邻采样,
+ * 以SRC_OVER规则与画布混合.三角形按包围盒分配到64x64的屏幕块中,各块内保持提交顺序,块之间在ForkJoinPool中并行处理.
+ * 目标或纹理不是int像素格式,或者画布使用了非SRC_OVER的Composite时返回false,由调用者改用Java2D绘制.
+ */
+public final class JavaSEMeshRasterizer {
+
+	public static final int TILE_SHIFT = 6;
+
+	public static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+	private static final int TRI_FLOATS = 12;
+
+	private static final int TRI_INTS = 4;
+
+	// 像素中心恰好落在纹素边界时取较小的纹素,与Java2D最近邻采样的结果一致
+	private static final float TEXEL_BIAS = 1f / 8192f;
+
+	private ForkJoinPool pool;
+
+	private int parallelThreshold = 256;
+
+	private float[] tris = new float[TRI_FLOATS * 64];
+
+	private int[] bounds = new int[TRI_INTS * 64];
+
+	private int triCount;
+
+	private int[] tileStarts = new int[1];
+
+	private int[] tileItems = new int[64];
+
+	private int tilesX, tilesY;
+
+	private int[] dstPixels;
+
+	private int dstStride, dstType;
+
+	private int[] texPixels;
+
+	private int texStride, texType;
+
+	private int regionX0, regionY0, regionX1, regionY1;
+
+	private int extraAlpha;
+
+	private int[] clips = new int[16];
+
+	private int clipCount;
+
+	public JavaSEMeshRasterizer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public JavaSEMeshRasterizer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * 设置并行处理使用的线程池,为null时单线程光栅化
+	 *
+	 * @param pool
+	 * @return
+	 */
+	public JavaSEMeshRasterizer setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * 三角形数量达到此值时才并行处理
+	 *
+	 * @param count
+	 * @return
+	 */
+	public JavaSEMeshRasterizer setParallelThreshold(int count) {
+		this.parallelThreshold = count;
+		return this;
+	}
+
+	private static boolean isIntType(int type) {
+		return type == BufferedImage.TYPE_INT_ARGB_PRE || type == BufferedImage.TYPE_INT_ARGB
+				|| type == BufferedImage.TYPE_INT_RGB;
+	}
+
+	private static int[] pixelsOf(BufferedImage image) {
+		final WritableRaster raster = image.getRaster();
+		if (!(raster.getDataBuffer() instanceof DataBufferInt)
+				|| !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+				|| raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+				|| ((DataBufferInt) raster.getDataBuffer()).getOffset() != 0) {
+			return null;
+		}
+		return ((DataBufferInt) raster.getDataBuffer()).getData();
+	}
+
+	private static int strideOf(BufferedImage image) {
+		return ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+	}
+
+	/**
+	 * 把mesh中的三角形绘制到画布上
+	 *
+	 * @param canvas
+	 * @param mesh
+	 * @param indexed
+	 * @param transform 在画布当前变换之前附加的变换,可以为null
+	 * @return 无法处理此画布或纹理时返回false
+	 */
+	public boolean draw(JavaSECanvas canvas, MeshData mesh, boolean indexed, Affine2f transform) {
+		final LTexture texture = mesh.texture;
+		if (texture == null || mesh.uvs == null || mesh.vertices == null) {
+			return false;
+		}
+		if (mesh.blend != -1 && mesh.blend != BlendMethod.MODE_NORMAL) {
+			return false;
+		}
+		final JavaSEImage target = canvas.toSEImage();
+		// uv与纹理区域都以整张图像为基准,子纹理也使用原图而不是截取后的图像
+		final Image source = texture.getSourceImage();
+		if (target == null || !(source instanceof JavaSEImage)) {
+			return false;
+		}
+		final BufferedImage dst = target.seImage();
+		final BufferedImage tex = ((JavaSEImage) source).buffer;
+		if (dst == null || tex == null || !isIntType(dst.getType()) || !isIntType(tex.getType())) {
+			return false;
+		}
+		final Graphics2D context = canvas.context;
+		final Composite composite = context.getComposite();
+		if (!(composite instanceof AlphaComposite) || ((AlphaComposite) composite).getRule() != AlphaComposite.SRC_OVER) {
+			return false;
+		}
+		final int[] dstData = pixelsOf(dst);
+		final int[] texData = pixelsOf(tex);
+		if (dstData == null || texData == null) {
+			return false;
+		}
+		final AffineTransform device = new AffineTransform(context.getTransform());
+		if (transform != null) {
+			device.concatenate(new AffineTransform(transform.m00, transform.m01, transform.m10, transform.m11,
+					transform.tx, transform.ty));
+		}
+		if (!clipRects(canvas, dst.getWidth(), dst.getHeight())) {
+			return false;
+		}
+		if (clipCount == 0) {
+			return true;
+		}
+		final int texW = tex.getWidth();
+		final int texH = tex.getHeight();
+		this.dstPixels = dstData;
+		this.dstStride = strideOf(dst);
+		this.dstType = dst.getType();
+		this.texPixels = texData;
+		this.texStride = strideOf(tex);
+		this.texType = tex.getType();
+		this.regionX0 = clamp((int) Math.floor(texture.xOff() * texW + 0.5f), 0, texW - 1);
+		this.regionY0 = clamp((int) Math.floor(texture.yOff() * texH + 0.5f), 0, texH - 1);
+		this.regionX1 = clamp((int) Math.floor(texture.widthRatio() * texW + 0.5f), regionX0 + 1, texW);
+		this.regionY1 = clamp((int) Math.floor(texture.heightRatio() * texH + 0.5f), regionY0 + 1, texH);
+		this.extraAlpha = Math.round(((AlphaComposite) composite).getAlpha() * 255f);
+		if (extraAlpha <= 0) {
+			return true;
+		}
+		for (int i = 0; i < clipCount; i++) {
+			final int o = i * 4;
+			final int clipX0 = clips[o], clipY0 = clips[o + 1], clipX1 = clips[o + 2], clipY1 = clips[o + 3];
+			setup(mesh, indexed, device, texW, texH, clipX0, clipY0, clipX1, clipY1);
+			if (triCount > 0) {
+				bin(clipX0, clipY0, clipX1, clipY1);
+				final int tiles = tilesX * tilesY;
+				if (pool == null || triCount < parallelThreshold || tiles == 1) {
+					renderTiles(0, tiles, clipX0, clipY0, clipX1, clipY1);
+				} else {
+					pool.invoke(new TileTask(0, tiles, clipX0, clipY0, clipX1, clipY1));
+				}
+			}
+		}
+		this.dstPixels = null;
+		this.texPixels = null;
+		return true;
+	}
+
+	/**
+	 * 把画布当前的裁剪区转为设备坐标下互不重叠的矩形,裁剪区无法拆分为画布设置的设备裁剪矩形时返回false
+	 */
+	private boolean clipRects(JavaSECanvas canvas, int width, int height) {
+		clipCount = 0;
+		final Graphics2D context = canvas.context;
+		final Shape clip = context.getClip();
+		if (clip == null) {
+			addClip(0, 0, width, height, width, height);
+			return true;
+		}
+		final AffineTransform tx = context.getTransform();
+		final int[] rects = canvas.deviceRects;
+		if (rects != null && canvas.currentState().isRectClip()) {
+			// 设备裁剪矩形互不重叠,与矩形的用户裁剪区相交即可
+			final Rectangle bounds = tx.createTransformedShape(clip.getBounds2D()).getBounds();
+			for (int i = 0, count = canvas.deviceRectCount; i < count; i++) {
+				final int o = i * 4;
+				addClip(Math.max(rects[o], bounds.x), Math.max(rects[o + 1], bounds.y),
+						Math.min(rects[o + 2], bounds.x + bounds.width), Math.min(rects[o + 3], bounds.y + bounds.height),
+						width, height);
+			}
+			return true;
+		}
+		if (clip instanceof Rectangle2D && (tx.getType() & (AffineTransform.TYPE_GENERAL_ROTATION
+				| AffineTransform.TYPE_QUADRANT_ROTATION | AffineTransform.TYPE_GENERAL_TRANSFORM)) == 0) {
+			final Rectangle rect = tx.createTransformedShape(clip).getBounds();
+			addClip(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height, width, height);
+			return true;
+		}
+		final Area area = new Area(tx.createTransformedShape(clip));
+		if (area.isRectangular()) {
+			final Rectangle rect = area.getBounds();
+			addClip(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height, width, height);
+			return true;
+		}
+		// 由多个脏矩形组成的裁剪区,逐块绘制
+		if (rects == null) {
+			return false;
+		}
+		for (int i = 0, count = canvas.deviceRectCount; i < count; i++) {
+			final int o = i * 4;
+			final Area part = new Area(new Rectangle(rects[o], rects[o + 1], rects[o + 2] - rects[o],
+					rects[o + 3] - rects[o + 1]));
+			part.intersect(area);
+			if (part.isEmpty()) {
+				continue;
+			}
+			if (!part.isRectangular()) {
+				return false;
+			}
+			final Rectangle rect = part.getBounds();
+			addClip(rect.x, rect.y, rect.x + rect.width, rect.y + rect.height, width, height);
+		}
+		return true;
+	}
+
+	private void addClip(int x0, int y0, int x1, int y1, int width, int height) {
+		x0 = Math.max(0, x0);
+		y0 = Math.max(0, y0);
+		x1 = Math.min(width, x1);
+		y1 = Math.min(height, y1);
+		if (x0 >= x1 || y0 >= y1) {
+			return;
+		}
+		if (clips.length < (clipCount + 1) * 4) {
+			final int[] tmp = new int[clips.length * 2];
+			System.arraycopy(clips, 0, tmp, 0, clipCount * 4);
+			clips = tmp;
+		}
+		final int o = clipCount * 4;
+		clips[o] = x0;
+		clips[o + 1] = y0;
+		clips[o + 2] = x1;
+		clips[o + 3] = y1;
+		clipCount++;
+	}
+
+	private static int clamp(int v, int min, int max) {
+		return v < min ? min : (v > max ? max : v);
+	}
+
+	private void setup(MeshData mesh, boolean indexed, AffineTransform device, int texW, int texH, int clipX0,
+			int clipY0, int clipX1, int clipY1) {
+		final float[] uvs = mesh.uvs;
+		final float[] vertices = mesh.vertices;
+		final int[] indexes = mesh.indexes;
+		final int count;
+		if (indexed) {
+			if (indexes == null) {
+				triCount = 0;
+				return;
+			}
+			count = (mesh.amount == -1 ? indexes.length : mesh.amount) / 3;
+		} else {
+			count = Math.max(0, (mesh.amount == -1 ? vertices.length / 2 : mesh.amount) - 2);
+		}
+		if (tris.length < count * TRI_FLOATS) {
+			tris = new float[count * TRI_FLOATS];
+			bounds = new int[count * TRI_INTS];
+		}
+		final Affine2f ut = mesh.useUvTransform ? mesh.uvTransform : null;
+		final double m00 = device.getScaleX(), m01 = device.getShearX(), m02 = device.getTranslateX();
+		final double m10 = device.getShearY(), m11 = device.getScaleY(), m12 = device.getTranslateY();
+		final float[] t = tris;
+		final int[] b = bounds;
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			int i0, i1, i2;
+			if (indexed) {
+				i0 = indexes[i * 3] * 2;
+				i1 = indexes[i * 3 + 1] * 2;
+				i2 = indexes[i * 3 + 2] * 2;
+			} else {
+				i0 = i * 2;
+				i1 = i0 + 2;
+				i2 = i0 + 4;
+			}
+			float x0 = (float) (m00 * vertices[i0] + m01 * vertices[i0 + 1] + m02);
+			float y0 = (float) (m10 * vertices[i0] + m11 * vertices[i0 + 1] + m12);
+			float x1 = (float) (m00 * vertices[i1] + m01 * vertices[i1 + 1] + m02);
+			float y1 = (float) (m10 * vertices[i1] + m11 * vertices[i1 + 1] + m12);
+			float x2 = (float) (m00 * vertices[i2] + m01 * vertices[i2 + 1] + m02);
+			float y2 = (float) (m10 * vertices[i2] + m11 * vertices[i2 + 1] + m12);
+			float u0, v0, u1, v1, u2, v2;
+			if (ut != null) {
+				u0 = (uvs[i0] * ut.m00 + uvs[i0 + 1] * ut.m10 + ut.tx) * texW;
+				v0 = (uvs[i0] * ut.m01 + uvs[i0 + 1] * ut.m11 + ut.ty) * texH;
+				u1 = (uvs[i1] * ut.m00 + uvs[i1 + 1] * ut.m10 + ut.tx) * texW;
+				v1 = (uvs[i1] * ut.m01 + uvs[i1 + 1] * ut.m11 + ut.ty) * texH;
+				u2 = (uvs[i2] * ut.m00 + uvs[i2 + 1] * ut.m10 + ut.tx) * texW;
+				v2 = (uvs[i2] * ut.m01 + uvs[i2 + 1] * ut.m11 + ut.ty) * texH;
+			} else {
+				u0 = uvs[i0] * texW;
+				v0 = uvs[i0 + 1] * texH;
+				u1 = uvs[i1] * texW;
+				v1 = uvs[i1 + 1] * texH;
+				u2 = uvs[i2] * texW;
+				v2 = uvs[i2 + 1] * texH;
+			}
+			float area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+			if (area == 0f || area != area) {
+				continue;
+			}
+			if (area < 0f) {
+				float tmp = x1;
+				x1 = x2;
+				x2 = tmp;
+				tmp = y1;
+				y1 = y2;
+				y2 = tmp;
+				tmp = u1;
+				u1 = u2;
+				u2 = tmp;
+				tmp = v1;
+				v1 = v2;
+				v2 = tmp;
+				area = -area;
+			}
+			final int bx0 = Math.max(clipX0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+			final int by0 = Math.max(clipY0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+			final int bx1 = Math.min(clipX1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+			final int by1 = Math.min(clipY1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+			if (bx0 >= bx1 || by0 >= by1) {
+				continue;
+			}
+			final float dx1 = x1 - x0, dy1 = y1 - y0, dx2 = x2 - x0, dy2 = y2 - y0;
+			final float inv = 1f / area;
+			final float ua = ((u1 - u0) * dy2 - (u2 - u0) * dy1) * inv;
+			final float ub = ((u2 - u0) * dx1 - (u1 - u0) * dx2) * inv;
+			final float va = ((v1 - v0) * dy2 - (v2 - v0) * dy1) * inv;
+			final float vb = ((v2 - v0) * dx1 - (v1 - v0) * dx2) * inv;
+			final int o = n * TRI_FLOATS;
+			t[o] = x0;
+			t[o + 1] = y0;
+			t[o + 2] = x1;
+			t[o + 3] = y1;
+			t[o + 4] = x2;
+			t[o + 5] = y2;
+			t[o + 6] = ua;
+			t[o + 7] = ub;
+			t[o + 8] = u0 - ua * x0 - ub * y0 - TEXEL_BIAS;
+			t[o + 9] = va;
+			t[o + 10] = vb;
+			t[o + 11] = v0 - va * x0 - vb * y0 - TEXEL_BIAS;
+			final int p = n * TRI_INTS;
+			b[p] = bx0;
+			b[p + 1] = by0;
+			b[p + 2] = bx1;
+			b[p + 3] = by1;
+			n++;
+		}
+		triCount = n;
+	}
+
+	private void bin(int clipX0, int clipY0, int clipX1, int clipY1) {
+		tilesX = ((clipX1 - clipX0) + TILE_SIZE - 1) >> TILE_SHIFT;
+		tilesY = ((clipY1 - clipY0) + TILE_SIZE - 1) >> TILE_SHIFT;
+		final int tiles = tilesX * tilesY;
+		if (tileStarts.length < tiles + 1) {
+			tileStarts = new int[tiles + 1];
+		} else {
+			for (int i = 0; i <= tiles; i++) {
+				tileStarts[i] = 0;
+			}
+		}
+		final int[] starts = tileStarts;
+		final int[] b = bounds;
+		int total = 0;
+		for (int i = 0; i < triCount; i++) {
+			final int p = i * TRI_INTS;
+			final int tx0 = (b[p] - clipX0) >> TILE_SHIFT, ty0 = (b[p + 1] - clipY0) >> TILE_SHIFT;
+			final int tx1 = (b[p + 2] - 1 - clipX0) >> TILE_SHIFT, ty1 = (b[p + 3] - 1 - clipY0) >> TILE_SHIFT;
+			for (int ty = ty0; ty <= ty1; ty++) {
+				for (int tx = tx0; tx <= tx1; tx++) {
+					starts[ty * tilesX + tx + 1]++;
+				}
+			}
+			total += (tx1 - tx0 + 1) * (ty1 - ty0 + 1);
+		}
+		for (int i = 0; i < tiles; i++) {
+			starts[i + 1] += starts[i];
+		}
+		if (tileItems.length < total) {
+			tileItems = new int[total];
+		}
+		final int[] items = tileItems;
+		final int[] fill = new int[tiles];
+		for (int i = 0; i < triCount; i++) {
+			final int p = i * TRI_INTS;
+			final int tx0 = (b[p] - clipX0) >> TILE_SHIFT, ty0 = (b[p + 1] - clipY0) >> TILE_SHIFT;
+			final int tx1 = (b[p + 2] - 1 - clipX0) >> TILE_SHIFT, ty1 = (b[p + 3] - 1 - clipY0) >> TILE_SHIFT;
+			for (int ty = ty0; ty <= ty1; ty++) {
+				for (int tx = tx0; tx <= tx1; tx++) {
+					final int tile = ty * tilesX + tx;
+					items[starts[tile] + fill[tile]++] = i;
+				}
+			}
+		}
+	}
+
+	private final class TileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to, clipX0, clipY0, clipX1, clipY1;
+
+		TileTask(int from, int to, int clipX0, int clipY0, int clipX1, int clipY1) {
+			this.from = from;
+			this.to = to;
+			this.clipX0 = clipX0;
+			this.clipY0 = clipY0;
+			this.clipX1 = clipX1;
+			this.clipY1 = clipY1;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 2 || tileStarts[to] - tileStarts[from] < 32) {
+				renderTiles(from, to, clipX0, clipY0, clipX1, clipY1);
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			invokeAll(new TileTask(from, mid, clipX0, clipY0, clipX1, clipY1),
+					new TileTask(mid, to, clipX0, clipY0, clipX1, clipY1));
+		}
+	}
+
+	private void renderTiles(int from, int to, int clipX0, int clipY0, int clipX1, int clipY1) {
+		for (int tile = from; tile < to; tile++) {
+			final int start = tileStarts[tile];
+			final int end = tileStarts[tile + 1];
+			if (start == end) {
+				continue;
+			}
+			final int tx = tile % tilesX;
+			final int ty = tile / tilesX;
+			final int x0 = clipX0 + (tx << TILE_SHIFT);
+			final int y0 = clipY0 + (ty << TILE_SHIFT);
+			final int x1 = Math.min(clipX1, x0 + TILE_SIZE);
+			final int y1 = Math.min(clipY1, y0 + TILE_SIZE);
+			for (int i = start; i < end; i++) {
+				rasterize(tileItems[i], x0, y0, x1, y1);
+			}
+		}
+	}
+
+	/**
+	 * 求出第y行像素中心位于三角形内的区间,边界按端点排序后计算,保证相邻三角形的共用边得到完全相同的结果
+	 */
+	private static long span(float ax, float ay, float bx, float by, float cy, long range) {
+		int xl = (int) (range >> 32);
+		int xr = (int) range;
+		if (ay == by) {
+			if (bx > ax ? cy < ay : cy >= ay) {
+				return 0;
+			}
+			return range;
+		}
+		final float px, py, qx, qy;
+		if (ay < by || (ay == by && ax < bx)) {
+			px = ax;
+			py = ay;
+			qx = bx;
+			qy = by;
+		} else {
+			px = bx;
+			py = by;
+			qx = ax;
+			qy = ay;
+		}
+		final float cross = px + (qx - px) * ((cy - py) / (qy - py));
+		final int edge = (int) Math.ceil(cross - 0.5f);
+		if (by > ay) {
+			if (edge < xr) {
+				xr = edge;
+			}
+		} else if (edge > xl) {
+			xl = edge;
+		}
+		return ((long) xl << 32) | (xr & 0xffffffffL);
+	}
+
+	private void rasterize(int index, int tileX0, int tileY0, int tileX1, int tileY1) {
+		final float[] t = tris;
+		final int o = index * TRI_FLOATS;
+		final int p = index * TRI_INTS;
+		final float x0 = t[o], y0 = t[o + 1], x1 = t[o + 2], y1 = t[o + 3], x2 = t[o + 4], y2 = t[o + 5];
+		final float ua = t[o + 6], ub = t[o + 7], uc = t[o + 8];
+		final float va = t[o + 9], vb = t[o + 10], vc = t[o + 11];
+		final int minX = Math.max(tileX0, bounds[p]);
+		final int maxX = Math.min(tileX1, bounds[p + 2]);
+		final int minY = Math.max(tileY0, bounds[p + 1]);
+		final int maxY = Math.min(tileY1, bounds[p + 3]);
+		final int[] dst = dstPixels;
+		final int[] tex = texPixels;
+		final int rx0 = regionX0, ry0 = regionY0, rx1 = regionX1 - 1, ry1 = regionY1 - 1;
+		final int ea = extraAlpha;
+		for (int y = minY; y < maxY; y++) {
+			final float cy = y + 0.5f;
+			long range = ((long) minX << 32) | (maxX & 0xffffffffL);
+			range = span(x0, y0, x1, y1, cy, range);
+			range = span(x1, y1, x2, y2, cy, range);
+			range = span(x2, y2, x0, y0, cy, range);
+			final int xl = (int) (range >> 32);
+			final int xr = (int) range;
+			if (xl >= xr) {
+				continue;
+			}
+			final float cx = xl + 0.5f;
+			float u = ua * cx + ub * cy + uc;
+			float v = va * cx + vb * cy + vc;
+			int di = y * dstStride + xl;
+			for (int x = xl; x < xr; x++, di++, u += ua, v += va) {
+				int tu = (int) u;
+				int tv = (int) v;
+				tu = tu < rx0 ? rx0 : (tu > rx1 ? rx1 : tu);
+				tv = tv < ry0 ? ry0 : (tv > ry1 ? ry1 : tv);
+				final int src = premultiplied(tex[tv * texStride + tu], texType, ea);
+				final int sa = src >>> 24;
+				if (sa == 0) {
+					continue;
+				}
+				dst[di] = blend(src, sa, dst[di], dstType);
+			}
+		}
+	}
+
+	private static int mul255(int a, int b) {
+		final int v = a * b + 128;
+		return (v + (v >> 8)) >> 8;
+	}
+
+	private static int premultiplied(int argb, int type, int ea) {
+		int a, r, g, b;
+		if (type == BufferedImage.TYPE_INT_RGB) {
+			a = 255;
+			r = (argb >> 16) & 0xff;
+			g = (argb >> 8) & 0xff;
+			b = argb & 0xff;
+		} else {
+			a = argb >>> 24;
+			if (a == 0) {
+				return 0;
+			}
+			r = (argb >> 16) & 0xff;
+			g = (argb >> 8) & 0xff;
+			b = argb & 0xff;
+			if (type == BufferedImage.TYPE_INT_ARGB && a != 255) {
+				r = mul255(r, a);
+				g = mul255(g, a);
+				b = mul255(b, a);
+			}
+		}
+		if (ea != 255) {
+			a = mul255(a, ea);
+			r = mul255(r, ea);
+			g = mul255(g, ea);
+			b = mul255(b, ea);
+		}
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	private static int blend(int src, int sa, int dst, int type) {
+		if (sa == 255 && type != BufferedImage.TYPE_INT_ARGB) {
+			return type == BufferedImage.TYPE_INT_RGB ? src & 0xffffff : src;
+		}
+		final int inv = 255 - sa;
+		int da = type == BufferedImage.TYPE_INT_RGB ? 255 : dst >>> 24;
+		int dr = (dst >> 16) & 0xff;
+		int dg = (dst >> 8) & 0xff;
+		int db = dst & 0xff;
+		if (type == BufferedImage.TYPE_INT_ARGB && da != 255) {
+			dr = mul255(dr, da);
+			dg = mul255(dg, da);
+			db = mul255(db, da);
+		}
+		final int a = sa + mul255(da, inv);
+		int r = ((src >> 16) & 0xff) + mul255(dr, inv);
+		int g = ((src >> 8) & 0xff) + mul255(dg, inv);
+		int b = (src & 0xff) + mul255(db, inv);
+		if (type == BufferedImage.TYPE_INT_RGB) {
+			return (r << 16) | (g << 8) | b;
+		}
+		if (type == BufferedImage.TYPE_INT_ARGB && a != 255 && a != 0) {
+			r = Math.min(255, (r * 255 + (a >> 1)) / a);
+			g = Math.min(255, (g * 255 + (a >> 1)) / a);
+			b = Math.min(255, (b * 255 + (a >> 1)) / a);
+		}
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import loon.Display;
+import loon.LSystem;
+import loon.LTexture;
+import loon.Stage;
+import loon.canvas.LColor;
+import loon.opengl.DirtyRegion;
+import loon.opengl.GLEx;
+import loon.se.JavaSEGame;
+import loon.se.JavaSEImage;
+import loon.se.JavaSESetting;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 脏矩形刷新与完整重绘的比对测试(无窗口)
+ *
+ * 同一段确定的动画(平铺背景,旋转的静态装饰,移动与旋转的半透明精灵,周期性出现与消失的矩形,直接修改像素后调用invalidate的纹理,
+ * 以及完全静止的若干帧)先以脏矩形模式绘制,再以完整重绘模式绘制,检查每一帧的画面逐像素一致,静止帧被跳过,重绘的像素少于整个画面,且每帧执行渲染的次数不超过DirtyRegion.getMaxPasses().
+ */
+public class DirtyRegionTest {
+
+	private static final int WIDTH = 480, HEIGHT = 320;
+
+	private static final int FRAMES = 90;
+
+	private static int failed;
+
+	private static int maxDrawsPerFrame;
+
+	private static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	private static void fill(BufferedImage image, int seed) {
+		final Random random = new Random(seed);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				image.setRGB(x, y, 0xff000000 | random.nextInt(0xffffff));
+			}
+		}
+	}
+
+	private static LTexture createTexture(JavaSEGame game, BufferedImage image, int seed) {
+		fill(image, seed);
+		return new JavaSEImage(game.graphics(), image).texture();
+	}
+
+	/**
+	 * 所有状态只在alter中改变,draw不产生副作用(脏矩形模式下一帧可能绘制多次)
+	 */
+	private static class SceneScreen extends Stage {
+
+		final LTexture tile, sprite, editable;
+
+		final BufferedImage editableImage;
+
+		final float[] decorations = new float[40 * 3];
+
+		int frame;
+
+		int draws;
+
+		SceneScreen(LTexture tile, LTexture sprite, LTexture editable, BufferedImage editableImage) {
+			this.tile = tile;
+			this.sprite = sprite;
+			this.editable = editable;
+			this.editableImage = editableImage;
+			final Random random = new Random(5);
+			for (int i = 0; i < decorations.length; i += 3) {
+				decorations[i] = random.nextInt(WIDTH - 32);
+				decorations[i + 1] = random.nextInt(HEIGHT - 32);
+				decorations[i + 2] = random.nextInt(360);
+			}
+		}
+
+		@Override
+		public void create() {
+		}
+
+		/**
+		 * 第30到44帧完全静止
+		 */
+		boolean moving() {
+			return frame < 30 || frame >= 45;
+		}
+
+		@Override
+		public void alter(LTimerContext timer) {
+			super.alter(timer);
+			frame++;
+			// 每20帧直接改写一次纹理像素,GLEx无法察觉,需要报告给Display
+			if (frame % 20 == 10) {
+				for (int y = 0; y < editableImage.getHeight(); y++) {
+					for (int x = 0; x < editableImage.getWidth(); x++) {
+						editableImage.setRGB(x, y, 0xff000000 | (frame * 0x10203 + x * 7 + y * 0x300));
+					}
+				}
+				LSystem.base().display().invalidate(400, 240, 48, 48);
+			}
+		}
+
+		int motion() {
+			return frame < 30 ? frame : frame < 45 ? 30 : frame - 15;
+		}
+
+		@Override
+		public void draw(GLEx g) {
+			draws++;
+			final int t = motion();
+			for (int y = 0; y < HEIGHT; y += 64) {
+				for (int x = 0; x < WIDTH; x += 64) {
+					g.draw(tile, x, y, 64, 64);
+				}
+			}
+			for (int i = 0; i < decorations.length; i += 3) {
+				g.draw(sprite, decorations[i], decorations[i + 1], 24, 24, LColor.white, decorations[i + 2]);
+			}
+			g.draw(editable, 400, 240, 48, 48);
+			// 周期性出现又消失的矩形,消失后原位置必须恢复为背景
+			if ((t / 10) % 2 == 0) {
+				g.fillRect(300, 40, 50, 30, LColor.red);
+			}
+			// 移动的精灵,数量多于DirtyRegion可保留的矩形数
+			for (int i = 0; i < 12; i++) {
+				final float x = (i * 37 + t * (2 + i % 3)) % (WIDTH - 32);
+				final float y = 20 + i * 23 + (t % 7);
+				g.draw(sprite, x, y, 32, 32, i % 2 == 0 ? LColor.white : new LColor(1f, 1f, 1f, 0.5f), t * 6 + i * 30);
+			}
+		}
+	}
+
+	private static ArrayList<int[]> run(JavaSEGame game, Display display, SceneScreen screen, boolean dirty) {
+		game.setting.dirtyRegionRefresh = dirty;
+		screen.frame = 0;
+		screen.draws = 0;
+		maxDrawsPerFrame = 0;
+		fill(screen.editableImage, 3);
+		final ArrayList<int[]> frames = new ArrayList<int[]>();
+		final LTimerContext clock = new LTimerContext();
+		clock.timeSinceLastUpdate = 16;
+		clock.unscaledTimeSinceLastUpdate = 16;
+		for (int i = 0; i < FRAMES; i++) {
+			clock.tick += 16;
+			final int draws = screen.draws;
+			display.paint(clock);
+			maxDrawsPerFrame = Math.max(maxDrawsPerFrame, screen.draws - draws);
+			frames.add(game.graphics().getCanvas().getImage().getPixels());
+		}
+		return frames;
+	}
+
+	public static void main(String[] args) {
+		JavaSESetting setting = new JavaSESetting();
+		// 离屏双缓冲才能保留上一帧的画面,同时可以在无显示环境中运行
+		setting.doubleBuffer = true;
+		setting.width = WIDTH;
+		setting.height = HEIGHT;
+		setting.isLogo = false;
+		JavaSEGame game = new JavaSEGame(null, setting);
+		BufferedImage editableImage = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB_PRE);
+		SceneScreen screen = new SceneScreen(
+				createTexture(game, new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB_PRE), 1),
+				createTexture(game, new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB_PRE), 2),
+				createTexture(game, editableImage, 3), editableImage);
+		Display display = game.register(screen);
+
+		ArrayList<int[]> dirty = run(game, display, screen, true);
+		final DirtyRegion region = display.getDirtyRegion();
+		final int dirtyDraws = screen.draws;
+		final int dirtyMaxDraws = maxDrawsPerFrame;
+		System.out.println(region);
+		ArrayList<int[]> full = run(game, display, screen, false);
+
+		int mismatched = 0, firstMismatch = -1;
+		for (int i = 0; i < FRAMES; i++) {
+			if (!Arrays.equals(dirty.get(i), full.get(i))) {
+				mismatched++;
+				if (firstMismatch == -1) {
+					firstMismatch = i;
+				}
+			}
+		}
+		check("dirty region mode was active", region != null && region.getFrames() == FRAMES);
+		check("every frame identical to full redraw"
+				+ (mismatched > 0 ? " (" + mismatched + " differ, first " + firstMismatch + ")" : ""), mismatched == 0);
+		check("static frames skipped", region != null && region.getSkippedFrames() >= 10);
+		// 移动的精灵多于maxPasses,运动的帧大多会退回全屏重绘,节省主要来自静止与只有少量变化的帧
+		check("fewer pixels redrawn than full frames", region != null && region.getAverageRatio() < 0.9f);
+		check("draw passes per frame capped at " + region.getMaxPasses() + " (max " + dirtyMaxDraws + ")",
+				dirtyMaxDraws <= region.getMaxPasses());
+		System.out.println("scene draws: dirty " + dirtyDraws + ", full " + screen.draws);
+
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
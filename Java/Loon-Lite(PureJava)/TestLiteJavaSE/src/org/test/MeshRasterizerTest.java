@@ -0,0 +1,244 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import loon.LTexture;
+import loon.opengl.MeshData;
+import loon.se.JavaSECanvas;
+import loon.se.JavaSEGame;
+import loon.se.JavaSEImage;
+import loon.se.JavaSEMesh;
+import loon.se.JavaSEMeshRasterizer;
+import loon.se.JavaSESetting;
+
+/**
+ * JavaSEMeshRasterizer与Java2D逐三角形绘制的比对测试(无窗口)
+ *
+ * 以最近邻插值的Java2D绘制结果为基准图像:像素对齐的网格必须逐像素一致,带随机抖动的网格只允许少量采样边界上的差异且覆盖范围一致,
+ * 纹理子区域同样比对,半透明绘制时每个被覆盖的像素都只混合一次,并行分块与单线程的结果完全一致.
+ */
+public class MeshRasterizerTest {
+
+	private static final int WIDTH = 256, HEIGHT = 192;
+
+	private static int failed;
+
+	private static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	private static class TestCanvas extends JavaSECanvas {
+
+		final BufferedImage buffer;
+
+		TestCanvas(JavaSEGame game, BufferedImage buffer) {
+			super(game.graphics(), new JavaSEImage(game.graphics(), buffer));
+			this.buffer = buffer;
+			context.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+			context.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+					RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		}
+
+		Graphics2D graphics() {
+			return context;
+		}
+
+		int[] pixels() {
+			return ((DataBufferInt) buffer.getRaster().getDataBuffer()).getData();
+		}
+	}
+
+	/**
+	 * 每个纹素颜色不同的纹理
+	 */
+	private static LTexture createTexture(JavaSEGame game, int size) {
+		BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				image.setRGB(x, y, 0xff000000 | ((x * 255 / size) << 16) | ((y * 255 / size) << 8) | ((x ^ y) & 0xff));
+			}
+		}
+		return new JavaSEImage(game.graphics(), image).texture();
+	}
+
+	private static MeshData createGrid(LTexture texture, float left, float top, int cols, int rows, float cell,
+			float jitter, long seed) {
+		return createGrid(texture, left, top, cols, rows, cell, jitter, seed, 0f, 0f, 1f, 1f);
+	}
+
+	/**
+	 * cols*rows个格子组成的网格,格子大小为cell,jitter大于0时随机移动内部顶点,uv(相对整张图像)从u0,v0线性变化到u1,v1
+	 */
+	private static MeshData createGrid(LTexture texture, float left, float top, int cols, int rows, float cell,
+			float jitter, long seed, float u0, float v0, float u1, float v1) {
+		final Random random = new Random(seed);
+		final float[] vertices = new float[(cols + 1) * (rows + 1) * 2];
+		final float[] uvs = new float[vertices.length];
+		for (int y = 0, i = 0; y <= rows; y++) {
+			for (int x = 0; x <= cols; x++, i += 2) {
+				final boolean inner = x > 0 && y > 0 && x < cols && y < rows;
+				vertices[i] = left + x * cell + (inner ? (random.nextFloat() - 0.5f) * jitter : 0f);
+				vertices[i + 1] = top + y * cell + (inner ? (random.nextFloat() - 0.5f) * jitter : 0f);
+				uvs[i] = u0 + (u1 - u0) * x / cols;
+				uvs[i + 1] = v0 + (v1 - v0) * y / rows;
+			}
+		}
+		final int[] indexes = new int[cols * rows * 6];
+		for (int y = 0, i = 0; y < rows; y++) {
+			for (int x = 0; x < cols; x++) {
+				final int a = y * (cols + 1) + x, b = a + 1, c = a + cols + 1, d = c + 1;
+				indexes[i++] = a;
+				indexes[i++] = b;
+				indexes[i++] = c;
+				indexes[i++] = b;
+				indexes[i++] = d;
+				indexes[i++] = c;
+			}
+		}
+		MeshData mesh = new MeshData();
+		mesh.texture = texture;
+		mesh.vertices = vertices;
+		mesh.uvs = uvs;
+		mesh.indexes = indexes;
+		mesh.canvasPadding = 0;
+		return mesh;
+	}
+
+	private static TestCanvas render(JavaSEGame game, MeshData mesh, boolean software, float alpha,
+			JavaSEMeshRasterizer rasterizer) {
+		TestCanvas canvas = new TestCanvas(game, new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE));
+		if (alpha < 1f) {
+			canvas.graphics().setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+		}
+		if (software) {
+			// 返回false时JavaSEMesh会退回Java2D,比对就失去了意义
+			if (!rasterizer.draw(canvas, mesh, true, null)) {
+				check("rasterizer accepts the mesh", false);
+			}
+		} else {
+			JavaSEMesh java2d = new JavaSEMesh(canvas);
+			java2d.setSoftwareRasterizer(false);
+			java2d.setMesh(mesh);
+			java2d.paint();
+		}
+		return canvas;
+	}
+
+	private static int colorDiffs(int[] a, int[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int coverageDiffs(int[] a, int[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			if ((a[i] == 0) != (b[i] == 0)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int covered(int[] a) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public static void main(String[] args) {
+		JavaSESetting setting = new JavaSESetting();
+		// 不查询屏幕dpi,可以在无显示环境中运行
+		setting.doubleBuffer = true;
+		JavaSEGame game = new JavaSEGame(null, setting);
+		JavaSEMeshRasterizer rasterizer = new JavaSEMeshRasterizer(null);
+		LTexture texture = createTexture(game, 64);
+
+		// 每个格子8x8像素,对应8x8个纹素
+		MeshData aligned = createGrid(texture, 16, 16, 8, 8, 8f, 0f, 1);
+		int[] expected = render(game, aligned, false, 1f, rasterizer).pixels();
+		int[] actual = render(game, aligned, true, 1f, rasterizer).pixels();
+		check("aligned grid: covers the 64x64 area", covered(expected) == 64 * 64);
+		check("aligned grid: pixel-identical to Java2D", colorDiffs(expected, actual) == 0);
+
+		// 放大并带随机抖动的网格,只在采样恰好落在纹素边界上时相差一个纹素
+		MeshData jittered = createGrid(texture, 8, 8, 12, 8, 18f, 9f, 2);
+		expected = render(game, jittered, false, 1f, rasterizer).pixels();
+		actual = render(game, jittered, true, 1f, rasterizer).pixels();
+		final int area = covered(expected);
+		final int diffs = colorDiffs(expected, actual);
+		System.out.println("jittered grid: " + diffs + " of " + area + " pixels differ");
+		check("jittered grid: same coverage as Java2D", coverageDiffs(expected, actual) <= area / 500);
+		check("jittered grid: under 2% of pixels differ", diffs < area / 50);
+
+		// 纹理子区域(图集中的一块),uv仍然是相对整张图像的坐标
+		MeshData region = createGrid(texture.copy(16, 8, 32, 32), 40, 30, 4, 4, 16f, 0f, 3, 0.25f, 0.125f, 0.75f,
+				0.625f);
+		expected = render(game, region, false, 1f, rasterizer).pixels();
+		actual = render(game, region, true, 1f, rasterizer).pixels();
+		check("texture region: covers the 64x64 area", covered(expected) == 64 * 64);
+		check("texture region: pixel-identical to Java2D", colorDiffs(expected, actual) == 0);
+		check("texture region: starts at texel (16,8)",
+				actual[30 * WIDTH + 40] == (0xff000000 | ((16 * 255 / 64) << 16) | ((8 * 255 / 64) << 8) | (16 ^ 8)));
+
+		// 半透明绘制,共享边上的像素被重复覆盖时alpha会超过一半
+		actual = render(game, jittered, true, 0.5f, rasterizer).pixels();
+		int minAlpha = 255, maxAlpha = 0;
+		for (int i = 0; i < actual.length; i++) {
+			if (actual[i] != 0) {
+				final int a = actual[i] >>> 24;
+				minAlpha = Math.min(minAlpha, a);
+				maxAlpha = Math.max(maxAlpha, a);
+			}
+		}
+		check("half alpha: every pixel blended exactly once", covered(actual) == area && minAlpha == 128
+				&& maxAlpha == 128);
+
+		// 多分块并行与单线程逐块绘制结果一致
+		JavaSEMeshRasterizer parallel = new JavaSEMeshRasterizer(new ForkJoinPool(4)).setParallelThreshold(1);
+		MeshData large = createGrid(texture, 0, 0, 32, 24, 8f, 5f, 4);
+		expected = render(game, large, true, 0.75f, rasterizer).pixels();
+		actual = render(game, large, true, 0.75f, parallel).pixels();
+		check("parallel tiles identical to single thread", colorDiffs(expected, actual) == 0);
+
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
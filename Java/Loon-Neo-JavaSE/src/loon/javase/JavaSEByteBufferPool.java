@@ -0,0 +1,106 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * 按2的幂分级缓存的直接内存ByteBuffer池,超过最大级别的请求直接分配堆内存且不回收
+ */
+public final class JavaSEByteBufferPool {
+
+	private static final int MIN_SHIFT = 12;
+
+	private static final int MAX_SHIFT = 20;
+
+	private final ArrayDeque<ByteBuffer>[] buckets;
+
+	private final int maxPerBucket;
+
+	private int allocated;
+
+	public JavaSEByteBufferPool() {
+		this(64);
+	}
+
+	@SuppressWarnings("unchecked")
+	public JavaSEByteBufferPool(int maxPerBucket) {
+		this.maxPerBucket = maxPerBucket;
+		this.buckets = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[MAX_SHIFT - MIN_SHIFT + 1];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new ArrayDeque<ByteBuffer>();
+		}
+	}
+
+	private static int bucket(int size) {
+		int shift = MIN_SHIFT;
+		while ((1 << shift) < size) {
+			shift++;
+		}
+		return shift - MIN_SHIFT;
+	}
+
+	/**
+	 * 获得容量不小于size的空ByteBuffer
+	 *
+	 * @param size
+	 * @return
+	 */
+	public ByteBuffer acquire(int size) {
+		if (size > (1 << MAX_SHIFT)) {
+			return ByteBuffer.allocate(size);
+		}
+		final int idx = bucket(size);
+		ByteBuffer buffer;
+		synchronized (this) {
+			buffer = buckets[idx].poll();
+			if (buffer == null) {
+				allocated++;
+			}
+		}
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(1 << (idx + MIN_SHIFT));
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return;
+		}
+		final int capacity = buffer.capacity();
+		if (Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SHIFT) || capacity > (1 << MAX_SHIFT)) {
+			return;
+		}
+		final int idx = bucket(capacity);
+		synchronized (this) {
+			if (buckets[idx].size() < maxPerBucket) {
+				buckets[idx].add(buffer);
+			}
+		}
+	}
+
+	public synchronized int getAllocatedCount() {
+		return allocated;
+	}
+}
@@ -32,14 +32,18 @@ import java.util.concurrent.TimeUnit;
 import org.lwjgl.opengl.Display;
 
 import loon.*;
+import loon.action.ActionTweenBatch;
 import loon.canvas.Image;
+import loon.canvas.PNGEncoder;
 import loon.canvas.Pixmap;
 import loon.events.KeyMake;
 import loon.geom.Dimension;
 import loon.jni.NativeSupport;
+import loon.opengl.light.LightVisibility;
 import loon.utils.Language;
 import loon.utils.Scale;
 import loon.utils.reply.Port;
+import loon.utils.res.loaders.PreloadStreamer;
 
 public class JavaSEGame extends LGame {
 
@@ -50,6 +54,14 @@ public class JavaSEGame extends LGame {
 		public boolean vSyncEnabled = true;
 
 		public String[] iconPaths = null;
+
+		public boolean parallelImageEncode = true;
+
+		public String saveDirectory = null;
+
+		public long saveFlushInterval = JavaSESave.DEFAULT_FLUSH_INTERVAL;
+
+		public boolean nioNetwork = false;
 	}
 
 	final static private Runtime systemRuntime = Runtime.getRuntime();
@@ -210,7 +222,13 @@ public class JavaSEGame extends LGame {
 		this.preInit();
 		this.graphics = createGraphics();
 		this.input = createInput();
-		this.save = new JavaSESave(log, config.appName);
+		if (config instanceof JavaSetting) {
+			JavaSetting nativeSetting = (JavaSetting) config;
+			this.save = new JavaSESave(log, config.appName, nativeSetting.saveDirectory,
+					nativeSetting.saveFlushInterval);
+		} else {
+			this.save = new JavaSESave(log, config.appName);
+		}
 		this.clipboard = new JavaSEClipboard();
 		if (config.activationKey != -1) {
 			input.keyboardEvents.connect(new Port<KeyMake.Event>() {
@@ -224,10 +242,21 @@ public class JavaSEGame extends LGame {
 				}
 			});
 		}
+		boolean parallelImageEncode = true;
 		if (config instanceof JavaSetting) {
 			JavaSetting nativeSetting = (JavaSetting) config;
 			Display.setResizable(nativeSetting.resizable);
+			parallelImageEncode = nativeSetting.parallelImageEncode;
+		}
+		if (parallelImageEncode && systemRuntime.availableProcessors() > 1) {
+			PNGEncoder.setExecutor(new JavaSEPNGExecutor());
 		}
+		if (systemRuntime.availableProcessors() > 1) {
+			LightVisibility.setExecutor(new JavaSELightExecutor());
+			ActionTweenBatch.setDefaultExecutor(new JavaSETweenExecutor());
+		}
+		FrameProfiler.setSampler(new JavaSEProfilerSampler());
+		PreloadStreamer.setExecutor(new JavaSEPreloadExecutor());
 		Display.setInitialBackground(0, 0, 0);
 		this.setTitle(config.appName);
 		this.initProcess();
@@ -269,6 +298,9 @@ public class JavaSEGame extends LGame {
 
 	@Override
 	public NetworkClient networkClient() {
+		if (setting instanceof JavaSetting && ((JavaSetting) setting).nioNetwork) {
+			return new JavaSENioSocketClient();
+		}
 		return new JavaSESocketClient();
 	}
 
@@ -403,6 +435,7 @@ public class JavaSEGame extends LGame {
 
 	public void shutdown() {
 		super.shutdown();
+		save.close();
 		try {
 			pool.shutdown();
 			pool.awaitTermination(1, TimeUnit.SECONDS);
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import loon.LRelease;
+import loon.LSysException;
+
+/**
+ * 在同一JVM中并行运行多个互相隔离的HeadlessGame.
+ *
+ * Loon的全局对象皆为静态单例,因此每个工作线程都持有一个独立的ClassLoader(不委托给应用ClassLoader),
+ * 在其中重新加载引擎与游戏代码,线程之间不共享任何静态状态.
+ *
+ * 任务类需实现java.util.concurrent.Callable,并提供以long(随机种子)为参数的构造函数,
+ * 在call中自行构建HeadlessGame并推进,返回值应当只使用JDK自带类型(否则无法在加载器之间传递).
+ *
+ * <pre>
+ * JavaSEHeadlessPool pool = new JavaSEHeadlessPool(8);
+ * Object[] results = pool.invokeAll("game.ReplayTask", seeds);
+ * pool.close();
+ * </pre>
+ */
+public class JavaSEHeadlessPool implements LRelease {
+
+	private final class WorkerFactory implements ThreadFactory {
+
+		private final AtomicInteger _count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, "HeadlessWorker-" + _count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private final class SimulationTask implements Callable<Object> {
+
+		private final String _className;
+
+		private final long _seed;
+
+		SimulationTask(String className, long seed) {
+			this._className = className;
+			this._seed = seed;
+		}
+
+		@Override
+		public Object call() throws Exception {
+			final ClassLoader loader = _loaders.get();
+			final Thread thread = Thread.currentThread();
+			final ClassLoader old = thread.getContextClassLoader();
+			thread.setContextClassLoader(loader);
+			try {
+				final Class<?> clazz = Class.forName(_className, true, loader);
+				if (!Callable.class.isAssignableFrom(clazz)) {
+					throw new LSysException("The headless task must implement Callable: " + _className);
+				}
+				Object task;
+				try {
+					final Constructor<?> ctor = clazz.getConstructor(long.class);
+					task = ctor.newInstance(_seed);
+				} catch (NoSuchMethodException e) {
+					task = clazz.getConstructor().newInstance();
+				}
+				return ((Callable<?>) task).call();
+			} finally {
+				thread.setContextClassLoader(old);
+			}
+		}
+	}
+
+	private final URL[] _classpath;
+
+	private final ExecutorService _executor;
+
+	private final ThreadLocal<ClassLoader> _loaders = new ThreadLocal<ClassLoader>() {
+		@Override
+		protected ClassLoader initialValue() {
+			return new URLClassLoader(_classpath, ClassLoader.getPlatformClassLoader());
+		}
+	};
+
+	public JavaSEHeadlessPool(int workers) {
+		this(workers, currentClasspath());
+	}
+
+	public JavaSEHeadlessPool(int workers, URL... classpath) {
+		if (workers <= 0) {
+			throw new LSysException("The workers must be greater than 0 !");
+		}
+		if (classpath == null || classpath.length == 0) {
+			throw new LSysException("The headless classpath cannot be empty !");
+		}
+		this._classpath = classpath;
+		this._executor = Executors.newFixedThreadPool(workers, new WorkerFactory());
+	}
+
+	/**
+	 * 以当前java.class.path构建隔离加载器使用的路径
+	 *
+	 * @return
+	 */
+	public static URL[] currentClasspath() {
+		final String[] paths = System.getProperty("java.class.path", "").split(File.pathSeparator);
+		final URL[] urls = new URL[paths.length];
+		try {
+			for (int i = 0; i < paths.length; i++) {
+				urls[i] = new File(paths[i]).toURI().toURL();
+			}
+		} catch (Exception e) {
+			throw new LSysException(e.getMessage(), e);
+		}
+		return urls;
+	}
+
+	/**
+	 * 提交一个模拟任务,任务在所属工作线程独占的ClassLoader中执行
+	 *
+	 * @param className
+	 * @param seed
+	 * @return
+	 */
+	public Future<Object> submit(String className, long seed) {
+		return _executor.submit(new SimulationTask(className, seed));
+	}
+
+	/**
+	 * 以不同种子并行执行同一任务,并按种子顺序返回结果
+	 *
+	 * @param className
+	 * @param seeds
+	 * @return
+	 */
+	public Object[] invokeAll(String className, long... seeds) {
+		final int size = seeds.length;
+		final Future<?>[] futures = new Future<?>[size];
+		for (int i = 0; i < size; i++) {
+			futures[i] = submit(className, seeds[i]);
+		}
+		final Object[] results = new Object[size];
+		try {
+			for (int i = 0; i < size; i++) {
+				results[i] = futures[i].get();
+			}
+		} catch (Exception e) {
+			throw new LSysException("Headless simulation failed: " + className, e);
+		}
+		return results;
+	}
+
+	@Override
+	public void close() {
+		_executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import loon.opengl.light.LightVisibility;
+
+/**
+ * 使用ForkJoinPool并行计算多个光源的可见多边形
+ */
+public class JavaSELightExecutor implements LightVisibility.Executor {
+
+	@Override
+	public void execute(Runnable[] tasks) {
+		final ForkJoinPool pool = ForkJoinPool.commonPool();
+		final ForkJoinTask<?>[] forks = new ForkJoinTask<?>[tasks.length];
+		for (int i = 1; i < tasks.length; i++) {
+			forks[i] = pool.submit(tasks[i]);
+		}
+		// 当前线程执行第一个光源
+		tasks[0].run();
+		for (int i = 1; i < tasks.length; i++) {
+			forks[i].join();
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import loon.LSysException;
+
+/**
+ * 多个JavaSENioSocketClient共用的Selector事件循环.
+ *
+ * 全部通道的注册,读写与定时任务都在同一个后台线程中执行,读数据使用循环内唯一的直接内存缓冲,因此连接再多也只占用一个线程.
+ */
+public final class JavaSENioEventLoop implements Runnable {
+
+	/**
+	 * 注册到事件循环中的通道处理者,回调总是在事件循环线程中执行
+	 */
+	interface Selectable {
+
+		void select(SelectionKey key) throws IOException;
+
+		void failed(Throwable cause);
+	}
+
+	/**
+	 * schedule返回的定时任务
+	 */
+	public static final class Timeout implements Comparable<Timeout> {
+
+		private final Runnable task;
+
+		private final long period;
+
+		private long seq;
+
+		private long deadline;
+
+		private volatile boolean cancelled;
+
+		Timeout(Runnable task, long deadline, long period) {
+			this.task = task;
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public int compareTo(Timeout o) {
+			if (deadline != o.deadline) {
+				return deadline < o.deadline ? -1 : 1;
+			}
+			return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+		}
+	}
+
+	public static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private static JavaSENioEventLoop defaultLoop;
+
+	/**
+	 * 获得全局共用的事件循环,首次调用时启动
+	 *
+	 * @return
+	 */
+	public synchronized static JavaSENioEventLoop getDefault() {
+		if (defaultLoop == null || !defaultLoop.isRunning()) {
+			defaultLoop = new JavaSENioEventLoop("LoonNioLoop");
+			defaultLoop.start();
+		}
+		return defaultLoop;
+	}
+
+	private final Selector selector;
+
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	private final AtomicBoolean wakeup = new AtomicBoolean();
+
+	private final PriorityQueue<Timeout> timers = new PriorityQueue<Timeout>();
+
+	private final JavaSEByteBufferPool pool = new JavaSEByteBufferPool();
+
+	private final ByteBuffer readBuffer;
+
+	private final Thread thread;
+
+	private long timerSeq;
+
+	private volatile boolean running;
+
+	public JavaSENioEventLoop(String name) {
+		try {
+			this.selector = Selector.open();
+		} catch (IOException e) {
+			throw new LSysException("Couldn't open selector: " + e.getMessage(), e);
+		}
+		this.readBuffer = pool.acquire(READ_BUFFER_SIZE);
+		this.thread = new Thread(this, name);
+		this.thread.setDaemon(true);
+	}
+
+	public JavaSENioEventLoop start() {
+		if (!running) {
+			running = true;
+			thread.start();
+		}
+		return this;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public boolean inLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * 在事件循环线程中执行任务,若当前已在事件循环中则立即执行
+	 *
+	 * @param task
+	 */
+	public void execute(Runnable task) {
+		if (inLoop()) {
+			task.run();
+		} else {
+			tasks.add(task);
+			wakeup();
+		}
+	}
+
+	public Timeout schedule(Runnable task, long delayMillis) {
+		return schedule(task, delayMillis, 0);
+	}
+
+	/**
+	 * 添加定时任务,period大于0时按固定间隔重复执行
+	 *
+	 * @param task
+	 * @param delayMillis
+	 * @param periodMillis
+	 * @return
+	 */
+	public Timeout schedule(Runnable task, long delayMillis, long periodMillis) {
+		final Timeout timeout = new Timeout(task, System.currentTimeMillis() + Math.max(0, delayMillis),
+				Math.max(0, periodMillis));
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				timeout.seq = timerSeq++;
+				timers.add(timeout);
+			}
+		});
+		return timeout;
+	}
+
+	private void wakeup() {
+		if (wakeup.compareAndSet(false, true)) {
+			selector.wakeup();
+		}
+	}
+
+	Selector selector() {
+		return selector;
+	}
+
+	JavaSEByteBufferPool pool() {
+		return pool;
+	}
+
+	/**
+	 * 事件循环内共用的读缓冲,只能在事件循环线程中使用
+	 *
+	 * @return
+	 */
+	ByteBuffer readBuffer() {
+		return readBuffer;
+	}
+
+	public void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				long wait = 0;
+				if (tasks.isEmpty()) {
+					final Timeout next = timers.peek();
+					if (next != null) {
+						wait = Math.max(1, next.deadline - System.currentTimeMillis());
+					}
+					selector.select(wait);
+				} else {
+					selector.selectNow();
+				}
+				wakeup.set(false);
+				processKeys();
+				runTasks();
+				runTimers();
+			} catch (Throwable e) {
+				if (!running) {
+					break;
+				}
+			}
+		}
+		for (SelectionKey key : selector.keys()) {
+			final Object attachment = key.attachment();
+			if (attachment instanceof Selectable) {
+				((Selectable) attachment).failed(new IOException("Event loop closed"));
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+		}
+	}
+
+	private void processKeys() {
+		final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+		while (it.hasNext()) {
+			final SelectionKey key = it.next();
+			it.remove();
+			final Selectable selectable = (Selectable) key.attachment();
+			try {
+				if (key.isValid()) {
+					selectable.select(key);
+				}
+			} catch (CancelledKeyException e) {
+			} catch (Throwable e) {
+				selectable.failed(e);
+			}
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Throwable e) {
+			}
+		}
+	}
+
+	private void runTimers() {
+		final long now = System.currentTimeMillis();
+		Timeout timeout;
+		while ((timeout = timers.peek()) != null && timeout.deadline <= now) {
+			timers.poll();
+			if (timeout.cancelled) {
+				continue;
+			}
+			try {
+				timeout.task.run();
+			} catch (Throwable e) {
+			}
+			if (timeout.period > 0 && !timeout.cancelled) {
+				timeout.deadline = now + timeout.period;
+				timers.add(timeout);
+			}
+		}
+	}
+}
@@ -0,0 +1,723 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import loon.NetworkClient;
+import loon.NetworkMessageHandler;
+
+/**
+ * 基于共用Selector事件循环的NetworkClient实现,适合在同一进程中建立大量连接.
+ *
+ * 默认每条消息以4字节大端长度为前缀,完整位于读缓冲内的消息直接以切片交给FrameHandler,跨越多次读取的消息在池化缓冲中拼接.
+ * 发送的消息先进入队列,由事件循环合并写入(大消息使用聚集写),待发送字节超过高水位时send会阻塞至低于低水位,trySend则直接返回false.
+ */
+public class JavaSENioSocketClient implements NetworkClient, JavaSENioEventLoop.Selectable {
+
+	/**
+	 * 零拷贝消息回调,frame只在回调期间有效,在事件循环线程中执行
+	 */
+	public interface FrameHandler {
+
+		void onFrame(JavaSENioSocketClient client, ByteBuffer frame);
+	}
+
+	public static final int HEADER_SIZE = 4;
+
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+	public static final int DEFAULT_HIGH_WATER_MARK = 1024 * 1024;
+
+	public static final int DEFAULT_LOW_WATER_MARK = 256 * 1024;
+
+	public static final int DEFAULT_SEND_TIMEOUT = 5000;
+
+	private static final int WRITE_BUFFER_SIZE = 32 * 1024;
+
+	private static final int GATHER_THRESHOLD = WRITE_BUFFER_SIZE / 2;
+
+	private static final int MAX_READS_PER_SELECT = 16;
+
+	private final JavaSENioEventLoop loop;
+	private final Object outLock = new Object();
+	private final ArrayDeque<byte[]> outQueue = new ArrayDeque<byte[]>();
+	private final ByteBuffer[] gather = new ByteBuffer[2];
+	private final byte[] header = new byte[HEADER_SIZE];
+	private final BlockingQueue<byte[]> responseQueue = new ArrayBlockingQueue<byte[]>(1);
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+
+	private NetworkMessageHandler messageHandler;
+	private FrameHandler frameHandler;
+	private Runnable openCallback;
+	private Runnable closeCallback;
+	private Consumer<Exception> errorCallback;
+
+	private SocketChannel channel;
+	private SelectionKey key;
+	private volatile boolean connected;
+	private volatile boolean closed = true;
+	private volatile boolean awaitingResponse;
+
+	private boolean framed = true;
+	private int maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
+	private int highWaterMark = DEFAULT_HIGH_WATER_MARK;
+	private int lowWaterMark = DEFAULT_LOW_WATER_MARK;
+	private int sendTimeout = DEFAULT_SEND_TIMEOUT;
+	private boolean useTLS = false;
+
+	private int outOffset;
+	private long pendingBytes;
+	private boolean writeScheduled;
+	private ByteBuffer writeBuffer;
+
+	private ByteBuffer frame;
+	private int headerRead;
+
+	private int reconnectInterval = 0;
+	private InetSocketAddress lastAddress;
+	private JavaSENioEventLoop.Timeout heartbeatTimeout;
+	private JavaSENioEventLoop.Timeout idleTimeout;
+	private volatile long lastReadTime;
+
+	public JavaSENioSocketClient() {
+		this(JavaSENioEventLoop.getDefault());
+	}
+
+	public JavaSENioSocketClient(JavaSENioEventLoop loop) {
+		this.loop = loop;
+	}
+
+	@Override
+	public void connect(String host, int port) {
+		final InetSocketAddress address;
+		try {
+			address = new InetSocketAddress(host, port);
+		} catch (Exception e) {
+			error(e);
+			return;
+		}
+		connect(address);
+	}
+
+	@Override
+	public void connect(String uri) {
+		try {
+			String[] parts = uri.split(":");
+			if (parts.length == 2) {
+				connect(parts[0], Integer.parseInt(parts[1]));
+			} else {
+				connect(uri, 80);
+			}
+		} catch (Exception e) {
+			error(e);
+		}
+	}
+
+	public void connect(final InetSocketAddress address) {
+		this.lastAddress = address;
+		this.closed = false;
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				open(address);
+			}
+		});
+	}
+
+	private void open(InetSocketAddress address) {
+		if (closed || channel != null) {
+			return;
+		}
+		try {
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			if (channel.connect(address)) {
+				key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+				connected();
+			} else {
+				key = channel.register(loop.selector(), SelectionKey.OP_CONNECT, this);
+			}
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	private void connected() {
+		connected = true;
+		lastReadTime = System.currentTimeMillis();
+		headerRead = 0;
+		synchronized (outLock) {
+			outOffset = framed ? -HEADER_SIZE : 0;
+			pendingBytes = 0;
+			for (byte[] data : outQueue) {
+				pendingBytes += data.length + (framed ? HEADER_SIZE : 0);
+			}
+			writeScheduled = !outQueue.isEmpty();
+		}
+		if (openCallback != null) {
+			openCallback.run();
+		}
+		if (writeScheduled) {
+			flush();
+		}
+	}
+
+	@Override
+	public void select(SelectionKey key) throws IOException {
+		if (key.isConnectable()) {
+			if (!channel.finishConnect()) {
+				return;
+			}
+			key.interestOps(SelectionKey.OP_READ);
+			connected();
+			return;
+		}
+		if (key.isReadable()) {
+			read();
+		}
+		if (key.isValid() && key.isWritable()) {
+			flush();
+		}
+	}
+
+	private void read() throws IOException {
+		final ByteBuffer buffer = loop.readBuffer();
+		for (int i = 0; i < MAX_READS_PER_SELECT && channel != null; i++) {
+			buffer.clear();
+			final int len = channel.read(buffer);
+			if (len < 0) {
+				shutdown(true, null);
+				return;
+			}
+			if (len == 0) {
+				return;
+			}
+			lastReadTime = System.currentTimeMillis();
+			buffer.flip();
+			if (framed) {
+				decode(buffer);
+			} else {
+				deliver(buffer);
+			}
+			if (len < buffer.capacity()) {
+				return;
+			}
+		}
+	}
+
+	private void decode(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining() && channel != null) {
+			if (frame == null) {
+				int length;
+				if (headerRead == 0 && buffer.remaining() >= HEADER_SIZE) {
+					length = buffer.getInt();
+				} else {
+					while (headerRead < HEADER_SIZE && buffer.hasRemaining()) {
+						header[headerRead++] = buffer.get();
+					}
+					if (headerRead < HEADER_SIZE) {
+						return;
+					}
+					headerRead = 0;
+					length = ((header[0] & 0xff) << 24) | ((header[1] & 0xff) << 16) | ((header[2] & 0xff) << 8)
+							| (header[3] & 0xff);
+				}
+				if (length < 0 || length > maxFrameLength) {
+					throw new IOException("Frame length out of range : " + length);
+				}
+				if (buffer.remaining() >= length) {
+					final int limit = buffer.limit();
+					final int end = buffer.position() + length;
+					buffer.limit(end);
+					deliver(buffer);
+					buffer.limit(limit);
+					buffer.position(end);
+					continue;
+				}
+				frame = loop.pool().acquire(length);
+				frame.limit(length);
+			}
+			final int count = Math.min(frame.remaining(), buffer.remaining());
+			final int limit = buffer.limit();
+			buffer.limit(buffer.position() + count);
+			frame.put(buffer);
+			buffer.limit(limit);
+			if (!frame.hasRemaining()) {
+				final ByteBuffer complete = frame;
+				frame = null;
+				complete.flip();
+				try {
+					deliver(complete);
+				} finally {
+					loop.pool().release(complete);
+				}
+			}
+		}
+	}
+
+	private void deliver(ByteBuffer data) {
+		final int position = data.position();
+		final int limit = data.limit();
+		if (frameHandler != null) {
+			frameHandler.onFrame(this, data);
+			data.limit(limit).position(position);
+		}
+		if (messageHandler == null && !awaitingResponse) {
+			return;
+		}
+		final byte[] bytes = new byte[limit - position];
+		data.get(bytes);
+		data.position(position);
+		if (messageHandler != null) {
+			messageHandler.handleMessage(bytes);
+		}
+		if (awaitingResponse) {
+			responseQueue.offer(bytes);
+		}
+	}
+
+	@Override
+	public void send(byte[] data) {
+		enqueue(data, true);
+	}
+
+	/**
+	 * 发送消息,待发送数据超过高水位时直接返回false而不阻塞
+	 *
+	 * @param data
+	 * @return
+	 */
+	public boolean trySend(byte[] data) {
+		return enqueue(data, false);
+	}
+
+	private boolean enqueue(byte[] data, boolean block) {
+		if (data == null) {
+			return false;
+		}
+		if (closed) {
+			error(new IOException("Socket is closed"));
+			return false;
+		}
+		boolean schedule = false;
+		synchronized (outLock) {
+			if (pendingBytes > highWaterMark) {
+				if (!block) {
+					return false;
+				}
+				if (!loop.inLoop()) {
+					final long deadline = System.currentTimeMillis() + sendTimeout;
+					long wait;
+					while (pendingBytes > lowWaterMark && !closed
+							&& (wait = deadline - System.currentTimeMillis()) > 0) {
+						try {
+							outLock.wait(wait);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							break;
+						}
+					}
+					if (pendingBytes > lowWaterMark) {
+						error(new IOException(closed ? "Socket is closed" : "Send buffer full"));
+						return false;
+					}
+				}
+			}
+			outQueue.add(data);
+			pendingBytes += data.length + (framed ? HEADER_SIZE : 0);
+			if (!writeScheduled && connected) {
+				writeScheduled = true;
+				schedule = true;
+			}
+		}
+		if (schedule) {
+			loop.execute(flushTask);
+		}
+		return true;
+	}
+
+	private void flush() {
+		if (channel == null || !connected) {
+			return;
+		}
+		try {
+			if (writeBuffer == null) {
+				writeBuffer = loop.pool().acquire(WRITE_BUFFER_SIZE);
+			}
+			for (;;) {
+				final byte[] large = fill();
+				writeBuffer.flip();
+				long written;
+				if (large != null) {
+					gather[0] = writeBuffer;
+					gather[1] = ByteBuffer.wrap(large, outOffset, large.length - outOffset);
+					written = channel.write(gather);
+					final int payload = gather[1].position() - outOffset;
+					gather[1] = null;
+					synchronized (outLock) {
+						outOffset += payload;
+						if (outOffset == large.length) {
+							outQueue.poll();
+							outOffset = framed ? -HEADER_SIZE : 0;
+						}
+					}
+				} else if (writeBuffer.hasRemaining()) {
+					written = channel.write(writeBuffer);
+				} else {
+					written = -1;
+				}
+				writeBuffer.compact();
+				if (written < 0) {
+					synchronized (outLock) {
+						if (outQueue.isEmpty()) {
+							writeScheduled = false;
+							loop.pool().release(writeBuffer);
+							writeBuffer = null;
+							if (key.isValid()) {
+								key.interestOps(SelectionKey.OP_READ);
+							}
+							return;
+						}
+					}
+					continue;
+				}
+				synchronized (outLock) {
+					final long before = pendingBytes;
+					pendingBytes -= written;
+					if (before > lowWaterMark && pendingBytes <= lowWaterMark) {
+						outLock.notifyAll();
+					}
+				}
+				if (written == 0 || writeBuffer.position() > 0) {
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					return;
+				}
+			}
+		} catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/**
+	 * 把队列中的消息复制到写缓冲,遇到剩余部分较大的消息时不复制而返回它,由调用者聚集写出
+	 */
+	private byte[] fill() {
+		synchronized (outLock) {
+			for (;;) {
+				final byte[] data = outQueue.peek();
+				if (data == null) {
+					return null;
+				}
+				if (outOffset < 0) {
+					if (writeBuffer.remaining() < HEADER_SIZE) {
+						return null;
+					}
+					writeBuffer.putInt(data.length);
+					outOffset = 0;
+				}
+				final int remaining = data.length - outOffset;
+				if (remaining >= GATHER_THRESHOLD) {
+					return data;
+				}
+				final int count = Math.min(remaining, writeBuffer.remaining());
+				writeBuffer.put(data, outOffset, count);
+				outOffset += count;
+				if (outOffset < data.length) {
+					return null;
+				}
+				outQueue.poll();
+				outOffset = framed ? -HEADER_SIZE : 0;
+			}
+		}
+	}
+
+	@Override
+	public void sendAndWait(byte[] data, int timeoutMillis) {
+		getSendData(data, timeoutMillis);
+	}
+
+	/**
+	 * 发送消息并等待下一条收到的消息
+	 *
+	 * @param data
+	 * @param timeoutMillis
+	 * @return
+	 */
+	public byte[] getSendData(byte[] data, int timeoutMillis) {
+		if (loop.inLoop()) {
+			send(data);
+			return null;
+		}
+		responseQueue.clear();
+		awaitingResponse = true;
+		try {
+			send(data);
+			return responseQueue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			error(e);
+		} finally {
+			awaitingResponse = false;
+		}
+		return null;
+	}
+
+	@Override
+	public void failed(Throwable cause) {
+		shutdown(true, cause instanceof Exception ? (Exception) cause : new IOException(cause));
+	}
+
+	private void shutdown(boolean reconnect, Exception cause) {
+		final boolean wasOpen = channel != null;
+		if (key != null) {
+			key.cancel();
+			key = null;
+		}
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+			channel = null;
+		}
+		connected = false;
+		if (frame != null) {
+			loop.pool().release(frame);
+			frame = null;
+		}
+		headerRead = 0;
+		synchronized (outLock) {
+			if (writeBuffer != null) {
+				loop.pool().release(writeBuffer);
+				writeBuffer = null;
+			}
+			writeScheduled = false;
+			if (!reconnect || reconnectInterval <= 0) {
+				closed = true;
+				outQueue.clear();
+				pendingBytes = 0;
+			}
+			outLock.notifyAll();
+		}
+		if (closed) {
+			cancelTimers();
+		}
+		if (cause != null) {
+			error(cause);
+		}
+		if (wasOpen && closeCallback != null) {
+			closeCallback.run();
+		}
+		if (!closed && reconnect && lastAddress != null) {
+			loop.schedule(new Runnable() {
+				@Override
+				public void run() {
+					open(lastAddress);
+				}
+			}, reconnectInterval);
+		}
+	}
+
+	private void cancelTimers() {
+		if (heartbeatTimeout != null) {
+			heartbeatTimeout.cancel();
+			heartbeatTimeout = null;
+		}
+		if (idleTimeout != null) {
+			idleTimeout.cancel();
+			idleTimeout = null;
+		}
+	}
+
+	private void error(Exception e) {
+		if (errorCallback != null) {
+			errorCallback.accept(e);
+		}
+		if (messageHandler != null) {
+			messageHandler.handleError(e);
+		}
+	}
+
+	@Override
+	public void onMessage(NetworkMessageHandler handler) {
+		this.messageHandler = handler;
+	}
+
+	public void onFrame(FrameHandler handler) {
+		this.frameHandler = handler;
+	}
+
+	@Override
+	public void onOpen(Runnable callback) {
+		this.openCallback = callback;
+	}
+
+	@Override
+	public void onClose(Runnable callback) {
+		this.closeCallback = callback;
+	}
+
+	@Override
+	public void onError(Consumer<Exception> callback) {
+		this.errorCallback = callback;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				shutdown(false, null);
+			}
+		});
+	}
+
+	/**
+	 * 超过millis毫秒没有收到数据时调用NetworkMessageHandler.handleTimeout
+	 */
+	@Override
+	public void setTimeout(final int millis) {
+		if (idleTimeout != null) {
+			idleTimeout.cancel();
+			idleTimeout = null;
+		}
+		if (millis <= 0) {
+			return;
+		}
+		idleTimeout = loop.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (connected && System.currentTimeMillis() - lastReadTime >= millis) {
+					lastReadTime = System.currentTimeMillis();
+					if (messageHandler != null) {
+						messageHandler.handleTimeout();
+					}
+				}
+			}
+		}, millis, Math.max(1, millis / 4));
+	}
+
+	@Override
+	public void enableHeartbeat(int intervalMillis, final byte[] pingData) {
+		if (heartbeatTimeout != null) {
+			heartbeatTimeout.cancel();
+		}
+		heartbeatTimeout = loop.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (connected) {
+					trySend(pingData);
+				}
+			}
+		}, intervalMillis, intervalMillis);
+	}
+
+	@Override
+	public void enableAutoReconnect(int retryIntervalMillis) {
+		this.reconnectInterval = retryIntervalMillis;
+	}
+
+	@Override
+	public void enableTLS(boolean enabled) {
+		this.useTLS = enabled;
+	}
+
+	public boolean isUseTLS() {
+		return useTLS;
+	}
+
+	/**
+	 * 关闭长度前缀时收到的数据按每次读取的原样交给回调,发送的数据也不再添加长度前缀,需在connect前设置
+	 *
+	 * @param framed
+	 * @return
+	 */
+	public JavaSENioSocketClient setFramed(boolean framed) {
+		this.framed = framed;
+		return this;
+	}
+
+	public boolean isFramed() {
+		return framed;
+	}
+
+	public JavaSENioSocketClient setMaxFrameLength(int maxFrameLength) {
+		this.maxFrameLength = maxFrameLength;
+		return this;
+	}
+
+	public JavaSENioSocketClient setWaterMarks(int low, int high) {
+		synchronized (outLock) {
+			this.lowWaterMark = Math.min(low, high);
+			this.highWaterMark = Math.max(low, high);
+		}
+		return this;
+	}
+
+	public JavaSENioSocketClient setSendTimeout(int millis) {
+		this.sendTimeout = millis;
+		return this;
+	}
+
+	public long getPendingBytes() {
+		synchronized (outLock) {
+			return pendingBytes;
+		}
+	}
+
+	public boolean isWritable() {
+		synchronized (outLock) {
+			return !closed && pendingBytes <= highWaterMark;
+		}
+	}
+
+	public boolean isConnected() {
+		return connected;
+	}
+
+	public JavaSENioEventLoop getEventLoop() {
+		return loop;
+	}
+
+	@Override
+	public NetworkMessageHandler getMessageHandler() {
+		return messageHandler;
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import loon.utils.res.loaders.PreloadStreamer;
+
+/**
+ * 使用固定数量的守护线程执行资源的读取与解码(属于阻塞型IO任务,因此不使用ForkJoinPool)
+ */
+public class JavaSEPreloadExecutor implements PreloadStreamer.Executor {
+
+	private static class LoaderFactory implements ThreadFactory {
+
+		private int _count;
+
+		@Override
+		public synchronized Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, "PreloadWorker-" + (++_count));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private final ExecutorService _pool;
+
+	public JavaSEPreloadExecutor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public JavaSEPreloadExecutor(int threads) {
+		this._pool = Executors.newFixedThreadPool(Math.max(1, threads), new LoaderFactory());
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		_pool.execute(task);
+	}
+
+}
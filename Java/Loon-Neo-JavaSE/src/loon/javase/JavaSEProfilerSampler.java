@@ -0,0 +1,66 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import loon.FrameProfiler;
+
+/**
+ * 使用System.nanoTime计时,并通过ThreadMXBean读取当前线程的内存分配量(JVM不支持时返回-1)
+ */
+public class JavaSEProfilerSampler implements FrameProfiler.Sampler {
+
+	private final com.sun.management.ThreadMXBean _threadBean;
+
+	public JavaSEProfilerSampler() {
+		com.sun.management.ThreadMXBean bean = null;
+		try {
+			final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+			if (mx instanceof com.sun.management.ThreadMXBean) {
+				bean = (com.sun.management.ThreadMXBean) mx;
+				if (bean.isThreadAllocatedMemorySupported()) {
+					bean.setThreadAllocatedMemoryEnabled(true);
+				} else {
+					bean = null;
+				}
+			}
+		} catch (Throwable ex) {
+			bean = null;
+		}
+		this._threadBean = bean;
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public long allocatedBytes() {
+		if (_threadBean == null) {
+			return -1L;
+		}
+		return _threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
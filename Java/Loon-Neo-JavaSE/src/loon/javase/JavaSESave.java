@@ -1,18 +1,18 @@
 /**
  * Copyright 2008 - 2015 The Loon Game Engine Authors
- * 
+ *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
  * the License at
- * 
+ *
  * http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
  * License for the specific language governing permissions and limitations under
  * the License.
- * 
+ *
  * @project loon
  * @author cping
  * @email：javachenpeng@yahoo.com
@@ -20,97 +20,237 @@
  */
 package loon.javase;
 
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.prefs.AbstractPreferences;
-import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 import loon.Log;
 import loon.Save;
 import loon.SaveBatchImpl;
 
+/**
+ * 桌面环境的存档实现.
+ *
+ * 写入只修改内存数据并记入待写日志,同一键的多次修改会被合并,由后台线程在flushInterval毫秒内以单帧追加到存档文件(见JavaSESaveJournal),
+ * Batch提交的修改总是处于同一帧中,因此崩溃后要么全部保留要么全部丢弃.若存档文件不存在,会导入旧版本保存在Preferences中的数据.
+ */
 class JavaSESave implements Save {
 
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+	// 所有打开的存档共用一个关闭钩子,钩子只注册一次,存档关闭时从列表中移除
+	private static final ArrayList<JavaSESave> openSaves = new ArrayList<JavaSESave>();
+	private static boolean shutdownHookAdded;
+
+	private static void register(JavaSESave save) {
+		synchronized (openSaves) {
+			if (!shutdownHookAdded) {
+				shutdownHookAdded = true;
+				try {
+					Runtime.getRuntime().addShutdownHook(new Thread("LoonSaveShutdown") {
+						@Override
+						public void run() {
+							closeAll();
+						}
+					});
+				} catch (Exception e) {
+				}
+			}
+			openSaves.add(save);
+		}
+	}
+
+	private static void unregister(JavaSESave save) {
+		synchronized (openSaves) {
+			openSaves.remove(save);
+		}
+	}
+
+	private static void closeAll() {
+		final JavaSESave[] saves;
+		synchronized (openSaves) {
+			saves = openSaves.toArray(new JavaSESave[openSaves.size()]);
+		}
+		for (JavaSESave save : saves) {
+			save.close();
+		}
+	}
+
 	private final Log log;
 	private final String storageFileName;
-	private Preferences preferences;
+	private final File storageFile;
+	private final long flushInterval;
+
+	private final Object lock = new Object();
+	private final Object ioLock = new Object();
+	private final HashMap<String, String> values = new HashMap<String, String>();
+	private LinkedHashMap<String, String> pending = new LinkedHashMap<String, String>();
+
+	private JavaSESaveJournal journal;
+	private Thread writer;
+	private boolean initialized;
+	private boolean closed;
 	private boolean isPersisted;
+	private boolean failureLogged;
 
 	JavaSESave(Log log, String storage) {
+		this(log, storage, null, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	JavaSESave(Log log, String storage, String dir, long flushInterval) {
 		this.log = log;
 		this.storageFileName = storage;
+		this.storageFile = new File(dir == null ? defaultDirectory() : dir, toFileName(storage) + ".lsav");
+		this.flushInterval = flushInterval < 0 ? 0 : flushInterval;
+	}
+
+	private static String defaultDirectory() {
+		String home;
+		try {
+			home = System.getProperty("user.home", ".");
+		} catch (Exception e) {
+			home = ".";
+		}
+		return home + File.separator + ".loon" + File.separator + "save";
+	}
+
+	private static String toFileName(String name) {
+		if (name == null || name.length() == 0) {
+			return "loon";
+		}
+		final StringBuilder sbr = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			final char ch = name.charAt(i);
+			sbr.append(Character.isLetterOrDigit(ch) || ch == '-' || ch == '_' || ch == '.' ? ch : '_');
+		}
+		return sbr.toString();
 	}
 
 	private void init() {
-		if (preferences == null) {
-			Preferences prefs = null;
+		synchronized (lock) {
+			if (initialized) {
+				return;
+			}
+			initialized = true;
+			JavaSESaveJournal file = new JavaSESaveJournal(storageFile);
 			try {
-				Preferences tmp = Preferences.userRoot();
-				isPersisted = tmp.nodeExists(storageFileName);
-				prefs = tmp.node(storageFileName);
+				isPersisted = file.open(values);
+				journal = file;
 			} catch (Exception e) {
-				log.warn("Couldn't open Preferences: " + e.getMessage());
+				log.warn("Couldn't open save file " + storageFile + ": " + e.getMessage());
+				try {
+					file.close();
+				} catch (Exception ex) {
+				}
 				isPersisted = false;
-				prefs = new MemoryPreferences();
+				return;
+			}
+			if (!isPersisted) {
+				importPreferences();
 			}
-			preferences = prefs;
+			register(this);
+		}
+	}
+
+	private void importPreferences() {
+		try {
+			Preferences root = Preferences.userRoot();
+			if (!root.nodeExists(storageFileName)) {
+				return;
+			}
+			Preferences prefs = root.node(storageFileName);
+			for (String key : prefs.keys()) {
+				String value = prefs.get(key, null);
+				if (value != null) {
+					values.put(key, value);
+					pending.put(key, value);
+				}
+			}
+			if (!pending.isEmpty()) {
+				wakeWriter();
+			}
+		} catch (Exception e) {
+			log.warn("Couldn't import Preferences: " + e.getMessage());
 		}
 	}
 
 	@Override
 	public void setItem(String key, String value) {
 		init();
-		preferences.put(key, value);
-		maybePersistPreferences();
+		synchronized (lock) {
+			values.put(key, value);
+			pending.put(key, value);
+			wakeWriter();
+		}
 	}
 
 	@Override
 	public void removeItem(String key) {
 		init();
-		preferences.remove(key);
-		maybePersistPreferences();
+		synchronized (lock) {
+			if (values.remove(key) != null || pending.containsKey(key)) {
+				pending.put(key, null);
+				wakeWriter();
+			}
+		}
 	}
 
 	@Override
 	public String getItem(String key) {
 		init();
-		return preferences.get(key, null);
+		synchronized (lock) {
+			return values.get(key);
+		}
 	}
 
 	@Override
 	public Batch startBatch() {
 		return new SaveBatchImpl(this) {
+
+			private final HashMap<String, String> changes = new HashMap<String, String>();
+
 			@Override
 			protected void setImpl(String key, String data) {
-				init();
-				preferences.put(key, data);
+				changes.put(key, data);
 			}
 
 			@Override
 			protected void removeImpl(String key) {
-				init();
-				preferences.remove(key);
+				changes.put(key, null);
 			}
 
 			@Override
 			protected void onAfterCommit() {
-				init();
-				maybePersistPreferences();
+				commitBatch(changes);
 			}
 		};
 	}
 
+	private void commitBatch(Map<String, String> changes) {
+		init();
+		synchronized (lock) {
+			for (Map.Entry<String, String> entry : changes.entrySet()) {
+				final String key = entry.getKey();
+				final String value = entry.getValue();
+				if (value == null) {
+					values.remove(key);
+				} else {
+					values.put(key, value);
+				}
+				pending.put(key, value);
+			}
+			wakeWriter();
+		}
+	}
+
 	@Override
 	public Iterable<String> keys() {
 		init();
-		try {
-			return Arrays.asList(preferences.keys());
-		} catch (Exception e) {
-			log.warn("Error reading preferences: " + e.getMessage());
-			return Collections.emptyList();
+		synchronized (lock) {
+			return new ArrayList<String>(values.keySet());
 		}
 	}
 
@@ -119,70 +259,126 @@ class JavaSESave implements Save {
 		return isPersisted;
 	}
 
-	private void maybePersistPreferences() {
+	/**
+	 * 立即把尚未写入的修改写入存档文件
+	 */
+	public void flush() {
 		init();
-		if (preferences instanceof MemoryPreferences) {
-			return;
-		}
-		try {
-			preferences.flush();
-			isPersisted = true;
-		} catch (Exception e) {
-			log.info("Error persisting properties: " + e.getMessage());
-			isPersisted = false;
+		synchronized (ioLock) {
+			final LinkedHashMap<String, String> changes;
+			synchronized (lock) {
+				if (pending.isEmpty() || journal == null) {
+					return;
+				}
+				changes = pending;
+				pending = new LinkedHashMap<String, String>();
+			}
+			try {
+				journal.append(changes);
+				if (journal.needsCompaction()) {
+					final HashMap<String, String> snapshot;
+					synchronized (lock) {
+						snapshot = new HashMap<String, String>(values);
+					}
+					journal.compact(snapshot);
+				}
+				isPersisted = true;
+				failureLogged = false;
+			} catch (Exception e) {
+				isPersisted = false;
+				synchronized (lock) {
+					for (Map.Entry<String, String> entry : changes.entrySet()) {
+						if (!pending.containsKey(entry.getKey())) {
+							pending.put(entry.getKey(), entry.getValue());
+						}
+					}
+				}
+				if (!failureLogged) {
+					failureLogged = true;
+					log.info("Error persisting save file: " + e.getMessage());
+				}
+			}
 		}
 	}
 
-	private class MemoryPreferences extends AbstractPreferences {
-		MemoryPreferences() {
-			super(null, "");
-		}
-
-		@Override
-		protected void putSpi(String key, String value) {
-			_values.put(key, value);
-		}
-
-		@Override
-		protected String getSpi(String key) {
-			return _values.get(key);
-		}
-
-		@Override
-		protected void removeSpi(String key) {
-			_values.remove(key);
+	/**
+	 * 写入全部修改并关闭存档文件,此后的修改只保留在内存中
+	 */
+	public void close() {
+		flush();
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			lock.notifyAll();
 		}
-
-		@Override
-		protected void removeNodeSpi() throws BackingStoreException {
-			throw new BackingStoreException("Not implemented");
+		synchronized (ioLock) {
+			if (journal != null) {
+				try {
+					journal.close();
+				} catch (Exception e) {
+				}
+				journal = null;
+			}
 		}
+		unregister(this);
+	}
 
-		@Override
-		protected String[] keysSpi() throws BackingStoreException {
-			return _values.keySet().toArray(new String[_values.size()]);
-		}
+	public File getStorageFile() {
+		return storageFile;
+	}
 
-		@Override
-		protected String[] childrenNamesSpi() throws BackingStoreException {
-			throw new BackingStoreException("Not implemented");
-		}
+	public long getFlushInterval() {
+		return flushInterval;
+	}
 
-		@Override
-		protected AbstractPreferences childSpi(String name) {
-			throw new RuntimeException("Not implemented");
+	private void wakeWriter() {
+		if (journal == null || closed) {
+			return;
 		}
-
-		@Override
-		protected void syncSpi() throws BackingStoreException {
-			throw new BackingStoreException("Not implemented");
+		if (writer == null) {
+			writer = new Thread("LoonSaveWriter") {
+				@Override
+				public void run() {
+					writeLoop();
+				}
+			};
+			writer.setDaemon(true);
+			writer.start();
 		}
+		lock.notifyAll();
+	}
 
-		@Override
-		protected void flushSpi() throws BackingStoreException {
-			throw new BackingStoreException("Not implemented");
+	private void writeLoop() {
+		for (;;) {
+			synchronized (lock) {
+				try {
+					while (!closed && pending.isEmpty()) {
+						lock.wait();
+					}
+					if (closed) {
+						return;
+					}
+					final long deadline = System.currentTimeMillis() + flushInterval;
+					long wait;
+					while (!closed && (wait = deadline - System.currentTimeMillis()) > 0) {
+						lock.wait(wait);
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			flush();
+			if (!isPersisted) {
+				synchronized (lock) {
+					try {
+						lock.wait(flushInterval + 1000);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
 		}
-
-		protected Map<String, String> _values = new HashMap<String, String>();
 	}
 }
@@ -0,0 +1,300 @@
+/**
+ * Copyright 2008 - 2015 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * JavaSESave使用的追加式存档日志文件.
+ *
+ * 文件由固定文件头与若干帧组成,每帧格式为[长度][CRC32][数据],一帧内的全部键值修改要么全部生效要么全部丢弃,
+ * 读取时遇到不完整或校验失败的帧即视为崩溃残留并截断,日志增长到一定规模后改写为仅含当前数据的单帧文件(先写临时文件再原子替换).
+ */
+final class JavaSESaveJournal {
+
+	private static final int MAGIC = 0x4C534156;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final int FRAME_HEADER_SIZE = 8;
+
+	private static final byte OP_PUT = 1;
+
+	private static final byte OP_REMOVE = 2;
+
+	private static final long COMPACT_MIN_SIZE = 64 * 1024;
+
+	private final File _file;
+
+	private final File _tmpFile;
+
+	private final CRC32 _crc = new CRC32();
+
+	private RandomAccessFile _out;
+
+	private long _length;
+
+	private long _compactedLength;
+
+	JavaSESaveJournal(File file) {
+		this._file = file;
+		this._tmpFile = new File(file.getPath() + ".tmp");
+	}
+
+	/**
+	 * 打开日志并回放其中全部完整帧到values,截断末尾的残缺帧
+	 *
+	 * @param values
+	 * @return 日志文件此前是否已存在
+	 * @throws IOException
+	 */
+	boolean open(Map<String, String> values) throws IOException {
+		final File dir = _file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Couldn't create directory " + dir);
+		}
+		if (_tmpFile.exists()) {
+			_tmpFile.delete();
+		}
+		final boolean existed = _file.exists() && _file.length() > 0;
+		_out = new RandomAccessFile(_file, "rw");
+		long valid = HEADER_SIZE;
+		if (existed) {
+			valid = replay(_out, values);
+		}
+		if (valid <= HEADER_SIZE) {
+			_out.setLength(0);
+			_out.writeInt(MAGIC);
+			_out.writeInt(VERSION);
+			valid = HEADER_SIZE;
+		} else if (valid < _out.length()) {
+			_out.setLength(valid);
+		}
+		_out.seek(valid);
+		_out.getChannel().force(true);
+		_length = valid;
+		_compactedLength = valid;
+		return existed;
+	}
+
+	private long replay(RandomAccessFile in, Map<String, String> values) throws IOException {
+		final long size = in.length();
+		if (size < HEADER_SIZE) {
+			return 0;
+		}
+		in.seek(0);
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new IOException("Unknown save file format " + _file);
+		}
+		long pos = HEADER_SIZE;
+		for (; pos + FRAME_HEADER_SIZE <= size;) {
+			in.seek(pos);
+			final int len = in.readInt();
+			final int crc = in.readInt();
+			if (len < 4 || pos + FRAME_HEADER_SIZE + len > size) {
+				break;
+			}
+			final byte[] data = new byte[len];
+			in.readFully(data);
+			_crc.reset();
+			_crc.update(data, 0, len);
+			if ((int) _crc.getValue() != crc || !apply(data, values)) {
+				break;
+			}
+			pos += FRAME_HEADER_SIZE + len;
+		}
+		return pos;
+	}
+
+	private static boolean apply(byte[] data, Map<String, String> values) {
+		final int len = data.length;
+		int pos = 0;
+		final int count = readInt(data, pos);
+		pos += 4;
+		final String[] keys = new String[count];
+		final String[] items = new String[count];
+		for (int i = 0; i < count; i++) {
+			if (pos + 5 > len) {
+				return false;
+			}
+			final byte op = data[pos++];
+			final int keyLen = readInt(data, pos);
+			pos += 4;
+			if (keyLen < 0 || pos + keyLen > len) {
+				return false;
+			}
+			keys[i] = new String(data, pos, keyLen, StandardCharsets.UTF_8);
+			pos += keyLen;
+			if (op == OP_PUT) {
+				if (pos + 4 > len) {
+					return false;
+				}
+				final int itemLen = readInt(data, pos);
+				pos += 4;
+				if (itemLen < 0 || pos + itemLen > len) {
+					return false;
+				}
+				items[i] = new String(data, pos, itemLen, StandardCharsets.UTF_8);
+				pos += itemLen;
+			} else if (op != OP_REMOVE) {
+				return false;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			if (items[i] == null) {
+				values.remove(keys[i]);
+			} else {
+				values.put(keys[i], items[i]);
+			}
+		}
+		return true;
+	}
+
+	private static int readInt(byte[] data, int pos) {
+		return ((data[pos] & 0xff) << 24) | ((data[pos + 1] & 0xff) << 16) | ((data[pos + 2] & 0xff) << 8)
+				| (data[pos + 3] & 0xff);
+	}
+
+	private byte[] encode(Map<String, String> changes) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeInt(changes.size());
+		for (Map.Entry<String, String> entry : changes.entrySet()) {
+			final byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			final String value = entry.getValue();
+			out.writeByte(value == null ? OP_REMOVE : OP_PUT);
+			out.writeInt(key.length);
+			out.write(key);
+			if (value != null) {
+				final byte[] item = value.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(item.length);
+				out.write(item);
+			}
+		}
+		out.flush();
+		final byte[] frame = bytes.toByteArray();
+		final int len = frame.length - FRAME_HEADER_SIZE;
+		_crc.reset();
+		_crc.update(frame, FRAME_HEADER_SIZE, len);
+		writeInt(frame, 0, len);
+		writeInt(frame, 4, (int) _crc.getValue());
+		return frame;
+	}
+
+	private static void writeInt(byte[] data, int pos, int v) {
+		data[pos] = (byte) (v >>> 24);
+		data[pos + 1] = (byte) (v >>> 16);
+		data[pos + 2] = (byte) (v >>> 8);
+		data[pos + 3] = (byte) v;
+	}
+
+	/**
+	 * 以单帧形式追加一组修改(value为null表示删除),返回前数据已落盘
+	 *
+	 * @param changes
+	 * @throws IOException
+	 */
+	void append(Map<String, String> changes) throws IOException {
+		if (_out == null) {
+			throw new IOException("Save journal is closed");
+		}
+		if (changes.isEmpty()) {
+			return;
+		}
+		final byte[] frame = encode(changes);
+		try {
+			_out.seek(_length);
+			_out.write(frame);
+			_out.getChannel().force(false);
+		} catch (IOException e) {
+			_out.setLength(_length);
+			throw e;
+		}
+		_length += frame.length;
+	}
+
+	boolean needsCompaction() {
+		return _length > COMPACT_MIN_SIZE && _length > _compactedLength * 2;
+	}
+
+	/**
+	 * 用当前全部数据重写日志文件
+	 *
+	 * @param values
+	 * @throws IOException
+	 */
+	void compact(Map<String, String> values) throws IOException {
+		final byte[] frame = encode(values);
+		RandomAccessFile tmp = new RandomAccessFile(_tmpFile, "rw");
+		try {
+			tmp.setLength(0);
+			tmp.writeInt(MAGIC);
+			tmp.writeInt(VERSION);
+			tmp.write(frame);
+			tmp.getChannel().force(true);
+		} finally {
+			tmp.close();
+		}
+		close();
+		try {
+			Files.move(_tmpFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(_tmpFile.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			_out = new RandomAccessFile(_file, "rw");
+			_length = _out.length();
+			_compactedLength = _length;
+		}
+	}
+
+	long length() {
+		return _length;
+	}
+
+	File getFile() {
+		return _file;
+	}
+
+	void close() throws IOException {
+		if (_out != null) {
+			try {
+				_out.close();
+			} finally {
+				_out = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.javase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.util.Random;
+
+import loon.Save;
+
+/**
+ * 存档崩溃恢复测试.
+ * 
+ * 子进程不断以Batch写入一组键(同一Batch中所有键的值相同)并在每次flush后输出批次号,父进程在随机时刻强制结束子进程(相当于断电或崩溃),
+ * 必要时再在文件末尾追加残缺数据模拟写到一半的帧,然后重新打开存档,检查所有键的值一致(Batch未被拆开),且不早于最后一次确认写入的批次.
+ */
+public class JavaSESaveRecoveryTest {
+
+	private static final int KEYS = 16;
+
+	private static final String NAME = "recovery";
+
+	private static int failed;
+
+	private static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	private static int readBatch(JavaSESave save) {
+		final String first = save.getItem("k0");
+		if (first == null) {
+			return 0;
+		}
+		for (int i = 1; i < KEYS; i++) {
+			if (!first.equals(save.getItem("k" + i))) {
+				return -1;
+			}
+		}
+		return Integer.parseInt(first);
+	}
+
+	private static void child(String dir) {
+		final JavaSESave save = new JavaSESave(new JavaSELog(), NAME, dir, 5);
+		int batch = readBatch(save);
+		for (;;) {
+			batch++;
+			final Save.Batch b = save.startBatch();
+			final String value = String.valueOf(batch);
+			for (int i = 0; i < KEYS; i++) {
+				b.setItem("k" + i, value);
+			}
+			b.commit();
+			// 每隔几批才确认一次,其余修改交给后台线程写入,两条写入路径都会被强制结束打断
+			if (batch % 4 == 0) {
+				save.flush();
+				System.out.println(batch);
+				System.out.flush();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 2 && "child".equals(args[0])) {
+			child(args[1]);
+			return;
+		}
+		final File dir = new File(System.getProperty("java.io.tmpdir"), "loon-save-recovery-" + System.nanoTime());
+		dir.mkdirs();
+		final Random random = new Random(8);
+		final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int lastAck = 0;
+		for (int round = 0; round < rounds; round++) {
+			final Process process = new ProcessBuilder(
+					new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(), "-cp",
+					System.getProperty("java.class.path"), JavaSESaveRecoveryTest.class.getName(), "child",
+					dir.getPath()).redirectErrorStream(true).start();
+			final int[] acked = { lastAck };
+			// 单独的线程读取子进程确认的批次号,进程被结束后读取随之停止
+			final Thread reader = new Thread() {
+				@Override
+				public void run() {
+					try {
+						final BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+						String line;
+						while ((line = in.readLine()) != null) {
+							try {
+								acked[0] = Math.max(acked[0], Integer.parseInt(line.trim()));
+							} catch (NumberFormatException e) {
+							}
+						}
+					} catch (Exception e) {
+					}
+				}
+			};
+			reader.start();
+			Thread.sleep(200 + random.nextInt(400));
+			process.destroyForcibly();
+			process.waitFor();
+			reader.join();
+			lastAck = acked[0];
+			final boolean torn = (round & 1) == 1;
+			final JavaSESave probe = new JavaSESave(new JavaSELog(), NAME, dir.getPath(), 5);
+			if (torn) {
+				// 模拟只写入一半的帧:一个声明了较大长度但内容不完整的帧头
+				final FileOutputStream out = new FileOutputStream(probe.getStorageFile(), true);
+				final byte[] garbage = new byte[1 + random.nextInt(32)];
+				random.nextBytes(garbage);
+				garbage[0] = 0x7F;
+				out.write(garbage);
+				out.close();
+			}
+			final int batch = readBatch(probe);
+			probe.close();
+			check("round " + round + (torn ? " (torn tail)" : "") + ": batch " + batch + " intact, acked " + lastAck,
+					batch >= lastAck && batch > 0);
+		}
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import loon.action.map.AStarFinder;
+import loon.action.map.AStarGridFinder;
+import loon.action.map.Field2D;
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.TArray;
+
+/**
+ * AStarGridFinder与AStarFinder的比对与性能基准
+ *
+ * 256x256,25%为障碍的随机地图上:四方向寻径时AStarGridFinder的路径每一步相邻且可通行,长度等于广度优先搜索得到的最短距离,可达性与之一致;
+ * 八方向寻径同样合法.随后以同一批查询比较两者的耗时.
+ */
+public class AStarGridBenchmark {
+
+	private static final int SIZE = 256;
+
+	private static final int QUERIES = 40;
+
+	private static Field2D createField(long seed) {
+		final Random random = new Random(seed);
+		final int[][] map = new int[SIZE][SIZE];
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				map[y][x] = random.nextInt(4) == 0 ? 1 : 0;
+			}
+		}
+		Field2D field = new Field2D(map);
+		field.setLimit(1);
+		return field;
+	}
+
+	private static int[] createQueries(Field2D field, long seed) {
+		final Random random = new Random(seed);
+		final int[] queries = new int[QUERIES * 4];
+		for (int i = 0; i < queries.length;) {
+			final int x = random.nextInt(SIZE), y = random.nextInt(SIZE);
+			if (field.isHit(x, y)) {
+				queries[i++] = x;
+				queries[i++] = y;
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * 四方向的最短步数,不可达时为-1
+	 */
+	private static int bfs(Field2D field, int sx, int sy, int ex, int ey) {
+		final int[] dist = new int[SIZE * SIZE];
+		Arrays.fill(dist, -1);
+		final int[] queue = new int[SIZE * SIZE];
+		int head = 0, tail = 0;
+		dist[sy * SIZE + sx] = 0;
+		queue[tail++] = sy * SIZE + sx;
+		final int[] dx = { 1, -1, 0, 0 }, dy = { 0, 0, 1, -1 };
+		for (; head < tail;) {
+			final int cur = queue[head++];
+			final int cx = cur % SIZE, cy = cur / SIZE;
+			if (cx == ex && cy == ey) {
+				return dist[cur];
+			}
+			for (int i = 0; i < 4; i++) {
+				final int nx = cx + dx[i], ny = cy + dy[i];
+				if (nx >= 0 && ny >= 0 && nx < SIZE && ny < SIZE && dist[ny * SIZE + nx] == -1 && field.isHit(nx, ny)) {
+					dist[ny * SIZE + nx] = dist[cur] + 1;
+					queue[tail++] = ny * SIZE + nx;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static boolean validPath(Field2D field, IntArray path, int sx, int sy, int ex, int ey, boolean diagonal) {
+		final int count = path.length / 2;
+		if (count == 0 || path.get(0) != sx || path.get(1) != sy || path.get(count * 2 - 2) != ex
+				|| path.get(count * 2 - 1) != ey) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			final int x = path.get(i * 2), y = path.get(i * 2 + 1);
+			if (!field.isHit(x, y)) {
+				return false;
+			}
+			if (i > 0) {
+				final int dx = Math.abs(x - path.get(i * 2 - 2)), dy = Math.abs(y - path.get(i * 2 - 1));
+				if (dx > 1 || dy > 1 || dx + dy == 0 || (!diagonal && dx + dy != 1)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public static void main(String[] args) {
+		final Field2D field = createField(1);
+		final int[] queries = createQueries(field, 2);
+		final AStarGridFinder grid = new AStarGridFinder(AStarFinder.ASTAR_MANHATTAN).setOverflow(-1);
+		final IntArray path = new IntArray();
+
+		int optimal = 0, reachable = 0, valid = 0, validDiagonal = 0;
+		for (int i = 0; i < queries.length; i += 4) {
+			final int sx = queries[i], sy = queries[i + 1], ex = queries[i + 2], ey = queries[i + 3];
+			final int shortest = bfs(field, sx, sy, ex, ey);
+			final boolean found = grid.findPath(field, sx, sy, ex, ey, false, path);
+			if (found == (shortest != -1)) {
+				reachable++;
+			}
+			if (found && validPath(field, path, sx, sy, ex, ey, false)) {
+				valid++;
+				if (path.length / 2 - 1 == shortest) {
+					optimal++;
+				}
+			} else if (!found) {
+				valid++;
+				optimal++;
+			}
+			if (grid.findPath(field, sx, sy, ex, ey, true, path) == found
+					&& (!found || validPath(field, path, sx, sy, ex, ey, true))) {
+				validDiagonal++;
+			}
+		}
+		Bench.check("grid: reachability matches breadth-first search", reachable == QUERIES);
+		Bench.check("grid: 4-way paths are connected and passable", valid == QUERIES);
+		Bench.check("grid: 4-way paths are shortest", optimal == QUERIES);
+		Bench.check("grid: 8-way paths are connected and passable", validDiagonal == QUERIES);
+
+		final double before = Bench.measure("AStarFinder.findPath 256x256", 1, 3, QUERIES, new Bench.Op() {
+
+			int next;
+
+			@Override
+			public long run() {
+				final int i = (next++ % QUERIES) * 4;
+				AStarFinder finder = new AStarFinder(AStarFinder.ASTAR_MANHATTAN, field, queries[i], queries[i + 1],
+						queries[i + 2], queries[i + 3], false, false, AStarFinder.ASTAR);
+				finder.setOverflow(SIZE * SIZE);
+				final TArray<Vector2f> result = finder.findPath();
+				return result == null ? 0 : result.size;
+			}
+		});
+		final double after = Bench.measure("AStarGridFinder.findPath 256x256", 5, 5, QUERIES, new Bench.Op() {
+
+			int next;
+
+			@Override
+			public long run() {
+				final int i = (next++ % QUERIES) * 4;
+				grid.findPath(field, queries[i], queries[i + 1], queries[i + 2], queries[i + 3], false, path);
+				return path.length;
+			}
+		});
+		Bench.compare("AStarGridFinder vs AStarFinder", before, after, 3.0);
+		Bench.exit();
+	}
+}
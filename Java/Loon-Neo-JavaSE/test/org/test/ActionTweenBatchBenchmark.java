@@ -0,0 +1,119 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LSetting;
+import loon.action.ActionBind;
+import loon.action.ActionTweenBatch;
+import loon.action.sprite.Entity;
+import loon.utils.Easing.EasingMode;
+
+/**
+ * ActionTweenBatch按目标移除缓动的比对与性能基准
+ *
+ * 20000个精灵各有两个缓动,另有2000个没有缓动的精灵:按目标移除只影响该目标的缓动,编号回收与clear后索引保持正确,
+ * 随后比较移除2000个精灵时逐个比较全部缓动(原来的实现)与按目标索引的耗时.
+ */
+public class ActionTweenBatchBenchmark {
+
+	private static final int TWEENED = 20000;
+
+	private static final int IDLE = 2000;
+
+	private static Entity[] entities(int count) {
+		final Entity[] list = new Entity[count];
+		for (int i = 0; i < count; i++) {
+			list[i] = new Entity();
+		}
+		return list;
+	}
+
+	private static ActionTweenBatch createBatch(Entity[] tweened) {
+		final ActionTweenBatch batch = new ActionTweenBatch();
+		for (int i = 0; i < tweened.length; i++) {
+			batch.moveTo(tweened[i], i, i, 10f, EasingMode.Linear);
+			batch.alphaTo(tweened[i], 0f, 10f, EasingMode.Linear);
+		}
+		return batch;
+	}
+
+	public static void main(String[] args) {
+		new HeadlessTestGame(new LSetting(), 1, 1);
+		final Entity[] tweened = entities(TWEENED);
+		final Entity[] idle = entities(IDLE);
+		final ActionTweenBatch batch = createBatch(tweened);
+		batch.update(0.1f);
+
+		Bench.check("an idle target has nothing to kill", batch.kill(idle[0]) == 0 && !batch.contains(idle[0]));
+		Bench.check("kill removes both tweens of the target only",
+				batch.kill(tweened[0]) == 2 && !batch.contains(tweened[0]) && batch.contains(tweened[1]));
+		Bench.check("a killed target is not killed twice", batch.kill(tweened[0]) == 0);
+		batch.update(0.1f);
+		Bench.check("killed tweens are recycled on update", batch.size() == TWEENED * 2 - 2);
+		final int id = batch.moveTo(tweened[0], 5f, 5f, 0.2f, EasingMode.Linear);
+		Bench.check("a recycled id is indexed for its new target",
+				batch.isActive(id) && batch.contains(tweened[0]) && batch.kill(tweened[1]) == 2);
+		batch.update(0.1f);
+		batch.update(0.2f);
+		Bench.check("completed tweens leave the index", !batch.contains(tweened[0]) && batch.contains(tweened[2]));
+		batch.clear();
+		Bench.check("clear empties the index", !batch.contains(tweened[2]) && batch.kill(tweened[2]) == 0);
+		batch.moveTo(tweened[2], 1f, 1f, 1f, EasingMode.Linear);
+		Bench.check("targets are indexed again after clear", batch.kill(tweened[2]) == 1);
+
+		// 原来的kill逐个比较数组中的全部缓动,这里以同样排列的目标数组重现其开销
+		final ActionBind[] targets = new ActionBind[TWEENED * 2];
+		for (int i = 0; i < TWEENED; i++) {
+			targets[i * 2] = tweened[i];
+			targets[i * 2 + 1] = tweened[i];
+		}
+		final double scan = Bench.measure("scan: kill " + IDLE + " idle targets", 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				long count = 0;
+				for (int j = 0; j < IDLE; j++) {
+					final ActionBind target = idle[j];
+					for (int i = 0; i < targets.length; i++) {
+						if (targets[i] == target) {
+							count++;
+						}
+					}
+				}
+				return count;
+			}
+		});
+		final ActionTweenBatch full = createBatch(tweened);
+		final double indexed = Bench.measure("index: kill " + IDLE + " idle targets", 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				long count = 0;
+				for (int j = 0; j < IDLE; j++) {
+					count += full.kill(idle[j]);
+				}
+				return count;
+			}
+		});
+		Bench.compare("index vs scan kill", scan, indexed, 20.0);
+		Bench.exit();
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+/**
+ * 测试目录下各个性能基准共用的计时工具(JMH风格:预热若干轮后取多轮测量的最小值)
+ *
+ * 基准以main方法运行,先检查新旧实现的结果一致,再输出每次操作的耗时,速度比例检查只设宽松的下限,用于发现明显的性能退化.
+ */
+public final class Bench {
+
+	/**
+	 * 一次被计时的操作,返回值计入sink,防止JIT消除无用的计算
+	 */
+	public interface Op {
+
+		long run();
+	}
+
+	public static volatile long sink;
+
+	private static int failed;
+
+	private Bench() {
+	}
+
+	public static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	/**
+	 * 预热warmup轮后测量rounds轮,每轮执行ops次op
+	 *
+	 * @return 最快一轮中每次操作的纳秒数
+	 */
+	public static double measure(String name, int warmup, int rounds, int ops, Op op) {
+		long result = 0;
+		for (int i = 0; i < warmup; i++) {
+			for (int j = 0; j < ops; j++) {
+				result += op.run();
+			}
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < rounds; i++) {
+			final long start = System.nanoTime();
+			for (int j = 0; j < ops; j++) {
+				result += op.run();
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		sink += result;
+		final double perOp = (double) best / ops;
+		System.out.println(String.format("%-48s %12.1f ns/op", name, perOp));
+		return perOp;
+	}
+
+	/**
+	 * 输出新旧实现的速度比,并检查不低于minSpeedup
+	 */
+	public static void compare(String name, double before, double after, double minSpeedup) {
+		final double speedup = before / after;
+		check(String.format("%s: %.1fx faster (expected at least %.1fx)", name, speedup, minSpeedup),
+				speedup >= minSpeedup);
+	}
+
+	public static void exit() {
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
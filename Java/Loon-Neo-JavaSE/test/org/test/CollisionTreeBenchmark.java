@@ -0,0 +1,196 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import loon.action.collision.CollisionManager;
+import loon.action.collision.CollisionObject;
+import loon.action.sprite.Bullet;
+import loon.utils.Easing.EasingMode;
+import loon.utils.TArray;
+
+/**
+ * CollisionManager的AABB_TREE与BSP检查器的比对与性能基准
+ *
+ * 5000个尺寸差异很大的物体(2%为200到600像素,其余4到32像素)每帧全部移动,再对其中500个查询相交的物体:
+ * AABB树的查询结果与逐个比较的结果一致,BSP的结果不多于逐个比较的结果,随后分别比较移动与查询的耗时.
+ */
+public class CollisionTreeBenchmark {
+
+	private static final int OBJECTS = 5000;
+
+	private static final int QUERIES = 500;
+
+	private static final float WORLD = 4096f;
+
+	private static Bullet[] createObjects(long seed) {
+		final Random random = new Random(seed);
+		final Bullet[] objects = new Bullet[OBJECTS];
+		for (int i = 0; i < OBJECTS; i++) {
+			final boolean large = random.nextInt(50) == 0;
+			final float w = large ? 200 + random.nextInt(400) : 4 + random.nextInt(28);
+			final float h = large ? 200 + random.nextInt(400) : 4 + random.nextInt(28);
+			objects[i] = new Bullet(0, EasingMode.Linear, null, random.nextFloat() * (WORLD - w),
+					random.nextFloat() * (WORLD - h), w, h, 0, 0, 1f);
+			// 子弹默认按方向旋转,这里只比较轴对齐的包围盒
+			objects[i].setDirToAngle(false);
+			objects[i].setRotation(0f);
+		}
+		return objects;
+	}
+
+	private static CollisionManager createManager(int mode, Bullet[] objects) {
+		final CollisionManager manager = new CollisionManager(mode);
+		manager.initialize(32, 32, mode);
+		for (Bullet o : objects) {
+			manager.addObject(o);
+		}
+		// CollisionManager在第一次查询时才把物体交给检查器,之后的移动才会更新检查器
+		manager.getIntersectingObjects(objects[0], null);
+		return manager;
+	}
+
+	/**
+	 * 以固定的种子移动全部物体,两组物体得到完全相同的运动
+	 */
+	private static void move(Bullet[] objects, long seed, CollisionManager manager) {
+		final Random random = new Random(seed);
+		for (Bullet o : objects) {
+			final float oldX = o.getX(), oldY = o.getY();
+			o.setLocation(Math.max(0f, Math.min(WORLD - o.getWidth(), oldX + random.nextFloat() * 16f - 8f)),
+					Math.max(0f, Math.min(WORLD - o.getHeight(), oldY + random.nextFloat() * 16f - 8f)));
+			manager.updateObjectLocation(o, oldX, oldY);
+		}
+	}
+
+	private static Set<CollisionObject> toSet(TArray<CollisionObject> objects) {
+		final Set<CollisionObject> set = Collections.newSetFromMap(new IdentityHashMap<CollisionObject, Boolean>());
+		for (int i = 0; i < objects.size; i++) {
+			set.add(objects.get(i));
+		}
+		return set;
+	}
+
+	private static Set<CollisionObject> bruteForce(Bullet[] objects, Bullet actor) {
+		final Set<CollisionObject> set = Collections.newSetFromMap(new IdentityHashMap<CollisionObject, Boolean>());
+		for (Bullet o : objects) {
+			if (o != actor && o.intersects(actor)) {
+				set.add(o);
+			}
+		}
+		return set;
+	}
+
+	private static Set<Integer> indices(Bullet[] objects, Set<CollisionObject> found) {
+		final Set<Integer> set = new HashSet<Integer>();
+		for (int i = 0; i < objects.length; i++) {
+			if (found.contains(objects[i])) {
+				set.add(i);
+			}
+		}
+		return set;
+	}
+
+	public static void main(String[] args) {
+		// 两组相同的物体分别交给两个检查器
+		final Bullet[] bspObjects = createObjects(1), treeObjects = createObjects(1);
+		final CollisionManager bsp = createManager(CollisionManager.BSP, bspObjects);
+		final CollisionManager tree = createManager(CollisionManager.AABB_TREE, treeObjects);
+		for (int frame = 0; frame < 10; frame++) {
+			move(bspObjects, frame, bsp);
+			move(treeObjects, frame, tree);
+		}
+		int subset = 0, exact = 0, bspMissed = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			final int index = i * (OBJECTS / QUERIES);
+			final Set<Integer> a = indices(bspObjects, toSet(bsp.getIntersectingObjects(bspObjects[index], null)));
+			final Set<CollisionObject> b = toSet(tree.getIntersectingObjects(treeObjects[index], null));
+			final Set<CollisionObject> c = bruteForce(treeObjects, treeObjects[index]);
+			// BSP检查器的结果包含查询物体自身,AABB树不包含
+			a.remove(Integer.valueOf(index));
+			final Set<Integer> expected = indices(treeObjects, c);
+			if (expected.containsAll(a)) {
+				subset++;
+				bspMissed += expected.size() - a.size();
+			}
+			if (b.equals(c)) {
+				exact++;
+			}
+		}
+		// BSP检查器会遗漏部分相交的物体,这里只要求其结果不多于逐个比较的结果
+		System.out.println("intersecting objects missed by BSP: " + bspMissed);
+		Bench.check("AABB tree matches a brute-force overlap scan", exact == QUERIES);
+		Bench.check("BSP finds no objects the brute-force scan rejects", subset == QUERIES);
+		Bench.check("both checkers hold every object",
+				bsp.getObjectsList().size == OBJECTS && tree.getObjectsList().size == OBJECTS);
+
+		final double bspUpdate = Bench.measure("BSP: move 5000 objects", 2, 5, 1, new Bench.Op() {
+
+			long frame = 100;
+
+			@Override
+			public long run() {
+				move(bspObjects, frame++, bsp);
+				return 0;
+			}
+		});
+		final double treeUpdate = Bench.measure("AABB tree: move 5000 objects", 2, 5, 1, new Bench.Op() {
+
+			long frame = 100;
+
+			@Override
+			public long run() {
+				move(treeObjects, frame++, tree);
+				return 0;
+			}
+		});
+		final double bspQuery = Bench.measure("BSP: 500 getIntersectingObjects", 2, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				long found = 0;
+				for (int i = 0; i < QUERIES; i++) {
+					found += bsp.getIntersectingObjects(bspObjects[i * (OBJECTS / QUERIES)], null).size;
+				}
+				return found;
+			}
+		});
+		final double treeQuery = Bench.measure("AABB tree: 500 getIntersectingObjects", 2, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				long found = 0;
+				for (int i = 0; i < QUERIES; i++) {
+					found += tree.getIntersectingObjects(treeObjects[i * (OBJECTS / QUERIES)], null).size;
+				}
+				return found;
+			}
+		});
+		Bench.compare("AABB tree vs BSP update", bspUpdate, treeUpdate, 2.0);
+		Bench.compare("AABB tree vs BSP queries", bspQuery, treeQuery, 1.2);
+		Bench.exit();
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import loon.EmptyObject;
+import loon.action.ActionBind;
+import loon.action.collision.CollisionGrid;
+import loon.action.collision.CollisionWorld;
+import loon.geom.RectF;
+import loon.utils.IntMap;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * CollisionWorld空间哈希的比对与性能基准
+ *
+ * 以旧版CollisionWorld的格子结构(IntMap<IntMap<Cell>>行表,每个格子以ObjectMap保存成员)为基准:
+ * 10000个16x16的物体在32像素的格子上每帧全部移动,再执行1000次矩形查询,检查两者的查询结果完全相同,并比较每帧的耗时.
+ */
+public class CollisionWorldBenchmark {
+
+	private static final int BODIES = 10000;
+
+	private static final int QUERIES = 1000;
+
+	private static final float CELL = 32f, SIZE = 16f, WORLD = 2048f;
+
+	/**
+	 * 旧版CollisionWorld的格子记录方式(移动时总是移除离开的格子)
+	 */
+	private static class LegacyCells {
+
+		private static class Cell {
+
+			int itemCount;
+
+			final ObjectMap<ActionBind, Boolean> items = new ObjectMap<ActionBind, Boolean>();
+		}
+
+		private final IntMap<IntMap<Cell>> rows = new IntMap<IntMap<Cell>>();
+
+		private final ObjectMap<ActionBind, RectF> rects = new ObjectMap<ActionBind, RectF>();
+
+		private final ObjectMap<ActionBind, Boolean> cellItemCache = new ObjectMap<ActionBind, Boolean>();
+
+		private final CollisionGrid grid = new CollisionGrid();
+
+		private final RectF rect1 = new RectF(), rect2 = new RectF(), queryRect = new RectF();
+
+		private void addItemToCell(ActionBind bind, int cx, int cy) {
+			IntMap<Cell> row = rows.get(cy);
+			if (row == null) {
+				rows.put(cy, row = new IntMap<Cell>());
+			}
+			Cell cell = row.get(cx);
+			if (cell == null) {
+				cell = new Cell();
+				row.put(cx, cell);
+			}
+			if (!cell.items.containsKey(bind)) {
+				cell.items.put(bind, true);
+				cell.itemCount++;
+			}
+		}
+
+		private void removeItemFromCell(ActionBind bind, int cx, int cy) {
+			IntMap<Cell> row = rows.get(cy);
+			if (row == null) {
+				return;
+			}
+			Cell cell = row.get(cx);
+			if (cell == null || !cell.items.containsKey(bind)) {
+				return;
+			}
+			cell.items.remove(bind);
+			cell.itemCount--;
+		}
+
+		void add(ActionBind bind, float x, float y, float w, float h) {
+			rects.put(bind, new RectF(x, y, w, h));
+			grid.toCellRect(CELL, CELL, x, y, w, h, rect1);
+			final int cl = (int) rect1.x, ct = (int) rect1.y;
+			for (int cy = ct; cy < ct + (int) rect1.height; cy++) {
+				for (int cx = cl; cx < cl + (int) rect1.width; cx++) {
+					addItemToCell(bind, cx, cy);
+				}
+			}
+		}
+
+		void update(ActionBind bind, float x2, float y2) {
+			final RectF r = rects.get(bind);
+			grid.toCellRect(CELL, CELL, r.x, r.y, r.width, r.height, rect1);
+			grid.toCellRect(CELL, CELL, x2, y2, r.width, r.height, rect2);
+			final int c1l = (int) rect1.x, c1t = (int) rect1.y, c1r = c1l + (int) rect1.width - 1,
+					c1b = c1t + (int) rect1.height - 1;
+			final int c2l = (int) rect2.x, c2t = (int) rect2.y, c2r = c2l + (int) rect2.width - 1,
+					c2b = c2t + (int) rect2.height - 1;
+			if (c1l != c2l || c1t != c2t || c1r != c2r || c1b != c2b) {
+				for (int cy = c2t; cy <= c2b; cy++) {
+					for (int cx = c2l; cx <= c2r; cx++) {
+						if (cy < c1t || cy > c1b || cx < c1l || cx > c1r) {
+							addItemToCell(bind, cx, cy);
+						}
+					}
+				}
+				for (int cy = c1t; cy <= c1b; cy++) {
+					for (int cx = c1l; cx <= c1r; cx++) {
+						if (cy < c2t || cy > c2b || cx < c2l || cx > c2r) {
+							removeItemFromCell(bind, cx, cy);
+						}
+					}
+				}
+			}
+			r.set(x2, y2, r.width, r.height);
+		}
+
+		TArray<ActionBind> getBindsInRect(float x, float y, float w, float h, TArray<ActionBind> out) {
+			out.clear();
+			cellItemCache.clear();
+			grid.toCellRect(CELL, CELL, x, y, w, h, queryRect);
+			final int cl = (int) queryRect.x, ct = (int) queryRect.y;
+			for (int cy = ct; cy < ct + (int) queryRect.height; cy++) {
+				final IntMap<Cell> row = rows.get(cy);
+				if (row == null) {
+					continue;
+				}
+				for (int cx = cl; cx < cl + (int) queryRect.width; cx++) {
+					final Cell cell = row.get(cx);
+					if (cell == null || cell.itemCount == 0) {
+						continue;
+					}
+					for (ObjectMap.Entry<ActionBind, Boolean> entry : cell.items.entries()) {
+						cellItemCache.put(entry.key, true);
+					}
+				}
+			}
+			for (ObjectMap.Entry<ActionBind, Boolean> entry : cellItemCache.entries()) {
+				out.add(entry.key);
+			}
+			return out;
+		}
+	}
+
+	private static Set<ActionBind> toSet(TArray<ActionBind> binds) {
+		final Set<ActionBind> set = Collections.newSetFromMap(new IdentityHashMap<ActionBind, Boolean>());
+		for (int i = 0; i < binds.size; i++) {
+			set.add(binds.get(i));
+		}
+		return set;
+	}
+
+	private static void step(float[] positions, Random random) {
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = Math.max(0f, Math.min(WORLD - SIZE, positions[i] + random.nextFloat() * 12f - 6f));
+		}
+	}
+
+	public static void main(String[] args) {
+		final ActionBind[] binds = new ActionBind[BODIES];
+		final float[] positions = new float[BODIES * 2];
+		final Random random = new Random(1);
+		final CollisionWorld world = new CollisionWorld(null, CELL, CELL, false);
+		final LegacyCells legacy = new LegacyCells();
+		for (int i = 0; i < BODIES; i++) {
+			binds[i] = new EmptyObject();
+			positions[i * 2] = random.nextFloat() * (WORLD - SIZE);
+			positions[i * 2 + 1] = random.nextFloat() * (WORLD - SIZE);
+			world.add(binds[i], positions[i * 2], positions[i * 2 + 1], SIZE, SIZE);
+			legacy.add(binds[i], positions[i * 2], positions[i * 2 + 1], SIZE, SIZE);
+		}
+		final float[] queries = new float[QUERIES * 4];
+		for (int i = 0; i < queries.length; i += 4) {
+			queries[i] = random.nextFloat() * WORLD;
+			queries[i + 1] = random.nextFloat() * WORLD;
+			queries[i + 2] = 16 + random.nextFloat() * 80;
+			queries[i + 3] = 16 + random.nextFloat() * 80;
+		}
+
+		// 移动若干帧后逐个比较查询结果
+		final TArray<ActionBind> a = new TArray<ActionBind>(), b = new TArray<ActionBind>();
+		int same = 0;
+		for (int frame = 0; frame < 20; frame++) {
+			step(positions, random);
+			for (int i = 0; i < BODIES; i++) {
+				world.update(binds[i], positions[i * 2], positions[i * 2 + 1]);
+				legacy.update(binds[i], positions[i * 2], positions[i * 2 + 1]);
+			}
+		}
+		for (int i = 0; i < queries.length; i += 4) {
+			world.getBindsInRect(queries[i], queries[i + 1], queries[i + 2], queries[i + 3], a);
+			legacy.getBindsInRect(queries[i], queries[i + 1], queries[i + 2], queries[i + 3], b);
+			if (a.size == b.size && toSet(a).equals(toSet(b))) {
+				same++;
+			}
+		}
+		Bench.check("getBindsInRect identical to the legacy cells after 20 frames", same == QUERIES);
+		Bench.check("cell count identical to the legacy cells", world.countItems() == BODIES);
+
+		final Random moves = new Random(2);
+		final double before = Bench.measure("legacy cells: move 10k + 1k queries", 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				step(positions, moves);
+				for (int i = 0; i < BODIES; i++) {
+					legacy.update(binds[i], positions[i * 2], positions[i * 2 + 1]);
+				}
+				long found = 0;
+				for (int i = 0; i < queries.length; i += 4) {
+					found += legacy.getBindsInRect(queries[i], queries[i + 1], queries[i + 2], queries[i + 3], b).size;
+				}
+				return found;
+			}
+		});
+		final double after = Bench.measure("CollisionWorld: move 10k + 1k queries", 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				step(positions, moves);
+				for (int i = 0; i < BODIES; i++) {
+					world.update(binds[i], positions[i * 2], positions[i * 2 + 1]);
+				}
+				long found = 0;
+				for (int i = 0; i < queries.length; i += 4) {
+					found += world.getBindsInRect(queries[i], queries[i + 1], queries[i + 2], queries[i + 3], a).size;
+				}
+				return found;
+			}
+		});
+		Bench.compare("CollisionWorld spatial hash vs legacy cells", before, after, 1.5);
+		Bench.exit();
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LSystem;
+import loon.action.avg.drama.Command;
+import loon.action.avg.drama.CommandStream;
+
+/**
+ * Command预编译指令流与旧版逐行解析的比对与性能基准
+ *
+ * 生成含1000个代码段(begin/end,call,set,if/else/endif,print,rand,goto,注释)的脚本,
+ * 旧版Command,文本编译的指令流与toBytes/fromBytes读回的指令流逐步执行的输出完全相同,
+ * 随后比较同一脚本反复载入执行,只执行,以及编译文本与读取二进制的耗时.
+ */
+public class CommandBenchmark {
+
+	private static final int BLOCKS = 1000;
+
+	private static final String NAME = "bench.txt";
+
+	private static String createScript() {
+		final StringBuilder sbr = new StringBuilder(BLOCKS * 128);
+		for (int i = 0; i < BLOCKS; i++) {
+			sbr.append("// block ").append(i).append(LSystem.NL);
+			sbr.append("begin f").append(i).append(LSystem.NL);
+			sbr.append("mes f").append(i).append(" print(v").append(i).append(')').append(LSystem.NL);
+			sbr.append("end").append(LSystem.NL);
+			sbr.append("set v").append(i).append(" = ").append(i % 3).append(LSystem.NL);
+			sbr.append("if v").append(i).append(" == 0").append(LSystem.NL);
+			sbr.append("call f").append(i).append(LSystem.NL);
+			sbr.append("else").append(LSystem.NL);
+			sbr.append("mes rand(10) print(v").append(i).append(')').append(LSystem.NL);
+			sbr.append("endif").append(LSystem.NL);
+			if (i % 10 == 0) {
+				sbr.append("goto skip").append(i).append(LSystem.NL);
+				sbr.append("mes never shown").append(LSystem.NL);
+				sbr.append("skip").append(i).append(LSystem.NL);
+			}
+		}
+		return sbr.toString();
+	}
+
+	private static String run(Command cmd) {
+		final StringBuilder out = new StringBuilder();
+		for (; cmd.next();) {
+			final String result = cmd.doExecute();
+			if (result != null) {
+				out.append(result).append('\n');
+			}
+		}
+		return out.toString();
+	}
+
+	private static String run(LegacyCommand cmd) {
+		final StringBuilder out = new StringBuilder();
+		for (; cmd.next();) {
+			final String result = cmd.doExecute();
+			if (result != null) {
+				out.append(result).append('\n');
+			}
+		}
+		return out.toString();
+	}
+
+	private static String runCommand(String script) {
+		Command.createCache(true);
+		return run(new Command(NAME, new String[0]).formatCommand(NAME, Command.includeStream(NAME, script)));
+	}
+
+	private static String runLegacy(String script) {
+		LegacyCommand.createCache(true);
+		return run(new LegacyCommand(NAME, new String[0]).formatCommand(NAME,
+				LegacyCommand.includeString(NAME, script)));
+	}
+
+	private static String runStream(CommandStream stream) {
+		Command.createCache(true);
+		return run(new Command(stream));
+	}
+
+	public static void main(String[] args) {
+		final String script = createScript();
+		final CommandStream stream = CommandStream.compile(NAME, script);
+		final byte[] bytes = stream.toBytes();
+		System.out.println("script: " + stream.size() + " lines, " + bytes.length / 1024 + "KB compiled");
+
+		final String expected = runLegacy(script);
+		Bench.check("legacy run takes calls, else branches and gotos",
+				expected.indexOf("mes f3 0") != -1 && expected.indexOf("mes rand(10) 1") != -1
+						&& expected.indexOf("never") == -1);
+		Bench.check("compiled stream gives the same step output", expected.equals(runCommand(script)));
+		Bench.check("stream read back from bytes gives the same step output",
+				expected.equals(runStream(CommandStream.fromBytes(NAME, bytes))));
+		// 第二次载入命中脚本缓存
+		Bench.check("cached stream gives the same step output", expected.equals(runCommand(script)));
+
+		final double legacyLoadRun = Bench.measure("legacy: load + run same script", 10, 20, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return runLegacy(script).length();
+			}
+		});
+		final double loadRun = Bench.measure("stream: load + run same script", 10, 20, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return runCommand(script).length();
+			}
+		});
+		final String[] lines = LegacyCommand.includeString(NAME, script);
+		final double legacyRun = Bench.measure("legacy: run only", 10, 20, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				LegacyCommand.createCache(true);
+				final LegacyCommand cmd = new LegacyCommand(NAME, new String[0]).formatCommand(NAME, lines);
+				return CommandBenchmark.run(cmd).length();
+			}
+		});
+		final double streamRun = Bench.measure("stream: run only", 10, 20, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return runStream(stream).length();
+			}
+		});
+		final double compile = Bench.measure("CommandStream.compile from text", 20, 20, 5, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return CommandStream.compile(NAME, script).size();
+			}
+		});
+		final double read = Bench.measure("CommandStream.fromBytes", 20, 20, 5, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return CommandStream.fromBytes(NAME, bytes).size();
+			}
+		});
+		Bench.compare("stream vs legacy load + run", legacyLoadRun, loadRun, 1.0);
+		Bench.compare("stream vs legacy run", legacyRun, streamRun, 1.0);
+		Bench.compare("fromBytes vs compile", compile, read, 1.5);
+		Bench.exit();
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.FrameProfiler;
+import loon.LSetting;
+import loon.LTexture;
+import loon.action.sprite.SpriteBatch;
+
+/**
+ * 帧性能分析器测试(无窗口,使用HeadlessGL20)
+ *
+ * 检查渲染提交计入调用者所在的阶段而不是FLUSH,以及游戏线程不断写入帧并修改容量时,其它线程读取到的帧始终连续且没有被覆盖的数据.
+ */
+public class FrameProfilerTest {
+
+	private static int failed;
+
+	private static volatile boolean running;
+
+	private static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	/**
+	 * 每帧的分配字节数等于帧号,读取方可以据此判断帧是否连续
+	 */
+	private static class FrameSampler implements FrameProfiler.Sampler {
+
+		long time;
+
+		long allocated;
+
+		@Override
+		public long nanoTime() {
+			return time += 1000;
+		}
+
+		@Override
+		public long allocatedBytes() {
+			return allocated;
+		}
+
+	}
+
+	private static void drawCalls() {
+		HeadlessTestGame game = new HeadlessTestGame(new LSetting(), 64, 64);
+		LTexture tex0 = game.assets().getImageSync("assets/tex0.png").texture();
+		LTexture tex1 = game.assets().getImageSync("assets/tex1.png").texture();
+		SpriteBatch batch = new SpriteBatch(64);
+
+		FrameProfiler.setSampler(new FrameSampler());
+		FrameProfiler.setEnabled(true);
+		FrameProfiler.clear();
+		FrameProfiler.endFrame();
+
+		FrameProfiler.begin(FrameProfiler.PAINT);
+		FrameProfiler.begin(FrameProfiler.SCREEN);
+		batch.begin();
+		batch.draw(tex0, 0, 0);
+		batch.end();
+		FrameProfiler.end(FrameProfiler.SCREEN);
+		FrameProfiler.begin(FrameProfiler.SPRITES);
+		batch.begin();
+		batch.draw(tex0, 0, 0);
+		batch.draw(tex1, 0, 0);
+		batch.end();
+		FrameProfiler.end(FrameProfiler.SPRITES);
+		FrameProfiler.end(FrameProfiler.PAINT);
+		FrameProfiler.endFrame();
+
+		final String csv = FrameProfiler.toCSV();
+		check("screen draw calls", csv.contains(",screen,") && drawCallsOf(csv, "screen") == 1);
+		check("sprites draw calls", drawCallsOf(csv, "sprites") == 2);
+		check("flush has time but no draw calls", drawCallsOf(csv, "flush") == 0 && callsOf(csv, "flush") == 3);
+		check("frame total draw calls", drawCallsOf(csv, "frame") == 3);
+		FrameProfiler.setEnabled(false);
+	}
+
+	private static String[] row(String csv, String phase) {
+		for (String line : csv.split("\n")) {
+			final String[] cols = line.trim().split(",");
+			if (cols.length == 7 && cols[1].equals(phase)) {
+				return cols;
+			}
+		}
+		return null;
+	}
+
+	private static int drawCallsOf(String csv, String phase) {
+		final String[] cols = row(csv, phase);
+		return cols == null ? -1 : Integer.parseInt(cols[5]);
+	}
+
+	private static int callsOf(String csv, String phase) {
+		final String[] cols = row(csv, phase);
+		return cols == null ? -1 : Integer.parseInt(cols[4]);
+	}
+
+	private static void concurrentReads() throws InterruptedException {
+		final FrameSampler sampler = new FrameSampler();
+		FrameProfiler.setSampler(sampler);
+		FrameProfiler.setEnabled(true);
+		FrameProfiler.setCapacity(2);
+		final long deadline = System.currentTimeMillis() + 1500;
+		running = true;
+		final long[] frames = { 0 };
+		Thread writer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				long frame = 0;
+				for (; System.currentTimeMillis() < deadline;) {
+					frame++;
+					sampler.allocated += frame;
+					FrameProfiler.endFrame();
+					if (frame % 5000 == 0) {
+						FrameProfiler.setCapacity(2 + (int) (frame / 5000 % 3));
+					}
+				}
+				frames[0] = frame;
+				running = false;
+			}
+		});
+		final long[] reads = { 0 };
+		final long[] torn = { 0 };
+		final Throwable[] error = { null };
+		Thread reader = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				final long[] values = new long[8];
+				try {
+					for (; running;) {
+						final int count = FrameProfiler.copyAllocations(FrameProfiler.FRAME, values);
+						for (int i = 1; i < count; i++) {
+							if (values[i] != values[i - 1] + 1) {
+								torn[0]++;
+								break;
+							}
+						}
+						reads[0]++;
+					}
+				} catch (Throwable ex) {
+					error[0] = ex;
+				}
+			}
+		});
+		writer.start();
+		reader.start();
+		writer.join();
+		reader.join();
+		FrameProfiler.setEnabled(false);
+		System.out.println("frames written: " + frames[0] + ", reads: " + reads[0]);
+		check("reads during setCapacity never fail", error[0] == null);
+		check("no torn frames returned", torn[0] == 0);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		drawCalls();
+		concurrentReads();
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
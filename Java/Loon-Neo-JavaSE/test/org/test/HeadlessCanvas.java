@@ -0,0 +1,270 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Graphics;
+import loon.canvas.Canvas;
+import loon.canvas.Gradient;
+import loon.canvas.Image;
+import loon.canvas.LColor;
+import loon.canvas.Path;
+import loon.canvas.Pattern;
+import loon.font.TextLayout;
+
+/**
+ * 不做任何绘制的Canvas,只用于在无窗口测试中生成纹理(像素保存在HeadlessImage中)
+ */
+public class HeadlessCanvas extends Canvas {
+
+	public HeadlessCanvas(Graphics gfx, Image image) {
+		super(gfx, image);
+	}
+
+	@Override
+	public Canvas clear() {
+		return this;
+	}
+
+	@Override
+	public Canvas clearRect(float x, float y, float width, float height) {
+		return this;
+	}
+
+	@Override
+	public Canvas clip(Path clipPath) {
+		return this;
+	}
+
+	@Override
+	public Canvas clipRect(float x, float y, float width, float height) {
+		return this;
+	}
+
+	@Override
+	public Gradient createGradient(Gradient.Config config) {
+		return null;
+	}
+
+	@Override
+	public Path createPath() {
+		return null;
+	}
+
+	@Override
+	public Canvas drawLine(float x0, float y0, float x1, float y1) {
+		return this;
+	}
+
+	@Override
+	public Canvas drawOval(float x, float y, float w, float h) {
+		return this;
+	}
+
+	@Override
+	public Canvas drawOval(float x, float y, float w, float h, LColor c) {
+		return this;
+	}
+
+	@Override
+	public Canvas drawPoint(float x, float y) {
+		return this;
+	}
+
+	@Override
+	public Canvas drawText(String text, float x, float y) {
+		return this;
+	}
+
+	@Override
+	public Canvas fillCircle(float x, float y, float radius) {
+		return this;
+	}
+
+	@Override
+	public Canvas fillOval(float x, float y, float w, float h) {
+		return this;
+	}
+
+	@Override
+	public Canvas fillOval(float x, float y, float w, float h, LColor c) {
+		return this;
+	}
+
+	@Override
+	public Canvas fillPath(Path path) {
+		return this;
+	}
+
+	@Override
+	public Canvas fillRect(float x, float y, float width, float height) {
+		return this;
+	}
+
+	@Override
+	public Canvas fillRoundRect(float x, float y, float width, float height, float radius) {
+		return this;
+	}
+
+	@Override
+	public Canvas fillText(TextLayout text, float x, float y) {
+		return this;
+	}
+
+	@Override
+	protected Object gc() {
+		return null;
+	}
+
+	@Override
+	public int getFillColor() {
+		return 0;
+	}
+
+	@Override
+	public int getStrokeColor() {
+		return 0;
+	}
+
+	@Override
+	public Canvas restore() {
+		return this;
+	}
+
+	@Override
+	public Canvas rotate(float radians) {
+		return this;
+	}
+
+	@Override
+	public Canvas save() {
+		return this;
+	}
+
+	@Override
+	public Canvas scale(float x, float y) {
+		return this;
+	}
+
+	@Override
+	public Canvas setAlpha(float alpha) {
+		return this;
+	}
+
+	@Override
+	public Canvas setColor(LColor color) {
+		return this;
+	}
+
+	@Override
+	public Canvas setColor(int r, int g, int b) {
+		return this;
+	}
+
+	@Override
+	public Canvas setColor(int r, int g, int b, int a) {
+		return this;
+	}
+
+	@Override
+	public Canvas setCompositeOperation(Canvas.Composite composite) {
+		return this;
+	}
+
+	@Override
+	public Canvas setFillColor(int color) {
+		return this;
+	}
+
+	@Override
+	public Canvas setFillGradient(Gradient gradient) {
+		return this;
+	}
+
+	@Override
+	public Canvas setFillPattern(Pattern pattern) {
+		return this;
+	}
+
+	@Override
+	public Canvas setLineCap(Canvas.LineCap cap) {
+		return this;
+	}
+
+	@Override
+	public Canvas setLineJoin(Canvas.LineJoin join) {
+		return this;
+	}
+
+	@Override
+	public Canvas setMiterLimit(float miter) {
+		return this;
+	}
+
+	@Override
+	public Canvas setStrokeColor(int color) {
+		return this;
+	}
+
+	@Override
+	public Canvas setStrokeWidth(float strokeWidth) {
+		return this;
+	}
+
+	@Override
+	public Image snapshot() {
+		return null;
+	}
+
+	@Override
+	public Canvas strokeCircle(float x, float y, float radius) {
+		return this;
+	}
+
+	@Override
+	public Canvas strokePath(Path path) {
+		return this;
+	}
+
+	@Override
+	public Canvas strokeRect(float x, float y, float width, float height) {
+		return this;
+	}
+
+	@Override
+	public Canvas strokeRoundRect(float x, float y, float width, float height, float radius) {
+		return this;
+	}
+
+	@Override
+	public Canvas strokeText(TextLayout text, float x, float y) {
+		return this;
+	}
+
+	@Override
+	public Canvas transform(float m11, float m12, float m21, float m22, float dx, float dy) {
+		return this;
+	}
+
+	@Override
+	public Canvas translate(float x, float y) {
+		return this;
+	}
+}
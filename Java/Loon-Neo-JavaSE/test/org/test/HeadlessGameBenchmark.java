@@ -0,0 +1,147 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.util.concurrent.Callable;
+
+import loon.LSetting;
+import loon.Stage;
+import loon.action.sprite.Entity;
+import loon.javase.JavaSEHeadlessPool;
+import loon.utils.MathUtils;
+
+/**
+ * HeadlessGame固定步长模拟与JavaSEHeadlessPool的比对与性能基准
+ *
+ * 200个物体以随机目标执行moveTo与rotateTo,模拟600步(60帧下10秒):相同种子的多次模拟结果完全相同,不同种子结果不同,
+ * 线程池中各自独立加载的模拟与当前线程中的顺序模拟结果一致,随后比较模拟速度与实际时间,以及线程池与顺序执行的耗时.
+ */
+public class HeadlessGameBenchmark {
+
+	private static final int ENTITIES = 200;
+
+	private static final int STEPS = 600;
+
+	private static final int FPS = 60;
+
+	private static final long[] SEEDS = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+	/**
+	 * 一次完整的模拟,返回全部物体最终位置与角度的校验值
+	 */
+	public static class Replay implements Callable<Object> {
+
+		private final long _seed;
+
+		public Replay(long seed) {
+			this._seed = seed;
+		}
+
+		@Override
+		public Object call() {
+			final LSetting setting = new LSetting();
+			setting.fps = FPS;
+			final HeadlessTestGame game = new HeadlessTestGame(setting, 16, 16);
+			game.setSeed(_seed);
+			final Entity[] entities = new Entity[ENTITIES];
+			game.setScreen(new Stage() {
+
+				@Override
+				public void create() {
+					for (int i = 0; i < ENTITIES; i++) {
+						final Entity e = new Entity("assets/entity.png", MathUtils.random(0f, 400f),
+								MathUtils.random(0f, 400f), 16, 16);
+						e.selfAction().moveTo(MathUtils.random(0f, 400f), MathUtils.random(0f, 400f), false,
+								MathUtils.random(1f, 8f)).rotateTo(MathUtils.random(0f, 360f)).start();
+						entities[i] = e;
+						add(e);
+					}
+				}
+			});
+			game.step(STEPS);
+			long checksum = game.getSimulatedTime();
+			for (Entity e : entities) {
+				checksum = checksum * 31 + Float.floatToIntBits(e.getX());
+				checksum = checksum * 31 + Float.floatToIntBits(e.getY());
+				checksum = checksum * 31 + Float.floatToIntBits(e.getRotation());
+			}
+			game.close();
+			return Long.valueOf(checksum);
+		}
+	}
+
+	private static Object[] sequential() {
+		final Object[] results = new Object[SEEDS.length];
+		for (int i = 0; i < SEEDS.length; i++) {
+			results[i] = new Replay(SEEDS[i]).call();
+		}
+		return results;
+	}
+
+	public static void main(String[] args) {
+		final Object first = new Replay(42).call();
+		Bench.check("same seed replays identically",
+				first.equals(new Replay(42).call()) && first.equals(new Replay(42).call()));
+		Bench.check("a different seed diverges", !first.equals(new Replay(43).call()));
+
+		final int workers = Math.min(SEEDS.length, Runtime.getRuntime().availableProcessors());
+		final JavaSEHeadlessPool pool = new JavaSEHeadlessPool(workers);
+		final Object[] expected = sequential();
+		final Object[] pooled = pool.invokeAll(Replay.class.getName(), SEEDS);
+		boolean same = true;
+		for (int i = 0; i < SEEDS.length; i++) {
+			same &= expected[i].equals(pooled[i]);
+		}
+		Bench.check("pooled runs match sequential runs", same);
+
+		final double perReplay = Bench.measure("one replay (" + STEPS + " steps)", 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return ((Long) new Replay(7).call()).longValue();
+			}
+		});
+		final double serial = Bench.measure(SEEDS.length + " replays, sequential", 2, 3, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return sequential().length;
+			}
+		});
+		final double parallel = Bench.measure(SEEDS.length + " replays, pool of " + workers, 2, 3, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return pool.invokeAll(Replay.class.getName(), SEEDS).length;
+			}
+		});
+		pool.close();
+		// 实际运行时每步都要等待一帧
+		Bench.compare("headless vs real time", STEPS * 1e9 / FPS, perReplay, 10.0);
+		if (workers > 1) {
+			Bench.compare("pool vs sequential", serial, parallel, 0.5 * workers);
+		} else {
+			System.out.println("single core: pool speed-up " + String.format("%.1fx", serial / parallel)
+					+ " not checked");
+		}
+		Bench.exit();
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.nio.IntBuffer;
+
+import loon.Graphics;
+import loon.LGame;
+import loon.LTexture;
+import loon.canvas.Image;
+import loon.canvas.ImageImpl;
+import loon.canvas.LColor;
+import loon.canvas.Pattern;
+import loon.opengl.GL20;
+import loon.utils.GLUtils;
+import loon.utils.Scale;
+
+/**
+ * 以int数组保存像素的Image实现,供无窗口测试使用(上传时直接把像素交给GL20,不做任何格式转换)
+ */
+public class HeadlessImage extends ImageImpl {
+
+	private int[] _pixels;
+
+	public HeadlessImage(LGame game, int width, int height, String source) {
+		super(game, false, Scale.ONE, width, height, source);
+	}
+
+	@Override
+	protected void setBitmap(Object bitmap) {
+		_pixels = (int[]) bitmap;
+	}
+
+	@Override
+	protected Object createErrorBitmap(int pixelWidth, int pixelHeight) {
+		return new int[pixelWidth * pixelHeight];
+	}
+
+	@Override
+	public void upload(Graphics gfx, LTexture tex) {
+		GLUtils.bindTexture(gfx.gl, tex.getID());
+		gfx.gl.glTexImage2D(GL20.GL_TEXTURE_2D, 0, GL20.GL_RGBA, pixelWidth, pixelHeight, 0, GL20.GL_RGBA,
+				GL20.GL_UNSIGNED_BYTE, IntBuffer.wrap(_pixels));
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public Image transform(BitmapTransformer xform) {
+		return this;
+	}
+
+	@Override
+	public Pattern createPattern(boolean repeatX, boolean repeatY) {
+		return null;
+	}
+
+	@Override
+	public void getLight(Image buffer, int v) {
+	}
+
+	@Override
+	public int getLight(int color, int v) {
+		return color;
+	}
+
+	@Override
+	public boolean hasAlpha() {
+		return true;
+	}
+
+	@Override
+	public int[] getPixels() {
+		return getPixels(new int[pixelWidth * pixelHeight]);
+	}
+
+	@Override
+	public int[] getPixels(int[] pixels) {
+		return getPixels(pixels, 0, pixelWidth, 0, 0, pixelWidth, pixelHeight);
+	}
+
+	@Override
+	public int[] getPixels(int x, int y, int w, int h) {
+		return getPixels(new int[w * h], 0, w, x, y, w, h);
+	}
+
+	@Override
+	public int[] getPixels(int offset, int stride, int x, int y, int width, int height) {
+		return getPixels(new int[offset + stride * height], offset, stride, x, y, width, height);
+	}
+
+	@Override
+	public int[] getPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+		for (int j = 0; j < height; j++) {
+			System.arraycopy(_pixels, (y + j) * pixelWidth + x, pixels, offset + j * stride, width);
+		}
+		return pixels;
+	}
+
+	@Override
+	public void setPixels(int[] pixels, int width, int height) {
+		setPixels(pixels, 0, width, 0, 0, width, height);
+	}
+
+	@Override
+	public void setPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+		for (int j = 0; j < height; j++) {
+			System.arraycopy(pixels, offset + j * stride, _pixels, (y + j) * pixelWidth + x, width);
+		}
+	}
+
+	@Override
+	public int[] setPixels(int[] pixels, int x, int y, int w, int h) {
+		setPixels(pixels, 0, w, x, y, w, h);
+		return pixels;
+	}
+
+	@Override
+	public void setPixel(LColor c, int x, int y) {
+		setPixel(c.getARGB(), x, y);
+	}
+
+	@Override
+	public void setPixel(int rgb, int x, int y) {
+		_pixels[y * pixelWidth + x] = rgb;
+	}
+
+	@Override
+	public int getPixel(int x, int y) {
+		return _pixels[y * pixelWidth + x];
+	}
+
+	@Override
+	public int getRGB(int x, int y) {
+		return getPixel(x, y);
+	}
+
+	@Override
+	public void setRGB(int rgb, int x, int y) {
+		setPixel(rgb, x, y);
+	}
+
+	@Override
+	public void getRGB(int startX, int startY, int width, int height, int[] rgbArray, int offset, int scansize) {
+		getPixels(rgbArray, offset, scansize, startX, startY, width, height);
+	}
+
+	@Override
+	public void setRGB(int startX, int startY, int width, int height, int[] rgbArray, int offset, int scansize) {
+		setPixels(rgbArray, offset, scansize, startX, startY, width, height);
+	}
+
+	@Override
+	public void draw(Object gc, float x, float y, float width, float height) {
+	}
+
+	@Override
+	public void draw(Object gc, float dx, float dy, float dw, float dh, float sx, float sy, float sw, float sh) {
+	}
+
+	@Override
+	public Image getSubImage(int x, int y, int width, int height) {
+		return this;
+	}
+
+	@Override
+	protected void closeImpl() {
+		_pixels = null;
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.Assets;
+import loon.Graphics;
+import loon.HeadlessGame;
+import loon.LSetting;
+import loon.Sound;
+import loon.canvas.Canvas;
+import loon.canvas.ImageImpl;
+import loon.font.TextFormat;
+import loon.font.TextLayout;
+import loon.font.TextWrap;
+import loon.geom.Dimension;
+import loon.javase.JavaSESupport;
+import loon.opengl.TextureSource;
+import loon.utils.Scale;
+
+/**
+ * 使用HeadlessGL20与HeadlessImage的无窗口游戏,任意路径的图片都载入为指定大小的空白图像,载入次数记录在loads中
+ */
+public class HeadlessTestGame extends HeadlessGame {
+
+	private final HeadlessGL20 _gl = new HeadlessGL20();
+
+	private final int _imageWidth, _imageHeight;
+
+	private Graphics _graphics;
+
+	private Assets _assets;
+
+	public int loads;
+
+	public HeadlessTestGame(LSetting setting, int imageWidth, int imageHeight) {
+		super(new JavaSESupport(), setting, 1L);
+		this._imageWidth = imageWidth;
+		this._imageHeight = imageHeight;
+	}
+
+	public HeadlessGL20 gl() {
+		return _gl;
+	}
+
+	@Override
+	public Graphics graphics() {
+		if (_graphics == null) {
+			_graphics = new Graphics(this, _gl, Scale.ONE) {
+
+				@Override
+				public Dimension screenSize() {
+					return new Dimension(setting.width, setting.height);
+				}
+
+				@Override
+				public TextLayout layoutText(String text, TextFormat format) {
+					return null;
+				}
+
+				@Override
+				public TextLayout[] layoutText(String text, TextFormat format, TextWrap wrap) {
+					return null;
+				}
+
+				@Override
+				protected Canvas createCanvasImpl(Scale scale, int pixelWidth, int pixelHeight) {
+					final HeadlessImage image = new HeadlessImage(HeadlessTestGame.this, pixelWidth, pixelHeight,
+							TextureSource.RenderCanvas);
+					image.succeed(new ImageImpl.Data(scale, new int[pixelWidth * pixelHeight], pixelWidth, pixelHeight));
+					return new HeadlessCanvas(this, image);
+				}
+			};
+		}
+		return _graphics;
+	}
+
+	@Override
+	public Assets assets() {
+		if (_assets == null) {
+			_assets = new Assets(asyn()) {
+
+				@Override
+				public Sound getSound(String path) {
+					return null;
+				}
+
+				@Override
+				public String getTextSync(String path) throws Exception {
+					return null;
+				}
+
+				@Override
+				public byte[] getBytesSync(String path) throws Exception {
+					return null;
+				}
+
+				@Override
+				protected ImageImpl.Data load(String path) throws Exception {
+					loads++;
+					return new ImageImpl.Data(Scale.ONE, new int[_imageWidth * _imageHeight], _imageWidth,
+							_imageHeight);
+				}
+
+				@Override
+				protected ImageImpl createImage(boolean async, int rawWidth, int rawHeight, String source) {
+					return new HeadlessImage(HeadlessTestGame.this, rawWidth, rawHeight, source);
+				}
+			};
+		}
+		return _assets;
+	}
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import loon.opengl.light.LightShapeSystem;
+
+/**
+ * LightShapeSystem角度扫描与旧的逐顶点求交算法的比对测试
+ *
+ * 以逐点视线检测(光源到采样点的线段是否穿过任何遮挡边)为基准,在网格采样点上检查角度扫描得到的可见多边形:互不重叠的矩形场景中与基准一致,
+ * 且顶点与旧算法相同;矩形相互重叠时(旧算法在此会出错)仍与基准一致;多光源批量计算与逐个计算的结果相同.
+ */
+public class LightVisibilityTest {
+
+	private static final float WIDTH = 480, HEIGHT = 320;
+
+	private static final int STEP = 4;
+
+	private static int failed;
+
+	private static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	/**
+	 * 遮挡矩形,x,y,w,h
+	 */
+	private static float[] separatedRects(long seed, int count) {
+		final Random random = new Random(seed);
+		final float[] rects = new float[count * 4];
+		for (int n = 0; n < count;) {
+			final float w = 12 + random.nextInt(40), h = 12 + random.nextInt(40);
+			final float x = 8 + random.nextInt((int) (WIDTH - w - 16));
+			final float y = 8 + random.nextInt((int) (HEIGHT - h - 16));
+			boolean free = true;
+			for (int i = 0; i < n && free; i++) {
+				final int o = i * 4;
+				// 至少间隔6个像素
+				free = x + w + 6 < rects[o] || rects[o] + rects[o + 2] + 6 < x || y + h + 6 < rects[o + 1]
+						|| rects[o + 1] + rects[o + 3] + 6 < y;
+			}
+			if (free) {
+				rects[n * 4] = x;
+				rects[n * 4 + 1] = y;
+				rects[n * 4 + 2] = w;
+				rects[n * 4 + 3] = h;
+				n++;
+			}
+		}
+		return rects;
+	}
+
+	private static float[] overlappingRects(long seed, int count) {
+		final Random random = new Random(seed);
+		final float[] rects = new float[count * 4];
+		for (int i = 0; i < count; i++) {
+			rects[i * 4 + 2] = 20 + random.nextInt(60);
+			rects[i * 4 + 3] = 20 + random.nextInt(60);
+			rects[i * 4] = 8 + random.nextInt((int) (WIDTH - rects[i * 4 + 2] - 16));
+			rects[i * 4 + 1] = 8 + random.nextInt((int) (HEIGHT - rects[i * 4 + 3] - 16));
+		}
+		return rects;
+	}
+
+	private static LightShapeSystem createSystem(float[] rects) {
+		LightShapeSystem system = new LightShapeSystem(20f, 0f, 0f, WIDTH, HEIGHT);
+		for (int i = 0; i < rects.length; i += 4) {
+			system.addLightRect(rects[i], rects[i + 1], rects[i + 2], rects[i + 3]);
+		}
+		return system;
+	}
+
+	private static boolean insideRect(float[] rects, float x, float y, float margin) {
+		for (int i = 0; i < rects.length; i += 4) {
+			if (x > rects[i] - margin && x < rects[i] + rects[i + 2] + margin && y > rects[i + 1] - margin
+					&& y < rects[i + 1] + rects[i + 3] + margin) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean segmentsCross(float ax, float ay, float bx, float by, float cx, float cy, float dx,
+			float dy) {
+		final float d1 = (dx - cx) * (ay - cy) - (dy - cy) * (ax - cx);
+		final float d2 = (dx - cx) * (by - cy) - (dy - cy) * (bx - cx);
+		final float d3 = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+		final float d4 = (bx - ax) * (dy - ay) - (by - ay) * (dx - ax);
+		return ((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0));
+	}
+
+	/**
+	 * 基准:光源到采样点的线段不穿过任何矩形的边
+	 */
+	private static boolean visible(float[] rects, float lx, float ly, float px, float py) {
+		for (int i = 0; i < rects.length; i += 4) {
+			final float x0 = rects[i], y0 = rects[i + 1], x1 = x0 + rects[i + 2], y1 = y0 + rects[i + 3];
+			if (segmentsCross(lx, ly, px, py, x0, y0, x1, y0) || segmentsCross(lx, ly, px, py, x1, y0, x1, y1)
+					|| segmentsCross(lx, ly, px, py, x1, y1, x0, y1) || segmentsCross(lx, ly, px, py, x0, y1, x0, y0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean insidePolygon(float[] points, int count, float x, float y) {
+		boolean inside = false;
+		for (int i = 0, j = count - 1; i < count; j = i++) {
+			final float xi = points[i * 2], yi = points[i * 2 + 1];
+			final float xj = points[j * 2], yj = points[j * 2 + 1];
+			if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+				inside = !inside;
+			}
+		}
+		return inside;
+	}
+
+	private static float[] points(LightShapeSystem system) {
+		return system.getLightPolygon().getPoints().clone();
+	}
+
+	/**
+	 * 与基准不一致的采样点数,跳过遮挡物内部及边缘附近的点
+	 */
+	private static int mismatches(float[] rects, float lx, float ly, float[] polygon, int[] samples) {
+		int count = 0;
+		for (float y = STEP / 2f; y < HEIGHT; y += STEP) {
+			for (float x = STEP / 2f; x < WIDTH; x += STEP) {
+				if (insideRect(rects, x, y, 1f)) {
+					continue;
+				}
+				samples[0]++;
+				if (visible(rects, lx, ly, x, y) != insidePolygon(polygon, polygon.length / 2, x, y)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 两个多边形的顶点集合相同(不考虑顺序)
+	 */
+	private static boolean sameVertices(float[] a, float[] b, float epsilon) {
+		if (a.length != b.length) {
+			return false;
+		}
+		final boolean[] used = new boolean[b.length / 2];
+		for (int i = 0; i < a.length; i += 2) {
+			boolean found = false;
+			for (int j = 0; j < b.length && !found; j += 2) {
+				if (!used[j / 2] && Math.abs(a[i] - b[j]) <= epsilon && Math.abs(a[i + 1] - b[j + 1]) <= epsilon) {
+					used[j / 2] = true;
+					found = true;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static float[] lightPositions(float[] rects, long seed, int count) {
+		final Random random = new Random(seed);
+		final float[] positions = new float[count * 2];
+		for (int n = 0; n < count;) {
+			final float x = 4 + random.nextInt((int) WIDTH - 8) + 0.25f;
+			final float y = 4 + random.nextInt((int) HEIGHT - 8) + 0.25f;
+			if (!insideRect(rects, x + 0.5f, y + 0.5f, 2f)) {
+				positions[n * 2] = x;
+				positions[n * 2 + 1] = y;
+				n++;
+			}
+		}
+		return positions;
+	}
+
+	public static void main(String[] args) {
+		// 互不重叠的矩形:角度扫描与基准一致,顶点与旧算法相同
+		float[] rects = separatedRects(1, 24);
+		LightShapeSystem system = createSystem(rects);
+		float[] positions = lightPositions(rects, 2, 24);
+		int sweepErrors = 0, vertexErrors = 0, sameCount = 0;
+		int[] samples = { 0 };
+		for (int i = 0; i < positions.length; i += 2) {
+			// updateLight内部以(x+0.5,y+0.5)为光源位置
+			final float lx = positions[i] + 0.5f, ly = positions[i + 1] + 0.5f;
+			system.setSweepMode(true);
+			system.updateLight(positions[i], positions[i + 1]);
+			final float[] sweep = points(system);
+			system.setSweepMode(false);
+			system.updateLight(positions[i], positions[i + 1]);
+			final float[] vertex = points(system);
+			sweepErrors += mismatches(rects, lx, ly, sweep, samples);
+			vertexErrors += mismatches(rects, lx, ly, vertex, new int[1]);
+			if (sameVertices(sweep, vertex, 0.01f)) {
+				sameCount++;
+			}
+		}
+		// 旧算法以相邻顶点交换的方式修正顺序,个别情况下会留下交叉的边,所以只比较顶点集合
+		System.out.println("separated: " + samples[0] + " samples, sweep " + sweepErrors + " mismatches, by vertices "
+				+ vertexErrors + " (vertex order errors)");
+		check("separated rects: sweep matches line-of-sight reference", sweepErrors <= samples[0] / 1000);
+		check("separated rects: sweep has the same vertices as updateLightByVertices",
+				sameCount == positions.length / 2);
+
+		// 相互重叠的矩形:旧算法在重叠处可能出错,只检查角度扫描
+		rects = overlappingRects(3, 30);
+		system = createSystem(rects);
+		positions = lightPositions(rects, 4, 24);
+		sweepErrors = vertexErrors = 0;
+		samples[0] = 0;
+		for (int i = 0; i < positions.length; i += 2) {
+			final float lx = positions[i] + 0.5f, ly = positions[i + 1] + 0.5f;
+			system.setSweepMode(true);
+			system.updateLight(positions[i], positions[i + 1]);
+			sweepErrors += mismatches(rects, lx, ly, points(system), samples);
+			system.setSweepMode(false);
+			system.updateLight(positions[i], positions[i + 1]);
+			vertexErrors += mismatches(rects, lx, ly, points(system), new int[1]);
+		}
+		System.out.println("overlapping: " + samples[0] + " samples, sweep " + sweepErrors + ", by vertices "
+				+ vertexErrors + " mismatches");
+		check("overlapping rects: sweep matches line-of-sight reference", sweepErrors <= samples[0] / 1000);
+
+		// 多光源批量计算与逐个计算一致
+		system.setSweepMode(true);
+		final float[][] single = new float[positions.length / 2][];
+		for (int i = 0; i < positions.length; i += 2) {
+			system.updateLight(positions[i], positions[i + 1]);
+			single[i / 2] = points(system);
+		}
+		final float[] shifted = new float[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			shifted[i] = positions[i] + 0.5f;
+		}
+		system.updateLights(shifted);
+		boolean same = system.getLightCount() == single.length;
+		for (int i = 0; same && i < single.length; i++) {
+			same = Arrays.equals(single[i], system.getLightPolygon(i).getPoints());
+		}
+		check("updateLights batch equals single updateLight polygons", same);
+
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
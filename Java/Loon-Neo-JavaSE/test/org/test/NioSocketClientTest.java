@@ -0,0 +1,270 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import loon.NetworkMessageHandler;
+import loon.javase.JavaSENioEventLoop;
+import loon.javase.JavaSENioSocketClient;
+
+/**
+ * 基于Selector的JavaSENioSocketClient回环测试
+ *
+ * 在本机启动一个原样回显字节的阻塞式服务器,检查分帧消息(包含跨越多次读取与聚集写的大消息)按顺序完整返回,getSendData能取得回显,
+ * 非分帧模式字节流完整,对端不读取时trySend在超过高水位后返回false,服务器断开时触发关闭回调.
+ */
+public class NioSocketClientTest {
+
+	private static final long TIMEOUT = 10000;
+
+	private static int failed;
+
+	private static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	/**
+	 * 每个连接一个线程,原样回显收到的字节,echo为false时只接收不读取
+	 */
+	private static ServerSocket startServer(final boolean echo, final CopyOnWriteArrayList<Socket> accepted)
+			throws IOException {
+		final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				for (; !server.isClosed();) {
+					final Socket socket;
+					try {
+						socket = server.accept();
+					} catch (IOException e) {
+						return;
+					}
+					accepted.add(socket);
+					if (!echo) {
+						continue;
+					}
+					Thread worker = new Thread(new Runnable() {
+
+						@Override
+						public void run() {
+							final byte[] buffer = new byte[8192];
+							try {
+								final InputStream in = socket.getInputStream();
+								final OutputStream out = socket.getOutputStream();
+								for (int len; (len = in.read(buffer)) >= 0;) {
+									out.write(buffer, 0, len);
+								}
+							} catch (IOException e) {
+							} finally {
+								try {
+									socket.close();
+								} catch (IOException e) {
+								}
+							}
+						}
+					});
+					worker.setDaemon(true);
+					worker.start();
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+		return server;
+	}
+
+	private static InetSocketAddress addressOf(ServerSocket server) {
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+	}
+
+	private static boolean await(CountDownLatch latch) throws InterruptedException {
+		return latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+	}
+
+	private static void framedEcho(JavaSENioEventLoop loop, ServerSocket server) throws Exception {
+		final int count = 2000;
+		final byte[][] sent = new byte[count][];
+		final Random random = new Random(10);
+		for (int i = 0; i < count; i++) {
+			// 偶尔穿插超过聚集写阈值与读缓冲大小的消息
+			final int size = i % 250 == 0 ? 200 * 1024 + i : random.nextInt(300);
+			sent[i] = new byte[size];
+			random.nextBytes(sent[i]);
+		}
+		final CopyOnWriteArrayList<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		final CountDownLatch opened = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(count);
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicInteger frames = new AtomicInteger();
+		JavaSENioSocketClient client = new JavaSENioSocketClient(loop);
+		client.onOpen(new Runnable() {
+
+			@Override
+			public void run() {
+				opened.countDown();
+			}
+		});
+		client.onFrame(new JavaSENioSocketClient.FrameHandler() {
+
+			@Override
+			public void onFrame(JavaSENioSocketClient c, ByteBuffer frame) {
+				frames.incrementAndGet();
+			}
+		});
+		client.onMessage(new NetworkMessageHandler() {
+
+			@Override
+			public void handleMessage(byte[] data) {
+				received.add(data);
+				done.countDown();
+			}
+
+			@Override
+			public void handleError(Exception e) {
+				errors.incrementAndGet();
+			}
+
+			@Override
+			public void handleTimeout() {
+			}
+		});
+		client.connect(addressOf(server));
+		check("framed: connected", await(opened) && client.isConnected());
+		for (int i = 0; i < count; i++) {
+			client.send(sent[i]);
+		}
+		final boolean all = await(done);
+		boolean same = all && received.size() == count;
+		for (int i = 0; same && i < count; i++) {
+			same = Arrays.equals(sent[i], received.get(i));
+		}
+		check("framed: " + count + " messages echoed in order", same);
+		check("framed: frame handler saw every message", frames.get() == count);
+		check("framed: no errors", errors.get() == 0);
+
+		client.onMessage(null);
+		final byte[] request = "ping".getBytes("UTF-8");
+		final byte[] response = client.getSendData(request, (int) TIMEOUT);
+		check("framed: getSendData returns the echo", Arrays.equals(request, response));
+		client.close();
+	}
+
+	private static void rawEcho(JavaSENioEventLoop loop, ServerSocket server) throws Exception {
+		final byte[] data = new byte[300 * 1024];
+		new Random(11).nextBytes(data);
+		final byte[] received = new byte[data.length];
+		final AtomicInteger offset = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(1);
+		JavaSENioSocketClient client = new JavaSENioSocketClient(loop).setFramed(false);
+		client.onFrame(new JavaSENioSocketClient.FrameHandler() {
+
+			@Override
+			public void onFrame(JavaSENioSocketClient c, ByteBuffer frame) {
+				final int len = frame.remaining();
+				final int pos = offset.get();
+				if (pos + len <= received.length) {
+					frame.get(received, pos, len);
+				}
+				if (offset.addAndGet(len) >= received.length) {
+					done.countDown();
+				}
+			}
+		});
+		client.connect(addressOf(server));
+		for (int i = 0; i < data.length; i += 7000) {
+			client.send(Arrays.copyOfRange(data, i, Math.min(data.length, i + 7000)));
+		}
+		check("raw: byte stream echoed intact", await(done) && offset.get() == data.length
+				&& Arrays.equals(data, received));
+		client.close();
+	}
+
+	private static void backpressure(JavaSENioEventLoop loop) throws Exception {
+		final CopyOnWriteArrayList<Socket> accepted = new CopyOnWriteArrayList<Socket>();
+		final ServerSocket server = startServer(false, accepted);
+		final CountDownLatch opened = new CountDownLatch(1);
+		final CountDownLatch closed = new CountDownLatch(1);
+		JavaSENioSocketClient client = new JavaSENioSocketClient(loop).setWaterMarks(16 * 1024, 64 * 1024);
+		client.onOpen(new Runnable() {
+
+			@Override
+			public void run() {
+				opened.countDown();
+			}
+		});
+		client.onClose(new Runnable() {
+
+			@Override
+			public void run() {
+				closed.countDown();
+			}
+		});
+		client.connect(addressOf(server));
+		check("backpressure: connected", await(opened));
+		final byte[] chunk = new byte[1024 * 1024];
+		boolean rejected = false;
+		for (int i = 0; i < 256 && !rejected; i++) {
+			rejected = !client.trySend(chunk);
+		}
+		check("backpressure: trySend refuses above the high water mark", rejected && !client.isWritable()
+				&& client.getPendingBytes() > 64 * 1024);
+
+		for (Socket socket : accepted) {
+			socket.close();
+		}
+		server.close();
+		check("backpressure: close callback on peer disconnect", await(closed));
+		client.close();
+	}
+
+	public static void main(String[] args) throws Exception {
+		final JavaSENioEventLoop loop = new JavaSENioEventLoop("NioSocketClientTest").start();
+		final ServerSocket server = startServer(true, new CopyOnWriteArrayList<Socket>());
+		try {
+			framedEcho(loop, server);
+			rawEcho(loop, server);
+			backpressure(loop);
+		} finally {
+			server.close();
+			loop.shutdown();
+		}
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import loon.Assets;
+import loon.LSetting;
+import loon.Sound;
+import loon.canvas.Image;
+import loon.canvas.ImageImpl;
+import loon.javase.JavaSEPreloadExecutor;
+import loon.utils.Scale;
+import loon.utils.res.loaders.ImageAssetLoader;
+import loon.utils.res.loaders.PreloadAssets;
+import loon.utils.res.loaders.PreloadItem;
+import loon.utils.res.loaders.PreloadStreamer;
+
+/**
+ * PreloadAssets流水线加载与逐帧串行加载的比对与性能基准
+ *
+ * 在临时目录生成图片(原始像素文件,载入时逐像素解码),json,文本与二进制文件各60个,以60帧的节奏逐帧推进加载:
+ * 两种方式载入的内容都与文件一致,随后比较加载完毕所需的帧数,最慢一帧中游戏线程的耗时,以及总耗时.
+ */
+public class PreloadStreamerBenchmark {
+
+	private static final int FILES = 60;
+
+	private static final int IMAGE_SIZE = 256;
+
+	private static final long FRAME_MILLIS = 16;
+
+	/**
+	 * 从磁盘读取真实文件的无窗口游戏,图片为宽高加ARGB像素的原始数据
+	 */
+	private static class FileGame extends HeadlessTestGame {
+
+		private final File _root;
+
+		private Assets _files;
+
+		FileGame(File root) {
+			super(new LSetting(), 1, 1);
+			this._root = root;
+		}
+
+		@Override
+		public Assets assets() {
+			if (_files == null) {
+				_files = new Assets(asyn()) {
+
+					@Override
+					public Sound getSound(String path) {
+						return null;
+					}
+
+					@Override
+					public String getTextSync(String path) throws Exception {
+						return new String(getBytesSync(path), StandardCharsets.UTF_8);
+					}
+
+					@Override
+					public byte[] getBytesSync(String path) throws Exception {
+						return Files.readAllBytes(new File(_root, path).toPath());
+					}
+
+					@Override
+					protected ImageImpl.Data load(String path) throws Exception {
+						final byte[] raw = getBytesSync(path);
+						final int width = readInt(raw, 0), height = readInt(raw, 4);
+						final int[] pixels = new int[width * height];
+						for (int i = 0; i < pixels.length; i++) {
+							pixels[i] = readInt(raw, 8 + i * 4);
+						}
+						return new ImageImpl.Data(Scale.ONE, pixels, width, height);
+					}
+
+					@Override
+					protected ImageImpl createImage(boolean async, int rawWidth, int rawHeight, String source) {
+						return new HeadlessImage(FileGame.this, rawWidth, rawHeight, source);
+					}
+				};
+			}
+			return _files;
+		}
+	}
+
+	private static int readInt(byte[] b, int i) {
+		return (b[i] & 0xff) << 24 | (b[i + 1] & 0xff) << 16 | (b[i + 2] & 0xff) << 8 | (b[i + 3] & 0xff);
+	}
+
+	private static File createFiles() throws Exception {
+		final File root = Files.createTempDirectory("loon-preload").toFile();
+		final Random random = new Random(1);
+		for (int i = 0; i < FILES; i++) {
+			final byte[] image = new byte[8 + IMAGE_SIZE * IMAGE_SIZE * 4];
+			random.nextBytes(image);
+			image[0] = image[1] = image[4] = image[5] = 0;
+			image[2] = image[6] = (byte) (IMAGE_SIZE >> 8);
+			image[3] = image[7] = (byte) IMAGE_SIZE;
+			Files.write(new File(root, "image" + i + ".raw").toPath(), image);
+			final StringBuilder json = new StringBuilder("{\"id\":" + i + ",\"items\":[");
+			final StringBuilder text = new StringBuilder();
+			for (int j = 0; j < 2000; j++) {
+				json.append(j == 0 ? "" : ",").append("{\"name\":\"item").append(j).append("\",\"value\":")
+						.append(random.nextInt(1000)).append('}');
+				text.append("第").append(j).append("行 line ").append(random.nextInt()).append('\n');
+			}
+			json.append("]}");
+			Files.write(new File(root, "data" + i + ".json").toPath(),
+					json.toString().getBytes(StandardCharsets.UTF_8));
+			Files.write(new File(root, "text" + i + ".txt").toPath(),
+					text.toString().getBytes(StandardCharsets.UTF_8));
+			final byte[] bytes = new byte[64 * 1024];
+			random.nextBytes(bytes);
+			Files.write(new File(root, "bytes" + i + ".bin").toPath(), bytes);
+		}
+		return root;
+	}
+
+	private static void delete(File root) {
+		for (File f : root.listFiles()) {
+			f.delete();
+		}
+		root.delete();
+	}
+
+	private static PreloadAssets createAssets(boolean streaming) {
+		final PreloadAssets assets = new PreloadAssets(true);
+		for (int i = 0; i < FILES; i++) {
+			assets.image("image" + i + ".raw");
+			assets.json("data" + i + ".json");
+			assets.text("text" + i + ".txt");
+			assets.bytes("bytes" + i + ".bin");
+		}
+		return assets.streaming(streaming);
+	}
+
+	/**
+	 * 以固定帧率逐帧推进加载,返回{帧数,最慢一帧的纳秒数,总纳秒数}
+	 */
+	private static long[] load(PreloadAssets assets) throws InterruptedException {
+		long frames = 0, worst = 0;
+		final long start = System.nanoTime();
+		for (; !assets.completed();) {
+			final long frameStart = System.nanoTime();
+			assets.detection();
+			final long used = System.nanoTime() - frameStart;
+			worst = Math.max(worst, used);
+			frames++;
+			final long rest = FRAME_MILLIS - used / 1000000L;
+			if (rest > 0) {
+				Thread.sleep(rest);
+			}
+		}
+		return new long[] { frames, worst, System.nanoTime() - start };
+	}
+
+	private static boolean sameContent(File root, PreloadAssets assets) throws Exception {
+		for (int i = 0; i < FILES; i++) {
+			// ImageAssetLoader登记在PreloadItem.Texture下,getImage找不到它
+			final Image image = ((ImageAssetLoader) assets.getAssetLoader(PreloadItem.Texture, "image" + i + ".raw"))
+					.get();
+			if (image == null || image.getWidth() != IMAGE_SIZE || image.getHeight() != IMAGE_SIZE) {
+				return false;
+			}
+			if (assets.getJson("data" + i + ".json").get().getInt("id", -1) != i) {
+				return false;
+			}
+			final String text = new String(Files.readAllBytes(new File(root, "text" + i + ".txt").toPath()),
+					StandardCharsets.UTF_8);
+			if (!text.equals(assets.getText("text" + i + ".txt").get())) {
+				return false;
+			}
+			final byte[] bytes = Files.readAllBytes(new File(root, "bytes" + i + ".bin").toPath());
+			if (assets.getBytes("bytes" + i + ".bin").get().length() != bytes.length) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long[] run(File root, boolean streaming, boolean check) throws Exception {
+		final FileGame game = new FileGame(root);
+		final PreloadAssets assets = createAssets(streaming);
+		final long[] result = load(assets);
+		if (check) {
+			Bench.check((streaming ? "streaming" : "serial") + " load matches the files", sameContent(root, assets));
+		}
+		assets.close();
+		game.close();
+		return result;
+	}
+
+	private static void print(String name, long[] result) {
+		System.out.println(String.format("%-12s %6d frames, worst frame %6.1f ms, total %7.1f ms", name, result[0],
+				result[1] / 1e6, result[2] / 1e6));
+	}
+
+	public static void main(String[] args) throws Exception {
+		final File root = createFiles();
+		try {
+			PreloadStreamer.setExecutor(new JavaSEPreloadExecutor());
+			// 第一次用于预热并检查内容
+			run(root, true, true);
+			final long[] streaming = run(root, true, false);
+			PreloadStreamer.setExecutor(null);
+			run(root, false, true);
+			final long[] serial = run(root, false, false);
+			print("serial", serial);
+			print("streaming", streaming);
+			Bench.check("serial load takes one frame per asset", serial[0] == FILES * 4);
+			Bench.compare("streaming vs serial frames", serial[0], streaming[0], 2.0);
+			Bench.compare("streaming vs serial worst frame", serial[1], streaming[1], 1.5);
+			Bench.compare("streaming vs serial total time", serial[2], streaming[2], 1.5);
+		} finally {
+			PreloadStreamer.setExecutor(null);
+			delete(root);
+		}
+		Bench.exit();
+	}
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import loon.LSetting;
+import loon.LTexture;
+import loon.geom.Affine2f;
+import loon.opengl.GL20;
+import loon.opengl.RenderCommandQueue;
+import loon.opengl.TrilateralBatch;
+
+/**
+ * 排序键渲染命令队列测试(无窗口,使用HeadlessGL20)
+ * 
+ * 同一个场景(一组不重叠的界面控件,每个含背景,图标与文字,再叠加随机位置与透明度的精灵)分别以立即模式与延迟模式绘制,
+ * 按绘制顺序把每个四边形的纹理与混合函数光栅化为帧缓冲,检查延迟模式与逐四边形的参考结果一致,绘制调用数减少,且层的先后顺序正确.
+ */
+public class RenderQueueTest {
+
+	private static final int WIDTH = 800, HEIGHT = 600;
+
+	private static int failed;
+
+	private static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	/**
+	 * 场景中的一个四边形:纹理序号,x,y,宽,高,透明度
+	 */
+	private static ArrayList<int[]> createScene(int sprites) {
+		ArrayList<int[]> scene = new ArrayList<int[]>();
+		Random random = new Random(3);
+		for (int wy = 0; wy < 10; wy++) {
+			for (int wx = 0; wx < 12; wx++) {
+				int x = wx * 66, y = wy * 58;
+				scene.add(new int[] { 0, x, y, 64, 56, 255 });
+				scene.add(new int[] { 1 + ((wx + wy) & 1), x + 4, y + 4, 24, 24, 255 });
+				for (int c = 0; c < 5; c++) {
+					scene.add(new int[] { 3, x + 30 + c * 6, y + 30, 6, 10, 255 });
+				}
+			}
+		}
+		for (int i = 0; i < sprites; i++) {
+			scene.add(new int[] { random.nextInt(4), random.nextInt(760), random.nextInt(560), 10 + random.nextInt(80),
+					10 + random.nextInt(80), random.nextBoolean() ? 255 : 128 });
+		}
+		return scene;
+	}
+
+	private static void fill(int[] frame, float minX, float minY, float maxX, float maxY, int value) {
+		for (int y = Math.max(0, (int) minY); y < Math.min(HEIGHT, (int) maxY); y++) {
+			for (int x = Math.max(0, (int) minX); x < Math.min(WIDTH, (int) maxX); x++) {
+				frame[y * WIDTH + x] = value;
+			}
+		}
+	}
+
+	private static int[] raster(ArrayList<float[]> quads) {
+		int[] frame = new int[WIDTH * HEIGHT];
+		for (float[] q : quads) {
+			fill(frame, q[1], q[2], q[3], q[4], (int) q[0] * 1000 + (int) q[5]);
+		}
+		return frame;
+	}
+
+	private static int[] reference(ArrayList<int[]> scene, LTexture[] texs) {
+		int[] frame = new int[WIDTH * HEIGHT];
+		for (int[] s : scene) {
+			// 自动混合模式:接近不透明时为MODE_NORMAL(GL_ONE),否则为MODE_SPEED(GL_SRC_ALPHA)
+			int src = s[5] >= 240 ? GL20.GL_ONE : GL20.GL_SRC_ALPHA;
+			fill(frame, s[1], s[2], s[1] + s[3], s[2] + s[4], texs[s[0]].getID() * 1000 + src);
+		}
+		return frame;
+	}
+
+	private static int draw(HeadlessGL20 gl, TrilateralBatch batch, ArrayList<int[]> scene, LTexture[] texs) {
+		gl.reset();
+		Affine2f xf = new Affine2f();
+		batch.begin(WIDTH, HEIGHT, true);
+		for (int[] s : scene) {
+			batch.addQuad(texs[s[0]], (s[5] << 24) | 0xFFFFFF, xf, s[1], s[2], s[3], s[4]);
+		}
+		batch.end();
+		return gl.drawCalls;
+	}
+
+	private static void run(HeadlessGL20 gl, LTexture[] texs, String name, int sprites) {
+		ArrayList<int[]> scene = createScene(sprites);
+		TrilateralBatch batch = new TrilateralBatch(gl);
+		int immediate = draw(gl, batch, scene, texs);
+		int[] immediateFrame = raster(gl.quads);
+		batch.setDeferred(true);
+		RenderCommandQueue queue = batch.getCommandQueue();
+		queue.resetStats();
+		int deferred = draw(gl, batch, scene, texs);
+		int[] deferredFrame = raster(gl.quads);
+		System.out.println(name + ": quads=" + scene.size() + " immediate drawCalls=" + immediate
+				+ " deferred drawCalls=" + deferred + " (batches=" + queue.getBatchCount() + ", ordered="
+				+ queue.getOrderedBatchCount() + ")");
+		check(name + ": every quad drawn", gl.quads.size() == scene.size());
+		check(name + ": deferred matches per-quad reference", Arrays.equals(deferredFrame, reference(scene, texs)));
+		if (sprites == 0) {
+			check(name + ": deferred matches immediate", Arrays.equals(deferredFrame, immediateFrame));
+		}
+		check(name + ": fewer draw calls", deferred < immediate);
+		batch.close();
+	}
+
+	public static void main(String[] args) {
+		LSetting setting = new LSetting();
+		setting.width = WIDTH;
+		setting.height = HEIGHT;
+		HeadlessTestGame game = new HeadlessTestGame(setting, 64, 64);
+		HeadlessGL20 gl = game.gl();
+		LTexture[] texs = new LTexture[4];
+		for (int i = 0; i < texs.length; i++) {
+			texs[i] = game.assets().getImageSync("assets/tex" + i + ".png").texture();
+		}
+
+		run(gl, texs, "ui", 0);
+		run(gl, texs, "ui+sprites", 60);
+
+		// 层:先提交的高层命令在低层命令之后绘制
+		TrilateralBatch batch = new TrilateralBatch(gl);
+		batch.setDeferred(true);
+		gl.reset();
+		batch.begin(WIDTH, HEIGHT, true);
+		batch.setLayer(1);
+		batch.addQuad(texs[1], 0xFFFFFFFF, new Affine2f(), 0, 0, 50, 50);
+		batch.setLayer(0);
+		batch.addQuad(texs[2], 0xFFFFFFFF, new Affine2f(), 10, 10, 50, 50);
+		batch.end();
+		check("layer order", gl.quads.size() == 2 && (int) gl.quads.get(0)[0] == texs[2].getID()
+				&& (int) gl.quads.get(1)[0] == texs[1].getID());
+		batch.close();
+
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
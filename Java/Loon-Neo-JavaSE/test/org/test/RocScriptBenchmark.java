@@ -0,0 +1,143 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.action.avg.drama.IRocFunction;
+import loon.action.avg.drama.IScriptLog;
+import loon.action.avg.drama.RocScript;
+
+/**
+ * RocScript切分缓存的比对与性能基准
+ *
+ * 以循环为主的几段脚本(嵌套for,while与if/else,循环中的函数调用与return,自定义IRocFunction)分别在开启与关闭切分缓存时执行,
+ * 检查输出完全相同,再比较两者的执行耗时.
+ */
+public class RocScriptBenchmark {
+
+	// 解释器中嵌套块内对外层变量的赋值不会传回,所以结果直接在循环内输出
+	private static final String NESTED_FOR = "for i = 0, i < 40, i + 1 begin\n" + "for j = 0, j < 20, j + 1 begin\n"
+			+ "print i * j + 1, \n" + "end\n" + "end\n";
+
+	private static final String WHILE_IF = "n = 0\n" + "while n < 600 begin\n" + "if n % 3 == 0 then\n"
+			+ "print 'fizz', \n" + "else\n" + "print n, \n" + "end\n" + "n = n + 1\n" + "end\n";
+
+	private static final String FUNCTIONS = "function square(x) begin\n" + "return (x * x)\n" + "end\n"
+			+ "for i = 0, i < 200, i + 1 begin\n" + "print square(i), \n" + "end\n" + "println 'done'\n";
+
+	private static final String HOOKS = "for i = 0, i < 300, i + 1 begin\n" + "print tick(i), \n" + "end\n";
+
+	/**
+	 * 只记录脚本输出的日志
+	 */
+	private static class CaptureLog implements IScriptLog {
+
+		final StringBuilder out = new StringBuilder();
+
+		@Override
+		public void show(boolean flag) {
+		}
+
+		@Override
+		public void err(Object mes) {
+			out.append("[err]").append(mes);
+		}
+
+		@Override
+		public void info(Object mes) {
+			out.append(mes);
+		}
+
+		@Override
+		public void line(Object mes) {
+			out.append(mes);
+		}
+
+		@Override
+		public void err(String mes, Object... o) {
+			out.append("[err]").append(mes);
+		}
+
+		@Override
+		public void info(String mes, Object... o) {
+			out.append(mes);
+		}
+	}
+
+	private static RocScript create(String source, CaptureLog log, boolean cache) throws RocScript.ScriptException {
+		final RocScript script = new RocScript(log, source, false);
+		script.setDebug(false);
+		script.setCacheTokens(cache);
+		script.getFunctions().add("tick", new IRocFunction() {
+
+			@Override
+			public Object call(String[] value) {
+				return Double.valueOf(Double.parseDouble(value[0]) % 3);
+			}
+		});
+		return script;
+	}
+
+	private static String run(RocScript script, CaptureLog log) throws RocScript.ScriptException {
+		log.out.setLength(0);
+		script.call(false);
+		for (int guard = 0; !script.isCompleted() && guard < 100000; guard++) {
+			script.next();
+		}
+		return log.out.toString();
+	}
+
+	private static double measure(String name, final RocScript script, final CaptureLog log) {
+		return Bench.measure(name, 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				try {
+					return RocScriptBenchmark.run(script, log).length();
+				} catch (RocScript.ScriptException e) {
+					throw new RuntimeException(e.toString());
+				}
+			}
+		});
+	}
+
+	public static void main(String[] args) throws Throwable {
+		final String[] names = { "nested for", "while/if", "functions", "IRocFunction" };
+		final String[] sources = { NESTED_FOR, WHILE_IF, FUNCTIONS, HOOKS };
+		double before = 0, after = 0;
+		for (int i = 0; i < sources.length; i++) {
+			final CaptureLog plainLog = new CaptureLog(), cachedLog = new CaptureLog();
+			final RocScript plain = create(sources[i], plainLog, false);
+			final RocScript cached = create(sources[i], cachedLog, true);
+			final String expected = run(plain, plainLog);
+			// 第二次执行使用第一次留下的缓存
+			final String first = run(cached, cachedLog);
+			final String second = run(cached, cachedLog);
+			System.out.println(names[i] + ": " + expected.length() + " chars of output");
+			Bench.check(names[i] + ": cached tokens give the same output",
+					expected.length() > 0 && expected.indexOf("[err]") == -1 && expected.equals(first)
+							&& expected.equals(second));
+			before += measure(names[i] + " without token cache", plain, plainLog);
+			after += measure(names[i] + " with token cache", cached, cachedLog);
+		}
+		Bench.compare("RocScript token cache", before, after, 1.3);
+		Bench.exit();
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.io.UnsupportedEncodingException;
+
+import loon.LSystem;
+import loon.Session;
+import loon.utils.Base64Coder;
+
+/**
+ * Session二进制存档与旧的分隔字符串存档的比对与性能基准
+ *
+ * 10000条记录,每条4个值(含中文与补充平面字符):二进制编码与旧的字符串编码载入后的内容都与原始数据相同,
+ * 随后比较只修改一条记录后的保存耗时(旧格式每次都拼接全部记录再Base64),以及延迟解码与旧格式的载入耗时.
+ */
+public class SessionBenchmark {
+
+	private static final int RECORDS = 10000;
+
+	private static final int VALUES = 4;
+
+	private static String value(int record, int index) {
+		switch (index) {
+		case 0:
+			return String.valueOf(record * 31);
+		case 1:
+			return "name" + record;
+		case 2:
+			return "存档😀" + (record % 97);
+		default:
+			return String.valueOf(record * 0.5f);
+		}
+	}
+
+	private static Session createSession() {
+		final Session session = new Session("bench", false);
+		for (int i = 0; i < RECORDS; i++) {
+			for (int j = 0; j < VALUES; j++) {
+				session.set("record" + i, j, value(i, j));
+			}
+		}
+		return session;
+	}
+
+	private static boolean sameContent(Session session) {
+		if (session.getSize() != RECORDS) {
+			return false;
+		}
+		for (int i = 0; i < RECORDS; i++) {
+			for (int j = 0; j < VALUES; j++) {
+				if (!value(i, j).equals(session.get("record" + i, j))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 旧版Session.save:拼接全部记录后整体Base64
+	 */
+	private static String legacySave(Session session) throws UnsupportedEncodingException {
+		return new String(Base64Coder.encode(session.encode().getBytes(LSystem.ENCODING)), LSystem.ENCODING);
+	}
+
+	/**
+	 * 旧版Session.load:整体解码后重新分割全部记录
+	 */
+	private static int legacyLoad(Session session, String data) throws UnsupportedEncodingException {
+		return session.loadEncodeSession(new String(Base64Coder.decode(data), LSystem.ENCODING));
+	}
+
+	public static void main(String[] args) throws Exception {
+		final Session session = createSession();
+		final byte[] binary = session.encodeBinary();
+		final String legacy = legacySave(session);
+
+		final Session binaryLoaded = new Session("bench", false);
+		binaryLoaded.decodeBinary(binary);
+		Bench.check("binary round trip keeps every value", sameContent(binaryLoaded));
+		final Session legacyLoaded = new Session("bench", false);
+		legacyLoad(legacyLoaded, legacy);
+		Bench.check("legacy string data still loads", sameContent(legacyLoaded));
+		// 载入旧格式后再以二进制保存,内容不变
+		final Session converted = new Session("bench", false);
+		converted.decodeBinary(legacyLoaded.encodeBinary());
+		Bench.check("legacy data rewritten as binary keeps every value", sameContent(converted));
+		// 修改一条记录后只重新编码该记录
+		binaryLoaded.set("record5", 1, "changed");
+		final Session changed = new Session("bench", false);
+		changed.decodeBinary(binaryLoaded.encodeBinary());
+		Bench.check("incremental save picks up the changed record",
+				"changed".equals(changed.get("record5", 1)) && value(6, 1).equals(changed.get("record6", 1)));
+		System.out.println("size: legacy " + legacy.length() / 1024 + "KB, binary " + binary.length / 1024
+				+ "KB (" + Base64Coder.encode(binary).length / 1024 + "KB with Base64)");
+
+		final double legacySave = Bench.measure("legacy save after changing one record", 3, 5, 1, new Bench.Op() {
+
+			int next;
+
+			@Override
+			public long run() {
+				session.set("record" + (next++ % RECORDS), 0, String.valueOf(next));
+				try {
+					return legacySave(session).length();
+				} catch (UnsupportedEncodingException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		final double binarySave = Bench.measure("binary save after changing one record", 3, 5, 1, new Bench.Op() {
+
+			int next;
+
+			@Override
+			public long run() {
+				session.set("record" + (next++ % RECORDS), 0, String.valueOf(next));
+				return Base64Coder.encode(session.encodeBinary()).length;
+			}
+		});
+		final String legacyData = legacySave(session);
+		final byte[] binaryData = session.encodeBinary();
+		final double legacyLoad = Bench.measure("legacy load", 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				try {
+					return legacyLoad(new Session("bench", false), legacyData);
+				} catch (UnsupportedEncodingException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		final double binaryLoad = Bench.measure("binary load (lazy)", 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				return new Session("bench", false).decodeBinary(binaryData);
+			}
+		});
+		Bench.measure("binary load, every record read", 3, 5, 1, new Bench.Op() {
+
+			@Override
+			public long run() {
+				final Session loaded = new Session("bench", false);
+				loaded.decodeBinary(binaryData);
+				long length = 0;
+				for (int i = 0; i < RECORDS; i++) {
+					length += loaded.get("record" + i, 3).length();
+				}
+				return length;
+			}
+		});
+		Bench.compare("binary vs legacy save", legacySave, binarySave, 10.0);
+		Bench.compare("binary vs legacy load", legacyLoad, binaryLoad, 1.2);
+		Bench.exit();
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import loon.LSetting;
+import loon.action.sprite.Entity;
+import loon.action.sprite.ISprite;
+import loon.action.sprite.Sprites;
+import loon.utils.TArray;
+
+/**
+ * Sprites空间索引与逐个比较的比对与性能基准
+ *
+ * 100000个精灵分布在20000x20000的世界中(1%为大于网格的大精灵):每帧全部移动后,索引与逐个比较对300个随机矩形
+ * 和300个随机点的查询结果完全相同(顺序也相同),随后比较800x600视图查询,点选以及带索引维护的update耗时.
+ */
+public class SpritesIndexBenchmark {
+
+	private static final int SPRITES = 100000;
+
+	private static final float WORLD = 20000f;
+
+	private static final int QUERIES = 300;
+
+	private static Sprites createSprites() {
+		final Random random = new Random(1);
+		final Sprites sprites = new Sprites("bench", null, WORLD, WORLD);
+		for (int i = 0; i < SPRITES; i++) {
+			final Entity e = new Entity();
+			final boolean large = random.nextInt(100) == 0;
+			e.setSize(large ? 200 + random.nextInt(400) : 8 + random.nextInt(56),
+					large ? 200 + random.nextInt(400) : 8 + random.nextInt(56));
+			e.setLocation(random.nextFloat() * WORLD, random.nextFloat() * WORLD);
+			sprites.add(e);
+		}
+		return sprites;
+	}
+
+	/**
+	 * 以固定种子移动全部精灵后执行一次update
+	 */
+	private static void move(Sprites sprites, long seed) {
+		final Random random = new Random(seed);
+		for (int i = 0; i < SPRITES; i++) {
+			final ISprite spr = sprites.getSprite(i);
+			((Entity) spr).setLocation(spr.getX() + random.nextFloat() * 16f - 8f,
+					spr.getY() + random.nextFloat() * 16f - 8f);
+		}
+		sprites.update(16);
+	}
+
+	/**
+	 * 执行全部随机矩形查询与点选,结果以精灵的数组位置记录(点选未命中时为-1)
+	 */
+	private static int[][] queryAll(Sprites sprites, float[] rects) {
+		final TArray<ISprite> out = new TArray<ISprite>();
+		final int[][] result = new int[QUERIES + 1][];
+		result[QUERIES] = new int[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			final int j = i * 4;
+			sprites.query(rects[j], rects[j + 1], rects[j + 2], rects[j + 3], out);
+			result[i] = new int[out.size];
+			for (int k = 0; k < out.size; k++) {
+				result[i][k] = sprites.indexOf(out.get(k));
+			}
+			final ISprite picked = sprites.pick(rects[j], rects[j + 1]);
+			result[QUERIES][i] = picked == null ? -1 : sprites.indexOf(picked);
+		}
+		return result;
+	}
+
+	public static void main(String[] args) {
+		new HeadlessTestGame(new LSetting(), 1, 1);
+		// Sprites.add逐个检查是否重复,构建10万个精灵较慢,因此只构建一次,通过开关索引比较两种方式
+		final Sprites sprites = createSprites();
+		final Random random = new Random(2);
+		final float[] rects = new float[QUERIES * 4];
+		for (int i = 0; i < rects.length; i += 4) {
+			rects[i] = random.nextFloat() * WORLD;
+			rects[i + 1] = random.nextFloat() * WORLD;
+			rects[i + 2] = random.nextFloat() * 1600f;
+			rects[i + 3] = random.nextFloat() * 1200f;
+		}
+		final float[] views = new float[QUERIES * 2];
+		for (int i = 0; i < views.length; i++) {
+			views[i] = random.nextFloat() * (WORLD - 800f);
+		}
+		final TArray<ISprite> out = new TArray<ISprite>();
+
+		// 第一次查询建立索引,之后几帧的移动由update增量同步
+		sprites.setSpatialIndex(true);
+		sprites.query(0f, 0f, 1f, 1f, out);
+		for (int frame = 0; frame < 5; frame++) {
+			move(sprites, frame);
+		}
+		final int[][] indexed = queryAll(sprites, rects);
+		sprites.setSpatialIndex(false);
+		final int[][] linear = queryAll(sprites, rects);
+		int found = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			found += linear[i].length;
+		}
+		System.out.println("sprites found by " + QUERIES + " rect queries: " + found);
+		Bench.check("indexed rect queries and picks match the linear scan, in draw order",
+				found > 0 && Arrays.deepEquals(indexed, linear));
+
+		final double linearView = viewQueries("linear: 800x600 view query", sprites, views, out);
+		final double linearPick = picks("linear: pick", sprites, views);
+		final double linearUpdate = updates("linear: move all + update", sprites);
+		sprites.setSpatialIndex(true);
+		final double indexedView = viewQueries("index: 800x600 view query", sprites, views, out);
+		final double indexedPick = picks("index: pick", sprites, views);
+		final double indexedUpdate = updates("index: move all + update", sprites);
+		Bench.compare("index vs linear view query", linearView, indexedView, 20.0);
+		Bench.compare("index vs linear pick", linearPick, indexedPick, 20.0);
+		// 每帧全部精灵都移动时索引维护的开销最大,这里只要求update耗时不超过原来的三倍
+		Bench.compare("index vs linear update", linearUpdate, indexedUpdate, 0.33);
+		Bench.exit();
+	}
+
+	private static double viewQueries(String name, final Sprites sprites, final float[] views,
+			final TArray<ISprite> out) {
+		return Bench.measure(name, 3, 5, 100, new Bench.Op() {
+
+			int next;
+
+			@Override
+			public long run() {
+				final int i = (next++ % QUERIES) * 2;
+				return sprites.query(views[i], views[i + 1], 800f, 600f, out).size;
+			}
+		});
+	}
+
+	private static double picks(String name, final Sprites sprites, final float[] views) {
+		return Bench.measure(name, 3, 5, 100, new Bench.Op() {
+
+			int next;
+
+			@Override
+			public long run() {
+				final int i = (next++ % QUERIES) * 2;
+				return sprites.pick(views[i], views[i + 1]) == null ? 0 : 1;
+			}
+		});
+	}
+
+	private static double updates(String name, final Sprites sprites) {
+		return Bench.measure(name, 3, 5, 1, new Bench.Op() {
+
+			long frame = 100;
+
+			@Override
+			public long run() {
+				move(sprites, frame++);
+				return 0;
+			}
+		});
+	}
+}
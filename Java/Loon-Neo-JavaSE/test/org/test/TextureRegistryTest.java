@@ -0,0 +1,112 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package org.test;
+
+import loon.LSetting;
+import loon.LTexture;
+import loon.LTextureRegistry;
+import loon.action.sprite.SpriteBatch;
+import loon.utils.GLUtils;
+
+/**
+ * 纹理注册表驱逐与重载测试(无窗口,使用HeadlessGL20)
+ * 
+ * 显存预算只够两张纹理,载入三张纹理后依次通过SpriteBatch与GLUtils.bindTexture绑定,检查本帧绑定的纹理不会被驱逐,
+ * 被驱逐的纹理绑定时只重新载入一次,且驱逐数量与重载统计正确,载入后被改写过的纹理不会被驱逐.
+ */
+public class TextureRegistryTest {
+
+	private static final int SIZE = 64;
+
+	private static int failed;
+
+	private static void check(String name, boolean result) {
+		System.out.println((result ? "[OK] " : "[FAILED] ") + name);
+		if (!result) {
+			failed++;
+		}
+	}
+
+	public static void main(String[] args) {
+		LSetting setting = new LSetting();
+		// 留出少量余量给SpriteBatch使用的1x1颜色纹理
+		setting.textureMemoryBudget = 2 * SIZE * SIZE * 4 + 1024;
+		HeadlessTestGame game = new HeadlessTestGame(setting, SIZE, SIZE);
+		HeadlessGL20 gl = game.gl();
+		LTextureRegistry registry = game.getTextureRegistry();
+
+		LTexture[] texs = new LTexture[3];
+		for (int i = 0; i < texs.length; i++) {
+			texs[i] = game.assets().getImageSync("assets/tex" + i + ".png").texture();
+		}
+		check("three textures registered", registry.size() == 3 && registry.getMemSize() == 3 * SIZE * SIZE * 4);
+
+		// 载入纹理的这一帧结束时不驱逐任何纹理
+		registry.nextFrame();
+		check("frame 0: nothing evicted", registry.getEvictedCount() == 0);
+
+		// 第一帧什么都不画,最久未使用的tex0被驱逐
+		registry.nextFrame();
+		check("frame 1: tex0 evicted", texs[0].isEvicted() && !texs[1].isEvicted() && !texs[2].isEvicted());
+
+		// 第二帧只用SpriteBatch画tex0,tex0被重新载入且不会在本帧结束时被驱逐
+		SpriteBatch batch = new SpriteBatch(64);
+		batch.begin();
+		batch.draw(texs[0], 0, 0);
+		batch.end();
+		registry.nextFrame();
+		check("frame 2: tex0 reloaded and kept", !texs[0].isEvicted() && texs[0].isLoaded());
+		check("frame 2: tex1 evicted instead", texs[1].isEvicted());
+
+		// 第三帧只用GLUtils.bindTexture绑定tex1,tex2成为最久未使用的纹理
+		GLUtils.bindTexture(gl, texs[1]);
+		registry.nextFrame();
+		check("frame 3: tex1 reloaded and kept", !texs[1].isEvicted() && texs[1].isLoaded());
+		check("frame 3: tex2 evicted", texs[2].isEvicted() && !texs[0].isEvicted());
+
+		// 已重载的纹理再次绑定不会重复载入
+		final int loads = game.loads;
+		texs[0].touch();
+		texs[1].bind();
+		texs[0].loadTexture();
+		check("no duplicate reload", game.loads == loads);
+
+		check("evicted count", registry.getEvictedCount() == 1);
+		check("evictions", registry.getEvictions() == 3);
+		check("reloads", registry.getReloads() == 2);
+		check("image loads (3 initial + 2 reloads)", game.loads == 5);
+		check("memory within budget", registry.getMemSize() <= setting.textureMemoryBudget);
+
+		// tex0以修改过的图像重新上传后,重新载入会丢失修改,因此即使是最久未使用的纹理也不会被驱逐
+		registry.nextFrame();
+		texs[0].update(game.assets().getImageSync("assets/tex0_modified.png"));
+		texs[2].bind();
+		registry.nextFrame();
+		check("modified tex0 is kept", texs[0].isModified() && !texs[0].isEvicted() && texs[0].isLoaded());
+		check("unmodified tex1 evicted instead", texs[1].isEvicted() && !texs[1].isModified());
+		registry.nextFrame();
+		check("modified tex0 still kept", !texs[0].isEvicted());
+		check("modified texture not reloaded from its file (1 update + 1 reload)", game.loads == 7);
+
+		System.out.println(failed == 0 ? "All checks passed." : failed + " check(s) failed.");
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
@@ -27,6 +27,7 @@ import loon.canvas.Image;
 import loon.canvas.LColor;
 import loon.font.IFont;
 import loon.opengl.GLEx;
+import loon.opengl.RenderCommandQueue;
 import loon.opengl.ShaderSource;
 import loon.utils.ArrayByte;
 import loon.utils.ArrayByteOutput;
@@ -60,7 +61,9 @@ public final class Display extends BaseIO implements LRelease {
 		public void onEmit(final LTimerContext clock) {
 			if (clock != null) {
 				if (!LSystem.PAUSED) {
+					FrameProfiler.begin(FrameProfiler.PROCESS);
 					RealtimeProcessManager.get().tick(clock);
+					FrameProfiler.end(FrameProfiler.PROCESS);
 					_display.draw(clock);
 				}
 			}
@@ -80,8 +83,12 @@ public final class Display extends BaseIO implements LRelease {
 		public void onEmit(final LTimerContext clock) {
 			if (clock != null) {
 				if (!LSystem.PAUSED) {
+					FrameProfiler.begin(FrameProfiler.PROCESS);
 					RealtimeProcessManager.get().tick(clock);
+					FrameProfiler.end(FrameProfiler.PROCESS);
+					FrameProfiler.begin(FrameProfiler.ACTION);
 					ActionControl.get().call(clock.timeSinceLastUpdate);
+					FrameProfiler.end(FrameProfiler.ACTION);
 					_display.draw(clock);
 				}
 			}
@@ -98,7 +105,9 @@ public final class Display extends BaseIO implements LRelease {
 		public void onEmit(final LTimerContext clock) {
 			if (clock != null) {
 				if (!LSystem.PAUSED) {
+					FrameProfiler.begin(FrameProfiler.ACTION);
 					ActionControl.get().call(clock.timeSinceLastUpdate);
+					FrameProfiler.end(FrameProfiler.ACTION);
 				}
 			}
 		}
@@ -174,6 +183,10 @@ public final class Display extends BaseIO implements LRelease {
 
 	private final static String DRAWCALL_STR = "DRAWCALL:";
 
+	private final static String BATCH_STR = " BATCH:";
+
+	private final static String PROFILER_STR = " P50:";
+
 	public final Act<LTimerContext> update = Act.create();
 
 	public final Act<LTimerContext> paint = Act.create();
@@ -208,6 +221,8 @@ public final class Display extends BaseIO implements LRelease {
 
 	private String _displayDrawCall = DRAWCALL_STR;
 
+	private String[] _displayProfiles;
+
 	private StrBuilder _displayMessage = new StrBuilder(LSystem.DEFAULT_MAX_CACHE_SIZE);
 
 	private GifEncoder _gifEncoder;
@@ -262,11 +277,15 @@ public final class Display extends BaseIO implements LRelease {
 		Graphics graphics = _game.graphics();
 		this._glEx = new GLEx(graphics, graphics.defaultRenderTarget, graphics.gl);
 		this._glEx.update();
+		this._glEx.setDeferredRendering(_game.setting.deferredRendering);
 		this.initGameDisplay(g);
 	}
 
 	protected void initGameDisplay(final LGame game) {
 		this.updateSyncTween(game.setting.isSyncTween);
+		if (game.setting.isProfiler) {
+			FrameProfiler.setEnabled(true);
+		}
 		this.initDebugString();
 		this.autoDisplay();
 		game.setupDisplay(this);
@@ -436,7 +455,9 @@ public final class Display extends BaseIO implements LRelease {
 	}
 
 	public void update(final LTimerContext clock) {
+		FrameProfiler.begin(FrameProfiler.UPDATE);
 		update.emit(clock);
+		FrameProfiler.end(FrameProfiler.UPDATE);
 	}
 
 	public void paint(final LTimerContext clock) {
@@ -449,8 +470,8 @@ public final class Display extends BaseIO implements LRelease {
 		}
 		// fix渲染时机，避免调用渲染在纹理构造前
 		if (!_initDrawConfig) {
-			newDefView(
-					_setting.isFPS || _setting.isLogo || _setting.isMemory || _setting.isSprites || _setting.isDebug);
+			newDefView(_setting.isFPS || _setting.isLogo || _setting.isMemory || _setting.isSprites || _setting.isDebug
+					|| _setting.isDrawCall || _setting.isProfiler);
 			_initDrawConfig = true;
 		}
 
@@ -504,9 +525,13 @@ public final class Display extends BaseIO implements LRelease {
 			// 最初渲染的内容
 			_process.drawFrist(_glEx);
 			_process.load();
+			FrameProfiler.begin(FrameProfiler.UPDATE);
 			_process.runTimer(clock);
+			FrameProfiler.end(FrameProfiler.UPDATE);
 
+			FrameProfiler.begin(FrameProfiler.PAINT);
 			_process.draw(_glEx);
+			FrameProfiler.end(FrameProfiler.PAINT);
 
 			// 渲染debug信息
 			drawDebug(_glEx, _setting, clock.unscaledTimeSinceLastUpdate);
@@ -546,7 +571,9 @@ public final class Display extends BaseIO implements LRelease {
 			_glEx.restoreTx();
 			_glEx.clearFrame();
 			_process.resetTouch();
+			_game.getTextureRegistry().nextFrame();
 			GraphicsDrawCall.clear();
+			FrameProfiler.endFrame();
 		}
 	}
 
@@ -630,7 +657,8 @@ public final class Display extends BaseIO implements LRelease {
 		}
 		final boolean debug = setting.isDebug;
 
-		if (debug || setting.isFPS || setting.isMemory || setting.isSprites || setting.isDrawCall) {
+		if (debug || setting.isFPS || setting.isMemory || setting.isSprites || setting.isDrawCall
+				|| setting.isProfiler) {
 
 			this._frameCount++;
 			this._frameDelta += delta;
@@ -643,6 +671,7 @@ public final class Display extends BaseIO implements LRelease {
 				if (_frameRate == dstFPS - 1) {
 					_frameRate = MathUtils.max(dstFPS, _frameRate);
 				}
+				final long frames = this._frameCount;
 				this._frameDelta = this._frameCount = 0;
 
 				if (this._memorySelf) {
@@ -681,9 +710,21 @@ public final class Display extends BaseIO implements LRelease {
 				_displayMessage.setLength(0);
 				_displayMessage.append(DRAWCALL_STR);
 				_displayMessage.append(GraphicsDrawCall.getCount() + gl.getDrawCallCount());
+				if (gl.isDeferredRendering()) {
+					// 延迟渲染合并后与按提交顺序渲染时每帧的平均批次数量
+					final RenderCommandQueue queue = gl.getCommandQueue();
+					_displayMessage.append(BATCH_STR);
+					_displayMessage.append(queue.getBatchCount() / frames);
+					_displayMessage.append('/');
+					_displayMessage.append(queue.getOrderedBatchCount() / frames);
+					queue.resetStats();
+				}
 
 				_displayDrawCall = _displayMessage.toString();
 
+				if (setting.isProfiler) {
+					updateProfilerString();
+				}
 			}
 			if (_displayFont != null) {
 
@@ -709,6 +750,13 @@ public final class Display extends BaseIO implements LRelease {
 					_displayFont.drawString(gl, _displayDrawCall, _debugTextSpace, _displayTop += maxHeight, 0,
 							_debugFontColor);
 				}
+				// 显示各阶段耗时
+				if (setting.isProfiler && _displayProfiles != null) {
+					for (int i = 0; i < _displayProfiles.length; i++) {
+						_displayFont.drawString(gl, _displayProfiles[i], _debugTextSpace, _displayTop += maxHeight, 0,
+								_debugFontColor);
+					}
+				}
 				// 若打印日志到界面,很可能挡住游戏界面内容,所以isDisplayLog为true并且debug才显示
 				if (debug && setting.isDisplayLog) {
 					paintLog(gl, _debugTextSpace, _displayTop += maxHeight);
@@ -719,6 +767,25 @@ public final class Display extends BaseIO implements LRelease {
 
 	}
 
+	private void updateProfilerString() {
+		if (!FrameProfiler.isEnabled()) {
+			FrameProfiler.setEnabled(true);
+		}
+		if (_displayProfiles == null) {
+			_displayProfiles = new String[FrameProfiler.PHASE_COUNT];
+		}
+		for (int i = 0; i < FrameProfiler.PHASE_COUNT; i++) {
+			_displayMessage.setLength(0);
+			_displayMessage.append(FrameProfiler.getPhaseName(i).toUpperCase());
+			_displayMessage.append(PROFILER_STR);
+			_displayMessage.append((FrameProfiler.getPercentile(i, 50f) / 10000L) / 100f);
+			_displayMessage.append(" P99:");
+			_displayMessage.append((FrameProfiler.getPercentile(i, 99f) / 10000L) / 100f);
+			_displayMessage.append(" MS");
+			_displayProfiles[i] = _displayMessage.toString();
+		}
+	}
+
 	public boolean isRunning() {
 		return _initDrawConfig;
 	}
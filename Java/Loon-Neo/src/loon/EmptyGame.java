@@ -171,10 +171,13 @@ public class EmptyGame extends LGame {
 		return save;
 	}
 
-	private Accelerometer accelerometer = new AccelerometerDefault();
+	private Accelerometer accelerometer;
 
 	@Override
 	public Accelerometer accel() {
+		if (accelerometer == null) {
+			accelerometer = new AccelerometerDefault();
+		}
 		return accelerometer;
 	}
 
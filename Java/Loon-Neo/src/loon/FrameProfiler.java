@@ -0,0 +1,484 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon;
+
+import java.util.Arrays;
+
+import loon.utils.MathUtils;
+import loon.utils.StrBuilder;
+import loon.utils.TimeUtils;
+
+/**
+ * 按帧阶段统计耗时的性能分析器.
+ *
+ * 游戏线程在各阶段(update,进程tick,缓动,Screen绘制,Sprites与Desktop绘制,批处理提交,纹理上传)前后调用begin与end,
+ * 每阶段记录纳秒耗时,调用次数,分配字节数(平台Sampler支持时)以及阶段内的渲染提交次数与顶点数.阶段可以嵌套,耗时为包含子阶段的总耗时.
+ * 每帧结束时数据写入最近N帧的环形缓冲,只有游戏线程写入,其它线程可以随时无锁读取,读取期间被覆盖的帧会被自动丢弃.
+ *
+ * PS:默认关闭,关闭时各埋点只做一次布尔判断.core中的默认计时精度取决于平台,JavaSE会注入基于System.nanoTime与ThreadMXBean的Sampler.
+ */
+public final class FrameProfiler {
+
+	/**
+	 * 计时与内存分配数据来源
+	 */
+	public static interface Sampler {
+
+		public long nanoTime();
+
+		/**
+		 * 当前线程累计分配的字节数,不支持时返回-1
+		 *
+		 * @return
+		 */
+		public long allocatedBytes();
+
+	}
+
+	/**
+	 * 最近N帧的环形缓冲,按[帧*PHASE_COUNT+阶段]存放
+	 */
+	private static final class Ring {
+
+		final int capacity;
+
+		final long[] times;
+
+		final long[] allocs;
+
+		final int[] calls;
+
+		final int[] drawCalls;
+
+		final int[] vertices;
+
+		// 已写入的帧数,写入完成后才递增
+		volatile long sequence;
+
+		Ring(int capacity) {
+			this.capacity = capacity;
+			this.times = new long[capacity * PHASE_COUNT];
+			this.allocs = new long[capacity * PHASE_COUNT];
+			this.calls = new int[capacity * PHASE_COUNT];
+			this.drawCalls = new int[capacity * PHASE_COUNT];
+			this.vertices = new int[capacity * PHASE_COUNT];
+		}
+	}
+
+	private static class DefaultSampler implements Sampler {
+
+		@Override
+		public long nanoTime() {
+			return TimeUtils.nanoTime();
+		}
+
+		@Override
+		public long allocatedBytes() {
+			return -1L;
+		}
+
+	}
+
+	/** 两次帧提交之间的总耗时 **/
+	public static final int FRAME = 0;
+	/** Display中的update调用 **/
+	public static final int UPDATE = 1;
+	/** RealtimeProcessManager的tick **/
+	public static final int PROCESS = 2;
+	/** ActionControl的缓动更新 **/
+	public static final int ACTION = 3;
+	/** LProcess绘制(包含Screen,Sprites与Desktop) **/
+	public static final int PAINT = 4;
+	/** Screen自身的draw **/
+	public static final int SCREEN = 5;
+	public static final int SPRITES = 6;
+	public static final int DESKTOP = 7;
+	/** Mesh提交渲染 **/
+	public static final int FLUSH = 8;
+	/** 纹理上传 **/
+	public static final int UPLOAD = 9;
+
+	public static final int PHASE_COUNT = 10;
+
+	private static final String[] NAMES = { "frame", "update", "process", "action", "paint", "screen", "sprites",
+			"desktop", "flush", "upload" };
+
+	private static final int MAX_DEPTH = 32;
+
+	private static Sampler _sampler = new DefaultSampler();
+
+	private static boolean _enabled;
+
+	// 环形缓冲与其容量,已写入帧数一起发布,setCapacity与clear整体替换,读取方只需取一次引用
+	private static volatile Ring _ring = new Ring(120);
+
+	// 当前帧的累计数据
+	private static final long[] _curTimes = new long[PHASE_COUNT];
+
+	private static final long[] _curAllocs = new long[PHASE_COUNT];
+
+	private static final int[] _curCalls = new int[PHASE_COUNT];
+
+	private static final int[] _curDrawCalls = new int[PHASE_COUNT];
+
+	private static final int[] _curVertices = new int[PHASE_COUNT];
+
+	private static final int[] _stack = new int[MAX_DEPTH];
+
+	private static final long[] _stackTimes = new long[MAX_DEPTH];
+
+	private static final long[] _stackAllocs = new long[MAX_DEPTH];
+
+	private static int _depth;
+
+	private static long _lastFrameTime = -1L;
+
+	private static long _lastFrameAlloc = -1L;
+
+	private FrameProfiler() {
+	}
+
+	public static void setSampler(Sampler sampler) {
+		_sampler = sampler == null ? new DefaultSampler() : sampler;
+	}
+
+	public static Sampler getSampler() {
+		return _sampler;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		if (_enabled != enabled) {
+			_enabled = enabled;
+			resetFrame();
+			_lastFrameTime = -1L;
+		}
+	}
+
+	public static boolean isEnabled() {
+		return _enabled;
+	}
+
+	/**
+	 * 设置保留的帧数(会清空已有数据)
+	 *
+	 * @param frames
+	 */
+	public static void setCapacity(int frames) {
+		_ring = new Ring(frames < 2 ? 2 : frames);
+	}
+
+	public static int getCapacity() {
+		return _ring.capacity;
+	}
+
+	public static String getPhaseName(int phase) {
+		return NAMES[phase];
+	}
+
+	/**
+	 * 开始一个阶段
+	 *
+	 * @param phase
+	 */
+	public static void begin(int phase) {
+		if (!_enabled || _depth >= MAX_DEPTH) {
+			return;
+		}
+		final Sampler sampler = _sampler;
+		_stack[_depth] = phase;
+		_stackAllocs[_depth] = sampler.allocatedBytes();
+		_stackTimes[_depth] = sampler.nanoTime();
+		_depth++;
+	}
+
+	/**
+	 * 结束一个阶段,若中间有阶段未结束(比如发生异常),会一并结束
+	 *
+	 * @param phase
+	 */
+	public static void end(int phase) {
+		if (!_enabled) {
+			return;
+		}
+		for (; _depth > 0;) {
+			final int idx = --_depth;
+			final int top = _stack[idx];
+			commitPhase(top, idx);
+			if (top == phase) {
+				return;
+			}
+		}
+	}
+
+	private static void commitPhase(int phase, int idx) {
+		final Sampler sampler = _sampler;
+		final long now = sampler.nanoTime();
+		_curTimes[phase] += now - _stackTimes[idx];
+		final long start = _stackAllocs[idx];
+		if (start >= 0) {
+			_curAllocs[phase] += sampler.allocatedBytes() - start;
+		}
+		_curCalls[phase]++;
+	}
+
+	/**
+	 * 记录一次渲染提交,计入当前所在的阶段
+	 *
+	 * @param vertices
+	 */
+	public static void drawCall(int vertices) {
+		if (!_enabled) {
+			return;
+		}
+		final int phase = _depth > 0 ? _stack[_depth - 1] : FRAME;
+		_curDrawCalls[phase]++;
+		_curVertices[phase] += vertices;
+		if (phase != FRAME) {
+			_curDrawCalls[FRAME]++;
+			_curVertices[FRAME] += vertices;
+		}
+	}
+
+	/**
+	 * 提交当前帧数据到环形缓冲,由Display在每帧绘制结束时调用
+	 */
+	public static void endFrame() {
+		if (!_enabled) {
+			return;
+		}
+		for (; _depth > 0;) {
+			final int idx = --_depth;
+			commitPhase(_stack[idx], idx);
+		}
+		final Sampler sampler = _sampler;
+		final long now = sampler.nanoTime();
+		final long alloc = sampler.allocatedBytes();
+		if (_lastFrameTime != -1L) {
+			_curTimes[FRAME] = now - _lastFrameTime;
+			_curAllocs[FRAME] = (alloc >= 0 && _lastFrameAlloc >= 0) ? alloc - _lastFrameAlloc : 0;
+			_curCalls[FRAME] = 1;
+			final Ring ring = _ring;
+			final long seq = ring.sequence;
+			final int offset = (int) (seq % ring.capacity) * PHASE_COUNT;
+			System.arraycopy(_curTimes, 0, ring.times, offset, PHASE_COUNT);
+			System.arraycopy(_curAllocs, 0, ring.allocs, offset, PHASE_COUNT);
+			System.arraycopy(_curCalls, 0, ring.calls, offset, PHASE_COUNT);
+			System.arraycopy(_curDrawCalls, 0, ring.drawCalls, offset, PHASE_COUNT);
+			System.arraycopy(_curVertices, 0, ring.vertices, offset, PHASE_COUNT);
+			ring.sequence = seq + 1;
+		}
+		_lastFrameTime = now;
+		_lastFrameAlloc = alloc;
+		resetFrame();
+	}
+
+	private static void resetFrame() {
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			_curTimes[i] = 0;
+			_curAllocs[i] = 0;
+			_curCalls[i] = 0;
+			_curDrawCalls[i] = 0;
+			_curVertices[i] = 0;
+		}
+		_depth = 0;
+	}
+
+	/**
+	 * 已记录的总帧数
+	 *
+	 * @return
+	 */
+	public static long getFrameCount() {
+		return _ring.sequence;
+	}
+
+	/**
+	 * 复制最近若干帧中指定阶段的耗时(纳秒,从旧到新)
+	 *
+	 * @param phase
+	 * @param out
+	 * @return 复制的帧数
+	 */
+	public static int copyTimes(int phase, long[] out) {
+		final Ring ring = _ring;
+		return copy(ring, ring.times, phase, out);
+	}
+
+	public static int copyAllocations(int phase, long[] out) {
+		final Ring ring = _ring;
+		return copy(ring, ring.allocs, phase, out);
+	}
+
+	private static int copy(Ring ring, long[] data, int phase, long[] out) {
+		final int capacity = ring.capacity;
+		final long end = ring.sequence;
+		final long begin = MathUtils.max(0L, end - (capacity < out.length ? capacity : out.length));
+		int count = 0;
+		for (long f = begin; f < end; f++) {
+			out[count++] = data[(int) (f % capacity) * PHASE_COUNT + phase];
+		}
+		// 读取期间被覆盖的旧帧作废,正在写入的第sequence帧会覆盖第sequence-capacity帧,因此早于sequence+1-capacity的帧都不可信
+		final long overwritten = ring.sequence + 1 - capacity;
+		if (overwritten > begin) {
+			final int drop = (int) (overwritten - begin > count ? count : overwritten - begin);
+			System.arraycopy(out, drop, out, 0, count - drop);
+			count -= drop;
+		}
+		return count;
+	}
+
+	/**
+	 * 返回最近帧中指定阶段耗时的百分位数(纳秒)
+	 *
+	 * @param phase
+	 * @param percentile 0到100
+	 * @return
+	 */
+	public static long getPercentile(int phase, float percentile) {
+		final long[] values = new long[_ring.capacity];
+		final int count = copyTimes(phase, values);
+		return percentile(values, count, percentile);
+	}
+
+	private static long percentile(long[] values, int count, float percentile) {
+		if (count == 0) {
+			return 0L;
+		}
+		Arrays.sort(values, 0, count);
+		int idx = MathUtils.ceil(percentile / 100f * count) - 1;
+		if (idx < 0) {
+			idx = 0;
+		} else if (idx >= count) {
+			idx = count - 1;
+		}
+		return values[idx];
+	}
+
+	/**
+	 * 返回最近帧中指定阶段的平均耗时(纳秒)
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public static long getAverage(int phase) {
+		final long[] values = new long[_ring.capacity];
+		final int count = copyTimes(phase, values);
+		if (count == 0) {
+			return 0L;
+		}
+		long sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += values[i];
+		}
+		return sum / count;
+	}
+
+	/**
+	 * 最近一帧指定阶段的耗时(纳秒)
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public static long getLast(int phase) {
+		final Ring ring = _ring;
+		final long seq = ring.sequence;
+		if (seq == 0) {
+			return 0L;
+		}
+		return ring.times[(int) ((seq - 1) % ring.capacity) * PHASE_COUNT + phase];
+	}
+
+	/**
+	 * 导出最近帧的数据为csv格式(每帧每阶段一行)
+	 *
+	 * @return
+	 */
+	public static String toCSV() {
+		final StrBuilder sbr = new StrBuilder(4096);
+		sbr.append("frame,phase,ns,alloc,calls,drawcalls,vertices").append(LSystem.LF);
+		final Ring ring = _ring;
+		final int capacity = ring.capacity;
+		final long end = ring.sequence;
+		final long begin = MathUtils.max(0L, end - capacity);
+		for (long f = begin; f < end; f++) {
+			final int offset = (int) (f % capacity) * PHASE_COUNT;
+			for (int p = 0; p < PHASE_COUNT; p++) {
+				final int idx = offset + p;
+				sbr.append(f).append(',').append(NAMES[p]).append(',').append(ring.times[idx]).append(',')
+						.append(ring.allocs[idx]).append(',').append(ring.calls[idx]).append(',').append(ring.drawCalls[idx])
+						.append(',').append(ring.vertices[idx]).append(LSystem.LF);
+			}
+		}
+		return sbr.toString();
+	}
+
+	/**
+	 * 导出各阶段p50,p99,平均值以及最近帧的数据为json格式
+	 *
+	 * @return
+	 */
+	public static String toJSON() {
+		final StrBuilder sbr = new StrBuilder(4096);
+		final Ring ring = _ring;
+		final int capacity = ring.capacity;
+		final long end = ring.sequence;
+		final long begin = MathUtils.max(0L, end - capacity);
+		sbr.append("{\"frames\":").append(end - begin).append(",\"summary\":{");
+		final long[] values = new long[capacity];
+		for (int p = 0; p < PHASE_COUNT; p++) {
+			if (p > 0) {
+				sbr.append(',');
+			}
+			final int count = copy(ring, ring.times, p, values);
+			long sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += values[i];
+			}
+			sbr.append('"').append(NAMES[p]).append("\":{\"avg\":").append(count == 0 ? 0 : sum / count);
+			sbr.append(",\"p50\":").append(percentile(values, count, 50f));
+			sbr.append(",\"p99\":").append(percentile(values, count, 99f)).append('}');
+		}
+		sbr.append("},\"data\":[");
+		for (long f = begin; f < end; f++) {
+			if (f > begin) {
+				sbr.append(',');
+			}
+			final int offset = (int) (f % capacity) * PHASE_COUNT;
+			sbr.append("{\"frame\":").append(f);
+			for (int p = 0; p < PHASE_COUNT; p++) {
+				final int idx = offset + p;
+				sbr.append(",\"").append(NAMES[p]).append("\":[").append(ring.times[idx]).append(',').append(ring.allocs[idx])
+						.append(',').append(ring.calls[idx]).append(',').append(ring.drawCalls[idx]).append(',')
+						.append(ring.vertices[idx]).append(']');
+			}
+			sbr.append('}');
+		}
+		sbr.append("],\"columns\":[\"ns\",\"alloc\",\"calls\",\"drawcalls\",\"vertices\"]}");
+		return sbr.toString();
+	}
+
+	public static void clear() {
+		_ring = new Ring(_ring.capacity);
+		_lastFrameTime = -1L;
+		resetFrame();
+	}
+
+}
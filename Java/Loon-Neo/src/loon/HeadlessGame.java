@@ -0,0 +1,496 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon;
+
+import loon.LTexture.Format;
+import loon.action.ActionControl;
+import loon.canvas.Image;
+import loon.canvas.LColor;
+import loon.font.IFont;
+import loon.font.ITranslator;
+import loon.geom.Dimension;
+import loon.geom.PointI;
+import loon.opengl.GLEx;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.StringUtils;
+import loon.utils.TimeUtils;
+import loon.utils.processes.RealtimeProcessManager;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 无头(不渲染)的固定步长游戏运行器,以CPU允许的最快速度推进Screen,Sprites,ActionControl与RealtimeProcessManager.
+ *
+ * 与Display不同,每一步都严格使用固定的时间增量,不会因为卡顿合并步数,因此相同种子与相同输入必然产生相同结果,
+ * 适合服务器端回放校验以及AI训练等场合.
+ * 矩阵等基础运算仍需要平台提供的Support实现,因此构建时需要传入对应后端的Support对象.
+ * 无头模式下所有纹理皆为不绑定图形设备的占位纹理,默认尺寸为0,需要真实尺寸参与碰撞等逻辑时,请以putTextureSize预先登记;
+ * 默认字体也替换为按字号估算宽高且不做任何渲染的等宽字体.
+ *
+ * PS:由于Loon的全局对象(LSystem,ActionControl,RealtimeProcessManager,MathUtils.random等)皆为静态单例,
+ * 同一ClassLoader中同一时刻只能有一个HeadlessGame在运行,构建新实例时会重置这些全局状态.
+ * 若需要在同一JVM中并行运行多个实例,需要每个实例使用独立的ClassLoader(比如JavaSE环境下的JavaSEHeadlessPool).
+ *
+ * <pre>
+ * HeadlessGame game = new HeadlessGame(new JavaSESupport(), setting, 12345L);
+ * game.setScreen(new MyScreen());
+ * game.step(3600);
+ * </pre>
+ */
+public class HeadlessGame extends EmptyGame {
+
+	/**
+	 * 无头模式使用的字体,半角字符宽度为字号的一半,全角字符宽度等于字号,不进行任何渲染
+	 */
+	private static class HeadlessFont implements IFont {
+
+		private final PointI _offset = new PointI();
+
+		private ITranslator _translator;
+
+		private float _ascent;
+
+		private int _size;
+
+		private boolean _closed;
+
+		public HeadlessFont(int size) {
+			this._size = size;
+			this._ascent = size;
+		}
+
+		@Override
+		public ITranslator getTranslator() {
+			return _translator;
+		}
+
+		@Override
+		public IFont setTranslator(ITranslator translator) {
+			this._translator = translator;
+			return this;
+		}
+
+		@Override
+		public void drawString(GLEx g, String string, float x, float y) {
+		}
+
+		@Override
+		public void drawString(GLEx g, String string, float x, float y, LColor c) {
+		}
+
+		@Override
+		public void drawString(GLEx g, String string, float x, float y, float rotation, LColor c) {
+		}
+
+		@Override
+		public void drawString(GLEx g, String string, float x, float y, float sx, float sy, float ax, float ay,
+				float rotation, LColor c) {
+		}
+
+		@Override
+		public int charWidth(char c) {
+			return c < 0x80 ? _size / 2 : _size;
+		}
+
+		@Override
+		public int stringWidth(String message) {
+			if (message == null) {
+				return 0;
+			}
+			int max = 0;
+			int width = 0;
+			for (int i = 0, size = message.length(); i < size; i++) {
+				final char ch = message.charAt(i);
+				if (ch == LSystem.LF) {
+					width = 0;
+				} else if (ch != LSystem.CR) {
+					width += charWidth(ch);
+					max = MathUtils.max(max, width);
+				}
+			}
+			return max;
+		}
+
+		@Override
+		public int stringHeight(String message) {
+			if (message == null) {
+				return 0;
+			}
+			int lines = 1;
+			for (int i = 0, size = message.length(); i < size; i++) {
+				if (message.charAt(i) == LSystem.LF) {
+					lines++;
+				}
+			}
+			return lines * getHeight();
+		}
+
+		@Override
+		public int getHeight() {
+			return _size;
+		}
+
+		@Override
+		public void setAssent(float assent) {
+			this._ascent = assent;
+		}
+
+		@Override
+		public String getFontName() {
+			return "Headless";
+		}
+
+		@Override
+		public float getAscent() {
+			return _ascent;
+		}
+
+		@Override
+		public void setSize(int size) {
+			this._size = size;
+		}
+
+		@Override
+		public int getSize() {
+			return _size;
+		}
+
+		@Override
+		public PointI getOffset() {
+			return _offset;
+		}
+
+		@Override
+		public void setOffset(PointI val) {
+			_offset.set(val);
+		}
+
+		@Override
+		public void setOffsetX(int x) {
+			_offset.x = x;
+		}
+
+		@Override
+		public void setOffsetY(int y) {
+			_offset.y = y;
+		}
+
+		@Override
+		public String confineLength(String s, int width) {
+			if (s == null) {
+				return LSystem.EMPTY;
+			}
+			int length = 0;
+			for (int i = 0; i < s.length(); i++) {
+				length += charWidth(s.charAt(i));
+				if (length >= width) {
+					final int pLength = stringWidth("...");
+					while (length + pLength >= width && i >= 0) {
+						length -= charWidth(s.charAt(i));
+						i--;
+					}
+					return s.substring(0, ++i) + "...";
+				}
+			}
+			return s;
+		}
+
+		@Override
+		public boolean isClosed() {
+			return _closed;
+		}
+
+		@Override
+		public void close() {
+			_closed = true;
+		}
+	}
+
+	private final LTimerContext _clock = new LTimerContext();
+
+	private long _seed;
+
+	private long _stepNumerator;
+
+	private long _stepDenominator;
+
+	private long _steps;
+
+	private boolean _stopped;
+
+	private final Support _support;
+
+	private final ObjectMap<String, Dimension> _textureSizes = new ObjectMap<String, Dimension>();
+
+	public HeadlessGame(Support support, long seed) {
+		this(support, new LSetting(), seed);
+	}
+
+	public HeadlessGame(Support support, LSetting setting, long seed) {
+		super(setting, null);
+		this._support = support;
+		LSystem.freeStaticObject();
+		this.initProcess(this);
+		this.setting.isLogo = false;
+		this.setFPS(this.setting.fps);
+		LSystem.setSize(this.setting.width, this.setting.height);
+		this.setSeed(seed);
+	}
+
+	@Override
+	public Support support() {
+		if (_support == null) {
+			throw new LSysException("The headless game requires a platform [Support] !");
+		}
+		return _support;
+	}
+
+	/**
+	 * 重置全局随机数种子
+	 *
+	 * @param seed
+	 * @return
+	 */
+	public HeadlessGame setSeed(long seed) {
+		this._seed = seed;
+		MathUtils.setSeed(seed);
+		return this;
+	}
+
+	public long getSeed() {
+		return _seed;
+	}
+
+	/**
+	 * 登记指定纹理在无头模式下的占位尺寸
+	 *
+	 * @param path
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public HeadlessGame putTextureSize(String path, int width, int height) {
+		if (StringUtils.isEmpty(path)) {
+			return this;
+		}
+		_textureSizes.put(path.trim().toLowerCase(), new Dimension(width, height));
+		return this;
+	}
+
+	@Override
+	public IFont setDefaultGameFont() {
+		if (setting.defaultGameFont == null || setting.defaultGameFont.isClosed()) {
+			setting.defaultGameFont = new HeadlessFont(setting.fontSize);
+		}
+		return setting.defaultGameFont;
+	}
+
+	@Override
+	public IFont setDefaultLogFont() {
+		if (setting.defaultLogFont == null || setting.defaultLogFont.isClosed()) {
+			setting.defaultLogFont = new HeadlessFont(setting.fontSize);
+		}
+		return setting.defaultLogFont;
+	}
+
+	@Override
+	public LTexture createTexture(final int width, final int height, final Format config) {
+		return LTexture.createPlaceholder(null, config, width, height);
+	}
+
+	@Override
+	public LTexture newTexture(final String path, final Format config) {
+		if (StringUtils.isEmpty(path)) {
+			return null;
+		}
+		final Dimension size = _textureSizes.get(path.trim().toLowerCase());
+		if (size == null) {
+			return LTexture.createPlaceholder(path, config, 0, 0);
+		}
+		return LTexture.createPlaceholder(path, config, size.getWidth(), size.getHeight());
+	}
+
+	@Override
+	public LTexture loadTexture(final String fileName, final Format config) {
+		return newTexture(fileName, config);
+	}
+
+	@Override
+	public LTexture loadTexture(final String fileName, final Image image, final Format config) {
+		if (image == null) {
+			return newTexture(fileName, config);
+		}
+		final LTexture texture = LTexture.createPlaceholder(fileName, config, image.getWidth(), image.getHeight());
+		image.close();
+		return texture;
+	}
+
+	/**
+	 * 以帧率设定固定步长(比如60帧时,步长依次为16,17,17...毫秒,累计时间严格等于步数*1000/fps)
+	 *
+	 * @param fps
+	 * @return
+	 */
+	public HeadlessGame setFPS(int fps) {
+		if (fps <= 0) {
+			throw new LSysException("The fps must be greater than 0 !");
+		}
+		this._stepNumerator = LSystem.SECOND;
+		this._stepDenominator = fps;
+		return this;
+	}
+
+	/**
+	 * 直接设定每步的固定毫秒数
+	 *
+	 * @param millis
+	 * @return
+	 */
+	public HeadlessGame setStepMillis(long millis) {
+		if (millis <= 0) {
+			throw new LSysException("The step millis must be greater than 0 !");
+		}
+		this._stepNumerator = millis;
+		this._stepDenominator = 1;
+		return this;
+	}
+
+	public HeadlessGame setScreen(final Screen screen) {
+		if (screen == null) {
+			throw new LSysException("Cannot create a [Screen] instance !");
+		}
+		processImpl.setScreen(screen);
+		return this;
+	}
+
+	public Screen getScreen() {
+		return processImpl.getScreen();
+	}
+
+	public LProcess getProcess() {
+		return processImpl;
+	}
+
+	/**
+	 * 推进一个固定步长
+	 *
+	 * @return
+	 */
+	public HeadlessGame step() {
+		if (_stopped) {
+			return this;
+		}
+		final long lastTick = _clock.tick;
+		final long nextTick = (_steps + 1) * _stepNumerator / _stepDenominator;
+		final long delta = nextTick - lastTick;
+		_clock.timeSinceLastUpdate = delta;
+		_clock.unscaledTimeSinceLastUpdate = delta;
+		_clock.tick = nextTick;
+		if (!LSystem.PAUSED) {
+			RealtimeProcessManager.get().tick(_clock);
+			ActionControl.get().call(delta);
+			if (processImpl.next()) {
+				processImpl.load();
+				processImpl.runTimer(_clock);
+				processImpl.unload();
+			}
+		}
+		_steps++;
+		return this;
+	}
+
+	/**
+	 * 连续推进指定步数
+	 *
+	 * @param count
+	 * @return
+	 */
+	public HeadlessGame step(int count) {
+		for (int i = 0; i < count && !_stopped; i++) {
+			step();
+		}
+		return this;
+	}
+
+	/**
+	 * 推进到模拟时间不小于指定毫秒为止
+	 *
+	 * @param millis
+	 * @return
+	 */
+	public HeadlessGame stepTo(long millis) {
+		for (; _clock.tick < millis && !_stopped;) {
+			step();
+		}
+		return this;
+	}
+
+	/**
+	 * 执行指定步数并返回每秒可推进的步数
+	 *
+	 * @param count
+	 * @return
+	 */
+	public float benchmark(int count) {
+		final long start = TimeUtils.millis();
+		step(count);
+		final long elapsed = MathUtils.max(1L, TimeUtils.millis() - start);
+		return count * 1000f / elapsed;
+	}
+
+	public long getSteps() {
+		return _steps;
+	}
+
+	/**
+	 * 已模拟的游戏时间(毫秒)
+	 *
+	 * @return
+	 */
+	public long getSimulatedTime() {
+		return _clock.tick;
+	}
+
+	public LTimerContext getClock() {
+		return _clock;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return _stopped;
+	}
+
+	@Override
+	public void close() {
+		if (_stopped) {
+			return;
+		}
+		_stopped = true;
+		removePorts();
+		if (processImpl != null) {
+			processImpl.close();
+		}
+		ActionControl.get().clear();
+		RealtimeProcessManager.get().dispose();
+		LSystem.freeStaticObject();
+	}
+
+}
@@ -22,6 +22,7 @@ package loon;
 
 import loon.LTexture.Format;
 import loon.action.sprite.Sprites;
+import loon.canvas.Image;
 import loon.component.Desktop;
 import loon.events.EventActionFuture;
 import loon.events.InputMake;
@@ -160,7 +161,7 @@ public abstract class LGame implements LRelease {
 	private final ObjectMap<String, LTexture> _texture_lazys;
 
 	// 全部纹理数据
-	private final TArray<LTexture> _texture_all_list;
+	private final LTextureRegistry _texture_registry;
 
 	// 精灵group缓存
 	private final TArray<Sprites> _sprites_pools;
@@ -198,7 +199,7 @@ public abstract class LGame implements LRelease {
 		this._texture_batch_pools = new IntMap<LTextureBatch>(DEF_TEXTURE_CACHE_SIZE);
 		this._texture_mesh_pools = new ObjectMap<String, Mesh>(DEF_TEXTURE_CACHE_SIZE);
 		this._texture_lazys = new ObjectMap<String, LTexture>(DEF_TEXTURE_CACHE_SIZE);
-		this._texture_all_list = new TArray<LTexture>(DEF_TEXTURE_CACHE_SIZE);
+		this._texture_registry = new LTextureRegistry();
 		this._sprites_pools = new TArray<Sprites>(DEF_OTHER_CACHE_SIZE);
 		this._desktop_pools = new TArray<Desktop>(DEF_OTHER_CACHE_SIZE);
 		this._font_pools = new TArray<IFont>(DEF_OTHER_CACHE_SIZE);
@@ -206,6 +207,7 @@ public abstract class LGame implements LRelease {
 			config = new LSetting();
 		}
 		this.setting = config;
+		this._texture_registry.setBudget(config.textureMemoryBudget);
 		this.jsonImpl = new JsonImpl();
 		String appName = config.appName;
 		if (StringUtils.isEmpty(appName)) {
@@ -799,6 +801,15 @@ public abstract class LGame implements LRelease {
 		_texture_mesh_pools.clear();
 	}
 
+	/**
+	 * 获得纹理注册表(可设定显存预算与驱逐策略)
+	 * 
+	 * @return
+	 */
+	public LTextureRegistry getTextureRegistry() {
+		return _texture_registry;
+	}
+
 	/**
 	 * 查看纹理池中是否存在指定id对象
 	 * 
@@ -806,12 +817,7 @@ public abstract class LGame implements LRelease {
 	 * @return
 	 */
 	public synchronized boolean containsTexture(final int id) {
-		for (LTexture tex : _texture_all_list) {
-			if (tex.getID() == id) {
-				return true;
-			}
-		}
-		return false;
+		return _texture_registry.contains(id);
 	}
 
 	/**
@@ -821,12 +827,7 @@ public abstract class LGame implements LRelease {
 	 * @return
 	 */
 	protected synchronized boolean delTexture(final int id) {
-		for (LTexture tex : _texture_all_list) {
-			if (tex.getID() == id) {
-				return _texture_all_list.remove(tex);
-			}
-		}
-		return false;
+		return _texture_registry.remove(id);
 	}
 
 	/**
@@ -835,8 +836,8 @@ public abstract class LGame implements LRelease {
 	 * @param tex2d
 	 */
 	protected synchronized void putTexture(final LTexture tex2d) {
-		if (tex2d != null && !tex2d.isClosed() && !tex2d.isChild() && !_texture_all_list.contains(tex2d)) {
-			_texture_all_list.add(tex2d);
+		if (tex2d != null && !tex2d.isClosed() && !tex2d.isChild()) {
+			_texture_registry.add(tex2d);
 		}
 	}
 
@@ -844,14 +845,16 @@ public abstract class LGame implements LRelease {
 	 * 重载全部纹理
 	 */
 	public synchronized void reloadTexture() {
-		TArray<LTexture> texs = new TArray<LTexture>(_texture_all_list);
-		_texture_all_list.clear();
+		final TArray<LTexture> texs = _texture_registry.textures(null);
 		for (LTexture tex : texs) {
 			if (tex != null && !tex.isLoaded() && !tex.isClosed()) {
-				tex.reload();
+				if (tex.isEvicted()) {
+					tex.touch();
+				} else {
+					tex.reload();
+				}
 			}
 		}
-		_texture_all_list.addAll(texs);
 	}
 
 	/**
@@ -860,31 +863,22 @@ public abstract class LGame implements LRelease {
 	 * @return
 	 */
 	public int getTextureMemSize() {
-		int memTotal = 0;
-		for (LTexture tex : _texture_all_list) {
-			if (tex != null && !tex.isChild() && !tex.isClosed()) {
-				final int v = tex.getMemSize();
-				if (v > 0) {
-					memTotal += v;
-				}
-			}
-		}
-		return memTotal;
+		return (int) _texture_registry.getMemSize();
 	}
 
 	/**
 	 * 关闭所有纹理
 	 */
 	public void closeAllTexture() {
-		if (_texture_all_list.size > 0) {
-			TArray<LTexture> tex2d = new TArray<LTexture>(_texture_all_list);
+		if (_texture_registry.size() > 0) {
+			final TArray<LTexture> tex2d = _texture_registry.textures(null);
 			for (LTexture tex : tex2d) {
 				if (tex != null && !tex.isChild() && !tex.isClosed()) {
 					tex.close();
 				}
 			}
 		}
-		_texture_all_list.clear();
+		_texture_registry.clear();
 	}
 
 	/**
@@ -893,7 +887,7 @@ public abstract class LGame implements LRelease {
 	 * @return
 	 */
 	public int countTexture() {
-		return _texture_all_list.size;
+		return _texture_registry.size();
 	}
 
 	/**
@@ -903,7 +897,7 @@ public abstract class LGame implements LRelease {
 	 * @return
 	 */
 	public boolean containsTextureValue(final LTexture texture) {
-		return _texture_all_list.contains(texture);
+		return _texture_registry.contains(texture);
 	}
 
 	/**
@@ -921,14 +915,11 @@ public abstract class LGame implements LRelease {
 		if (texture != null) {
 			return texture._referenceCount;
 		}
-		for (int i = 0, size = _texture_all_list.size; i < size; i++) {
-			LTexture tex2d = _texture_all_list.get(i);
-			if (tex2d != null) {
-				String source = tex2d.getSource();
-				if (source != null && source.indexOf(TextureSource.RenderCanvas) == -1) {
-					if (key.equalsIgnoreCase(source) || key.equalsIgnoreCase(tex2d.tmpLazy)) {
-						return tex2d._referenceCount;
-					}
+		for (LTexture tex2d = _texture_registry.first(); tex2d != null; tex2d = tex2d._registryNext) {
+			String source = tex2d.getSource();
+			if (source != null && source.indexOf(TextureSource.RenderCanvas) == -1) {
+				if (key.equalsIgnoreCase(source) || key.equalsIgnoreCase(tex2d.tmpLazy)) {
+					return tex2d._referenceCount;
 				}
 			}
 		}
@@ -951,9 +942,8 @@ public abstract class LGame implements LRelease {
 		if (texture != null) {
 			refCount = texture._referenceCount--;
 		} else {
-			for (int i = 0; i < _texture_all_list.size; i++) {
-				LTexture tex = _texture_all_list.get(i);
-				if (tex != null && tex.tmpLazy.equals(name)) {
+			for (LTexture tex = _texture_registry.first(); tex != null; tex = tex._registryNext) {
+				if (tex.tmpLazy.equals(name)) {
 					texture = tex;
 					refCount = tex._referenceCount--;
 					break;
@@ -1050,6 +1040,35 @@ public abstract class LGame implements LRelease {
 		return texture;
 	}
 
+	/**
+	 * 以已解码完毕的图片构建纹理并放入缓存(图片解码可在其它线程完成,此函数必须在游戏线程调用)
+	 * 
+	 * @param fileName
+	 * @param image
+	 * @param config
+	 * @return
+	 */
+	public synchronized LTexture loadTexture(final String fileName, final Image image, final Format config) {
+		if (image == null) {
+			return loadTexture(fileName, config);
+		}
+		if (StringUtils.isEmpty(fileName)) {
+			return image.onHaveToClose(true).createTexture(config);
+		}
+		final String key = fileName.trim().toLowerCase();
+		LTexture texture = _texture_lazys.get(key);
+		if (texture != null && !texture.disposed()) {
+			texture._referenceCount++;
+			image.close();
+			return texture;
+		}
+		texture = image.onHaveToClose(true).createTexture(config);
+		texture.tmpLazy = fileName;
+		_texture_lazys.put(key, texture);
+		log().debug("Texture : " + fileName + " Loaded");
+		return texture;
+	}
+
 	/**
 	 * 从缓存加载一个指定位置图片
 	 * 
@@ -80,7 +80,7 @@ public final class LProcess implements LRelease {
 
 		@Override
 		public void run(final LTimerContext time) {
-			if (_game != null && !_game.displayImpl._showLogo) {
+			if (_game != null && (_game.displayImpl == null || !_game.displayImpl._showLogo)) {
 				try {
 					if (_newScreen != null) {
 						_process.updateScreen(_newScreen);
@@ -406,7 +406,10 @@ public final class LProcess implements LRelease {
 					this._isInstance = false;
 					throw new LSysException("Cannot create a [Screen] instance !");
 				}
-				if (!_game.displayImpl._showLogo) {
+				if (_game.displayImpl == null) {
+					// 无Display(无头模式)时不进行任何画面过渡
+					setTransition(null);
+				} else if (!_game.displayImpl._showLogo) {
 					if (_currentScreen != null) {
 						setTransition(newScreen.onTransition());
 					} else {
@@ -468,7 +471,9 @@ public final class LProcess implements LRelease {
 						setTransition(randTransition);
 					}
 				}
-				_game.displayImpl.clearLog();
+				if (_game.displayImpl != null) {
+					_game.displayImpl.clearLog();
+				}
 				if (_screenProcess != null) {
 					_screenProcess.kill();
 					if (RealtimeProcessManager.get().containsProcess(_screenProcess)) {
@@ -1222,7 +1227,7 @@ public final class LProcess implements LRelease {
 			screen.resetOrder();
 			screen.resetSize();
 		}
-		if (_game.setting.isLogo && _game.displayImpl._showLogo) {
+		if (_game.setting.isLogo && _game.displayImpl != null && _game.displayImpl._showLogo) {
 			_loadingScreen = screen;
 		} else {
 			setScreen(screen, true);
@@ -142,6 +142,11 @@ public class LSetting {
 	 */
 	public boolean isDrawCall = false;
 
+	/**
+	 * 是否开启帧阶段性能分析(FrameProfiler),并在画面中显示各阶段耗时的p50与p99
+	 */
+	public boolean isProfiler = false;
+
 	/**
 	 * 是否显示logo（替换logo使用logoPath指定地址）
 	 */
@@ -280,6 +285,16 @@ public class LSetting {
 	 */
 	public boolean saveTexturePixels = false;
 
+	/**
+	 * 纹理显存预算(字节,为0不限制),超出时自动驱逐最久未使用的文件纹理,被驱逐纹理在下次绑定时重新载入
+	 */
+	public long textureMemoryBudget = 0;
+
+	/**
+	 * 是否开启GLEx延迟渲染,开启后绘制命令按排序键合并以减少批处理提交次数(见GLEx.setDeferredRendering)
+	 */
+	public boolean deferredRendering = false;
+
 	/**
 	 * 此项为true时,drag与move事件全游戏无效
 	 */
@@ -325,6 +340,8 @@ public class LSetting {
 		this.activationKey = setting.activationKey;
 		this.convertImagesOnLoad = setting.convertImagesOnLoad;
 		this.saveTexturePixels = setting.saveTexturePixels;
+		this.textureMemoryBudget = setting.textureMemoryBudget;
+		this.deferredRendering = setting.deferredRendering;
 		this.appName = setting.appName;
 		this.logoPath = setting.logoPath;
 		this.fontName = setting.fontName;
@@ -678,6 +695,10 @@ public class LSetting {
 		return this.isSprites = !this.isSprites;
 	}
 
+	public boolean toggleProfiler() {
+		return this.isProfiler = !this.isProfiler;
+	}
+
 	/**
 	 * 判断设备是否宽屏
 	 * 
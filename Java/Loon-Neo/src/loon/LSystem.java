@@ -29,6 +29,7 @@ import loon.action.avg.drama.Command;
 import loon.action.collision.CollisionFilter;
 import loon.action.sprite.Sprites;
 import loon.action.sprite.effect.LightningEffect;
+import loon.canvas.Image;
 import loon.canvas.LColorList;
 import loon.canvas.LColorPool;
 import loon.canvas.LGradation;
@@ -1458,6 +1459,13 @@ public final class LSystem {
 		return 0;
 	}
 
+	public static final LTextureRegistry getTextureRegistry() {
+		if (base() != null) {
+			return base().getTextureRegistry();
+		}
+		return null;
+	}
+
 	public static final int getTextureBuildSize() {
 		if (base() != null) {
 			return base().setting.defaultBuildTextureSize;
@@ -1527,6 +1535,13 @@ public final class LSystem {
 		return null;
 	}
 
+	public static final LTexture loadTexture(String fileName, Image image, Format config) {
+		if (base() != null) {
+			return base().loadTexture(fileName, image, config);
+		}
+		return null;
+	}
+
 	public static final LTexture loadTexture(String fileName) {
 		if (base() != null) {
 			return base().loadTexture(fileName);
@@ -97,7 +97,7 @@ public final class LTexture extends Painter implements LRelease {
 					_texture._cachePixels = null;
 					_texture._isLoaded = false;
 					_texture._closed = true;
-					_texture._memorySize = 0;
+					_texture.setMemSize(0);
 					_texture.freeBatch();
 					_gfx.game.log()
 							.debug("Texture : " + _texture.getSource() + " Closed,Size = " + _texture.getWidth() + ","
@@ -167,6 +167,20 @@ public final class LTexture extends Painter implements LRelease {
 
 	protected int _referenceCount;
 
+	// 纹理注册表使用的链表节点与使用记录
+	LTextureRegistry _registry;
+
+	LTexture _registryPrev, _registryNext;
+
+	long _lastBindFrame = -1;
+
+	int _bindCount;
+
+	boolean _evicted;
+
+	// 载入后显存内容被改写过(blit或重新update),无法再从来源文件还原,因此不可驱逐
+	boolean _modified;
+
 	public final static class Format {
 
 		public static Format NEAREST = new Format(true, false, false, GL20.GL_NEAREST, GL20.GL_NEAREST, false);
@@ -268,6 +282,27 @@ public final class LTexture extends Painter implements LRelease {
 		this._isLoaded = false;
 	}
 
+	/**
+	 * 构建一个不绑定图形设备的占位纹理(只保留尺寸与来源,无法渲染,仅供无头模式的逻辑运算使用)
+	 *
+	 * @param source
+	 * @param config
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static LTexture createPlaceholder(String source, Format config, int width, int height) {
+		final LTexture tex = new LTexture();
+		tex._source = source;
+		tex._config = (config == null) ? Format.LINEAR : config;
+		tex._pixelWidth = tex._imageWidth = width;
+		tex._pixelHeight = tex._imageHeight = height;
+		tex._scale = Scale.ONE;
+		tex._textureClip = new Clip(0, 0, width, height, false);
+		tex._isLoaded = true;
+		return tex;
+	}
+
 	public LTexture(Graphics gfx, int id, Format config, int pixWidth, int pixHeight, Scale scale, float dispWidth,
 			float dispHeight) {
 		this._gfx = gfx;
@@ -470,6 +505,14 @@ public final class LTexture extends Painter implements LRelease {
 			_parent.loadTexture();
 			return;
 		}
+		if (_evicted) {
+			// 被驱逐的纹理经由注册表重新载入,以保证驱逐状态与统计数据正确
+			if (_registry != null) {
+				_registry.touch(this);
+				return;
+			}
+			_evicted = false;
+		}
 		if (loadingTexture()) {
 			return;
 		}
@@ -517,8 +560,12 @@ public final class LTexture extends Painter implements LRelease {
 		if (_drawing) {
 			return;
 		}
+		if (_isLoaded) {
+			_modified = true;
+		}
 		this._drawing = true;
 		this._source = image.getSource();
+		FrameProfiler.begin(FrameProfiler.UPLOAD);
 		if (image != null) {
 			if (_config.repeatX || _config.repeatY || _config.mipmaps) {
 				int pixWidth = image.pixelWidth(), pixHeight = image.pixelHeight();
@@ -540,10 +587,11 @@ public final class LTexture extends Painter implements LRelease {
 				_gfx.gl.glGenerateMipmap(GL20.GL_TEXTURE_2D);
 			}
 		}
+		FrameProfiler.end(FrameProfiler.UPLOAD);
 		if (_config.mipmaps) {
-			_memorySize = MathUtils.abs(_imageWidth * _imageHeight * 4 * (1 + 1 / 3));
+			setMemSize(MathUtils.abs(_imageWidth * _imageHeight * 4 * (1 + 1 / 3)));
 		} else {
-			_memorySize = MathUtils.abs(_imageWidth * _imageHeight * 4);
+			setMemSize(MathUtils.abs(_imageWidth * _imageHeight * 4));
 		}
 		if (closed && !_isReload) {
 			if (image != null && _gfx.game != null && _gfx.game.setting.saveTexturePixels) {
@@ -578,7 +626,90 @@ public final class LTexture extends Painter implements LRelease {
 		}
 	}
 
+	/**
+	 * 标记纹理在当前帧被绑定使用(若纹理已被纹理注册表驱逐,会在此时从来源重新载入)
+	 */
+	public void touch() {
+		final LTexture tex = firstFather(this);
+		if (tex._registry != null) {
+			tex._registry.touch(tex);
+		}
+	}
+
+	public boolean isEvicted() {
+		return firstFather(this)._evicted;
+	}
+
+	/**
+	 * 纹理载入后是否被blit或update改写过(改写过的纹理不会被纹理注册表驱逐)
+	 *
+	 * @return
+	 */
+	public boolean isModified() {
+		return firstFather(this)._modified;
+	}
+
+	private void setMemSize(int size) {
+		final int old = _memorySize;
+		_memorySize = size;
+		if (_registry != null && old != size) {
+			_registry.updateMemSize(this, old, size);
+		}
+	}
+
+	/**
+	 * 只有从文件载入,可以重建且允许释放的纹理才能被驱逐,载入后被改写过的纹理重新载入会丢失改动,因此不驱逐
+	 *
+	 * @return
+	 */
+	boolean isEvictable() {
+		return !_evicted && !_modified && _isLoaded && !_drawing && !_disabledTexture && _parent == null && !_closed
+				&& !_disposed && _memorySize > 0 && !isImageCanvas() && !isDrawCanvas()
+				&& !isCloseSubmitting();
+	}
+
+	/**
+	 * 释放显存中的像素数据(纹理id保留,以1x1空数据占位),纹理在下次绑定时重新载入
+	 *
+	 * @param gl
+	 */
+	void evict(GL20 gl) {
+		if (gl == null && _gfx != null) {
+			gl = _gfx.gl;
+		}
+		if (gl != null && _id > 0) {
+			final int old = GLUtils.getCurrentHardwareTextureID();
+			GLUtils.bindTexture(gl, _id);
+			gl.glTexImage2D(GL20.GL_TEXTURE_2D, 0, GL20.GL_RGBA, 1, 1, 0, GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, null);
+			GLUtils.bindTexture(gl, old);
+		}
+		_evicted = true;
+		_isLoaded = false;
+		setMemSize(0);
+	}
+
+	/**
+	 * 重新载入被驱逐的纹理并返回载入后的显存占用
+	 *
+	 * @return
+	 */
+	int restore() {
+		_evicted = false;
+		if (_gfx != null) {
+			reload();
+		} else {
+			_isLoaded = true;
+		}
+		if (_childs != null) {
+			for (LTexture tex : _childs.values()) {
+				tex._isLoaded = _isLoaded;
+			}
+		}
+		return _memorySize;
+	}
+
 	public void bind() {
+		touch();
 		GLUtils.bindTexture(_gfx.gl, _id);
 	}
 
@@ -587,6 +718,7 @@ public final class LTexture extends Painter implements LRelease {
 	}
 
 	public void bind(int unit) {
+		touch();
 		_gfx.gl.glActiveTexture(GL20.GL_TEXTURE0 + unit);
 		GLUtils.bindTexture(_gfx.gl, _id);
 	}
@@ -619,6 +751,7 @@ public final class LTexture extends Painter implements LRelease {
 		if (gl == null) {
 			return;
 		}
+		firstFather(this)._modified = true;
 		LSystem.load(new Updateable() {
 
 			@Override
@@ -630,8 +763,10 @@ public final class LTexture extends Painter implements LRelease {
 				if (w != pix.getWidth() || h != pix.getHeight()) {
 					newPix = Pixmap.getResize(pix, w, h);
 				}
+				FrameProfiler.begin(FrameProfiler.UPLOAD);
 				_gfx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, x, y, newPix.getWidth(), newPix.getHeight(),
 						GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, newPix.convertPixmapToByteBuffer());
+				FrameProfiler.end(FrameProfiler.UPLOAD);
 			}
 		});
 
@@ -1582,7 +1717,7 @@ public final class LTexture extends Painter implements LRelease {
 				_countTexture--;
 				freeTexture();
 			}
-		} else if (_referenceCount <= 0 && _gfx.game.getRefTextureCount(getSource()) <= 0) {
+		} else if (_referenceCount <= 0 && (_gfx == null || _gfx.game.getRefTextureCount(getSource()) <= 0)) {
 			if (_parent != null && _parent.isChildAllClose()) {
 				_parent.close();
 			} else {
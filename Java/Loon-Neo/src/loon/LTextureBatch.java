@@ -447,6 +447,7 @@ public final class LTextureBatch implements LRelease {
 			this._count = vertCount * 6;
 		}
 		GL20 gl = LSystem.base().graphics().gl;
+		_texture.touch();
 		GLUtils.bindTexture(gl, _texture.getID());
 		int old = GLUtils.getBlendMode();
 		try {
@@ -584,6 +585,7 @@ public final class LTextureBatch implements LRelease {
 		}
 		if (cache.vertexIdx > 0) {
 			GL20 gl = LSystem.base().graphics().gl;
+			_texture.touch();
 			GLUtils.bindTexture(gl, _texture.getID());
 			int old = GLUtils.getBlendMode();
 			switch (_lastBlendState) {
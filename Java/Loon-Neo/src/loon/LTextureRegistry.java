@@ -0,0 +1,422 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon;
+
+import loon.opengl.GL20;
+import loon.utils.IntMap;
+import loon.utils.StringKeyValue;
+import loon.utils.TArray;
+
+/**
+ * 纹理注册表,记录全部已上传到显存的纹理,并在限定的显存预算内驱逐(释放显存)最久未使用(LRU)或最少使用(LFU)的纹理.
+ *
+ * 纹理以侵入式双向链表按最后绑定顺序排列,加入,删除,查询与更新使用记录皆为O(1),显存总量随纹理上传与释放增量维护.
+ * 被驱逐的纹理保留纹理id与来源路径,只释放显存中的像素数据,在下次绑定时自动从来源重新载入,对使用者透明.
+ * 只有从文件载入且未禁止释放的纹理会被驱逐,画布,帧缓冲等无法重建的纹理只计入显存总量.
+ */
+public class LTextureRegistry {
+
+	/**
+	 * 超出预算时的驱逐策略
+	 */
+	public static enum Policy {
+		LRU, LFU
+	}
+
+	private final IntMap<LTexture> _ids = new IntMap<LTexture>();
+
+	private LTexture _head, _tail;
+
+	private int _size;
+
+	private long _memSize;
+
+	private long _peakMemSize;
+
+	private long _budget;
+
+	private Policy _policy = Policy.LRU;
+
+	private long _frame;
+
+	private GL20 _gl;
+
+	private int _evictedCount;
+
+	private int _evictions;
+
+	private int _reloads;
+
+	private long _evictedBytes;
+
+	private long _reloadedBytes;
+
+	public LTextureRegistry() {
+		this(0);
+	}
+
+	public LTextureRegistry(long budget) {
+		this._budget = budget;
+	}
+
+	/**
+	 * 注入驱逐纹理时使用的GL对象(为null时使用纹理所属Graphics的GL,无头环境下可注入空实现)
+	 *
+	 * @param gl
+	 * @return
+	 */
+	public LTextureRegistry setGL(GL20 gl) {
+		this._gl = gl;
+		return this;
+	}
+
+	public GL20 getGL() {
+		return _gl;
+	}
+
+	public boolean add(LTexture tex) {
+		if (tex == null || tex._registry != null) {
+			return false;
+		}
+		tex._registry = this;
+		tex._lastBindFrame = _frame;
+		link(tex);
+		if (tex.getID() != -1) {
+			_ids.put(tex.getID(), tex);
+		}
+		if (tex._evicted) {
+			_evictedCount++;
+		}
+		_size++;
+		addMemSize(tex.getMemSize());
+		return true;
+	}
+
+	public boolean remove(LTexture tex) {
+		if (tex == null || tex._registry != this) {
+			return false;
+		}
+		unlink(tex);
+		if (_ids.get(tex.getID()) == tex) {
+			_ids.remove(tex.getID());
+		}
+		if (tex._evicted) {
+			_evictedCount--;
+		}
+		tex._registry = null;
+		_size--;
+		_memSize -= tex.getMemSize();
+		return true;
+	}
+
+	public boolean remove(int id) {
+		return remove(_ids.get(id));
+	}
+
+	public boolean contains(LTexture tex) {
+		return tex != null && tex._registry == this;
+	}
+
+	public boolean contains(int id) {
+		return _ids.containsKey(id);
+	}
+
+	public LTexture get(int id) {
+		return _ids.get(id);
+	}
+
+	/**
+	 * 纹理被绑定时调用,更新使用记录,若纹理已被驱逐则重新载入
+	 *
+	 * @param tex
+	 */
+	void touch(LTexture tex) {
+		if (tex._evicted) {
+			final int size = tex.restore();
+			_evictedCount--;
+			_reloads++;
+			_reloadedBytes += size;
+		}
+		tex._bindCount++;
+		if (tex._lastBindFrame == _frame && tex == _tail) {
+			return;
+		}
+		tex._lastBindFrame = _frame;
+		if (tex != _tail) {
+			unlink(tex);
+			link(tex);
+		}
+	}
+
+	/**
+	 * 纹理显存占用变化时由纹理调用
+	 *
+	 * @param tex
+	 * @param oldSize
+	 * @param newSize
+	 */
+	void updateMemSize(LTexture tex, int oldSize, int newSize) {
+		_memSize -= oldSize;
+		addMemSize(newSize);
+	}
+
+	/**
+	 * 纹理id变化时由纹理调用
+	 *
+	 * @param tex
+	 * @param oldId
+	 */
+	void updateID(LTexture tex, int oldId) {
+		if (_ids.get(oldId) == tex) {
+			_ids.remove(oldId);
+		}
+		if (tex.getID() != -1) {
+			_ids.put(tex.getID(), tex);
+		}
+	}
+
+	private void addMemSize(int size) {
+		_memSize += size;
+		if (_memSize > _peakMemSize) {
+			_peakMemSize = _memSize;
+		}
+	}
+
+	private void link(LTexture tex) {
+		tex._registryPrev = _tail;
+		tex._registryNext = null;
+		if (_tail != null) {
+			_tail._registryNext = tex;
+		} else {
+			_head = tex;
+		}
+		_tail = tex;
+	}
+
+	private void unlink(LTexture tex) {
+		final LTexture prev = tex._registryPrev;
+		final LTexture next = tex._registryNext;
+		if (prev != null) {
+			prev._registryNext = next;
+		} else {
+			_head = next;
+		}
+		if (next != null) {
+			next._registryPrev = prev;
+		} else {
+			_tail = prev;
+		}
+		tex._registryPrev = tex._registryNext = null;
+	}
+
+	/**
+	 * 结束当前帧(此时批处理已全部提交),若显存超出预算则驱逐纹理,本帧使用过的纹理不会被驱逐
+	 */
+	public void nextFrame() {
+		if (_budget > 0 && _memSize > _budget) {
+			trim(_budget);
+		}
+		_frame++;
+	}
+
+	/**
+	 * 驱逐纹理直到显存总量不超过指定值,返回驱逐的纹理数量
+	 *
+	 * @param target
+	 * @return
+	 */
+	public int trim(long target) {
+		int count = 0;
+		for (; _memSize > target;) {
+			final LTexture tex = (_policy == Policy.LFU) ? findLeastFrequent() : findLeastRecent();
+			if (tex == null) {
+				break;
+			}
+			evict(tex);
+			count++;
+		}
+		return count;
+	}
+
+	private boolean canEvict(LTexture tex) {
+		return tex._lastBindFrame != _frame && tex.isEvictable();
+	}
+
+	private LTexture findLeastRecent() {
+		for (LTexture tex = _head; tex != null; tex = tex._registryNext) {
+			if (canEvict(tex)) {
+				return tex;
+			}
+		}
+		return null;
+	}
+
+	private LTexture findLeastFrequent() {
+		LTexture result = null;
+		for (LTexture tex = _head; tex != null; tex = tex._registryNext) {
+			if (canEvict(tex) && (result == null || tex._bindCount < result._bindCount)) {
+				result = tex;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 立即驱逐指定纹理(释放显存,保留纹理对象)
+	 *
+	 * @param tex
+	 * @return
+	 */
+	public boolean evict(LTexture tex) {
+		if (!contains(tex) || !tex.isEvictable()) {
+			return false;
+		}
+		final int size = tex.getMemSize();
+		tex.evict(_gl);
+		_evictedCount++;
+		_evictions++;
+		_evictedBytes += size;
+		return true;
+	}
+
+	public LTexture first() {
+		return _head;
+	}
+
+	public LTexture last() {
+		return _tail;
+	}
+
+	/**
+	 * 获得注册表中全部纹理(按最后绑定顺序,最久未使用的在前)
+	 *
+	 * @param out
+	 * @return
+	 */
+	public TArray<LTexture> textures(TArray<LTexture> out) {
+		if (out == null) {
+			out = new TArray<LTexture>(_size);
+		}
+		for (LTexture tex = _head; tex != null; tex = tex._registryNext) {
+			out.add(tex);
+		}
+		return out;
+	}
+
+	public LTexture next(LTexture tex) {
+		return tex == null ? null : tex._registryNext;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public long getMemSize() {
+		return _memSize;
+	}
+
+	public long getPeakMemSize() {
+		return _peakMemSize;
+	}
+
+	public long getBudget() {
+		return _budget;
+	}
+
+	/**
+	 * 设定显存预算(字节,小于等于0时不做限制)
+	 *
+	 * @param budget
+	 * @return
+	 */
+	public LTextureRegistry setBudget(long budget) {
+		this._budget = budget;
+		return this;
+	}
+
+	public Policy getPolicy() {
+		return _policy;
+	}
+
+	public LTextureRegistry setPolicy(Policy policy) {
+		this._policy = (policy == null) ? Policy.LRU : policy;
+		return this;
+	}
+
+	public long getFrame() {
+		return _frame;
+	}
+
+	/**
+	 * 当前处于驱逐状态的纹理数量
+	 *
+	 * @return
+	 */
+	public int getEvictedCount() {
+		return _evictedCount;
+	}
+
+	public int getEvictions() {
+		return _evictions;
+	}
+
+	public int getReloads() {
+		return _reloads;
+	}
+
+	public long getEvictedBytes() {
+		return _evictedBytes;
+	}
+
+	public long getReloadedBytes() {
+		return _reloadedBytes;
+	}
+
+	public void resetStats() {
+		_evictions = _reloads = 0;
+		_evictedBytes = _reloadedBytes = 0;
+		_peakMemSize = _memSize;
+	}
+
+	public void clear() {
+		for (LTexture tex = _head; tex != null;) {
+			final LTexture next = tex._registryNext;
+			tex._registryPrev = tex._registryNext = null;
+			tex._registry = null;
+			tex = next;
+		}
+		_head = _tail = null;
+		_ids.clear();
+		_size = 0;
+		_memSize = 0;
+		_evictedCount = 0;
+	}
+
+	@Override
+	public String toString() {
+		final StringKeyValue builder = new StringKeyValue("LTextureRegistry");
+		builder.kv("size", _size).comma().kv("memSize", _memSize).comma().kv("budget", _budget).comma()
+				.kv("policy", _policy).comma().kv("evicted", _evictedCount).comma().kv("evictions", _evictions)
+				.comma().kv("reloads", _reloads);
+		return builder.toString();
+	}
+
+}
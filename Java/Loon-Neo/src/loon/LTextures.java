@@ -21,6 +21,7 @@
 package loon;
 
 import loon.LTexture.Format;
+import loon.canvas.Image;
 
 public final class LTextures {
 
@@ -32,6 +33,22 @@ public final class LTextures {
 		return LSystem.getTextureMemSize();
 	}
 
+	public static LTextureRegistry getRegistry() {
+		return LSystem.getTextureRegistry();
+	}
+
+	/**
+	 * 设定纹理显存预算(字节,为0不限制)
+	 * 
+	 * @param budget
+	 */
+	public static void setMemBudget(long budget) {
+		final LTextureRegistry registry = LSystem.getTextureRegistry();
+		if (registry != null) {
+			registry.setBudget(budget);
+		}
+	}
+
 	public static LTexture createTexture(int width, int height, Format config) {
 		return LSystem.createTexture(width, height, config);
 	}
@@ -60,6 +77,10 @@ public final class LTextures {
 		return LSystem.loadTexture(fileName, config);
 	}
 
+	public static LTexture loadTexture(String fileName, Image image, Format config) {
+		return LSystem.loadTexture(fileName, image, config);
+	}
+
 	public static LTexture loadTexture(String fileName) {
 		return LSystem.loadTexture(fileName);
 	}
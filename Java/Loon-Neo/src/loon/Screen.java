@@ -473,26 +473,32 @@ public abstract class Screen extends PlayerUtils implements SysInput, IArray, LR
 			switch (_orderType) {
 			case DRAW_USER:
 				DrawListener<Screen> drawing = _orderScreen._drawListener;
+				FrameProfiler.begin(FrameProfiler.SCREEN);
 				if (drawing != null) {
 					drawing.draw(g, _orderScreen.getX(), _orderScreen.getY());
 				}
 				_orderScreen.draw(g);
+				FrameProfiler.end(FrameProfiler.SCREEN);
 				break;
 			case DRAW_SPRITE:
+				FrameProfiler.begin(FrameProfiler.SPRITES);
 				if (_orderScreen._curSpriteRun) {
 					_orderScreen._currentSprites.createUI(g);
 				} else if (_orderScreen._curSpriteRun = (_orderScreen._currentSprites != null
 						&& _orderScreen._currentSprites.size() > 0)) {
 					_orderScreen._currentSprites.createUI(g);
 				}
+				FrameProfiler.end(FrameProfiler.SPRITES);
 				break;
 			case DRAW_DESKTOP:
+				FrameProfiler.begin(FrameProfiler.DESKTOP);
 				if (_orderScreen._curDesktopRun) {
 					_orderScreen._currentDesktop.createUI(g);
 				} else if (_orderScreen._curDesktopRun = (_orderScreen._currentDesktop != null
 						&& _orderScreen._currentDesktop.size() > 0)) {
 					_orderScreen._currentDesktop.createUI(g);
 				}
+				FrameProfiler.end(FrameProfiler.DESKTOP);
 				break;
 			case DRAW_EMPTY:
 			default:
@@ -20,11 +20,13 @@
  */
 package loon;
 
+import loon.utils.ArrayByte;
 import loon.utils.ArrayMap;
 import loon.utils.ArrayMap.Entry;
 import loon.utils.Base64Coder;
 import loon.utils.Bundle;
 import loon.utils.ObjectBundle;
+import loon.utils.ObjectMap;
 import loon.utils.StrBuilder;
 import loon.utils.StringUtils;
 import loon.utils.TArray;
@@ -51,6 +53,22 @@ public final class Session implements Bundle<String> {
 
 		private String[] _values;
 
+		private int _count;
+
+		private StringTable _source;
+
+		private byte[] _data;
+
+		private int _dataOffset;
+
+		private int _dataLength;
+
+		private int _refs;
+
+		private boolean _modified;
+
+		private boolean _stored;
+
 		public RecordData(String name) {
 			this(name, true);
 		}
@@ -59,6 +77,7 @@ public final class Session implements Bundle<String> {
 			this._values = new String[0];
 			this._name = name;
 			this.active = a;
+			this._modified = true;
 		}
 
 		public boolean isSaved() {
@@ -69,7 +88,7 @@ public final class Session implements Bundle<String> {
 			if (_values != null) {
 				return _values.length;
 			}
-			return 0;
+			return _count;
 		}
 
 		public int decode(String[] parts) {
@@ -77,6 +96,7 @@ public final class Session implements Bundle<String> {
 		}
 
 		public int decode(String[] parts, int n) {
+			changed();
 			if (n >= parts.length) {
 				return n;
 			}
@@ -97,18 +117,20 @@ public final class Session implements Bundle<String> {
 		}
 
 		public TArray<String> list() {
+			final String[] values = values();
 			final TArray<String> result = new TArray<String>();
-			for (int i = 0; i < _values.length; i++) {
-				result.add(_values[i]);
+			for (int i = 0; i < values.length; i++) {
+				result.add(values[i]);
 			}
 			return result;
 		}
 
 		public String get(int index) {
-			if (index < 0 || index >= _values.length) {
+			final String[] values = values();
+			if (index < 0 || index >= values.length) {
 				return null;
 			} else {
-				return _values[index];
+				return values[index];
 			}
 		}
 
@@ -116,48 +138,196 @@ public final class Session implements Bundle<String> {
 			if (StringUtils.isEmpty(v)) {
 				return;
 			}
+			final String[] values = values();
 			final String vl = StringUtils.replace(v, String.valueOf(_record_split_flag), "+");
-			if (index >= _values.length) {
+			if (index >= values.length) {
 				int size = index + 1;
 				final String[] res = new String[size];
-				System.arraycopy(_values, 0, res, 0, _values.length);
+				System.arraycopy(values, 0, res, 0, values.length);
 				this._values = res;
 			}
 			this._values[index] = vl;
+			changed();
 		}
 
 		protected String encodeVale() {
+			final String[] values = values();
 			final StrBuilder sbr = new StrBuilder(LSystem.DEFAULT_MAX_CACHE_SIZE);
 			sbr.append(this.active ? "1" : "0");
 			sbr.append(_record_split_flag);
-			sbr.append(this._values.length);
+			sbr.append(values.length);
 			sbr.append(_record_split_flag);
-			for (int i = 0; i < this._values.length; i++) {
-				sbr.append(this._values[i]);
+			for (int i = 0; i < values.length; i++) {
+				sbr.append(values[i]);
 				sbr.append(_record_split_flag);
 			}
 			return sbr.toString();
 		}
 
 		public String encode() {
+			final String[] values = values();
 			final StrBuilder sbr = new StrBuilder(LSystem.DEFAULT_MAX_CACHE_SIZE);
 			sbr.append(this._name);
 			sbr.append(_record_split_flag);
 			sbr.append(this.active ? "1" : "0");
 			sbr.append(_record_split_flag);
-			sbr.append(this._values.length);
+			sbr.append(values.length);
 			sbr.append(_record_split_flag);
-			for (int i = 0; i < this._values.length; i++) {
-				sbr.append(this._values[i]);
+			for (int i = 0; i < values.length; i++) {
+				sbr.append(values[i]);
 				sbr.append(_record_split_flag);
 			}
 			return sbr.toString();
 		}
 
+		public boolean isModified() {
+			return _modified;
+		}
+
+		private void changed() {
+			_modified = true;
+			_stored = false;
+		}
+
+		private String[] values() {
+			if (_values == null) {
+				final ArrayByte in = new ArrayByte(_data, _dataOffset, ArrayByte.BIG_ENDIAN);
+				in.readVarInt();
+				in.read();
+				final int count = in.readVarInt();
+				final String[] values = new String[count];
+				for (int i = 0; i < count; i++) {
+					final int idx = in.readVarInt();
+					values[i] = idx == 0 ? null : _source.get(idx - 1);
+				}
+				_values = values;
+			}
+			return _values;
+		}
+
+		/**
+		 * 以二进制格式写出此记录,字符串以其在table中的索引保存
+		 */
+		private int write(StringTable table, ArrayByte out) {
+			final String[] values = values();
+			out.writeVarInt(table.intern(_name));
+			out.writeByte(active ? 1 : 0);
+			out.writeVarInt(values.length);
+			int refs = 1;
+			for (int i = 0; i < values.length; i++) {
+				final String v = values[i];
+				if (v == null) {
+					out.writeVarInt(0);
+				} else {
+					out.writeVarInt(table.intern(v) + 1);
+					refs++;
+				}
+			}
+			return refs;
+		}
+
+		private void cache(StringTable table, ArrayByte buffer) {
+			buffer.setPosition(0);
+			final int refs = write(table, buffer);
+			final int len = buffer.position();
+			final byte[] data = new byte[len];
+			System.arraycopy(buffer.getData(), 0, data, 0, len);
+			attach(table, data, 0, len, size());
+			_refs = refs;
+			_modified = false;
+		}
+
+		private void attach(StringTable table, byte[] data, int offset, int len, int count) {
+			this._source = table;
+			this._data = data;
+			this._dataOffset = offset;
+			this._dataLength = len;
+			this._count = count;
+		}
+
+	}
+
+	/**
+	 * 二进制存档使用的字符串表,只追加不删除,已编码的记录可以直接复用,载入时字符串在首次访问时才解码
+	 */
+	private final static class StringTable {
+
+		private final ArrayByte _bytes;
+
+		private final TArray<String> _strings;
+
+		private ObjectMap<String, Integer> _index;
+
+		private byte[] _source;
+
+		private int[] _offsets;
+
+		StringTable() {
+			this._bytes = new ArrayByte(256);
+			this._strings = new TArray<String>();
+		}
+
+		int size() {
+			return _strings.size;
+		}
+
+		String get(int idx) {
+			if (idx < 0 || idx >= _strings.size) {
+				throw new LSysException("Session string index out of bounds : " + idx);
+			}
+			String v = _strings.get(idx);
+			if (v == null && _source != null && idx < _offsets.length) {
+				v = new ArrayByte(_source, _offsets[idx], ArrayByte.BIG_ENDIAN).readUTF8();
+				_strings.set(idx, v);
+			}
+			return v;
+		}
+
+		int intern(String v) {
+			if (_index == null) {
+				_index = new ObjectMap<String, Integer>(_strings.size + 16);
+				for (int i = 0; i < _strings.size; i++) {
+					_index.put(get(i), i);
+				}
+			}
+			final Integer idx = _index.get(v);
+			if (idx != null) {
+				return idx.intValue();
+			}
+			final int id = _strings.size;
+			_strings.add(v);
+			_index.put(v, id);
+			_bytes.writeUTF8(v);
+			return id;
+		}
+
+		void load(ArrayByte in) {
+			final int count = in.readVarInt();
+			final int start = in.position();
+			final int[] offsets = new int[count];
+			for (int i = 0; i < count; i++) {
+				offsets[i] = in.position();
+				final int len = in.readVarInt();
+				in.setPosition(in.position() + len);
+				_strings.add(null);
+			}
+			_bytes.write(in.getData(), start, in.position() - start);
+			_source = in.getData();
+			_offsets = offsets;
+		}
+
+		void write(ArrayByte out) {
+			out.writeVarInt(_strings.size);
+			out.write(_bytes.getData(), 0, _bytes.position());
+		}
 	}
 
 	private final static char _record_split_flag = LSystem.AMP;
 
+	private final static String BINARY_FLAG = "#LSB";
+
+	private final static int BINARY_VERSION = 1;
+
 	private Save _save;
 
 	private boolean _isPersisted = false;
@@ -168,6 +338,10 @@ public final class Session implements Bundle<String> {
 
 	private TArray<RecordData> _recordsList;
 
+	private StringTable _table = new StringTable();
+
+	private ArrayByte _buffer;
+
 	public Session(String name) {
 		this(name, true);
 	}
@@ -190,11 +364,7 @@ public final class Session implements Bundle<String> {
 		}
 	}
 
-	private String loadData() {
-		if (_save == null) {
-			return null;
-		}
-		String result = _save.getItem(_name);
+	private String loadData(String result) {
 		if (StringUtils.isEmpty(result)) {
 			return result;
 		}
@@ -208,20 +378,6 @@ public final class Session implements Bundle<String> {
 		return result;
 	}
 
-	private void saveData(String result) {
-		if (StringUtils.isEmpty(result)) {
-			return;
-		}
-		if (!Base64Coder.isBase64(result)) {
-			try {
-				result = new String(Base64Coder.encode(result.getBytes()), LSystem.ENCODING);
-			} catch (Throwable e) {
-				result = new String(Base64Coder.encode(result.getBytes()));
-			}
-		}
-		_save.setItem(_name, result);
-	}
-
 	private void removeData() {
 		_save.removeItem(_name);
 	}
@@ -361,7 +517,7 @@ public final class Session implements Bundle<String> {
 		if (record == null) {
 			return null;
 		} else {
-			return record._values;
+			return record.values();
 		}
 	}
 
@@ -459,7 +615,7 @@ public final class Session implements Bundle<String> {
 		if (record == null) {
 			return 0;
 		} else {
-			return record._values.length;
+			return record.size();
 		}
 	}
 
@@ -493,20 +649,24 @@ public final class Session implements Bundle<String> {
 	}
 
 	public synchronized void saveRecordsToStorage() {
+		final Save.Batch batch = _save.startBatch();
 		for (int i = 0; i < _recordsList.size; i++) {
 			final RecordData recordv = _recordsList.get(i);
-			if (recordv != null && recordv.isSaved()) {
-				String result = recordv.encodeVale();
-				if (!Base64Coder.isBase64(result)) {
-					try {
-						result = new String(Base64Coder.encode(result.getBytes()), LSystem.ENCODING);
-					} catch (Throwable e) {
-						result = new String(Base64Coder.encode(result.getBytes()));
-					}
-				}
-				_save.setItem(recordv._name, result);
+			if (recordv != null && !recordv._stored && recordv.isSaved()) {
+				final StringTable table = new StringTable();
+				final ArrayByte buffer = buffer();
+				buffer.setPosition(0);
+				recordv.write(table, buffer);
+				final ArrayByte out = new ArrayByte(buffer.position() + table._bytes.position() + 16);
+				out.writeByte(BINARY_VERSION);
+				table.write(out);
+				out.writeVarInt(1);
+				out.write(buffer.getData(), 0, buffer.position());
+				batch.setItem(recordv._name, toStorage(out.getBytes()));
+				recordv._stored = true;
 			}
 		}
+		batch.commit();
 	}
 
 	public TArray<RecordData> loadStorageToRecords(String... names) {
@@ -526,6 +686,18 @@ public final class Session implements Bundle<String> {
 
 	public RecordData loadStorageToRecord(String name) {
 		String result = _save.getItem(name);
+		if (result != null && result.startsWith(BINARY_FLAG)) {
+			final ArrayByte in = fromStorage(result);
+			final StringTable table = new StringTable();
+			table.load(in);
+			if (in.readVarInt() > 0) {
+				final RecordData recordv = readRecord(table, in);
+				recordv.values();
+				recordv._stored = true;
+				return recordv;
+			}
+			return new RecordData(name);
+		}
 		final RecordData recordv = new RecordData(name);
 		if (result != null) {
 			if (Base64Coder.isBase64(result)) {
@@ -543,6 +715,114 @@ public final class Session implements Bundle<String> {
 		return recordv;
 	}
 
+	/**
+	 * 以二进制格式编码全部记录,未修改的记录直接复用上次的编码结果
+	 * 
+	 * @return
+	 */
+	public synchronized byte[] encodeBinary() {
+		int count = 0;
+		int refs = 0;
+		int length = 0;
+		for (int i = 0; i < _recordsList.size; i++) {
+			final RecordData recordv = _recordsList.get(i);
+			if (recordv != null && recordv.isSaved()) {
+				if (recordv._modified || recordv._source != _table) {
+					recordv.cache(_table, buffer());
+				}
+				count++;
+				refs += recordv._refs;
+				length += recordv._dataLength;
+			}
+		}
+		if (_table.size() > refs * 2 + 256) {
+			for (int i = 0; i < _recordsList.size; i++) {
+				_recordsList.get(i).values();
+			}
+			_table = new StringTable();
+			return encodeBinary();
+		}
+		final ArrayByte out = new ArrayByte(length + _table._bytes.position() + 16);
+		out.writeByte(BINARY_VERSION);
+		_table.write(out);
+		out.writeVarInt(count);
+		for (int i = 0; i < _recordsList.size; i++) {
+			final RecordData recordv = _recordsList.get(i);
+			if (recordv != null && recordv.isSaved()) {
+				out.write(recordv._data, recordv._dataOffset, recordv._dataLength);
+			}
+		}
+		return out.getBytes();
+	}
+
+	/**
+	 * 载入encodeBinary生成的数据,记录内容在首次访问时才解码
+	 * 
+	 * @param data
+	 * @return
+	 */
+	public synchronized int decodeBinary(byte[] data) {
+		_records.clear();
+		_recordsList.clear();
+		final ArrayByte in = new ArrayByte(data);
+		final int version = in.read();
+		if (version != BINARY_VERSION) {
+			throw new LSysException("Unknown session data version : " + version);
+		}
+		final StringTable table = new StringTable();
+		table.load(in);
+		final int count = in.readVarInt();
+		for (int i = 0; i < count; i++) {
+			final RecordData record = readRecord(table, in);
+			_records.put(record._name, record);
+			_recordsList.add(record);
+		}
+		_table = table;
+		return count;
+	}
+
+	private RecordData readRecord(StringTable table, ArrayByte in) {
+		final int start = in.position();
+		final String name = table.get(in.readVarInt());
+		final boolean active = in.read() != 0;
+		final int count = in.readVarInt();
+		int refs = 1;
+		for (int i = 0; i < count; i++) {
+			if (in.readVarInt() != 0) {
+				refs++;
+			}
+		}
+		final RecordData record = new RecordData(name, active);
+		record._values = null;
+		record.attach(table, in.getData(), start, in.position() - start, count);
+		record._refs = refs;
+		record._modified = false;
+		return record;
+	}
+
+	private ArrayByte buffer() {
+		if (_buffer == null) {
+			_buffer = new ArrayByte(256);
+		}
+		return _buffer;
+	}
+
+	private static String toStorage(byte[] data) {
+		final byte[] bytes = Base64Coder.encode(data);
+		final char[] chars = new char[BINARY_FLAG.length() + bytes.length];
+		BINARY_FLAG.getChars(0, BINARY_FLAG.length(), chars, 0);
+		for (int i = 0; i < bytes.length; i++) {
+			chars[BINARY_FLAG.length() + i] = (char) bytes[i];
+		}
+		return new String(chars);
+	}
+
+	private static ArrayByte fromStorage(String data) {
+		final char[] chars = new char[data.length() - BINARY_FLAG.length()];
+		data.getChars(BINARY_FLAG.length(), data.length(), chars, 0);
+		return new ArrayByte(Base64Coder.decodeBase64(chars));
+	}
+
 	public synchronized String encode() {
 		final StrBuilder sbr = new StrBuilder();
 		sbr.append(_recordsList.size).append(_record_split_flag).toString();
@@ -623,9 +903,8 @@ public final class Session implements Bundle<String> {
 	}
 
 	public Session save() {
-		final String result = encode();
-		if (!StringUtils.isEmpty(result)) {
-			saveData(result);
+		if (_save != null) {
+			_save.setItem(_name, toStorage(encodeBinary()));
 		}
 		return this;
 	}
@@ -640,11 +919,18 @@ public final class Session implements Bundle<String> {
 	}
 
 	public int load() {
-		final String result = loadData();
-		if (result == null) {
+		if (_save == null) {
+			return 0;
+		}
+		final String result = _save.getItem(_name);
+		if (result != null && result.startsWith(BINARY_FLAG)) {
+			return decodeBinary(fromStorage(result).getData());
+		}
+		final String data = loadData(result);
+		if (data == null) {
 			return 0;
 		}
-		return loadEncodeSession(result);
+		return loadEncodeSession(data);
 	}
 
 	public boolean isSaved() {
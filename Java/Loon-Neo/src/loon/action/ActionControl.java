@@ -38,6 +38,8 @@ public final class ActionControl implements LRelease {
 
 	private final Actions _currentActions;
 
+	private final ActionTweenBatch _currentBatch;
+
 	private final LTimer _delayTimer;
 
 	private LRelease _dispose;
@@ -78,6 +80,9 @@ public final class ActionControl implements LRelease {
 		if (_pause) {
 			return;
 		}
+		if (_currentBatch.size() > 0) {
+			_currentBatch.update(elapsedTime);
+		}
 		final boolean isEmpty = (_currentActions.getCount() == 0);
 		if (isEmpty) {
 			if (_currentActions.isStarted()) {
@@ -238,6 +243,7 @@ public final class ActionControl implements LRelease {
 
 	private ActionControl() {
 		_currentActions = new Actions();
+		_currentBatch = new ActionTweenBatch();
 		_delayTimer = new LTimer(0);
 		_currentBindDatas = new Array<ActionBindData>();
 		_pause = false;
@@ -255,6 +261,7 @@ public final class ActionControl implements LRelease {
 
 	public ActionControl removeAllActions(ActionBind actObject) {
 		_currentActions.removeAllActions(actObject);
+		_currentBatch.kill(actObject);
 		return this;
 	}
 
@@ -273,6 +280,15 @@ public final class ActionControl implements LRelease {
 		return _currentActions.getCount();
 	}
 
+	/**
+	 * 获得批量缓动引擎(与动作事件一同在call中推进)
+	 * 
+	 * @return
+	 */
+	public ActionTweenBatch getBatch() {
+		return _currentBatch;
+	}
+
 	public boolean stopNames(ActionBind k, String name) {
 		return _currentActions.stopNames(k, name);
 	}
@@ -321,6 +337,7 @@ public final class ActionControl implements LRelease {
 
 	public ActionControl clear() {
 		_currentActions.clear();
+		_currentBatch.clear();
 		return this;
 	}
 
@@ -343,6 +360,7 @@ public final class ActionControl implements LRelease {
 	@Override
 	public void close() {
 		_currentActions.clear();
+		_currentBatch.close();
 		_currentBindDatas.clear();
 	}
 
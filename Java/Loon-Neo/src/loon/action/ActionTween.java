@@ -763,6 +763,54 @@ public final class ActionTween extends ActionTweenBase<ActionTween> {
 		return event(alpha);
 	}
 
+	/**
+	 * 交给ActionControl的批量缓动引擎执行(不进入事件队列,立即与其它动作同时进行)
+	 *
+	 * @param tweenType ActionType中的类型
+	 * @param duration
+	 * @param delay
+	 * @param easing
+	 * @param values
+	 * @return
+	 */
+	public ActionTween batchTo(int tweenType, float duration, float delay, EasingMode easing, float... values) {
+		ActionControl.get().getBatch().to(_target, tweenType, duration, delay, easing, values);
+		return this;
+	}
+
+	public ActionTween batchTo(int tweenType, float duration, EasingMode easing, float... values) {
+		return batchTo(tweenType, duration, 0f, easing, values);
+	}
+
+	public ActionTween batchBy(int tweenType, float duration, float delay, EasingMode easing, float... values) {
+		ActionControl.get().getBatch().by(_target, tweenType, duration, delay, easing, values);
+		return this;
+	}
+
+	public ActionTween batchBy(int tweenType, float duration, EasingMode easing, float... values) {
+		return batchBy(tweenType, duration, 0f, easing, values);
+	}
+
+	public ActionTween batchMoveTo(float x, float y, float duration, EasingMode easing) {
+		return batchTo(ActionType.POSITION, duration, easing, x, y);
+	}
+
+	public ActionTween batchMoveBy(float x, float y, float duration, EasingMode easing) {
+		return batchBy(ActionType.POSITION, duration, easing, x, y);
+	}
+
+	public ActionTween batchScaleTo(float sx, float sy, float duration, EasingMode easing) {
+		return batchTo(ActionType.SCALE, duration, easing, sx, sy);
+	}
+
+	public ActionTween batchRotateTo(float rotation, float duration, EasingMode easing) {
+		return batchTo(ActionType.ROTATION, duration, easing, rotation);
+	}
+
+	public ActionTween batchAlphaTo(float alpha, float duration, EasingMode easing) {
+		return batchTo(ActionType.ALPHA, duration, easing, alpha);
+	}
+
 	public ActionTween rotateTo(float angle) {
 		return rotateTo(angle, 6f);
 	}
@@ -0,0 +1,737 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action;
+
+import loon.LRelease;
+import loon.utils.CollectionUtils;
+import loon.utils.Easing;
+import loon.utils.Easing.EasingMode;
+import loon.utils.IntArray;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+import loon.utils.timer.Duration;
+
+/**
+ * 批量缓动引擎.
+ *
+ * 所有缓动的起止值,时长,已用时间与EasingMode均按列保存在基础类型数组中,每帧在一个紧凑循环里计算完毕后,再按ActionType统一写回ActionBind,
+ * 适合数万个同时进行的位置,缩放,旋转,透明度之类简单缓动(弹幕,粒子化UI特效等).开启并行且设置了Executor时,数量足够多的计算会被拆分到多个任务中并行执行,
+ * 写回目标始终在游戏线程.同一帧内结束的缓动只会合并触发一次BatchListener.
+ *
+ * PS:缓动编号在缓动结束或被移除后会被回收复用,请勿长期持有.
+ */
+public final class ActionTweenBatch implements LRelease {
+
+	/**
+	 * 并行计算的执行器(JavaSE等多线程平台会注册默认实现)
+	 */
+	public static interface Executor {
+
+		/**
+		 * 执行全部任务,须在所有任务完成后才返回
+		 *
+		 * @param tasks
+		 */
+		public void execute(Runnable[] tasks);
+
+	}
+
+	/**
+	 * 缓动完成监听,同一帧内结束的缓动合并为一次回调
+	 */
+	public static interface BatchListener {
+
+		/**
+		 *
+		 * @param batch
+		 * @param targets 本帧完成的缓动对象(仅前count个有效,回调结束后会被清空)
+		 * @param ids     本帧完成的缓动编号
+		 * @param count
+		 */
+		public void onCompleted(ActionTweenBatch batch, ActionBind[] targets, int[] ids, int count);
+
+	}
+
+	private final static class Chunk implements Runnable {
+
+		private final ActionTweenBatch _batch;
+
+		private int _begin, _end;
+
+		Chunk(ActionTweenBatch batch) {
+			this._batch = batch;
+		}
+
+		void reset(int begin, int end) {
+			this._begin = begin;
+			this._end = end;
+		}
+
+		@Override
+		public void run() {
+			_batch.advance(_begin, _end);
+		}
+	}
+
+	private static Executor _defaultExecutor;
+
+	/**
+	 * 设置所有未单独指定Executor的ActionTweenBatch使用的默认执行器
+	 *
+	 * @param executor
+	 */
+	public static void setDefaultExecutor(Executor executor) {
+		_defaultExecutor = executor;
+	}
+
+	public static Executor getDefaultExecutor() {
+		return _defaultExecutor;
+	}
+
+	private static final EasingMode[] MODES = EasingMode.values();
+
+	private static final int FLAG_RELATIVE = 1;
+
+	private static final int FLAG_CAPTURE = 1 << 1;
+
+	private static final int FLAG_STARTED = 1 << 2;
+
+	private static final int FLAG_KILLED = 1 << 3;
+
+	private ActionBind[] _targets;
+
+	private int[] _ids;
+
+	private int[] _types;
+
+	private int[] _easings;
+
+	private int[] _flags;
+
+	private float[] _startA, _startB;
+
+	private float[] _endA, _endB;
+
+	private float[] _valueA, _valueB;
+
+	private float[] _durations, _delays, _times;
+
+	private int _size;
+
+	// 尚未开始(仍在延迟中)的缓动数量
+	private int _waiting;
+
+	private float _delta;
+
+	// 缓动编号到数组位置的映射
+	private int[] _slots;
+
+	private int _nextId;
+
+	private final IntArray _freeIds;
+
+	// 目标到其缓动编号的索引,移除精灵时无需扫描全部缓动
+	private final ObjectMap<ActionBind, IntArray> _targetIds;
+
+	private final TArray<IntArray> _freeLists;
+
+	private ActionBind[] _doneTargets;
+
+	private int[] _doneIds;
+
+	private final float[] _buffer = new float[2];
+
+	private BatchListener _listener;
+
+	private Executor _executor;
+
+	private Chunk[] _chunks;
+
+	private Runnable[] _tasks;
+
+	private int _parallelTasks;
+
+	private int _parallelLimit;
+
+	private boolean _paused;
+
+	public ActionTweenBatch() {
+		this(CollectionUtils.INITIAL_CAPACITY);
+	}
+
+	public ActionTweenBatch(int capacity) {
+		final int size = capacity < 1 ? 1 : capacity;
+		this._targets = new ActionBind[size];
+		this._ids = new int[size];
+		this._types = new int[size];
+		this._easings = new int[size];
+		this._flags = new int[size];
+		this._startA = new float[size];
+		this._startB = new float[size];
+		this._endA = new float[size];
+		this._endB = new float[size];
+		this._valueA = new float[size];
+		this._valueB = new float[size];
+		this._durations = new float[size];
+		this._delays = new float[size];
+		this._times = new float[size];
+		this._slots = new int[size];
+		this._freeIds = new IntArray();
+		this._targetIds = new ObjectMap<ActionBind, IntArray>();
+		this._freeLists = new TArray<IntArray>();
+		this._doneTargets = new ActionBind[size];
+		this._doneIds = new int[size];
+		this._parallelTasks = 1;
+		this._parallelLimit = 8192;
+	}
+
+	/**
+	 * 从ActionBind当前数值缓动到指定值
+	 *
+	 * @param target
+	 * @param tweenType ActionType中的类型
+	 * @param duration  持续时间(秒)
+	 * @param delay     延迟(秒)
+	 * @param easing
+	 * @param values    目标值(POSITION与SCALE为两个数值,其余为一个)
+	 * @return 缓动编号
+	 */
+	public int to(ActionBind target, int tweenType, float duration, float delay, EasingMode easing,
+			float... values) {
+		return add(target, tweenType, FLAG_CAPTURE, 0f, 0f, first(values), second(values), duration, delay, easing);
+	}
+
+	public int to(ActionBind target, int tweenType, float duration, EasingMode easing, float... values) {
+		return to(target, tweenType, duration, 0f, easing, values);
+	}
+
+	/**
+	 * 从ActionBind当前数值开始,缓动指定的增量
+	 *
+	 * @param target
+	 * @param tweenType
+	 * @param duration
+	 * @param delay
+	 * @param easing
+	 * @param values
+	 * @return
+	 */
+	public int by(ActionBind target, int tweenType, float duration, float delay, EasingMode easing,
+			float... values) {
+		return add(target, tweenType, FLAG_CAPTURE | FLAG_RELATIVE, 0f, 0f, first(values), second(values), duration,
+				delay, easing);
+	}
+
+	public int by(ActionBind target, int tweenType, float duration, EasingMode easing, float... values) {
+		return by(target, tweenType, duration, 0f, easing, values);
+	}
+
+	/**
+	 * 在指定数值间缓动
+	 *
+	 * @param target
+	 * @param tweenType
+	 * @param startA
+	 * @param startB
+	 * @param endA
+	 * @param endB
+	 * @param duration
+	 * @param delay
+	 * @param easing
+	 * @return
+	 */
+	public int fromTo(ActionBind target, int tweenType, float startA, float startB, float endA, float endB,
+			float duration, float delay, EasingMode easing) {
+		return add(target, tweenType, 0, startA, startB, endA, endB, duration, delay, easing);
+	}
+
+	public int moveTo(ActionBind target, float x, float y, float duration, EasingMode easing) {
+		return to(target, ActionType.POSITION, duration, easing, x, y);
+	}
+
+	public int moveBy(ActionBind target, float x, float y, float duration, EasingMode easing) {
+		return by(target, ActionType.POSITION, duration, easing, x, y);
+	}
+
+	public int scaleTo(ActionBind target, float sx, float sy, float duration, EasingMode easing) {
+		return to(target, ActionType.SCALE, duration, easing, sx, sy);
+	}
+
+	public int rotateTo(ActionBind target, float rotation, float duration, EasingMode easing) {
+		return to(target, ActionType.ROTATION, duration, easing, rotation);
+	}
+
+	public int alphaTo(ActionBind target, float alpha, float duration, EasingMode easing) {
+		return to(target, ActionType.ALPHA, duration, easing, alpha);
+	}
+
+	private static float first(float[] values) {
+		return values == null || values.length == 0 ? 0f : values[0];
+	}
+
+	private static float second(float[] values) {
+		return values == null || values.length < 2 ? first(values) : values[1];
+	}
+
+	private int add(ActionBind target, int tweenType, int flags, float startA, float startB, float endA, float endB,
+			float duration, float delay, EasingMode easing) {
+		if (target == null) {
+			return -1;
+		}
+		if (_size == _targets.length) {
+			ensureCapacity(_size + 1);
+		}
+		final int id = nextId();
+		final int idx = _size++;
+		_slots[id] = idx;
+		_ids[idx] = id;
+		_targets[idx] = target;
+		_types[idx] = tweenType;
+		_easings[idx] = easing == null ? EasingMode.Linear.ordinal() : easing.ordinal();
+		_flags[idx] = flags;
+		_startA[idx] = startA;
+		_startB[idx] = startB;
+		_endA[idx] = endA;
+		_endB[idx] = endB;
+		_valueA[idx] = startA;
+		_valueB[idx] = startB;
+		_durations[idx] = duration < 0f ? 0f : duration;
+		_delays[idx] = delay < 0f ? 0f : delay;
+		_times[idx] = 0f;
+		_waiting++;
+		IntArray ids = _targetIds.get(target);
+		if (ids == null) {
+			ids = _freeLists.isEmpty() ? new IntArray(false, 4) : _freeLists.pop();
+			_targetIds.put(target, ids);
+		}
+		ids.add(id);
+		return id;
+	}
+
+	private int nextId() {
+		if (!_freeIds.isEmpty()) {
+			return _freeIds.pop();
+		}
+		final int id = _nextId++;
+		if (id >= _slots.length) {
+			_slots = CollectionUtils.copyOf(_slots, _slots.length * 2);
+		}
+		return id;
+	}
+
+	private void ensureCapacity(int size) {
+		if (size <= _targets.length) {
+			return;
+		}
+		int newSize = _targets.length * 2;
+		if (newSize < size) {
+			newSize = size;
+		}
+		final ActionBind[] targets = new ActionBind[newSize];
+		System.arraycopy(_targets, 0, targets, 0, _size);
+		_targets = targets;
+		_ids = CollectionUtils.copyOf(_ids, newSize);
+		_types = CollectionUtils.copyOf(_types, newSize);
+		_easings = CollectionUtils.copyOf(_easings, newSize);
+		_flags = CollectionUtils.copyOf(_flags, newSize);
+		_startA = CollectionUtils.copyOf(_startA, newSize);
+		_startB = CollectionUtils.copyOf(_startB, newSize);
+		_endA = CollectionUtils.copyOf(_endA, newSize);
+		_endB = CollectionUtils.copyOf(_endB, newSize);
+		_valueA = CollectionUtils.copyOf(_valueA, newSize);
+		_valueB = CollectionUtils.copyOf(_valueB, newSize);
+		_durations = CollectionUtils.copyOf(_durations, newSize);
+		_delays = CollectionUtils.copyOf(_delays, newSize);
+		_times = CollectionUtils.copyOf(_times, newSize);
+	}
+
+	/**
+	 * 推进所有缓动
+	 *
+	 * @param elapsedTime 毫秒
+	 */
+	public void update(long elapsedTime) {
+		update(Duration.toS(elapsedTime));
+	}
+
+	/**
+	 * 推进所有缓动
+	 *
+	 * @param dt 秒
+	 */
+	public void update(float dt) {
+		if (_paused || _size == 0) {
+			return;
+		}
+		final int size = _size;
+		final ActionBind[] targets = _targets;
+		final int[] flags = _flags;
+		final float[] times = _times;
+		final float[] delays = _delays;
+		_delta = dt;
+		if (!advanceParallel(size)) {
+			advance(0, size);
+		}
+		// 延迟到期的缓动在游戏线程读取起始值
+		if (_waiting > 0) {
+			for (int i = 0; i < size; i++) {
+				final int flag = flags[i];
+				if ((flag & (FLAG_STARTED | FLAG_KILLED)) == 0 && times[i] >= delays[i]) {
+					start(i, targets[i], flag);
+					evaluate(i);
+				}
+			}
+		}
+		// 写回目标并回收完成的缓动
+		final float[] buffer = _buffer;
+		int done = 0;
+		for (int i = size - 1; i > -1; i--) {
+			final int flag = flags[i];
+			if ((flag & FLAG_KILLED) != 0) {
+				removeIndex(i);
+				continue;
+			}
+			if ((flag & FLAG_STARTED) == 0) {
+				continue;
+			}
+			buffer[0] = _valueA[i];
+			buffer[1] = _valueB[i];
+			ActionType.setValues(targets[i], _types[i], buffer);
+			if (times[i] - delays[i] >= _durations[i]) {
+				if (done == _doneIds.length) {
+					final ActionBind[] doneTargets = new ActionBind[done * 2];
+					System.arraycopy(_doneTargets, 0, doneTargets, 0, done);
+					_doneTargets = doneTargets;
+					_doneIds = CollectionUtils.copyOf(_doneIds, done * 2);
+				}
+				_doneTargets[done] = targets[i];
+				_doneIds[done] = _ids[i];
+				done++;
+				removeIndex(i);
+			}
+		}
+		if (done > 0) {
+			if (_listener != null) {
+				_listener.onCompleted(this, _doneTargets, _doneIds, done);
+			}
+			for (int i = 0; i < done; i++) {
+				_doneTargets[i] = null;
+			}
+		}
+	}
+
+	private void start(int idx, ActionBind target, int flag) {
+		if ((flag & FLAG_CAPTURE) != 0) {
+			ActionType.getValues(target, _types[idx], _buffer);
+			final float startA = _buffer[0];
+			final float startB = _buffer[1];
+			_startA[idx] = startA;
+			_startB[idx] = startB;
+			if ((flag & FLAG_RELATIVE) != 0) {
+				_endA[idx] += startA;
+				_endB[idx] += startB;
+			}
+		}
+		_flags[idx] = flag | FLAG_STARTED;
+		_waiting--;
+	}
+
+	private void evaluate(int idx) {
+		final float duration = _durations[idx];
+		final float time = _times[idx] - _delays[idx];
+		final float progress = time >= duration ? 1f : Easing.getTween(MODES[_easings[idx]], time / duration);
+		_valueA[idx] = _startA[idx] + (_endA[idx] - _startA[idx]) * progress;
+		_valueB[idx] = _startB[idx] + (_endB[idx] - _startB[idx]) * progress;
+	}
+
+	/**
+	 * 推进指定范围内缓动的时间并计算当前数值(不访问ActionBind,不同范围可在不同线程同时执行)
+	 *
+	 * @param begin
+	 * @param end
+	 */
+	void advance(int begin, int end) {
+		final float dt = _delta;
+		final int[] flags = _flags;
+		final int[] easings = _easings;
+		final float[] times = _times;
+		final float[] delays = _delays;
+		final float[] durations = _durations;
+		final float[] startA = _startA;
+		final float[] startB = _startB;
+		final float[] endA = _endA;
+		final float[] endB = _endB;
+		final float[] valueA = _valueA;
+		final float[] valueB = _valueB;
+		final int linear = EasingMode.Linear.ordinal();
+		for (int i = begin; i < end; i++) {
+			final int flag = flags[i];
+			if ((flag & FLAG_KILLED) != 0) {
+				continue;
+			}
+			final float now = times[i] + dt;
+			times[i] = now;
+			if ((flag & FLAG_STARTED) == 0) {
+				continue;
+			}
+			final float duration = durations[i];
+			final float time = now - delays[i];
+			float progress;
+			if (time >= duration) {
+				progress = 1f;
+			} else {
+				final float t = time / duration;
+				final int easing = easings[i];
+				progress = easing == linear ? t : Easing.getTween(MODES[easing], t);
+			}
+			valueA[i] = startA[i] + (endA[i] - startA[i]) * progress;
+			valueB[i] = startB[i] + (endB[i] - startB[i]) * progress;
+		}
+	}
+
+	private boolean advanceParallel(int size) {
+		final Executor executor = (_executor != null) ? _executor : _defaultExecutor;
+		final int tasks = taskCount(size, executor);
+		if (tasks < 2) {
+			return false;
+		}
+		if (_chunks == null || _chunks.length < tasks) {
+			final Chunk[] chunks = new Chunk[tasks];
+			for (int i = 0; i < tasks; i++) {
+				chunks[i] = (_chunks != null && i < _chunks.length) ? _chunks[i] : new Chunk(this);
+			}
+			_chunks = chunks;
+		}
+		final int step = (size + tasks - 1) / tasks;
+		for (int i = 0; i < tasks; i++) {
+			final int begin = i * step;
+			final int end = begin + step > size ? size : begin + step;
+			_chunks[i].reset(begin, end);
+		}
+		if (_tasks == null || _tasks.length != tasks) {
+			_tasks = new Runnable[tasks];
+		}
+		System.arraycopy(_chunks, 0, _tasks, 0, tasks);
+		// 执行器在全部分段完成后才返回,因此不会有分段跨帧执行
+		executor.execute(_tasks);
+		return true;
+	}
+
+	private int taskCount(int size, Executor executor) {
+		if (executor == null || _parallelTasks < 2 || _parallelLimit < 1 || size < _parallelLimit * 2) {
+			return 1;
+		}
+		final int tasks = size / _parallelLimit;
+		return tasks > _parallelTasks ? _parallelTasks : tasks;
+	}
+
+	private void removeIndex(int idx) {
+		final int last = --_size;
+		final int id = _ids[idx];
+		_slots[id] = -1;
+		_freeIds.add(id);
+		final ActionBind target = _targets[idx];
+		final IntArray ids = _targetIds.get(target);
+		if (ids != null) {
+			ids.removeValue(id);
+			if (ids.isEmpty()) {
+				_targetIds.remove(target);
+				_freeLists.add(ids);
+			}
+		}
+		if ((_flags[idx] & FLAG_STARTED) == 0) {
+			_waiting--;
+		}
+		if (idx != last) {
+			_targets[idx] = _targets[last];
+			_ids[idx] = _ids[last];
+			_types[idx] = _types[last];
+			_easings[idx] = _easings[last];
+			_flags[idx] = _flags[last];
+			_startA[idx] = _startA[last];
+			_startB[idx] = _startB[last];
+			_endA[idx] = _endA[last];
+			_endB[idx] = _endB[last];
+			_valueA[idx] = _valueA[last];
+			_valueB[idx] = _valueB[last];
+			_durations[idx] = _durations[last];
+			_delays[idx] = _delays[last];
+			_times[idx] = _times[last];
+			_slots[_ids[idx]] = idx;
+		}
+		_targets[last] = null;
+	}
+
+	/**
+	 * 移除指定编号的缓动(目标停留在当前数值)
+	 *
+	 * @param id
+	 * @return
+	 */
+	public boolean kill(int id) {
+		if (!isActive(id)) {
+			return false;
+		}
+		_flags[_slots[id]] |= FLAG_KILLED;
+		return true;
+	}
+
+	/**
+	 * 移除指定对象的全部缓动
+	 *
+	 * @param target
+	 * @return 移除的数量
+	 */
+	public int kill(ActionBind target) {
+		if (_size == 0 || target == null) {
+			return 0;
+		}
+		final IntArray ids = _targetIds.get(target);
+		if (ids == null) {
+			return 0;
+		}
+		int count = 0;
+		for (int i = 0; i < ids.length; i++) {
+			final int idx = _slots[ids.get(i)];
+			if ((_flags[idx] & FLAG_KILLED) == 0) {
+				_flags[idx] |= FLAG_KILLED;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public boolean isActive(int id) {
+		if (id < 0 || id >= _nextId) {
+			return false;
+		}
+		final int idx = _slots[id];
+		return idx != -1 && (_flags[idx] & FLAG_KILLED) == 0;
+	}
+
+	public boolean contains(ActionBind target) {
+		if (_size == 0 || target == null) {
+			return false;
+		}
+		final IntArray ids = _targetIds.get(target);
+		if (ids == null) {
+			return false;
+		}
+		for (int i = 0; i < ids.length; i++) {
+			if ((_flags[_slots[ids.get(i)]] & FLAG_KILLED) == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 当前数组中的缓动数量(已移除但尚未回收的也包含在内)
+	 *
+	 * @return
+	 */
+	public int size() {
+		return _size;
+	}
+
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	public ActionTweenBatch setListener(BatchListener listener) {
+		this._listener = listener;
+		return this;
+	}
+
+	public BatchListener getListener() {
+		return _listener;
+	}
+
+	public ActionTweenBatch setExecutor(Executor executor) {
+		this._executor = executor;
+		return this;
+	}
+
+	public Executor getExecutor() {
+		return _executor;
+	}
+
+	/**
+	 * 设置并行计算参数(默认不并行,缓动写回目标始终在游戏线程,Easing计算较重时才值得开启)
+	 *
+	 * @param tasks 最多拆分的任务数,小于2时不并行
+	 * @param limit 每个任务至少处理的缓动数量
+	 * @return
+	 */
+	public ActionTweenBatch setParallel(int tasks, int limit) {
+		this._parallelTasks = tasks;
+		this._parallelLimit = limit;
+		return this;
+	}
+
+	public int getParallelTasks() {
+		return _parallelTasks;
+	}
+
+	public int getParallelLimit() {
+		return _parallelLimit;
+	}
+
+	public ActionTweenBatch pause() {
+		this._paused = true;
+		return this;
+	}
+
+	public ActionTweenBatch resume() {
+		this._paused = false;
+		return this;
+	}
+
+	public boolean isPaused() {
+		return _paused;
+	}
+
+	public ActionTweenBatch clear() {
+		for (int i = 0; i < _size; i++) {
+			_targets[i] = null;
+		}
+		_size = 0;
+		_waiting = 0;
+		_nextId = 0;
+		_freeIds.clear();
+		for (IntArray ids : _targetIds.values()) {
+			ids.clear();
+			_freeLists.add(ids);
+		}
+		_targetIds.clear();
+		return this;
+	}
+
+	@Override
+	public void close() {
+		clear();
+		_listener = null;
+		_executor = null;
+		_chunks = null;
+		_tasks = null;
+	}
+
+}
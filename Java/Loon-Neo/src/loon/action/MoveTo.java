@@ -27,6 +27,8 @@ import loon.action.map.AStarFindHeuristic;
 import loon.action.map.AStarFinder;
 import loon.action.map.Config;
 import loon.action.map.Field2D;
+import loon.action.map.FlowField;
+import loon.geom.PointI;
 import loon.geom.Vector2f;
 import loon.utils.IntMap;
 import loon.utils.TArray;
@@ -70,6 +72,10 @@ public class MoveTo extends ActionEvent {
 
 	private AStarFindHeuristic heuristic;
 
+	private FlowField flowField;
+
+	private PointI flowNext = new PointI();
+
 	private Vector2f pLocation = new Vector2f();
 
 	private boolean moveByMode;
@@ -246,6 +252,13 @@ public class MoveTo extends ActionEvent {
 		if (layerMap == null || original == null) {
 			return this;
 		}
+		if (flowField != null) {
+			flowField.update();
+			pActorPath = new TArray<Vector2f>();
+			pActorPath.add(new Vector2f(layerMap.pixelsToTilesWidth(original.x()),
+					layerMap.pixelsToTilesHeight(original.y())));
+			return this;
+		}
 		if (!(original.x() == endLocation.x() && original.y() == endLocation.y())) {
 			if (useCache) {
 				if (_PATH_CACHE.size > LSystem.DEFAULT_MAX_CACHE_SIZE * 10) {
@@ -517,6 +530,9 @@ public class MoveTo extends ActionEvent {
 			}
 
 			if (endX == startX && endY == startY) {
+				if (flowField != null) {
+					nextFlowStep();
+				}
 				if (pActorPath.size > 1) {
 					Vector2f moveStart = pActorPath.get(0);
 					Vector2f moveEnd = pActorPath.get(1);
@@ -701,6 +717,21 @@ public class MoveTo extends ActionEvent {
 		return isMoved;
 	}
 
+	/**
+	 * 以流场中当前格子的下一步补充路径(流场模式下路径中只保留当前格子与下一格子)
+	 */
+	protected void nextFlowStep() {
+		flowField.update();
+		final Vector2f current = pActorPath.get(0);
+		final int x = current.x();
+		final int y = current.y();
+		pActorPath.clear();
+		pActorPath.add(current);
+		if (flowField.next(x, y, flowNext)) {
+			pActorPath.add(new Vector2f(flowNext.x, flowNext.y));
+		}
+	}
+
 	protected final boolean checkTileCollision(Field2D field2d, ActionBind bind, float newX, float newY) {
 		if (field2d == null) {
 			return false;
@@ -807,6 +838,25 @@ public class MoveTo extends ActionEvent {
 		return this;
 	}
 
+	public FlowField getFlowField() {
+		return flowField;
+	}
+
+	/**
+	 * 设置流场,设置后不再使用A*寻径,而是每到达一个格子时查询流场获得下一步(流场的目标即为移动终点)
+	 * 
+	 * @param flow
+	 * @return
+	 */
+	public MoveTo setFlowField(FlowField flow) {
+		this.flowField = flow;
+		if (flow != null && flow.getField2D() != null) {
+			this.layerMap = flow.getField2D();
+			this.moveByMode = false;
+		}
+		return this;
+	}
+
 	public AStarFindHeuristic getHeuristic() {
 		return heuristic;
 	}
@@ -867,6 +917,7 @@ public class MoveTo extends ActionEvent {
 				synchroLayerField, process_delay_time);
 		move.set(this);
 		move.heuristic = this.heuristic;
+		move.flowField = this.flowField;
 		return move;
 	}
 
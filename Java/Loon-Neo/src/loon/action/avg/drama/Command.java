@@ -20,6 +20,7 @@
  */
 package loon.action.avg.drama;
 
+import loon.BaseIO;
 import loon.LRelease;
 import loon.LSysException;
 import loon.LSystem;
@@ -29,11 +30,11 @@ import loon.utils.ArrayMap.Entry;
 import loon.utils.CollectionUtils;
 import loon.utils.HelperUtils;
 import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
 import loon.utils.StrBuilder;
 import loon.utils.StringKeyValue;
 import loon.utils.StringUtils;
 import loon.utils.TArray;
-import loon.utils.parse.StrTokenizer;
 import loon.utils.res.TextResource;
 
 /**
@@ -45,12 +46,25 @@ public class Command extends Conversion implements LRelease {
 	// 异常处理
 	private boolean _explicitGoto = false;
 
-	// 脚本缓存
-	private static ArrayMap _scriptLazy;
+	// 已编译脚本缓存,按脚本字符数限制总量,超出时淘汰最久未使用的脚本
+	private static ObjectMap<String, StreamEntry> _scriptLazy;
+
+	private static final StreamEntry _scriptHead = new StreamEntry();
+
+	static {
+		_scriptHead.prev = _scriptHead;
+		_scriptHead.next = _scriptHead;
+	}
+
+	private static int _scriptLazyChars;
+
+	private static int _scriptLazyLimit = 1 << 22;
 
 	// 脚本数据缓存
 	private static ArrayMap _scriptContext;
 
+	private static int _scriptContextLimit = 4096;
+
 	// 函数列表
 	private static ArrayMap _functions;
 
@@ -104,18 +118,18 @@ public class Command extends Conversion implements LRelease {
 
 	private Command _innerCommand;
 
-	private TArray<String> _temps;
+	private String[] _temps;
 
-	private TArray<String> _printTags;
+	private String[] _printTags;
 
-	private TArray<String> _randTags;
+	private String[] _randTags;
 
 	private int _scriptSize;
 
 	private int _offsetPos;
 
-	// 脚本数据列表
-	private String[] _scriptList;
+	// 编译后的脚本
+	private CommandStream _stream;
 
 	// 脚本名
 	private String _scriptName;
@@ -141,6 +155,16 @@ public class Command extends Conversion implements LRelease {
 		_scriptName = fileName;
 	}
 
+	/**
+	 * 构造函数，载入已编译的脚本
+	 *
+	 * @param stream
+	 */
+	public Command(final CommandStream stream) {
+		createCache(false);
+		formatCommand(stream.getName(), stream);
+	}
+
 	public static void createCache(final boolean free) {
 		if (free) {
 			if (_scriptContext == null) {
@@ -180,19 +204,33 @@ public class Command extends Conversion implements LRelease {
 	}
 
 	public Command formatCommand(final String fileName) {
-		return formatCommand(fileName, Command.includeFile(fileName));
+		return formatCommand(fileName, Command.includeStream(fileName));
 	}
 
 	public Command formatCommand(final CommandLink cmd) {
 		String context = cmd.getValue();
 		String key = "key" + context.length() + context.charAt(0) + LSystem.DOT + context.charAt(context.length() - 1);
-		return formatCommand(key, Command.includeString(key, context));
+		return formatCommand(key, Command.includeStream(key, context));
 	}
 
 	public Command formatCommand(final String name, final String[] res) {
 		if (res == null || res.length == 0) {
 			return this;
 		}
+		return formatCommand(name, CommandStream.compile(name, res));
+	}
+
+	/**
+	 * 载入已编译的脚本
+	 * 
+	 * @param name
+	 * @param stream
+	 * @return
+	 */
+	public Command formatCommand(final String name, final CommandStream stream) {
+		if (stream == null || stream.size() == 0) {
+			return this;
+		}
 		if (!"function".equalsIgnoreCase(name)) {
 			if (_functions != null) {
 				_functions.clear();
@@ -210,8 +248,8 @@ public class Command extends Conversion implements LRelease {
 			_readBuffer.setLength(0);
 		}
 		this._scriptName = name;
-		this._scriptList = res;
-		this._scriptSize = res.length;
+		this._stream = stream;
+		this._scriptSize = stream.size();
 		this._offsetPos = 0;
 		this._flaging = false;
 		this._ifing = false;
@@ -237,27 +275,26 @@ public class Command extends Conversion implements LRelease {
 		_addCommand = false;
 	}
 
-	private boolean setupIF(final String commandString, final String nowPosFlagName, final ArrayMap setEnvironmentList,
+	private boolean setupIF(final String[] temps, final String nowPosFlagName, final ArrayMap setEnvironmentList,
 			final ArrayMap conditionEnvironmentList) {
 		boolean result = false;
 		conditionEnvironmentList.put(nowPosFlagName, result);
 		try {
-			final TArray<String> temps = commandSplit(commandString);
-			int size = temps.size;
+			int size = temps.length;
 			Object valueA = null;
 			Object valueB = null;
 			String condition = null;
 			if (size <= 4) {
-				valueA = temps.get(1);
-				valueB = temps.get(3);
+				valueA = temps[1];
+				valueB = temps[3];
 				valueA = setEnvironmentList.get(valueA) == null ? valueA : setEnvironmentList.get(valueA);
 				valueB = setEnvironmentList.get(valueB) == null ? valueB : setEnvironmentList.get(valueB);
-				condition = temps.get(2);
+				condition = temps[2];
 			} else {
 				int count = 0;
 				final StrBuilder sbr = new StrBuilder();
-				for (int i = 0; i < temps.size; i++) {
-					String res = temps.get(i);
+				for (int i = 0; i < temps.length; i++) {
+					String res = temps[i];
 					if (count > 0) {
 						if (!isCondition(res)) {
 							sbr.append(res);
@@ -340,6 +377,33 @@ public class Command extends Conversion implements LRelease {
 		}
 	}
 
+	/**
+	 * 设定已编译脚本缓存的字符总数上限
+	 * 
+	 * @param chars
+	 */
+	public static void setScriptCacheLimit(int chars) {
+		_scriptLazyLimit = MathUtils.max(0, chars);
+		trimScriptCache();
+	}
+
+	public static int getScriptCacheLimit() {
+		return _scriptLazyLimit;
+	}
+
+	/**
+	 * 设定脚本行输出缓存的条目上限
+	 * 
+	 * @param size
+	 */
+	public static void setScriptContextLimit(int size) {
+		_scriptContextLimit = MathUtils.max(1, size);
+	}
+
+	public static int getScriptContextLimit() {
+		return _scriptContextLimit;
+	}
+
 	public boolean isRead() {
 		return _isRead;
 	}
@@ -536,22 +600,22 @@ public class Command extends Conversion implements LRelease {
 		if (gotoFlag == null) {
 			return false;
 		}
-		int idx = -1;
-		for (int i = 0; i < _scriptSize; i++) {
-			final String line = _scriptList[i];
-			if (line == null) {
-				continue;
-			}
-			if (line.equals(gotoFlag)) {
-				idx = i;
-				break;
-			}
-			final Object varNameObj = _setEnvironmentList.get(line);
-			if (varNameObj != null) {
-				final String varName = String.valueOf(varNameObj);
-				if (gotoFlag.equals(varName)) {
-					idx = i;
-					break;
+		if (_stream == null) {
+			return false;
+		}
+		int idx = _stream.indexOf(gotoFlag);
+		// 标签之前的行若是变量名且变量值等于跳转目标,则优先跳转到该行
+		if (_setEnvironmentList.size() > 0) {
+			final String[] lines = _stream.lines;
+			final int end = (idx == -1) ? MathUtils.min(_scriptSize, lines.length) : idx;
+			for (int i = 0; i < end; i++) {
+				final Object varNameObj = _setEnvironmentList.get(lines[i]);
+				if (varNameObj != null) {
+					final String varName = String.valueOf(varNameObj);
+					if (gotoFlag.equals(varName)) {
+						idx = i;
+						break;
+					}
 				}
 			}
 		}
@@ -599,17 +663,16 @@ public class Command extends Conversion implements LRelease {
 		return resString.toString();
 	}
 
-	private void setupSET(final String cmd) {
-		if (cmd.startsWith(SET_TAG)) {
-			final TArray<String> temps = commandSplit(cmd);
-			final int len = temps.size;
+	private void setupSET(final int flag, final String[] temps) {
+		if ((flag & CommandStream.SET) != 0) {
+			final int len = temps.length;
 			String result = null;
 			if (len == 4) {
-				result = temps.get(3).toString();
+				result = temps[3];
 			} else if (len > 4) {
 				StrBuilder sbr = new StrBuilder(len);
-				for (int i = 3; i < temps.size; i++) {
-					sbr.append(temps.get(i));
+				for (int i = 3; i < temps.length; i++) {
+					sbr.append(temps[i]);
 				}
 				result = sbr.toString();
 			}
@@ -625,12 +688,12 @@ public class Command extends Conversion implements LRelease {
 				// 当为普通字符串时
 				if (StringUtils.startsWith(result, LSystem.DOUBLE_QUOTES)
 						&& StringUtils.endsWith(result, LSystem.DOUBLE_QUOTES)) {
-					_setEnvironmentList.put(temps.get(1), result.substring(1, result.length() - 1));
+					_setEnvironmentList.put(temps[1], result.substring(1, result.length() - 1));
 				} else if (StringUtils.isChinaLanguage(result) || StringUtils.isEnglishAndNumeric(result)) {
-					_setEnvironmentList.put(temps.get(1), result);
+					_setEnvironmentList.put(temps[1], result);
 				} else {
 					// 当为数学表达式时
-					_setEnvironmentList.put(temps.get(1), exp.parse(result));
+					_setEnvironmentList.put(temps[1], exp.parse(result));
 				}
 			}
 			_addCommand = false;
@@ -641,14 +704,14 @@ public class Command extends Conversion implements LRelease {
 	 * 随机数处理
 	 * 
 	 */
-	private void setupRandom(final String cmd) {
-		String text = cmd.trim();
+	private void setupRandom(final String cmd, final String[] randTags) {
+		String text = cmd;
 		// 随机数判定
-		if (text.indexOf(RAND_TAG) != -1) {
-			_randTags = Command.getNameTags(text, RAND_TAG + BRACKET_LEFT_TAG, BRACKET_RIGHT_TAG);
+		if (randTags != null) {
+			_randTags = randTags;
 			if (_randTags != null) {
-				for (int i = 0; i < _randTags.size; i++) {
-					String key = _randTags.get(i);
+				for (int i = 0; i < _randTags.length; i++) {
+					String key = _randTags[i];
 					Object vl = _setEnvironmentList.get(key);
 					// 已存在变量
 					if (vl != null) {
@@ -688,7 +751,7 @@ public class Command extends Conversion implements LRelease {
 		if (_isClose) {
 			return null;
 		}
-		if (_scriptList == null || _scriptSize <= 0) {
+		if (_stream == null || _scriptSize <= 0) {
 			resetCache();
 			return _executeCommand;
 		}
@@ -733,19 +796,19 @@ public class Command extends Conversion implements LRelease {
 			}
 
 			// 空指向判定
-			if (_scriptList == null) {
-				resetCache();
-				return _executeCommand;
-			} else if (_scriptList.length - 1 < _offsetPos) {
+			if (_stream.lines.length - 1 < _offsetPos) {
 				resetCache();
 				return _executeCommand;
 			}
 
 			// 获得全行命令
-			final String cmd = _scriptList[_offsetPos].trim();
+			final CommandStream stream = _stream;
+			final int line = _offsetPos;
+			final String cmd = stream.lines[line];
+			final int flag = stream.flags[line];
 
 			// 清空脚本缓存
-			if (cmd.startsWith(RESET_CACHE_TAG)) {
+			if ((flag & CommandStream.RESET) != 0) {
 				resetCache();
 				return _executeCommand;
 			}
@@ -762,38 +825,38 @@ public class Command extends Conversion implements LRelease {
 
 			// 注释中
 			if (_flaging) {
-				_flaging = !(cmd.startsWith(FLAG_LS_E_TAG) || cmd.endsWith(FLAG_LS_E_TAG));
+				_flaging = (flag & CommandStream.COMMENT_END) == 0;
 				return _executeCommand;
 			}
 
 			if (!_flaging) {
 				// 全局注释
-				if (cmd.startsWith(FLAG_LS_B_TAG) && !cmd.endsWith(FLAG_LS_E_TAG)) {
+				if ((flag & CommandStream.COMMENT_BEGIN) != 0) {
 					_flaging = true;
 					return _executeCommand;
-				} else if (cmd.startsWith(FLAG_LS_B_TAG) && cmd.endsWith(FLAG_LS_E_TAG)) {
+				} else if ((flag & CommandStream.COMMENT_LINE) != 0) {
 					return _executeCommand;
 				}
 			}
 
 			// 执行随机数标记
-			setupRandom(cmd);
+			setupRandom(cmd, stream.randTags[line]);
 
 			// 执行获取变量标记
-			setupSET(cmd);
+			setupSET(flag, stream.splits[line]);
 
 			// 结束脚本中代码段标记
-			if (cmd.endsWith(END_TAG)) {
+			if ((flag & CommandStream.END) != 0) {
 				_functioning = false;
 				return _executeCommand;
 			}
 
 			// 标注脚本中代码段标记
-			if (cmd.startsWith(BEGIN_TAG)) {
-				_temps = commandSplit(cmd);
-				if (_temps.size == 2) {
+			if ((flag & CommandStream.BEGIN) != 0) {
+				_temps = stream.splits[line];
+				if (_temps.length == 2) {
 					_functioning = true;
-					_functions.put(_temps.get(1), new String[0]);
+					_functions.put(_temps[1], new String[0]);
 					return _executeCommand;
 				}
 			}
@@ -810,10 +873,10 @@ public class Command extends Conversion implements LRelease {
 			}
 
 			// 执行代码段调用标记
-			if (((!_elseflag && !_ifing) || (_elseflag && _ifing)) && cmd.startsWith(CALL_TAG) && !_isCall) {
-				_temps = commandSplit(cmd);
-				if (_temps.size == 2) {
-					final String functionName = _temps.get(1);
+			if (((!_elseflag && !_ifing) || (_elseflag && _ifing)) && (flag & CommandStream.CALL) != 0 && !_isCall) {
+				_temps = stream.splits[line];
+				if (_temps.length == 2) {
+					final String functionName = _temps[1];
 					final String[] funs = (String[]) _functions.get(functionName);
 					if (funs != null) {
 						_innerCommand = new Command(_scriptName + FLAG + functionName, funs);
@@ -827,25 +890,24 @@ public class Command extends Conversion implements LRelease {
 
 			if (!_if_bool && !_elseif_bool) {
 				// 获得循序结构条件
-				_if_bool = cmd.startsWith(IF_TAG);
-				_elseif_bool = cmd.startsWith(ELSE_TAG);
+				_if_bool = (flag & CommandStream.IF) != 0;
+				_elseif_bool = (flag & CommandStream.ELSE) != 0;
 
 			}
 
 			// 条件判断a
 			if (_if_bool) {
-				setupIF(cmd, _nowPosFlagName, _setEnvironmentList, _conditionEnvironmentList);
+				setupIF(stream.splits[line], _nowPosFlagName, _setEnvironmentList, _conditionEnvironmentList);
 				_ifing = true;
 				// 条件判断b
 			} else if (_elseif_bool) {
-				final String[] value = StringUtils.split(cmd, LSystem.SPACE);
 				if (!_backIfBool && !_elseflag) {
 					// 存在if判断
-					if (value.length > 1 && IF_TAG.equals(value[1])) {
-						setupIF(StringUtils.replace(cmd, ELSE_TAG, LSystem.EMPTY).trim(), _nowPosFlagName,
-								_setEnvironmentList, _conditionEnvironmentList);
+					if ((flag & CommandStream.ELSE_IF) != 0) {
+						setupIF(stream.conditions[line], _nowPosFlagName, _setEnvironmentList,
+								_conditionEnvironmentList);
 						// 单纯的else
-					} else if (value.length == 1 && ELSE_TAG.equals(value[0])) {
+					} else if ((flag & CommandStream.ELSE_ONLY) != 0) {
 						if (!_elseover) {
 							setDefaultIF(true);
 						}
@@ -859,7 +921,7 @@ public class Command extends Conversion implements LRelease {
 			}
 
 			// 分支结束
-			if (cmd.startsWith(IF_END_TAG)) {
+			if ((flag & CommandStream.ENDIF) != 0) {
 				_conditionEnvironmentList.clear();
 				_backIfBool = false;
 				_addCommand = false;
@@ -871,18 +933,18 @@ public class Command extends Conversion implements LRelease {
 			}
 			if (_backIfBool) {
 				// 加载内部脚本
-				if (cmd.startsWith(INCLUDE_TAG)) {
-					if (includeCommand(cmd)) {
+				if ((flag & CommandStream.INCLUDE) != 0) {
+					if (includeCommand(stream.splits[line])) {
 						return null;
 					}
 				}
-			} else if (cmd.startsWith(INCLUDE_TAG) && !_ifing && !_backIfBool && !_elseflag) {
-				if (includeCommand(cmd)) {
+			} else if ((flag & CommandStream.INCLUDE) != 0 && !_ifing && !_backIfBool && !_elseflag) {
+				if (includeCommand(stream.splits[line])) {
 					return null;
 				}
 			}
 			// 选择项列表结束
-			if (cmd.startsWith(OUT_TAG)) {
+			if ((flag & CommandStream.OUT) != 0) {
 				_isRead = false;
 				_addCommand = false;
 				_executeCommand = (SELECTS_TAG + " " + _readBuffer.toString());
@@ -894,7 +956,7 @@ public class Command extends Conversion implements LRelease {
 				_addCommand = false;
 			}
 			// 选择项列表
-			if (cmd.startsWith(IN_TAG)) {
+			if ((flag & CommandStream.IN) != 0) {
 				_readBuffer.setLength(0);
 				_isRead = true;
 				return _executeCommand;
@@ -909,16 +971,16 @@ public class Command extends Conversion implements LRelease {
 				_executeCommand = cmd;
 			}
 
-			if (cmd.startsWith(FLAG_SAVE_TAG)) {
-				_temps = commandSplit(cmd);
-				if (_temps != null && _temps.size == 2) {
+			if ((flag & CommandStream.SAVE) != 0) {
+				_temps = stream.splits[line];
+				if (_temps != null && _temps.length == 2) {
 					_executeCommand = cmd;
 					saveCommand(null, null);
 					return _executeCommand;
 				}
-			} else if (cmd.startsWith(FLAG_LOAD_TAG)) {
-				_temps = commandSplit(cmd);
-				if (_temps != null && _temps.size == 2) {
+			} else if ((flag & CommandStream.LOAD) != 0) {
+				_temps = stream.splits[line];
+				if (_temps != null && _temps.length == 2) {
 					_executeCommand = cmd;
 					loadCommand(null, -1);
 					return _executeCommand;
@@ -927,10 +989,16 @@ public class Command extends Conversion implements LRelease {
 
 			// 替换脚本字符串内容
 			if (_executeCommand != null) {
-				_printTags = Command.getNameTags(_executeCommand, PRINT_TAG + BRACKET_LEFT_TAG, BRACKET_RIGHT_TAG);
+				if (_executeCommand == cmd) {
+					_printTags = stream.printTags[line];
+				} else {
+					final TArray<String> tags = Command.getNameTags(_executeCommand, PRINT_TAG + BRACKET_LEFT_TAG,
+							BRACKET_RIGHT_TAG);
+					_printTags = tags.toArray(new String[tags.size]);
+				}
 				if (_printTags != null) {
-					for (int i = 0; i < _printTags.size; i++) {
-						String key = _printTags.get(i);
+					for (int i = 0; i < _printTags.length; i++) {
+						String key = _printTags[i];
 						Object vl = _setEnvironmentList.get(key);
 						if (vl != null) {
 							_executeCommand = StringUtils.replaceMatch(_executeCommand,
@@ -945,15 +1013,18 @@ public class Command extends Conversion implements LRelease {
 				}
 
 				if (_isCache) {
+					if (_scriptContext.size() >= _scriptContextLimit) {
+						_scriptContext.clear();
+					}
 					// 注入脚本缓存
 					_scriptContext.put(_cacheCommandName, _executeCommand);
 				}
 			}
 			// 跳转到指定脚本位置
-			if (cmd.startsWith(GOTO_TAG)) {
-				_temps = commandSplit(cmd);
-				if (_temps != null && _temps.size == 2) {
-					final String gotoFlag = _temps.get(1);
+			if ((flag & CommandStream.GOTO) != 0) {
+				_temps = stream.splits[line];
+				if (_temps != null && _temps.length == 2) {
+					final String gotoFlag = _temps[1];
 					boolean jumped = false;
 					if (MathUtils.isNan(gotoFlag)) {
 						jumped = gotoIndex(MathUtils.ifloor(Float.parseFloat(gotoFlag)));
@@ -1001,13 +1072,13 @@ public class Command extends Conversion implements LRelease {
 	public final void saveCommand(String name, ArrayMap other) {
 		_isRead = false;
 		_addCommand = false;
-		if (name == null && _temps != null && _temps.size > 0) {
-			name = _temps.get(1);
+		if (name == null && _temps != null && _temps.length > 0) {
+			name = _temps[1];
 		}
 		Session session = new Session(getSaveName(name), false);
 		session.set("cmd_scriptName", _scriptName);
-		if (_scriptList != null) {
-			session.set("cmd_scriptList", _scriptList);
+		if (_stream != null) {
+			session.set("cmd_scriptList", _stream.lines);
 		}
 		session.set("cmd_scriptSize", _scriptSize);
 		session.set("cmd_isCache", _isCache);
@@ -1064,13 +1135,14 @@ public class Command extends Conversion implements LRelease {
 	public final ArrayMap loadCommand(String name, int line, TArray<String> other) {
 		_isRead = false;
 		_addCommand = false;
-		if (name == null && _temps != null && _temps.size > 0) {
-			name = _temps.get(1);
+		if (name == null && _temps != null && _temps.length > 0) {
+			name = _temps[1];
 		}
 		final Session session = Session.load(getSaveName(name));
 		if (session.getSize() > 0) {
 			_scriptName = session.get("cmd_scriptName");
-			_scriptList = session.getList("cmd_scriptList");
+			final String[] scriptList = session.getList("cmd_scriptList");
+			_stream = scriptList == null ? null : CommandStream.compile(_scriptName, scriptList);
 			_scriptSize = session.getInt("cmd_scriptSize", 0);
 			_isCache = session.getBoolean("cmd_isCache");
 			_setEnvironmentList.clear();
@@ -1106,7 +1178,7 @@ public class Command extends Conversion implements LRelease {
 	}
 
 	public String[] getCommands() {
-		return CollectionUtils.copyOf(_scriptList);
+		return _stream == null ? null : _stream.getLines();
 	}
 
 	/**
@@ -1115,11 +1187,11 @@ public class Command extends Conversion implements LRelease {
 	 * @param cmd
 	 * @return
 	 */
-	private final boolean includeCommand(String cmd) {
-		_temps = commandSplit(cmd);
+	private final boolean includeCommand(String[] temps) {
+		_temps = temps;
 		final StrBuilder sbr = new StrBuilder();
-		for (int i = 1; i < _temps.size; i++) {
-			sbr.append(_temps.get(i));
+		for (int i = 1; i < _temps.length; i++) {
+			sbr.append(_temps[i]);
 		}
 		final String fileName = sbr.toString();
 		if (fileName.length() > 0) {
@@ -1137,11 +1209,7 @@ public class Command extends Conversion implements LRelease {
 	 * @return
 	 */
 	public final static String[] includeFile(String fileName) {
-		final String context = TextResource.get().loadText(fileName);
-		if (StringUtils.isEmpty(context)) {
-			throw new LSysException("The script file [" + fileName + "] not found !");
-		}
-		return includeString(fileName.trim().toLowerCase(), context);
+		return includeStream(fileName).getLines();
 	}
 
 	/**
@@ -1151,45 +1219,153 @@ public class Command extends Conversion implements LRelease {
 	 * @return
 	 */
 	public final static String[] includeString(String key, String context) {
+		return includeStream(key, context).getLines();
+	}
+
+	/**
+	 * 加载指定脚本文件并编译,以COMPILED_SUFFIX结尾的文件按已编译的二进制指令流读取
+	 * 
+	 * @param fileName
+	 * @return
+	 */
+	public final static CommandStream includeStream(String fileName) {
+		final String key = fileName.trim().toLowerCase();
+		CommandStream stream = getScriptCache(key);
+		if (stream != null) {
+			return stream;
+		}
+		if (key.endsWith(CommandStream.COMPILED_SUFFIX)) {
+			final byte[] data = BaseIO.loadBytes(fileName);
+			if (data == null || data.length == 0) {
+				throw new LSysException("The script file [" + fileName + "] not found !");
+			}
+			stream = CommandStream.fromBytes(fileName, data);
+		} else {
+			// 脚本文本只用于编译,未被TextResource缓存时不再额外保留
+			final String context = TextResource.get().containsPath(fileName) ? TextResource.get().loadText(fileName)
+					: BaseIO.loadText(fileName);
+			if (StringUtils.isEmpty(context)) {
+				throw new LSysException("The script file [" + fileName + "] not found !");
+			}
+			stream = CommandStream.compile(fileName, context);
+		}
+		putScriptCache(key, stream);
+		return stream;
+	}
+
+	/**
+	 * 编译指定字符串为游戏脚本,相同key的脚本只编译一次
+	 * 
+	 * @param key
+	 * @param context
+	 * @return
+	 */
+	public final static CommandStream includeStream(String key, String context) {
 		if (StringUtils.isEmpty(context)) {
 			throw new LSysException("The key [" + key + "] of data is empty !");
 		}
-		if (_scriptLazy == null) {
-			_scriptLazy = new ArrayMap(100);
-		} else if (_scriptLazy.size() > 10000) {
-			_scriptLazy.clear();
+		CommandStream stream = getScriptCache(key);
+		if (stream == null) {
+			stream = CommandStream.compile(key, context);
+			putScriptCache(key, stream);
 		}
-		final int capacity = 2000;
-		String[] result = (String[]) _scriptLazy.get(key);
-		if (result == null) {
-			result = new String[capacity];
-			int length = capacity;
-			int index = 0;
-			try {
-				final StrTokenizer reader = new StrTokenizer(context, LSystem.NL);
-				String record = null;
-				for (; reader.hasMoreTokens();) {
-					record = reader.nextToken().trim();
-					if (record.length() > 0 && !record.startsWith(FLAG_L_TAG) && !record.startsWith(FLAG_C_TAG)
-							&& !record.startsWith(FLAG_I_TAG)) {
-						if (index >= length) {
-							result = (String[]) CollectionUtils.expand(result, capacity);
-							length += capacity;
-						}
-						result[index] = record;
-						index++;
-					}
-				}
-				result = CollectionUtils.copyOf(result, index);
-			} catch (Throwable ex) {
-				throw new LSysException("Command load error !", ex);
+		return stream;
+	}
+
+	private static class StreamEntry {
+
+		String key;
+
+		CommandStream stream;
+
+		StreamEntry prev;
+
+		StreamEntry next;
+	}
+
+	private static CommandStream getScriptCache(String key) {
+		synchronized (_scriptHead) {
+			if (_scriptLazy == null) {
+				return null;
 			}
-			_scriptLazy.put(key, result);
-			return result;
-		} else {
-			return CollectionUtils.copyOf(result);
+			final StreamEntry entry = _scriptLazy.get(key);
+			if (entry == null) {
+				return null;
+			}
+			unlinkScript(entry);
+			linkScript(entry);
+			return entry.stream;
 		}
+	}
 
+	private static void putScriptCache(String key, CommandStream stream) {
+		synchronized (_scriptHead) {
+			if (_scriptLazy == null) {
+				_scriptLazy = new ObjectMap<String, StreamEntry>(64);
+			}
+			StreamEntry entry = _scriptLazy.get(key);
+			if (entry != null) {
+				unlinkScript(entry);
+				_scriptLazyChars -= entry.stream.getCharCount();
+			} else {
+				entry = new StreamEntry();
+				entry.key = key;
+				_scriptLazy.put(key, entry);
+			}
+			entry.stream = stream;
+			_scriptLazyChars += stream.getCharCount();
+			linkScript(entry);
+			trimScriptCache();
+		}
+	}
+
+	private static void trimScriptCache() {
+		synchronized (_scriptHead) {
+			if (_scriptLazy == null) {
+				return;
+			}
+			// 最近使用的脚本总会保留
+			while (_scriptLazyChars > _scriptLazyLimit && _scriptHead.prev != _scriptHead.next) {
+				final StreamEntry eldest = _scriptHead.prev;
+				unlinkScript(eldest);
+				_scriptLazy.remove(eldest.key);
+				_scriptLazyChars -= eldest.stream.getCharCount();
+			}
+		}
+	}
+
+	private static void unlinkScript(StreamEntry entry) {
+		entry.prev.next = entry.next;
+		entry.next.prev = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+	}
+
+	private static void linkScript(StreamEntry entry) {
+		entry.next = _scriptHead.next;
+		entry.prev = _scriptHead;
+		_scriptHead.next.prev = entry;
+		_scriptHead.next = entry;
+	}
+
+	private static void clearScriptCache() {
+		synchronized (_scriptHead) {
+			if (_scriptLazy != null) {
+				_scriptLazy.clear();
+			}
+			_scriptHead.prev = _scriptHead;
+			_scriptHead.next = _scriptHead;
+			_scriptLazyChars = 0;
+		}
+	}
+
+	/**
+	 * 返回已编译脚本缓存占用的字符总数
+	 * 
+	 * @return
+	 */
+	public static int getScriptCacheChars() {
+		return _scriptLazyChars;
 	}
 
 	/**
@@ -1225,14 +1401,13 @@ public class Command extends Conversion implements LRelease {
 			_scriptContext.clear();
 			_scriptContext = null;
 		}
-		if (_scriptLazy != null) {
-			_scriptLazy.clear();
-			_scriptLazy = null;
-		}
+		clearScriptCache();
+		_scriptLazy = null;
 
 	}
 
 	public static void freeStatic() {
+		clearScriptCache();
 		_scriptLazy = null;
 		_scriptContext = null;
 		_functions = null;
@@ -1247,7 +1422,7 @@ public class Command extends Conversion implements LRelease {
 	@Override
 	public String toString() {
 		final StringKeyValue builder = new StringKeyValue("command");
-		builder.kv("script", _scriptList);
+		builder.kv("script", _stream == null ? null : _stream.lines);
 		return builder.toString();
 	}
 
@@ -1257,21 +1432,9 @@ public class Command extends Conversion implements LRelease {
 		if (_readBuffer != null) {
 			_readBuffer = null;
 		}
-		if (_temps != null) {
-			try {
-				_temps.clear();
-				_temps = null;
-			} catch (Throwable e) {
-			}
-		}
-		if (_printTags != null) {
-			_printTags.clear();
-			_printTags = null;
-		}
-		if (_randTags != null) {
-			_randTags.clear();
-			_randTags = null;
-		}
+		_temps = null;
+		_printTags = null;
+		_randTags = null;
 		if (exp != null) {
 			exp.close();
 		}
@@ -0,0 +1,404 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.avg.drama;
+
+import loon.LSysException;
+import loon.LSystem;
+import loon.utils.ArrayByte;
+import loon.utils.ObjectMap;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+import loon.utils.parse.StrTokenizer;
+
+/**
+ * Command脚本预编译后的指令流.
+ *
+ * 每行脚本的命令类型,参数拆分,print与rand标记以及跳转标签均在编译时解析完毕,Command执行时不再重复分析字符串.
+ * 指令流可以序列化为二进制数据离线保存,载入时无需再解析脚本文本.
+ */
+public final class CommandStream {
+
+	// 行命令类型,与Command.doExecute中的判断一一对应
+	static final int RESET = 1;
+	static final int COMMENT_BEGIN = 1 << 1;
+	static final int COMMENT_LINE = 1 << 2;
+	static final int COMMENT_END = 1 << 3;
+	static final int END = 1 << 4;
+	static final int BEGIN = 1 << 5;
+	static final int CALL = 1 << 6;
+	static final int IF = 1 << 7;
+	static final int ELSE = 1 << 8;
+	static final int ELSE_IF = 1 << 9;
+	static final int ELSE_ONLY = 1 << 10;
+	static final int ENDIF = 1 << 11;
+	static final int INCLUDE = 1 << 12;
+	static final int OUT = 1 << 13;
+	static final int IN = 1 << 14;
+	static final int SAVE = 1 << 15;
+	static final int LOAD = 1 << 16;
+	static final int GOTO = 1 << 17;
+	static final int SET = 1 << 18;
+	static final int RAND = 1 << 19;
+	static final int PRINT = 1 << 20;
+
+	private static final int MAGIC = 0x4C434D44;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * 预编译脚本文件的默认后缀,Command载入此后缀的文件时按二进制指令流读取
+	 */
+	public static final String COMPILED_SUFFIX = ".lcmd";
+
+	private static final String[] EMPTY = new String[0];
+
+	final String name;
+
+	final String[] lines;
+
+	final int[] flags;
+
+	// commandSplit的结果,只有需要拆分参数的行才有
+	final String[][] splits;
+
+	// else if行去除else后的条件拆分
+	final String[][] conditions;
+
+	final String[][] printTags;
+
+	final String[][] randTags;
+
+	// 标签(整行文本)到首次出现行的映射,首次查找时建立
+	private ObjectMap<String, Integer> _labels;
+
+	private int _charCount = -1;
+
+	private CommandStream(String name, String[] lines, int[] flags, String[][] splits, String[][] conditions,
+			String[][] printTags, String[][] randTags) {
+		this.name = name;
+		this.lines = lines;
+		this.flags = flags;
+		this.splits = splits;
+		this.conditions = conditions;
+		this.printTags = printTags;
+		this.randTags = randTags;
+	}
+
+	/**
+	 * 编译脚本文本,过滤空行与注释行(规则与Command.includeString一致)
+	 *
+	 * @param name
+	 * @param context
+	 * @return
+	 */
+	public static CommandStream compile(String name, String context) {
+		if (StringUtils.isEmpty(context)) {
+			throw new LSysException("The key [" + name + "] of data is empty !");
+		}
+		final TArray<String> list = new TArray<String>(128);
+		try {
+			final StrTokenizer reader = new StrTokenizer(context, LSystem.NL);
+			for (; reader.hasMoreTokens();) {
+				final String record = reader.nextToken().trim();
+				if (record.length() > 0 && !record.startsWith(Expression.FLAG_L_TAG)
+						&& !record.startsWith(Expression.FLAG_C_TAG) && !record.startsWith(Expression.FLAG_I_TAG)) {
+					list.add(record);
+				}
+			}
+		} catch (Throwable ex) {
+			throw new LSysException("Command load error !", ex);
+		}
+		return compile(name, list.toArray(new String[list.size]));
+	}
+
+	/**
+	 * 编译已经分行的脚本
+	 *
+	 * @param name
+	 * @param res
+	 * @return
+	 */
+	public static CommandStream compile(String name, String[] res) {
+		final int size = res.length;
+		final String[] lines = new String[size];
+		final int[] flags = new int[size];
+		final String[][] splits = new String[size][];
+		final String[][] conditions = new String[size][];
+		final String[][] printTags = new String[size][];
+		final String[][] randTags = new String[size][];
+		for (int i = 0; i < size; i++) {
+			final String cmd = res[i] == null ? LSystem.EMPTY : res[i].trim();
+			lines[i] = cmd;
+			int flag = 0;
+			if (cmd.startsWith(Expression.RESET_CACHE_TAG)) {
+				flag |= RESET;
+			}
+			if (cmd.startsWith(Expression.FLAG_LS_B_TAG)) {
+				flag |= cmd.endsWith(Expression.FLAG_LS_E_TAG) ? COMMENT_LINE : COMMENT_BEGIN;
+			}
+			if (cmd.startsWith(Expression.FLAG_LS_E_TAG) || cmd.endsWith(Expression.FLAG_LS_E_TAG)) {
+				flag |= COMMENT_END;
+			}
+			if (cmd.endsWith(Expression.END_TAG)) {
+				flag |= END;
+			}
+			if (cmd.startsWith(Expression.BEGIN_TAG)) {
+				flag |= BEGIN;
+			}
+			if (cmd.startsWith(Expression.CALL_TAG)) {
+				flag |= CALL;
+			}
+			if (cmd.startsWith(Expression.IF_TAG)) {
+				flag |= IF;
+			}
+			if (cmd.startsWith(Expression.ELSE_TAG)) {
+				flag |= ELSE;
+				final String[] value = StringUtils.split(cmd, LSystem.SPACE);
+				if (value.length > 1 && Expression.IF_TAG.equals(value[1])) {
+					flag |= ELSE_IF;
+					conditions[i] = split(
+							StringUtils.replace(cmd, Expression.ELSE_TAG, LSystem.EMPTY).trim());
+				} else if (value.length == 1 && Expression.ELSE_TAG.equals(value[0])) {
+					flag |= ELSE_ONLY;
+				}
+			}
+			if (cmd.startsWith(Expression.IF_END_TAG)) {
+				flag |= ENDIF;
+			}
+			if (cmd.startsWith(Expression.INCLUDE_TAG)) {
+				flag |= INCLUDE;
+			}
+			if (cmd.startsWith(Expression.OUT_TAG)) {
+				flag |= OUT;
+			}
+			if (cmd.startsWith(Expression.IN_TAG)) {
+				flag |= IN;
+			}
+			if (cmd.startsWith(Expression.FLAG_SAVE_TAG)) {
+				flag |= SAVE;
+			}
+			if (cmd.startsWith(Expression.FLAG_LOAD_TAG)) {
+				flag |= LOAD;
+			}
+			if (cmd.startsWith(Expression.GOTO_TAG)) {
+				flag |= GOTO;
+			}
+			if (cmd.startsWith(Expression.SET_TAG)) {
+				flag |= SET;
+			}
+			if (cmd.indexOf(Expression.RAND_TAG) != -1) {
+				final TArray<String> tags = Command.getNameTags(cmd,
+						Expression.RAND_TAG + Expression.BRACKET_LEFT_TAG, Expression.BRACKET_RIGHT_TAG);
+				if (tags.size > 0) {
+					flag |= RAND;
+					randTags[i] = tags.toArray(new String[tags.size]);
+				}
+			}
+			if (hasSequence(cmd, PRINT_START)) {
+				final TArray<String> tags = Command.getNameTags(cmd,
+						Expression.PRINT_TAG + Expression.BRACKET_LEFT_TAG, Expression.BRACKET_RIGHT_TAG);
+				if (tags.size > 0) {
+					flag |= PRINT;
+					printTags[i] = tags.toArray(new String[tags.size]);
+				}
+			}
+			if ((flag & (BEGIN | CALL | IF | INCLUDE | SAVE | LOAD | GOTO | SET)) != 0) {
+				splits[i] = split(cmd);
+			}
+			flags[i] = flag;
+		}
+		return new CommandStream(name, lines, flags, splits, conditions, printTags, randTags);
+	}
+
+	private static final String PRINT_START = Expression.PRINT_TAG + Expression.BRACKET_LEFT_TAG;
+
+	/**
+	 * getNameTags只在起始标记的字符按序出现且其后存在结束标记时才会有结果,先用此方法过滤掉绝大多数行
+	 *
+	 * @param cmd
+	 * @param start
+	 * @return
+	 */
+	private static boolean hasSequence(String cmd, String start) {
+		final int size = start.length();
+		int idx = 0;
+		for (int i = 0, len = cmd.length(); i < len; i++) {
+			if (idx < size) {
+				if (cmd.charAt(i) == start.charAt(idx)) {
+					idx++;
+				}
+			} else if (cmd.charAt(i) == ')') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String[] split(String cmd) {
+		return Conversion.updateOperator(cmd).split(Expression.FLAG);
+	}
+
+	/**
+	 * 返回指定标签(与整行文本相同)首次出现的行,不存在时返回-1
+	 *
+	 * @param label
+	 * @return
+	 */
+	public int indexOf(String label) {
+		ObjectMap<String, Integer> labels = _labels;
+		if (labels == null) {
+			labels = new ObjectMap<String, Integer>(lines.length);
+			for (int i = lines.length - 1; i > -1; i--) {
+				labels.put(lines[i], i);
+			}
+			_labels = labels;
+		}
+		final Integer idx = labels.get(label);
+		return idx == null ? -1 : idx.intValue();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int size() {
+		return lines.length;
+	}
+
+	public String getLine(int index) {
+		return lines[index];
+	}
+
+	/**
+	 * 返回脚本行的副本
+	 *
+	 * @return
+	 */
+	public String[] getLines() {
+		final String[] result = new String[lines.length];
+		System.arraycopy(lines, 0, result, 0, lines.length);
+		return result;
+	}
+
+	/**
+	 * 脚本文本的字符总数,用于估算缓存占用
+	 *
+	 * @return
+	 */
+	public int getCharCount() {
+		if (_charCount == -1) {
+			int count = 0;
+			for (int i = 0; i < lines.length; i++) {
+				count += lines[i].length();
+			}
+			_charCount = count;
+		}
+		return _charCount;
+	}
+
+	/**
+	 * 序列化为二进制指令流
+	 *
+	 * @return
+	 */
+	public byte[] toBytes() {
+		final ArrayByte out = new ArrayByte(getCharCount() * 2 + 64);
+		out.setExpandArray(true);
+		out.writeInt(MAGIC);
+		out.writeVarInt(VERSION);
+		out.writeVarInt(lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			out.writeUTF8(lines[i]);
+			out.writeVarInt(flags[i]);
+			writeStrings(out, splits[i]);
+			writeStrings(out, conditions[i]);
+			writeStrings(out, printTags[i]);
+			writeStrings(out, randTags[i]);
+		}
+		return out.getBytes();
+	}
+
+	/**
+	 * 读取toBytes生成的二进制指令流
+	 *
+	 * @param name
+	 * @param data
+	 * @return
+	 */
+	public static CommandStream fromBytes(String name, byte[] data) {
+		final ArrayByte in = new ArrayByte(data);
+		if (data.length < 4 || in.readInt() != MAGIC) {
+			throw new LSysException("The data [" + name + "] is not a command stream !");
+		}
+		final int version = in.readVarInt();
+		if (version != VERSION) {
+			throw new LSysException("Unsupported command stream version " + version + " !");
+		}
+		final int size = in.readVarInt();
+		final String[] lines = new String[size];
+		final int[] flags = new int[size];
+		final String[][] splits = new String[size][];
+		final String[][] conditions = new String[size][];
+		final String[][] printTags = new String[size][];
+		final String[][] randTags = new String[size][];
+		for (int i = 0; i < size; i++) {
+			lines[i] = in.readUTF8();
+			flags[i] = in.readVarInt();
+			splits[i] = readStrings(in);
+			conditions[i] = readStrings(in);
+			printTags[i] = readStrings(in);
+			randTags[i] = readStrings(in);
+		}
+		return new CommandStream(name, lines, flags, splits, conditions, printTags, randTags);
+	}
+
+	private static void writeStrings(ArrayByte out, String[] values) {
+		if (values == null) {
+			out.writeVarInt(0);
+			return;
+		}
+		out.writeVarInt(values.length + 1);
+		for (int i = 0; i < values.length; i++) {
+			out.writeUTF8(values[i]);
+		}
+	}
+
+	private static String[] readStrings(ArrayByte in) {
+		final int size = in.readVarInt() - 1;
+		if (size < 0) {
+			return null;
+		}
+		if (size == 0) {
+			return EMPTY;
+		}
+		final String[] values = new String[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = in.readUTF8();
+		}
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return "CommandStream[name=" + name + ", lines=" + lines.length + "]";
+	}
+
+}
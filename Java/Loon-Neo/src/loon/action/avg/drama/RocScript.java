@@ -25,6 +25,7 @@ import loon.LSystem;
 import loon.utils.Array;
 import loon.utils.ArrayMap;
 import loon.utils.CharUtils;
+import loon.utils.IntMap;
 import loon.utils.MathUtils;
 import loon.utils.StrBuilder;
 import loon.utils.StringUtils;
@@ -157,6 +158,11 @@ public class RocScript {
 	private char[] _cmdcontexts;
 	protected long _sleep = -1;
 
+	// 以起始位置缓存切分结果,循环与函数体再次执行时不必逐字符重新切分
+	private final IntMap<Token> _tokens = new IntMap<Token>();
+
+	private boolean _cacheTokens = true;
+
 	private boolean _stop = false;
 
 	private int textIdx;
@@ -281,6 +287,23 @@ public class RocScript {
 		}
 	}
 
+	/**
+	 * 已切分的单词,只与脚本文本及其起始位置有关,变量,函数与命令的判定仍在每次读取时进行
+	 */
+	final static class Token {
+		final String item;
+		final int type;
+		final int next;
+		final int lines;
+
+		Token(String item, int type, int next, int lines) {
+			this.item = item;
+			this.type = type;
+			this.next = next;
+			this.lines = lines;
+		}
+	}
+
 	private void splitFlag(String src, StrBuilder out, char flag) {
 		char[] chars = src.toCharArray();
 		for (int i = 0; i < chars.length; i++) {
@@ -288,7 +311,7 @@ public class RocScript {
 			if (ch == flag) {
 				out.append(flag);
 				if (i + 1 < chars.length && chars[i + 1] != LSystem.LF) {
-					out.append(LSystem.LS);
+					out.append(LSystem.NL);
 				}
 			} else {
 				out.append(ch);
@@ -346,7 +369,7 @@ public class RocScript {
 			} else {
 				out.append(cmd);
 			}
-			out.append(LSystem.LS);
+			out.append(LSystem.NL);
 		}
 		return out.toString();
 	}
@@ -463,6 +486,22 @@ public class RocScript {
 		return this.debug;
 	}
 
+	/**
+	 * 是否缓存脚本的切分结果(默认开启,关闭时每次执行都逐字符重新切分)
+	 *
+	 * @param c
+	 */
+	public void setCacheTokens(boolean c) {
+		this._cacheTokens = c;
+		if (!c) {
+			_tokens.clear();
+		}
+	}
+
+	public boolean isCacheTokens() {
+		return this._cacheTokens;
+	}
+
 	public void stop() {
 		_stop = true;
 	}
@@ -1230,7 +1269,9 @@ public class RocScript {
 	 */
 	private boolean nextItem() throws ScriptException {
 		boolean result = nextCommand();
-		debug(new String[] { "Item: " + item, "CommandStack: " + commands, "Type: " + itemType });
+		if (debug) {
+			debug(new String[] { "Item: " + item, "CommandStack: " + commands, "Type: " + itemType });
+		}
 
 		return result;
 	}
@@ -1265,6 +1306,21 @@ public class RocScript {
 		commType = UNKNCOM;
 		macroType = -1;
 
+		final int start = textIdx;
+		if (_cacheTokens) {
+			final Token token = _tokens.get(start);
+			if (token != null) {
+				item = token.item;
+				textIdx = token.next;
+				textLine += token.lines;
+				if (token.type != VARIABLE) {
+					itemType = token.type;
+					return true;
+				}
+				return lookupWord();
+			}
+		}
+
 		while (textIdx < _cmdcontexts.length && isSpaceOrTab(_cmdcontexts[textIdx])) {
 			textIdx++;
 		}
@@ -1280,6 +1336,7 @@ public class RocScript {
 			itemType = EOL;
 			item = " ";
 			textLine++;
+			cacheToken(start, 1);
 			return true;
 		}
 
@@ -1293,6 +1350,7 @@ public class RocScript {
 			itemType = EOL;
 			item = " ";
 			textLine++;
+			cacheToken(start, 1);
 			return true;
 		}
 
@@ -1328,6 +1386,7 @@ public class RocScript {
 
 			}
 			itemType = DELIMITER;
+			cacheToken(start, 0);
 			return true;
 		}
 
@@ -1335,6 +1394,7 @@ public class RocScript {
 			item += _cmdcontexts[textIdx];
 			textIdx++;
 			itemType = DELIMITER;
+			cacheToken(start, 0);
 			return true;
 		} else if (ch == '"') {
 			textIdx++;
@@ -1350,55 +1410,77 @@ public class RocScript {
 			}
 			textIdx++;
 			itemType = STRING;
+			cacheToken(start, 0);
 			return true;
 		} else {
+			final int wordStart = textIdx;
 			while (textIdx < _cmdcontexts.length && !isDelim(_cmdcontexts[textIdx])) {
-				item += _cmdcontexts[textIdx];
 				textIdx++;
 			}
+			item = new String(_cmdcontexts, wordStart, textIdx - wordStart);
 			if (isNumber(item)) {
 				itemType = NUMBER;
+				cacheToken(start, 0);
 				return true;
 			} else if (isBoolean(item)) {
 				itemType = BOOLEAN;
+				cacheToken(start, 0);
 				return true;
 			} else {
-				// 匹配命令
-				itemType = lookup(item);
-				if (itemType == UNKNCOM) {
-					itemType = VARIABLE;
+				itemType = VARIABLE;
+				cacheToken(start, 0);
+				return lookupWord();
+			}
+		}
+	}
+
+	private void cacheToken(int start, int lines) {
+		if (_cacheTokens) {
+			_tokens.put(start, new Token(item, itemType, textIdx, lines));
+		}
+	}
+
+	/**
+	 * 判定单词是变量,函数,命令还是宏指令(取决于当前已定义的变量与函数,不能缓存)
+	 * 
+	 * @return
+	 * @throws ScriptException
+	 */
+	private boolean lookupWord() throws ScriptException {
+		// 匹配命令
+		itemType = lookup(item);
+		if (itemType == UNKNCOM) {
+			itemType = VARIABLE;
+		}
+		if (commType == WAIT) {
+			item = LSystem.EMPTY;
+			int count = 0;
+			while (textIdx < _cmdcontexts.length) {
+				final char ch = _cmdcontexts[textIdx];
+				if ((ch == LSystem.SPACE) || (ch == LSystem.LF) || (ch == LSystem.TF) || (ch == LSystem.CR)) {
+					count++;
 				}
-				if (commType == WAIT) {
-					item = LSystem.EMPTY;
-					int count = 0;
-					while (textIdx < _cmdcontexts.length) {
-						ch = _cmdcontexts[textIdx];
-						if ((ch == LSystem.SPACE) || (ch == LSystem.LF) || (ch == LSystem.TF) || (ch == LSystem.CR)) {
-							count++;
-						}
-						if (count > 1) {
-							break;
-						}
-						if (ch != LSystem.SPACE) {
-							item += _cmdcontexts[textIdx];
-						}
-						textIdx++;
-					}
-					long sleep = 0;
-					if (isNumber(item)) {
-						sleep = (long) Double.parseDouble(item);
-					} else {
-						sleep = getWaitTime(item);
-					}
-					if (sleep <= 0) {
-						sleep = 1;
-					}
-					_sleep = sleep;
-					nextItem();
+				if (count > 1) {
+					break;
 				}
-				return true;
+				if (ch != LSystem.SPACE) {
+					item += _cmdcontexts[textIdx];
+				}
+				textIdx++;
+			}
+			long sleep = 0;
+			if (isNumber(item)) {
+				sleep = (long) Double.parseDouble(item);
+			} else {
+				sleep = getWaitTime(item);
+			}
+			if (sleep <= 0) {
+				sleep = 1;
 			}
+			_sleep = sleep;
+			nextItem();
 		}
+		return true;
 	}
 
 	public long getWaitTime(String item) {
@@ -0,0 +1,862 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.collision;
+
+import loon.geom.RectBox;
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.LIterator;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * 动态AABB树(Dynamic Bounding Volume Tree)碰撞检查器,适合物体尺寸差异大或世界范围不固定的场合.
+ *
+ * 每个物体对应树上一个叶节点,叶节点保存放大了margin的"胖"包围盒,物体在胖包围盒内移动时不需要修改树,
+ * 超出时才移除并重新插入(沿途更新祖先节点包围盒并通过旋转保持平衡).树节点以数组存储,查询使用int栈,不创建节点对象.
+ *
+ * 除CollisionChecker接口外,还提供区域查询,射线查询与成对(pair)检测.
+ */
+public final class AABBTreeCollisionChecker implements CollisionChecker {
+
+	public static interface PairCallback {
+
+		public void onPair(CollisionObject a, CollisionObject b);
+
+	}
+
+	private final static int NULL_NODE = -1;
+
+	private final static float DISPLACEMENT_MULTIPLIER = 4f;
+
+	private int _root = NULL_NODE;
+
+	private int _capacity;
+
+	private int _nodeCount;
+
+	private int _freeList;
+
+	private float[] _minX, _minY, _maxX, _maxY;
+
+	private int[] _parent, _child1, _child2, _height;
+
+	private CollisionObject[] _objects;
+
+	private boolean[] _moved;
+
+	private final ObjectMap<CollisionObject, Integer> _proxies = new ObjectMap<CollisionObject, Integer>();
+
+	private final IntArray _stack = new IntArray(64);
+
+	private final IntArray _moveBuffer = new IntArray();
+
+	private final CollisionBaseQuery actorQuery = new CollisionBaseQuery();
+
+	private final CollisionNeighbourQuery neighbourQuery = new CollisionNeighbourQuery();
+
+	private final CollisionPointQuery pointQuery = new CollisionPointQuery();
+
+	private final CollisionInRangeQuery inRangeQuery = new CollisionInRangeQuery();
+
+	private int cellSizeX, cellSizeY;
+
+	private float _margin = -1f;
+
+	private boolean _itlayer = false;
+
+	private Vector2f _offsetLocation = new Vector2f();
+
+	public AABBTreeCollisionChecker() {
+		this(64);
+	}
+
+	public AABBTreeCollisionChecker(int capacity) {
+		allocate(MathUtils.max(16, capacity));
+	}
+
+	private void allocate(int capacity) {
+		final int old = _capacity;
+		_minX = copyOf(_minX, capacity);
+		_minY = copyOf(_minY, capacity);
+		_maxX = copyOf(_maxX, capacity);
+		_maxY = copyOf(_maxY, capacity);
+		_parent = copyOf(_parent, capacity);
+		_child1 = copyOf(_child1, capacity);
+		_child2 = copyOf(_child2, capacity);
+		_height = copyOf(_height, capacity);
+		final CollisionObject[] objects = new CollisionObject[capacity];
+		if (_objects != null) {
+			System.arraycopy(_objects, 0, objects, 0, old);
+		}
+		_objects = objects;
+		final boolean[] moved = new boolean[capacity];
+		if (_moved != null) {
+			System.arraycopy(_moved, 0, moved, 0, old);
+		}
+		_moved = moved;
+		for (int i = old; i < capacity - 1; i++) {
+			_parent[i] = i + 1;
+			_height[i] = -1;
+		}
+		_parent[capacity - 1] = NULL_NODE;
+		_height[capacity - 1] = -1;
+		_freeList = old;
+		_capacity = capacity;
+	}
+
+	private static float[] copyOf(float[] src, int size) {
+		final float[] dst = new float[size];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, src.length);
+		}
+		return dst;
+	}
+
+	private static int[] copyOf(int[] src, int size) {
+		final int[] dst = new int[size];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, src.length);
+		}
+		return dst;
+	}
+
+	private int allocateNode() {
+		if (_freeList == NULL_NODE) {
+			allocate(_capacity << 1);
+		}
+		final int node = _freeList;
+		_freeList = _parent[node];
+		_parent[node] = NULL_NODE;
+		_child1[node] = NULL_NODE;
+		_child2[node] = NULL_NODE;
+		_height[node] = 0;
+		_objects[node] = null;
+		_nodeCount++;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		_parent[node] = _freeList;
+		_height[node] = -1;
+		_objects[node] = null;
+		_freeList = node;
+		_nodeCount--;
+	}
+
+	@Override
+	public void initialize(int size) {
+		this.initialize(size, size);
+	}
+
+	@Override
+	public void initialize(int tsx, int tsy) {
+		this.cellSizeX = MathUtils.max(1, tsx);
+		this.cellSizeY = MathUtils.max(1, tsy);
+	}
+
+	/**
+	 * 设置叶节点包围盒的放大值(像素),小于0时使用网格尺寸的1/4
+	 *
+	 * @param margin
+	 */
+	public void setMargin(float margin) {
+		this._margin = margin;
+	}
+
+	public float getMargin() {
+		return _margin < 0f ? MathUtils.max(cellSizeX, cellSizeY) / 4f : _margin;
+	}
+
+	private boolean isLeaf(int node) {
+		return _child1[node] == NULL_NODE;
+	}
+
+	private static float perimeter(float minX, float minY, float maxX, float maxY) {
+		return 2f * ((maxX - minX) + (maxY - minY));
+	}
+
+	private float perimeter(int node) {
+		return perimeter(_minX[node], _minY[node], _maxX[node], _maxY[node]);
+	}
+
+	private void combine(int node, int a, int b) {
+		_minX[node] = MathUtils.min(_minX[a], _minX[b]);
+		_minY[node] = MathUtils.min(_minY[a], _minY[b]);
+		_maxX[node] = MathUtils.max(_maxX[a], _maxX[b]);
+		_maxY[node] = MathUtils.max(_maxY[a], _maxY[b]);
+	}
+
+	private void setFatBounds(int node, RectBox r) {
+		final float margin = getMargin();
+		_minX[node] = r.x - margin;
+		_minY[node] = r.y - margin;
+		_maxX[node] = r.x + r.width + margin;
+		_maxY[node] = r.y + r.height + margin;
+	}
+
+	@Override
+	public synchronized void addObject(CollisionObject actor) {
+		if (actor == null || _proxies.containsKey(actor)) {
+			return;
+		}
+		final int leaf = allocateNode();
+		_objects[leaf] = actor;
+		setFatBounds(leaf, actor.getBoundingRect());
+		insertLeaf(leaf);
+		_proxies.put(actor, Integer.valueOf(leaf));
+		markMoved(leaf);
+	}
+
+	@Override
+	public synchronized void removeObject(CollisionObject actor) {
+		final Integer proxy = _proxies.remove(actor);
+		if (proxy == null) {
+			return;
+		}
+		final int leaf = proxy.intValue();
+		removeLeaf(leaf);
+		if (_moved[leaf]) {
+			_moved[leaf] = false;
+			_moveBuffer.removeValue(leaf);
+		}
+		freeNode(leaf);
+	}
+
+	private void updateObject(CollisionObject actor, float dx, float dy) {
+		final Integer proxy = _proxies.get(actor);
+		if (proxy == null) {
+			return;
+		}
+		final int leaf = proxy.intValue();
+		final RectBox r = actor.getBoundingRect();
+		// 仍在胖包围盒内时无需修改树
+		if (r.x >= _minX[leaf] && r.y >= _minY[leaf] && r.x + r.width <= _maxX[leaf]
+				&& r.y + r.height <= _maxY[leaf]) {
+			return;
+		}
+		removeLeaf(leaf);
+		setFatBounds(leaf, r);
+		// 沿移动方向预留更多空间,减少持续移动物体的重新插入次数
+		final float px = dx * DISPLACEMENT_MULTIPLIER;
+		final float py = dy * DISPLACEMENT_MULTIPLIER;
+		if (px < 0f) {
+			_minX[leaf] += px;
+		} else {
+			_maxX[leaf] += px;
+		}
+		if (py < 0f) {
+			_minY[leaf] += py;
+		} else {
+			_maxY[leaf] += py;
+		}
+		insertLeaf(leaf);
+		markMoved(leaf);
+	}
+
+	private void markMoved(int leaf) {
+		if (!_moved[leaf]) {
+			_moved[leaf] = true;
+			_moveBuffer.add(leaf);
+		}
+	}
+
+	@Override
+	public synchronized void updateObjectLocation(CollisionObject actor, float oldX, float oldY) {
+		final RectBox r = actor.getBoundingRect();
+		updateObject(actor, r.x - oldX, r.y - oldY);
+	}
+
+	@Override
+	public synchronized void updateObjectSize(CollisionObject actor) {
+		updateObject(actor, 0f, 0f);
+	}
+
+	private void insertLeaf(int leaf) {
+		if (_root == NULL_NODE) {
+			_root = leaf;
+			_parent[leaf] = NULL_NODE;
+			return;
+		}
+		final float lMinX = _minX[leaf], lMinY = _minY[leaf], lMaxX = _maxX[leaf], lMaxY = _maxY[leaf];
+		// 以周长为代价寻找最佳兄弟节点
+		int index = _root;
+		for (; !isLeaf(index);) {
+			final int child1 = _child1[index];
+			final int child2 = _child2[index];
+			final float area = perimeter(index);
+			final float combinedArea = perimeter(MathUtils.min(_minX[index], lMinX), MathUtils.min(_minY[index], lMinY),
+					MathUtils.max(_maxX[index], lMaxX), MathUtils.max(_maxY[index], lMaxY));
+			final float cost = 2f * combinedArea;
+			final float inheritanceCost = 2f * (combinedArea - area);
+			final float cost1 = descendCost(child1, lMinX, lMinY, lMaxX, lMaxY) + inheritanceCost;
+			final float cost2 = descendCost(child2, lMinX, lMinY, lMaxX, lMaxY) + inheritanceCost;
+			if (cost < cost1 && cost < cost2) {
+				break;
+			}
+			index = cost1 < cost2 ? child1 : child2;
+		}
+		final int sibling = index;
+		final int oldParent = _parent[sibling];
+		final int newParent = allocateNode();
+		_parent[newParent] = oldParent;
+		combine(newParent, leaf, sibling);
+		_height[newParent] = _height[sibling] + 1;
+		if (oldParent != NULL_NODE) {
+			if (_child1[oldParent] == sibling) {
+				_child1[oldParent] = newParent;
+			} else {
+				_child2[oldParent] = newParent;
+			}
+		} else {
+			_root = newParent;
+		}
+		_child1[newParent] = sibling;
+		_child2[newParent] = leaf;
+		_parent[sibling] = newParent;
+		_parent[leaf] = newParent;
+		refit(_parent[leaf]);
+	}
+
+	private float descendCost(int child, float lMinX, float lMinY, float lMaxX, float lMaxY) {
+		final float combined = perimeter(MathUtils.min(_minX[child], lMinX), MathUtils.min(_minY[child], lMinY),
+				MathUtils.max(_maxX[child], lMaxX), MathUtils.max(_maxY[child], lMaxY));
+		if (isLeaf(child)) {
+			return combined;
+		}
+		return combined - perimeter(child);
+	}
+
+	/**
+	 * 自指定节点向上更新包围盒与高度,并在需要时旋转
+	 */
+	private void refit(int index) {
+		for (; index != NULL_NODE;) {
+			index = balance(index);
+			final int child1 = _child1[index];
+			final int child2 = _child2[index];
+			_height[index] = 1 + MathUtils.max(_height[child1], _height[child2]);
+			combine(index, child1, child2);
+			index = _parent[index];
+		}
+	}
+
+	private void removeLeaf(int leaf) {
+		if (leaf == _root) {
+			_root = NULL_NODE;
+			return;
+		}
+		final int parent = _parent[leaf];
+		final int grandParent = _parent[parent];
+		final int sibling = _child1[parent] == leaf ? _child2[parent] : _child1[parent];
+		if (grandParent != NULL_NODE) {
+			if (_child1[grandParent] == parent) {
+				_child1[grandParent] = sibling;
+			} else {
+				_child2[grandParent] = sibling;
+			}
+			_parent[sibling] = grandParent;
+			freeNode(parent);
+			refit(grandParent);
+		} else {
+			_root = sibling;
+			_parent[sibling] = NULL_NODE;
+			freeNode(parent);
+		}
+		_parent[leaf] = NULL_NODE;
+	}
+
+	/**
+	 * 若节点A的左右子树高度差大于1则旋转,返回旋转后该位置的根节点
+	 */
+	private int balance(int a) {
+		if (isLeaf(a) || _height[a] < 2) {
+			return a;
+		}
+		final int b = _child1[a];
+		final int c = _child2[a];
+		final int balance = _height[c] - _height[b];
+		if (balance > 1) {
+			return rotate(a, c, b, true);
+		}
+		if (balance < -1) {
+			return rotate(a, b, c, false);
+		}
+		return a;
+	}
+
+	/**
+	 * 把较高的子节点up提升到a的位置,a变为其子节点
+	 */
+	private int rotate(int a, int up, int other, boolean upIsChild2) {
+		final int f = _child1[up];
+		final int g = _child2[up];
+		_child1[up] = a;
+		_parent[up] = _parent[a];
+		_parent[a] = up;
+		final int upParent = _parent[up];
+		if (upParent != NULL_NODE) {
+			if (_child1[upParent] == a) {
+				_child1[upParent] = up;
+			} else {
+				_child2[upParent] = up;
+			}
+		} else {
+			_root = up;
+		}
+		final int keep, move;
+		if (_height[f] > _height[g]) {
+			keep = f;
+			move = g;
+		} else {
+			keep = g;
+			move = f;
+		}
+		_child2[up] = keep;
+		if (upIsChild2) {
+			_child2[a] = move;
+		} else {
+			_child1[a] = move;
+		}
+		_parent[move] = a;
+		combine(a, other, move);
+		combine(up, a, keep);
+		_height[a] = 1 + MathUtils.max(_height[other], _height[move]);
+		_height[up] = 1 + MathUtils.max(_height[a], _height[keep]);
+		return up;
+	}
+
+	/**
+	 * 查询与指定区域相交(以胖包围盒计)且满足query的物体,query为null时不过滤
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param query
+	 * @param out
+	 * @return
+	 */
+	public synchronized TArray<CollisionObject> query(float x, float y, float w, float h, CollisionQuery query,
+			TArray<CollisionObject> out) {
+		if (_root == NULL_NODE) {
+			return out;
+		}
+		final float qMaxX = x + w;
+		final float qMaxY = y + h;
+		final IntArray stack = _stack;
+		stack.clear();
+		stack.add(_root);
+		for (; stack.length > 0;) {
+			final int node = stack.pop();
+			if (_maxX[node] < x || _minX[node] > qMaxX || _maxY[node] < y || _minY[node] > qMaxY) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				final CollisionObject obj = _objects[node];
+				if (query == null || query.checkCollision(obj)) {
+					out.add(obj);
+				}
+			} else {
+				stack.add(_child1[node]);
+				stack.add(_child2[node]);
+			}
+		}
+		return out;
+	}
+
+	private CollisionObject queryFirst(float x, float y, float w, float h, CollisionQuery query,
+			CollisionObject ignore) {
+		if (_root == NULL_NODE) {
+			return null;
+		}
+		final float qMaxX = x + w;
+		final float qMaxY = y + h;
+		final IntArray stack = _stack;
+		stack.clear();
+		stack.add(_root);
+		for (; stack.length > 0;) {
+			final int node = stack.pop();
+			if (_maxX[node] < x || _minX[node] > qMaxX || _maxY[node] < y || _minY[node] > qMaxY) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				final CollisionObject obj = _objects[node];
+				if (obj != ignore && query.checkCollision(obj)) {
+					return obj;
+				}
+			} else {
+				stack.add(_child1[node]);
+				stack.add(_child2[node]);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 查询与线段(x1,y1)-(x2,y2)相交的物体包围盒,结果按访问顺序写入out
+	 *
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param flag
+	 * @param out
+	 * @return
+	 */
+	public synchronized TArray<CollisionObject> raycast(float x1, float y1, float x2, float y2, String flag,
+			TArray<CollisionObject> out) {
+		if (_root == NULL_NODE) {
+			return out;
+		}
+		final float dx = x2 - x1;
+		final float dy = y2 - y1;
+		final IntArray stack = _stack;
+		stack.clear();
+		stack.add(_root);
+		for (; stack.length > 0;) {
+			final int node = stack.pop();
+			if (!segmentIntersects(x1, y1, dx, dy, _minX[node], _minY[node], _maxX[node], _maxY[node])) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				final CollisionObject obj = _objects[node];
+				if (flag != null && !flag.equals(obj.getObjectFlag())) {
+					continue;
+				}
+				final RectBox r = obj.getBoundingRect();
+				if (segmentIntersects(x1, y1, dx, dy, r.x, r.y, r.x + r.width, r.y + r.height)) {
+					out.add(obj);
+				}
+			} else {
+				stack.add(_child1[node]);
+				stack.add(_child2[node]);
+			}
+		}
+		return out;
+	}
+
+	private static boolean segmentIntersects(float x, float y, float dx, float dy, float minX, float minY,
+			float maxX, float maxY) {
+		float tMin = 0f, tMax = 1f;
+		if (dx == 0f) {
+			if (x < minX || x > maxX) {
+				return false;
+			}
+		} else {
+			final float inv = 1f / dx;
+			float t1 = (minX - x) * inv;
+			float t2 = (maxX - x) * inv;
+			if (t1 > t2) {
+				final float t = t1;
+				t1 = t2;
+				t2 = t;
+			}
+			tMin = MathUtils.max(tMin, t1);
+			tMax = MathUtils.min(tMax, t2);
+			if (tMin > tMax) {
+				return false;
+			}
+		}
+		if (dy == 0f) {
+			return y >= minY && y <= maxY;
+		}
+		final float inv = 1f / dy;
+		float t1 = (minY - y) * inv;
+		float t2 = (maxY - y) * inv;
+		if (t1 > t2) {
+			final float t = t1;
+			t1 = t2;
+			t2 = t;
+		}
+		return MathUtils.max(tMin, t1) <= MathUtils.min(tMax, t2);
+	}
+
+	/**
+	 * 成对检测,回调所有包围盒(实际包围盒)相交的物体对,每对只回调一次
+	 *
+	 * @param movedOnly 为true时仅检测上次调用以来加入或移出胖包围盒的物体
+	 * @param callback
+	 * @return 回调的物体对数量
+	 */
+	public synchronized int queryPairs(boolean movedOnly, PairCallback callback) {
+		int count = 0;
+		final IntArray sources = new IntArray();
+		if (movedOnly) {
+			sources.addAll(_moveBuffer);
+		} else {
+			for (int i = 0; i < _capacity; i++) {
+				if (_height[i] == 0 && _objects[i] != null) {
+					sources.add(i);
+				}
+			}
+		}
+		final IntArray stack = _stack;
+		for (int i = 0; i < sources.length; i++) {
+			final int leaf = sources.get(i);
+			final CollisionObject obj = _objects[leaf];
+			if (obj == null) {
+				continue;
+			}
+			final RectBox r = obj.getBoundingRect();
+			final float x = r.x, y = r.y, maxX = r.x + r.width, maxY = r.y + r.height;
+			stack.clear();
+			stack.add(_root);
+			for (; stack.length > 0;) {
+				final int node = stack.pop();
+				if (_maxX[node] < x || _minX[node] > maxX || _maxY[node] < y || _minY[node] > maxY) {
+					continue;
+				}
+				if (isLeaf(node)) {
+					if (node == leaf) {
+						continue;
+					}
+					// 两者都是源节点时只由id较小者回调
+					final boolean otherIsSource = !movedOnly || _moved[node];
+					if (otherIsSource && node < leaf) {
+						continue;
+					}
+					final CollisionObject other = _objects[node];
+					final RectBox o = other.getBoundingRect();
+					if (o.x <= maxX && o.x + o.width >= x && o.y <= maxY && o.y + o.height >= y) {
+						callback.onPair(obj, other);
+						count++;
+					}
+				} else {
+					stack.add(_child1[node]);
+					stack.add(_child2[node]);
+				}
+			}
+		}
+		for (int i = 0; i < _moveBuffer.length; i++) {
+			_moved[_moveBuffer.get(i)] = false;
+		}
+		_moveBuffer.clear();
+		return count;
+	}
+
+	/**
+	 * 返回树高(用于检查平衡程度)
+	 *
+	 * @return
+	 */
+	public int getTreeHeight() {
+		return _root == NULL_NODE ? 0 : _height[_root];
+	}
+
+	public int getNodeCount() {
+		return _nodeCount;
+	}
+
+	@Override
+	public int numberActors() {
+		return _proxies.size;
+	}
+
+	@Override
+	public synchronized TArray<CollisionObject> getObjectsAt(float x, float y, String flag) {
+		final float px = x * this.cellSizeX + this.cellSizeX / 2f;
+		final float py = y * this.cellSizeY + this.cellSizeY / 2f;
+		this.pointQuery.init(px, py, flag, this._offsetLocation);
+		return query(px, py, 1, 1, this.pointQuery, new TArray<CollisionObject>());
+	}
+
+	@Override
+	public synchronized TArray<CollisionObject> getIntersectingObjects(CollisionObject actor, String flag) {
+		final RectBox r = actor.getBoundingRect();
+		this.actorQuery.init(flag, actor, _offsetLocation);
+		final TArray<CollisionObject> result = query(r.x, r.y, r.width, r.height, this.actorQuery,
+				new TArray<CollisionObject>());
+		result.removeValue(actor, true);
+		return getInTheLayerObjects(actor.getLayer(), result);
+	}
+
+	@Override
+	public synchronized TArray<CollisionObject> getObjectsInRange(float x, float y, float r, String flag) {
+		final float halfCellX = this.cellSizeX / 2;
+		final float halfCellY = this.cellSizeY / 2;
+		final float sizeRX = 2 * r * this.cellSizeX;
+		final float sizeRY = 2 * r * this.cellSizeY;
+		this.actorQuery.init(flag, null, this._offsetLocation);
+		this.inRangeQuery.init(x * this.cellSizeX + halfCellX, y * this.cellSizeY + halfCellY,
+				r * MathUtils.max(this.cellSizeX, this.cellSizeY), this._offsetLocation);
+		final TArray<CollisionObject> candidates = query((x - r) * this.cellSizeX + halfCellX,
+				(y - r) * this.cellSizeY + halfCellY, sizeRX, sizeRY, this.actorQuery, new TArray<CollisionObject>());
+		final TArray<CollisionObject> result = new TArray<CollisionObject>(candidates.size);
+		for (int i = 0; i < candidates.size; i++) {
+			final CollisionObject a = candidates.get(i);
+			if (a != null && this.inRangeQuery.checkCollision(a)) {
+				result.add(a);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized TArray<CollisionObject> getNeighbours(CollisionObject actor, float distance, boolean diag,
+			String flag) {
+		final float x = actor.getX();
+		final float y = actor.getY();
+		final float xPixel = x * this.cellSizeX;
+		final float yPixel = y * this.cellSizeY;
+		final float dxPixel = distance * this.cellSizeX;
+		final float dyPixel = distance * this.cellSizeY;
+		this.neighbourQuery.init(x, y, distance, diag, flag, this._offsetLocation);
+		return getInTheLayerObjects(actor.getLayer(), query(xPixel - dxPixel, yPixel - dyPixel, dxPixel * 2 + 1,
+				dyPixel * 2 + 1, this.neighbourQuery, new TArray<CollisionObject>()));
+	}
+
+	@Override
+	public synchronized TArray<CollisionObject> getObjects(String flag) {
+		final TArray<CollisionObject> result = new TArray<CollisionObject>();
+		for (LIterator<CollisionObject> it = _proxies.keys(); it.hasNext();) {
+			final CollisionObject obj = it.next();
+			if (flag == null || flag.equals(obj.getObjectFlag())) {
+				result.add(obj);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized TArray<CollisionObject> getObjectsList() {
+		return getObjects((String) null);
+	}
+
+	@Override
+	public synchronized CollisionObject getOnlyObjectAt(CollisionObject obj, float dx, float dy, String flag) {
+		final float px = dx * this.cellSizeX + this.cellSizeX / 2f;
+		final float py = dy * this.cellSizeY + this.cellSizeY / 2f;
+		this.pointQuery.init(px, py, flag, _offsetLocation);
+		CollisionQuery query = this.pointQuery;
+		if (flag != null) {
+			query = new CollisionClassQuery(flag, this.pointQuery, this._offsetLocation);
+		}
+		return getInTheLayerObject(obj.getLayer(), queryFirst(px, py, 1, 1, query, obj));
+	}
+
+	@Override
+	public synchronized CollisionObject getOnlyIntersectingObject(CollisionObject actor, String flag) {
+		final RectBox r = actor.getBoundingRect();
+		this.actorQuery.init(flag, actor, this._offsetLocation);
+		return getInTheLayerObject(actor.getLayer(), queryFirst(r.x, r.y, r.width, r.height, this.actorQuery, actor));
+	}
+
+	private CollisionObject getInTheLayerObject(final int layer, final CollisionObject obj) {
+		if (!_itlayer) {
+			return obj;
+		}
+		if (obj != null && obj.getLayer() == layer) {
+			return obj;
+		}
+		return null;
+	}
+
+	private TArray<CollisionObject> getInTheLayerObjects(final int layer, final TArray<CollisionObject> lists) {
+		if (!_itlayer) {
+			return lists;
+		}
+		final TArray<CollisionObject> tmp = new TArray<CollisionObject>(lists.size);
+		for (int i = 0; i < lists.size; i++) {
+			CollisionObject obj = lists.get(i);
+			if (obj != null && obj.getLayer() == layer) {
+				tmp.add(obj);
+			}
+		}
+		return tmp;
+	}
+
+	@Override
+	public LIterator<CollisionObject> getActorsIterator() {
+		return _proxies.keys();
+	}
+
+	@Override
+	public TArray<CollisionObject> getActorsList() {
+		return getObjects((String) null);
+	}
+
+	@Override
+	public void setInTheLayer(boolean yes) {
+		this._itlayer = yes;
+	}
+
+	@Override
+	public boolean getInTheLayer() {
+		return _itlayer;
+	}
+
+	@Override
+	public void setOffsetPos(Vector2f offset) {
+		if (offset == null) {
+			return;
+		}
+		_offsetLocation = offset;
+	}
+
+	@Override
+	public void setOffsetPos(float x, float y) {
+		_offsetLocation.set(x, y);
+	}
+
+	@Override
+	public void setOffsetX(float x) {
+		_offsetLocation.setX(x);
+	}
+
+	@Override
+	public void setOffsetY(float y) {
+		_offsetLocation.setY(y);
+	}
+
+	@Override
+	public Vector2f getOffsetPos() {
+		return _offsetLocation;
+	}
+
+	@Override
+	public synchronized void clear() {
+		_proxies.clear();
+		_moveBuffer.clear();
+		_stack.clear();
+		for (int i = 0; i < _capacity; i++) {
+			_moved[i] = false;
+		}
+		_root = NULL_NODE;
+		_nodeCount = 0;
+		for (int i = 0; i < _capacity - 1; i++) {
+			_parent[i] = i + 1;
+			_height[i] = -1;
+			_objects[i] = null;
+		}
+		_parent[_capacity - 1] = NULL_NODE;
+		_height[_capacity - 1] = -1;
+		_objects[_capacity - 1] = null;
+		_freeList = 0;
+	}
+
+	@Override
+	public void dispose() {
+		clear();
+	}
+
+}
@@ -39,12 +39,28 @@ public class CollisionManager implements CollisionChecker {
 
 	private final ObjectSet<String> _collisionClasses = new ObjectSet<String>();
 
-	private final CollisionChecker _collisionChecker = new BSPCollisionChecker();
+	/**
+	 * 二叉空间分割网格(默认)
+	 */
+	public final static int BSP = 0;
+
+	/**
+	 * 动态AABB树,适合物体尺寸差异较大或频繁远距离移动的场合
+	 */
+	public final static int AABB_TREE = 1;
+
+	private CollisionChecker _collisionChecker = new BSPCollisionChecker();
+
+	private int _checkerMode = BSP;
 
 	private boolean _closed;
 
 	public CollisionManager() {
-		initialize(LSystem.LAYER_TILE_SIZE);
+		this(BSP);
+	}
+
+	public CollisionManager(int mode) {
+		initialize(LSystem.LAYER_TILE_SIZE, LSystem.LAYER_TILE_SIZE, mode);
 	}
 
 	@Override
@@ -57,6 +73,42 @@ public class CollisionManager implements CollisionChecker {
 		this._collisionChecker.initialize(cellSizeX, cellSizeY);
 	}
 
+	/**
+	 * 初始化并选择碰撞检查器(BSP或AABB_TREE),切换时已加入的物体会转移到新的检查器
+	 *
+	 * @param cellSizeX
+	 * @param cellSizeY
+	 * @param mode
+	 */
+	public void initialize(int cellSizeX, int cellSizeY, int mode) {
+		synchronized (CollisionManager.class) {
+			if (mode != _checkerMode) {
+				final CollisionChecker checker = mode == AABB_TREE ? new AABBTreeCollisionChecker()
+						: new BSPCollisionChecker();
+				checker.initialize(cellSizeX, cellSizeY);
+				checker.setInTheLayer(_collisionChecker.getInTheLayer());
+				checker.setOffsetPos(_collisionChecker.getOffsetPos());
+				final TArray<CollisionObject> actors = _collisionChecker.getObjectsList();
+				for (int i = 0; i < actors.size; i++) {
+					checker.addObject(actors.get(i));
+				}
+				_collisionChecker.dispose();
+				_collisionChecker = checker;
+				_checkerMode = mode == AABB_TREE ? AABB_TREE : BSP;
+			} else {
+				_collisionChecker.initialize(cellSizeX, cellSizeY);
+			}
+		}
+	}
+
+	public int getCheckerMode() {
+		return _checkerMode;
+	}
+
+	public CollisionChecker getCollisionChecker() {
+		return _collisionChecker;
+	}
+
 	@Override
 	public void clear() {
 		synchronized (CollisionManager.class) {
@@ -0,0 +1,442 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.collision;
+
+import loon.LRelease;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+
+/**
+ * 以网格坐标为键的空间哈希,供CollisionWorld使用.
+ *
+ * 网格以(cx,cy)打包成的long为键,存放在开放寻址的哈希表中,每个网格内只保存物体id(int数组),不装箱也不创建Entry对象.
+ * 每个物体记录自身所占的网格范围,移动时只增删变化的网格.查询使用代数标记(generation)去重,结果写入调用者提供的IntArray.
+ */
+public class CollisionSpatialHash implements LRelease {
+
+	/**
+	 * 网格,ids中前itemCount个元素为此网格中的物体id
+	 */
+	public static class Cell {
+
+		public int cx;
+
+		public int cy;
+
+		public int itemCount;
+
+		public int[] ids = new int[4];
+
+		public int get(int index) {
+			return ids[index];
+		}
+
+		void add(int id) {
+			if (itemCount == ids.length) {
+				final int[] newIds = new int[itemCount << 1];
+				System.arraycopy(ids, 0, newIds, 0, itemCount);
+				ids = newIds;
+			}
+			ids[itemCount++] = id;
+		}
+
+		boolean remove(int id) {
+			for (int i = 0; i < itemCount; i++) {
+				if (ids[i] == id) {
+					ids[i] = ids[--itemCount];
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private final static long EMPTY_KEY = Long.MIN_VALUE;
+
+	private long[] _keys;
+
+	private Cell[] _cells;
+
+	private int _cellCount;
+
+	private int _mask;
+
+	// 每个物体所占网格范围(left,top,right,bottom),未使用的id其left>right
+	private int[] _bounds = new int[64];
+
+	private int[] _stamps = new int[16];
+
+	private int _stamp;
+
+	private Cell _freeCell;
+
+	public CollisionSpatialHash() {
+		this(256);
+	}
+
+	public CollisionSpatialHash(int capacity) {
+		int size = 16;
+		for (; size < capacity * 2;) {
+			size <<= 1;
+		}
+		this._keys = new long[size];
+		this._cells = new Cell[size];
+		this._mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			_keys[i] = EMPTY_KEY;
+		}
+	}
+
+	public static long toKey(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * 返回指定网格,不存在时返回null
+	 *
+	 * @param cx
+	 * @param cy
+	 * @return
+	 */
+	public Cell getCell(int cx, int cy) {
+		final long key = toKey(cx, cy);
+		final long[] keys = _keys;
+		final int mask = _mask;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			final long k = keys[i];
+			if (k == key) {
+				return _cells[i];
+			}
+			if (k == EMPTY_KEY) {
+				return null;
+			}
+		}
+	}
+
+	private Cell obtainCell(int cx, int cy) {
+		final long key = toKey(cx, cy);
+		final int mask = _mask;
+		int i = hash(key) & mask;
+		for (;; i = (i + 1) & mask) {
+			final long k = _keys[i];
+			if (k == key) {
+				return _cells[i];
+			}
+			if (k == EMPTY_KEY) {
+				break;
+			}
+		}
+		if ((_cellCount + 1) * 4 > _keys.length * 3) {
+			resize(_keys.length << 1);
+			return obtainCell(cx, cy);
+		}
+		Cell cell = _freeCell;
+		if (cell != null) {
+			_freeCell = null;
+		} else {
+			cell = new Cell();
+		}
+		cell.cx = cx;
+		cell.cy = cy;
+		cell.itemCount = 0;
+		_keys[i] = key;
+		_cells[i] = cell;
+		_cellCount++;
+		return cell;
+	}
+
+	private void resize(int size) {
+		final long[] oldKeys = _keys;
+		final Cell[] oldCells = _cells;
+		_keys = new long[size];
+		_cells = new Cell[size];
+		_mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			_keys[i] = EMPTY_KEY;
+		}
+		for (int i = 0; i < oldKeys.length; i++) {
+			final long key = oldKeys[i];
+			if (key != EMPTY_KEY) {
+				int j = hash(key) & _mask;
+				for (; _keys[j] != EMPTY_KEY;) {
+					j = (j + 1) & _mask;
+				}
+				_keys[j] = key;
+				_cells[j] = oldCells[i];
+			}
+		}
+	}
+
+	private void removeCell(int cx, int cy) {
+		final long key = toKey(cx, cy);
+		final int mask = _mask;
+		int i = hash(key) & mask;
+		for (;; i = (i + 1) & mask) {
+			final long k = _keys[i];
+			if (k == EMPTY_KEY) {
+				return;
+			}
+			if (k == key) {
+				break;
+			}
+		}
+		_freeCell = _cells[i];
+		_keys[i] = EMPTY_KEY;
+		_cells[i] = null;
+		_cellCount--;
+		// 线性探测的删除需要回填后续同簇的元素
+		for (int j = (i + 1) & mask; _keys[j] != EMPTY_KEY; j = (j + 1) & mask) {
+			final long k = _keys[j];
+			final int home = hash(k) & mask;
+			if ((j > i && (home <= i || home > j)) || (j < i && (home <= i && home > j))) {
+				_keys[i] = k;
+				_cells[i] = _cells[j];
+				_keys[j] = EMPTY_KEY;
+				_cells[j] = null;
+				i = j;
+			}
+		}
+	}
+
+	private void ensureId(int id) {
+		if (id * 4 + 3 >= _bounds.length) {
+			int size = _bounds.length;
+			for (; id * 4 + 3 >= size;) {
+				size <<= 1;
+			}
+			final int[] newBounds = new int[size];
+			System.arraycopy(_bounds, 0, newBounds, 0, _bounds.length);
+			_bounds = newBounds;
+		}
+		if (id >= _stamps.length) {
+			int size = _stamps.length;
+			for (; id >= size;) {
+				size <<= 1;
+			}
+			final int[] newStamps = new int[size];
+			System.arraycopy(_stamps, 0, newStamps, 0, _stamps.length);
+			_stamps = newStamps;
+		}
+	}
+
+	/**
+	 * 把物体id加入[cl,ct]起始,宽cw高ch的网格范围
+	 *
+	 * @param id
+	 * @param cl
+	 * @param ct
+	 * @param cw
+	 * @param ch
+	 */
+	public void insert(int id, int cl, int ct, int cw, int ch) {
+		ensureId(id);
+		final int right = cl + cw - 1;
+		final int bottom = ct + ch - 1;
+		for (int cy = ct; cy <= bottom; cy++) {
+			for (int cx = cl; cx <= right; cx++) {
+				obtainCell(cx, cy).add(id);
+			}
+		}
+		final int index = id * 4;
+		_bounds[index] = cl;
+		_bounds[index + 1] = ct;
+		_bounds[index + 2] = right;
+		_bounds[index + 3] = bottom;
+	}
+
+	/**
+	 * 移动物体id到新的网格范围,只增删变化的网格
+	 *
+	 * @param id
+	 * @param cl
+	 * @param ct
+	 * @param cw
+	 * @param ch
+	 */
+	public void update(int id, int cl, int ct, int cw, int ch) {
+		update(id, cl, ct, cw, ch, true);
+	}
+
+	/**
+	 * 移动物体id到新的网格范围,离开的网格总是被移除.add为false时不加入新网格,物体只保留新旧范围的交集
+	 *
+	 * @param id
+	 * @param cl
+	 * @param ct
+	 * @param cw
+	 * @param ch
+	 * @param add
+	 */
+	public void update(int id, int cl, int ct, int cw, int ch, boolean add) {
+		final int index = id * 4;
+		final int l1 = _bounds[index], t1 = _bounds[index + 1], r1 = _bounds[index + 2], b1 = _bounds[index + 3];
+		int r2 = cl + cw - 1, b2 = ct + ch - 1;
+		if (!add) {
+			cl = MathUtils.max(cl, l1);
+			ct = MathUtils.max(ct, t1);
+			r2 = MathUtils.min(r2, r1);
+			b2 = MathUtils.min(b2, b1);
+			if (cl > r2 || ct > b2) {
+				cl = ct = 0;
+				r2 = b2 = -1;
+			}
+		}
+		if (l1 == cl && t1 == ct && r1 == r2 && b1 == b2) {
+			return;
+		}
+		for (int cy = t1; cy <= b1; cy++) {
+			for (int cx = l1; cx <= r1; cx++) {
+				if (cy < ct || cy > b2 || cx < cl || cx > r2) {
+					removeFromCell(id, cx, cy);
+				}
+			}
+		}
+		for (int cy = ct; cy <= b2; cy++) {
+			for (int cx = cl; cx <= r2; cx++) {
+				if (cy < t1 || cy > b1 || cx < l1 || cx > r1) {
+					obtainCell(cx, cy).add(id);
+				}
+			}
+		}
+		_bounds[index] = cl;
+		_bounds[index + 1] = ct;
+		_bounds[index + 2] = r2;
+		_bounds[index + 3] = b2;
+	}
+
+	public void remove(int id) {
+		final int index = id * 4;
+		if (index + 3 >= _bounds.length) {
+			return;
+		}
+		final int l = _bounds[index], t = _bounds[index + 1], r = _bounds[index + 2], b = _bounds[index + 3];
+		for (int cy = t; cy <= b; cy++) {
+			for (int cx = l; cx <= r; cx++) {
+				removeFromCell(id, cx, cy);
+			}
+		}
+		_bounds[index] = 0;
+		_bounds[index + 1] = 0;
+		_bounds[index + 2] = -1;
+		_bounds[index + 3] = -1;
+	}
+
+	private void removeFromCell(int id, int cx, int cy) {
+		final Cell cell = getCell(cx, cy);
+		if (cell != null && cell.remove(id) && cell.itemCount == 0) {
+			removeCell(cx, cy);
+		}
+	}
+
+	/**
+	 * 开始一次新的去重查询
+	 *
+	 * @return
+	 */
+	public int nextStamp() {
+		if (++_stamp == 0) {
+			for (int i = 0; i < _stamps.length; i++) {
+				_stamps[i] = 0;
+			}
+			_stamp = 1;
+		}
+		return _stamp;
+	}
+
+	/**
+	 * 标记物体id在当前查询中已访问,若此前已访问则返回false
+	 *
+	 * @param id
+	 * @return
+	 */
+	public boolean visit(int id) {
+		if (_stamps[id] == _stamp) {
+			return false;
+		}
+		_stamps[id] = _stamp;
+		return true;
+	}
+
+	/**
+	 * 查询网格范围内的全部物体id(不重复),结果追加到out
+	 *
+	 * @param cl
+	 * @param ct
+	 * @param cw
+	 * @param ch
+	 * @param out
+	 * @return
+	 */
+	public IntArray query(int cl, int ct, int cw, int ch, IntArray out) {
+		nextStamp();
+		final int endX = cl + cw;
+		final int endY = ct + ch;
+		final int[] stamps = _stamps;
+		final int stamp = _stamp;
+		for (int cy = ct; cy < endY; cy++) {
+			for (int cx = cl; cx < endX; cx++) {
+				final Cell cell = getCell(cx, cy);
+				if (cell == null) {
+					continue;
+				}
+				final int[] ids = cell.ids;
+				for (int i = 0, n = cell.itemCount; i < n; i++) {
+					final int id = ids[i];
+					if (stamps[id] != stamp) {
+						stamps[id] = stamp;
+						out.add(id);
+					}
+				}
+			}
+		}
+		return out;
+	}
+
+	public int countCells() {
+		return _cellCount;
+	}
+
+	public void clear() {
+		for (int i = 0; i < _keys.length; i++) {
+			_keys[i] = EMPTY_KEY;
+			_cells[i] = null;
+		}
+		for (int i = 0; i < _bounds.length; i += 4) {
+			_bounds[i] = 0;
+			_bounds[i + 1] = 0;
+			_bounds[i + 2] = -1;
+			_bounds[i + 3] = -1;
+		}
+		_cellCount = 0;
+	}
+
+	@Override
+	public void close() {
+		clear();
+		_freeCell = null;
+	}
+
+}
@@ -28,7 +28,7 @@ import loon.action.collision.CollisionGrid.TraverseCallback;
 import loon.action.map.Side;
 import loon.geom.PointF;
 import loon.geom.RectF;
-import loon.utils.IntMap;
+import loon.utils.IntArray;
 import loon.utils.MathUtils;
 import loon.utils.ObjectMap;
 import loon.utils.TArray;
@@ -41,19 +41,15 @@ public class CollisionWorld implements LRelease {
 	private static class WorldCollisionFilter extends CollisionFilter {
 
 		private final CollisionWorld _world;
-		private final ObjectMap<ActionBind, Boolean> _visitedMap;
-		private final CollisionFilter _filter;
+		private CollisionFilter _filter;
 
-		public WorldCollisionFilter(CollisionWorld world, ObjectMap<ActionBind, Boolean> visitedMap,
-				CollisionFilter f) {
+		public WorldCollisionFilter(CollisionWorld world) {
 			this._world = world;
-			this._visitedMap = visitedMap;
-			this._filter = f;
 		}
 
 		@Override
 		public CollisionResult filter(ActionBind obj, ActionBind other) {
-			if (_visitedMap.containsKey(other)) {
+			if (_world.isVisited(other)) {
 				return null;
 			}
 			CollisionResult result = _filter == null ? _world._worldCollisionFilter.filter(obj, other)
@@ -71,6 +67,24 @@ public class CollisionWorld implements LRelease {
 		}
 	}
 
+	/**
+	 * 世界中的物体矩形,id为其在空间哈希中的编号,visitStamp用于查询去重
+	 */
+	private static class BodyRect extends RectF {
+
+		private final ActionBind bind;
+		private int id;
+		private int visitStamp;
+
+		BodyRect(ActionBind bind, float x, float y, float w, float h) {
+			super(x, y, w, h);
+			this.bind = bind;
+		}
+	}
+
+	/**
+	 * 网格快照,保留旧接口使用,items为该网格中物体的副本,修改它不会影响世界中的网格数据
+	 */
 	public class Cell {
 		public int itemCount = 0;
 		public int cx;
@@ -89,8 +103,12 @@ public class CollisionWorld implements LRelease {
 	private final PointF tmpF2 = new PointF();
 	private final RectF tmpRect = new RectF();
 
-	private ObjectMap<ActionBind, RectF> rects = new ObjectMap<ActionBind, RectF>();
-	private IntMap<IntMap<Cell>> rows = new IntMap<IntMap<Cell>>();
+	private final ObjectMap<ActionBind, BodyRect> rects = new ObjectMap<ActionBind, BodyRect>();
+	private final TArray<BodyRect> bodies = new TArray<BodyRect>();
+	private final IntArray freeIds = new IntArray();
+	private final CollisionSpatialHash spatialHash = new CollisionSpatialHash();
+	private final IntArray queryIds = new IntArray();
+	private int visitStamp;
 
 	private final CollisionGrid grid = new CollisionGrid();
 
@@ -102,15 +120,24 @@ public class CollisionWorld implements LRelease {
 	private CollisionManager collisionManager;
 	private final float cellSizeX, cellSizeY;
 
-	private final ObjectMap<Cell, Boolean> cellVisitMap = new ObjectMap<Cell, Boolean>();
-	private final TArray<Cell> cellVisitCache = new TArray<Cell>();
+	private final TArray<CollisionSpatialHash.Cell> cellVisitCache = new TArray<CollisionSpatialHash.Cell>();
+	private final TArray<Cell> cellSnapshots = new TArray<Cell>();
+	private TArray<CollisionSpatialHash.Cell> cellTraverseResult;
+	private final TraverseCallback cellTraverse = new TraverseCallback() {
+		@Override
+		public void onTraverse(float cx, float cy) {
+			final CollisionSpatialHash.Cell cell = spatialHash.getCell((int) cx, (int) cy);
+			if (cell == null || cell.itemCount == 0 || cellTraverseResult.contains(cell, true)) {
+				return;
+			}
+			cellTraverseResult.add(cell);
+		}
+	};
 
-	private final RectF removeRect = new RectF(), addRect = new RectF();
-	private final RectF updateRect1 = new RectF(), updateRect2 = new RectF();
+	private final RectF addRect = new RectF(), updateRect = new RectF();
 	private final RectF projectRect = new RectF();
 
-	private final ObjectMap<ActionBind, Boolean> bindVisitMap = new ObjectMap<ActionBind, Boolean>();
-	private final ObjectMap<ActionBind, Boolean> cellItemCache = new ObjectMap<ActionBind, Boolean>();
+	private final WorldCollisionFilter checkFilter = new WorldCollisionFilter(this);
 
 	private final Collisions checkCols = new Collisions();
 	private final Collisions checkProjCols = new Collisions();
@@ -226,95 +253,109 @@ public class CollisionWorld implements LRelease {
 		return _tileMode;
 	}
 
-	private void addItemToCell(ActionBind bind, int cx, int cy) {
-		if (_closed || bind == null) {
-			return;
-		}
-		IntMap<Cell> row = rows.get(cy);
-		if (row == null) {
-			rows.put(cy, row = new IntMap<Cell>());
-		}
-		Cell cell = row.get(cx);
-		if (cell == null) {
-			cell = new Cell();
-			cell.cx = cx;
-			cell.cy = cy;
-			row.put(cx, cell);
-		}
-		if (!cell.items.containsKey(bind)) {
-			cell.items.put(bind, true);
-			cell.itemCount++;
+	private int beginVisit() {
+		if (++visitStamp == 0) {
+			for (int i = 0; i < bodies.size; i++) {
+				BodyRect r = bodies.get(i);
+				if (r != null) {
+					r.visitStamp = 0;
+				}
+			}
+			visitStamp = 1;
 		}
+		return visitStamp;
 	}
 
-	private boolean removeItemFromCell(ActionBind bind, int cx, int cy) {
-		if (_closed || bind == null || !rows.containsKey(cy)) {
-			return false;
+	private void markVisited(ActionBind bind) {
+		BodyRect r = rects.get(bind);
+		if (r != null) {
+			r.visitStamp = visitStamp;
 		}
-		IntMap<Cell> row = rows.get(cy);
-		Cell cell = row.get(cx);
-		if (cell == null || !cell.items.containsKey(bind)) {
-			return false;
+	}
+
+	boolean isVisited(ActionBind bind) {
+		BodyRect r = rects.get(bind);
+		return r != null && r.visitStamp == visitStamp;
+	}
+
+	private IntArray getItemsInCellRect(int cl, int ct, int cw, int ch, IntArray result) {
+		if (_closed || result == null) {
+			return null;
 		}
-		cell.items.remove(bind);
-		cell.itemCount--;
-		return true;
+		result.clear();
+		return spatialHash.query(cl, ct, cw, ch, result);
 	}
 
-	private ObjectMap<ActionBind, Boolean> getDictItemsInCellRect(int cl, int ct, int cw, int ch,
-			ObjectMap<ActionBind, Boolean> result) {
+	private IntArray getItemsInRect(float x, float y, float w, float h, IntArray result) {
+		grid.toCellRect(cellSizeX, cellSizeY, x, y, w, h, tmpRect);
+		return getItemsInCellRect((int) tmpRect.x, (int) tmpRect.y, (int) tmpRect.width, (int) tmpRect.height,
+				result);
+	}
+
+	/**
+	 * 返回线段经过的网格快照,快照对象在下次调用时复用
+	 *
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param result
+	 * @return
+	 */
+	public TArray<Cell> getCellsTouchedBySegment(float x1, float y1, float x2, float y2, final TArray<Cell> result) {
 		if (_closed || result == null) {
 			return null;
 		}
 		result.clear();
-		int endX = cl + cw;
-		int endY = ct + ch;
-		for (int cy = ct; cy < endY; cy++) {
-			IntMap<Cell> row = rows.get(cy);
-			if (row == null) {
-				continue;
+		final TArray<CollisionSpatialHash.Cell> cells = getSpatialCellsTouchedBySegment(x1, y1, x2, y2,
+				cellVisitCache);
+		for (int i = 0; i < cells.size; i++) {
+			final CollisionSpatialHash.Cell src = cells.get(i);
+			Cell dst;
+			if (i < cellSnapshots.size) {
+				dst = cellSnapshots.get(i);
+			} else {
+				dst = new Cell();
+				cellSnapshots.add(dst);
 			}
-			for (int cx = cl; cx < endX; cx++) {
-				Cell cell = row.get(cx);
-				if (cell == null || cell.itemCount == 0) {
-					continue;
-				}
-				for (ObjectMap.Entry<ActionBind, Boolean> entry : cell.items.entries()) {
-					result.put(entry.key, true);
-				}
+			dst.cx = src.cx;
+			dst.cy = src.cy;
+			dst.itemCount = src.itemCount;
+			dst.items.clear();
+			for (int j = 0; j < src.itemCount; j++) {
+				dst.items.put(bodies.get(src.ids[j]).bind, Boolean.TRUE);
 			}
+			result.add(dst);
 		}
 		return result;
 	}
 
-	public TArray<Cell> getCellsTouchedBySegment(float x1, float y1, float x2, float y2, final TArray<Cell> result) {
+	/**
+	 * 返回线段经过的空间哈希网格,网格中保存的是物体id
+	 *
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param result
+	 * @return
+	 */
+	public TArray<CollisionSpatialHash.Cell> getSpatialCellsTouchedBySegment(float x1, float y1, float x2, float y2,
+			final TArray<CollisionSpatialHash.Cell> result) {
 		if (_closed || result == null) {
 			return null;
 		}
 		result.clear();
-		cellVisitCache.clear();
-		cellVisitMap.clear();
-		grid.traverse(cellSizeX, cellSizeY, x1, y1, x2, y2, new TraverseCallback() {
-			@Override
-			public void onTraverse(float cx, float cy) {
-				int icx = (int) cx;
-				int icy = (int) cy;
-				IntMap<Cell> row = rows.get(icy);
-				if (row == null) {
-					return;
-				}
-				Cell cell = row.get(icx);
-				if (cell == null || cellVisitMap.containsKey(cell)) {
-					return;
-				}
-				cellVisitMap.put(cell, true);
-				cellVisitCache.add(cell);
-				result.add(cell);
-			}
-		});
+		cellTraverseResult = result;
+		grid.traverse(cellSizeX, cellSizeY, x1, y1, x2, y2, cellTraverse);
+		cellTraverseResult = null;
 		return result;
 	}
 
+	public CollisionSpatialHash getSpatialHash() {
+		return spatialHash;
+	}
+
 	public Collisions project(ActionBind bind, float x, float y, float w, float h, float goalX, float goalY,
 			Collisions collisions) {
 		return project(bind, x, y, w, h, goalX, goalY, _worldCollisionFilter, collisions);
@@ -326,32 +367,28 @@ public class CollisionWorld implements LRelease {
 			return null;
 		}
 		collisions.clear();
-		bindVisitMap.clear();
+		final int stamp = beginVisit();
 		if (bind != null) {
-			bindVisitMap.put(bind, true);
+			markVisited(bind);
 		}
 		float tl = MathUtils.min(goalX, x), tt = MathUtils.min(goalY, y);
 		float tr = MathUtils.max(goalX + w, x + w), tb = MathUtils.max(goalY + h, y + h);
 		grid.toCellRect(cellSizeX, cellSizeY, tl, tt, tr - tl, tb - tt, projectRect);
 
-		getDictItemsInCellRect((int) projectRect.x, (int) projectRect.y, (int) projectRect.width,
-				(int) projectRect.height, cellItemCache);
+		final IntArray ids = getItemsInCellRect((int) projectRect.x, (int) projectRect.y, (int) projectRect.width,
+				(int) projectRect.height, queryIds);
 
-		for (ObjectMap.Entry<ActionBind, Boolean> entry : cellItemCache.entries()) {
-			ActionBind other = entry.key;
-			if (bindVisitMap.containsKey(other)) {
+		for (int i = 0; i < ids.length; i++) {
+			BodyRect r = bodies.get(ids.get(i));
+			if (r.visitStamp == stamp) {
 				continue;
 			}
-			bindVisitMap.put(other, true);
-
+			r.visitStamp = stamp;
+			ActionBind other = r.bind;
 			CollisionResult res = filter.filter(bind, other);
 			if (res == null) {
 				continue;
 			}
-			RectF r = getRect(other);
-			if (r == null) {
-				continue;
-			}
 			CollisionData col = detectCollision(x, y, w, h, r.x, r.y, r.width, r.height, goalX, goalY);
 			if (col != null) {
 				collisions.add(col.overlaps, col.ti, col.move.x, col.move.y, col.normal.x, col.normal.y, col.touch.x,
@@ -369,7 +406,7 @@ public class CollisionWorld implements LRelease {
 		if (_closed) {
 			return this;
 		}
-		for (ObjectMap.Entry<ActionBind, RectF> e : rects.entries()) {
+		for (ObjectMap.Entry<ActionBind, BodyRect> e : rects.entries()) {
 			ActionBind act = e.key;
 			RectF rect = e.value;
 			if (act != null && rect != null) {
@@ -384,10 +421,11 @@ public class CollisionWorld implements LRelease {
 		if (_closed) {
 			return this;
 		}
-		for (ObjectMap.Entry<ActionBind, RectF> e : rects.entries()) {
+		for (ObjectMap.Entry<ActionBind, BodyRect> e : rects.entries()) {
+			BodyRect rect = e.value;
 			ActionBind act = e.key;
-			RectF rect = e.value;
 			if (act != null && rect != null) {
+				updateCells(rect, act.getX(), act.getY(), act.getWidth(), act.getHeight());
 				rect.set(act.getX(), act.getY(), act.getWidth(), act.getHeight());
 			}
 		}
@@ -402,11 +440,7 @@ public class CollisionWorld implements LRelease {
 		if (_closed) {
 			return 0;
 		}
-		int c = 0;
-		for (IntMap<Cell> r : rows.values()) {
-			c += r.size;
-		}
-		return c;
+		return spatialHash.countCells();
 	}
 
 	public boolean hasItem(ActionBind bind) {
@@ -447,16 +481,17 @@ public class CollisionWorld implements LRelease {
 		if (_gameScreen != null) {
 			_gameScreen.add(bind);
 		}
-		rects.put(bind, new RectF(x, y, w, h));
-		grid.toCellRect(cellSizeX, cellSizeY, x, y, w, h, addRect);
-		int cl = (int) addRect.x, ct = (int) addRect.y, cw = (int) addRect.width, ch = (int) addRect.height;
-		int endX = cl + cw;
-		int endY = ct + ch;
-		for (int cy = ct; cy < endY; cy++) {
-			for (int cx = cl; cx < endX; cx++) {
-				addItemToCell(bind, cx, cy);
-			}
+		BodyRect rect = new BodyRect(bind, x, y, w, h);
+		if (freeIds.length > 0) {
+			rect.id = freeIds.pop();
+			bodies.set(rect.id, rect);
+		} else {
+			rect.id = bodies.size;
+			bodies.add(rect);
 		}
+		rects.put(bind, rect);
+		grid.toCellRect(cellSizeX, cellSizeY, x, y, w, h, addRect);
+		spatialHash.insert(rect.id, (int) addRect.x, (int) addRect.y, (int) addRect.width, (int) addRect.height);
 		return bind;
 	}
 
@@ -464,7 +499,7 @@ public class CollisionWorld implements LRelease {
 		if (_closed || bind == null) {
 			return;
 		}
-		RectF r = getRect(bind);
+		BodyRect r = rects.get(bind);
 		if (r == null) {
 			return;
 		}
@@ -472,15 +507,9 @@ public class CollisionWorld implements LRelease {
 			_gameScreen.remove(bind);
 		}
 		rects.remove(bind);
-		grid.toCellRect(cellSizeX, cellSizeY, r.x, r.y, r.width, r.height, removeRect);
-		int cl = (int) removeRect.x, ct = (int) removeRect.y, cw = (int) removeRect.width, ch = (int) removeRect.height;
-		int endX = cl + cw;
-		int endY = ct + ch;
-		for (int cy = ct; cy < endY; cy++) {
-			for (int cx = cl; cx < endX; cx++) {
-				removeItemFromCell(bind, cx, cy);
-			}
-		}
+		spatialHash.remove(r.id);
+		bodies.set(r.id, null);
+		freeIds.add(r.id);
 	}
 
 	public void update(ActionBind bind, float x2, float y2) {
@@ -497,7 +526,7 @@ public class CollisionWorld implements LRelease {
 		if (_closed || bind == null) {
 			return;
 		}
-		RectF r = getRect(bind);
+		BodyRect r = rects.get(bind);
 		if (r == null) {
 			return;
 		}
@@ -505,35 +534,19 @@ public class CollisionWorld implements LRelease {
 				&& MathUtils.equal(r.height, h2)) {
 			return;
 		}
-		grid.toCellRect(cellSizeX, cellSizeY, r.x, r.y, r.width, r.height, updateRect1);
-		grid.toCellRect(cellSizeX, cellSizeY, x2, y2, w2, h2, updateRect2);
-		int c1l = (int) updateRect1.x, c1t = (int) updateRect1.y, c1w = (int) updateRect1.width,
-				c1h = (int) updateRect1.height;
-		int c2l = (int) updateRect2.x, c2t = (int) updateRect2.y, c2w = (int) updateRect2.width,
-				c2h = (int) updateRect2.height;
-		if (c1l != c2l || c1t != c2t || c1w != c2w || c1h != c2h) {
-			int c1r = c1l + c1w - 1, c1b = c1t + c1h - 1;
-			int c2r = c2l + c2w - 1, c2b = c2t + c2h - 1;
-			if (_autoAddItem)
-				for (int cy = c2t; cy <= c2b; cy++) {
-					for (int cx = c2l; cx <= c2r; cx++) {
-						if (cy < c1t || cy > c1b || cx < c1l || cx > c1r) {
-							addItemToCell(bind, cx, cy);
-						}
-					}
-				}
-			if (_autoRemoveItem)
-				for (int cy = c1t; cy <= c1b; cy++) {
-					for (int cx = c1l; cx <= c1r; cx++) {
-						if (cy < c2t || cy > c2b || cx < c2l || cx > c2r) {
-							removeItemFromCell(bind, cx, cy);
-						}
-					}
-				}
-		}
+		updateCells(r, x2, y2, w2, h2);
 		r.set(x2, y2, w2, h2);
 	}
 
+	/**
+	 * 更新物体所在网格,离开的网格总是被移除,只有autoAddItem为true时物体才会进入新网格
+	 */
+	private void updateCells(BodyRect r, float x2, float y2, float w2, float h2) {
+		grid.toCellRect(cellSizeX, cellSizeY, x2, y2, w2, h2, updateRect);
+		spatialHash.update(r.id, (int) updateRect.x, (int) updateRect.y, (int) updateRect.width,
+				(int) updateRect.height, _autoAddItem);
+	}
+
 	public CollisionResult.Result check(ActionBind bind, float goalX, float goalY) {
 		return check(bind, goalX, goalY, _worldCollisionFilter);
 	}
@@ -543,9 +556,8 @@ public class CollisionWorld implements LRelease {
 			checkResult.set(goalX, goalY);
 			return checkResult;
 		}
-		bindVisitMap.clear();
-		bindVisitMap.put(bind, true);
-		WorldCollisionFilter f = new WorldCollisionFilter(this, bindVisitMap, filter);
+		WorldCollisionFilter f = checkFilter;
+		f._filter = filter;
 		RectF r = getRect(bind);
 		if (r == null) {
 			checkResult.set(goalX, goalY);
@@ -559,7 +571,7 @@ public class CollisionWorld implements LRelease {
 			checkCols.add(c.overlaps, c.ti, c.move.x, c.move.y, c.normal.x, c.normal.y, c.touch.x, c.touch.y,
 					c.itemRect.x, c.itemRect.y, c.itemRect.width, c.itemRect.height, c.otherRect.x, c.otherRect.y,
 					c.otherRect.width, c.otherRect.height, c.item, c.other, c.type);
-			bindVisitMap.put(c.other, true);
+			markVisited(c.other);
 			c.type.response(this, c, r.x, r.y, r.width, r.height, goalX, goalY, f, res);
 			goalX = res.goalX;
 			goalY = res.goalY;
@@ -614,6 +626,12 @@ public class CollisionWorld implements LRelease {
 		return _closed;
 	}
 
+	/**
+	 * 物体离开的网格现在总是被移除(否则查询会返回过期物体),此标记仅为兼容旧代码保留
+	 *
+	 * @param a
+	 * @return
+	 */
 	public CollisionWorld setAutoRemoveItem(boolean a) {
 		this._autoRemoveItem = a;
 		return this;
@@ -640,14 +658,19 @@ public class CollisionWorld implements LRelease {
 		if (_closed) {
 			return null;
 		}
-		TArray<Cell> cells = getCellsTouchedBySegment(startX, startY, endX, endY, cellVisitCache);
+		TArray<CollisionSpatialHash.Cell> cells = getSpatialCellsTouchedBySegment(startX, startY, endX, endY, cellVisitCache);
 		float minTI = Float.MAX_VALUE;
 		CollisionData hit = null;
-		for (Cell cell : cells) {
-			for (ObjectMap.Entry<ActionBind, Boolean> entry : cell.items.entries()) {
-				ActionBind b = entry.key;
-				RectF r = getRect(b);
-				if (r == null || filter.filter(null, b) == null)
+		final int stamp = beginVisit();
+		for (int i = 0; i < cells.size; i++) {
+			CollisionSpatialHash.Cell cell = cells.get(i);
+			for (int j = 0; j < cell.itemCount; j++) {
+				BodyRect r = bodies.get(cell.ids[j]);
+				if (r.visitStamp == stamp) {
+					continue;
+				}
+				r.visitStamp = stamp;
+				if (filter.filter(null, r.bind) == null)
 					continue;
 				CollisionData col = detectCollision(startX, startY, 0, 0, r.x, r.y, r.width, r.height, endX, endY);
 				if (col != null && col.ti < minTI) {
@@ -664,20 +687,14 @@ public class CollisionWorld implements LRelease {
 			return null;
 		}
 		toCell(x, y, tmpF2);
-		int cx = (int) tmpF2.x, cy = (int) tmpF2.y;
-		IntMap<Cell> row = rows.get(cy);
-		if (row == null) {
-			return null;
-		}
-		Cell cell = row.get(cx);
+		CollisionSpatialHash.Cell cell = spatialHash.getCell((int) tmpF2.x, (int) tmpF2.y);
 		if (cell == null) {
 			return null;
 		}
-		for (ObjectMap.Entry<ActionBind, Boolean> entry : cell.items.entries()) {
-			ActionBind b = entry.key;
-			RectF r = getRect(b);
-			if (r != null && x >= r.x && x <= r.x + r.width && y >= r.y && y <= r.y + r.height) {
-				return b;
+		for (int i = 0; i < cell.itemCount; i++) {
+			BodyRect r = bodies.get(cell.ids[i]);
+			if (x >= r.x && x <= r.x + r.width && y >= r.y && y <= r.y + r.height) {
+				return r.bind;
 			}
 		}
 		return null;
@@ -687,13 +704,10 @@ public class CollisionWorld implements LRelease {
 		if (_closed) {
 			return false;
 		}
-		grid.toCellRect(cellSizeX, cellSizeY, x, y, w, h, tmpRect);
-		getDictItemsInCellRect((int) tmpRect.x, (int) tmpRect.y, (int) tmpRect.width, (int) tmpRect.height,
-				cellItemCache);
-		for (ObjectMap.Entry<ActionBind, Boolean> entry : cellItemCache.entries()) {
-			ActionBind b = entry.key;
-			RectF r = getRect(b);
-			if (r != null && x < r.x + r.width && x + w > r.x && y < r.y + r.height && y + h > r.y) {
+		final IntArray ids = getItemsInRect(x, y, w, h, queryIds);
+		for (int i = 0; i < ids.length; i++) {
+			BodyRect r = bodies.get(ids.get(i));
+			if (x < r.x + r.width && x + w > r.x && y < r.y + r.height && y + h > r.y) {
 				return true;
 			}
 		}
@@ -705,11 +719,9 @@ public class CollisionWorld implements LRelease {
 			return out;
 		}
 		out.clear();
-		grid.toCellRect(cellSizeX, cellSizeY, x, y, w, h, tmpRect);
-		getDictItemsInCellRect((int) tmpRect.x, (int) tmpRect.y, (int) tmpRect.width, (int) tmpRect.height,
-				cellItemCache);
-		for (ObjectMap.Entry<ActionBind, Boolean> entry : cellItemCache.entries()) {
-			out.add(entry.key);
+		final IntArray ids = getItemsInRect(x, y, w, h, queryIds);
+		for (int i = 0; i < ids.length; i++) {
+			out.add(bodies.get(ids.get(i)).bind);
 		}
 		return out;
 	}
@@ -722,15 +734,16 @@ public class CollisionWorld implements LRelease {
 		_closed = true;
 		_autoAddItem = _autoRemoveItem = false;
 		rects.clear();
-		rows.clear();
+		bodies.clear();
+		freeIds.clear();
+		spatialHash.close();
 		if (collisionManager != null) {
 			collisionManager.clear();
 			collisionManager = null;
 		}
 		cellVisitCache.clear();
-		cellVisitMap.clear();
-		cellItemCache.clear();
-		bindVisitMap.clear();
+		cellSnapshots.clear();
+		queryIds.clear();
 		checkCols.clear();
 		checkProjCols.clear();
 	}
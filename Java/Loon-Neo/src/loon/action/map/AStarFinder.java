@@ -36,7 +36,8 @@ import loon.action.map.heuristics.Mixing;
 import loon.action.map.heuristics.Octile;
 import loon.events.Updateable;
 import loon.geom.Vector2f;
-import loon.utils.IntMap;
+import loon.utils.FloatArray;
+import loon.utils.IntArray;
 import loon.utils.ObjectSet;
 import loon.utils.SortedList;
 import loon.utils.TArray;
@@ -50,6 +51,8 @@ public class AStarFinder implements Updateable, LRelease {
 
 	public static final int ASTAR = 1;
 
+	public static final int JPS = 2;
+
 	private static class ScoredPath {
 		float score;
 		Node node;
@@ -96,57 +99,58 @@ public class AStarFinder implements Updateable, LRelease {
 
 	public final static AStarFindHeuristic ASTAR_DIAGONAL_MAX = new DiagonalMax();
 
-	private final static IntMap<TArray<Vector2f>> FINDER_LAZY = new IntMap<TArray<Vector2f>>(128);
+	private final static AStarFinderCache FINDER_LAZY = new AStarFinderCache(LSystem.DEFAULT_MAX_CACHE_SIZE * 10);
 
-	private final static int makeLazyKey(final AStarFindHeuristic heuristic, final int[][] map, final int[] limits,
-			final int sx, final int sy, final int ex, final int ey, final boolean bevel, final boolean flag) {
-		int hashCode = 1;
-		int w = map.length;
-		int h = map[0].length;
-		for (int i = 0; i < w; i++) {
-			for (int j = 0; j < h; j++) {
-				hashCode = LSystem.unite(hashCode, map[i][j]);
-			}
-		}
-		if (limits != null) {
-			for (int i = 0; i < limits.length; i++) {
-				hashCode = LSystem.unite(hashCode, limits[i]);
-			}
-		}
-		hashCode = LSystem.unite(hashCode, heuristic.getTypeCode());
-		hashCode = LSystem.unite(hashCode, sx);
-		hashCode = LSystem.unite(hashCode, sy);
-		hashCode = LSystem.unite(hashCode, ex);
-		hashCode = LSystem.unite(hashCode, ey);
-		hashCode = LSystem.unite(hashCode, bevel);
-		hashCode = LSystem.unite(hashCode, flag);
-		return hashCode;
+	/**
+	 * 返回静态find方法所使用的寻径结果缓存(线程安全的定长LRU)
+	 * 
+	 * @return
+	 */
+	public static AStarFinderCache getFinderCache() {
+		return FINDER_LAZY;
 	}
 
 	public static TArray<Vector2f> find(final AStarFindHeuristic astarHeuristic, final int[][] maps, final int[] limits,
 			final int x1, final int y1, final int x2, final int y2, final boolean bevel, final boolean flag) {
 		final AStarFindHeuristic heuristic = (astarHeuristic == null ? ASTAR_MANHATTAN : astarHeuristic);
-		if (FINDER_LAZY.size >= LSystem.DEFAULT_MAX_CACHE_SIZE * 10) {
-			FINDER_LAZY.clear();
-		}
-		final int key = makeLazyKey(heuristic, maps, limits, x1, y1, x2, y2, bevel, flag);
+		final AStarFinderCache.Key key = new AStarFinderCache.Key(heuristic, maps, limits, x1, y1, x2, y2, bevel,
+				flag);
 		TArray<Vector2f> result = FINDER_LAZY.get(key);
 		if (result == null) {
-			final AStarFinder astar = new AStarFinder(heuristic, ASTAR);
 			final Field2D fieldMap = new Field2D(maps);
 			if (limits != null) {
 				fieldMap.setLimit(limits);
 			}
-			final Vector2f start = new Vector2f(x1, y1);
-			final Vector2f over = new Vector2f(x2, y2);
-			result = astar.calc(fieldMap, start, over, bevel, flag);
+			result = calcPath(heuristic, fieldMap, x1, y1, x2, y2, bevel, flag);
 			FINDER_LAZY.put(key, result);
-			astar.close();
 		}
-		if (result != null) {
-			final TArray<Vector2f> newResult = new TArray<Vector2f>();
-			newResult.addAll(result);
-			result = newResult;
+		if (result == null) {
+			return new TArray<Vector2f>();
+		}
+		return new TArray<Vector2f>(result);
+	}
+
+	/**
+	 * 在指定Field2D上寻径,缓存以Field2D本身及其版本号为键,无需逐格计算地图哈希,地图变化时缓存自动失效
+	 * 
+	 * @param astarHeuristic
+	 * @param maps
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param bevel
+	 * @param flag
+	 * @return
+	 */
+	public static TArray<Vector2f> find(final AStarFindHeuristic astarHeuristic, final Field2D maps, final int x1,
+			final int y1, final int x2, final int y2, final boolean bevel, final boolean flag) {
+		final AStarFindHeuristic heuristic = (astarHeuristic == null ? ASTAR_MANHATTAN : astarHeuristic);
+		final AStarFinderCache.Key key = new AStarFinderCache.Key(heuristic, maps, x1, y1, x2, y2, bevel, flag);
+		TArray<Vector2f> result = FINDER_LAZY.get(key);
+		if (result == null) {
+			result = calcPath(heuristic, maps, x1, y1, x2, y2, bevel, flag);
+			FINDER_LAZY.put(key, result);
 		}
 		if (result == null) {
 			return new TArray<Vector2f>();
@@ -154,6 +158,16 @@ public class AStarFinder implements Updateable, LRelease {
 		return new TArray<Vector2f>(result);
 	}
 
+	private static TArray<Vector2f> calcPath(final AStarFindHeuristic heuristic, final Field2D fieldMap, final int x1,
+			final int y1, final int x2, final int y2, final boolean bevel, final boolean flag) {
+		final AStarFinder astar = new AStarFinder(heuristic, ASTAR);
+		final Vector2f start = new Vector2f(x1, y1);
+		final Vector2f over = new Vector2f(x2, y2);
+		final TArray<Vector2f> result = astar.calc(fieldMap, start, over, bevel, flag);
+		astar.close();
+		return result;
+	}
+
 	public static TArray<Vector2f> find(int[][] maps, int x1, int y1, int x2, int y2, boolean bevel, boolean flag) {
 		return find(null, maps, x1, y1, x2, y2, bevel, flag);
 	}
@@ -168,22 +182,16 @@ public class AStarFinder implements Updateable, LRelease {
 	}
 
 	public static TArray<Vector2f> find(TileMap map, int x1, int y1, int x2, int y2, boolean bevel, boolean flag) {
-		return find(null, map.getField2D().getThisMap(), map.getLimit(), x1, y1, x2, y2, bevel, flag);
+		return find(null, map.getField2D(), x1, y1, x2, y2, bevel, flag);
 	}
 
 	public static TArray<Vector2f> find(Field2D maps, int x1, int y1, int x2, int y2, boolean bevel, boolean flag) {
-		return find(null, maps.getThisMap(), maps.getLimit(), x1, y1, x2, y2, bevel, flag);
-	}
-
-	public static TArray<Vector2f> find(AStarFindHeuristic heuristic, Field2D maps, int x1, int y1, int x2, int y2,
-			boolean bevel, boolean flag) {
-		return find(heuristic, maps.getThisMap(), maps.getLimit(), x1, y1, x2, y2, bevel, flag);
+		return find(null, maps, x1, y1, x2, y2, bevel, flag);
 	}
 
 	public static TArray<Vector2f> find(AStarFindHeuristic heuristic, Field2D maps, Vector2f start, Vector2f goal,
 			boolean bevel, boolean flag) {
-		return find(heuristic, maps.getThisMap(), maps.getLimit(), start.x(), start.y(), goal.x(), goal.y(), bevel,
-				flag);
+		return find(heuristic, maps, start.x(), start.y(), goal.x(), goal.y(), bevel, flag);
 	}
 
 	public static TArray<Vector2f> find(AStarFindHeuristic heuristic, int[][] maps, Vector2f start, Vector2f goal,
@@ -227,6 +235,123 @@ public class AStarFinder implements Updateable, LRelease {
 		return find(heuristic, maps, start.x(), start.y(), goal.x(), goal.y(), false, flag);
 	}
 
+	private final static AStarHierarchicalCache HIERARCHICAL_LAZY = new AStarHierarchicalCache(
+			LSystem.DEFAULT_MAX_CACHE_SIZE);
+
+	/**
+	 * 以指定的寻径算法查询路径.
+	 * 
+	 * PS:ASTAR与DIJKSTRA使用原有的AStarFinder,其评分逐步累加每一步到终点的启发值(贪心优先),速度快但不保证路径最短;
+	 * JPS使用AStarJumpFinder,评分为实际行走开销加启发值,启发函数不高估(比如ASTAR_OCTILE)时返回最短路径,
+	 * 因此两者给出的路径可能不同.
+	 * 
+	 * @param algorithm  ASTAR或DIJKSTRA为默认寻径,JPS为跳点寻径(8方向且无额外开销时生效,否则退回网格A*)
+	 * @param heuristic
+	 * @param maps
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param bevel
+	 * @param flag
+	 * @return
+	 */
+	public static TArray<Vector2f> find(int algorithm, AStarFindHeuristic heuristic, Field2D maps, int x1, int y1,
+			int x2, int y2, boolean bevel, boolean flag) {
+		if (algorithm == JPS) {
+			// 寻径器持有查询状态,每次调用使用各自的实例,以免不同线程的查询互相覆盖
+			final TArray<Vector2f> result = new TArray<Vector2f>();
+			new AStarJumpFinder(heuristic).findPath(maps, x1, y1, x2, y2, bevel, flag, result);
+			return result;
+		}
+		return find(heuristic, maps, x1, y1, x2, y2, bevel, flag);
+	}
+
+	public static TArray<Vector2f> find(int algorithm, AStarFindHeuristic heuristic, Field2D maps, int x1, int y1,
+			int x2, int y2, boolean flag) {
+		return find(algorithm, heuristic, maps, x1, y1, x2, y2, false, flag);
+	}
+
+	public static TArray<Vector2f> find(int algorithm, Field2D maps, int x1, int y1, int x2, int y2, boolean flag) {
+		return find(algorithm, null, maps, x1, y1, x2, y2, false, flag);
+	}
+
+	public static TArray<Vector2f> find(int algorithm, TileMap map, int x1, int y1, int x2, int y2, boolean flag) {
+		return find(algorithm, null, map.getField2D(), x1, y1, x2, y2, false, flag);
+	}
+
+	/**
+	 * 以分层(HPA*)寻径查询路径,分层数据按Field2D与是否8方向缓存,地图变化时只重建受影响的区块.
+	 * 
+	 * PS:结果为近似最短路径,开销可能略高于A*(因此不属于find的可选算法),需要与A*开销一致的路径时请使用find.
+	 * 
+	 * @param heuristic
+	 * @param maps
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param flag
+	 * @return
+	 */
+	public static TArray<Vector2f> findHierarchical(AStarFindHeuristic heuristic, Field2D maps, int x1, int y1, int x2,
+			int y2, boolean flag) {
+		final TArray<Vector2f> result = new TArray<Vector2f>();
+		HIERARCHICAL_LAZY.findPath(heuristic, maps, x1, y1, x2, y2, flag, result);
+		return result;
+	}
+
+	public static TArray<Vector2f> findHierarchical(Field2D maps, int x1, int y1, int x2, int y2, boolean flag) {
+		return findHierarchical(null, maps, x1, y1, x2, y2, flag);
+	}
+
+	public static TArray<Vector2f> findHierarchical(TileMap map, int x1, int y1, int x2, int y2, boolean flag) {
+		return findHierarchical(null, map.getField2D(), x1, y1, x2, y2, flag);
+	}
+
+	/**
+	 * 释放findHierarchical缓存的所有分层寻径数据
+	 */
+	public static void clearHierarchical() {
+		HIERARCHICAL_LAZY.clear();
+	}
+
+	/**
+	 * 以AStarGridFinder执行寻径,结果以[x0,y0,x1,y1...]的格式写入out
+	 * 
+	 * PS:每次调用都会创建新的寻径器(可在多线程中调用),需要反复查询且不重新分配数组时,请自行持有AStarGridFinder实例.
+	 * 
+	 * @param heuristic
+	 * @param maps
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param bevel
+	 * @param flag
+	 * @param out
+	 * @return
+	 */
+	public static boolean findGrid(AStarFindHeuristic heuristic, Field2D maps, int x1, int y1, int x2, int y2,
+			boolean bevel, boolean flag, IntArray out) {
+		return new AStarGridFinder(heuristic).findPath(maps, x1, y1, x2, y2, bevel, flag, out);
+	}
+
+	public static boolean findGrid(AStarFindHeuristic heuristic, Field2D maps, int x1, int y1, int x2, int y2,
+			boolean flag, IntArray out) {
+		return findGrid(heuristic, maps, x1, y1, x2, y2, false, flag, out);
+	}
+
+	public static boolean findGrid(AStarFindHeuristic heuristic, Field2D maps, int x1, int y1, int x2, int y2,
+			boolean bevel, boolean flag, FloatArray out) {
+		return new AStarGridFinder(heuristic).findPath(maps, x1, y1, x2, y2, bevel, flag, out);
+	}
+
+	public static boolean findGrid(AStarFindHeuristic heuristic, Field2D maps, int x1, int y1, int x2, int y2,
+			boolean flag, FloatArray out) {
+		return findGrid(heuristic, maps, x1, y1, x2, y2, false, flag, out);
+	}
+
 	private Vector2f _goal;
 
 	private SortedList<ScoredPath> _nextList;
@@ -0,0 +1,323 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.geom.Vector2f;
+import loon.utils.CollectionUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * 寻径结果的定长LRU缓存,所有方法线程安全.
+ *
+ * 缓存以完整的Key(地图或Field2D及其版本号,起止点,估值器,寻径参数)为键,哈希相同但内容不同的查询不会互相命中.
+ * 与某个Field2D关联的缓存项会在该Field2D数据变化(MapChangedListener)时立即失效.
+ */
+public class AStarFinderCache implements Field2D.MapChangedListener, LRelease {
+
+	/**
+	 * 寻径缓存的完整键
+	 */
+	public static final class Key {
+
+		private final Field2D _field;
+
+		private final int _version;
+
+		private final int[][] _map;
+
+		private final int[] _limits;
+
+		private final AStarFindHeuristic _heuristic;
+
+		private final int _startX, _startY, _endX, _endY;
+
+		private final boolean _bevel, _flag;
+
+		private final int _hashCode;
+
+		public Key(AStarFindHeuristic heuristic, Field2D field, int sx, int sy, int ex, int ey, boolean bevel,
+				boolean flag) {
+			this(heuristic, field, field.getVersion(), null, null, sx, sy, ex, ey, bevel, flag);
+		}
+
+		/**
+		 * 以二维数组地图内容为键(只保存引用,存入缓存时才复制)
+		 */
+		public Key(AStarFindHeuristic heuristic, int[][] map, int[] limits, int sx, int sy, int ex, int ey,
+				boolean bevel, boolean flag) {
+			this(heuristic, null, 0, map, limits, sx, sy, ex, ey, bevel, flag);
+		}
+
+		private Key(AStarFindHeuristic heuristic, Field2D field, int version, int[][] map, int[] limits, int sx,
+				int sy, int ex, int ey, boolean bevel, boolean flag) {
+			this._heuristic = heuristic;
+			this._field = field;
+			this._version = version;
+			this._map = map;
+			this._limits = limits;
+			this._startX = sx;
+			this._startY = sy;
+			this._endX = ex;
+			this._endY = ey;
+			this._bevel = bevel;
+			this._flag = flag;
+			int hashCode = 1;
+			if (field != null) {
+				hashCode = LSystem.unite(hashCode, field);
+				hashCode = LSystem.unite(hashCode, version);
+			} else {
+				for (int i = 0; i < map.length; i++) {
+					final int[] row = map[i];
+					for (int j = 0; j < row.length; j++) {
+						hashCode = LSystem.unite(hashCode, row[j]);
+					}
+				}
+				if (limits != null) {
+					for (int i = 0; i < limits.length; i++) {
+						hashCode = LSystem.unite(hashCode, limits[i]);
+					}
+				}
+			}
+			hashCode = LSystem.unite(hashCode, heuristic.getTypeCode());
+			hashCode = LSystem.unite(hashCode, sx);
+			hashCode = LSystem.unite(hashCode, sy);
+			hashCode = LSystem.unite(hashCode, ex);
+			hashCode = LSystem.unite(hashCode, ey);
+			hashCode = LSystem.unite(hashCode, bevel);
+			hashCode = LSystem.unite(hashCode, flag);
+			this._hashCode = hashCode;
+		}
+
+		public Field2D getField() {
+			return _field;
+		}
+
+		/**
+		 * 存入缓存用的副本,地图内容被复制,调用者之后修改原数组不会影响已缓存的键
+		 */
+		Key copy() {
+			if (_map == null) {
+				return this;
+			}
+			final int[][] map = new int[_map.length][];
+			for (int i = 0; i < map.length; i++) {
+				map[i] = CollectionUtils.copyOf(_map[i]);
+			}
+			final int[] limits = _limits == null ? null : CollectionUtils.copyOf(_limits);
+			return new Key(_heuristic, null, 0, map, limits, _startX, _startY, _endX, _endY, _bevel, _flag);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) o;
+			if (_hashCode != other._hashCode || _field != other._field || _version != other._version
+					|| _heuristic != other._heuristic || _startX != other._startX || _startY != other._startY
+					|| _endX != other._endX || _endY != other._endY || _bevel != other._bevel
+					|| _flag != other._flag) {
+				return false;
+			}
+			if (_map == other._map) {
+				return _limits == other._limits || equals(_limits, other._limits);
+			}
+			if (_map == null || other._map == null || _map.length != other._map.length) {
+				return false;
+			}
+			for (int i = 0; i < _map.length; i++) {
+				if (!equals(_map[i], other._map[i])) {
+					return false;
+				}
+			}
+			return equals(_limits, other._limits);
+		}
+
+		private static boolean equals(int[] a, int[] b) {
+			if (a == b) {
+				return true;
+			}
+			if (a == null || b == null || a.length != b.length) {
+				return false;
+			}
+			for (int i = 0; i < a.length; i++) {
+				if (a[i] != b[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return _hashCode;
+		}
+	}
+
+	private static class Entry {
+
+		Key key;
+
+		TArray<Vector2f> path;
+
+		Entry prev;
+
+		Entry next;
+	}
+
+	private final ObjectMap<Key, Entry> _entries;
+
+	private final Entry _head = new Entry();
+
+	private int _maxSize;
+
+	private int _hits;
+
+	private int _misses;
+
+	public AStarFinderCache(int maxSize) {
+		this._maxSize = maxSize < 1 ? 1 : maxSize;
+		this._entries = new ObjectMap<Key, Entry>(this._maxSize);
+		this._head.prev = _head;
+		this._head.next = _head;
+	}
+
+	public synchronized TArray<Vector2f> get(Key key) {
+		final Entry entry = _entries.get(key);
+		if (entry == null) {
+			_misses++;
+			return null;
+		}
+		unlink(entry);
+		linkFirst(entry);
+		_hits++;
+		return entry.path;
+	}
+
+	public synchronized void put(Key key, TArray<Vector2f> path) {
+		Entry entry = _entries.get(key);
+		if (entry != null) {
+			unlink(entry);
+		} else {
+			if (_entries.size >= _maxSize) {
+				final Entry last = _head.prev;
+				unlink(last);
+				_entries.remove(last.key);
+			}
+			entry = new Entry();
+			entry.key = key.copy();
+			_entries.put(entry.key, entry);
+		}
+		entry.path = path;
+		linkFirst(entry);
+		final Field2D field = key.getField();
+		if (field != null) {
+			field.addMapChangedListener(this);
+		}
+	}
+
+	public synchronized void remove(Key key) {
+		final Entry entry = _entries.remove(key);
+		if (entry != null) {
+			unlink(entry);
+		}
+	}
+
+	/**
+	 * 删除所有与指定Field2D关联的缓存项
+	 *
+	 * @param field
+	 */
+	public synchronized void invalidate(Field2D field) {
+		for (Entry entry = _head.next; entry != _head;) {
+			final Entry next = entry.next;
+			if (entry.key.getField() == field) {
+				unlink(entry);
+				_entries.remove(entry.key);
+			}
+			entry = next;
+		}
+	}
+
+	@Override
+	public void onChanged(Field2D field, int x, int y, int width, int height) {
+		invalidate(field);
+		field.removeMapChangedListener(this);
+	}
+
+	public synchronized AStarFinderCache setMaxSize(int maxSize) {
+		this._maxSize = maxSize < 1 ? 1 : maxSize;
+		for (; _entries.size > _maxSize;) {
+			final Entry last = _head.prev;
+			unlink(last);
+			_entries.remove(last.key);
+		}
+		return this;
+	}
+
+	public synchronized int getMaxSize() {
+		return _maxSize;
+	}
+
+	public synchronized int size() {
+		return _entries.size;
+	}
+
+	public synchronized int getHits() {
+		return _hits;
+	}
+
+	public synchronized int getMisses() {
+		return _misses;
+	}
+
+	public synchronized void clear() {
+		_entries.clear();
+		_head.prev = _head;
+		_head.next = _head;
+	}
+
+	private void unlink(Entry entry) {
+		entry.prev.next = entry.next;
+		entry.next.prev = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+	}
+
+	private void linkFirst(Entry entry) {
+		entry.next = _head.next;
+		entry.prev = _head;
+		_head.next.prev = entry;
+		_head.next = entry;
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
+
+}
@@ -20,79 +20,58 @@
  */
 package loon.action.map;
 
+import loon.LRelease;
 import loon.geom.Vector2f;
-import loon.utils.LIterator;
-import loon.utils.SortedList;
 import loon.utils.TArray;
-import loon.utils.processes.GameProcessType;
-import loon.utils.processes.RealtimeProcess;
-import loon.utils.processes.RealtimeProcessManager;
-import loon.utils.timer.LTimerContext;
 
-public class AStarFinderPool {
+/**
+ * 寻径池,异步请求交由AStarPathService在后台worker中执行,结果在游戏线程中回调AStarFinderListener
+ */
+public class AStarFinderPool implements LRelease {
 
 	private Field2D field;
 
-	private RealtimeProcess pathfinderProcess;
-
-	private boolean running;
-
-	private TaskQueue pathQueue = new TaskQueue();
+	private AStarPathService pathService;
 
 	public AStarFinderPool(int[][] maps) {
 		this(new Field2D(maps));
 	}
 
 	public AStarFinderPool(Field2D field) {
+		this(field, new AStarPathService());
+	}
+
+	public AStarFinderPool(Field2D field, AStarPathService service) {
 		this.field = field;
-		this.running = true;
-		pathfinderProcess = new RealtimeProcess("AStarProcess") {
-
-			@Override
-			public void run(LTimerContext time) {
-				if (running) {
-					emptyPathQueue();
-					kill();
-				}
-			}
-		};
-		pathfinderProcess.setProcessType(GameProcessType.Progress);
-		pathfinderProcess.sleep(1000000);
-		RealtimeProcessManager.get().addProcess(pathfinderProcess);
+		this.pathService = service;
+		this.pathService.start();
 	}
 
 	public void run() {
+		pathService.update();
+	}
 
+	public void stop() {
+		pathService.stop();
 	}
 
-	private void emptyPathQueue() {
-		AStarFinder task;
-		for (; (task = pathQueue.poll()) != null;) {
-			task.action(task);
-		}
+	public AStarPathService getPathService() {
+		return pathService;
 	}
 
-	public void stop() {
-		running = true;
-		pathfinderProcess.kill();
+	public AStarPathService.PathRequest search(AStarFindHeuristic heuristic, int startx, int starty, int endx,
+			int endy, boolean flying, boolean flag, AStarFinderListener callback) {
+		return pathService.submit(AStarFinder.ASTAR, heuristic, field, startx, starty, endx, endy, flying, false,
+				flag, callback);
 	}
 
-	public void search(AStarFindHeuristic heuristic, int startx, int starty, int endx, int endy, boolean flying,
-			boolean flag, AStarFinderListener callback) {
-		AStarFinder pathfinderTask = new AStarFinder(heuristic, field, startx, starty, endx, endy, flying, flag,
-				callback, AStarFinder.ASTAR);
-		AStarFinder existing = pathQueue.contains(pathfinderTask);
-		if (existing != null) {
-			existing.update(pathfinderTask);
-		} else {
-			pathQueue.add(pathfinderTask);
-		}
-		pathfinderProcess.kill();
+	public AStarPathService.PathRequest search(AStarFindHeuristic heuristic, int startx, int starty, int endx,
+			int endy, boolean flying, AStarFinderListener callback) {
+		return search(heuristic, startx, starty, endx, endy, flying, false, callback);
 	}
 
-	public void search(AStarFindHeuristic heuristic, int startx, int starty, int endx, int endy, boolean flying,
-			AStarFinderListener callback) {
-		search(heuristic, startx, starty, endx, endy, flying, false, callback);
+	public void cancel(AStarPathService.PathRequest request, AStarFinderListener callback) {
+		pathService.cancel(request, callback);
 	}
 
 	public TArray<Vector2f> search(AStarFindHeuristic heuristic, int startX, int startY, int endX, int endY,
@@ -115,26 +94,8 @@ public class AStarFinderPool {
 		return result;
 	}
 
-	static class TaskQueue {
-
-		private SortedList<AStarFinder> queue = new SortedList<AStarFinder>();
-
-		public synchronized AStarFinder contains(AStarFinder element) {
-			for (LIterator<AStarFinder> it = queue.listIterator(); it.hasNext();) {
-				AStarFinder af = it.next();
-				if (af.equals(element)) {
-					return af;
-				}
-			}
-			return null;
-		}
-
-		public synchronized AStarFinder poll() {
-			return queue.poll();
-		}
-
-		public synchronized void add(AStarFinder t) {
-			queue.add(t);
-		}
+	@Override
+	public void close() {
+		pathService.close();
 	}
 }
@@ -0,0 +1,467 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.geom.Vector2f;
+import loon.utils.FloatArray;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 基于一维基础数组的A*寻径用类,和AStarFinder不同,此类在查询中不创建任何Vector2f,Node或集合对象.
+ *
+ * 地图格子以[y * width + x]作为索引,开放列表为int索引的二叉堆,open与closed状态使用代数(generation)标记,
+ * 所以同一实例可以反复查询而无需清空数组(仅当地图尺寸变大时才重新分配).结果以[x0,y0,x1,y1...]的形式写入用户提供的IntArray或FloatArray.
+ *
+ * 格子的行走开销为(正向1,斜向根号2)加上Field2D.getCost设置的额外开销,不可行走的格子由Field2D.isHit(即limit设置)判定.
+ *
+ * PS:此类实例非线程安全,多线程寻径时每个线程应持有各自的实例.
+ */
+public class AStarGridFinder implements LRelease {
+
+	// 与Field2D.neighbors中非bevel模式的顺序一致
+	private final static int[] DIR_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] DIR_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	// 与Field2D.neighbors中bevel模式的顺序一致
+	private final static int[] BEVEL_X = { -1, 1, 1, -1, 1, -1, 0, 0 };
+
+	private final static int[] BEVEL_Y = { -1, -1, 1, 1, 0, 0, -1, 1 };
+
+	protected AStarFindHeuristic _findHeuristic;
+
+	protected boolean _flying;
+
+	protected int _overflow = -1;
+
+	protected int _width, _height;
+
+	protected int _generation;
+
+	protected int _expanded;
+
+	protected int[] _openStamp;
+
+	protected int[] _closedStamp;
+
+	protected int[] _parents;
+
+	protected float[] _gScores;
+
+	protected final GridHeap _openHeap = new GridHeap();
+
+	private boolean _closed;
+
+	public AStarGridFinder() {
+		this(null);
+	}
+
+	public AStarGridFinder(AStarFindHeuristic heuristic) {
+		this(heuristic, false);
+	}
+
+	public AStarGridFinder(AStarFindHeuristic heuristic, boolean flying) {
+		this.setHeuristic(heuristic);
+		this._flying = flying;
+	}
+
+	public AStarGridFinder setHeuristic(AStarFindHeuristic heuristic) {
+		this._findHeuristic = (heuristic == null ? AStarFinder.ASTAR_MANHATTAN : heuristic);
+		return this;
+	}
+
+	public AStarFindHeuristic getHeuristic() {
+		return _findHeuristic;
+	}
+
+	public AStarGridFinder setFlying(boolean flying) {
+		this._flying = flying;
+		return this;
+	}
+
+	public boolean isFlying() {
+		return _flying;
+	}
+
+	/**
+	 * 设置单次查询允许展开的最大格子数量,小于0时不做限制
+	 *
+	 * @param over
+	 * @return
+	 */
+	public AStarGridFinder setOverflow(int over) {
+		this._overflow = over;
+		return this;
+	}
+
+	public int getOverflow() {
+		return _overflow;
+	}
+
+	/**
+	 * 返回上一次查询展开(关闭)的格子数量
+	 *
+	 * @return
+	 */
+	public int getExpandedCount() {
+		return _expanded;
+	}
+
+	public boolean findPath(Field2D field, int startX, int startY, int endX, int endY, boolean diagonal,
+			IntArray out) {
+		return findPath(field, startX, startY, endX, endY, false, diagonal, out);
+	}
+
+	/**
+	 * 查询路径,并将结果以[x0,y0,x1,y1...]的格式写入out(会先清空out)
+	 *
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param bevel
+	 * @param diagonal
+	 * @param out
+	 * @return 是否找到路径
+	 */
+	public boolean findPath(Field2D field, int startX, int startY, int endX, int endY, boolean bevel,
+			boolean diagonal, IntArray out) {
+		out.clear();
+		final int goal = search(field, startX, startY, endX, endY, bevel, diagonal);
+		if (goal == -1) {
+			return false;
+		}
+		appendPath(goal, out, false);
+		return true;
+	}
+
+	public boolean findPath(Field2D field, int startX, int startY, int endX, int endY, boolean diagonal,
+			FloatArray out) {
+		return findPath(field, startX, startY, endX, endY, false, diagonal, out);
+	}
+
+	/**
+	 * 查询路径,并将结果以[x0,y0,x1,y1...]的格式写入out(会先清空out)
+	 *
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param bevel
+	 * @param diagonal
+	 * @param out
+	 * @return 是否找到路径
+	 */
+	public boolean findPath(Field2D field, int startX, int startY, int endX, int endY, boolean bevel,
+			boolean diagonal, FloatArray out) {
+		out.clear();
+		final int goal = search(field, startX, startY, endX, endY, bevel, diagonal);
+		if (goal == -1) {
+			return false;
+		}
+		final int count = pathLength(goal);
+		final float[] items = out.ensureCapacity(count * 2);
+		int x = goal % _width;
+		int y = goal / _width;
+		int pos = count - 1;
+		items[pos * 2] = x;
+		items[pos * 2 + 1] = y;
+		for (int index = goal; _parents[index] != -1; index = _parents[index]) {
+			final int parent = _parents[index];
+			final int px = parent % _width;
+			final int py = parent / _width;
+			final int sx = MathUtils.sign(px - x);
+			final int sy = MathUtils.sign(py - y);
+			for (; x != px || y != py;) {
+				x += sx;
+				y += sy;
+				pos--;
+				items[pos * 2] = x;
+				items[pos * 2 + 1] = y;
+			}
+		}
+		out.length = count * 2;
+		return true;
+	}
+
+	/**
+	 * 查询路径,并转化为AStarFinder兼容的Vector2f集合(会先清空out)
+	 *
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param bevel
+	 * @param diagonal
+	 * @param out
+	 * @return 是否找到路径
+	 */
+	public boolean findPath(Field2D field, int startX, int startY, int endX, int endY, boolean bevel,
+			boolean diagonal, TArray<Vector2f> out) {
+		out.clear();
+		final int goal = search(field, startX, startY, endX, endY, bevel, diagonal);
+		if (goal == -1) {
+			return false;
+		}
+		int x = goal % _width;
+		int y = goal / _width;
+		out.add(new Vector2f(x, y));
+		for (int index = goal; _parents[index] != -1; index = _parents[index]) {
+			final int parent = _parents[index];
+			final int px = parent % _width;
+			final int py = parent / _width;
+			final int sx = MathUtils.sign(px - x);
+			final int sy = MathUtils.sign(py - y);
+			for (; x != px || y != py;) {
+				x += sx;
+				y += sy;
+				out.add(new Vector2f(x, y));
+			}
+		}
+		out.reverse();
+		return true;
+	}
+
+	/**
+	 * 执行一次A*查询
+	 *
+	 * @return 找到路径时返回目标格子索引,否则返回-1
+	 */
+	public int search(Field2D field, int startX, int startY, int endX, int endY, boolean bevel, boolean diagonal) {
+		if (field == null) {
+			return -1;
+		}
+		return search(field, startX, startY, endX, endY, bevel, diagonal, 0, 0, field.getWidth() - 1,
+				field.getHeight() - 1);
+	}
+
+	/**
+	 * 执行一次仅在指定瓦片范围[minX,minY]-[maxX,maxY]内展开的A*查询
+	 *
+	 * @return 找到路径时返回目标格子索引,否则返回-1
+	 */
+	int search(Field2D field, int startX, int startY, int endX, int endY, boolean bevel, boolean diagonal,
+			int minX, int minY, int maxX, int maxY) {
+		_expanded = 0;
+		if (field == null || !field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return -1;
+		}
+		prepare(field.getWidth(), field.getHeight());
+		if (minX < 0) {
+			minX = 0;
+		}
+		if (minY < 0) {
+			minY = 0;
+		}
+		if (maxX >= _width) {
+			maxX = _width - 1;
+		}
+		if (maxY >= _height) {
+			maxY = _height - 1;
+		}
+		final int width = _width;
+		final int start = startY * width + startX;
+		final int goal = endY * width + endX;
+		final int generation = _generation;
+		final int[] openStamp = _openStamp;
+		final int[] closedStamp = _closedStamp;
+		final int[] parents = _parents;
+		final float[] gScores = _gScores;
+		final GridHeap openHeap = _openHeap;
+		final int[] dirX = bevel ? BEVEL_X : DIR_X;
+		final int[] dirY = bevel ? BEVEL_Y : DIR_Y;
+		final int dirCount = bevel ? (diagonal ? 8 : 6) : (diagonal ? 8 : 4);
+		final AStarFindHeuristic heuristic = _findHeuristic;
+		final boolean flying = _flying;
+
+		openHeap.clear();
+		parents[start] = -1;
+		gScores[start] = 0f;
+		openStamp[start] = generation;
+		openHeap.push(start, heuristic.getScore(endX, endY, startX, startY));
+
+		for (; !openHeap.isEmpty();) {
+			final int current = openHeap.pop();
+			if (current == goal) {
+				return goal;
+			}
+			closedStamp[current] = generation;
+			if (++_expanded > _overflow && _overflow > -1) {
+				return -1;
+			}
+			final int cx = current % width;
+			final int cy = current / width;
+			final float currentScore = gScores[current];
+			for (int i = 0; i < dirCount; i++) {
+				final int nx = cx + dirX[i];
+				final int ny = cy + dirY[i];
+				if (nx < minX || ny < minY || nx > maxX || ny > maxY) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				if (closedStamp[next] == generation) {
+					continue;
+				}
+				if (!flying && !field.isHit(nx, ny)) {
+					continue;
+				}
+				float step = (nx != cx && ny != cy) ? MathUtils.SQRT2 : 1f;
+				final int cost = field.getCost(nx, ny);
+				if (cost > 0) {
+					step += cost;
+				}
+				final float score = currentScore + step;
+				if (openStamp[next] == generation) {
+					if (score >= gScores[next]) {
+						continue;
+					}
+					gScores[next] = score;
+					parents[next] = current;
+					openHeap.decrease(next, score + heuristic.getScore(endX, endY, nx, ny));
+				} else {
+					openStamp[next] = generation;
+					gScores[next] = score;
+					parents[next] = current;
+					openHeap.push(next, score + heuristic.getScore(endX, endY, nx, ny));
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 返回上一次查询中指定格子的父格子索引(无父格子时为-1)
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getParent(int index) {
+		return _parents[index];
+	}
+
+	/**
+	 * 返回上一次查询中指定格子的累计开销
+	 *
+	 * @param index
+	 * @return
+	 */
+	public float getScore(int index) {
+		return _gScores[index];
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * 将上一次查询得到的路径以[x,y]格式追加到out末尾,相邻路径点之间不连续时(比如跳点寻径结果)会按直线或斜线补齐中间格子
+	 *
+	 * @param goal
+	 * @param out
+	 * @param skipFirst 是否跳过起点(out末尾已是起点时使用)
+	 */
+	void appendPath(int goal, IntArray out, boolean skipFirst) {
+		final int count = pathLength(goal);
+		// 跳过起点时直接覆盖out中最后一个(与起点相同的)格子
+		final int offset = (skipFirst && out.length > 1) ? out.length - 2 : out.length;
+		final int[] items = out.ensureCapacity(count * 2);
+		int x = goal % _width;
+		int y = goal / _width;
+		int pos = count - 1;
+		items[offset + pos * 2] = x;
+		items[offset + pos * 2 + 1] = y;
+		for (int index = goal; _parents[index] != -1; index = _parents[index]) {
+			final int parent = _parents[index];
+			final int px = parent % _width;
+			final int py = parent / _width;
+			final int sx = MathUtils.sign(px - x);
+			final int sy = MathUtils.sign(py - y);
+			for (; x != px || y != py;) {
+				x += sx;
+				y += sy;
+				pos--;
+				items[offset + pos * 2] = x;
+				items[offset + pos * 2 + 1] = y;
+			}
+		}
+		out.length = offset + count * 2;
+	}
+
+	int pathLength(int goal) {
+		int count = 1;
+		for (int index = goal; _parents[index] != -1; index = _parents[index]) {
+			final int parent = _parents[index];
+			final int dx = MathUtils.abs(index % _width - parent % _width);
+			final int dy = MathUtils.abs(index / _width - parent / _width);
+			count += MathUtils.max(dx, dy);
+		}
+		return count;
+	}
+
+	protected void prepare(int width, int height) {
+		final int size = width * height;
+		if (_openStamp == null || _openStamp.length < size) {
+			_openStamp = new int[size];
+			_closedStamp = new int[size];
+			_parents = new int[size];
+			_gScores = new float[size];
+			_generation = 0;
+		}
+		_openHeap.ensure(size);
+		_width = width;
+		_height = height;
+		if (_generation == Integer.MAX_VALUE) {
+			for (int i = 0; i < _openStamp.length; i++) {
+				_openStamp[i] = 0;
+				_closedStamp[i] = 0;
+			}
+			_generation = 0;
+		}
+		_generation++;
+		_closed = false;
+	}
+
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	@Override
+	public void close() {
+		_openStamp = null;
+		_closedStamp = null;
+		_parents = null;
+		_gScores = null;
+		_openHeap.close();
+		_generation = 0;
+		_closed = true;
+	}
+
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.geom.Vector2f;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * 静态分层寻径使用的定长LRU缓存,以Field2D为单位保存分层数据,8方向与4方向各自独立缓存,互不覆盖,所有方法线程安全.
+ *
+ * 超出容量时只淘汰最久未使用的Field2D,并释放其分层数据(同时解除对该Field2D的监听与引用).
+ */
+final class AStarHierarchicalCache implements LRelease {
+
+	private static class Entry {
+
+		Field2D field;
+
+		// 0为4方向,1为8方向
+		final AStarHierarchicalFinder[] finders = new AStarHierarchicalFinder[2];
+
+		Entry prev;
+
+		Entry next;
+
+		void close() {
+			for (int i = 0; i < finders.length; i++) {
+				if (finders[i] != null) {
+					finders[i].close();
+					finders[i] = null;
+				}
+			}
+			field = null;
+		}
+	}
+
+	private final ObjectMap<Field2D, Entry> _entries;
+
+	private final Entry _head = new Entry();
+
+	private int _maxSize;
+
+	AStarHierarchicalCache(int maxSize) {
+		this._maxSize = maxSize < 1 ? 1 : maxSize;
+		this._entries = new ObjectMap<Field2D, Entry>(this._maxSize);
+		this._head.prev = _head;
+		this._head.next = _head;
+	}
+
+	public synchronized boolean findPath(AStarFindHeuristic heuristic, Field2D field, int startX, int startY, int endX,
+			int endY, boolean diagonal, TArray<Vector2f> out) {
+		final AStarHierarchicalFinder finder = get(field, diagonal);
+		finder.setHeuristic(heuristic);
+		return finder.findPath(startX, startY, endX, endY, out);
+	}
+
+	private AStarHierarchicalFinder get(Field2D field, boolean diagonal) {
+		Entry entry = _entries.get(field);
+		if (entry != null) {
+			unlink(entry);
+		} else {
+			if (_entries.size >= _maxSize) {
+				removeLast();
+			}
+			entry = new Entry();
+			entry.field = field;
+			_entries.put(field, entry);
+		}
+		linkFirst(entry);
+		final int index = diagonal ? 1 : 0;
+		AStarHierarchicalFinder finder = entry.finders[index];
+		if (finder == null || finder.isClosed()) {
+			finder = new AStarHierarchicalFinder(field, 16, diagonal);
+			entry.finders[index] = finder;
+		}
+		return finder;
+	}
+
+	public synchronized AStarHierarchicalCache setMaxSize(int maxSize) {
+		this._maxSize = maxSize < 1 ? 1 : maxSize;
+		for (; _entries.size > _maxSize;) {
+			removeLast();
+		}
+		return this;
+	}
+
+	public int getMaxSize() {
+		return _maxSize;
+	}
+
+	public synchronized int size() {
+		return _entries.size;
+	}
+
+	public synchronized void remove(Field2D field) {
+		final Entry entry = _entries.remove(field);
+		if (entry != null) {
+			unlink(entry);
+			entry.close();
+		}
+	}
+
+	public synchronized void clear() {
+		for (Entry entry = _head.next; entry != _head;) {
+			final Entry next = entry.next;
+			entry.close();
+			entry = next;
+		}
+		_entries.clear();
+		_head.prev = _head;
+		_head.next = _head;
+	}
+
+	private void removeLast() {
+		final Entry last = _head.prev;
+		unlink(last);
+		_entries.remove(last.field);
+		last.close();
+	}
+
+	private void unlink(Entry entry) {
+		entry.prev.next = entry.next;
+		entry.next.prev = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+	}
+
+	private void linkFirst(Entry entry) {
+		entry.next = _head.next;
+		entry.prev = _head;
+		_head.next.prev = entry;
+		_head.next = entry;
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
+
+}
@@ -0,0 +1,807 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.geom.Vector2f;
+import loon.utils.FloatArray;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 分层(HPA*)寻径用类,将Field2D切分为固定大小的区块(cluster),在区块边界上生成入口(portal),并预计算区块内入口之间的开销.
+ *
+ * 查询时先在入口构成的抽象图上寻径,再把抽象路径在各区块内细化为格子路径,适合大地图上的远距离查询.
+ * 本类注册为Field2D的MapChangedListener,瓦片变化时只重建受影响的区块,重建在下一次查询时延迟执行.
+ *
+ * PS:分层寻径结果为近似最短路径(通常与A*的开销相差几个百分点),需要严格最短路径时请使用AStarGridFinder或AStarJumpFinder.
+ */
+public class AStarHierarchicalFinder implements Field2D.MapChangedListener, LRelease {
+
+	private final static int[] DIR_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] DIR_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	// 边界上连续可通行格子数量达到此值时,在两端各放置一个入口,否则只在中间放置一个
+	private final static int LONG_ENTRANCE = 6;
+
+	private final AStarGridFinder _refiner;
+
+	private Field2D _field;
+
+	private AStarFindHeuristic _findHeuristic;
+
+	private boolean _diagonal;
+
+	private int _clusterSize;
+
+	private int _width, _height, _cols, _rows;
+
+	private IntArray[] _eastPairs;
+
+	private IntArray[] _southPairs;
+
+	private IntArray[] _clusterPortals;
+
+	private float[][] _clusterCosts;
+
+	private boolean[] _dirtyClusters;
+
+	private boolean _dirty, _rebuildAll, _closed;
+
+	private int[] _nodeOf;
+
+	private int[] _nodeCells;
+
+	private int[] _nodeClusters;
+
+	private int[] _nodeLocals;
+
+	private int[] _interStart;
+
+	private int[] _interTargets;
+
+	private int _nodeCount;
+
+	private final GridHeap _localHeap = new GridHeap();
+
+	private float[] _localDist;
+
+	private int[] _localStamp;
+
+	private int _localGeneration;
+
+	private final GridHeap _abstractHeap = new GridHeap();
+
+	private float[] _abstractScores;
+
+	private int[] _abstractParents;
+
+	private int[] _abstractOpen;
+
+	private int[] _abstractClosed;
+
+	private int _abstractGeneration;
+
+	private float[] _startCosts;
+
+	private float[] _goalCosts;
+
+	private final IntArray _abstractPath = new IntArray();
+
+	private final IntArray _cellPath = new IntArray();
+
+	private int _rebuildCount;
+
+	public AStarHierarchicalFinder(Field2D field) {
+		this(field, 16, true, null);
+	}
+
+	public AStarHierarchicalFinder(Field2D field, int clusterSize, boolean diagonal) {
+		this(field, clusterSize, diagonal, null);
+	}
+
+	public AStarHierarchicalFinder(Field2D field, int clusterSize, boolean diagonal, AStarFindHeuristic heuristic) {
+		this._clusterSize = MathUtils.max(4, clusterSize);
+		this._diagonal = diagonal;
+		this._refiner = new AStarGridFinder();
+		this.setHeuristic(heuristic);
+		this.setField(field);
+	}
+
+	public AStarHierarchicalFinder setField(Field2D field) {
+		if (this._field == field) {
+			return this;
+		}
+		if (this._field != null) {
+			this._field.removeMapChangedListener(this);
+		}
+		this._field = field;
+		if (field != null) {
+			field.addMapChangedListener(this);
+		}
+		this._rebuildAll = true;
+		this._dirty = true;
+		return this;
+	}
+
+	public Field2D getField() {
+		return _field;
+	}
+
+	public AStarHierarchicalFinder setHeuristic(AStarFindHeuristic heuristic) {
+		this._findHeuristic = (heuristic == null ? (_diagonal ? AStarFinder.ASTAR_OCTILE : AStarFinder.ASTAR_MANHATTAN)
+				: heuristic);
+		this._refiner.setHeuristic(_findHeuristic);
+		return this;
+	}
+
+	public AStarFindHeuristic getHeuristic() {
+		return _findHeuristic;
+	}
+
+	public AStarHierarchicalFinder setDiagonal(boolean diagonal) {
+		if (this._diagonal != diagonal) {
+			this._diagonal = diagonal;
+			this._rebuildAll = true;
+			this._dirty = true;
+		}
+		return this;
+	}
+
+	public boolean isDiagonal() {
+		return _diagonal;
+	}
+
+	public int getClusterSize() {
+		return _clusterSize;
+	}
+
+	/**
+	 * 返回抽象图中的入口节点数量
+	 *
+	 * @return
+	 */
+	public int getNodeCount() {
+		rebuild();
+		return _nodeCount;
+	}
+
+	/**
+	 * 返回累计重建(计算区块内开销)的区块数量
+	 *
+	 * @return
+	 */
+	public int getRebuildCount() {
+		return _rebuildCount;
+	}
+
+	@Override
+	public void onChanged(Field2D field, int x, int y, int width, int height) {
+		if (field != _field || _rebuildAll) {
+			return;
+		}
+		if (field.getWidth() != _width || field.getHeight() != _height) {
+			_rebuildAll = true;
+			_dirty = true;
+			return;
+		}
+		final int minX = MathUtils.max(0, x) / _clusterSize;
+		final int minY = MathUtils.max(0, y) / _clusterSize;
+		final int maxX = MathUtils.min(_width - 1, x + width - 1) / _clusterSize;
+		final int maxY = MathUtils.min(_height - 1, y + height - 1) / _clusterSize;
+		for (int cy = minY; cy <= maxY; cy++) {
+			for (int cx = minX; cx <= maxX; cx++) {
+				_dirtyClusters[cy * _cols + cx] = true;
+			}
+		}
+		_dirty = true;
+	}
+
+	public boolean findPath(int startX, int startY, int endX, int endY, IntArray out) {
+		out.clear();
+		if (!searchCells(startX, startY, endX, endY)) {
+			return false;
+		}
+		out.addAll(_cellPath);
+		return true;
+	}
+
+	public boolean findPath(int startX, int startY, int endX, int endY, FloatArray out) {
+		out.clear();
+		if (!searchCells(startX, startY, endX, endY)) {
+			return false;
+		}
+		final int[] items = _cellPath.items;
+		for (int i = 0; i < _cellPath.length; i++) {
+			out.add(items[i]);
+		}
+		return true;
+	}
+
+	public boolean findPath(int startX, int startY, int endX, int endY, TArray<Vector2f> out) {
+		out.clear();
+		if (!searchCells(startX, startY, endX, endY)) {
+			return false;
+		}
+		final int[] items = _cellPath.items;
+		for (int i = 0; i < _cellPath.length; i += 2) {
+			out.add(new Vector2f(items[i], items[i + 1]));
+		}
+		return true;
+	}
+
+	public TArray<Vector2f> findPath(int startX, int startY, int endX, int endY) {
+		final TArray<Vector2f> result = new TArray<Vector2f>();
+		findPath(startX, startY, endX, endY, result);
+		return result;
+	}
+
+	private boolean searchCells(int startX, int startY, int endX, int endY) {
+		_cellPath.clear();
+		final Field2D field = _field;
+		if (field == null || !field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return false;
+		}
+		rebuild();
+		if (startX == endX && startY == endY) {
+			_cellPath.add(startX);
+			_cellPath.add(startY);
+			return true;
+		}
+		if (!field.isHit(endX, endY)) {
+			return false;
+		}
+		final int startCell = startY * _width + startX;
+		final int goalCell = endY * _width + endX;
+		final int startCluster = clusterOf(startX, startY);
+		final int goalCluster = clusterOf(endX, endY);
+		if (startCluster == goalCluster) {
+			if (refine(startCell, goalCell, startCluster, false)) {
+				return true;
+			}
+		}
+		if (!searchAbstract(startCell, goalCell, startCluster, goalCluster)) {
+			return false;
+		}
+		final int[] nodes = _abstractPath.items;
+		final int size = _abstractPath.length;
+		_cellPath.add(startX);
+		_cellPath.add(startY);
+		for (int i = 1; i < size; i++) {
+			final int from = nodes[i - 1];
+			final int to = nodes[i];
+			final int fromCluster = clusterOf(from % _width, from / _width);
+			if (fromCluster != clusterOf(to % _width, to / _width)) {
+				_cellPath.add(to % _width);
+				_cellPath.add(to / _width);
+			} else if (!refine(from, to, fromCluster, true)) {
+				_cellPath.clear();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean refine(int from, int to, int cluster, boolean append) {
+		final int x0 = (cluster % _cols) * _clusterSize;
+		final int y0 = (cluster / _cols) * _clusterSize;
+		final int goal = _refiner.search(_field, from % _width, from / _width, to % _width, to / _width, false,
+				_diagonal, x0, y0, x0 + _clusterSize - 1, y0 + _clusterSize - 1);
+		if (goal == -1) {
+			return false;
+		}
+		_refiner.appendPath(goal, _cellPath, append);
+		return true;
+	}
+
+	private boolean searchAbstract(int startCell, int goalCell, int startCluster, int goalCluster) {
+		_abstractPath.clear();
+		final IntArray startPortals = _clusterPortals[startCluster];
+		final IntArray goalPortals = _clusterPortals[goalCluster];
+		if (startPortals.length == 0 || goalPortals.length == 0) {
+			return false;
+		}
+		_startCosts = localCosts(startCell, startCluster, false, _startCosts);
+		_goalCosts = localCosts(goalCell, goalCluster, true, _goalCosts);
+
+		final int count = _nodeCount + 2;
+		final int startNode = _nodeCount;
+		final int goalNode = _nodeCount + 1;
+		if (_abstractScores == null || _abstractScores.length < count) {
+			final int size = count + (count >> 1);
+			_abstractScores = new float[size];
+			_abstractParents = new int[size];
+			_abstractOpen = new int[size];
+			_abstractClosed = new int[size];
+			_abstractGeneration = 0;
+		}
+		_abstractHeap.ensure(_abstractScores.length);
+		if (_abstractGeneration == Integer.MAX_VALUE) {
+			for (int i = 0; i < _abstractOpen.length; i++) {
+				_abstractOpen[i] = 0;
+				_abstractClosed[i] = 0;
+			}
+			_abstractGeneration = 0;
+		}
+		final int generation = ++_abstractGeneration;
+		final int goalX = goalCell % _width;
+		final int goalY = goalCell / _width;
+		final GridHeap heap = _abstractHeap;
+		heap.clear();
+		_abstractScores[startNode] = 0f;
+		_abstractParents[startNode] = -1;
+		_abstractOpen[startNode] = generation;
+		heap.push(startNode, 0f);
+
+		for (; !heap.isEmpty();) {
+			final int node = heap.pop();
+			if (node == goalNode) {
+				break;
+			}
+			_abstractClosed[node] = generation;
+			final float score = _abstractScores[node];
+			if (node == startNode) {
+				for (int i = 0; i < startPortals.length; i++) {
+					final float cost = _startCosts[i];
+					if (cost >= 0f) {
+						relax(node, _nodeOf[startPortals.get(i)], score + cost, goalX, goalY, generation);
+					}
+				}
+				continue;
+			}
+			final int cluster = _nodeClusters[node];
+			final int local = _nodeLocals[node];
+			final IntArray portals = _clusterPortals[cluster];
+			final float[] costs = _clusterCosts[cluster];
+			final int size = portals.length;
+			for (int i = 0; i < size; i++) {
+				final float cost = costs[local * size + i];
+				if (i != local && cost >= 0f) {
+					relax(node, _nodeOf[portals.get(i)], score + cost, goalX, goalY, generation);
+				}
+			}
+			for (int i = _interStart[node], end = _interStart[node + 1]; i < end; i++) {
+				final int target = _interTargets[i];
+				final int cell = _nodeCells[target];
+				relax(node, target, score + 1f + terrainCost(cell % _width, cell / _width), goalX, goalY,
+						generation);
+			}
+			if (cluster == goalCluster && _goalCosts[local] >= 0f) {
+				relax(node, goalNode, score + _goalCosts[local], goalX, goalY, generation);
+			}
+		}
+		if (_abstractOpen[goalNode] != generation) {
+			return false;
+		}
+		for (int node = goalNode; node != -1; node = _abstractParents[node]) {
+			if (node == startNode) {
+				_abstractPath.add(startCell);
+			} else if (node == goalNode) {
+				_abstractPath.add(goalCell);
+			} else {
+				_abstractPath.add(_nodeCells[node]);
+			}
+		}
+		_abstractPath.reverse();
+		return true;
+	}
+
+	private void relax(int from, int to, float score, int goalX, int goalY, int generation) {
+		if (_abstractClosed[to] == generation) {
+			return;
+		}
+		float h = 0f;
+		if (to < _nodeCount) {
+			final int cell = _nodeCells[to];
+			h = _findHeuristic.getScore(goalX, goalY, cell % _width, cell / _width);
+		}
+		if (_abstractOpen[to] == generation) {
+			if (score >= _abstractScores[to]) {
+				return;
+			}
+			_abstractScores[to] = score;
+			_abstractParents[to] = from;
+			_abstractHeap.decrease(to, score + h);
+		} else {
+			_abstractOpen[to] = generation;
+			_abstractScores[to] = score;
+			_abstractParents[to] = from;
+			_abstractHeap.push(to, score + h);
+		}
+	}
+
+	private float[] localCosts(int cell, int cluster, boolean reverse, float[] result) {
+		final IntArray portals = _clusterPortals[cluster];
+		if (result == null || result.length < portals.length) {
+			result = new float[MathUtils.max(8, portals.length)];
+		}
+		dijkstra(cell, cluster, reverse);
+		final int x0 = (cluster % _cols) * _clusterSize;
+		final int y0 = (cluster / _cols) * _clusterSize;
+		for (int i = 0; i < portals.length; i++) {
+			final int portal = portals.get(i);
+			final int local = (portal / _width - y0) * _clusterSize + (portal % _width - x0);
+			result[i] = _localStamp[local] == _localGeneration ? _localDist[local] : -1f;
+		}
+		return result;
+	}
+
+	/**
+	 * 在单个区块内计算源格子到区块内所有格子的最短开销,reverse为true时计算所有格子到源格子的开销
+	 */
+	private void dijkstra(int source, int cluster, boolean reverse) {
+		final Field2D field = _field;
+		final int size = _clusterSize;
+		final int x0 = (cluster % _cols) * size;
+		final int y0 = (cluster / _cols) * size;
+		final int x1 = MathUtils.min(x0 + size, _width) - 1;
+		final int y1 = MathUtils.min(y0 + size, _height) - 1;
+		if (_localDist == null) {
+			_localDist = new float[size * size];
+			_localStamp = new int[size * size];
+			_localHeap.ensure(size * size);
+		}
+		if (_localGeneration == Integer.MAX_VALUE) {
+			for (int i = 0; i < _localStamp.length; i++) {
+				_localStamp[i] = 0;
+			}
+			_localGeneration = 0;
+		}
+		final int generation = ++_localGeneration;
+		final float[] dist = _localDist;
+		final int[] stamp = _localStamp;
+		final GridHeap heap = _localHeap;
+		final int dirCount = _diagonal ? 8 : 4;
+		heap.clear();
+		final int start = (source / _width - y0) * size + (source % _width - x0);
+		dist[start] = 0f;
+		stamp[start] = generation;
+		heap.push(start, 0f);
+		for (; !heap.isEmpty();) {
+			final int current = heap.pop();
+			final int cx = x0 + current % size;
+			final int cy = y0 + current / size;
+			final float currentScore = dist[current];
+			final float extra = reverse ? terrainCost(cx, cy) : 0f;
+			for (int i = 0; i < dirCount; i++) {
+				final int nx = cx + DIR_X[i];
+				final int ny = cy + DIR_Y[i];
+				if (nx < x0 || ny < y0 || nx > x1 || ny > y1 || !field.isHit(nx, ny)) {
+					continue;
+				}
+				final float step = (i > 3 ? MathUtils.SQRT2 : 1f) + (reverse ? extra : terrainCost(nx, ny));
+				final float score = currentScore + step;
+				final int next = (ny - y0) * size + (nx - x0);
+				if (stamp[next] == generation) {
+					// 开销非负,已出堆的格子不会再被更新,因此这里的格子一定仍在堆中
+					if (score < dist[next]) {
+						dist[next] = score;
+						heap.decrease(next, score);
+					}
+				} else {
+					stamp[next] = generation;
+					dist[next] = score;
+					heap.push(next, score);
+				}
+			}
+		}
+	}
+
+	private float terrainCost(int x, int y) {
+		final int cost = _field.getCost(x, y);
+		return cost > 0 ? cost : 0f;
+	}
+
+	private int clusterOf(int x, int y) {
+		return (y / _clusterSize) * _cols + (x / _clusterSize);
+	}
+
+	/**
+	 * 重建所有被标记为脏的区块(若无变化则不执行任何操作)
+	 */
+	public void rebuild() {
+		if (!_dirty || _field == null) {
+			return;
+		}
+		if (_rebuildAll || _field.getWidth() != _width || _field.getHeight() != _height) {
+			init();
+		}
+		final int total = _cols * _rows;
+		final boolean[] portalDirty = new boolean[total];
+		for (int c = 0; c < total; c++) {
+			if (!_dirtyClusters[c]) {
+				continue;
+			}
+			final int cx = c % _cols;
+			final int cy = c / _cols;
+			buildEast(c);
+			buildSouth(c);
+			portalDirty[c] = true;
+			if (cx > 0) {
+				buildEast(c - 1);
+				portalDirty[c - 1] = true;
+			}
+			if (cy > 0) {
+				buildSouth(c - _cols);
+				portalDirty[c - _cols] = true;
+			}
+			if (cx < _cols - 1) {
+				portalDirty[c + 1] = true;
+			}
+			if (cy < _rows - 1) {
+				portalDirty[c + _cols] = true;
+			}
+		}
+		final IntArray portals = new IntArray();
+		for (int c = 0; c < total; c++) {
+			if (!portalDirty[c]) {
+				continue;
+			}
+			collectPortals(c, portals);
+			if (!_dirtyClusters[c] && _clusterCosts[c] != null && portals.equals(_clusterPortals[c])) {
+				continue;
+			}
+			_clusterPortals[c].clear();
+			_clusterPortals[c].addAll(portals);
+			buildCosts(c);
+		}
+		for (int c = 0; c < total; c++) {
+			_dirtyClusters[c] = false;
+		}
+		buildGraph();
+		_dirty = false;
+		_rebuildAll = false;
+	}
+
+	private void init() {
+		_width = _field.getWidth();
+		_height = _field.getHeight();
+		_cols = (_width + _clusterSize - 1) / _clusterSize;
+		_rows = (_height + _clusterSize - 1) / _clusterSize;
+		final int total = _cols * _rows;
+		_eastPairs = new IntArray[total];
+		_southPairs = new IntArray[total];
+		_clusterPortals = new IntArray[total];
+		_clusterCosts = new float[total][];
+		_dirtyClusters = new boolean[total];
+		for (int i = 0; i < total; i++) {
+			_eastPairs[i] = new IntArray();
+			_southPairs[i] = new IntArray();
+			_clusterPortals[i] = new IntArray();
+			_dirtyClusters[i] = true;
+		}
+		_nodeOf = new int[_width * _height];
+		for (int i = 0; i < _nodeOf.length; i++) {
+			_nodeOf[i] = -1;
+		}
+		_nodeCount = 0;
+	}
+
+	private void buildEast(int cluster) {
+		final IntArray pairs = _eastPairs[cluster];
+		pairs.clear();
+		final int cx = cluster % _cols;
+		if (cx >= _cols - 1) {
+			return;
+		}
+		final int x = (cx + 1) * _clusterSize - 1;
+		final int y0 = (cluster / _cols) * _clusterSize;
+		final int y1 = MathUtils.min(y0 + _clusterSize, _height);
+		int run = -1;
+		for (int y = y0; y <= y1; y++) {
+			final boolean open = y < y1 && _field.isHit(x, y) && _field.isHit(x + 1, y);
+			if (open && run == -1) {
+				run = y;
+			} else if (!open && run != -1) {
+				addEntrance(pairs, run, y - 1, x, true);
+				run = -1;
+			}
+		}
+	}
+
+	private void buildSouth(int cluster) {
+		final IntArray pairs = _southPairs[cluster];
+		pairs.clear();
+		final int cy = cluster / _cols;
+		if (cy >= _rows - 1) {
+			return;
+		}
+		final int y = (cy + 1) * _clusterSize - 1;
+		final int x0 = (cluster % _cols) * _clusterSize;
+		final int x1 = MathUtils.min(x0 + _clusterSize, _width);
+		int run = -1;
+		for (int x = x0; x <= x1; x++) {
+			final boolean open = x < x1 && _field.isHit(x, y) && _field.isHit(x, y + 1);
+			if (open && run == -1) {
+				run = x;
+			} else if (!open && run != -1) {
+				addEntrance(pairs, run, x - 1, y, false);
+				run = -1;
+			}
+		}
+	}
+
+	private void addEntrance(IntArray pairs, int from, int to, int line, boolean east) {
+		if (to - from + 1 >= LONG_ENTRANCE) {
+			addPair(pairs, from, line, east);
+			addPair(pairs, to, line, east);
+		} else {
+			addPair(pairs, (from + to) / 2, line, east);
+		}
+	}
+
+	private void addPair(IntArray pairs, int pos, int line, boolean east) {
+		if (east) {
+			pairs.add(pos * _width + line);
+			pairs.add(pos * _width + line + 1);
+		} else {
+			pairs.add(line * _width + pos);
+			pairs.add((line + 1) * _width + pos);
+		}
+	}
+
+	private void collectPortals(int cluster, IntArray out) {
+		out.clear();
+		final int cx = cluster % _cols;
+		final int cy = cluster / _cols;
+		addPortals(_eastPairs[cluster], 0, out);
+		addPortals(_southPairs[cluster], 0, out);
+		if (cx > 0) {
+			addPortals(_eastPairs[cluster - 1], 1, out);
+		}
+		if (cy > 0) {
+			addPortals(_southPairs[cluster - _cols], 1, out);
+		}
+	}
+
+	private void addPortals(IntArray pairs, int offset, IntArray out) {
+		for (int i = offset; i < pairs.length; i += 2) {
+			final int cell = pairs.get(i);
+			if (!out.contains(cell)) {
+				out.add(cell);
+			}
+		}
+	}
+
+	private void buildCosts(int cluster) {
+		final IntArray portals = _clusterPortals[cluster];
+		final int size = portals.length;
+		float[] costs = _clusterCosts[cluster];
+		if (costs == null || costs.length < size * size) {
+			costs = new float[size * size];
+			_clusterCosts[cluster] = costs;
+		}
+		final int x0 = (cluster % _cols) * _clusterSize;
+		final int y0 = (cluster / _cols) * _clusterSize;
+		for (int i = 0; i < size; i++) {
+			dijkstra(portals.get(i), cluster, false);
+			for (int j = 0; j < size; j++) {
+				final int portal = portals.get(j);
+				final int local = (portal / _width - y0) * _clusterSize + (portal % _width - x0);
+				costs[i * size + j] = (_localStamp[local] == _localGeneration) ? _localDist[local] : -1f;
+			}
+		}
+		_rebuildCount++;
+	}
+
+	private void buildGraph() {
+		final int total = _cols * _rows;
+		for (int i = 0; i < _nodeCount; i++) {
+			_nodeOf[_nodeCells[i]] = -1;
+		}
+		int count = 0;
+		for (int c = 0; c < total; c++) {
+			count += _clusterPortals[c].length;
+		}
+		if (_nodeCells == null || _nodeCells.length < count) {
+			final int size = MathUtils.max(8, count + (count >> 1));
+			_nodeCells = new int[size];
+			_nodeClusters = new int[size];
+			_nodeLocals = new int[size];
+			_interStart = new int[size + 1];
+		}
+		int node = 0;
+		for (int c = 0; c < total; c++) {
+			final IntArray portals = _clusterPortals[c];
+			for (int i = 0; i < portals.length; i++) {
+				final int cell = portals.get(i);
+				_nodeCells[node] = cell;
+				_nodeClusters[node] = c;
+				_nodeLocals[node] = i;
+				_nodeOf[cell] = node;
+				node++;
+			}
+		}
+		_nodeCount = count;
+		final int[] degree = new int[count + 1];
+		int edges = 0;
+		for (int c = 0; c < total; c++) {
+			edges += countEdges(_eastPairs[c], degree);
+			edges += countEdges(_southPairs[c], degree);
+		}
+		_interStart[0] = 0;
+		for (int i = 0; i < count; i++) {
+			_interStart[i + 1] = _interStart[i] + degree[i];
+			degree[i] = _interStart[i];
+		}
+		if (_interTargets == null || _interTargets.length < edges) {
+			_interTargets = new int[MathUtils.max(8, edges + (edges >> 1))];
+		}
+		for (int c = 0; c < total; c++) {
+			fillEdges(_eastPairs[c], degree);
+			fillEdges(_southPairs[c], degree);
+		}
+	}
+
+	private int countEdges(IntArray pairs, int[] degree) {
+		for (int i = 0; i < pairs.length; i += 2) {
+			degree[_nodeOf[pairs.get(i)]]++;
+			degree[_nodeOf[pairs.get(i + 1)]]++;
+		}
+		return pairs.length;
+	}
+
+	private void fillEdges(IntArray pairs, int[] offsets) {
+		for (int i = 0; i < pairs.length; i += 2) {
+			final int a = _nodeOf[pairs.get(i)];
+			final int b = _nodeOf[pairs.get(i + 1)];
+			_interTargets[offsets[a]++] = b;
+			_interTargets[offsets[b]++] = a;
+		}
+	}
+
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	@Override
+	public void close() {
+		if (_field != null) {
+			_field.removeMapChangedListener(this);
+			_field = null;
+		}
+		_refiner.close();
+		_localHeap.close();
+		_abstractHeap.close();
+		_eastPairs = null;
+		_southPairs = null;
+		_clusterPortals = null;
+		_clusterCosts = null;
+		_dirtyClusters = null;
+		_nodeOf = null;
+		_nodeCells = null;
+		_nodeClusters = null;
+		_nodeLocals = null;
+		_interStart = null;
+		_interTargets = null;
+		_localDist = null;
+		_localStamp = null;
+		_abstractScores = null;
+		_abstractParents = null;
+		_abstractOpen = null;
+		_abstractClosed = null;
+		_nodeCount = 0;
+		_closed = true;
+	}
+
+}
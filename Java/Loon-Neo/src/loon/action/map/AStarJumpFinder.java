@@ -0,0 +1,243 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.utils.MathUtils;
+
+/**
+ * 跳点寻径(Jump Point Search)用类,仅适用于8方向移动且无额外开销的网格地图,在大面积空旷地图上只展开跳点而非全部格子.
+ *
+ * 搜索结果与AStarGridFinder在8方向模式下的路径开销一致(使用Octile估值时),输出时会自动补齐跳点之间的格子.
+ * 若查询为bevel模式,非8方向,或Field2D设置了额外开销,则自动退回普通的网格A*查询.
+ */
+public class AStarJumpFinder extends AStarGridFinder {
+
+	private Field2D _jumpField;
+
+	private boolean[] _walkable;
+
+	private int _walkableVersion;
+
+	private boolean _walkableFlying;
+
+	private int _goalX, _goalY;
+
+	public AStarJumpFinder() {
+		this(AStarFinder.ASTAR_OCTILE);
+	}
+
+	public AStarJumpFinder(AStarFindHeuristic heuristic) {
+		this(heuristic, false);
+	}
+
+	public AStarJumpFinder(AStarFindHeuristic heuristic, boolean flying) {
+		super(heuristic == null ? AStarFinder.ASTAR_OCTILE : heuristic, flying);
+	}
+
+	@Override
+	public AStarGridFinder setHeuristic(AStarFindHeuristic heuristic) {
+		return super.setHeuristic(heuristic == null ? AStarFinder.ASTAR_OCTILE : heuristic);
+	}
+
+	@Override
+	public int search(Field2D field, int startX, int startY, int endX, int endY, boolean bevel, boolean diagonal) {
+		if (field == null) {
+			return -1;
+		}
+		if (bevel || !diagonal || field.hasCost()) {
+			return super.search(field, startX, startY, endX, endY, bevel, diagonal);
+		}
+		_expanded = 0;
+		if (!field.contains(startX, startY) || !field.contains(endX, endY)) {
+			return -1;
+		}
+		prepare(field.getWidth(), field.getHeight());
+		updateWalkable(field);
+		this._goalX = endX;
+		this._goalY = endY;
+		final int width = _width;
+		final int start = startY * width + startX;
+		final int goal = endY * width + endX;
+		final int generation = _generation;
+		final int[] parents = _parents;
+		final int[] closedStamp = _closedStamp;
+		final GridHeap openHeap = _openHeap;
+
+		openHeap.clear();
+		parents[start] = -1;
+		_gScores[start] = 0f;
+		_openStamp[start] = generation;
+		openHeap.push(start, _findHeuristic.getScore(endX, endY, startX, startY));
+
+		for (; !openHeap.isEmpty();) {
+			final int current = openHeap.pop();
+			if (current == goal) {
+				return goal;
+			}
+			closedStamp[current] = generation;
+			if (++_expanded > _overflow && _overflow > -1) {
+				return -1;
+			}
+			final int x = current % width;
+			final int y = current / width;
+			final int parent = parents[current];
+			if (parent == -1) {
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dx = -1; dx <= 1; dx++) {
+						if (dx != 0 || dy != 0) {
+							jumpFrom(current, x, y, dx, dy);
+						}
+					}
+				}
+				continue;
+			}
+			final int dx = MathUtils.sign(x - parent % width);
+			final int dy = MathUtils.sign(y - parent / width);
+			if (dx != 0 && dy != 0) {
+				if (walkable(x, y + dy)) {
+					jumpFrom(current, x, y, 0, dy);
+				}
+				if (walkable(x + dx, y)) {
+					jumpFrom(current, x, y, dx, 0);
+				}
+				if (walkable(x + dx, y + dy)) {
+					jumpFrom(current, x, y, dx, dy);
+				}
+				if (!walkable(x - dx, y)) {
+					jumpFrom(current, x, y, -dx, dy);
+				}
+				if (!walkable(x, y - dy)) {
+					jumpFrom(current, x, y, dx, -dy);
+				}
+			} else if (dx != 0) {
+				jumpFrom(current, x, y, dx, 0);
+				if (!walkable(x, y + 1)) {
+					jumpFrom(current, x, y, dx, 1);
+				}
+				if (!walkable(x, y - 1)) {
+					jumpFrom(current, x, y, dx, -1);
+				}
+			} else {
+				jumpFrom(current, x, y, 0, dy);
+				if (!walkable(x + 1, y)) {
+					jumpFrom(current, x, y, 1, dy);
+				}
+				if (!walkable(x - 1, y)) {
+					jumpFrom(current, x, y, -1, dy);
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 缓存地图的可通行状态,仅当地图或其版本号变化时重新生成,避免跳跃扫描中反复调用Field2D.isHit
+	 */
+	private void updateWalkable(Field2D field) {
+		final int size = _width * _height;
+		if (_jumpField == field && _walkable != null && _walkable.length == size
+				&& _walkableVersion == field.getVersion() && _walkableFlying == _flying) {
+			return;
+		}
+		if (_walkable == null || _walkable.length != size) {
+			_walkable = new boolean[size];
+		}
+		for (int y = 0; y < _height; y++) {
+			for (int x = 0; x < _width; x++) {
+				_walkable[y * _width + x] = _flying || field.isHit(x, y);
+			}
+		}
+		_jumpField = field;
+		_walkableVersion = field.getVersion();
+		_walkableFlying = _flying;
+	}
+
+	private void jumpFrom(int current, int x, int y, int dx, int dy) {
+		final int point = jump(x + dx, y + dy, dx, dy);
+		if (point == -1 || _closedStamp[point] == _generation) {
+			return;
+		}
+		final int px = point % _width;
+		final int py = point / _width;
+		final int ax = MathUtils.abs(px - x);
+		final int ay = MathUtils.abs(py - y);
+		final int min = MathUtils.min(ax, ay);
+		final float score = _gScores[current] + min * MathUtils.SQRT2 + (MathUtils.max(ax, ay) - min);
+		final float h = _findHeuristic.getScore(_goalX, _goalY, px, py);
+		if (_openStamp[point] == _generation) {
+			if (score >= _gScores[point]) {
+				return;
+			}
+			_gScores[point] = score;
+			_parents[point] = current;
+			_openHeap.decrease(point, score + h);
+		} else {
+			_openStamp[point] = _generation;
+			_gScores[point] = score;
+			_parents[point] = current;
+			_openHeap.push(point, score + h);
+		}
+	}
+
+	private int jump(int x, int y, int dx, int dy) {
+		for (;;) {
+			if (!walkable(x, y)) {
+				return -1;
+			}
+			if (x == _goalX && y == _goalY) {
+				return y * _width + x;
+			}
+			if (dx != 0 && dy != 0) {
+				if ((walkable(x - dx, y + dy) && !walkable(x - dx, y))
+						|| (walkable(x + dx, y - dy) && !walkable(x, y - dy))) {
+					return y * _width + x;
+				}
+				if (jump(x + dx, y, dx, 0) != -1 || jump(x, y + dy, 0, dy) != -1) {
+					return y * _width + x;
+				}
+			} else if (dx != 0) {
+				if ((walkable(x + dx, y + 1) && !walkable(x, y + 1))
+						|| (walkable(x + dx, y - 1) && !walkable(x, y - 1))) {
+					return y * _width + x;
+				}
+			} else {
+				if ((walkable(x + 1, y + dy) && !walkable(x + 1, y))
+						|| (walkable(x - 1, y + dy) && !walkable(x - 1, y))) {
+					return y * _width + x;
+				}
+			}
+			x += dx;
+			y += dy;
+		}
+	}
+
+	private boolean walkable(int x, int y) {
+		return x >= 0 && y >= 0 && x < _width && y < _height && _walkable[y * _width + x];
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		_walkable = null;
+		_jumpField = null;
+	}
+
+}
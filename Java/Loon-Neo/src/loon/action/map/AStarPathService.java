@@ -0,0 +1,675 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+import loon.utils.processes.GameProcessType;
+import loon.utils.processes.RealtimeProcess;
+import loon.utils.processes.RealtimeProcessManager;
+import loon.utils.timer.LTimerContext;
+
+/**
+ * 异步寻径服务,寻径请求在游戏线程提交,由若干worker在后台线程(平台支持异步时)执行,结果在游戏线程中通过AStarFinderListener返回.
+ *
+ * 每个worker持有独立的寻径状态(AStarGridFinder与AStarJumpFinder)以及一对单生产者单消费者的无锁环形队列
+ * (游戏线程写入请求,worker写入结果),因此提交与回收结果都不需要加锁.相同参数且尚未完成的请求会被合并为一次查询.
+ *
+ * PS:worker在后台读取Field2D,地图请在游戏线程修改,若查询期间地图发生变化,该请求会自动重新查询一次.
+ */
+public class AStarPathService implements LRelease {
+
+	/**
+	 * 后台任务执行器,默认使用LSystem.invokeAsync
+	 */
+	public static interface Executor {
+
+		public void execute(Runnable task);
+
+	}
+
+	/**
+	 * 寻径请求,同时也是寻径结果的载体
+	 */
+	public static class PathRequest {
+
+		private Field2D _field;
+
+		private AStarFindHeuristic _heuristic;
+
+		private int _algorithm;
+
+		private int _startX, _startY, _endX, _endY;
+
+		private boolean _flying, _bevel, _diagonal;
+
+		private int _version;
+
+		private int _retries;
+
+		private final IntArray _path = new IntArray();
+
+		private final TArray<AStarFinderListener> _listeners = new TArray<AStarFinderListener>(1);
+
+		private boolean _found;
+
+		private volatile boolean _cancelled;
+
+		private boolean _done;
+
+		PathRequest set(int algorithm, AStarFindHeuristic heuristic, Field2D field, int startX, int startY, int endX,
+				int endY, boolean flying, boolean bevel, boolean diagonal) {
+			this._algorithm = algorithm;
+			this._heuristic = heuristic;
+			this._field = field;
+			this._startX = startX;
+			this._startY = startY;
+			this._endX = endX;
+			this._endY = endY;
+			this._flying = flying;
+			this._bevel = bevel;
+			this._diagonal = diagonal;
+			return this;
+		}
+
+		/**
+		 * 取消此请求(所有合并到此请求的监听都不会再收到结果)
+		 */
+		public void cancel() {
+			this._cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return _cancelled;
+		}
+
+		public boolean isDone() {
+			return _done;
+		}
+
+		public boolean isFound() {
+			return _found;
+		}
+
+		/**
+		 * 返回以[x0,y0,x1,y1...]格式存储的路径(仅在isDone为true后有效)
+		 *
+		 * @return
+		 */
+		public IntArray getPath() {
+			return _path;
+		}
+
+		public Field2D getField() {
+			return _field;
+		}
+
+		public int getStartX() {
+			return _startX;
+		}
+
+		public int getStartY() {
+			return _startY;
+		}
+
+		public int getEndX() {
+			return _endX;
+		}
+
+		public int getEndY() {
+			return _endY;
+		}
+
+		@Override
+		public int hashCode() {
+			int hashCode = LSystem.unite(1, _field);
+			hashCode = LSystem.unite(hashCode, _heuristic == null ? -1 : _heuristic.getTypeCode());
+			hashCode = LSystem.unite(hashCode, _algorithm);
+			hashCode = LSystem.unite(hashCode, _startX);
+			hashCode = LSystem.unite(hashCode, _startY);
+			hashCode = LSystem.unite(hashCode, _endX);
+			hashCode = LSystem.unite(hashCode, _endY);
+			hashCode = LSystem.unite(hashCode, _flying);
+			hashCode = LSystem.unite(hashCode, _bevel);
+			hashCode = LSystem.unite(hashCode, _diagonal);
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this) {
+				return true;
+			}
+			if (!(o instanceof PathRequest)) {
+				return false;
+			}
+			final PathRequest other = (PathRequest) o;
+			return _field == other._field && _heuristic == other._heuristic && _algorithm == other._algorithm
+					&& _startX == other._startX && _startY == other._startY && _endX == other._endX
+					&& _endY == other._endY && _flying == other._flying && _bevel == other._bevel
+					&& _diagonal == other._diagonal;
+		}
+	}
+
+	/**
+	 * 单生产者单消费者的定长无锁环形队列
+	 */
+	private static class RequestRing {
+
+		private final PathRequest[] _items;
+
+		private final int _mask;
+
+		private volatile int _head;
+
+		private volatile int _tail;
+
+		RequestRing(int capacity) {
+			int size = 2;
+			for (; size < capacity;) {
+				size <<= 1;
+			}
+			this._items = new PathRequest[size];
+			this._mask = size - 1;
+		}
+
+		boolean offer(PathRequest request) {
+			final int tail = _tail;
+			if (tail - _head >= _items.length) {
+				return false;
+			}
+			_items[tail & _mask] = request;
+			_tail = tail + 1;
+			return true;
+		}
+
+		PathRequest poll() {
+			final int head = _head;
+			if (head == _tail) {
+				return null;
+			}
+			final int index = head & _mask;
+			final PathRequest request = _items[index];
+			_items[index] = null;
+			_head = head + 1;
+			return request;
+		}
+
+		int size() {
+			return _tail - _head;
+		}
+
+		int capacity() {
+			return _items.length;
+		}
+	}
+
+	private final static class Worker implements Runnable {
+
+		private final RequestRing _requests;
+
+		private final RequestRing _results;
+
+		private final AStarGridFinder _gridFinder = new AStarGridFinder();
+
+		private final AStarJumpFinder _jumpFinder = new AStarJumpFinder();
+
+		private volatile boolean _busy;
+
+		private int _inFlight;
+
+		private int _limit = -1;
+
+		Worker(int capacity) {
+			this._requests = new RequestRing(capacity);
+			this._results = new RequestRing(_requests.capacity());
+		}
+
+		@Override
+		public void run() {
+			try {
+				int count = 0;
+				for (PathRequest request; (_limit < 0 || count < _limit) && (request = _requests.poll()) != null;) {
+					if (!request._cancelled) {
+						search(request);
+						count++;
+					}
+					_results.offer(request);
+				}
+			} finally {
+				_busy = false;
+			}
+		}
+
+		private void search(PathRequest request) {
+			final AStarGridFinder finder = (request._algorithm == AStarFinder.JPS) ? _jumpFinder : _gridFinder;
+			finder.setHeuristic(request._heuristic);
+			finder.setFlying(request._flying);
+			request._found = finder.findPath(request._field, request._startX, request._startY, request._endX,
+					request._endY, request._bevel, request._diagonal, request._path);
+		}
+
+		void close() {
+			_gridFinder.close();
+			_jumpFinder.close();
+		}
+	}
+
+	private final static class ServiceProcess extends RealtimeProcess {
+
+		private final AStarPathService _service;
+
+		ServiceProcess(AStarPathService service) {
+			super("AStarPathService", 0);
+			this._service = service;
+			this.setProcessType(GameProcessType.Progress);
+		}
+
+		@Override
+		public void run(LTimerContext time) {
+			_service.update();
+		}
+	}
+
+	private final Worker[] _workers;
+
+	private final TArray<PathRequest> _pending = new TArray<PathRequest>();
+
+	private final ObjectMap<PathRequest, PathRequest> _inflight = new ObjectMap<PathRequest, PathRequest>();
+
+	private final PathRequest _lookup = new PathRequest();
+
+	private Executor _executor;
+
+	private RealtimeProcess _process;
+
+	private int _maxPending;
+
+	private int _resultsPerFrame = -1;
+
+	private int _syncSearchesPerFrame = 8;
+
+	private int _nextWorker;
+
+	private int _submitted, _merged, _completed, _rejected;
+
+	private boolean _closed;
+
+	public AStarPathService() {
+		this(2);
+	}
+
+	public AStarPathService(int workers) {
+		this(workers, 256);
+	}
+
+	/**
+	 * 构建寻径服务
+	 *
+	 * @param workers  worker数量(即可并行查询的数量)
+	 * @param capacity 每个worker的队列容量,等待队列总上限为workers*capacity
+	 */
+	public AStarPathService(int workers, int capacity) {
+		final int count = workers < 1 ? 1 : workers;
+		this._workers = new Worker[count];
+		for (int i = 0; i < count; i++) {
+			this._workers[i] = new Worker(capacity < 1 ? 1 : capacity);
+		}
+		this._maxPending = count * _workers[0]._requests.capacity();
+	}
+
+	/**
+	 * 注册到RealtimeProcessManager,在每帧自动调用update
+	 *
+	 * @return
+	 */
+	public AStarPathService start() {
+		if (_process == null || _process.isDead()) {
+			_process = new ServiceProcess(this);
+			RealtimeProcessManager.get().addProcess(_process);
+		}
+		return this;
+	}
+
+	public AStarPathService stop() {
+		if (_process != null) {
+			_process.kill();
+			_process = null;
+		}
+		return this;
+	}
+
+	public AStarPathService setExecutor(Executor executor) {
+		this._executor = executor;
+		return this;
+	}
+
+	public Executor getExecutor() {
+		return _executor;
+	}
+
+	/**
+	 * 设置每帧最多回调的结果数量,小于0时不限制
+	 *
+	 * @param max
+	 * @return
+	 */
+	public AStarPathService setResultsPerFrame(int max) {
+		this._resultsPerFrame = max;
+		return this;
+	}
+
+	public int getResultsPerFrame() {
+		return _resultsPerFrame;
+	}
+
+	/**
+	 * 设置平台不支持异步时,每帧在游戏线程中最多执行的查询数量
+	 *
+	 * @param max
+	 * @return
+	 */
+	public AStarPathService setSyncSearchesPerFrame(int max) {
+		this._syncSearchesPerFrame = max;
+		return this;
+	}
+
+	public int getSyncSearchesPerFrame() {
+		return _syncSearchesPerFrame;
+	}
+
+	public AStarPathService setMaxPending(int max) {
+		this._maxPending = max;
+		return this;
+	}
+
+	public int getMaxPending() {
+		return _maxPending;
+	}
+
+	public int getWorkerCount() {
+		return _workers.length;
+	}
+
+	public PathRequest submit(Field2D field, int startX, int startY, int endX, int endY, boolean diagonal,
+			AStarFinderListener listener) {
+		return submit(AStarFinder.ASTAR, null, field, startX, startY, endX, endY, false, false, diagonal, listener);
+	}
+
+	public PathRequest submit(AStarFindHeuristic heuristic, Field2D field, int startX, int startY, int endX, int endY,
+			boolean flying, boolean diagonal, AStarFinderListener listener) {
+		return submit(AStarFinder.ASTAR, heuristic, field, startX, startY, endX, endY, flying, false, diagonal,
+				listener);
+	}
+
+	/**
+	 * 提交寻径请求(仅限游戏线程调用)
+	 *
+	 * @param algorithm ASTAR(或DIJKSTRA)使用网格A*,JPS使用跳点寻径
+	 * @param heuristic
+	 * @param field
+	 * @param startX
+	 * @param startY
+	 * @param endX
+	 * @param endY
+	 * @param flying
+	 * @param bevel
+	 * @param diagonal
+	 * @param listener
+	 * @return 请求对象,若等待队列已满则返回null
+	 */
+	public PathRequest submit(int algorithm, AStarFindHeuristic heuristic, Field2D field, int startX, int startY,
+			int endX, int endY, boolean flying, boolean bevel, boolean diagonal, AStarFinderListener listener) {
+		if (_closed || field == null) {
+			return null;
+		}
+		final AStarFindHeuristic findHeuristic = (heuristic == null ? AStarFinder.ASTAR_MANHATTAN : heuristic);
+		final int mode = (algorithm == AStarFinder.JPS) ? AStarFinder.JPS : AStarFinder.ASTAR;
+		_lookup.set(mode, findHeuristic, field, startX, startY, endX, endY, flying, bevel, diagonal);
+		PathRequest request = _inflight.get(_lookup);
+		if (request != null && !request._cancelled) {
+			if (listener != null && !request._listeners.contains(listener)) {
+				request._listeners.add(listener);
+			}
+			_merged++;
+			return request;
+		}
+		if (_pending.size + inFlightCount() >= _maxPending) {
+			_rejected++;
+			return null;
+		}
+		request = new PathRequest().set(mode, findHeuristic, field, startX, startY, endX, endY, flying, bevel,
+				diagonal);
+		if (listener != null) {
+			request._listeners.add(listener);
+		}
+		request._version = field.getVersion();
+		_inflight.put(request, request);
+		_pending.add(request);
+		_submitted++;
+		dispatch();
+		return request;
+	}
+
+	/**
+	 * 移除请求中的指定监听,若请求不再有任何监听则取消该请求
+	 *
+	 * @param request
+	 * @param listener
+	 */
+	public void cancel(PathRequest request, AStarFinderListener listener) {
+		if (request == null) {
+			return;
+		}
+		request._listeners.remove(listener);
+		if (request._listeners.size == 0) {
+			cancel(request);
+		}
+	}
+
+	public void cancel(PathRequest request) {
+		if (request == null) {
+			return;
+		}
+		request.cancel();
+		if (_inflight.get(request) == request) {
+			_inflight.remove(request);
+		}
+		if (_pending.removeValue(request, true)) {
+			request._done = true;
+		}
+	}
+
+	/**
+	 * 取消所有尚未完成的请求
+	 */
+	public void cancelAll() {
+		for (PathRequest request : _inflight.values()) {
+			request.cancel();
+		}
+		_inflight.clear();
+		_pending.clear();
+	}
+
+	/**
+	 * 每帧调用一次(游戏线程),回收查询结果并派发新请求
+	 */
+	public void update() {
+		if (_closed) {
+			return;
+		}
+		collect();
+		dispatch();
+	}
+
+	private void collect() {
+		int budget = _resultsPerFrame;
+		for (int i = 0; i < _workers.length; i++) {
+			final Worker worker = _workers[i];
+			for (; budget != 0;) {
+				final PathRequest request = worker._results.poll();
+				if (request == null) {
+					break;
+				}
+				worker._inFlight--;
+				if (request._cancelled) {
+					request._done = true;
+					continue;
+				}
+				if (request._version != request._field.getVersion() && request._retries < 1) {
+					request._retries++;
+					request._version = request._field.getVersion();
+					_pending.add(request);
+					continue;
+				}
+				if (_inflight.get(request) == request) {
+					_inflight.remove(request);
+				}
+				request._done = true;
+				_completed++;
+				deliver(request);
+				if (budget > 0) {
+					budget--;
+				}
+			}
+		}
+	}
+
+	private void deliver(PathRequest request) {
+		if (request._listeners.size == 0) {
+			return;
+		}
+		TArray<Vector2f> path = null;
+		if (request._found) {
+			final IntArray cells = request._path;
+			path = new TArray<Vector2f>(cells.length / 2);
+			for (int i = 0; i < cells.length; i += 2) {
+				path.add(new Vector2f(cells.get(i), cells.get(i + 1)));
+			}
+		}
+		for (int i = 0; i < request._listeners.size; i++) {
+			final AStarFinderListener listener = request._listeners.get(i);
+			if (listener != null) {
+				listener.pathFound(i == 0 || path == null ? path : new TArray<Vector2f>(path));
+			}
+		}
+	}
+
+	private void dispatch() {
+		final int count = _workers.length;
+		for (int i = 0; i < _pending.size;) {
+			final PathRequest request = _pending.get(i);
+			if (request._cancelled) {
+				_pending.removeIndex(i);
+				request._done = true;
+				continue;
+			}
+			Worker target = null;
+			for (int j = 0; j < count; j++) {
+				final Worker worker = _workers[(_nextWorker + j) % count];
+				if (worker._inFlight < worker._requests.capacity()) {
+					target = worker;
+					_nextWorker = (_nextWorker + j + 1) % count;
+					break;
+				}
+			}
+			if (target == null) {
+				break;
+			}
+			target._inFlight++;
+			target._requests.offer(request);
+			_pending.removeIndex(i);
+		}
+		final boolean async = _executor != null || LSystem.isAsyncSupported();
+		for (int i = 0; i < count; i++) {
+			final Worker worker = _workers[i];
+			if (worker._busy || worker._requests.size() == 0) {
+				continue;
+			}
+			worker._busy = true;
+			if (async) {
+				worker._limit = -1;
+				if (_executor != null) {
+					_executor.execute(worker);
+				} else {
+					LSystem.invokeAsync(worker);
+				}
+			} else {
+				worker._limit = _syncSearchesPerFrame;
+				worker.run();
+			}
+		}
+	}
+
+	private int inFlightCount() {
+		int count = 0;
+		for (int i = 0; i < _workers.length; i++) {
+			count += _workers[i]._inFlight;
+		}
+		return count;
+	}
+
+	/**
+	 * 返回等待派发与正在查询的请求数量
+	 *
+	 * @return
+	 */
+	public int getPendingCount() {
+		return _pending.size + inFlightCount();
+	}
+
+	public int getSubmittedCount() {
+		return _submitted;
+	}
+
+	public int getMergedCount() {
+		return _merged;
+	}
+
+	public int getCompletedCount() {
+		return _completed;
+	}
+
+	public int getRejectedCount() {
+		return _rejected;
+	}
+
+	public boolean isClosed() {
+		return _closed;
+	}
+
+	@Override
+	public void close() {
+		stop();
+		cancelAll();
+		for (int i = 0; i < _workers.length; i++) {
+			if (!_workers[i]._busy) {
+				_workers[i].close();
+			}
+		}
+		_closed = true;
+	}
+
+}
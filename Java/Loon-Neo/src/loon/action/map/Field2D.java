@@ -52,6 +52,15 @@ public class Field2D implements IArray, Config, LRelease {
 
 	}
 
+	/**
+	 * 地图数据(瓦片,限制或开销)变化时触发的监听器,参数为发生变化的瓦片区域
+	 */
+	public static interface MapChangedListener {
+
+		public void onChanged(Field2D field, int x, int y, int width, int height);
+
+	}
+
 	private final static int[][][] NEIGHBORS = { { { 1, 1 }, { 1, 0 }, { 0, -1 }, { -1, 0 }, { -1, 1 }, { 0, 1 } },
 			{ { 1, 0 }, { 1, -1 }, { 0, -1 }, { -1, -1 }, { -1, 0 }, { 0, 1 } } };
 
@@ -88,6 +97,10 @@ public class Field2D implements IArray, Config, LRelease {
 
 	private IntMap<Integer> _costMap;
 
+	private TArray<MapChangedListener> _changedListeners;
+
+	private int _version;
+
 	public Object Tag;
 
 	public final static RectBox inflateBounds(RectBox rect, float x, float y) {
@@ -803,6 +816,8 @@ public class Field2D implements IArray, Config, LRelease {
 		if (field._allowMove != null) {
 			this._allowMove = new IntArray(field._allowMove);
 		}
+		// 移动限制与允许移动的瓦片在set之后才复制,需要再次通知
+		this.notifyChanged();
 		return this;
 	}
 
@@ -1024,7 +1039,7 @@ public class Field2D implements IArray, Config, LRelease {
 				}
 			}
 		}
-		this._mapDirty = true;
+		this.notifyChanged();
 		return this;
 	}
 
@@ -1042,11 +1057,13 @@ public class Field2D implements IArray, Config, LRelease {
 
 	public Field2D setLimit(int... limit) {
 		this._moveLimited = limit;
+		this.notifyChanged();
 		return this;
 	}
 
 	public Field2D setAllowMove(int... args) {
 		this._allowMove.addAll(args);
+		this.notifyChanged();
 		return this;
 	}
 
@@ -1065,7 +1082,7 @@ public class Field2D implements IArray, Config, LRelease {
 				}
 			}
 		}
-		this._mapDirty = true;
+		this.notifyChanged();
 		return this;
 	}
 
@@ -1089,8 +1106,10 @@ public class Field2D implements IArray, Config, LRelease {
 			if (!contains(x, y)) {
 				return this;
 			}
-			this._mapArrays[y][x] = tile;
-			this._mapDirty = true;
+			if (this._mapArrays[y][x] != tile) {
+				this._mapArrays[y][x] = tile;
+				this.notifyChanged(x, y, 1, 1);
+			}
 		} catch (Throwable e) {
 		}
 		return this;
@@ -1135,10 +1154,59 @@ public class Field2D implements IArray, Config, LRelease {
 		} else {
 			this._mapArrays = CollectionUtils.copyOf(arrays);
 		}
-		this._mapDirty = true;
+		// 先更新宽高,使监听器收到的变化区域与新地图一致
+		this._width = arrays[0].length;
+		this._height = arrays.length;
+		this.notifyChanged();
 		return this;
 	}
 
+	/**
+	 * 返回地图数据的修改版本号,每次瓦片,限制或开销变化时递增
+	 * 
+	 * @return
+	 */
+	public int getVersion() {
+		return this._version;
+	}
+
+	public Field2D addMapChangedListener(MapChangedListener listener) {
+		if (listener == null) {
+			return this;
+		}
+		if (_changedListeners == null) {
+			_changedListeners = new TArray<MapChangedListener>();
+		}
+		if (!_changedListeners.contains(listener)) {
+			_changedListeners.add(listener);
+		}
+		return this;
+	}
+
+	public Field2D removeMapChangedListener(MapChangedListener listener) {
+		if (_changedListeners != null && listener != null) {
+			_changedListeners.remove(listener);
+		}
+		return this;
+	}
+
+	protected void notifyChanged() {
+		notifyChanged(0, 0, _width, _height);
+	}
+
+	protected void notifyChanged(int x, int y, int width, int height) {
+		this._mapDirty = true;
+		this._version++;
+		if (_changedListeners != null) {
+			for (int i = _changedListeners.size - 1; i > -1; i--) {
+				MapChangedListener listener = _changedListeners.get(i);
+				if (listener != null) {
+					listener.onChanged(this, x, y, width, height);
+				}
+			}
+		}
+	}
+
 	public boolean isDirty() {
 		return this._mapDirty;
 	}
@@ -1479,7 +1547,7 @@ public class Field2D implements IArray, Config, LRelease {
 				_mapArrays[i][j] = val;
 			}
 		}
-		this._mapDirty = true;
+		this.notifyChanged();
 		return this;
 	}
 
@@ -1752,12 +1820,22 @@ public class Field2D implements IArray, Config, LRelease {
 	}
 
 	public Field2D clearCost() {
-		if (_costMap != null) {
+		if (_costMap != null && _costMap.size > 0) {
 			_costMap.clear();
+			notifyChanged();
 		}
 		return this;
 	}
 
+	/**
+	 * 是否设置了任意瓦片的额外行走开销
+	 * 
+	 * @return
+	 */
+	public boolean hasCost() {
+		return _costMap != null && _costMap.size > 0;
+	}
+
 	public Field2D setCost(int x, int y, int cost) {
 		if (contains(x, y)) {
 			if (_costMap == null) {
@@ -1767,6 +1845,7 @@ public class Field2D implements IArray, Config, LRelease {
 			hashCode = LSystem.unite(hashCode, x);
 			hashCode = LSystem.unite(hashCode, y);
 			_costMap.put(hashCode, Integer.valueOf(cost));
+			notifyChanged(x, y, 1, 1);
 		}
 		return this;
 	}
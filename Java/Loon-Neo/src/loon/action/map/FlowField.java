@@ -0,0 +1,725 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+import loon.LRelease;
+import loon.geom.PointI;
+import loon.geom.Vector2f;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+import loon.utils.TArray;
+
+/**
+ * 流场(Flow Field/Dijkstra Map)寻径用类,以一个或多个目标格子为源点,对整张Field2D做一次Dijkstra积分,得到每个格子到最近目标的距离,
+ * 再为每个格子记录一个指向更近格子的方向(每格1字节).之后任意数量的单位都可以O(1)地查询下一步,适合大量单位前往同一目标的场合.
+ *
+ * 格子开销与AStarGridFinder一致(正向1,斜向根号2,加上Field2D.getCost的额外开销),不可行走的格子由Field2D.isHit判定.
+ * 地图变化时(MapChangedListener)只记录脏区域,在下次update中仅重新计算受影响的格子.方向提取按瓦片块进行,
+ * 块之间互不依赖,可以通过buildDirections(x,y,w,h)分配到多个线程执行.
+ *
+ * PS:此类实例非线程安全,Field2D应在游戏线程中修改.
+ */
+public class FlowField implements Field2D.MapChangedListener, LRelease {
+
+	/**
+	 * 无方向(不可行走,无法到达或已在目标上)
+	 */
+	public final static byte NONE = -1;
+
+	// 与AStarGridFinder非bevel模式的方向顺序一致
+	private final static int[] DIR_X = { 0, 1, 0, -1, -1, 1, 1, -1 };
+
+	private final static int[] DIR_Y = { -1, 0, 1, 0, -1, -1, 1, 1 };
+
+	private final static float UNREACHABLE = Float.MAX_VALUE;
+
+	private final static int DEFAULT_BLOCK_SIZE = 16;
+
+	private Field2D _field;
+
+	private boolean _diagonal;
+
+	private boolean _flying;
+
+	private int _width, _height;
+
+	private float[] _distances;
+
+	private byte[] _directions;
+
+	private int[] _costs;
+
+	private boolean[] _walkable;
+
+	private boolean[] _goalCells;
+
+	private int[] _heapStamp;
+
+	private int[] _markStamp;
+
+	private int _generation;
+
+	private final IntArray _goals = new IntArray();
+
+	private final IntArray _invalid = new IntArray();
+
+	private final GridHeap _heap = new GridHeap();
+
+	private int _blockSize = DEFAULT_BLOCK_SIZE;
+
+	private boolean _fullDirty = true;
+
+	private int _dirtyMinX, _dirtyMinY, _dirtyMaxX, _dirtyMaxY;
+
+	private boolean _regionDirty;
+
+	private int _changedMinX, _changedMinY, _changedMaxX, _changedMaxY;
+
+	private int _updateCount;
+
+	private int _touchedCount;
+
+	public FlowField(Field2D field) {
+		this(field, true);
+	}
+
+	public FlowField(Field2D field, boolean diagonal) {
+		this(field, diagonal, false);
+	}
+
+	public FlowField(Field2D field, boolean diagonal, boolean flying) {
+		this._diagonal = diagonal;
+		this._flying = flying;
+		setField(field);
+	}
+
+	public FlowField setField(Field2D field) {
+		if (_field != null) {
+			_field.removeMapChangedListener(this);
+		}
+		this._field = field;
+		if (field != null) {
+			field.addMapChangedListener(this);
+		}
+		this._fullDirty = true;
+		return this;
+	}
+
+	public Field2D getField2D() {
+		return _field;
+	}
+
+	public FlowField setGoal(int x, int y) {
+		_goals.clear();
+		return addGoal(x, y);
+	}
+
+	/**
+	 * 添加一个目标格子(多目标时,每个格子流向距离最近的目标)
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public FlowField addGoal(int x, int y) {
+		_goals.add(x);
+		_goals.add(y);
+		_fullDirty = true;
+		return this;
+	}
+
+	public FlowField setGoal(Vector2f pos) {
+		return setGoal(pos.x(), pos.y());
+	}
+
+	public FlowField addGoal(Vector2f pos) {
+		return addGoal(pos.x(), pos.y());
+	}
+
+	public FlowField clearGoals() {
+		_goals.clear();
+		_fullDirty = true;
+		return this;
+	}
+
+	public int getGoalCount() {
+		return _goals.length / 2;
+	}
+
+	public FlowField setDiagonal(boolean diagonal) {
+		if (this._diagonal != diagonal) {
+			this._diagonal = diagonal;
+			this._fullDirty = true;
+		}
+		return this;
+	}
+
+	public boolean isDiagonal() {
+		return _diagonal;
+	}
+
+	public FlowField setFlying(boolean flying) {
+		if (this._flying != flying) {
+			this._flying = flying;
+			this._fullDirty = true;
+		}
+		return this;
+	}
+
+	public boolean isFlying() {
+		return _flying;
+	}
+
+	/**
+	 * 设置方向提取时使用的瓦片块大小
+	 *
+	 * @param size
+	 * @return
+	 */
+	public FlowField setBlockSize(int size) {
+		this._blockSize = MathUtils.max(1, size);
+		return this;
+	}
+
+	public int getBlockSize() {
+		return _blockSize;
+	}
+
+	@Override
+	public void onChanged(Field2D field, int x, int y, int width, int height) {
+		if (field != _field || _fullDirty) {
+			return;
+		}
+		if (width <= 0 || height <= 0 || field.getWidth() != _width || field.getHeight() != _height) {
+			_fullDirty = true;
+			return;
+		}
+		final int maxX = MathUtils.min(_width - 1, x + width - 1);
+		final int maxY = MathUtils.min(_height - 1, y + height - 1);
+		final int minX = MathUtils.max(0, x);
+		final int minY = MathUtils.max(0, y);
+		if (!_regionDirty) {
+			_dirtyMinX = minX;
+			_dirtyMinY = minY;
+			_dirtyMaxX = maxX;
+			_dirtyMaxY = maxY;
+			_regionDirty = true;
+		} else {
+			_dirtyMinX = MathUtils.min(_dirtyMinX, minX);
+			_dirtyMinY = MathUtils.min(_dirtyMinY, minY);
+			_dirtyMaxX = MathUtils.max(_dirtyMaxX, maxX);
+			_dirtyMaxY = MathUtils.max(_dirtyMaxY, maxY);
+		}
+	}
+
+	public boolean isDirty() {
+		return _fullDirty || _regionDirty;
+	}
+
+	/**
+	 * 若目标或地图发生变化则更新流场(目标变化时完整重算,地图局部变化时仅重算受影响的格子)
+	 *
+	 * @return 是否进行了计算
+	 */
+	public boolean update() {
+		if (_field == null) {
+			return false;
+		}
+		if (_fullDirty) {
+			compute();
+			return true;
+		}
+		if (_regionDirty) {
+			// 脏区域超过地图一半时直接完整重算
+			if ((_dirtyMaxX - _dirtyMinX + 1) * (_dirtyMaxY - _dirtyMinY + 1) * 2 > _width * _height) {
+				compute();
+				return true;
+			}
+			updateRegion(_dirtyMinX, _dirtyMinY, _dirtyMaxX, _dirtyMaxY);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 完整计算流场
+	 */
+	public void compute() {
+		if (_field == null) {
+			return;
+		}
+		prepare();
+		loadCells(0, 0, _width - 1, _height - 1);
+		final float[] distances = _distances;
+		for (int i = 0; i < distances.length; i++) {
+			distances[i] = UNREACHABLE;
+			_goalCells[i] = false;
+		}
+		_heap.clear();
+		_generation++;
+		for (int i = 0; i < _goals.length; i += 2) {
+			final int gx = _goals.get(i);
+			final int gy = _goals.get(i + 1);
+			if (gx < 0 || gy < 0 || gx >= _width || gy >= _height) {
+				continue;
+			}
+			final int index = gy * _width + gx;
+			_goalCells[index] = true;
+			if (_walkable[index]) {
+				seed(index, 0f);
+			}
+		}
+		_touchedCount = integrate();
+		buildDirections(0, 0, _width, _height);
+		_fullDirty = false;
+		_regionDirty = false;
+		_updateCount++;
+	}
+
+	/**
+	 * 增量更新指定区域变化后的流场,区域内格子及所有以其为最短路径中转的格子被重置,再从其有效边界重新积分
+	 */
+	private void updateRegion(int minX, int minY, int maxX, int maxY) {
+		_regionDirty = false;
+		loadCells(minX, minY, maxX, maxY);
+		final int width = _width;
+		final int height = _height;
+		final float[] distances = _distances;
+		final byte[] directions = _directions;
+		final IntArray invalid = _invalid;
+		final int[] mark = _markStamp;
+		final int stamp = ++_generation;
+		invalid.clear();
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				final int index = y * width + x;
+				mark[index] = stamp;
+				invalid.add(index);
+			}
+		}
+		// 沿方向场反向扩散,找出所有经过失效格子到达目标的格子
+		final int dirCount = _diagonal ? 8 : 4;
+		for (int i = 0; i < invalid.length; i++) {
+			final int index = invalid.get(i);
+			final int cx = index % width;
+			final int cy = index / width;
+			for (int d = 0; d < dirCount; d++) {
+				final int nx = cx + DIR_X[d];
+				final int ny = cy + DIR_Y[d];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				if (mark[next] == stamp) {
+					continue;
+				}
+				final byte dir = directions[next];
+				if (dir != NONE && nx + DIR_X[dir] == cx && ny + DIR_Y[dir] == cy) {
+					mark[next] = stamp;
+					invalid.add(next);
+				}
+			}
+		}
+		_heap.clear();
+		_generation++;
+		_changedMinX = width;
+		_changedMinY = height;
+		_changedMaxX = -1;
+		_changedMaxY = -1;
+		for (int i = 0; i < invalid.length; i++) {
+			final int index = invalid.get(i);
+			distances[index] = UNREACHABLE;
+			touch(index);
+		}
+		for (int i = 0; i < invalid.length; i++) {
+			final int index = invalid.get(i);
+			if (_goalCells[index] && _walkable[index]) {
+				seed(index, 0f);
+			}
+			final int cx = index % width;
+			final int cy = index / width;
+			for (int d = 0; d < dirCount; d++) {
+				final int nx = cx + DIR_X[d];
+				final int ny = cy + DIR_Y[d];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				if (mark[next] != stamp && distances[next] != UNREACHABLE && _heapStamp[next] != _generation) {
+					seed(next, distances[next]);
+				}
+			}
+		}
+		_touchedCount = integrate();
+		if (_changedMaxX >= _changedMinX) {
+			final int x0 = MathUtils.max(0, _changedMinX - 1);
+			final int y0 = MathUtils.max(0, _changedMinY - 1);
+			final int x1 = MathUtils.min(width - 1, _changedMaxX + 1);
+			final int y1 = MathUtils.min(height - 1, _changedMaxY + 1);
+			buildDirections(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+		}
+		_updateCount++;
+	}
+
+	private void prepare() {
+		final int width = _field.getWidth();
+		final int height = _field.getHeight();
+		final int size = width * height;
+		if (_distances == null || _distances.length != size) {
+			_distances = new float[size];
+			_directions = new byte[size];
+			_costs = new int[size];
+			_walkable = new boolean[size];
+			_goalCells = new boolean[size];
+			_heapStamp = new int[size];
+			_markStamp = new int[size];
+			_generation = 0;
+		}
+		_heap.ensure(size);
+		this._width = width;
+		this._height = height;
+	}
+
+	/**
+	 * 缓存指定区域的可通行状态与额外开销,避免积分过程中反复查询Field2D
+	 */
+	private void loadCells(int minX, int minY, int maxX, int maxY) {
+		final Field2D field = _field;
+		final boolean hasCost = field.hasCost();
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				final int index = y * _width + x;
+				_walkable[index] = _flying || field.isHit(x, y);
+				_costs[index] = hasCost ? MathUtils.max(0, field.getCost(x, y)) : 0;
+			}
+		}
+	}
+
+	private void seed(int index, float distance) {
+		_distances[index] = distance;
+		_heapStamp[index] = _generation;
+		_heap.push(index, distance);
+	}
+
+	private void touch(int index) {
+		final int x = index % _width;
+		final int y = index / _width;
+		if (x < _changedMinX) {
+			_changedMinX = x;
+		}
+		if (y < _changedMinY) {
+			_changedMinY = y;
+		}
+		if (x > _changedMaxX) {
+			_changedMaxX = x;
+		}
+		if (y > _changedMaxY) {
+			_changedMaxY = y;
+		}
+	}
+
+	/**
+	 * 自堆中的源点开始积分,只在距离变小时更新格子(已有的距离视为上界),返回出堆的格子数量
+	 */
+	private int integrate() {
+		final int width = _width;
+		final int height = _height;
+		final float[] distances = _distances;
+		final boolean[] walkable = _walkable;
+		final int[] costs = _costs;
+		final int[] heapStamp = _heapStamp;
+		final int dirCount = _diagonal ? 8 : 4;
+		final GridHeap heap = _heap;
+		final int generation = _generation;
+		final int popped = -generation;
+		int count = 0;
+		for (; !heap.isEmpty();) {
+			final int current = heap.pop();
+			heapStamp[current] = popped;
+			count++;
+			final int cx = current % width;
+			final int cy = current / width;
+			// 反向积分,由current走向相邻格子的开销计入current本身的额外开销
+			final float base = distances[current] + costs[current];
+			for (int d = 0; d < dirCount; d++) {
+				final int nx = cx + DIR_X[d];
+				final int ny = cy + DIR_Y[d];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				final int next = ny * width + nx;
+				if (!walkable[next]) {
+					continue;
+				}
+				final float score = base + (d < 4 ? 1f : MathUtils.SQRT2);
+				if (score >= distances[next]) {
+					continue;
+				}
+				distances[next] = score;
+				touch(next);
+				if (heapStamp[next] == generation) {
+					heap.decrease(next, score);
+				} else {
+					heapStamp[next] = generation;
+					heap.push(next, score);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 按瓦片块提取指定区域的方向,每个格子指向相邻格子中积分最小者(含该格子的开销).各块之间互不依赖,可分配到不同线程
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 */
+	public void buildDirections(int x, int y, int w, int h) {
+		if (_distances == null) {
+			return;
+		}
+		final int maxX = MathUtils.min(_width, x + w);
+		final int maxY = MathUtils.min(_height, y + h);
+		final int block = _blockSize;
+		for (int by = MathUtils.max(0, y); by < maxY; by += block) {
+			for (int bx = MathUtils.max(0, x); bx < maxX; bx += block) {
+				buildBlock(bx, by, MathUtils.min(maxX, bx + block), MathUtils.min(maxY, by + block));
+			}
+		}
+	}
+
+	private void buildBlock(int minX, int minY, int maxX, int maxY) {
+		final int width = _width;
+		final int height = _height;
+		final float[] distances = _distances;
+		final int[] costs = _costs;
+		final byte[] directions = _directions;
+		final int dirCount = _diagonal ? 8 : 4;
+		for (int y = minY; y < maxY; y++) {
+			for (int x = minX; x < maxX; x++) {
+				final int index = y * width + x;
+				final float self = distances[index];
+				byte best = NONE;
+				if (self != UNREACHABLE && self > 0f) {
+					float bestScore = UNREACHABLE;
+					for (int d = 0; d < dirCount; d++) {
+						final int nx = x + DIR_X[d];
+						final int ny = y + DIR_Y[d];
+						if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+							continue;
+						}
+						final int next = ny * width + nx;
+						final float dist = distances[next];
+						if (dist == UNREACHABLE) {
+							continue;
+						}
+						final float score = dist + costs[next] + (d < 4 ? 1f : MathUtils.SQRT2);
+						if (dist < self && score < bestScore) {
+							bestScore = score;
+							best = (byte) d;
+						}
+					}
+				}
+				directions[index] = best;
+			}
+		}
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && y >= 0 && x < _width && y < _height && _distances != null;
+	}
+
+	/**
+	 * 返回指定格子的方向索引(0-7,与AStarGridFinder的方向顺序一致),无方向时返回NONE
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public byte getDirectionIndex(int x, int y) {
+		if (!contains(x, y)) {
+			return NONE;
+		}
+		return _directions[y * _width + x];
+	}
+
+	public int getDirectionX(int x, int y) {
+		final byte dir = getDirectionIndex(x, y);
+		return dir == NONE ? 0 : DIR_X[dir];
+	}
+
+	public int getDirectionY(int x, int y) {
+		final byte dir = getDirectionIndex(x, y);
+		return dir == NONE ? 0 : DIR_Y[dir];
+	}
+
+	/**
+	 * 返回指定格子的Config方向值
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int getDirection(int x, int y) {
+		final byte dir = getDirectionIndex(x, y);
+		if (dir == NONE) {
+			return Config.EMPTY;
+		}
+		return Field2D.getDirection(DIR_X[dir], DIR_Y[dir]);
+	}
+
+	/**
+	 * 返回指定格子到最近目标的积分距离,无法到达时返回-1
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public float getDistance(int x, int y) {
+		if (!contains(x, y)) {
+			return -1f;
+		}
+		final float dist = _distances[y * _width + x];
+		return dist == UNREACHABLE ? -1f : dist;
+	}
+
+	public boolean isReachable(int x, int y) {
+		return getDistance(x, y) >= 0f;
+	}
+
+	public boolean isGoal(int x, int y) {
+		return contains(x, y) && _goalCells[y * _width + x];
+	}
+
+	/**
+	 * 获得指定格子的下一步格子,无下一步时返回false
+	 *
+	 * @param x
+	 * @param y
+	 * @param out
+	 * @return
+	 */
+	public boolean next(int x, int y, PointI out) {
+		final byte dir = getDirectionIndex(x, y);
+		if (dir == NONE) {
+			return false;
+		}
+		out.set(x + DIR_X[dir], y + DIR_Y[dir]);
+		return true;
+	}
+
+	/**
+	 * 获得指定像素位置所在格子的下一步格子中心的像素坐标,无下一步时返回false
+	 *
+	 * @param px
+	 * @param py
+	 * @param out
+	 * @return
+	 */
+	public boolean nextPixel(float px, float py, Vector2f out) {
+		if (_field == null) {
+			return false;
+		}
+		final int x = _field.pixelsToTilesWidth(px);
+		final int y = _field.pixelsToTilesHeight(py);
+		final byte dir = getDirectionIndex(x, y);
+		if (dir == NONE) {
+			return false;
+		}
+		out.set(_field.tilesToWidthPixels(x + DIR_X[dir]), _field.tilesToHeightPixels(y + DIR_Y[dir]));
+		return true;
+	}
+
+	/**
+	 * 沿流场从指定格子追踪到目标,结果为格子坐标(包含起点),无法到达时返回空路径
+	 *
+	 * @param x
+	 * @param y
+	 * @param maxSteps 最大步数,小于0时不限制
+	 * @return
+	 */
+	public TArray<Vector2f> trace(int x, int y, int maxSteps) {
+		final TArray<Vector2f> path = new TArray<Vector2f>();
+		if (!isReachable(x, y)) {
+			return path;
+		}
+		path.add(new Vector2f(x, y));
+		final int limit = maxSteps < 0 ? _width * _height : maxSteps;
+		for (int i = 0; i < limit; i++) {
+			final byte dir = getDirectionIndex(x, y);
+			if (dir == NONE) {
+				break;
+			}
+			x += DIR_X[dir];
+			y += DIR_Y[dir];
+			path.add(new Vector2f(x, y));
+		}
+		return path;
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * 返回计算次数(完整计算与增量更新)
+	 *
+	 * @return
+	 */
+	public int getUpdateCount() {
+		return _updateCount;
+	}
+
+	/**
+	 * 返回最近一次计算中出堆的格子数量
+	 *
+	 * @return
+	 */
+	public int getTouchedCount() {
+		return _touchedCount;
+	}
+
+	@Override
+	public void close() {
+		if (_field != null) {
+			_field.removeMapChangedListener(this);
+			_field = null;
+		}
+		_distances = null;
+		_directions = null;
+		_costs = null;
+		_walkable = null;
+		_goalCells = null;
+		_heapStamp = null;
+		_markStamp = null;
+		_heap.close();
+		_invalid.clear();
+		_goals.clear();
+		_fullDirty = true;
+	}
+
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.map;
+
+/**
+ * 以int索引为元素,float分值为排序依据的最小二叉堆,支持对已在堆中的元素降低分值(decrease-key),供各网格寻径类复用
+ */
+final class GridHeap {
+
+	private int[] _heap;
+
+	private int[] _heapIndex;
+
+	private float[] _scores;
+
+	private int _size;
+
+	GridHeap() {
+		this(0);
+	}
+
+	GridHeap(int capacity) {
+		ensure(capacity);
+	}
+
+	void ensure(int capacity) {
+		if (_heap == null || _heap.length < capacity) {
+			final int size = capacity < 8 ? 8 : capacity;
+			_heap = new int[size];
+			_heapIndex = new int[size];
+			_scores = new float[size];
+			_size = 0;
+		}
+	}
+
+	int capacity() {
+		return _heap == null ? 0 : _heap.length;
+	}
+
+	void clear() {
+		_size = 0;
+	}
+
+	int size() {
+		return _size;
+	}
+
+	boolean isEmpty() {
+		return _size == 0;
+	}
+
+	float score(int index) {
+		return _scores[index];
+	}
+
+	void push(int index, float score) {
+		final int pos = _size++;
+		_scores[index] = score;
+		_heap[pos] = index;
+		_heapIndex[index] = pos;
+		up(pos);
+	}
+
+	/**
+	 * 降低已在堆中元素的分值
+	 */
+	void decrease(int index, float score) {
+		_scores[index] = score;
+		up(_heapIndex[index]);
+	}
+
+	int pop() {
+		final int[] heap = _heap;
+		final int result = heap[0];
+		final int last = heap[--_size];
+		if (_size > 0) {
+			heap[0] = last;
+			_heapIndex[last] = 0;
+			down(0);
+		}
+		return result;
+	}
+
+	private void up(int pos) {
+		final int[] heap = _heap;
+		final int[] heapIndex = _heapIndex;
+		final float[] scores = _scores;
+		final int index = heap[pos];
+		final float score = scores[index];
+		while (pos > 0) {
+			final int parentPos = (pos - 1) >> 1;
+			final int parent = heap[parentPos];
+			if (scores[parent] <= score) {
+				break;
+			}
+			heap[pos] = parent;
+			heapIndex[parent] = pos;
+			pos = parentPos;
+		}
+		heap[pos] = index;
+		heapIndex[index] = pos;
+	}
+
+	private void down(int pos) {
+		final int[] heap = _heap;
+		final int[] heapIndex = _heapIndex;
+		final float[] scores = _scores;
+		final int size = _size;
+		final int index = heap[pos];
+		final float score = scores[index];
+		for (;;) {
+			int child = (pos << 1) + 1;
+			if (child >= size) {
+				break;
+			}
+			final int right = child + 1;
+			if (right < size && scores[heap[right]] < scores[heap[child]]) {
+				child = right;
+			}
+			if (scores[heap[child]] >= score) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapIndex[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = index;
+		heapIndex[index] = pos;
+	}
+
+	void close() {
+		_heap = null;
+		_heapIndex = null;
+		_scores = null;
+		_size = 0;
+	}
+}
@@ -64,6 +64,10 @@ public class PathMove extends RealtimeProcess implements LRelease {
 
 	private boolean onUp, onDown, onLeft, onRight;
 
+	private FlowField flowField;
+
+	private boolean flowFollowing;
+
 	/**
 	 * 把当前位置向指定目标位置以指定速度移动
 	 * 
@@ -119,6 +123,9 @@ public class PathMove extends RealtimeProcess implements LRelease {
 	}
 
 	public void update(float dt) {
+		if (!this.running && this.flowFollowing) {
+			nextFlowTarget();
+		}
 		if (this.running) {
 			final float angle = (this.target.y - origin.y) / (this.target.x - origin.x);
 			if (angle < 1f && angle > -1f) {
@@ -239,6 +246,50 @@ public class PathMove extends RealtimeProcess implements LRelease {
 		}
 	}
 
+	/**
+	 * 到达当前目标后,从流场获得下一个格子作为新的目标,流场中无下一步时停止跟随
+	 */
+	protected void nextFlowTarget() {
+		if (flowField == null || closed) {
+			flowFollowing = false;
+			return;
+		}
+		flowField.update();
+		final Vector2f next = new Vector2f();
+		if (!flowField.nextPixel(origin.x, origin.y, next)) {
+			flowFollowing = false;
+			return;
+		}
+		this.startPosX = origin.x;
+		this.startPosY = origin.y;
+		setTarget(next);
+		this.horizontal = origin.y == target.y;
+		this.running = true;
+	}
+
+	/**
+	 * 设置流场,设置后PathMove会逐格跟随流场移动到流场目标(target仅为当前一步的目标)
+	 * 
+	 * @param flow
+	 * @return
+	 */
+	public PathMove setFlowField(FlowField flow) {
+		this.flowField = flow;
+		this.flowFollowing = (flow != null);
+		if (flowFollowing) {
+			this.running = false;
+		}
+		return this;
+	}
+
+	public FlowField getFlowField() {
+		return flowField;
+	}
+
+	public boolean isFlowFollowing() {
+		return flowFollowing;
+	}
+
 	public String toDirectionString() {
 		return Side.getDirectionName(getDirection());
 	}
@@ -259,7 +310,8 @@ public class PathMove extends RealtimeProcess implements LRelease {
 	}
 
 	public PathMove submit() {
-		this.running = true;
+		this.flowFollowing = (flowField != null);
+		this.running = !flowFollowing;
 		synchronized (RealtimeProcessManager.class) {
 			RealtimeProcessManager.get().delete(this);
 			setDelay(0);
@@ -274,6 +326,7 @@ public class PathMove extends RealtimeProcess implements LRelease {
 
 	public PathMove end() {
 		this.running = false;
+		this.flowFollowing = false;
 		return this;
 	}
 
@@ -283,6 +336,7 @@ public class PathMove extends RealtimeProcess implements LRelease {
 
 	public PathMove resume() {
 		this.running = true;
+		this.flowFollowing = (flowField != null);
 		return this;
 	}
 
@@ -294,6 +348,7 @@ public class PathMove extends RealtimeProcess implements LRelease {
 
 	public PathMove exit() {
 		this.running = false;
+		this.flowFollowing = false;
 		this.closed = true;
 		return this;
 	}
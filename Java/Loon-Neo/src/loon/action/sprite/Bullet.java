@@ -228,21 +228,37 @@ public class Bullet extends LObject<BulletEntity> implements CollisionObject {
 		return this;
 	}
 
+	public float getAcceleration() {
+		return _acceleration;
+	}
+
 	public Bullet setMaxSpeed(float max) {
 		_maxSpeed = max;
 		return this;
 	}
 
+	public float getMaxSpeed() {
+		return _maxSpeed;
+	}
+
 	public Bullet setGravity(float g) {
 		_gravityScale = g;
 		return this;
 	}
 
+	public float getGravity() {
+		return _gravityScale;
+	}
+
 	public Bullet setDamping(float d) {
 		_damping = d;
 		return this;
 	}
 
+	public float getDamping() {
+		return _damping;
+	}
+
 	public Bullet setBounceMax(int max) {
 		_bounceMax = max;
 		return this;
@@ -253,11 +269,19 @@ public class Bullet extends LObject<BulletEntity> implements CollisionObject {
 		return this;
 	}
 
+	public int getPierceMax() {
+		return _pierceMax;
+	}
+
 	public Bullet setAlphaFade(float fade) {
 		_alphaFadeSpeed = fade;
 		return this;
 	}
 
+	public float getAlphaFade() {
+		return _alphaFadeSpeed;
+	}
+
 	public Bullet setScaleFade(float fade) {
 		_scaleFadeSpeed = fade;
 		return this;
@@ -665,6 +689,14 @@ public class Bullet extends LObject<BulletEntity> implements CollisionObject {
 		return _speed.cpy();
 	}
 
+	public float getSpeedX() {
+		return _speed.x;
+	}
+
+	public float getSpeedY() {
+		return _speed.y;
+	}
+
 	public Bullet setSpeedX(float x) {
 		_speed.x = x;
 		return this;
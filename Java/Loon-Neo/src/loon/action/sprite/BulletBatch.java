@@ -0,0 +1,1167 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.sprite;
+
+import loon.LRelease;
+import loon.LSystem;
+import loon.LTexture;
+import loon.action.collision.CollisionObject;
+import loon.action.sprite.Bullet.WaveType;
+import loon.canvas.LColor;
+import loon.geom.Affine2f;
+import loon.geom.RectBox;
+import loon.opengl.BaseBatch;
+import loon.opengl.GLEx;
+import loon.utils.CollectionUtils;
+import loon.utils.Easing;
+import loon.utils.Easing.EasingMode;
+import loon.utils.IntArray;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+import loon.utils.timer.Duration;
+
+/**
+ * 批量子弹(弹幕)容器.
+ *
+ * 每颗子弹不再是独立对象,位置,速度,角度,缓动,生命周期与波形参数皆按列保存在基础类型数组中,每帧分阶段在紧凑循环中积分(只有用到加速,波形,淡出等参数时才执行对应阶段),
+ * 与目标的碰撞使用每帧重建的均匀网格检测(适合大量子弹对少量目标),绘制时按贴图分组后直接向GLEx当前的Batch提交顶点,每种贴图每帧只产生一次绘制.
+ * 运动规则与Bullet一致(速度加上按缓动进度叠加的偏移量,再乘以LSystem.getScaleFPS),因此Bullet可以通过add直接转入.
+ *
+ * PS:子弹编号在子弹移除后会被回收复用,请勿长期持有.
+ */
+public class BulletBatch implements LRelease {
+
+	/**
+	 * 子弹命中目标时触发,返回true时移除子弹(无监听时命中即移除,设定了穿透次数的子弹除外)
+	 */
+	public static interface HitListener {
+
+		public boolean onHit(BulletBatch batch, int id, CollisionObject target);
+
+	}
+
+	private static final EasingMode[] MODES = EasingMode.values();
+
+	private static final WaveType[] WAVES = WaveType.values();
+
+	private static final int LINEAR = EasingMode.Linear.ordinal();
+
+	private static final int FLAG_LOOP = 1;
+
+	private static final int FLAG_DYNAMIC = 1 << 1;
+
+	private static final int FLAG_WAVE = 1 << 2;
+
+	private static final int FLAG_LIFE = 1 << 3;
+
+	private static final int FLAG_FADE = 1 << 4;
+
+	private static final int FLAG_SPIN = 1 << 5;
+
+	private static final int FLAG_DEAD = 1 << 6;
+
+	private float[] _x, _y, _vx, _vy, _w, _h;
+
+	private float[] _angle, _spin;
+
+	private float[] _times, _durations, _progress;
+
+	private float[] _life, _lifeMax;
+
+	private float[] _acceleration, _maxSpeed, _gravity, _damping;
+
+	private float[] _alpha, _alphaFade;
+
+	private float[] _waveAmplitude, _waveFrequency;
+
+	private int[] _easings, _waves, _images, _colors, _flags, _pierces, _ids;
+
+	private int _size;
+
+	// 子弹编号到数组位置的映射
+	private int[] _slots;
+
+	private int _nextId;
+
+	private final IntArray _freeIds = new IntArray();
+
+	// 贴图表,同一位置上只有贴图或动画之一
+	private final TArray<LTexture> _textures = new TArray<LTexture>();
+
+	private final TArray<Animation> _animations = new TArray<Animation>();
+
+	// 贴图(或多帧动画)到贴图表位置的映射,单帧动画按其贴图记录,无贴图时使用EMPTY_IMAGE
+	private final ObjectMap<Object, Integer> _imageIndex = new ObjectMap<Object, Integer>();
+
+	private final static Object EMPTY_IMAGE = new Object();
+
+	// 贴图表每个位置上存活的子弹数量,降为0时回收该位置
+	private int[] _imageRefs = new int[8];
+
+	private final IntArray _freeImages = new IntArray();
+
+	private int[] _imageCounts = new int[8];
+
+	private int[] _drawOrder;
+
+	private final TArray<CollisionObject> _targets = new TArray<CollisionObject>();
+
+	private int[] _cellStarts = new int[64];
+
+	private int[] _cellItems;
+
+	private float _cellSize = 64f;
+
+	private HitListener _hitListener;
+
+	private EasingMode _easingMode = EasingMode.Linear;
+
+	private float _defaultDuration = Bullet.INIT_DURATION;
+
+	private boolean _bounded;
+
+	private float _boundsX, _boundsY, _boundsWidth, _boundsHeight;
+
+	private int _maxCount = -1;
+
+	private int _hitCount;
+
+	public BulletBatch() {
+		this(CollectionUtils.INITIAL_CAPACITY);
+	}
+
+	public BulletBatch(int capacity) {
+		resize(capacity < 1 ? 1 : capacity);
+		this._slots = new int[_x.length];
+	}
+
+	private void resize(int size) {
+		_x = copy(_x, size);
+		_y = copy(_y, size);
+		_vx = copy(_vx, size);
+		_vy = copy(_vy, size);
+		_w = copy(_w, size);
+		_h = copy(_h, size);
+		_angle = copy(_angle, size);
+		_spin = copy(_spin, size);
+		_times = copy(_times, size);
+		_durations = copy(_durations, size);
+		_progress = copy(_progress, size);
+		_life = copy(_life, size);
+		_lifeMax = copy(_lifeMax, size);
+		_acceleration = copy(_acceleration, size);
+		_maxSpeed = copy(_maxSpeed, size);
+		_gravity = copy(_gravity, size);
+		_damping = copy(_damping, size);
+		_alpha = copy(_alpha, size);
+		_alphaFade = copy(_alphaFade, size);
+		_waveAmplitude = copy(_waveAmplitude, size);
+		_waveFrequency = copy(_waveFrequency, size);
+		_easings = copy(_easings, size);
+		_waves = copy(_waves, size);
+		_images = copy(_images, size);
+		_colors = copy(_colors, size);
+		_flags = copy(_flags, size);
+		_pierces = copy(_pierces, size);
+		_ids = copy(_ids, size);
+		_drawOrder = new int[size];
+		_cellItems = new int[size];
+	}
+
+	private static float[] copy(float[] src, int size) {
+		final float[] dst = new float[size];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, MathUtils.min(src.length, size));
+		}
+		return dst;
+	}
+
+	private static int[] copy(int[] src, int size) {
+		final int[] dst = new int[size];
+		if (src != null) {
+			System.arraycopy(src, 0, dst, 0, MathUtils.min(src.length, size));
+		}
+		return dst;
+	}
+
+	private static Object imageKey(LTexture tex, Animation ani) {
+		return (ani != null) ? ani : (tex != null ? tex : EMPTY_IMAGE);
+	}
+
+	private int image(LTexture tex, Animation ani) {
+		// 单帧动画(如Animation.getDefaultAnimation(tex))每次都是新对象,按贴图归并
+		if (ani != null && ani.size() <= 1) {
+			tex = ani.getSpriteImage();
+			ani = null;
+		}
+		final Object key = imageKey(tex, ani);
+		final Integer index = _imageIndex.get(key);
+		if (index != null) {
+			return index.intValue();
+		}
+		int image;
+		if (_freeImages.length > 0) {
+			image = _freeImages.pop();
+			_textures.set(image, tex);
+			_animations.set(image, ani);
+		} else {
+			image = _textures.size;
+			_textures.add(tex);
+			_animations.add(ani);
+			if (image >= _imageRefs.length) {
+				_imageRefs = copy(_imageRefs, _imageRefs.length * 2);
+			}
+		}
+		_imageRefs[image] = 0;
+		_imageIndex.put(key, image);
+		return image;
+	}
+
+	private void releaseImage(int image) {
+		if (_imageRefs[image] > 0) {
+			_imageRefs[image]--;
+		}
+		if (_imageRefs[image] == 0) {
+			_imageIndex.remove(imageKey(_textures.get(image), _animations.get(image)));
+			_textures.set(image, null);
+			_animations.set(image, null);
+			_freeImages.add(image);
+		}
+	}
+
+	private void clearImages() {
+		_textures.clear();
+		_animations.clear();
+		_imageIndex.clear();
+		_freeImages.clear();
+	}
+
+	private int obtain(int image, float x, float y, float w, float h, float vx, float vy) {
+		if (_maxCount > -1 && _size >= _maxCount) {
+			if (_imageRefs[image] == 0) {
+				releaseImage(image);
+			}
+			return -1;
+		}
+		if (_size == _x.length) {
+			resize(_size * 2);
+		}
+		int id;
+		if (_freeIds.length > 0) {
+			id = _freeIds.pop();
+		} else {
+			id = _nextId++;
+			if (id >= _slots.length) {
+				_slots = copy(_slots, MathUtils.max(id + 1, _slots.length * 2));
+			}
+		}
+		final int i = _size++;
+		_slots[id] = i;
+		_ids[i] = id;
+		_images[i] = image;
+		_imageRefs[image]++;
+		_x[i] = x;
+		_y[i] = y;
+		_w[i] = w;
+		_h[i] = h;
+		_vx[i] = vx;
+		_vy[i] = vy;
+		_angle[i] = (vx == 0f && vy == 0f) ? 0f : MathUtils.atan2(vy, vx) * MathUtils.RAD_TO_DEG;
+		_spin[i] = 0f;
+		_times[i] = 0f;
+		_durations[i] = _defaultDuration;
+		_progress[i] = 0f;
+		_easings[i] = _easingMode.ordinal();
+		_life[i] = 0f;
+		_lifeMax[i] = 0f;
+		_acceleration[i] = 0f;
+		_maxSpeed[i] = 9999f;
+		_gravity[i] = 0f;
+		_damping[i] = 1f;
+		_alpha[i] = 1f;
+		_alphaFade[i] = 0f;
+		_waves[i] = 0;
+		_waveAmplitude[i] = 1f;
+		_waveFrequency[i] = 1f;
+		_colors[i] = LColor.DEF_COLOR;
+		_pierces[i] = 0;
+		_flags[i] = 0;
+		return id;
+	}
+
+	/**
+	 * 发射一颗子弹(x,y为左上角,速度单位与Bullet一致),返回子弹编号,超出数量上限时返回-1
+	 *
+	 * @param tex
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param vx
+	 * @param vy
+	 * @return
+	 */
+	public int emit(LTexture tex, float x, float y, float w, float h, float vx, float vy) {
+		return obtain(image(tex, null), x, y, w, h, vx, vy);
+	}
+
+	public int emit(Animation ani, float x, float y, float w, float h, float vx, float vy) {
+		return obtain(image(null, ani), x, y, w, h, vx, vy);
+	}
+
+	/**
+	 * 以指定中心点成圆形发射一组子弹,返回发射的数量
+	 *
+	 * @param tex
+	 * @param cx
+	 * @param cy
+	 * @param w
+	 * @param h
+	 * @param count
+	 * @param speed
+	 * @param startAngle
+	 * @return
+	 */
+	public int emitCircle(LTexture tex, float cx, float cy, float w, float h, int count, float speed,
+			float startAngle) {
+		return emitSpread(tex, cx, cy, w, h, count, speed, startAngle, MathUtils.DEG_FULL * (count - 1f) / count);
+	}
+
+	/**
+	 * 以指定中心点成扇形发射一组子弹(angle为扇形起始角度,spread为总张角,皆为角度),返回发射的数量
+	 *
+	 * @param tex
+	 * @param cx
+	 * @param cy
+	 * @param w
+	 * @param h
+	 * @param count
+	 * @param speed
+	 * @param angle
+	 * @param spread
+	 * @return
+	 */
+	public int emitSpread(LTexture tex, float cx, float cy, float w, float h, int count, float speed, float angle,
+			float spread) {
+		final int image = image(tex, null);
+		final float step = count > 1 ? spread / (count - 1) : 0f;
+		int result = 0;
+		for (int i = 0; i < count; i++) {
+			final float rad = MathUtils.toRadians(angle + step * i);
+			if (obtain(image, cx - w / 2f, cy - h / 2f, w, h, MathUtils.cos(rad) * speed,
+					MathUtils.sin(rad) * speed) == -1) {
+				break;
+			}
+			result++;
+		}
+		return result;
+	}
+
+	/**
+	 * 把Bullet的当前状态转入批量容器(转入后Bullet对象不再影响这颗子弹),返回子弹编号
+	 *
+	 * @param bullet
+	 * @return
+	 */
+	public int add(Bullet bullet) {
+		if (bullet == null) {
+			return -1;
+		}
+		final Animation ani = bullet.getAnimation();
+		final int id = obtain(ani == null ? image(null, null) : image(null, ani), bullet.getX(), bullet.getY(),
+				bullet.getWidth(), bullet.getHeight(), bullet.getSpeedX(), bullet.getSpeedY());
+		if (id == -1) {
+			return id;
+		}
+		final int i = _slots[id];
+		_angle[i] = bullet.getRotation();
+		_spin[i] = bullet.getSelfRotateSpeed();
+		_durations[i] = bullet.getEaseTimer().getDuration();
+		_easings[i] = bullet.getEaseTimer().getEasingMode().ordinal();
+		_lifeMax[i] = bullet.getLifeTimer();
+		_acceleration[i] = bullet.getAcceleration();
+		_maxSpeed[i] = bullet.getMaxSpeed();
+		_gravity[i] = bullet.getGravity();
+		_damping[i] = bullet.getDamping();
+		_alphaFade[i] = bullet.getAlphaFade();
+		_waves[i] = bullet.getWaveType().ordinal();
+		_waveAmplitude[i] = bullet.getWaveAmplitude();
+		_waveFrequency[i] = bullet.getWaveFrequency();
+		_colors[i] = bullet.getColor().getARGB() | 0xFF000000;
+		_pierces[i] = bullet.getPierceMax();
+		_alpha[i] = bullet.getColor().a;
+		if (bullet.isEaseTimerLoop()) {
+			_flags[i] |= FLAG_LOOP;
+		}
+		updateFlags(i);
+		return id;
+	}
+
+	private void updateFlags(int i) {
+		int flags = _flags[i] & (FLAG_LOOP | FLAG_DEAD);
+		if (_acceleration[i] != 0f || _damping[i] < 1f || _gravity[i] != 0f || _maxSpeed[i] < 9999f) {
+			flags |= FLAG_DYNAMIC;
+		}
+		if (_waves[i] != 0) {
+			flags |= FLAG_WAVE;
+		}
+		if (_lifeMax[i] > 0f) {
+			flags |= FLAG_LIFE;
+		}
+		if (_alphaFade[i] != 0f) {
+			flags |= FLAG_FADE;
+		}
+		if (_spin[i] != 0f) {
+			flags |= FLAG_SPIN;
+		}
+		_flags[i] = flags;
+	}
+
+	private int slot(int id) {
+		if (id < 0 || id >= _nextId) {
+			return -1;
+		}
+		final int i = _slots[id];
+		return (i < _size && _ids[i] == id && (_flags[i] & FLAG_DEAD) == 0) ? i : -1;
+	}
+
+	public boolean isAlive(int id) {
+		return slot(id) != -1;
+	}
+
+	public BulletBatch setEasing(int id, EasingMode mode, float duration, boolean loop) {
+		final int i = slot(id);
+		if (i != -1) {
+			_easings[i] = (mode == null ? EasingMode.Linear : mode).ordinal();
+			_durations[i] = MathUtils.max(LSystem.MIN_SECONE_SPEED_FIXED, duration);
+			_flags[i] = loop ? (_flags[i] | FLAG_LOOP) : (_flags[i] & ~FLAG_LOOP);
+		}
+		return this;
+	}
+
+	public BulletBatch setLife(int id, float seconds) {
+		final int i = slot(id);
+		if (i != -1) {
+			_lifeMax[i] = seconds;
+			updateFlags(i);
+		}
+		return this;
+	}
+
+	public BulletBatch setAcceleration(int id, float acc, float maxSpeed) {
+		final int i = slot(id);
+		if (i != -1) {
+			_acceleration[i] = acc;
+			_maxSpeed[i] = maxSpeed;
+			updateFlags(i);
+		}
+		return this;
+	}
+
+	public BulletBatch setGravity(int id, float gravity) {
+		final int i = slot(id);
+		if (i != -1) {
+			_gravity[i] = gravity;
+			updateFlags(i);
+		}
+		return this;
+	}
+
+	public BulletBatch setDamping(int id, float damping) {
+		final int i = slot(id);
+		if (i != -1) {
+			_damping[i] = damping;
+			updateFlags(i);
+		}
+		return this;
+	}
+
+	public BulletBatch setWave(int id, WaveType wave, float amplitude, float frequency) {
+		final int i = slot(id);
+		if (i != -1) {
+			_waves[i] = (wave == null ? WaveType.None : wave).ordinal();
+			_waveAmplitude[i] = amplitude;
+			_waveFrequency[i] = frequency;
+			updateFlags(i);
+		}
+		return this;
+	}
+
+	public BulletBatch setSpin(int id, float degreesPerSecond) {
+		final int i = slot(id);
+		if (i != -1) {
+			_spin[i] = degreesPerSecond;
+			updateFlags(i);
+		}
+		return this;
+	}
+
+	public BulletBatch setAlphaFade(int id, float fade) {
+		final int i = slot(id);
+		if (i != -1) {
+			_alphaFade[i] = fade;
+			updateFlags(i);
+		}
+		return this;
+	}
+
+	public BulletBatch setColor(int id, LColor color) {
+		final int i = slot(id);
+		if (i != -1) {
+			_colors[i] = (color == null) ? LColor.DEF_COLOR : (color.getARGB() | 0xFF000000);
+			_alpha[i] = (color == null) ? 1f : color.a;
+		}
+		return this;
+	}
+
+	public BulletBatch setPierce(int id, int count) {
+		final int i = slot(id);
+		if (i != -1) {
+			_pierces[i] = count;
+		}
+		return this;
+	}
+
+	public BulletBatch setVelocity(int id, float vx, float vy) {
+		final int i = slot(id);
+		if (i != -1) {
+			_vx[i] = vx;
+			_vy[i] = vy;
+		}
+		return this;
+	}
+
+	public BulletBatch setLocation(int id, float x, float y) {
+		final int i = slot(id);
+		if (i != -1) {
+			_x[i] = x;
+			_y[i] = y;
+		}
+		return this;
+	}
+
+	public float getX(int id) {
+		final int i = slot(id);
+		return i == -1 ? 0f : _x[i];
+	}
+
+	public float getY(int id) {
+		final int i = slot(id);
+		return i == -1 ? 0f : _y[i];
+	}
+
+	public float getSpeedX(int id) {
+		final int i = slot(id);
+		return i == -1 ? 0f : _vx[i];
+	}
+
+	public float getSpeedY(int id) {
+		final int i = slot(id);
+		return i == -1 ? 0f : _vy[i];
+	}
+
+	/**
+	 * 让指定子弹保持速率转向目标位置
+	 *
+	 * @param id
+	 * @param tx
+	 * @param ty
+	 * @return
+	 */
+	public BulletBatch fireTo(int id, float tx, float ty) {
+		final int i = slot(id);
+		if (i != -1) {
+			aim(i, tx, ty);
+		}
+		return this;
+	}
+
+	/**
+	 * 让全部子弹保持速率转向目标位置
+	 *
+	 * @param tx
+	 * @param ty
+	 * @return
+	 */
+	public BulletBatch fireAllTo(float tx, float ty) {
+		for (int i = 0; i < _size; i++) {
+			aim(i, tx, ty);
+		}
+		return this;
+	}
+
+	private void aim(int i, float tx, float ty) {
+		final float dx = tx - _x[i];
+		final float dy = ty - _y[i];
+		final float len = MathUtils.sqrt(dx * dx + dy * dy);
+		if (len > 0) {
+			final float speed = MathUtils.sqrt(_vx[i] * _vx[i] + _vy[i] * _vy[i]);
+			_vx[i] = dx / len * speed;
+			_vy[i] = dy / len * speed;
+			_angle[i] = MathUtils.atan2(dy, dx) * MathUtils.RAD_TO_DEG;
+		}
+	}
+
+	public BulletBatch kill(int id) {
+		final int i = slot(id);
+		if (i != -1) {
+			_flags[i] |= FLAG_DEAD;
+		}
+		return this;
+	}
+
+	/**
+	 * 更新全部子弹,并在设定了碰撞目标时进行碰撞检测
+	 *
+	 * @param elapsedTime
+	 */
+	public void update(long elapsedTime) {
+		if (_size == 0) {
+			return;
+		}
+		for (int i = 0; i < _animations.size; i++) {
+			final Animation ani = _animations.get(i);
+			if (ani != null) {
+				ani.update(elapsedTime);
+			}
+		}
+		final float dt = MathUtils.max(Duration.toS(elapsedTime), LSystem.MIN_SECONE_SPEED_FIXED);
+		final float scale = LSystem.getScaleFPS();
+		final int size = _size;
+		final float[] xs = _x, ys = _y, vxs = _vx, vys = _vy, ps = _progress;
+		final int[] flags = _flags;
+		int mask = 0;
+		// 缓动时间与进度
+		for (int i = 0; i < size; i++) {
+			final float d = _durations[i];
+			float t = _times[i] + dt;
+			if (t >= d) {
+				t = ((flags[i] & FLAG_LOOP) != 0) ? t - MathUtils.floor(t / d) * d : d;
+			}
+			_times[i] = t;
+			final int e = _easings[i];
+			ps[i] = (e == LINEAR) ? t / d : Easing.getTween(MODES[e], t / d);
+			mask |= flags[i];
+		}
+		if ((mask & FLAG_DYNAMIC) != 0) {
+			integrateVelocity(dt);
+		}
+		if ((mask & FLAG_LIFE) != 0) {
+			for (int i = 0; i < size; i++) {
+				if ((flags[i] & FLAG_LIFE) != 0) {
+					_life[i] += dt;
+					if (_life[i] >= _lifeMax[i]) {
+						flags[i] |= FLAG_DEAD;
+					}
+				}
+			}
+		}
+		// 位移,与Bullet相同,偏移量为速度乘以缓动进度
+		if ((mask & (FLAG_WAVE | FLAG_DEAD)) == 0) {
+			for (int i = 0; i < size; i++) {
+				final float k = (1f + ps[i]) * scale;
+				xs[i] += vxs[i] * k;
+				ys[i] += vys[i] * k;
+			}
+		} else {
+			for (int i = 0; i < size; i++) {
+				final int f = flags[i];
+				if ((f & FLAG_DEAD) != 0) {
+					continue;
+				}
+				if ((f & FLAG_WAVE) != 0) {
+					integrateWave(i, scale);
+				} else {
+					final float k = (1f + ps[i]) * scale;
+					xs[i] += vxs[i] * k;
+					ys[i] += vys[i] * k;
+				}
+			}
+		}
+		if ((mask & FLAG_SPIN) != 0) {
+			for (int i = 0; i < size; i++) {
+				_angle[i] += _spin[i] * dt;
+			}
+		}
+		if ((mask & FLAG_FADE) != 0) {
+			for (int i = 0; i < size; i++) {
+				if ((flags[i] & FLAG_FADE) != 0) {
+					_alpha[i] = MathUtils.max(0f, _alpha[i] - _alphaFade[i] * dt);
+					if (_alpha[i] <= 0f) {
+						flags[i] |= FLAG_DEAD;
+					}
+				}
+			}
+		}
+		if (_bounded) {
+			final float minX = _boundsX, minY = _boundsY;
+			final float maxX = _boundsX + _boundsWidth, maxY = _boundsY + _boundsHeight;
+			for (int i = 0; i < size; i++) {
+				if (xs[i] + _w[i] < minX || xs[i] > maxX || ys[i] + _h[i] < minY || ys[i] > maxY) {
+					flags[i] |= FLAG_DEAD;
+				}
+			}
+		}
+		if (_targets.size > 0) {
+			collide();
+		}
+		compact();
+	}
+
+	private void integrateVelocity(float dt) {
+		for (int i = 0; i < _size; i++) {
+			if ((_flags[i] & FLAG_DYNAMIC) == 0) {
+				continue;
+			}
+			float vx = _vx[i], vy = _vy[i];
+			if (_acceleration[i] != 0f) {
+				final float k = 1f + _acceleration[i] * dt;
+				vx *= k;
+				vy *= k;
+			}
+			if (_damping[i] < 1f) {
+				vx *= _damping[i];
+				vy *= _damping[i];
+			}
+			final float len2 = vx * vx + vy * vy;
+			final float max = _maxSpeed[i];
+			if (len2 > max * max) {
+				final float k = max / MathUtils.sqrt(len2);
+				vx *= k;
+				vy *= k;
+			}
+			vy += _gravity[i] * dt;
+			_vx[i] = vx;
+			_vy[i] = vy;
+		}
+	}
+
+	private void integrateWave(int i, float scale) {
+		final float vx = _vx[i], vy = _vy[i];
+		final float p = _progress[i];
+		final float bx = vx * p, by = vy * p;
+		float ox, oy;
+		switch (WAVES[_waves[i]]) {
+		case Sin:
+		case Cos: {
+			final float phase = p * MathUtils.TWO_PI * _waveFrequency[i];
+			final float amp = _waveAmplitude[i]
+					* (_waves[i] == WaveType.Sin.ordinal() ? MathUtils.sin(phase) : MathUtils.cos(phase));
+			final float dir = MathUtils.atan2(vy, vx) + MathUtils.HALF_PI;
+			ox = bx + MathUtils.cos(dir) * amp;
+			oy = by + MathUtils.sin(dir) * amp;
+			break;
+		}
+		case Sin_Rotate:
+		case Cos_Rotate: {
+			final float t = _times[i];
+			final float angle = (_waves[i] == WaveType.Sin_Rotate.ordinal()
+					? MathUtils.waveSin(_waveFrequency[i], _waveAmplitude[i], t)
+					: MathUtils.waveCos(_waveFrequency[i], _waveAmplitude[i], t)) * p;
+			final float cos = MathUtils.cos(angle), sin = MathUtils.sin(angle);
+			ox = bx * cos - by * sin;
+			oy = bx * sin + by * cos;
+			break;
+		}
+		default:
+			ox = bx;
+			oy = by;
+			break;
+		}
+		_x[i] += (vx + ox) * scale;
+		_y[i] += (vy + oy) * scale;
+	}
+
+	/**
+	 * 以均匀网格(计数排序)收纳子弹,再逐个目标检查其覆盖的网格单元
+	 */
+	private void collide() {
+		final int size = _size;
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		float maxRadius = 0f;
+		for (int i = 0; i < size; i++) {
+			minX = MathUtils.min(minX, _x[i]);
+			minY = MathUtils.min(minY, _y[i]);
+			maxX = MathUtils.max(maxX, _x[i]);
+			maxY = MathUtils.max(maxY, _y[i]);
+			maxRadius = MathUtils.max(maxRadius, MathUtils.max(_w[i], _h[i]));
+		}
+		float cellSize = MathUtils.max(_cellSize, maxRadius);
+		int cols = (int) ((maxX - minX) / cellSize) + 1;
+		int rows = (int) ((maxY - minY) / cellSize) + 1;
+		// 子弹分布过于稀疏时放大网格,避免网格数远超子弹数
+		for (; (long) cols * rows > size * 4L + 64;) {
+			cellSize *= 2f;
+			cols = (int) ((maxX - minX) / cellSize) + 1;
+			rows = (int) ((maxY - minY) / cellSize) + 1;
+		}
+		final int cells = cols * rows;
+		if (_cellStarts.length < cells + 1) {
+			_cellStarts = new int[MathUtils.nextPowerOfTwo(cells + 1)];
+		}
+		final int[] starts = _cellStarts;
+		for (int c = 0; c <= cells; c++) {
+			starts[c] = 0;
+		}
+		final int[] cellOf = _drawOrder;
+		for (int i = 0; i < size; i++) {
+			final int c = (int) ((_y[i] - minY) / cellSize) * cols + (int) ((_x[i] - minX) / cellSize);
+			cellOf[i] = c;
+			starts[c + 1]++;
+		}
+		for (int c = 0; c < cells; c++) {
+			starts[c + 1] += starts[c];
+		}
+		final int[] items = _cellItems;
+		for (int i = 0; i < size; i++) {
+			items[starts[cellOf[i]]++] = i;
+		}
+		// 还原每个单元的起始位置
+		for (int c = cells; c > 0; c--) {
+			starts[c] = starts[c - 1];
+		}
+		starts[0] = 0;
+		for (int t = 0; t < _targets.size; t++) {
+			final CollisionObject target = _targets.get(t);
+			if (target == null || !target.isVisible()) {
+				continue;
+			}
+			final RectBox rect = target.getRectBox();
+			final int cx0 = MathUtils.max(0, (int) ((rect.x - maxRadius - minX) / cellSize));
+			final int cy0 = MathUtils.max(0, (int) ((rect.y - maxRadius - minY) / cellSize));
+			final int cx1 = MathUtils.min(cols - 1, (int) ((rect.x + rect.width - minX) / cellSize));
+			final int cy1 = MathUtils.min(rows - 1, (int) ((rect.y + rect.height - minY) / cellSize));
+			for (int cy = cy0; cy <= cy1; cy++) {
+				for (int cx = cx0; cx <= cx1; cx++) {
+					final int c = cy * cols + cx;
+					for (int k = starts[c], end = starts[c + 1]; k < end; k++) {
+						hit(items[k], target, rect);
+					}
+				}
+			}
+		}
+	}
+
+	private void hit(int i, CollisionObject target, RectBox rect) {
+		if ((_flags[i] & FLAG_DEAD) != 0) {
+			return;
+		}
+		// 与BulletEntity相同,以缩小四分之一后的内切圆检测
+		final float width = MathUtils.max(2f, _w[i] - _w[i] / 4f);
+		final float height = MathUtils.max(2f, _h[i] - _h[i] / 4f);
+		final float cx = _x[i] + width / 2f;
+		final float cy = _y[i] + height / 2f;
+		final float radius = MathUtils.min(width, height) / 2f;
+		final float nx = MathUtils.max(rect.x, MathUtils.min(cx, rect.x + rect.width));
+		final float ny = MathUtils.max(rect.y, MathUtils.min(cy, rect.y + rect.height));
+		final float dx = cx - nx, dy = cy - ny;
+		if (dx * dx + dy * dy > radius * radius) {
+			return;
+		}
+		_hitCount++;
+		boolean remove;
+		if (_hitListener != null) {
+			remove = _hitListener.onHit(this, _ids[i], target);
+		} else {
+			remove = true;
+		}
+		if (_pierces[i] > 0) {
+			_pierces[i]--;
+			remove = false;
+		}
+		if (remove) {
+			_flags[i] |= FLAG_DEAD;
+		}
+	}
+
+	private void compact() {
+		int i = 0;
+		while (i < _size) {
+			if ((_flags[i] & FLAG_DEAD) != 0) {
+				removeIndex(i);
+			} else {
+				i++;
+			}
+		}
+	}
+
+	private void removeIndex(int i) {
+		releaseImage(_images[i]);
+		final int last = --_size;
+		_freeIds.add(_ids[i]);
+		if (i != last) {
+			_x[i] = _x[last];
+			_y[i] = _y[last];
+			_vx[i] = _vx[last];
+			_vy[i] = _vy[last];
+			_w[i] = _w[last];
+			_h[i] = _h[last];
+			_angle[i] = _angle[last];
+			_spin[i] = _spin[last];
+			_times[i] = _times[last];
+			_durations[i] = _durations[last];
+			_progress[i] = _progress[last];
+			_life[i] = _life[last];
+			_lifeMax[i] = _lifeMax[last];
+			_acceleration[i] = _acceleration[last];
+			_maxSpeed[i] = _maxSpeed[last];
+			_gravity[i] = _gravity[last];
+			_damping[i] = _damping[last];
+			_alpha[i] = _alpha[last];
+			_alphaFade[i] = _alphaFade[last];
+			_waveAmplitude[i] = _waveAmplitude[last];
+			_waveFrequency[i] = _waveFrequency[last];
+			_easings[i] = _easings[last];
+			_waves[i] = _waves[last];
+			_images[i] = _images[last];
+			_colors[i] = _colors[last];
+			_flags[i] = _flags[last];
+			_pierces[i] = _pierces[last];
+			_ids[i] = _ids[last];
+			_slots[_ids[i]] = i;
+		}
+		_flags[last] = FLAG_DEAD;
+	}
+
+	/**
+	 * 按贴图分组绘制全部子弹,每种贴图只切换一次纹理
+	 *
+	 * @param g
+	 * @param offsetX
+	 * @param offsetY
+	 */
+	public void draw(GLEx g, float offsetX, float offsetY) {
+		if (_size == 0 || g == null || !g.running()) {
+			return;
+		}
+		final int imageCount = _textures.size;
+		if (_imageCounts.length < imageCount + 1) {
+			_imageCounts = new int[imageCount + 1];
+		}
+		final int[] counts = _imageCounts;
+		for (int k = 0; k <= imageCount; k++) {
+			counts[k] = 0;
+		}
+		for (int i = 0; i < _size; i++) {
+			counts[_images[i] + 1]++;
+		}
+		for (int k = 0; k < imageCount; k++) {
+			counts[k + 1] += counts[k];
+		}
+		final int[] order = _drawOrder;
+		for (int i = 0; i < _size; i++) {
+			order[counts[_images[i]]++] = i;
+		}
+		final BaseBatch batch = g.batch();
+		final Affine2f xf = g.tx();
+		final float alpha = g.alpha();
+		int begin = 0;
+		for (int k = 0; k < imageCount; k++) {
+			final int end = counts[k];
+			final Animation ani = _animations.get(k);
+			final LTexture tex = (ani != null) ? ani.getSpriteImage() : _textures.get(k);
+			if (begin < end && tex != null && !tex.isClosed()) {
+				batch.setTexture(tex);
+				final float u = tex.xOff(), v = tex.yOff();
+				final float u2 = tex.widthRatio(), v2 = tex.heightRatio();
+				for (int n = begin; n < end; n++) {
+					final int i = order[n];
+					final float a = _alpha[i] * alpha;
+					if (a <= 0f) {
+						continue;
+					}
+					final int color = _colors[i];
+					final int tint = (color & 0xFFFFFF) | ((int) (((color >>> 24) & 0xFF) * MathUtils.min(a, 1f)) << 24);
+					final float hw = _w[i] / 2f, hh = _h[i] / 2f;
+					final float cx = _x[i] + offsetX + hw, cy = _y[i] + offsetY + hh;
+					final float angle = _angle[i];
+					if (angle == 0f) {
+						batch.addQuad(tint, xf.m00, xf.m01, xf.m10, xf.m11, xf.tx, xf.ty, cx - hw, cy - hh, u, v,
+								cx + hw, cy - hh, u2, v, cx - hw, cy + hh, u, v2, cx + hw, cy + hh, u2, v2);
+					} else {
+						final float rad = MathUtils.toRadians(angle);
+						final float cos = MathUtils.cos(rad), sin = MathUtils.sin(rad);
+						final float ax = hw * cos, ay = hw * sin;
+						final float bx = hh * sin, by = hh * cos;
+						batch.addQuad(tint, xf.m00, xf.m01, xf.m10, xf.m11, xf.tx, xf.ty, cx - ax + bx, cy - ay - by, u,
+								v, cx + ax + bx, cy + ay - by, u2, v, cx - ax - bx, cy - ay + by, u, v2, cx + ax - bx,
+								cy + ay + by, u2, v2);
+					}
+				}
+			}
+			begin = end;
+		}
+	}
+
+	/**
+	 * 加入碰撞目标(目标数量应远少于子弹数量)
+	 *
+	 * @param target
+	 * @return
+	 */
+	public BulletBatch addTarget(CollisionObject target) {
+		if (target != null && !_targets.contains(target)) {
+			_targets.add(target);
+		}
+		return this;
+	}
+
+	/**
+	 * 不检查重复直接加入碰撞目标,供每帧按精灵列表重建目标时使用(精灵列表本身不含重复对象,逐个contains检查会退化为O(n^2))
+	 *
+	 * @param target
+	 */
+	void addTargetUnchecked(CollisionObject target) {
+		_targets.add(target);
+	}
+
+	public boolean removeTarget(CollisionObject target) {
+		return _targets.remove(target);
+	}
+
+	public BulletBatch clearTargets() {
+		_targets.clear();
+		return this;
+	}
+
+	public TArray<CollisionObject> getTargets() {
+		return _targets;
+	}
+
+	public BulletBatch setHitListener(HitListener l) {
+		this._hitListener = l;
+		return this;
+	}
+
+	public HitListener getHitListener() {
+		return _hitListener;
+	}
+
+	/**
+	 * 设定碰撞网格的最小单元尺寸(实际尺寸不小于最大子弹尺寸)
+	 *
+	 * @param size
+	 * @return
+	 */
+	public BulletBatch setCellSize(float size) {
+		this._cellSize = MathUtils.max(1f, size);
+		return this;
+	}
+
+	public float getCellSize() {
+		return _cellSize;
+	}
+
+	/**
+	 * 设定子弹存活范围,完全离开此范围的子弹会被移除
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @return
+	 */
+	public BulletBatch setBounds(float x, float y, float w, float h) {
+		this._bounded = true;
+		this._boundsX = x;
+		this._boundsY = y;
+		this._boundsWidth = w;
+		this._boundsHeight = h;
+		return this;
+	}
+
+	public BulletBatch clearBounds() {
+		this._bounded = false;
+		return this;
+	}
+
+	public BulletBatch setEasingMode(EasingMode mode) {
+		this._easingMode = (mode == null) ? EasingMode.Linear : mode;
+		return this;
+	}
+
+	public EasingMode getEasingMode() {
+		return _easingMode;
+	}
+
+	public BulletBatch setDuration(float duration) {
+		this._defaultDuration = MathUtils.max(LSystem.MIN_SECONE_SPEED_FIXED, duration);
+		return this;
+	}
+
+	public float getDuration() {
+		return _defaultDuration;
+	}
+
+	/**
+	 * 设定子弹数量上限(-1为不限制)
+	 *
+	 * @param max
+	 * @return
+	 */
+	public BulletBatch setMaxCount(int max) {
+		this._maxCount = max;
+		return this;
+	}
+
+	public int getMaxCount() {
+		return _maxCount;
+	}
+
+	/**
+	 * 累计命中次数
+	 *
+	 * @return
+	 */
+	public int getHitCount() {
+		return _hitCount;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	public void clear() {
+		for (int i = 0; i < _size; i++) {
+			_freeIds.add(_ids[i]);
+			_flags[i] = FLAG_DEAD;
+		}
+		_size = 0;
+		clearImages();
+	}
+
+	@Override
+	public void close() {
+		_size = 0;
+		_nextId = 0;
+		_freeIds.clear();
+		clearImages();
+		_targets.clear();
+		_hitListener = null;
+		_hitCount = 0;
+	}
+
+}
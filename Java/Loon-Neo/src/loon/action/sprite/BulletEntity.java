@@ -124,6 +124,10 @@ public class BulletEntity extends Entity {
 
 	private EasingMode easingMode;
 
+	private BulletBatch _bulletBatch;
+
+	private boolean _batchMode;
+
 	public BulletEntity() {
 		this(null);
 	}
@@ -1927,10 +1931,69 @@ public class BulletEntity extends Entity {
 		if (bullet.getTexture() != null) {
 			textureFree.add(bullet.getTexture());
 		}
+		if (_batchMode) {
+			getBulletBatch().add(bullet);
+			return this;
+		}
 		addWorld(bullet);
 		return this;
 	}
 
+	/**
+	 * 开启批量模式后,新加入的子弹(包括addCircleBullets等全部发射函数产生的子弹)会被转入BulletBatch,以基础类型数组批量更新,碰撞与绘制,
+	 * 适合上万颗子弹同屏的弹幕.转入后子弹不再是独立对象,发射函数返回的Bullet只记录发射时的参数,BulletListener与CollisionWorld也不再作用于这些子弹,
+	 * 命中事件请使用getBulletBatch().setHitListener监听.
+	 * 
+	 * @param batch
+	 * @return
+	 */
+	public BulletEntity setBatchMode(boolean batch) {
+		this._batchMode = batch;
+		return this;
+	}
+
+	public boolean isBatchMode() {
+		return _batchMode;
+	}
+
+	public BulletBatch getBulletBatch() {
+		if (_bulletBatch == null) {
+			_bulletBatch = new BulletBatch();
+			_bulletBatch.setEasingMode(easingMode);
+		}
+		return _bulletBatch;
+	}
+
+	/**
+	 * 批量子弹数量
+	 * 
+	 * @return
+	 */
+	public int getBatchBulletCount() {
+		return _bulletBatch == null ? 0 : _bulletBatch.size();
+	}
+
+	private void updateBulletBatch(final long elapsedTime) {
+		if (_autoRemoveOfBounds) {
+			final RectBox worldRect = getCollisionBox();
+			_bulletBatch.setBounds(worldRect.x, worldRect.y, worldRect.width, worldRect.height);
+		} else {
+			_bulletBatch.clearBounds();
+		}
+		_bulletBatch.clearTargets();
+		if (_checkCollision && _sprites != null && _sprites._sprites != null) {
+			final ISprite[] spriteList = _sprites._sprites;
+			for (int i = spriteList.length - 1; i >= 0; i--) {
+				final ISprite target = spriteList[i];
+				if (target != null && target != this && (target instanceof CollisionObject)
+						&& ((CollisionObject) target).isVisible()) {
+					_bulletBatch.addTargetUnchecked((CollisionObject) target);
+				}
+			}
+		}
+		_bulletBatch.update(elapsedTime);
+	}
+
 	protected void addWorld(Bullet bullet) {
 		if (_destroyed || bullet == null || bullets.contains(bullet)) {
 			return;
@@ -2133,6 +2196,9 @@ public class BulletEntity extends Entity {
 				bullet.fireTo(spr);
 			}
 		}
+		if (_bulletBatch != null && spr != null) {
+			_bulletBatch.fireAllTo(spr.getX() + spr.getWidth() / 2, spr.getY() + spr.getHeight() / 2);
+		}
 		return this;
 	}
 
@@ -2141,6 +2207,9 @@ public class BulletEntity extends Entity {
 		if (_destroyed || !_running) {
 			return;
 		}
+		if (_bulletBatch != null && !_bulletBatch.isEmpty()) {
+			updateBulletBatch(elapsedTime);
+		}
 		for (int i = bullets.size() - 1; i >= 0; i--) {
 			Bullet bullet = bullets.get(i);
 			if (bullet == null || !bullet.isVisible()) {
@@ -2210,6 +2279,9 @@ public class BulletEntity extends Entity {
 		if (_destroyed) {
 			return;
 		}
+		if (_bulletBatch != null) {
+			_bulletBatch.draw(g, drawX(offsetX), drawY(offsetY));
+		}
 		for (int i = this.bullets.size - 1; i >= 0; i--) {
 			Bullet bullet = bullets.get(i);
 			if (bullet != null) {
@@ -2554,6 +2626,9 @@ public class BulletEntity extends Entity {
 		}
 		bullets.clear();
 		clearBulletPool();
+		if (_bulletBatch != null) {
+			_bulletBatch.clear();
+		}
 		return this;
 	}
 
@@ -2839,6 +2914,9 @@ public class BulletEntity extends Entity {
 
 	public void setEasingMode(EasingMode easingMode) {
 		this.easingMode = easingMode;
+		if (_bulletBatch != null) {
+			_bulletBatch.setEasingMode(easingMode);
+		}
 	}
 
 	protected void fixMovePosition(Bullet bind) {
@@ -2979,6 +3057,10 @@ public class BulletEntity extends Entity {
 		_limitMovedOfBounds = false;
 		_checkCollision = false;
 		clearBulletPool();
+		if (_bulletBatch != null) {
+			_bulletBatch.close();
+			_bulletBatch = null;
+		}
 	}
 
 }
@@ -432,6 +432,7 @@ public class SpriteBatch extends BatchEx<SpriteBatch> {
 			return false;
 		}
 		checkDrawing();
+		texture.touch();
 		if (!texture.isLoaded()) {
 			texture.loadTexture();
 		}
@@ -0,0 +1,331 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.action.sprite;
+
+import loon.LSysException;
+import loon.utils.IntArray;
+import loon.utils.IntMap;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.TArray;
+
+/**
+ * 精灵空间索引(松散均匀网格),由Sprites持有,用于视图裁剪与点,矩形查询.
+ *
+ * 每个精灵只按其左上角放入一个网格单元(宽高不超过单元尺寸时),查询时向左上扩展一个单元即可覆盖全部可能相交的精灵,
+ * 因此移动时只需在单元之间迁移一次,不会产生重复结果;超过单元尺寸的精灵单独存放并在每次查询时检查.
+ * 查询结果为精灵在Sprites中的索引(即LayerSorter排序后的绘制顺序),写入调用者提供的IntArray并按升序排列.
+ */
+public class SpriteSpatialIndex {
+
+	private static class Entry {
+
+		ISprite sprite;
+
+		float x, y, w, h;
+
+		int order;
+
+		int cellKey;
+
+		int slot;
+
+		int allSlot;
+
+		boolean large;
+
+		int stamp;
+	}
+
+	private final IntMap<TArray<Entry>> _cells = new IntMap<TArray<Entry>>();
+
+	private final ObjectMap<ISprite, Entry> _entries = new ObjectMap<ISprite, Entry>();
+
+	private final TArray<Entry> _all = new TArray<Entry>();
+
+	private final TArray<Entry> _large = new TArray<Entry>();
+
+	private final TArray<TArray<Entry>> _cellPool = new TArray<TArray<Entry>>();
+
+	private Entry[] _byOrder = new Entry[0];
+
+	private int _orderSize;
+
+	private final float _cellSize;
+
+	private int _stamp;
+
+	private int _moves;
+
+	public SpriteSpatialIndex() {
+		this(128);
+	}
+
+	public SpriteSpatialIndex(int cellSize) {
+		if (cellSize <= 0) {
+			throw new LSysException("The cell size must be greater than 0 !");
+		}
+		this._cellSize = cellSize;
+	}
+
+	/**
+	 * 按精灵数组重建绘制顺序,新增加入索引,已不存在的移出索引(只在精灵集合结构变化后调用)
+	 *
+	 * @param sprites
+	 * @param size
+	 */
+	public void sync(ISprite[] sprites, int size) {
+		final int stamp = ++_stamp;
+		if (_byOrder.length < size) {
+			_byOrder = new Entry[MathUtils.nextPowerOfTwo(size)];
+		}
+		for (int i = 0; i < size; i++) {
+			final ISprite spr = sprites[i];
+			if (spr == null) {
+				_byOrder[i] = null;
+				continue;
+			}
+			Entry entry = _entries.get(spr);
+			if (entry == null) {
+				entry = new Entry();
+				entry.sprite = spr;
+				entry.allSlot = _all.size;
+				_all.add(entry);
+				_entries.put(spr, entry);
+				place(entry, spr.getX(), spr.getY(), spr.getWidth(), spr.getHeight());
+			} else {
+				move(entry, spr.getX(), spr.getY(), spr.getWidth(), spr.getHeight());
+			}
+			entry.order = i;
+			entry.stamp = stamp;
+			_byOrder[i] = entry;
+		}
+		for (int i = size; i < _orderSize; i++) {
+			_byOrder[i] = null;
+		}
+		_orderSize = size;
+		for (int i = _all.size - 1; i > -1; i--) {
+			final Entry entry = _all.get(i);
+			if (entry.stamp != stamp) {
+				remove(entry);
+			}
+		}
+	}
+
+	/**
+	 * 按精灵当前位置与大小更新索引(order为精灵在Sprites中的索引,用于快速定位)
+	 *
+	 * @param order
+	 * @param spr
+	 */
+	public void refresh(int order, ISprite spr) {
+		Entry entry = (order >= 0 && order < _orderSize) ? _byOrder[order] : null;
+		if (entry == null || entry.sprite != spr) {
+			entry = _entries.get(spr);
+		}
+		if (entry != null) {
+			move(entry, spr.getX(), spr.getY(), spr.getWidth(), spr.getHeight());
+		}
+	}
+
+	public void refresh(ISprite spr) {
+		refresh(-1, spr);
+	}
+
+	public boolean contains(ISprite spr) {
+		return _entries.containsKey(spr);
+	}
+
+	private int toCell(float v) {
+		return MathUtils.ifloor(v / _cellSize);
+	}
+
+	private static int toKey(int cx, int cy) {
+		return ((cx & 0xFFFF) << 16) | (cy & 0xFFFF);
+	}
+
+	private void move(Entry entry, float x, float y, float w, float h) {
+		if (entry.x == x && entry.y == y && entry.w == w && entry.h == h) {
+			return;
+		}
+		final boolean large = isLarge(w, h);
+		if (large == entry.large && (large || entry.cellKey == toKey(toCell(x), toCell(y)))) {
+			entry.x = x;
+			entry.y = y;
+			entry.w = w;
+			entry.h = h;
+			return;
+		}
+		unplace(entry);
+		place(entry, x, y, w, h);
+		_moves++;
+	}
+
+	private boolean isLarge(float w, float h) {
+		return w > _cellSize || h > _cellSize;
+	}
+
+	private void place(Entry entry, float x, float y, float w, float h) {
+		entry.x = x;
+		entry.y = y;
+		entry.w = w;
+		entry.h = h;
+		entry.large = isLarge(w, h);
+		TArray<Entry> list;
+		if (entry.large) {
+			list = _large;
+		} else {
+			entry.cellKey = toKey(toCell(x), toCell(y));
+			list = _cells.get(entry.cellKey);
+			if (list == null) {
+				list = (_cellPool.size > 0) ? _cellPool.pop() : new TArray<Entry>();
+				_cells.put(entry.cellKey, list);
+			}
+		}
+		entry.slot = list.size;
+		list.add(entry);
+	}
+
+	private void unplace(Entry entry) {
+		final TArray<Entry> list = entry.large ? _large : _cells.get(entry.cellKey);
+		if (list == null) {
+			return;
+		}
+		final int last = list.size - 1;
+		if (entry.slot != last) {
+			final Entry tail = list.get(last);
+			list.set(entry.slot, tail);
+			tail.slot = entry.slot;
+		}
+		list.removeIndex(last);
+		if (!entry.large && list.size == 0) {
+			_cells.remove(entry.cellKey);
+			_cellPool.add(list);
+		}
+	}
+
+	private void remove(Entry entry) {
+		unplace(entry);
+		final int last = _all.size - 1;
+		if (entry.allSlot != last) {
+			final Entry tail = _all.get(last);
+			_all.set(entry.allSlot, tail);
+			tail.allSlot = entry.allSlot;
+		}
+		_all.removeIndex(last);
+		_entries.remove(entry.sprite);
+		entry.sprite = null;
+	}
+
+	/**
+	 * 查询与指定矩形相交(含边界)的全部精灵,结果为升序的精灵索引
+	 *
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param out
+	 * @return
+	 */
+	public IntArray query(float x, float y, float w, float h, IntArray out) {
+		if (out == null) {
+			out = new IntArray();
+		}
+		out.clear();
+		final float maxX = x + w;
+		final float maxY = y + h;
+		final int cx0 = toCell(x - _cellSize), cy0 = toCell(y - _cellSize);
+		final int cx1 = toCell(maxX), cy1 = toCell(maxY);
+		final long span = (long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1);
+		if (span > _cells.size() || (cx1 - cx0) >= 0xFFFF || (cy1 - cy0) >= 0xFFFF) {
+			for (TArray<Entry> list : _cells.values()) {
+				collect(list, x, y, maxX, maxY, out);
+			}
+		} else {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				for (int cx = cx0; cx <= cx1; cx++) {
+					final TArray<Entry> list = _cells.get(toKey(cx, cy));
+					if (list != null) {
+						collect(list, x, y, maxX, maxY, out);
+					}
+				}
+			}
+		}
+		collect(_large, x, y, maxX, maxY, out);
+		if (out.length > 1) {
+			out.sort();
+		}
+		return out;
+	}
+
+	public IntArray query(float x, float y, IntArray out) {
+		return query(x, y, 0f, 0f, out);
+	}
+
+	private static void collect(TArray<Entry> list, float x, float y, float maxX, float maxY, IntArray out) {
+		for (int i = 0, size = list.size; i < size; i++) {
+			final Entry e = list.get(i);
+			if (e.x + e.w >= x && e.x <= maxX && e.y + e.h >= y && e.y <= maxY) {
+				out.add(e.order);
+			}
+		}
+	}
+
+	public float getCellSize() {
+		return _cellSize;
+	}
+
+	public int size() {
+		return _all.size;
+	}
+
+	public int getCellCount() {
+		return _cells.size();
+	}
+
+	public int getLargeCount() {
+		return _large.size;
+	}
+
+	/**
+	 * 精灵跨越网格单元的迁移次数
+	 *
+	 * @return
+	 */
+	public int getMoves() {
+		return _moves;
+	}
+
+	public void clear() {
+		for (int i = 0; i < _all.size; i++) {
+			_all.get(i).sprite = null;
+		}
+		_cells.clear();
+		_entries.clear();
+		_all.clear();
+		_large.clear();
+		_cellPool.clear();
+		_byOrder = new Entry[0];
+		_orderSize = 0;
+		_moves = 0;
+	}
+
+}
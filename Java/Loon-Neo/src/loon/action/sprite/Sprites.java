@@ -167,6 +167,10 @@ public final class Sprites extends PlaceActions implements Visible, ZIndex, IArr
 	private ObjectMap<String, TArray<ISprite>> _nameCache;
 	// 标记缓存是否需要重建
 	private boolean _cacheDirty = true;
+	// 空间索引(视图裁剪与点,矩形查询)
+	private SpriteSpatialIndex _spatialIndex;
+	private boolean _spatialDirty = true;
+	private final IntArray _spatialResult = new IntArray();
 
 	public Sprites(Screen screen, int w, int h) {
 		this(null, screen, w, h);
@@ -219,6 +223,7 @@ public final class Sprites extends PlaceActions implements Visible, ZIndex, IArr
 	 */
 	private void invalidateCache() {
 		this._cacheDirty = true;
+		this._spatialDirty = true;
 	}
 
 	/**
@@ -1751,6 +1756,9 @@ public final class Sprites extends PlaceActions implements Visible, ZIndex, IArr
 				if (hasListener) {
 					_sprListener.update(child);
 				}
+				if (_spatialIndex != null && !_spatialDirty) {
+					_spatialIndex.refresh(i, child);
+				}
 				if (_autoSortLayer) {
 					_currentPosHash = LSystem.unite(_currentPosHash, child.getX());
 					_currentPosHash = LSystem.unite(_currentPosHash, child.getY());
@@ -1887,25 +1895,19 @@ public final class Sprites extends PlaceActions implements Visible, ZIndex, IArr
 		} else if (useMask) {
 			_shaderMask.pushBatch(g);
 		}
-		for (int i = 0; i < _size; i++) {
-			ISprite spr = _sprites[i];
-			if (spr == null || !spr.isVisible()) {
-				continue;
-			}
-			if (checkView && _limitViewWindows) {
-				float sx = minX + spr.getX();
-				float sy = minY + spr.getY();
-				float sw = spr.getWidth();
-				float sh = spr.getHeight();
-				if (sx + sw < minX || sx > maxX || sy + sh < minY || sy > maxY) {
-					continue;
+		if (checkView && _limitViewWindows && _spatialIndex != null) {
+			// 只绘制空间索引给出的候选精灵,索引结果按精灵数组顺序排列,因此层级顺序不变
+			final IntArray visible = _spatialIndex.query(0f, 0f, maxX - minX, maxY - minY, syncSpatialIndex());
+			for (int i = 0, size = visible.length; i < size; i++) {
+				final int idx = visible.get(i);
+				if (idx < _size) {
+					renderSprite(g, _sprites[idx], offsetX, offsetY, minX, minY, maxX, maxY, true);
 				}
 			}
-			// 绘制阴影
-			if (_createShadow && _spriteShadow != null && spr.showShadow()) {
-				_spriteShadow.drawShadow(g, spr, offsetX, offsetY);
+		} else {
+			for (int i = 0; i < _size; i++) {
+				renderSprite(g, _sprites[i], offsetX, offsetY, minX, minY, maxX, maxY, checkView);
 			}
-			spr.createUI(g, offsetX, offsetY);
 		}
 
 		if (useLight) {
@@ -1915,6 +1917,157 @@ public final class Sprites extends PlaceActions implements Visible, ZIndex, IArr
 		}
 	}
 
+	private void renderSprite(GLEx g, ISprite spr, float offsetX, float offsetY, float minX, float minY, float maxX,
+			float maxY, boolean checkView) {
+		if (spr == null || !spr.isVisible()) {
+			return;
+		}
+		if (checkView && _limitViewWindows) {
+			float sx = minX + spr.getX();
+			float sy = minY + spr.getY();
+			float sw = spr.getWidth();
+			float sh = spr.getHeight();
+			if (sx + sw < minX || sx > maxX || sy + sh < minY || sy > maxY) {
+				return;
+			}
+		}
+		// 绘制阴影
+		if (_createShadow && _spriteShadow != null && spr.showShadow()) {
+			_spriteShadow.drawShadow(g, spr, offsetX, offsetY);
+		}
+		spr.createUI(g, offsetX, offsetY);
+	}
+
+	/**
+	 * 启用空间索引(松散均匀网格),视图裁剪(setLimitViewWindows)与query,pick查询将只检查附近网格中的精灵.
+	 * 
+	 * 精灵位置与大小在update中增量同步,在Sprites.update之外移动的精灵可调用refreshSpatialIndex立即同步.
+	 * 
+	 * @param cellSize 网格单元尺寸,应不小于多数精灵的宽高
+	 * @return
+	 */
+	public Sprites setSpatialIndex(int cellSize) {
+		if (cellSize <= 0) {
+			_spatialIndex = null;
+		} else if (_spatialIndex == null || _spatialIndex.getCellSize() != cellSize) {
+			_spatialIndex = new SpriteSpatialIndex(cellSize);
+		}
+		_spatialDirty = true;
+		return this;
+	}
+
+	public Sprites setSpatialIndex(boolean use) {
+		return setSpatialIndex(use ? 128 : 0);
+	}
+
+	public boolean isSpatialIndex() {
+		return _spatialIndex != null;
+	}
+
+	public SpriteSpatialIndex getSpatialIndex() {
+		return _spatialIndex;
+	}
+
+	/**
+	 * 立即同步指定精灵在空间索引中的位置
+	 * 
+	 * @param spr
+	 * @return
+	 */
+	public Sprites refreshSpatialIndex(ISprite spr) {
+		if (_spatialIndex != null && spr != null && !_spatialDirty) {
+			_spatialIndex.refresh(spr);
+		}
+		return this;
+	}
+
+	private IntArray syncSpatialIndex() {
+		if (_spatialDirty) {
+			_spatialIndex.sync(_sprites, _size);
+			_spatialDirty = false;
+		}
+		return _spatialResult;
+	}
+
+	/**
+	 * 查询与指定矩形(精灵集合坐标,含边界)相交的全部精灵,按绘制顺序(由底至顶)写入out
+	 * 
+	 * @param x
+	 * @param y
+	 * @param w
+	 * @param h
+	 * @param out
+	 * @return
+	 */
+	public TArray<ISprite> query(float x, float y, float w, float h, TArray<ISprite> out) {
+		if (out == null) {
+			out = new TArray<ISprite>();
+		}
+		out.clear();
+		if (_closed) {
+			return out;
+		}
+		if (_spatialIndex != null) {
+			final IntArray result = _spatialIndex.query(x, y, w, h, syncSpatialIndex());
+			for (int i = 0, size = result.length; i < size; i++) {
+				final int idx = result.get(i);
+				final ISprite spr = (idx < _size) ? _sprites[idx] : null;
+				if (spr != null && intersectsBounds(spr, x, y, x + w, y + h)) {
+					out.add(spr);
+				}
+			}
+		} else {
+			for (int i = 0; i < _size; i++) {
+				final ISprite spr = _sprites[i];
+				if (spr != null && intersectsBounds(spr, x, y, x + w, y + h)) {
+					out.add(spr);
+				}
+			}
+		}
+		return out;
+	}
+
+	public TArray<ISprite> query(float x, float y, TArray<ISprite> out) {
+		return query(x, y, 0f, 0f, out);
+	}
+
+	/**
+	 * 返回包含指定位置(精灵集合坐标)的最上层可见精灵
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public ISprite pick(float x, float y) {
+		if (_closed) {
+			return null;
+		}
+		if (_spatialIndex != null) {
+			final IntArray result = _spatialIndex.query(x, y, 0f, 0f, syncSpatialIndex());
+			for (int i = result.length - 1; i > -1; i--) {
+				final int idx = result.get(i);
+				final ISprite spr = (idx < _size) ? _sprites[idx] : null;
+				if (spr != null && spr.isVisible() && intersectsBounds(spr, x, y, x, y)) {
+					return spr;
+				}
+			}
+			return null;
+		}
+		for (int i = _size - 1; i > -1; i--) {
+			final ISprite spr = _sprites[i];
+			if (spr != null && spr.isVisible() && intersectsBounds(spr, x, y, x, y)) {
+				return spr;
+			}
+		}
+		return null;
+	}
+
+	private static boolean intersectsBounds(ISprite spr, float minX, float minY, float maxX, float maxY) {
+		final float x = spr.getX();
+		final float y = spr.getY();
+		return x + spr.getWidth() >= minX && x <= maxX && y + spr.getHeight() >= minY && y <= maxY;
+	}
+
 	public Sprites addEntityGroup(int count) {
 		for (int i = 0; i < count; i++) {
 			add(new Entity());
@@ -3505,6 +3658,10 @@ public final class Sprites extends PlaceActions implements Visible, ZIndex, IArr
 		_closed = true;
 		_resizabled = false;
 		_sprites = null;
+		if (_spatialIndex != null) {
+			_spatialIndex.clear();
+			_spatialIndex = null;
+		}
 		_collViewSize = null;
 		_collisionObjects = null;
 		freeMask();
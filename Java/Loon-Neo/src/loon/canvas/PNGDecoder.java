@@ -0,0 +1,432 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.canvas;
+
+import loon.BaseIO;
+import loon.LSysException;
+import loon.utils.ArrayByte;
+import loon.utils.MathUtils;
+import loon.utils.ZLibInflate;
+
+/**
+ * PNG图片解码器,把PNG数据解码为Pixmap(ARGB像素).
+ *
+ * 支持全部标准颜色类型与位深(1/2/4/8/16),调色板与tRNS透明色以及Adam7隔行扫描.
+ * IDAT数据经ZLibInflate逐行解压并反过滤,解码过程只保留当前行与上一行,不需要先拼接或解压出完整的图像数据.
+ */
+public final class PNGDecoder {
+
+	private final static int COLOR_GRAY = 0;
+
+	private final static int COLOR_RGB = 2;
+
+	private final static int COLOR_PALETTE = 3;
+
+	private final static int COLOR_GRAY_ALPHA = 4;
+
+	private final static int COLOR_RGBA = 6;
+
+	private final static int[] ADAM7_X = { 0, 4, 0, 2, 0, 1, 0 };
+
+	private final static int[] ADAM7_Y = { 0, 0, 4, 0, 2, 0, 1 };
+
+	private final static int[] ADAM7_DX = { 8, 8, 4, 4, 2, 2, 1 };
+
+	private final static int[] ADAM7_DY = { 8, 8, 8, 4, 4, 2, 2 };
+
+	/**
+	 * 把连续的IDAT块内容作为一个数据流提供给ZLibInflate
+	 */
+	private static class ChunkInput implements ZLibInflate.Input {
+
+		private final ArrayByte _in;
+
+		private int _remaining;
+
+		private boolean _finished;
+
+		ChunkInput(ArrayByte in, int length) {
+			this._in = in;
+			this._remaining = length;
+		}
+
+		@Override
+		public int read(byte[] buf, int off, int len) {
+			for (; _remaining == 0;) {
+				if (_finished || _in.available() < 12) {
+					_finished = true;
+					return -1;
+				}
+				// 跳过上一块的CRC
+				_in.skip(4);
+				final int length = _in.readInt();
+				final int type = _in.readInt();
+				if (type != IDAT) {
+					_finished = true;
+					return -1;
+				}
+				_remaining = length;
+			}
+			final int n = MathUtils.min(MathUtils.min(len, _remaining), _in.available());
+			if (n <= 0) {
+				_finished = true;
+				return -1;
+			}
+			_in.read(buf, off, n);
+			_remaining -= n;
+			return n;
+		}
+	}
+
+	private final static int IHDR = 0x49484452;
+
+	private final static int PLTE = 0x504C5445;
+
+	private final static int TRNS = 0x74524E53;
+
+	private final static int IDAT = 0x49444154;
+
+	private final static int IEND = 0x49454E44;
+
+	public static boolean isPNG(byte[] data) {
+		return data != null && data.length > 8 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N'
+				&& data[3] == 'G' && data[4] == 13 && data[5] == 10 && data[6] == 26 && data[7] == 10;
+	}
+
+	public static Pixmap decode(String res) {
+		return decode(BaseIO.loadArrayByte(res));
+	}
+
+	public static Pixmap decode(byte[] data) {
+		return decode(new ArrayByte(data));
+	}
+
+	public static Pixmap decode(ArrayByte in) {
+		return new PNGDecoder().read(in);
+	}
+
+	private int _width, _height, _bitDepth, _colorType, _interlace;
+
+	private int[] _palette;
+
+	private int _paletteSize;
+
+	private boolean _hasTransparent;
+
+	private int _transGray = -1, _transR = -1, _transG = -1, _transB = -1;
+
+	private PNGDecoder() {
+	}
+
+	private Pixmap read(ArrayByte in) {
+		in.setOrder(ArrayByte.BIG_ENDIAN);
+		if (in.available() < 8 || (in.read() & 0xFF) != 0x89 || in.read() != 'P' || in.read() != 'N'
+				|| in.read() != 'G') {
+			throw new LSysException("Not a PNG image");
+		}
+		in.skip(4);
+		boolean header = false;
+		for (; in.available() >= 8;) {
+			final int length = in.readInt();
+			final int type = in.readInt();
+			if (length < 0 || length > in.available()) {
+				throw new LSysException("Invalid PNG chunk length " + length);
+			}
+			switch (type) {
+			case IHDR:
+				readHeader(in);
+				header = true;
+				break;
+			case PLTE:
+				readPalette(in, length);
+				break;
+			case TRNS:
+				readTransparency(in, length);
+				break;
+			case IDAT:
+				if (!header) {
+					throw new LSysException("PNG IDAT before IHDR");
+				}
+				return readImage(in, length);
+			case IEND:
+				throw new LSysException("PNG image data not found");
+			default:
+				in.skip(length);
+				break;
+			}
+			// CRC
+			in.skip(4);
+		}
+		throw new LSysException("PNG image data not found");
+	}
+
+	private void readHeader(ArrayByte in) {
+		_width = in.readInt();
+		_height = in.readInt();
+		_bitDepth = in.read() & 0xFF;
+		_colorType = in.read() & 0xFF;
+		final int compression = in.read() & 0xFF;
+		final int filter = in.read() & 0xFF;
+		_interlace = in.read() & 0xFF;
+		if (_width <= 0 || _height <= 0) {
+			throw new LSysException("Invalid PNG size " + _width + "x" + _height);
+		}
+		if (compression != 0 || filter != 0 || _interlace > 1) {
+			throw new LSysException("Unsupported PNG compression, filter or interlace method");
+		}
+		switch (_colorType) {
+		case COLOR_GRAY:
+			if (_bitDepth != 1 && _bitDepth != 2 && _bitDepth != 4 && _bitDepth != 8 && _bitDepth != 16) {
+				throw new LSysException("Invalid PNG bit depth " + _bitDepth);
+			}
+			break;
+		case COLOR_PALETTE:
+			if (_bitDepth != 1 && _bitDepth != 2 && _bitDepth != 4 && _bitDepth != 8) {
+				throw new LSysException("Invalid PNG bit depth " + _bitDepth);
+			}
+			break;
+		case COLOR_RGB:
+		case COLOR_GRAY_ALPHA:
+		case COLOR_RGBA:
+			if (_bitDepth != 8 && _bitDepth != 16) {
+				throw new LSysException("Invalid PNG bit depth " + _bitDepth);
+			}
+			break;
+		default:
+			throw new LSysException("Invalid PNG color type " + _colorType);
+		}
+	}
+
+	private void readPalette(ArrayByte in, int length) {
+		_paletteSize = length / 3;
+		_palette = new int[256];
+		for (int i = 0; i < _paletteSize; i++) {
+			final int r = in.read() & 0xFF;
+			final int g = in.read() & 0xFF;
+			final int b = in.read() & 0xFF;
+			_palette[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+		}
+		in.skip(length - _paletteSize * 3);
+	}
+
+	private void readTransparency(ArrayByte in, int length) {
+		switch (_colorType) {
+		case COLOR_PALETTE:
+			if (_palette == null) {
+				throw new LSysException("PNG tRNS before PLTE");
+			}
+			final int n = MathUtils.min(length, 256);
+			for (int i = 0; i < n; i++) {
+				_palette[i] = ((in.read() & 0xFF) << 24) | (_palette[i] & 0xFFFFFF);
+			}
+			in.skip(length - n);
+			_hasTransparent = true;
+			break;
+		case COLOR_GRAY:
+			_transGray = in.readShort() & 0xFFFF;
+			in.skip(length - 2);
+			_hasTransparent = true;
+			break;
+		case COLOR_RGB:
+			_transR = in.readShort() & 0xFFFF;
+			_transG = in.readShort() & 0xFFFF;
+			_transB = in.readShort() & 0xFFFF;
+			in.skip(length - 6);
+			_hasTransparent = true;
+			break;
+		default:
+			in.skip(length);
+			break;
+		}
+	}
+
+	private int channels() {
+		switch (_colorType) {
+		case COLOR_RGB:
+			return 3;
+		case COLOR_GRAY_ALPHA:
+			return 2;
+		case COLOR_RGBA:
+			return 4;
+		default:
+			return 1;
+		}
+	}
+
+	private Pixmap readImage(ArrayByte in, int length) {
+		if (_colorType == COLOR_PALETTE && _palette == null) {
+			throw new LSysException("PNG palette not found");
+		}
+		final ZLibInflate inflate = new ZLibInflate(new ChunkInput(in, length), true);
+		final int bitsPerPixel = channels() * _bitDepth;
+		final int bpp = MathUtils.max(1, bitsPerPixel >> 3);
+		final int[] pixels = new int[_width * _height];
+		final int maxRowBytes = ((_width * bitsPerPixel + 7) >> 3) + 1;
+		byte[] cur = new byte[maxRowBytes];
+		byte[] prev = new byte[maxRowBytes];
+		if (_interlace == 0) {
+			for (int y = 0; y < _height; y++) {
+				inflate.inflateFully(cur, 0, maxRowBytes);
+				unfilter(cur, prev, maxRowBytes, bpp);
+				convertRow(cur, _width, pixels, y * _width, 1);
+				final byte[] tmp = prev;
+				prev = cur;
+				cur = tmp;
+			}
+		} else {
+			for (int pass = 0; pass < 7; pass++) {
+				final int passWidth = (_width - ADAM7_X[pass] + ADAM7_DX[pass] - 1) / ADAM7_DX[pass];
+				final int passHeight = (_height - ADAM7_Y[pass] + ADAM7_DY[pass] - 1) / ADAM7_DY[pass];
+				if (passWidth <= 0 || passHeight <= 0) {
+					continue;
+				}
+				final int rowBytes = ((passWidth * bitsPerPixel + 7) >> 3) + 1;
+				for (int i = 0; i < rowBytes; i++) {
+					prev[i] = 0;
+				}
+				for (int py = 0; py < passHeight; py++) {
+					inflate.inflateFully(cur, 0, rowBytes);
+					unfilter(cur, prev, rowBytes, bpp);
+					final int y = ADAM7_Y[pass] + py * ADAM7_DY[pass];
+					convertRow(cur, passWidth, pixels, y * _width + ADAM7_X[pass], ADAM7_DX[pass]);
+					final byte[] tmp = prev;
+					prev = cur;
+					cur = tmp;
+				}
+			}
+		}
+		final boolean alpha = _hasTransparent || _colorType == COLOR_GRAY_ALPHA || _colorType == COLOR_RGBA;
+		return new Pixmap(pixels, _width, _height, alpha);
+	}
+
+	/**
+	 * 反过滤一行数据,row[0]为过滤类型
+	 */
+	private static void unfilter(byte[] row, byte[] prev, int length, int bpp) {
+		final int filter = row[0];
+		switch (filter) {
+		case PNGEncoder.FILTER_NONE:
+			break;
+		case PNGEncoder.FILTER_SUB:
+			for (int i = bpp + 1; i < length; i++) {
+				row[i] += row[i - bpp];
+			}
+			break;
+		case PNGEncoder.FILTER_UP:
+			for (int i = 1; i < length; i++) {
+				row[i] += prev[i];
+			}
+			break;
+		case PNGEncoder.FILTER_AVERAGE:
+			for (int i = 1; i < length; i++) {
+				final int a = i > bpp ? row[i - bpp] & 0xFF : 0;
+				row[i] += (a + (prev[i] & 0xFF)) >> 1;
+			}
+			break;
+		case PNGEncoder.FILTER_PAETH:
+			for (int i = 1; i < length; i++) {
+				final int a = i > bpp ? row[i - bpp] & 0xFF : 0;
+				final int c = i > bpp ? prev[i - bpp] & 0xFF : 0;
+				row[i] += PNGEncoder.paethPredictor(a, prev[i] & 0xFF, c);
+			}
+			break;
+		default:
+			throw new LSysException("Invalid PNG filter type " + filter);
+		}
+	}
+
+	private int sample(byte[] row, int index) {
+		switch (_bitDepth) {
+		case 8:
+			return row[1 + index] & 0xFF;
+		case 16:
+			return ((row[1 + (index << 1)] & 0xFF) << 8) | (row[2 + (index << 1)] & 0xFF);
+		default:
+			final int bit = index * _bitDepth;
+			final int shift = 8 - _bitDepth - (bit & 7);
+			return ((row[1 + (bit >> 3)] & 0xFF) >> shift) & ((1 << _bitDepth) - 1);
+		}
+	}
+
+	private int scale(int v) {
+		switch (_bitDepth) {
+		case 16:
+			return v >> 8;
+		case 8:
+			return v;
+		default:
+			return v * 255 / ((1 << _bitDepth) - 1);
+		}
+	}
+
+	private void convertRow(byte[] row, int width, int[] pixels, int offset, int step) {
+		switch (_colorType) {
+		case COLOR_RGBA:
+			if (_bitDepth == 8) {
+				for (int x = 0, i = 1; x < width; x++, i += 4, offset += step) {
+					pixels[offset] = ((row[i + 3] & 0xFF) << 24) | ((row[i] & 0xFF) << 16) | ((row[i + 1] & 0xFF) << 8)
+							| (row[i + 2] & 0xFF);
+				}
+			} else {
+				for (int x = 0; x < width; x++, offset += step) {
+					final int s = x << 2;
+					pixels[offset] = (scale(sample(row, s + 3)) << 24) | (scale(sample(row, s)) << 16)
+							| (scale(sample(row, s + 1)) << 8) | scale(sample(row, s + 2));
+				}
+			}
+			break;
+		case COLOR_RGB:
+			for (int x = 0; x < width; x++, offset += step) {
+				final int s = x * 3;
+				final int r = sample(row, s);
+				final int g = sample(row, s + 1);
+				final int b = sample(row, s + 2);
+				final int a = (r == _transR && g == _transG && b == _transB) ? 0 : 0xFF;
+				pixels[offset] = (a << 24) | (scale(r) << 16) | (scale(g) << 8) | scale(b);
+			}
+			break;
+		case COLOR_GRAY_ALPHA:
+			for (int x = 0; x < width; x++, offset += step) {
+				final int v = scale(sample(row, x << 1));
+				pixels[offset] = (scale(sample(row, (x << 1) + 1)) << 24) | (v << 16) | (v << 8) | v;
+			}
+			break;
+		case COLOR_GRAY:
+			for (int x = 0; x < width; x++, offset += step) {
+				final int g = sample(row, x);
+				final int v = scale(g);
+				final int a = g == _transGray ? 0 : 0xFF;
+				pixels[offset] = (a << 24) | (v << 16) | (v << 8) | v;
+			}
+			break;
+		default:
+			for (int x = 0; x < width; x++, offset += step) {
+				final int index = sample(row, x);
+				if (index >= _paletteSize) {
+					throw new LSysException("PNG palette index out of range " + index);
+				}
+				pixels[offset] = _palette[index];
+			}
+			break;
+		}
+	}
+
+}
@@ -0,0 +1,350 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.canvas;
+
+import loon.LSysException;
+import loon.utils.ArrayByte;
+import loon.utils.MathUtils;
+import loon.utils.ZLibDeflate;
+
+/**
+ * PNG图片编码器,把Pixmap(ARGB像素)编码为PNG数据.
+ *
+ * 每行按None/Sub/Up/Average/Paeth中字节分布熵最小的过滤方式过滤后,再用ZLibDeflate压缩.不透明图像自动保存为RGB格式.
+ * 图像较大时按行分为互不依赖的若干段分别过滤与压缩,若设置了Executor(如JavaSE环境下的多线程实现)则各段可以并行处理.
+ */
+public final class PNGEncoder {
+
+	/**
+	 * 分段压缩任务的执行器
+	 */
+	public static interface Executor {
+
+		/**
+		 * 执行全部任务,须在所有任务完成后才返回
+		 *
+		 * @param tasks
+		 */
+		void execute(Runnable[] tasks);
+
+	}
+
+	public final static int FILTER_NONE = 0;
+
+	public final static int FILTER_SUB = 1;
+
+	public final static int FILTER_UP = 2;
+
+	public final static int FILTER_AVERAGE = 3;
+
+	public final static int FILTER_PAETH = 4;
+
+	/**
+	 * 逐行选择最佳过滤方式
+	 */
+	public final static int FILTER_ADAPTIVE = -1;
+
+	private final static byte[] SIGNATURE = { -119, 80, 78, 71, 13, 10, 26, 10 };
+
+	// 每段未压缩数据的最小字节数,过小的分段会降低压缩率
+	private final static int MIN_SEGMENT_BYTES = 256 * 1024;
+
+	private static Executor _executor;
+
+	public static void setExecutor(Executor executor) {
+		_executor = executor;
+	}
+
+	public static Executor getExecutor() {
+		return _executor;
+	}
+
+	private int _level = ZLibDeflate.DEFAULT_COMPRESSION;
+
+	private int _filter = FILTER_ADAPTIVE;
+
+	private boolean _autoOpaque = true;
+
+	public PNGEncoder setCompressionLevel(int level) {
+		this._level = MathUtils.clamp(level, ZLibDeflate.NO_COMPRESSION, ZLibDeflate.BEST_COMPRESSION);
+		return this;
+	}
+
+	public int getCompressionLevel() {
+		return _level;
+	}
+
+	public PNGEncoder setFilter(int filter) {
+		if (filter < FILTER_ADAPTIVE || filter > FILTER_PAETH) {
+			throw new LSysException("Unknown PNG filter type " + filter);
+		}
+		this._filter = filter;
+		return this;
+	}
+
+	public int getFilter() {
+		return _filter;
+	}
+
+	/**
+	 * 是否在所有像素都不透明时保存为RGB格式(默认为true)
+	 *
+	 * @param auto
+	 * @return
+	 */
+	public PNGEncoder setAutoOpaque(boolean auto) {
+		this._autoOpaque = auto;
+		return this;
+	}
+
+	public boolean isAutoOpaque() {
+		return _autoOpaque;
+	}
+
+	public byte[] encode(Pixmap pixmap) {
+		return encode(pixmap.getData(), pixmap.getWidth(), pixmap.getHeight());
+	}
+
+	/**
+	 * 编码ARGB格式的像素数据为PNG
+	 *
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public byte[] encode(int[] pixels, int width, int height) {
+		final boolean alpha = !_autoOpaque || !isOpaque(pixels, width * height);
+		final byte[] header = createHeaderChunk(width, height, alpha);
+		final byte[] data = Pixmap.toChunk("IDAT", createImageData(pixels, width, height, alpha));
+		final byte[] trailer = Pixmap.createTrailerChunk();
+		final ArrayByte png = new ArrayByte(SIGNATURE.length + header.length + data.length + trailer.length);
+		png.write(SIGNATURE);
+		png.write(header);
+		png.write(data);
+		png.write(trailer);
+		return png.getBytes();
+	}
+
+	public static byte[] createHeaderChunk(int width, int height, boolean alpha) {
+		final ArrayByte bytes = new ArrayByte(13);
+		bytes.writeInt(width);
+		bytes.writeInt(height);
+		bytes.writeByte(8);
+		bytes.writeByte(alpha ? 6 : 2);
+		bytes.writeByte(0);
+		bytes.writeByte(0);
+		bytes.writeByte(0);
+		return Pixmap.toChunk("IHDR", bytes.getBytes());
+	}
+
+	/**
+	 * 生成IDAT块内的ZLIB数据
+	 *
+	 * @param pixels
+	 * @param width
+	 * @param height
+	 * @param alpha  为true时输出RGBA,否则输出RGB
+	 * @return
+	 */
+	public byte[] createImageData(final int[] pixels, final int width, final int height, final boolean alpha) {
+		final int channels = alpha ? 4 : 3;
+		final int stride = width * channels + 1;
+		final int rowsPerSegment = MathUtils.max(1, MIN_SEGMENT_BYTES / stride);
+		final Executor executor = _executor;
+		final int count = executor == null ? 1 : MathUtils.max(1, (height + rowsPerSegment - 1) / rowsPerSegment);
+		final ArrayByte[] outputs = new ArrayByte[count];
+		final int[] adlers = new int[count];
+		final int[] lengths = new int[count];
+		final Runnable[] tasks = new Runnable[count];
+		for (int i = 0; i < count; i++) {
+			final int index = i;
+			final int y0 = count == 1 ? 0 : i * rowsPerSegment;
+			final int y1 = count == 1 ? height : MathUtils.min(height, y0 + rowsPerSegment);
+			tasks[i] = new Runnable() {
+
+				@Override
+				public void run() {
+					final byte[] raw = filterRows(pixels, width, y0, y1, alpha);
+					final ArrayByte out = new ArrayByte(raw.length / 4 + 64);
+					new ZLibDeflate(_level).deflate(raw, 0, raw.length, index == count - 1, out);
+					adlers[index] = ZLibDeflate.adler32(1, raw, 0, raw.length);
+					lengths[index] = raw.length;
+					outputs[index] = out;
+				}
+			};
+		}
+		if (count == 1) {
+			tasks[0].run();
+		} else {
+			executor.execute(tasks);
+		}
+		int size = 6;
+		for (int i = 0; i < count; i++) {
+			size += outputs[i].position();
+		}
+		final ArrayByte zlib = new ArrayByte(size);
+		ZLibDeflate.writeHeader(zlib, _level);
+		int adler = 1;
+		for (int i = 0; i < count; i++) {
+			zlib.write(outputs[i].getData(), 0, outputs[i].position());
+			adler = ZLibDeflate.adler32Combine(adler, adlers[i], lengths[i]);
+		}
+		zlib.writeInt(adler);
+		return zlib.getBytes();
+	}
+
+	private static boolean isOpaque(int[] pixels, int length) {
+		for (int i = 0; i < length; i++) {
+			if ((pixels[i] >>> 24) != 0xFF) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void readRow(int[] pixels, int offset, int width, boolean alpha, byte[] row) {
+		int dst = 0;
+		for (int x = 0; x < width; x++) {
+			final int argb = pixels[offset + x];
+			row[dst++] = (byte) (argb >> 16);
+			row[dst++] = (byte) (argb >> 8);
+			row[dst++] = (byte) argb;
+			if (alpha) {
+				row[dst++] = (byte) (argb >>> 24);
+			}
+		}
+	}
+
+	/**
+	 * 过滤[y0,y1)行的像素,返回含过滤类型字节的原始扫描行数据
+	 */
+	private byte[] filterRows(int[] pixels, int width, int y0, int y1, boolean alpha) {
+		final int bpp = alpha ? 4 : 3;
+		final int rowBytes = width * bpp;
+		final byte[] raw = new byte[(rowBytes + 1) * (y1 - y0)];
+		byte[] prev = new byte[rowBytes];
+		byte[] cur = new byte[rowBytes];
+		if (y0 > 0) {
+			readRow(pixels, (y0 - 1) * width, width, alpha, prev);
+		}
+		int[] hist = null;
+		float[] nlogn = null;
+		if (_filter == FILTER_ADAPTIVE) {
+			hist = new int[5 * 256];
+			nlogn = new float[rowBytes + 1];
+			for (int i = 1; i <= rowBytes; i++) {
+				nlogn[i] = i * MathUtils.log(i);
+			}
+		}
+		int pos = 0;
+		for (int y = y0; y < y1; y++) {
+			readRow(pixels, y * width, width, alpha, cur);
+			final int filter = _filter == FILTER_ADAPTIVE ? chooseFilter(cur, prev, rowBytes, bpp, hist, nlogn)
+					: _filter;
+			raw[pos++] = (byte) filter;
+			applyFilter(filter, cur, prev, rowBytes, bpp, raw, pos);
+			pos += rowBytes;
+			final byte[] tmp = prev;
+			prev = cur;
+			cur = tmp;
+		}
+		return raw;
+	}
+
+	/**
+	 * 以过滤后字节的熵(各字节值出现次数n的n*log(n)之和越大,熵越小)最小为准选择过滤方式
+	 */
+	private static int chooseFilter(byte[] cur, byte[] prev, int rowBytes, int bpp, int[] hist, float[] nlogn) {
+		for (int i = 0; i < hist.length; i++) {
+			hist[i] = 0;
+		}
+		for (int i = 0; i < rowBytes; i++) {
+			final int x = cur[i] & 0xFF;
+			final int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+			final int b = prev[i] & 0xFF;
+			final int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+			hist[x]++;
+			hist[256 + ((x - a) & 0xFF)]++;
+			hist[512 + ((x - b) & 0xFF)]++;
+			hist[768 + ((x - ((a + b) >> 1)) & 0xFF)]++;
+			hist[1024 + ((x - paethPredictor(a, b, c)) & 0xFF)]++;
+		}
+		int filter = FILTER_NONE;
+		float best = -1f;
+		for (int f = FILTER_NONE; f <= FILTER_PAETH; f++) {
+			float sum = 0f;
+			for (int i = f << 8, end = i + 256; i < end; i++) {
+				sum += nlogn[hist[i]];
+			}
+			if (sum > best) {
+				best = sum;
+				filter = f;
+			}
+		}
+		return filter;
+	}
+
+	private static void applyFilter(int filter, byte[] cur, byte[] prev, int rowBytes, int bpp, byte[] out,
+			int offset) {
+		switch (filter) {
+		case FILTER_NONE:
+			System.arraycopy(cur, 0, out, offset, rowBytes);
+			break;
+		case FILTER_SUB:
+			for (int i = 0; i < rowBytes; i++) {
+				final int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+				out[offset + i] = (byte) ((cur[i] & 0xFF) - a);
+			}
+			break;
+		case FILTER_UP:
+			for (int i = 0; i < rowBytes; i++) {
+				out[offset + i] = (byte) ((cur[i] & 0xFF) - (prev[i] & 0xFF));
+			}
+			break;
+		case FILTER_AVERAGE:
+			for (int i = 0; i < rowBytes; i++) {
+				final int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+				out[offset + i] = (byte) ((cur[i] & 0xFF) - ((a + (prev[i] & 0xFF)) >> 1));
+			}
+			break;
+		default:
+			for (int i = 0; i < rowBytes; i++) {
+				final int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+				final int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+				out[offset + i] = (byte) ((cur[i] & 0xFF) - paethPredictor(a, prev[i] & 0xFF, c));
+			}
+			break;
+		}
+	}
+
+	static int paethPredictor(int a, int b, int c) {
+		final int p = a + b - c;
+		final int pa = MathUtils.abs(p - a);
+		final int pb = MathUtils.abs(p - b);
+		final int pc = MathUtils.abs(p - c);
+		if (pa <= pb && pa <= pc) {
+			return a;
+		}
+		return pb <= pc ? b : c;
+	}
+
+}
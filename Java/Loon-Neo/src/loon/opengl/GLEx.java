@@ -348,6 +348,53 @@ public class GLEx extends BatchEx<GLEx> implements LRelease {
 		return batch;
 	}
 
+	/**
+	 * 开启或关闭延迟渲染(仅默认的TrilateralBatch支持).开启后绘制命令先记录到命令队列,在提交时按(层,着色器,混合,纹理)排序键合并,
+	 * 互不重叠的不同纹理命令可被重排,从而减少文字,图形与精灵交错绘制时的批处理提交次数
+	 * 
+	 * @param deferred
+	 * @return
+	 */
+	public GLEx setDeferredRendering(boolean deferred) {
+		if (isClosed) {
+			return this;
+		}
+		if (batch instanceof TrilateralBatch) {
+			((TrilateralBatch) batch).setDeferred(deferred);
+		}
+		return this;
+	}
+
+	public boolean isDeferredRendering() {
+		return (batch instanceof TrilateralBatch) && ((TrilateralBatch) batch).isDeferred();
+	}
+
+	/**
+	 * 设置延迟渲染时后续绘制所在的层,层大的总是绘制在层小的之上
+	 * 
+	 * @param layer
+	 * @return
+	 */
+	public GLEx setDrawLayer(int layer) {
+		if (batch instanceof TrilateralBatch) {
+			((TrilateralBatch) batch).setLayer(layer);
+		}
+		return this;
+	}
+
+	public int getDrawLayer() {
+		return (batch instanceof TrilateralBatch) ? ((TrilateralBatch) batch).getLayer() : 0;
+	}
+
+	/**
+	 * 获得延迟渲染的命令队列(可读取命令数量与合并后的批次数量),非默认Batch时返回null
+	 * 
+	 * @return
+	 */
+	public RenderCommandQueue getCommandQueue() {
+		return (batch instanceof TrilateralBatch) ? ((TrilateralBatch) batch).getCommandQueue() : null;
+	}
+
 	/**
 	 * 将当然GLEx缓存到一个单独的LTextureImage中去(用于获得指定范围内的texture)
 	 * 
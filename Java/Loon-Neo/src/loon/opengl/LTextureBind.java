@@ -34,6 +34,7 @@ public class LTextureBind extends GLBase {
 	}
 
 	public void setTexture(final LTexture texture) {
+		texture.touch();
 		final int id = texture.getID();
 		if (!texture.isLoaded()) {
 			texture.loadTexture();
@@ -24,6 +24,7 @@ import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
+import loon.FrameProfiler;
 import loon.LGame;
 import loon.LRelease;
 import loon.LSysException;
@@ -275,6 +276,9 @@ public final class Mesh implements LRelease {
 		if (count == 0) {
 			return;
 		}
+		// 提交次数计入调用者所在的阶段(Screen,Sprites或Desktop),FLUSH只统计提交耗时
+		FrameProfiler.drawCall(count);
+		FrameProfiler.begin(FrameProfiler.FLUSH);
 		if (autoBind) {
 			bind(shader);
 		}
@@ -299,6 +303,7 @@ public final class Mesh implements LRelease {
 		if (autoBind) {
 			unbind(shader);
 		}
+		FrameProfiler.end(FrameProfiler.FLUSH);
 	}
 
 	public boolean isClosed() {
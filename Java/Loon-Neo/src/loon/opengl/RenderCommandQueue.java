@@ -0,0 +1,395 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl;
+
+import loon.utils.MathUtils;
+import loon.utils.SortUtils;
+
+/**
+ * 延迟渲染命令队列,由TrilateralBatch在延迟模式下使用.
+ *
+ * 每个四边形命令保存已变换的20个顶点数据,包围盒与一个64位排序键(层16位,着色器8位,混合模式8位,纹理32位).
+ * 回放时先按层稳定排序(层内保持提交顺序),再在层内按提交顺序把命令合并到状态相同的最近批次.覆盖范围被划分为粗网格,每个单元记录最后触及它的批次,
+ * 命令只有在其覆盖单元的最后批次都不晚于目标批次时才允许前移(即不会越过与它重叠的命令),因此画家算法的结果不变,
+ * 而纹理与混合状态的切换(即批处理的提交次数)会大幅减少.
+ */
+public final class RenderCommandQueue {
+
+	/**
+	 * 回放时接收批次与顶点的对象
+	 */
+	public static interface Replay {
+
+		/**
+		 * 渲染状态改变,调用者应先提交已有的顶点
+		 *
+		 * @param key
+		 */
+		void onState(long key);
+
+		/**
+		 * 写入一个四边形的顶点数据
+		 *
+		 * @param vertices
+		 * @param offset
+		 * @param alpha    命令记录时的颜色透明度
+		 */
+		void onQuad(float[] vertices, int offset, int alpha);
+
+	}
+
+	public final static int VERT_SIZE = 20;
+
+	public final static int MIN_LAYER = Short.MIN_VALUE;
+
+	public final static int MAX_LAYER = Short.MAX_VALUE;
+
+	public final static long STATE_MASK = 0x0000FFFFFFFFFFFFL;
+
+	private final static int DEFAULT_GRID_SIZE = 128;
+
+	/**
+	 * 生成排序键
+	 *
+	 * @param layer     绘制层,范围[MIN_LAYER,MAX_LAYER]
+	 * @param shader    着色器编号(0-255)
+	 * @param blend     混合模式(-1为自动)
+	 * @param textureId 纹理id
+	 * @return
+	 */
+	public static long createKey(int layer, int shader, int blend, int textureId) {
+		final long l = (MathUtils.clamp(layer, MIN_LAYER, MAX_LAYER) - MIN_LAYER) & 0xFFFFL;
+		return (l << 48) | ((shader & 0xFFL) << 40) | (((blend + 1) & 0xFFL) << 32) | (textureId & 0xFFFFFFFFL);
+	}
+
+	public static int getLayer(long key) {
+		return (int) ((key >>> 48) & 0xFFFF) + MIN_LAYER;
+	}
+
+	public static int getShader(long key) {
+		return (int) ((key >>> 40) & 0xFF);
+	}
+
+	public static int getBlend(long key) {
+		return (int) ((key >>> 32) & 0xFF) - 1;
+	}
+
+	public static int getTexture(long key) {
+		return (int) key;
+	}
+
+	private float[] _vertices = new float[VERT_SIZE * 256];
+
+	private float[] _bounds = new float[4 * 256];
+
+	private long[] _keys = new long[256];
+
+	private int[] _alphas = new int[256];
+
+	private int _size;
+
+	private boolean _multiLayer;
+
+	// 按层排序时使用的(层<<32|序号)
+	private long[] _order = new long[0];
+
+	// 批次数据,每个批次中的命令以单向链表连接
+	private long[] _batchKeys = new long[0];
+
+	private int[] _batchHeads = new int[0];
+
+	private int[] _batchTails = new int[0];
+
+	private int[] _next = new int[0];
+
+	// 状态->最近批次的开放寻址表,以代数区分有效项
+	private long[] _stateKeys = new long[0];
+
+	private int[] _stateBatches = new int[0];
+
+	private int[] _stateStamps = new int[0];
+
+	private int _stamp;
+
+	private int[] _cellBatches = new int[0];
+
+	private int _gridSize = DEFAULT_GRID_SIZE;
+
+	private long _commandCount;
+
+	private long _batchCount;
+
+	private long _orderedBatchCount;
+
+	public RenderCommandQueue() {
+	}
+
+	/**
+	 * 添加一个四边形命令
+	 *
+	 * @param key      排序键
+	 * @param vertices 顶点数据
+	 * @param offset   顶点数据起始位置(共VERT_SIZE个)
+	 * @param coords   变换后的四个顶点坐标(x,y交替共8个),用于计算包围盒
+	 * @param alpha    颜色透明度
+	 */
+	public void add(long key, float[] vertices, int offset, float[] coords, int alpha) {
+		final int n = _size;
+		if (n == _keys.length) {
+			final int size = n * 2;
+			_vertices = copy(_vertices, new float[size * VERT_SIZE], n * VERT_SIZE);
+			_bounds = copy(_bounds, new float[size * 4], n * 4);
+			final long[] keys = new long[size];
+			System.arraycopy(_keys, 0, keys, 0, n);
+			_keys = keys;
+			final int[] alphas = new int[size];
+			System.arraycopy(_alphas, 0, alphas, 0, n);
+			_alphas = alphas;
+		}
+		System.arraycopy(vertices, offset, _vertices, n * VERT_SIZE, VERT_SIZE);
+		float minX = coords[0], minY = coords[1], maxX = minX, maxY = minY;
+		for (int i = 2; i < 8; i += 2) {
+			minX = MathUtils.min(minX, coords[i]);
+			maxX = MathUtils.max(maxX, coords[i]);
+			minY = MathUtils.min(minY, coords[i + 1]);
+			maxY = MathUtils.max(maxY, coords[i + 1]);
+		}
+		final int b = n * 4;
+		_bounds[b] = minX;
+		_bounds[b + 1] = minY;
+		_bounds[b + 2] = maxX;
+		_bounds[b + 3] = maxY;
+		_keys[n] = key;
+		_alphas[n] = alpha;
+		if (n > 0 && (_keys[n - 1] >>> 48) != (key >>> 48)) {
+			_multiLayer = true;
+		}
+		_size = n + 1;
+	}
+
+	private static float[] copy(float[] src, float[] dst, int length) {
+		System.arraycopy(src, 0, dst, 0, length);
+		return dst;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public boolean isEmpty() {
+		return _size == 0;
+	}
+
+	public void clear() {
+		_size = 0;
+		_multiLayer = false;
+	}
+
+	/**
+	 * 判断重叠时使用的网格边长(单元数),越大越精确,单条命令的开销也越大
+	 *
+	 * @param size
+	 * @return
+	 */
+	public RenderCommandQueue setGridSize(int size) {
+		this._gridSize = MathUtils.clamp(size, 1, 256);
+		return this;
+	}
+
+	public int getGridSize() {
+		return _gridSize;
+	}
+
+	/**
+	 * 排序合并并按批次顺序回放全部命令,完成后清空队列
+	 *
+	 * @param replay
+	 * @return 回放产生的批次数量
+	 */
+	public int replay(Replay replay) {
+		final int n = _size;
+		if (n == 0) {
+			return 0;
+		}
+		ensureCapacity(n);
+		final long[] order = _order;
+		if (_multiLayer) {
+			for (int i = 0; i < n; i++) {
+				order[i] = ((_keys[i] >>> 48) << 32) | i;
+			}
+			SortUtils.defaultSort(order, 0, n);
+		} else {
+			for (int i = 0; i < n; i++) {
+				order[i] = i;
+			}
+		}
+		int ordered = 1;
+		for (int i = 1; i < n; i++) {
+			if ((_keys[i] & STATE_MASK) != (_keys[i - 1] & STATE_MASK)) {
+				ordered++;
+			}
+		}
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < n * 4; i += 4) {
+			minX = MathUtils.min(minX, _bounds[i]);
+			minY = MathUtils.min(minY, _bounds[i + 1]);
+			maxX = MathUtils.max(maxX, _bounds[i + 2]);
+			maxY = MathUtils.max(maxY, _bounds[i + 3]);
+		}
+		final int grid = _gridSize;
+		final float cellW = MathUtils.max((maxX - minX) / grid, 1f);
+		final float cellH = MathUtils.max((maxY - minY) / grid, 1f);
+		final int[] cells = _cellBatches;
+		for (int i = 0; i < grid * grid; i++) {
+			cells[i] = -1;
+		}
+		if (++_stamp == 0) {
+			for (int i = 0; i < _stateStamps.length; i++) {
+				_stateStamps[i] = 0;
+			}
+			_stamp = 1;
+		}
+		int batches = 0;
+		long lastKey = -1L;
+		int layerStart = 0;
+		for (int k = 0; k < n; k++) {
+			final int cmd = (int) order[k];
+			final long key = _keys[cmd];
+			final long state = key & STATE_MASK;
+			if (k > 0 && (key >>> 48) != (lastKey >>> 48)) {
+				// 层之间不允许合并
+				layerStart = batches;
+			}
+			lastKey = key;
+			final int b = cmd * 4;
+			// 包围盒在网格上的范围,边界稍微内缩,只接触边缘的相邻命令不视为重叠
+			final int c0 = MathUtils.clamp((int) ((_bounds[b] - minX) / cellW), 0, grid - 1);
+			final int r0 = MathUtils.clamp((int) ((_bounds[b + 1] - minY) / cellH), 0, grid - 1);
+			final int c1 = MathUtils.clamp((int) ((_bounds[b + 2] - minX) / cellW - 0.001f), c0, grid - 1);
+			final int r1 = MathUtils.clamp((int) ((_bounds[b + 3] - minY) / cellH - 0.001f), r0, grid - 1);
+			int floor = layerStart;
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					floor = MathUtils.max(floor, cells[r * grid + c]);
+				}
+			}
+			final int slot = findState(state);
+			int target = _stateStamps[slot] == _stamp ? _stateBatches[slot] : -1;
+			_next[cmd] = -1;
+			if (target >= floor) {
+				_next[_batchTails[target]] = cmd;
+			} else {
+				target = batches++;
+				_batchKeys[target] = key;
+				_batchHeads[target] = cmd;
+				_stateKeys[slot] = state;
+				_stateBatches[slot] = target;
+				_stateStamps[slot] = _stamp;
+			}
+			_batchTails[target] = cmd;
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					cells[r * grid + c] = target;
+				}
+			}
+		}
+		// 相邻批次状态相同时(位于不同层)不必再次切换
+		long current = -1L;
+		int states = 0;
+		for (int j = 0; j < batches; j++) {
+			final long state = _batchKeys[j] & STATE_MASK;
+			if (state != current) {
+				replay.onState(_batchKeys[j]);
+				current = state;
+				states++;
+			}
+			for (int cmd = _batchHeads[j]; cmd != -1; cmd = _next[cmd]) {
+				replay.onQuad(_vertices, cmd * VERT_SIZE, _alphas[cmd]);
+			}
+		}
+		_commandCount += n;
+		_batchCount += states;
+		_orderedBatchCount += ordered;
+		clear();
+		return states;
+	}
+
+	private int findState(long state) {
+		final int mask = _stateKeys.length - 1;
+		int slot = (int) (state ^ (state >>> 32)) * 0x9E3779B9 & mask;
+		while (_stateStamps[slot] == _stamp && _stateKeys[slot] != state) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void ensureCapacity(int n) {
+		if (_order.length < n) {
+			final int size = MathUtils.nextPowerOfTwo(n);
+			_order = new long[size];
+			_next = new int[size];
+			_batchKeys = new long[size];
+			_batchHeads = new int[size];
+			_batchTails = new int[size];
+			_stateKeys = new long[size * 2];
+			_stateBatches = new int[size * 2];
+			_stateStamps = new int[size * 2];
+		}
+		if (_cellBatches.length < _gridSize * _gridSize) {
+			_cellBatches = new int[_gridSize * _gridSize];
+		}
+	}
+
+	/**
+	 * 自上次resetStats后回放的命令数量
+	 *
+	 * @return
+	 */
+	public long getCommandCount() {
+		return _commandCount;
+	}
+
+	/**
+	 * 自上次resetStats后回放产生的状态切换(批次)数量
+	 *
+	 * @return
+	 */
+	public long getBatchCount() {
+		return _batchCount;
+	}
+
+	/**
+	 * 若按提交顺序直接渲染,相同命令会产生的状态切换数量
+	 *
+	 * @return
+	 */
+	public long getOrderedBatchCount() {
+		return _orderedBatchCount;
+	}
+
+	public void resetStats() {
+		_commandCount = 0;
+		_batchCount = 0;
+		_orderedBatchCount = 0;
+	}
+
+}
@@ -20,6 +20,7 @@
  */
 package loon.opengl;
 
+import loon.LTexture;
 import loon.canvas.LColor;
 import loon.geom.Affine2f;
 import loon.geom.Matrix4;
@@ -61,6 +62,33 @@ public final class TrilateralBatch extends BaseBatch {
 	private final Affine2f _affineCache = new Affine2f();
 	private final IntFloatMap colorCache = new IntFloatMap(256);
 
+	private final RenderCommandQueue _commandQueue = new RenderCommandQueue();
+	private final RenderCommandQueue.Replay _commandReplay = new RenderCommandQueue.Replay() {
+
+		@Override
+		public void onState(long key) {
+			if (_currentIndexCount > 0) {
+				TrilateralBatch.super.flush();
+				submit();
+			}
+			curTexId = lastTexId = RenderCommandQueue.getTexture(key);
+			_currentBlendMode = RenderCommandQueue.getBlend(key);
+		}
+
+		@Override
+		public void onQuad(float[] vertices, int offset, int alpha) {
+			final int index = _currentIndexCount;
+			_expandVertices.expand(index);
+			_expandVertices.setBatch(index, vertices, offset, VERT_SIZE);
+			_currentIndexCount = index + VERT_SIZE;
+			_currentAlpha = alpha;
+		}
+	};
+
+	private boolean _deferred = false;
+	private int _currentLayer = 0;
+	private int _shaderId = 0;
+
 	public TrilateralBatch(GL20 gl) {
 		this(gl, LSystem.DEF_SOURCE);
 	}
@@ -154,9 +182,6 @@ public final class TrilateralBatch extends BaseBatch {
 		_coordCache[6] = m00 * x4 + m10 * y4 + tx;
 		_coordCache[7] = m01 * x4 + m11 * y4 + ty;
 
-		final int index = _currentIndexCount;
-		_expandVertices.expand(index);
-
 		_vertCache[0] = _coordCache[0];
 		_vertCache[1] = _coordCache[1];
 		_vertCache[2] = colorFloat;
@@ -178,8 +203,7 @@ public final class TrilateralBatch extends BaseBatch {
 		_vertCache[18] = sx3;
 		_vertCache[19] = sy3;
 
-		_expandVertices.setBatch(index, _vertCache);
-		_currentIndexCount = index + VERT_SIZE;
+		pushVertices();
 	}
 
 	@Override
@@ -202,9 +226,6 @@ public final class TrilateralBatch extends BaseBatch {
 		_coordCache[6] = m00 * x4 + m10 * y4 + tx;
 		_coordCache[7] = m01 * x4 + m11 * y4 + ty;
 
-		final int index = _currentIndexCount;
-		_expandVertices.expand(index);
-
 		_vertCache[0] = _coordCache[0];
 		_vertCache[1] = _coordCache[1];
 		_vertCache[2] = c1;
@@ -226,8 +247,7 @@ public final class TrilateralBatch extends BaseBatch {
 		_vertCache[18] = u2;
 		_vertCache[19] = v;
 
-		_expandVertices.setBatch(index, _vertCache);
-		_currentIndexCount = index + VERT_SIZE;
+		pushVertices();
 	}
 
 	@Override
@@ -238,6 +258,44 @@ public final class TrilateralBatch extends BaseBatch {
 				u, v, u2, v2);
 	}
 
+	private void pushVertices() {
+		if (_deferred) {
+			// 自动混合模式按当前透明度确定,与submit的选择一致,不透明与半透明命令不会被合并到同一批次
+			int blend = _currentBlendMode;
+			if (blend == -1) {
+				blend = (_currentAlpha >= 240) ? BlendMethod.MODE_NORMAL : BlendMethod.MODE_SPEED;
+			}
+			_commandQueue.add(RenderCommandQueue.createKey(_currentLayer, _shaderId, blend, curTexId), _vertCache, 0,
+					_coordCache, _currentAlpha);
+			return;
+		}
+		final int index = _currentIndexCount;
+		_expandVertices.expand(index);
+		_expandVertices.setBatch(index, _vertCache);
+		_currentIndexCount = index + VERT_SIZE;
+	}
+
+	@Override
+	public void setTexture(final LTexture texture) {
+		if (!_deferred) {
+			super.setTexture(texture);
+			return;
+		}
+		// 延迟模式下纹理只是排序键的一部分,切换时不提交
+		texture.touch();
+		if (!texture.isLoaded()) {
+			texture.loadTexture();
+		}
+		this.lastTexId = this.curTexId = texture.getID();
+	}
+
+	@Override
+	protected void updateTexture() {
+		if (!_deferred) {
+			super.updateTexture();
+		}
+	}
+
 	@Override
 	public void begin(float fbufWidth, float fbufHeight, boolean flip) {
 		super.begin(fbufWidth, fbufHeight, flip);
@@ -267,6 +325,7 @@ public final class TrilateralBatch extends BaseBatch {
 					_currentBatchShader = null;
 				}
 				_currentBatchShader = createShaderProgram();
+				_shaderId = (_shaderId + 1) & 0xFF;
 				setShaderDirty(false);
 			}
 			_loaded = true;
@@ -304,6 +363,10 @@ public final class TrilateralBatch extends BaseBatch {
 
 	@Override
 	public void flush() {
+		if (_deferred && !_commandQueue.isEmpty()) {
+			replayCommands();
+			return;
+		}
 		if (_currentIndexCount == 0) {
 			return;
 		}
@@ -314,6 +377,70 @@ public final class TrilateralBatch extends BaseBatch {
 		}
 	}
 
+	/**
+	 * 排序合并已记录的渲染命令,并按批次写入顶点与提交
+	 */
+	private void replayCommands() {
+		if (_currentIndexCount > 0) {
+			super.flush();
+			submit();
+		}
+		final int texId = curTexId;
+		final int blend = _currentBlendMode;
+		final int alpha = _currentAlpha;
+		_commandQueue.replay(_commandReplay);
+		if (_currentIndexCount > 0) {
+			super.flush();
+			submit();
+		}
+		if (_currentBatchShader != null) {
+			_currentBatchShader.end();
+		}
+		this.lastTexId = this.curTexId = texId;
+		this._currentBlendMode = blend;
+		this._currentAlpha = alpha;
+	}
+
+	/**
+	 * 是否使用延迟渲染模式.此模式下绘制命令被记录到命令队列,在flush(如帧结束,裁剪或着色器切换)时按排序键重排,
+	 * 在不改变画家算法结果的前提下合并相同纹理与混合模式的命令,以减少批处理提交次数
+	 * 
+	 * @param deferred
+	 * @return
+	 */
+	public TrilateralBatch setDeferred(boolean deferred) {
+		if (this._deferred != deferred) {
+			if (begun) {
+				flush();
+			}
+			this._deferred = deferred;
+		}
+		return this;
+	}
+
+	public boolean isDeferred() {
+		return _deferred;
+	}
+
+	/**
+	 * 设置延迟模式下后续命令所在的绘制层,层大的总是绘制在层小的之上,同层命令只在互不重叠时才会被重排
+	 * 
+	 * @param layer
+	 * @return
+	 */
+	public TrilateralBatch setLayer(int layer) {
+		this._currentLayer = MathUtils.clamp(layer, RenderCommandQueue.MIN_LAYER, RenderCommandQueue.MAX_LAYER);
+		return this;
+	}
+
+	public int getLayer() {
+		return _currentLayer;
+	}
+
+	public RenderCommandQueue getCommandQueue() {
+		return _commandQueue;
+	}
+
 	public int getSize() {
 		return _expandVertices.getSize();
 	}
@@ -107,6 +107,28 @@ public class LightShapeSystem implements LRelease {
 
 	private boolean _dirty;
 
+	private final LightVisibility _visibility;
+
+	private final LightVisibility.Result _visibilityResult;
+
+	private final TArray<Polygon> _batchPolygons;
+
+	private LightVisibility.Result[] _batchResults;
+
+	private int _batchCount;
+
+	private float[] _polygonPoints;
+
+	private int[] _shapeMarks;
+
+	private int _shapeMark;
+
+	private boolean _sweepMode = true;
+
+	private boolean _staticShapes;
+
+	private boolean _shapesChanged = true;
+
 	public LightShapeSystem() {
 		this(20f, 0f, 0f, LSystem.viewSize.getWidth(), LSystem.viewSize.getHeight());
 	}
@@ -127,6 +149,12 @@ public class LightShapeSystem implements LRelease {
 		_lightCircle = new Circle(w / 2f, h / 2f, lightSize);
 		_lightRadius = new Circle(_lightCircle.getCenterX(), _lightCircle.getCenterY(),
 				MathUtils.max(_lightSizes.getMaxX(), _lightSizes.getMaxY()) / 2);
+		_visibility = new LightVisibility();
+		_visibilityResult = new LightVisibility.Result();
+		_batchPolygons = new TArray<Polygon>();
+		_batchResults = new LightVisibility.Result[0];
+		_polygonPoints = new float[0];
+		_shapeMarks = new int[0];
 	}
 
 	public LightShapeSystem setLightCircleCenter(float x, float y) {
@@ -181,6 +209,8 @@ public class LightShapeSystem implements LRelease {
 
 	public LightShapeSystem clear() {
 		_lightAllShapes.clear();
+		_batchPolygons.clear();
+		_batchCount = 0;
 		_dirty = true;
 		return this;
 	}
@@ -192,6 +222,7 @@ public class LightShapeSystem implements LRelease {
 			_lightAllShapes.addAll(_lightCircles);
 			_lightAllShapes.addAll(_lightPolygons);
 			_lightAllShapes.add(_lightSizes);
+			_shapesChanged = true;
 			_dirty = false;
 		}
 	}
@@ -210,78 +241,234 @@ public class LightShapeSystem implements LRelease {
 			setLightCircleCenter(tx, ty);
 			_lightTemp.set(_lightCircle.getCenterX() + 0.5f, _lightCircle.getCenterY() + 0.5f);
 			_lightVisibleShapes.clear();
-			_lightSwappables.clear();
-			_lightVertices.clear();
+			if (_sweepMode) {
+				updateLightBySweep();
+			} else {
+				updateLightByVertices();
+			}
+			_lastPosX = tx;
+			_lastPosY = ty;
+			_updateLight = true;
+		} else {
+			_updateLight = false;
+		}
+	}
+
+	/**
+	 * 以角度扫描计算光源的可见多边形
+	 */
+	protected void updateLightBySweep() {
+		buildVisibility();
+		_visibility.compute(_lightTemp.x, _lightTemp.y, _visibilityResult);
+		final int size = _visibilityResult.size();
+		final int mark = ++_shapeMark;
+		for (int i = 0; i < size; i++) {
+			final int owner = _visibilityResult.getOwner(i);
+			if (owner >= 0 && _shapeMarks[owner] != mark) {
+				_shapeMarks[owner] = mark;
+				_lightVisibleShapes.add(_lightAllShapes.get(owner));
+			}
+		}
+		setPolygon(_lightPolygon, _visibilityResult);
+	}
+
+	/**
+	 * 逐个顶点与全部形状求交计算光源的可见多边形(旧算法,复杂度为O(顶点数*形状数))
+	 */
+	protected void updateLightByVertices() {
+		_lightSwappables.clear();
+		_lightVertices.clear();
+		for (int i = 0; i < _lightAllShapes.size; i++) {
+			LightShape shape = _lightAllShapes.get(i);
+			if (shape != null) {
+				Vector2f[] list = shape.getVertices(_lightTemp);
+				for (int j = 0; j < list.length; j++) {
+					Vector2f vertex = list[j];
+					_lightVertices.add(vertex);
+					_lightVertexMap.put(vertex, shape);
+				}
+			}
+		}
+		_lightVertices.sort(_sortVertices);
+		_lightPoints.clear();
+		_lightVertex.setZero();
+		for (int n = 0; n < _lightVertices.size; n++) {
+			Vector2f vert = _lightVertices.get(n);
+			Vector2f blocking = null;
+			LightShape blockingShape = null;
+			LightShape testShape = _lightVertexMap.get(vert);
+			_lightVertex.set(vert);
+			_lightVertex.subtractSelf(_lightTemp);
 			for (int i = 0; i < _lightAllShapes.size; i++) {
 				LightShape shape = _lightAllShapes.get(i);
 				if (shape != null) {
-					Vector2f[] list = shape.getVertices(_lightTemp);
-					for (int j = 0; j < list.length; j++) {
-						Vector2f vertex = list[j];
-						_lightVertices.add(vertex);
-						_lightVertexMap.put(vertex, shape);
+					Vector2f intersect = shape.getIntersection(_lightTemp, _lightVertex, vert);
+					if (intersect == null) {
+						continue;
 					}
-				}
-			}
-			_lightVertices.sort(_sortVertices);
-			_lightPoints.clear();
-			_lightVertex.setZero();
-			for (int n = 0; n < _lightVertices.size; n++) {
-				Vector2f vert = _lightVertices.get(n);
-				Vector2f blocking = null;
-				LightShape blockingShape = null;
-				LightShape testShape = _lightVertexMap.get(vert);
-				_lightVertex.set(vert);
-				_lightVertex.subtractSelf(_lightTemp);
-				for (int i = 0; i < _lightAllShapes.size; i++) {
-					LightShape shape = _lightAllShapes.get(i);
-					if (shape != null) {
-						Vector2f intersect = shape.getIntersection(_lightTemp, _lightVertex, vert);
-						if (intersect == null) {
-							continue;
-						}
-						if (blocking == null || intersect.distance(_lightTemp) < blocking.distance(_lightTemp)) {
-							blocking = intersect;
-							blockingShape = shape;
-						}
+					if (blocking == null || intersect.distance(_lightTemp) < blocking.distance(_lightTemp)) {
+						blocking = intersect;
+						blockingShape = shape;
 					}
 				}
-				if (blocking == null) {
-					_lightPoints.add(vert);
-				} else if (blocking.distance(_lightTemp) > vert.distance(_lightTemp)) {
-					_lightPoints.add(vert);
-					if (blockingShape != testShape && !testShape.contains(_lightTemp)) {
-						_lightPoints.add(blocking);
-						_lightVertexMap.put(blocking, blockingShape);
-						_lightSwappables.add(_lightPoints.size() - 2);
-					}
+			}
+			if (blocking == null) {
+				_lightPoints.add(vert);
+			} else if (blocking.distance(_lightTemp) > vert.distance(_lightTemp)) {
+				_lightPoints.add(vert);
+				if (blockingShape != testShape && !testShape.contains(_lightTemp)) {
+					_lightPoints.add(blocking);
+					_lightVertexMap.put(blocking, blockingShape);
+					_lightSwappables.add(_lightPoints.size() - 2);
 				}
 			}
-			for (int i = 0; i < _lightPoints.size; i++) {
-				_lightVisibleShapes.add(_lightVertexMap.get(_lightPoints.get(i)));
+		}
+		for (int i = 0; i < _lightPoints.size; i++) {
+			_lightVisibleShapes.add(_lightVertexMap.get(_lightPoints.get(i)));
+		}
+		for (int j = 0; j < _lightSwappables.size(); j++) {
+			int n = _lightSwappables.get(j);
+			int s1 = n + 1;
+			int before = (n - 1 + _lightPoints.size()) % _lightPoints.size();
+			int after = (s1 + 1) % _lightPoints.size();
+			LightShape beforeShape = _lightVertexMap.get(_lightPoints.get(before)),
+					afterShape = _lightVertexMap.get(_lightPoints.get(after)),
+					shape1 = _lightVertexMap.get(_lightPoints.get(n)),
+					shape2 = _lightVertexMap.get(_lightPoints.get(s1));
+			if (shape1 == afterShape || shape2 == beforeShape) {
+				_lightPoints.swap(n, s1);
 			}
-			for (int j = 0; j < _lightSwappables.size(); j++) {
-				int n = _lightSwappables.get(j);
-				int s1 = n + 1;
-				int before = (n - 1 + _lightPoints.size()) % _lightPoints.size();
-				int after = (s1 + 1) % _lightPoints.size();
-				LightShape beforeShape = _lightVertexMap.get(_lightPoints.get(before)),
-						afterShape = _lightVertexMap.get(_lightPoints.get(after)),
-						shape1 = _lightVertexMap.get(_lightPoints.get(n)),
-						shape2 = _lightVertexMap.get(_lightPoints.get(s1));
-				if (shape1 == afterShape || shape2 == beforeShape) {
-					_lightPoints.swap(n, s1);
-				}
+		}
+		_lightPolygon.setPolygon(_lightPoints, _dirty);
+	}
+
+	/**
+	 * 同时计算多个光源的可见多边形,多个光源在设置了LightVisibility.Executor时并行计算
+	 * 
+	 * @param positions 光源坐标(x,y交替)
+	 * @return
+	 */
+	public LightShapeSystem updateLights(float... positions) {
+		checkDirty();
+		buildVisibility();
+		final int count = positions.length / 2;
+		if (_batchResults.length < count) {
+			final LightVisibility.Result[] results = new LightVisibility.Result[count];
+			System.arraycopy(_batchResults, 0, results, 0, _batchResults.length);
+			_batchResults = results;
+		}
+		for (int i = _batchPolygons.size; i < count; i++) {
+			_batchPolygons.add(new Polygon());
+		}
+		_visibility.computeAll(positions, count, _batchResults);
+		for (int i = 0; i < count; i++) {
+			setPolygon(_batchPolygons.get(i), _batchResults[i]);
+		}
+		_batchCount = count;
+		return this;
+	}
+
+	public int getLightCount() {
+		return _batchCount;
+	}
+
+	public Polygon getLightPolygon(int idx) {
+		if (idx < 0 || idx >= _batchCount) {
+			return null;
+		}
+		return _batchPolygons.get(idx);
+	}
+
+	public LightVisibility.Result getLightResult(int idx) {
+		if (idx < 0 || idx >= _batchCount) {
+			return null;
+		}
+		return _batchResults[idx];
+	}
+
+	public Polygon getLightPolygon() {
+		return _lightPolygon;
+	}
+
+	private void buildVisibility() {
+		if (_shapesChanged || !_staticShapes) {
+			_visibility.begin();
+			for (int i = 0; i < _lightAllShapes.size; i++) {
+				_visibility.addShape(_lightAllShapes.get(i), i);
 			}
-			_lightPolygon.setPolygon(_lightPoints, _dirty);
-			_lastPosX = tx;
-			_lastPosY = ty;
-			_updateLight = true;
-		} else {
-			_updateLight = false;
+			_visibility.end();
+			if (_shapeMarks.length < _lightAllShapes.size) {
+				_shapeMarks = new int[MathUtils.nextPowerOfTwo(_lightAllShapes.size)];
+				_shapeMark = 0;
+			}
+			_shapesChanged = false;
 		}
 	}
 
+	private void setPolygon(Polygon poly, LightVisibility.Result result) {
+		final int size = result.size();
+		if (size < 3) {
+			return;
+		}
+		if (_polygonPoints.length != size * 2) {
+			_polygonPoints = new float[size * 2];
+		}
+		System.arraycopy(result.getPoints(), 0, _polygonPoints, 0, size * 2);
+		poly.setPolygon(_polygonPoints, size);
+	}
+
+	public LightVisibility getVisibility() {
+		return _visibility;
+	}
+
+	/**
+	 * 是否使用角度扫描算法(默认为true),为false时使用旧的逐顶点求交算法
+	 * 
+	 * @param sweep
+	 * @return
+	 */
+	public LightShapeSystem setSweepMode(boolean sweep) {
+		this._sweepMode = sweep;
+		this._lastPosX = this._lastPosY = -1f;
+		return this;
+	}
+
+	public boolean isSweepMode() {
+		return _sweepMode;
+	}
+
+	/**
+	 * 形状不会移动时可设为true,此时只在添加或清除形状后才重建遮挡线段
+	 * 
+	 * @param s
+	 * @return
+	 */
+	public LightShapeSystem setStaticShapes(boolean s) {
+		this._staticShapes = s;
+		this._shapesChanged = true;
+		return this;
+	}
+
+	public boolean isStaticShapes() {
+		return _staticShapes;
+	}
+
+	/**
+	 * 光照范围,大于0时只计算光源周围此范围内的遮挡物(仅角度扫描算法)
+	 * 
+	 * @param range
+	 * @return
+	 */
+	public LightShapeSystem setLightRange(float range) {
+		_visibility.setRange(range);
+		this._lastPosX = this._lastPosY = -1f;
+		return this;
+	}
+
+	public float getLightRange() {
+		return _visibility.getRange();
+	}
+
 	public LColor getLightPolyColor() {
 		return _lightPolygonColor;
 	}
@@ -322,6 +509,9 @@ public class LightShapeSystem implements LRelease {
 		int oldColor = g.color();
 		g.setColor(_lightPolygonColor);
 		g.fill(_lightPolygon);
+		for (int i = 0; i < _batchCount; i++) {
+			g.fill(_batchPolygons.get(i));
+		}
 		for (int i = _lightAllShapes.size - 1; i > -1; i--) {
 			LightShape shape = _lightAllShapes.get(i);
 			if (shape == _lightSizes) {
@@ -0,0 +1,743 @@
+/**
+ * Copyright 2008 - 2019 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.opengl.light;
+
+import loon.LSysException;
+import loon.geom.Shape;
+import loon.geom.Vector2f;
+import loon.utils.MathUtils;
+import loon.utils.NumberUtils;
+import loon.utils.SortUtils;
+
+/**
+ * 2D光源可见区域(可见多边形)计算器,供LightShapeSystem使用.
+ *
+ * 遮挡物被拆分为线段,以float数组(x1,y1,x2,y2)保存并放入均匀网格.计算时以光源为中心,按线段端点的伪角度(与atan2单调一致,无需三角函数)
+ * 排序后逆时针扫描一周,维护当前与扫描射线相交的活动线段集合,只在最近的活动线段发生变化时输出顶点,复杂度为O(n log n + n*k)(k为活动线段数).
+ * 设置了光照范围时只从网格中取出范围内的线段,并以范围矩形作为边界.
+ *
+ * 几何数据在begin/end之间构建后只读,每个光源的临时数据都保存在各自的Result中,因此多个光源可以并行计算(若设置了Executor).
+ */
+public class LightVisibility {
+
+	/**
+	 * 多光源并行计算的执行器
+	 */
+	public static interface Executor {
+
+		/**
+		 * 执行全部任务,须在所有任务完成后才返回
+		 *
+		 * @param tasks
+		 */
+		void execute(Runnable[] tasks);
+
+	}
+
+	private static Executor _executor;
+
+	public static void setExecutor(Executor executor) {
+		_executor = executor;
+	}
+
+	public static Executor getExecutor() {
+		return _executor;
+	}
+
+	/**
+	 * 单个光源的可见多边形,以及计算时使用的临时数据
+	 */
+	public static class Result {
+
+		private float _lightX, _lightY;
+
+		private float[] _points = new float[64];
+
+		private int[] _owners = new int[32];
+
+		private int _count;
+
+		// 以光源为原点的相对坐标线段
+		private float[] _segs = new float[64];
+
+		private int[] _segOwners = new int[16];
+
+		private int _segCount;
+
+		private long[] _events = new long[32];
+
+		private int[] _active = new int[16];
+
+		private int[] _activeSlots = new int[16];
+
+		private int _activeCount;
+
+		private int[] _marks = new int[0];
+
+		private int _mark;
+
+		public float getLightX() {
+			return _lightX;
+		}
+
+		public float getLightY() {
+			return _lightY;
+		}
+
+		/**
+		 * 多边形顶点数量
+		 *
+		 * @return
+		 */
+		public int size() {
+			return _count;
+		}
+
+		public float getX(int idx) {
+			return _points[idx * 2];
+		}
+
+		public float getY(int idx) {
+			return _points[idx * 2 + 1];
+		}
+
+		/**
+		 * 此顶点所在线段所属的形状编号,范围边界为-1
+		 *
+		 * @param idx
+		 * @return
+		 */
+		public int getOwner(int idx) {
+			return _owners[idx];
+		}
+
+		/**
+		 * 顶点数据(x,y交替),长度大于等于size()*2
+		 *
+		 * @return
+		 */
+		public float[] getPoints() {
+			return _points;
+		}
+
+		public float[] toArray() {
+			final float[] result = new float[_count * 2];
+			System.arraycopy(_points, 0, result, 0, result.length);
+			return result;
+		}
+
+		public float getArea() {
+			float area = 0f;
+			for (int i = 0, j = _count - 1; i < _count; j = i++) {
+				area += _points[j * 2] * _points[i * 2 + 1] - _points[i * 2] * _points[j * 2 + 1];
+			}
+			return MathUtils.abs(area) * 0.5f;
+		}
+
+		private void addSegment(float x1, float y1, float x2, float y2, int owner) {
+			final int n = _segCount;
+			if (n * 4 + 4 > _segs.length) {
+				final float[] segs = new float[MathUtils.max(_segs.length * 2, n * 4 + 4)];
+				System.arraycopy(_segs, 0, segs, 0, n * 4);
+				_segs = segs;
+				final int[] owners = new int[segs.length / 4];
+				System.arraycopy(_segOwners, 0, owners, 0, n);
+				_segOwners = owners;
+			}
+			final int idx = n * 4;
+			_segs[idx] = x1 - _lightX;
+			_segs[idx + 1] = y1 - _lightY;
+			_segs[idx + 2] = x2 - _lightX;
+			_segs[idx + 3] = y2 - _lightY;
+			_segOwners[n] = owner;
+			_segCount++;
+		}
+
+		private void ensureSweep(int segCount) {
+			if (_events.length < segCount * 2) {
+				_events = new long[MathUtils.nextPowerOfTwo(segCount * 2)];
+			}
+			if (_active.length < segCount) {
+				final int size = MathUtils.nextPowerOfTwo(segCount);
+				_active = new int[size];
+				_activeSlots = new int[size];
+			}
+			for (int i = 0; i < segCount; i++) {
+				_activeSlots[i] = -1;
+			}
+			_activeCount = 0;
+		}
+
+		private void activate(int seg) {
+			if (_activeSlots[seg] == -1) {
+				_activeSlots[seg] = _activeCount;
+				_active[_activeCount++] = seg;
+			}
+		}
+
+		private void deactivate(int seg) {
+			final int slot = _activeSlots[seg];
+			if (slot != -1) {
+				final int last = _active[--_activeCount];
+				_active[slot] = last;
+				_activeSlots[last] = slot;
+				_activeSlots[seg] = -1;
+			}
+		}
+
+		private void emit(float x, float y, int owner) {
+			if (_count > 0) {
+				final float dx = _points[_count * 2 - 2] - x;
+				final float dy = _points[_count * 2 - 1] - y;
+				if (dx * dx + dy * dy <= MERGE_DIST2) {
+					return;
+				}
+			}
+			if (_count * 2 + 2 > _points.length) {
+				final float[] points = new float[_points.length * 2];
+				System.arraycopy(_points, 0, points, 0, _count * 2);
+				_points = points;
+				final int[] owners = new int[_owners.length * 2];
+				System.arraycopy(_owners, 0, owners, 0, _count);
+				_owners = owners;
+			}
+			_points[_count * 2] = x;
+			_points[_count * 2 + 1] = y;
+			_owners[_count] = owner;
+			_count++;
+		}
+	}
+
+	// 判断最近线段时射线相对事件方向的逆时针偏移量(弧度)
+	private static final float SWEEP_EPSILON = 1e-4f;
+
+	private static final float MERGE_DIST2 = 1e-4f;
+
+	private static final float COLLINEAR_EPSILON = 1e-7f;
+
+	private static final float EDGE_EPSILON = 1e-3f;
+
+	private static final int MAX_GRID_SIZE = 256;
+
+	private float[] _segs = new float[64];
+
+	private int[] _segOwners = new int[16];
+
+	private int _segCount;
+
+	private float _minX, _minY, _maxX, _maxY;
+
+	private final float _baseCellSize;
+
+	private float _cellSize;
+
+	private int _cols, _rows;
+
+	private int[] _cellStarts = new int[0];
+
+	private int[] _cellItems = new int[0];
+
+	private float _range;
+
+	private int _circleSegments = 16;
+
+	private boolean _building;
+
+	public LightVisibility() {
+		this(64f);
+	}
+
+	public LightVisibility(float cellSize) {
+		if (cellSize <= 0) {
+			throw new LSysException("The cell size must be greater than 0 !");
+		}
+		this._baseCellSize = cellSize;
+		this._cellSize = cellSize;
+	}
+
+	/**
+	 * 开始重建遮挡线段
+	 *
+	 * @return
+	 */
+	public LightVisibility begin() {
+		_segCount = 0;
+		_building = true;
+		return this;
+	}
+
+	public LightVisibility addSegment(float x1, float y1, float x2, float y2, int owner) {
+		if (x1 == x2 && y1 == y2) {
+			return this;
+		}
+		final int n = _segCount;
+		if (n * 4 + 4 > _segs.length) {
+			final float[] segs = new float[MathUtils.max(_segs.length * 2, n * 4 + 4)];
+			System.arraycopy(_segs, 0, segs, 0, n * 4);
+			_segs = segs;
+			final int[] owners = new int[segs.length / 4];
+			System.arraycopy(_segOwners, 0, owners, 0, n);
+			_segOwners = owners;
+		}
+		final int idx = n * 4;
+		_segs[idx] = x1;
+		_segs[idx + 1] = y1;
+		_segs[idx + 2] = x2;
+		_segs[idx + 3] = y2;
+		_segOwners[n] = owner;
+		_segCount++;
+		return this;
+	}
+
+	/**
+	 * 添加一组首尾相连的顶点(x,y交替)构成的闭合轮廓
+	 *
+	 * @param points
+	 * @param count
+	 * @param owner
+	 * @return
+	 */
+	public LightVisibility addLoop(float[] points, int count, int owner) {
+		for (int i = 0, j = count - 1; i < count; j = i++) {
+			addSegment(points[j * 2], points[j * 2 + 1], points[i * 2], points[i * 2 + 1], owner);
+		}
+		return this;
+	}
+
+	/**
+	 * 添加光照形状,圆形以正多边形近似
+	 *
+	 * @param shape
+	 * @param owner
+	 * @return
+	 */
+	public LightVisibility addShape(LightShape shape, int owner) {
+		if (shape == null) {
+			return this;
+		}
+		if (shape instanceof LightRect) {
+			final LightRect rect = (LightRect) shape;
+			final float x1 = rect.getMinX(), y1 = rect.getMinY();
+			final float x2 = rect.getMaxX(), y2 = rect.getMaxY();
+			addSegment(x2, y2, x1, y2, owner);
+			addSegment(x1, y2, x1, y1, owner);
+			addSegment(x1, y1, x2, y1, owner);
+			addSegment(x2, y1, x2, y2, owner);
+		} else if (shape instanceof LightCircle) {
+			final LightCircle circle = (LightCircle) shape;
+			final float cx = circle.getCenterX(), cy = circle.getCenterY();
+			final float r = circle.getRadius();
+			final int segments = _circleSegments;
+			float px = cx + r, py = cy;
+			for (int i = 1; i <= segments; i++) {
+				final float rad = MathUtils.TWO_PI * i / segments;
+				final float nx = cx + MathUtils.cos(rad) * r;
+				final float ny = cy + MathUtils.sin(rad) * r;
+				addSegment(px, py, nx, ny, owner);
+				px = nx;
+				py = ny;
+			}
+		} else if (shape instanceof Shape) {
+			final float[] points = ((Shape) shape).getPoints();
+			addLoop(points, points.length / 2, owner);
+		} else {
+			final Vector2f[] verts = shape.getVertices(null);
+			for (int i = 0, j = verts.length - 1; i < verts.length; j = i++) {
+				addSegment(verts[j].x, verts[j].y, verts[i].x, verts[i].y, owner);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * 结束线段构建,以计数排序把线段放入其包围盒覆盖的网格单元
+	 *
+	 * @return
+	 */
+	public LightVisibility end() {
+		_building = false;
+		final int n = _segCount;
+		if (n == 0) {
+			_cols = _rows = 0;
+			return this;
+		}
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < n * 4; i += 2) {
+			final float x = _segs[i], y = _segs[i + 1];
+			minX = MathUtils.min(minX, x);
+			minY = MathUtils.min(minY, y);
+			maxX = MathUtils.max(maxX, x);
+			maxY = MathUtils.max(maxY, y);
+		}
+		_minX = minX;
+		_minY = minY;
+		_maxX = maxX;
+		_maxY = maxY;
+		float cellSize = _baseCellSize;
+		final float maxSide = MathUtils.max(maxX - minX, maxY - minY);
+		if (maxSide / cellSize > MAX_GRID_SIZE) {
+			cellSize = maxSide / MAX_GRID_SIZE;
+		}
+		final int cols = MathUtils.max(1, (int) ((maxX - minX) / cellSize) + 1);
+		final int rows = MathUtils.max(1, (int) ((maxY - minY) / cellSize) + 1);
+		_cols = cols;
+		_rows = rows;
+		_cellSize = cellSize;
+		if (_cellStarts.length < cols * rows + 1) {
+			_cellStarts = new int[cols * rows + 1];
+		} else {
+			for (int i = 0; i <= cols * rows; i++) {
+				_cellStarts[i] = 0;
+			}
+		}
+		final int[] starts = _cellStarts;
+		int total = 0;
+		for (int i = 0; i < n; i++) {
+			final int idx = i * 4;
+			final int c0 = cellX(MathUtils.min(_segs[idx], _segs[idx + 2]));
+			final int c1 = cellX(MathUtils.max(_segs[idx], _segs[idx + 2]));
+			final int r0 = cellY(MathUtils.min(_segs[idx + 1], _segs[idx + 3]));
+			final int r1 = cellY(MathUtils.max(_segs[idx + 1], _segs[idx + 3]));
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					starts[r * cols + c + 1]++;
+					total++;
+				}
+			}
+		}
+		for (int i = 1; i <= cols * rows; i++) {
+			starts[i] += starts[i - 1];
+		}
+		if (_cellItems.length < total) {
+			_cellItems = new int[MathUtils.nextPowerOfTwo(total)];
+		}
+		// 借用下一单元的起始位置作为写入游标,写完后整体回退一位
+		for (int i = 0; i < n; i++) {
+			final int idx = i * 4;
+			final int c0 = cellX(MathUtils.min(_segs[idx], _segs[idx + 2]));
+			final int c1 = cellX(MathUtils.max(_segs[idx], _segs[idx + 2]));
+			final int r0 = cellY(MathUtils.min(_segs[idx + 1], _segs[idx + 3]));
+			final int r1 = cellY(MathUtils.max(_segs[idx + 1], _segs[idx + 3]));
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					_cellItems[starts[r * cols + c + 1]++] = i;
+				}
+			}
+		}
+		for (int i = cols * rows; i > 0; i--) {
+			starts[i] = starts[i - 1];
+		}
+		starts[0] = 0;
+		return this;
+	}
+
+	private int cellX(float x) {
+		return MathUtils.clamp((int) ((x - _minX) / _cellSize), 0, _cols - 1);
+	}
+
+	private int cellY(float y) {
+		return MathUtils.clamp((int) ((y - _minY) / _cellSize), 0, _rows - 1);
+	}
+
+	public int getSegmentCount() {
+		return _segCount;
+	}
+
+	/**
+	 * 光照范围,大于0时只计算范围矩形内的线段并以该矩形为边界,为0时使用全部线段
+	 *
+	 * @param range
+	 * @return
+	 */
+	public LightVisibility setRange(float range) {
+		this._range = MathUtils.max(0f, range);
+		return this;
+	}
+
+	public float getRange() {
+		return _range;
+	}
+
+	/**
+	 * 近似圆形时使用的边数
+	 *
+	 * @param segments
+	 * @return
+	 */
+	public LightVisibility setCircleSegments(int segments) {
+		this._circleSegments = MathUtils.max(3, segments);
+		return this;
+	}
+
+	public int getCircleSegments() {
+		return _circleSegments;
+	}
+
+	/**
+	 * 计算指定位置光源的可见多边形(只读取共享的线段数据,不同Result可在不同线程中同时计算)
+	 *
+	 * @param lightX
+	 * @param lightY
+	 * @param out
+	 * @return
+	 */
+	public Result compute(float lightX, float lightY, Result out) {
+		if (_building) {
+			throw new LSysException("The segments are being built, call end() first !");
+		}
+		final Result result = out == null ? new Result() : out;
+		result._lightX = lightX;
+		result._lightY = lightY;
+		result._count = 0;
+		result._segCount = 0;
+		gather(result);
+		sweep(result);
+		return result;
+	}
+
+	/**
+	 * 计算多个光源的可见多边形,设置了Executor时并行执行
+	 *
+	 * @param positions 光源坐标(x,y交替)
+	 * @param count     光源数量
+	 * @param out       结果数组,长度不小于count,空位会自动创建
+	 */
+	public void computeAll(final float[] positions, final int count, final Result[] out) {
+		for (int i = 0; i < count; i++) {
+			if (out[i] == null) {
+				out[i] = new Result();
+			}
+		}
+		final Executor executor = _executor;
+		if (executor == null || count < 2) {
+			for (int i = 0; i < count; i++) {
+				compute(positions[i * 2], positions[i * 2 + 1], out[i]);
+			}
+			return;
+		}
+		final Runnable[] tasks = new Runnable[count];
+		for (int i = 0; i < count; i++) {
+			final int index = i;
+			tasks[i] = new Runnable() {
+
+				@Override
+				public void run() {
+					compute(positions[index * 2], positions[index * 2 + 1], out[index]);
+				}
+			};
+		}
+		executor.execute(tasks);
+	}
+
+	private void gather(Result result) {
+		final int n = _segCount;
+		final float range = _range;
+		if (range <= 0f || _cols == 0) {
+			for (int i = 0; i < n; i++) {
+				final int idx = i * 4;
+				result.addSegment(_segs[idx], _segs[idx + 1], _segs[idx + 2], _segs[idx + 3], _segOwners[i]);
+			}
+			return;
+		}
+		final float x1 = result._lightX - range, y1 = result._lightY - range;
+		final float x2 = result._lightX + range, y2 = result._lightY + range;
+		if (x2 >= _minX && x1 <= _maxX && y2 >= _minY && y1 <= _maxY) {
+			if (result._marks.length < n) {
+				result._marks = new int[MathUtils.nextPowerOfTwo(n)];
+				result._mark = 0;
+			}
+			final int mark = ++result._mark;
+			final int[] marks = result._marks;
+			final int c0 = cellX(x1), c1 = cellX(x2);
+			final int r0 = cellY(y1), r1 = cellY(y2);
+			for (int r = r0; r <= r1; r++) {
+				for (int c = c0; c <= c1; c++) {
+					final int cell = r * _cols + c;
+					for (int k = _cellStarts[cell], end = _cellStarts[cell + 1]; k < end; k++) {
+						final int i = _cellItems[k];
+						if (marks[i] != mark) {
+							marks[i] = mark;
+							final int idx = i * 4;
+							result.addSegment(_segs[idx], _segs[idx + 1], _segs[idx + 2], _segs[idx + 3],
+									_segOwners[i]);
+						}
+					}
+				}
+			}
+		}
+		result.addSegment(x2, y2, x1, y2, -1);
+		result.addSegment(x1, y2, x1, y1, -1);
+		result.addSegment(x1, y1, x2, y1, -1);
+		result.addSegment(x2, y1, x2, y2, -1);
+	}
+
+	private void sweep(Result result) {
+		final int n = result._segCount;
+		if (n == 0) {
+			return;
+		}
+		result.ensureSweep(n);
+		final float[] segs = result._segs;
+		final long[] events = result._events;
+		int eventCount = 0;
+		float far = 0f;
+		for (int i = 0; i < n; i++) {
+			final int idx = i * 4;
+			float ax = segs[idx], ay = segs[idx + 1];
+			float bx = segs[idx + 2], by = segs[idx + 3];
+			far = MathUtils.max(far, MathUtils.max(ax * ax + ay * ay, bx * bx + by * by));
+			final float cross = ax * by - ay * bx;
+			// 与光源共线(或近似共线)的线段在扫描中没有宽度
+			if (MathUtils.abs(cross) <= COLLINEAR_EPSILON * (ax * ax + ay * ay + bx * bx + by * by)) {
+				continue;
+			}
+			// 统一为逆时针方向,a为进入端点,b为离开端点
+			if (cross < 0f) {
+				segs[idx] = bx;
+				segs[idx + 1] = by;
+				segs[idx + 2] = ax;
+				segs[idx + 3] = ay;
+				float t = ax;
+				ax = bx;
+				bx = t;
+				t = ay;
+				ay = by;
+				by = t;
+			}
+			final float pa = pseudoAngle(ax, ay);
+			final float pb = pseudoAngle(bx, by);
+			events[eventCount++] = toEvent(pa, i << 1);
+			events[eventCount++] = toEvent(pb, (i << 1) | 1);
+			// 跨越0角度的线段在扫描开始时已处于活动状态
+			if (pa > pb) {
+				result.activate(i);
+			}
+		}
+		far = MathUtils.sqrt(far) * 2f + 1f;
+		SortUtils.defaultSort(events, 0, eventCount);
+		int prev = nearest(result, 1f, -SWEEP_EPSILON);
+		int i = 0;
+		while (i < eventCount) {
+			final int key = (int) (events[i] >>> 32);
+			final int first = (int) events[i];
+			final int firstIdx = (first >> 1) * 4 + ((first & 1) == 0 ? 0 : 2);
+			final float dx = segs[firstIdx], dy = segs[firstIdx + 1];
+			for (; i < eventCount && (int) (events[i] >>> 32) == key; i++) {
+				final int payload = (int) events[i];
+				if ((payload & 1) == 0) {
+					result.activate(payload >> 1);
+				} else {
+					result.deactivate(payload >> 1);
+				}
+			}
+			final int cur = nearest(result, dx - SWEEP_EPSILON * dy, dy + SWEEP_EPSILON * dx);
+			if (cur != prev) {
+				emitHit(result, prev, dx, dy, far);
+				emitHit(result, cur, dx, dy, far);
+				prev = cur;
+			}
+		}
+		if (result._count > 1) {
+			final int last = result._count - 1;
+			final float ex = result._points[last * 2] - result._points[0];
+			final float ey = result._points[last * 2 + 1] - result._points[1];
+			if (ex * ex + ey * ey <= MERGE_DIST2) {
+				result._count--;
+			}
+		}
+	}
+
+	/**
+	 * 射线(rx,ry)与活动线段的最近交点所在线段,无交点时返回-1
+	 */
+	private static int nearest(Result result, float rx, float ry) {
+		final float[] segs = result._segs;
+		final int[] active = result._active;
+		int best = -1;
+		float bestT = Float.MAX_VALUE;
+		for (int k = 0, size = result._activeCount; k < size; k++) {
+			final int seg = active[k];
+			final int idx = seg * 4;
+			final float ax = segs[idx], ay = segs[idx + 1];
+			final float sx = segs[idx + 2] - ax, sy = segs[idx + 3] - ay;
+			final float denom = rx * sy - ry * sx;
+			if (denom == 0f) {
+				continue;
+			}
+			final float t = (ax * sy - ay * sx) / denom;
+			if (t <= 0f || t >= bestT) {
+				continue;
+			}
+			final float u = (ax * ry - ay * rx) / denom;
+			if (u >= -EDGE_EPSILON && u <= 1f + EDGE_EPSILON) {
+				bestT = t;
+				best = seg;
+			}
+		}
+		return best;
+	}
+
+	private static void emitHit(Result result, int seg, float dx, float dy, float far) {
+		if (seg == -1) {
+			final float len = MathUtils.sqrt(dx * dx + dy * dy);
+			result.emit(result._lightX + dx / len * far, result._lightY + dy / len * far, -1);
+			return;
+		}
+		final float[] segs = result._segs;
+		final int idx = seg * 4;
+		final float ax = segs[idx], ay = segs[idx + 1];
+		final float bx = segs[idx + 2], by = segs[idx + 3];
+		final float sx = bx - ax, sy = by - ay;
+		final float denom = dx * sy - dy * sx;
+		float hx, hy;
+		if (denom == 0f) {
+			if (ax * ax + ay * ay <= bx * bx + by * by) {
+				hx = ax;
+				hy = ay;
+			} else {
+				hx = bx;
+				hy = by;
+			}
+		} else {
+			final float t = (ax * sy - ay * sx) / denom;
+			hx = dx * t;
+			hy = dy * t;
+		}
+		result.emit(result._lightX + hx, result._lightY + hy, result._segOwners[seg]);
+	}
+
+	/**
+	 * 与atan2(y,x)在[0,2PI)上单调一致的伪角度,取值[0,4)
+	 */
+	private static float pseudoAngle(float x, float y) {
+		if (y >= 0f) {
+			return x >= 0f ? y / (x + y) : 1f - x / (y - x);
+		}
+		return x < 0f ? 2f - y / (-x - y) : 3f + x / (x - y);
+	}
+
+	private static long toEvent(float angle, int payload) {
+		// 非负float的位模式与数值大小顺序一致(加0f把-0f转为0f)
+		return ((long) NumberUtils.floatToIntBits(angle + 0f) << 32) | (payload & 0xFFFFFFFFL);
+	}
+
+}
@@ -166,39 +166,16 @@ public class ArrayByte implements IArray, LRelease {
 	}
 
 	public static byte[] toZLIB(int order, byte[] raw) {
-		ArrayByte zlib = new ArrayByte(raw.length + 6 + raw.length / 32000 * 5);
+		ArrayByte zlib = new ArrayByte(raw.length / 4 + 64);
 		zlib.setOrder(order);
-		byte tmp = 8;
-		zlib.writeByte(tmp);
-		zlib.writeByte((31 - (tmp << 8) % 31) % 31);
-		int pos = 0;
-		while (raw.length - pos > 32000) {
-			writeUncompressedDeflateBlock(zlib, false, raw, pos, 32000);
-			pos += 32000;
-		}
-		writeUncompressedDeflateBlock(zlib, true, raw, pos, (char) (raw.length - pos));
-		zlib.writeInt(calcADLER32(raw));
+		ZLibDeflate.writeHeader(zlib, ZLibDeflate.DEFAULT_COMPRESSION);
+		new ZLibDeflate().deflate(raw, 0, raw.length, true, zlib);
+		zlib.writeInt(ZLibDeflate.adler32(1, raw, 0, raw.length));
 		return zlib.getBytes();
 	}
 
-	private static void writeUncompressedDeflateBlock(ArrayByte zlib, boolean last, byte[] raw, int off, int len) {
-		zlib.writeByte((byte) (last ? 1 : 0));
-		zlib.writeByte((byte) (len & 0xFF));
-		zlib.writeByte((byte) ((len & 0xFF00) >> 8));
-		zlib.writeByte((byte) ((len ^ 0xFFFFFFFF) & 0xFF));
-		zlib.writeByte((byte) (((len ^ 0xFFFFFFFF) & 0xFF00) >> 8));
-		zlib.write(raw, off, len);
-	}
-
-	private static int calcADLER32(byte[] raw) {
-		int s1 = 1;
-		int s2 = 0;
-		for (int i = 0; i < raw.length; i++) {
-			int abs = (raw[i] >= 0) ? raw[i] : (raw[i] + 256);
-			s1 = (s1 + abs) % 65521;
-			s2 = (s2 + s1) % 65521;
-		}
-		return (s2 << 16) + s1;
+	public static byte[] fromZLIB(byte[] zlib) {
+		return ZLibInflate.decompress(zlib);
 	}
 
 	/**
@@ -216,7 +193,7 @@ public class ArrayByte implements IArray, LRelease {
 				len += 1;
 			} else if (ch < 2048) {
 				len += 2;
-			} else if ((ch & 0xFC00) == 0xD800 && (str.charAt(i + 1) & 0xFC00) == 0xDC00) {
+			} else if ((ch & 0xFC00) == 0xD800 && i + 1 < str.length() && (str.charAt(i + 1) & 0xFC00) == 0xDC00) {
 				++i;
 				len += 4;
 			} else {
@@ -571,6 +548,58 @@ public class ArrayByte implements IArray, LRelease {
 		return strings.toString();
 	}
 
+	/**
+	 * 读取无符号变长整数(每字节低7位有效,最高位表示后续仍有字节)
+	 * 
+	 * @return
+	 * @throws LSysException
+	 */
+	public int readVarInt() throws LSysException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			checkAvailable(1);
+			final int b = _buffer[_position++];
+			result |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new LSysException("Malformed varint !");
+	}
+
+	/**
+	 * 读取以变长整数记录字节长度的UTF-8字符串
+	 * 
+	 * @return
+	 * @throws LSysException
+	 */
+	public String readUTF8() throws LSysException {
+		final int len = readVarInt();
+		checkAvailable(len);
+		final int end = _position + len;
+		final char[] chars = new char[len];
+		int count = 0;
+		while (_position < end) {
+			final int a = _buffer[_position++] & 0xff;
+			if (a < 0x80) {
+				chars[count++] = (char) a;
+			} else if ((a & 0xe0) == 0xc0 && _position < end) {
+				chars[count++] = (char) (((a & 0x1f) << 6) | (_buffer[_position++] & 0x3f));
+			} else if ((a & 0xf0) == 0xe0 && _position + 1 < end) {
+				chars[count++] = (char) (((a & 0x0f) << 12) | ((_buffer[_position++] & 0x3f) << 6)
+						| (_buffer[_position++] & 0x3f));
+			} else if ((a & 0xf8) == 0xf0 && _position + 2 < end) {
+				final int c = (((a & 0x07) << 18) | ((_buffer[_position++] & 0x3f) << 12)
+						| ((_buffer[_position++] & 0x3f) << 6) | (_buffer[_position++] & 0x3f)) - 0x10000;
+				chars[count++] = (char) (0xD800 | (c >> 10));
+				chars[count++] = (char) (0xDC00 | (c & 0x3FF));
+			} else {
+				throw new LSysException("Malformed UTF-8 !");
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
 	private void ensureCapacity(int dataSize) {
 		if (_position + dataSize > _buffer.length) {
 			if (_expandArray) {
@@ -704,6 +733,57 @@ public class ArrayByte implements IArray, LRelease {
 		return this;
 	}
 
+	/**
+	 * 写入无符号变长整数,小于128的数值只占1字节
+	 * 
+	 * @param v
+	 * @return
+	 */
+	public ArrayByte writeVarInt(int v) {
+		ensureCapacity(5);
+		while ((v & ~0x7f) != 0) {
+			_buffer[_position++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		_buffer[_position++] = (byte) v;
+		return this;
+	}
+
+	/**
+	 * 写入以变长整数记录字节长度的UTF-8字符串,不受writeUTF的65535字节限制
+	 * 
+	 * @param str
+	 * @return
+	 */
+	public ArrayByte writeUTF8(CharSequence str) {
+		final int len = getUTF8ByteLength(str);
+		writeVarInt(len);
+		ensureCapacity(len);
+		final int size = str.length();
+		for (int i = 0; i < size; i++) {
+			int c1 = str.charAt(i);
+			int c2;
+			if (c1 < 128) {
+				_buffer[_position++] = (byte) c1;
+			} else if (c1 < 2048) {
+				_buffer[_position++] = (byte) (c1 >> 6 | 192);
+				_buffer[_position++] = (byte) (c1 & 63 | 128);
+			} else if ((c1 & 0xFC00) == 0xD800 && i + 1 < size && ((c2 = str.charAt(i + 1)) & 0xFC00) == 0xDC00) {
+				c1 = 0x10000 + ((c1 & 0x03FF) << 10) + (c2 & 0x03FF);
+				++i;
+				_buffer[_position++] = (byte) (c1 >> 18 | 240);
+				_buffer[_position++] = (byte) (c1 >> 12 & 63 | 128);
+				_buffer[_position++] = (byte) (c1 >> 6 & 63 | 128);
+				_buffer[_position++] = (byte) (c1 & 63 | 128);
+			} else {
+				_buffer[_position++] = (byte) (c1 >> 12 | 224);
+				_buffer[_position++] = (byte) (c1 >> 6 & 63 | 128);
+				_buffer[_position++] = (byte) (c1 & 63 | 128);
+			}
+		}
+		return this;
+	}
+
 	public int capacity() {
 		return _buffer.length;
 	}
@@ -387,6 +387,7 @@ public final class GLUtils {
 	}
 
 	public static void bindTexture(GL20 gl, LTexture tex2d) {
+		tex2d.touch();
 		if (!tex2d.isLoaded()) {
 			tex2d.loadTexture();
 		}
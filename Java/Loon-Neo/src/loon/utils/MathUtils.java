@@ -1554,6 +1554,15 @@ public final class MathUtils {
 		return b;
 	}
 
+	/**
+	 * 重置全局随机数种子(用于回放校验等需要确定性结果的场合)
+	 *
+	 * @param seed
+	 */
+	public static void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
 	public static boolean nextBoolean() {
 		return randomBoolean();
 	}
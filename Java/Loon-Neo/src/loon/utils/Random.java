@@ -75,6 +75,16 @@ public final class Random {
 
 	public Random(long seed) {
 		_mt = new LongArray(N);
+		setSeed(seed);
+	}
+
+	/**
+	 * 重置随机数种子,相同种子将产生相同的随机序列
+	 * 
+	 * @param seed
+	 * @return
+	 */
+	public Random setSeed(long seed) {
 		if (seed != 0) {
 			_mt.set(0, scrambleSeed(seed));
 		} else {
@@ -85,6 +95,7 @@ public final class Random {
 			_mt.set(i, (((F * ((s & 0xffff0000) >>> 16)) << 16) + F * (s & 0xffff) + i) >>> 0);
 		}
 		_index = N;
+		return this;
 	}
 
 	private void update() {
@@ -0,0 +1,830 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils;
+
+/**
+ * 纯Java实现的DEFLATE(RFC1951)及ZLIB(RFC1950)压缩器,不依赖java.util.zip,可以在GWT与TeaVM环境下使用.
+ *
+ * 使用哈希链查找LZ77匹配(较高压缩等级下采用延迟匹配),每个块按实际符号频率生成动态哈夫曼编码,并与固定编码及直接存储比较后取最小者.
+ * 非最后一段数据会以对齐的空存储块结束,因此可以把数据分为互不依赖的若干段分别压缩(如多线程),再按顺序直接拼接输出.
+ */
+public final class ZLibDeflate {
+
+	public final static int NO_COMPRESSION = 0;
+
+	public final static int BEST_SPEED = 1;
+
+	public final static int DEFAULT_COMPRESSION = 6;
+
+	public final static int BEST_COMPRESSION = 9;
+
+	private final static int WINDOW_SIZE = 1 << 15;
+
+	private final static int WINDOW_MASK = WINDOW_SIZE - 1;
+
+	private final static int HASH_BITS = 15;
+
+	private final static int HASH_SIZE = 1 << HASH_BITS;
+
+	private final static int MIN_MATCH = 3;
+
+	private final static int MAX_MATCH = 258;
+
+	private final static int TOO_FAR = 4096;
+
+	private final static int BLOCK_SYMBOLS = 1 << 14;
+
+	private final static int MAX_STORED = 65535;
+
+	private final static int LITERAL_CODES = 286;
+
+	private final static int DISTANCE_CODES = 30;
+
+	private final static int LENGTH_CODES = 19;
+
+	// good_length, max_lazy, nice_length, max_chain
+	private final static int[][] LEVEL_CONFIG = { { 0, 0, 0, 0 }, { 4, 4, 8, 4 }, { 4, 5, 16, 8 }, { 4, 6, 32, 32 },
+			{ 4, 4, 16, 16 }, { 8, 16, 32, 32 }, { 8, 16, 128, 128 }, { 8, 32, 128, 256 }, { 32, 128, 258, 1024 },
+			{ 32, 258, 258, 4096 } };
+
+	final static int[] LENGTH_BASE = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67,
+			83, 99, 115, 131, 163, 195, 227, 258 };
+
+	final static int[] LENGTH_EXTRA = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5,
+			5, 5, 0 };
+
+	final static int[] DIST_BASE = { 1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769,
+			1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577 };
+
+	final static int[] DIST_EXTRA = { 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11,
+			11, 12, 12, 13, 13 };
+
+	final static int[] CODE_LENGTH_ORDER = { 16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15 };
+
+	// 长度3-258对应的长度码(257-285)
+	private final static int[] LENGTH_CODE = new int[MAX_MATCH + 1];
+
+	// 距离1-256直接查表,更远的距离以(dist-1)>>7查表
+	private final static int[] DIST_CODE = new int[512];
+
+	private final static int[] FIXED_LITERAL_LENGTHS = new int[288];
+
+	private final static int[] FIXED_DISTANCE_LENGTHS = new int[DISTANCE_CODES];
+
+	private final static int[] FIXED_LITERAL_CODES = new int[288];
+
+	private final static int[] FIXED_DISTANCE_CODES = new int[DISTANCE_CODES];
+
+	static {
+		for (int code = 0; code < LENGTH_BASE.length; code++) {
+			final int end = code + 1 < LENGTH_BASE.length ? LENGTH_BASE[code + 1] : MAX_MATCH + 1;
+			for (int len = LENGTH_BASE[code]; len < end; len++) {
+				LENGTH_CODE[len] = 257 + code;
+			}
+		}
+		LENGTH_CODE[MAX_MATCH] = 285;
+		for (int code = 0; code < DIST_BASE.length; code++) {
+			final int end = code + 1 < DIST_BASE.length ? DIST_BASE[code + 1] : WINDOW_SIZE + 1;
+			for (int dist = DIST_BASE[code]; dist < end; dist++) {
+				if (dist <= 256) {
+					DIST_CODE[dist - 1] = code;
+				} else {
+					DIST_CODE[256 + ((dist - 1) >> 7)] = code;
+				}
+			}
+		}
+		for (int i = 0; i < 288; i++) {
+			FIXED_LITERAL_LENGTHS[i] = i < 144 ? 8 : (i < 256 ? 9 : (i < 280 ? 7 : 8));
+		}
+		for (int i = 0; i < DISTANCE_CODES; i++) {
+			FIXED_DISTANCE_LENGTHS[i] = 5;
+		}
+		makeCodes(FIXED_LITERAL_LENGTHS, 288, FIXED_LITERAL_CODES);
+		makeCodes(FIXED_DISTANCE_LENGTHS, DISTANCE_CODES, FIXED_DISTANCE_CODES);
+	}
+
+	/**
+	 * 以默认压缩等级生成ZLIB格式数据
+	 *
+	 * @param raw
+	 * @return
+	 */
+	public static byte[] compress(byte[] raw) {
+		return compress(raw, DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * 以指定压缩等级(0-9)生成ZLIB格式数据
+	 *
+	 * @param raw
+	 * @param level
+	 * @return
+	 */
+	public static byte[] compress(byte[] raw, int level) {
+		final ZLibDeflate deflate = new ZLibDeflate(level);
+		final ArrayByte out = new ArrayByte(raw.length / 4 + 64);
+		out.setOrder(ArrayByte.BIG_ENDIAN);
+		writeHeader(out, level);
+		deflate.deflate(raw, 0, raw.length, true, out);
+		out.writeInt(adler32(1, raw, 0, raw.length));
+		return out.getBytes();
+	}
+
+	/**
+	 * 写入两字节的ZLIB头
+	 *
+	 * @param out
+	 * @param level
+	 */
+	public static void writeHeader(ArrayByte out, int level) {
+		final int cmf = 0x78;
+		int flevel;
+		if (level <= BEST_SPEED) {
+			flevel = 0;
+		} else if (level < DEFAULT_COMPRESSION) {
+			flevel = 1;
+		} else if (level == DEFAULT_COMPRESSION) {
+			flevel = 2;
+		} else {
+			flevel = 3;
+		}
+		int flg = flevel << 6;
+		flg += 31 - ((cmf << 8) + flg) % 31;
+		out.writeByte(cmf);
+		out.writeByte(flg);
+	}
+
+	public static int adler32(int adler, byte[] buf, int off, int len) {
+		int s1 = adler & 0xFFFF;
+		int s2 = (adler >>> 16) & 0xFFFF;
+		for (; len > 0;) {
+			// 3800为保证s2不超出int范围的最大批量
+			final int n = len < 3800 ? len : 3800;
+			len -= n;
+			for (int end = off + n; off < end; off++) {
+				s1 += buf[off] & 0xFF;
+				s2 += s1;
+			}
+			s1 %= 65521;
+			s2 %= 65521;
+		}
+		return (s2 << 16) | s1;
+	}
+
+	/**
+	 * 合并两段连续数据的adler32值
+	 *
+	 * @param adler1 前一段的adler32
+	 * @param adler2 后一段的adler32
+	 * @param len2   后一段的长度
+	 * @return
+	 */
+	public static int adler32Combine(int adler1, int adler2, long len2) {
+		final long base = 65521L;
+		final long rem = len2 % base;
+		long sum1 = adler1 & 0xFFFFL;
+		long sum2 = (rem * sum1) % base;
+		sum1 += (adler2 & 0xFFFFL) + base - 1;
+		sum2 += ((adler1 >>> 16) & 0xFFFFL) + ((adler2 >>> 16) & 0xFFFFL) + base - rem;
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum1 >= base) {
+			sum1 -= base;
+		}
+		if (sum2 >= (base << 1)) {
+			sum2 -= (base << 1);
+		}
+		if (sum2 >= base) {
+			sum2 -= base;
+		}
+		return (int) (sum1 | (sum2 << 16));
+	}
+
+	private int _level;
+
+	private int _goodLength, _maxLazy, _niceLength, _maxChain;
+
+	private final int[] _head = new int[HASH_SIZE];
+
+	private final int[] _prev = new int[WINDOW_SIZE];
+
+	private final int[] _symLitLen = new int[BLOCK_SYMBOLS];
+
+	private final int[] _symDist = new int[BLOCK_SYMBOLS];
+
+	private int _symCount;
+
+	private final int[] _litFreq = new int[LITERAL_CODES];
+
+	private final int[] _distFreq = new int[DISTANCE_CODES];
+
+	private final int[] _litLens = new int[LITERAL_CODES];
+
+	private final int[] _distLens = new int[DISTANCE_CODES];
+
+	private final int[] _litCodes = new int[LITERAL_CODES];
+
+	private final int[] _distCodes = new int[DISTANCE_CODES];
+
+	private final int[] _clFreq = new int[LENGTH_CODES];
+
+	private final int[] _clLens = new int[LENGTH_CODES];
+
+	private final int[] _clCodes = new int[LENGTH_CODES];
+
+	private final int[] _clSymbols = new int[LITERAL_CODES + DISTANCE_CODES];
+
+	private final int[] _clExtra = new int[LITERAL_CODES + DISTANCE_CODES];
+
+	private int _clCount;
+
+	// huffman构建用临时数组
+	private final int[] _tmpSymbols = new int[LITERAL_CODES];
+
+	private final int[] _tmpWeights = new int[LITERAL_CODES * 2];
+
+	private final int[] _tmpParents = new int[LITERAL_CODES * 2];
+
+	private final int[] _tmpFreq = new int[LITERAL_CODES + DISTANCE_CODES];
+
+	private byte[] _src;
+
+	private int _blockStart;
+
+	private int _blockBytes;
+
+	private ArrayByte _out;
+
+	private int _bitBuf;
+
+	private int _bitCount;
+
+	public ZLibDeflate() {
+		this(DEFAULT_COMPRESSION);
+	}
+
+	public ZLibDeflate(int level) {
+		setLevel(level);
+	}
+
+	public ZLibDeflate setLevel(int level) {
+		this._level = MathUtils.clamp(level, NO_COMPRESSION, BEST_COMPRESSION);
+		final int[] config = LEVEL_CONFIG[_level];
+		this._goodLength = config[0];
+		this._maxLazy = config[1];
+		this._niceLength = config[2];
+		this._maxChain = config[3];
+		return this;
+	}
+
+	public int getLevel() {
+		return _level;
+	}
+
+	/**
+	 * 压缩src中[off,off+len)的数据为原始DEFLATE流写入out.
+	 *
+	 * 本次压缩不引用此前的数据,last为false时以对齐的空存储块结束,下一段压缩结果可直接接在其后.
+	 *
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @param last 是否为整个DEFLATE流的最后一段
+	 * @param out
+	 * @return
+	 */
+	public ArrayByte deflate(byte[] src, int off, int len, boolean last, ArrayByte out) {
+		this._src = src;
+		this._out = out;
+		this._bitBuf = 0;
+		this._bitCount = 0;
+		this._blockStart = off;
+		this._blockBytes = 0;
+		this._symCount = 0;
+		clearFreq();
+		if (_level == NO_COMPRESSION || len == 0) {
+			writeStored(off, len, last);
+		} else {
+			for (int i = 0; i < HASH_SIZE; i++) {
+				_head[i] = -1;
+			}
+			if (_level < 4) {
+				deflateFast(off, off + len);
+			} else {
+				deflateLazy(off, off + len);
+			}
+			flushBlock(last);
+		}
+		if (!last) {
+			// 空的存储块,使输出字节对齐
+			writeBits(0, 3);
+			alignByte();
+			out.writeByte(0);
+			out.writeByte(0);
+			out.writeByte(0xFF);
+			out.writeByte(0xFF);
+		} else {
+			alignByte();
+		}
+		this._src = null;
+		this._out = null;
+		return out;
+	}
+
+	private int hash(int p) {
+		final byte[] src = _src;
+		final int v = ((src[p] & 0xFF) << 16) | ((src[p + 1] & 0xFF) << 8) | (src[p + 2] & 0xFF);
+		return (v * 0x9E3779B1) >>> (32 - HASH_BITS);
+	}
+
+	private int insert(int p) {
+		final int h = hash(p);
+		final int cand = _head[h];
+		_prev[p & WINDOW_MASK] = cand;
+		_head[h] = p;
+		return cand;
+	}
+
+	private int _matchDist;
+
+	private int longestMatch(int p, int cand, int prevLen, int start, int end) {
+		final byte[] src = _src;
+		int chain = _maxChain;
+		if (prevLen >= _goodLength) {
+			chain >>= 2;
+		}
+		final int limit = MathUtils.max(start, p - WINDOW_SIZE + 1);
+		final int maxLen = MathUtils.min(MAX_MATCH, end - p);
+		final int nice = MathUtils.min(_niceLength, maxLen);
+		int best = prevLen;
+		int bestDist = 0;
+		for (; cand >= limit && chain-- > 0;) {
+			if (src[cand + best] == src[p + best] && src[cand] == src[p] && src[cand + 1] == src[p + 1]) {
+				int len = 2;
+				for (; len < maxLen && src[cand + len] == src[p + len];) {
+					len++;
+				}
+				if (len > best) {
+					best = len;
+					bestDist = p - cand;
+					if (len >= nice) {
+						break;
+					}
+				}
+			}
+			final int next = _prev[cand & WINDOW_MASK];
+			if (next >= cand) {
+				break;
+			}
+			cand = next;
+		}
+		_matchDist = bestDist;
+		return bestDist == 0 ? prevLen : best;
+	}
+
+	private void deflateFast(int start, int end) {
+		final int hashEnd = end - MIN_MATCH;
+		int p = start;
+		for (; p < end;) {
+			int len = 0;
+			if (p <= hashEnd) {
+				final int cand = insert(p);
+				if (cand >= 0) {
+					len = longestMatch(p, cand, MIN_MATCH - 1, start, end);
+				}
+			}
+			if (len >= MIN_MATCH) {
+				emitMatch(len, _matchDist);
+				final int stop = p + len;
+				if (len <= _maxLazy) {
+					for (int q = p + 1; q < stop && q <= hashEnd; q++) {
+						insert(q);
+					}
+				}
+				p = stop;
+			} else {
+				emitLiteral(_src[p] & 0xFF);
+				p++;
+			}
+		}
+	}
+
+	private void deflateLazy(int start, int end) {
+		final int hashEnd = end - MIN_MATCH;
+		int prevLen = MIN_MATCH - 1;
+		int prevDist = 0;
+		boolean matchAvailable = false;
+		int p = start;
+		for (; p < end;) {
+			int curLen = MIN_MATCH - 1;
+			int curDist = 0;
+			if (p <= hashEnd) {
+				final int cand = insert(p);
+				if (cand >= 0 && prevLen < _maxLazy) {
+					curLen = longestMatch(p, cand, MIN_MATCH - 1, start, end);
+					curDist = _matchDist;
+					if (curLen == MIN_MATCH && curDist > TOO_FAR) {
+						curLen = MIN_MATCH - 1;
+					}
+				}
+			}
+			if (prevLen >= MIN_MATCH && curLen <= prevLen) {
+				emitMatch(prevLen, prevDist);
+				final int stop = p - 1 + prevLen;
+				for (int q = p + 1; q < stop && q <= hashEnd; q++) {
+					insert(q);
+				}
+				p = stop;
+				matchAvailable = false;
+				prevLen = MIN_MATCH - 1;
+			} else if (matchAvailable) {
+				emitLiteral(_src[p - 1] & 0xFF);
+				prevLen = curLen;
+				prevDist = curDist;
+				p++;
+			} else {
+				matchAvailable = true;
+				prevLen = curLen;
+				prevDist = curDist;
+				p++;
+			}
+		}
+		if (matchAvailable) {
+			emitLiteral(_src[p - 1] & 0xFF);
+		}
+	}
+
+	private void emitLiteral(int b) {
+		_symLitLen[_symCount] = b;
+		_symDist[_symCount] = 0;
+		_symCount++;
+		_litFreq[b]++;
+		_blockBytes++;
+		if (_symCount == BLOCK_SYMBOLS) {
+			flushBlock(false);
+		}
+	}
+
+	private void emitMatch(int len, int dist) {
+		_symLitLen[_symCount] = len;
+		_symDist[_symCount] = dist;
+		_symCount++;
+		_litFreq[LENGTH_CODE[len]]++;
+		_distFreq[distCode(dist)]++;
+		_blockBytes += len;
+		if (_symCount == BLOCK_SYMBOLS) {
+			flushBlock(false);
+		}
+	}
+
+	private static int distCode(int dist) {
+		return dist <= 256 ? DIST_CODE[dist - 1] : DIST_CODE[256 + ((dist - 1) >> 7)];
+	}
+
+	private void clearFreq() {
+		for (int i = 0; i < LITERAL_CODES; i++) {
+			_litFreq[i] = 0;
+		}
+		for (int i = 0; i < DISTANCE_CODES; i++) {
+			_distFreq[i] = 0;
+		}
+	}
+
+	private void flushBlock(boolean last) {
+		_litFreq[256]++;
+		buildLengths(_litFreq, LITERAL_CODES, 15, _litLens);
+		buildLengths(_distFreq, DISTANCE_CODES, 15, _distLens);
+		int hlit = LITERAL_CODES;
+		for (; hlit > 257 && _litLens[hlit - 1] == 0;) {
+			hlit--;
+		}
+		int hdist = DISTANCE_CODES;
+		for (; hdist > 1 && _distLens[hdist - 1] == 0;) {
+			hdist--;
+		}
+		buildCodeLengthSymbols(hlit, hdist);
+		buildLengths(_clFreq, LENGTH_CODES, 7, _clLens);
+		int hclen = LENGTH_CODES;
+		for (; hclen > 4 && _clLens[CODE_LENGTH_ORDER[hclen - 1]] == 0;) {
+			hclen--;
+		}
+		long extraBits = 0;
+		long dynamicBits = 3 + 5 + 5 + 4 + 3 * hclen;
+		long fixedBits = 3;
+		for (int i = 0; i < _clCount; i++) {
+			final int sym = _clSymbols[i];
+			dynamicBits += _clLens[sym] + (sym == 16 ? 2 : (sym == 17 ? 3 : (sym == 18 ? 7 : 0)));
+		}
+		for (int i = 0; i < LITERAL_CODES; i++) {
+			final int f = _litFreq[i];
+			if (f != 0) {
+				dynamicBits += (long) f * _litLens[i];
+				fixedBits += (long) f * FIXED_LITERAL_LENGTHS[i];
+				if (i > 256) {
+					extraBits += (long) f * LENGTH_EXTRA[i - 257];
+				}
+			}
+		}
+		for (int i = 0; i < DISTANCE_CODES; i++) {
+			final int f = _distFreq[i];
+			if (f != 0) {
+				dynamicBits += (long) f * _distLens[i];
+				fixedBits += (long) f * FIXED_DISTANCE_LENGTHS[i];
+				extraBits += (long) f * DIST_EXTRA[i];
+			}
+		}
+		dynamicBits += extraBits;
+		fixedBits += extraBits;
+		final int pieces = MathUtils.max(1, (_blockBytes + MAX_STORED - 1) / MAX_STORED);
+		final long storedBits = 7 + pieces * (3 + 7 + 32L) + 8L * _blockBytes;
+		if (storedBits <= dynamicBits && storedBits <= fixedBits) {
+			writeStored(_blockStart, _blockBytes, last);
+		} else if (fixedBits <= dynamicBits) {
+			writeBits(last ? 1 : 0, 1);
+			writeBits(1, 2);
+			writeSymbols(FIXED_LITERAL_CODES, FIXED_LITERAL_LENGTHS, FIXED_DISTANCE_CODES, FIXED_DISTANCE_LENGTHS);
+		} else {
+			makeCodes(_litLens, LITERAL_CODES, _litCodes);
+			makeCodes(_distLens, DISTANCE_CODES, _distCodes);
+			makeCodes(_clLens, LENGTH_CODES, _clCodes);
+			writeBits(last ? 1 : 0, 1);
+			writeBits(2, 2);
+			writeBits(hlit - 257, 5);
+			writeBits(hdist - 1, 5);
+			writeBits(hclen - 4, 4);
+			for (int i = 0; i < hclen; i++) {
+				writeBits(_clLens[CODE_LENGTH_ORDER[i]], 3);
+			}
+			for (int i = 0; i < _clCount; i++) {
+				final int sym = _clSymbols[i];
+				writeBits(_clCodes[sym], _clLens[sym]);
+				if (sym == 16) {
+					writeBits(_clExtra[i], 2);
+				} else if (sym == 17) {
+					writeBits(_clExtra[i], 3);
+				} else if (sym == 18) {
+					writeBits(_clExtra[i], 7);
+				}
+			}
+			writeSymbols(_litCodes, _litLens, _distCodes, _distLens);
+		}
+		_blockStart += _blockBytes;
+		_blockBytes = 0;
+		_symCount = 0;
+		clearFreq();
+	}
+
+	private void writeSymbols(int[] litCodes, int[] litLens, int[] distCodes, int[] distLens) {
+		final int[] symLitLen = _symLitLen;
+		final int[] symDist = _symDist;
+		for (int i = 0, n = _symCount; i < n; i++) {
+			final int dist = symDist[i];
+			if (dist == 0) {
+				final int lit = symLitLen[i];
+				writeBits(litCodes[lit], litLens[lit]);
+			} else {
+				final int len = symLitLen[i];
+				final int lc = LENGTH_CODE[len];
+				writeBits(litCodes[lc], litLens[lc]);
+				final int lExtra = LENGTH_EXTRA[lc - 257];
+				if (lExtra > 0) {
+					writeBits(len - LENGTH_BASE[lc - 257], lExtra);
+				}
+				final int dc = distCode(dist);
+				writeBits(distCodes[dc], distLens[dc]);
+				final int dExtra = DIST_EXTRA[dc];
+				if (dExtra > 0) {
+					writeBits(dist - DIST_BASE[dc], dExtra);
+				}
+			}
+		}
+		writeBits(litCodes[256], litLens[256]);
+	}
+
+	private void writeStored(int off, int len, boolean last) {
+		final ArrayByte out = _out;
+		do {
+			final int n = MathUtils.min(len, MAX_STORED);
+			len -= n;
+			writeBits((last && len == 0) ? 1 : 0, 3);
+			alignByte();
+			out.writeByte(n & 0xFF);
+			out.writeByte((n >> 8) & 0xFF);
+			out.writeByte(~n & 0xFF);
+			out.writeByte((~n >> 8) & 0xFF);
+			out.write(_src, off, n);
+			off += n;
+		} while (len > 0);
+	}
+
+	/**
+	 * 生成code length序列(含16/17/18游程码)
+	 */
+	private void buildCodeLengthSymbols(int hlit, int hdist) {
+		final int total = hlit + hdist;
+		final int[] lens = _tmpFreq;
+		for (int i = 0; i < hlit; i++) {
+			lens[i] = _litLens[i];
+		}
+		for (int i = 0; i < hdist; i++) {
+			lens[hlit + i] = _distLens[i];
+		}
+		for (int i = 0; i < LENGTH_CODES; i++) {
+			_clFreq[i] = 0;
+		}
+		_clCount = 0;
+		for (int i = 0; i < total;) {
+			final int len = lens[i];
+			int run = 1;
+			for (; i + run < total && lens[i + run] == len;) {
+				run++;
+			}
+			i += run;
+			if (len == 0) {
+				for (; run >= 11;) {
+					final int n = MathUtils.min(run, 138);
+					addCodeLengthSymbol(18, n - 11);
+					run -= n;
+				}
+				if (run >= 3) {
+					addCodeLengthSymbol(17, run - 3);
+					run = 0;
+				}
+			} else {
+				addCodeLengthSymbol(len, 0);
+				run--;
+				for (; run >= 3;) {
+					final int n = MathUtils.min(run, 6);
+					addCodeLengthSymbol(16, n - 3);
+					run -= n;
+				}
+			}
+			for (; run > 0; run--) {
+				addCodeLengthSymbol(len, 0);
+			}
+		}
+	}
+
+	private void addCodeLengthSymbol(int sym, int extra) {
+		_clSymbols[_clCount] = sym;
+		_clExtra[_clCount] = extra;
+		_clCount++;
+		_clFreq[sym]++;
+	}
+
+	/**
+	 * 计算限长哈夫曼编码长度,超出限制时把频率减半后重建
+	 */
+	private void buildLengths(int[] freq, int n, int maxBits, int[] lengths) {
+		final int[] f = _tmpFreq;
+		int used = 0;
+		for (int i = 0; i < n; i++) {
+			f[i] = freq[i];
+			lengths[i] = 0;
+			if (f[i] != 0) {
+				used++;
+			}
+		}
+		// 保证至少两个编码,避免部分解码器拒绝只有一个编码的树
+		for (int i = 0; used < 2 && i < n; i++) {
+			if (f[i] == 0) {
+				f[i] = 1;
+				used++;
+			}
+		}
+		for (;;) {
+			if (huffman(f, n, lengths) <= maxBits) {
+				return;
+			}
+			for (int i = 0; i < n; i++) {
+				if (f[i] != 0) {
+					f[i] = (f[i] + 1) >> 1;
+				}
+			}
+		}
+	}
+
+	private int huffman(int[] freq, int n, int[] lengths) {
+		final int[] symbols = _tmpSymbols;
+		final int[] weights = _tmpWeights;
+		final int[] parents = _tmpParents;
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			if (freq[i] != 0) {
+				// 按频率插入排序
+				int j = m++;
+				for (; j > 0 && freq[symbols[j - 1]] > freq[i]; j--) {
+					symbols[j] = symbols[j - 1];
+				}
+				symbols[j] = i;
+			}
+		}
+		for (int i = 0; i < m; i++) {
+			weights[i] = freq[symbols[i]];
+		}
+		// 叶节点与内部节点两个有序队列合并
+		int leaf = 0, inner = m, next = m;
+		for (; next < 2 * m - 1; next++) {
+			int a, b;
+			if (leaf < m && (inner >= next || weights[leaf] <= weights[inner])) {
+				a = leaf++;
+			} else {
+				a = inner++;
+			}
+			if (leaf < m && (inner >= next || weights[leaf] <= weights[inner])) {
+				b = leaf++;
+			} else {
+				b = inner++;
+			}
+			weights[next] = weights[a] + weights[b];
+			parents[a] = next;
+			parents[b] = next;
+		}
+		final int root = 2 * m - 2;
+		parents[root] = 0;
+		// 复用weights保存深度
+		weights[root] = 0;
+		int maxLen = 0;
+		for (int i = root - 1; i >= 0; i--) {
+			weights[i] = weights[parents[i]] + 1;
+		}
+		for (int i = 0; i < m; i++) {
+			final int len = weights[i];
+			lengths[symbols[i]] = len;
+			if (len > maxLen) {
+				maxLen = len;
+			}
+		}
+		return maxLen;
+	}
+
+	/**
+	 * 由编码长度生成规范哈夫曼编码(已按位反转,可直接低位在前写出)
+	 */
+	static void makeCodes(int[] lengths, int n, int[] codes) {
+		final int[] count = new int[16];
+		for (int i = 0; i < n; i++) {
+			count[lengths[i]]++;
+		}
+		count[0] = 0;
+		final int[] next = new int[16];
+		int code = 0;
+		for (int bits = 1; bits < 16; bits++) {
+			code = (code + count[bits - 1]) << 1;
+			next[bits] = code;
+		}
+		for (int i = 0; i < n; i++) {
+			final int len = lengths[i];
+			if (len != 0) {
+				codes[i] = reverse(next[len]++, len);
+			}
+		}
+	}
+
+	static int reverse(int code, int len) {
+		int result = 0;
+		for (int i = 0; i < len; i++) {
+			result = (result << 1) | (code & 1);
+			code >>>= 1;
+		}
+		return result;
+	}
+
+	private void writeBits(int value, int bits) {
+		_bitBuf |= value << _bitCount;
+		_bitCount += bits;
+		for (; _bitCount >= 8;) {
+			_out.writeByte(_bitBuf & 0xFF);
+			_bitBuf >>>= 8;
+			_bitCount -= 8;
+		}
+	}
+
+	private void alignByte() {
+		if (_bitCount > 0) {
+			_out.writeByte(_bitBuf & 0xFF);
+		}
+		_bitBuf = 0;
+		_bitCount = 0;
+	}
+
+}
@@ -0,0 +1,546 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils;
+
+import loon.LSysException;
+
+/**
+ * 纯Java实现的流式DEFLATE(RFC1951)及ZLIB(RFC1950)解压器,不依赖java.util.zip.
+ *
+ * 压缩数据通过Input按需读取,解压结果按调用者需要的长度逐段输出,内部只保留32K的滑动窗口,不需要一次性持有全部数据.
+ */
+public final class ZLibInflate {
+
+	/**
+	 * 压缩数据来源
+	 */
+	public static interface Input {
+
+		/**
+		 * 读取最多len字节到buf,没有更多数据时返回-1
+		 */
+		int read(byte[] buf, int off, int len);
+
+	}
+
+	private static class ArrayInput implements Input {
+
+		private final byte[] _data;
+
+		private int _pos;
+
+		private final int _end;
+
+		ArrayInput(byte[] data, int off, int len) {
+			this._data = data;
+			this._pos = off;
+			this._end = off + len;
+		}
+
+		@Override
+		public int read(byte[] buf, int off, int len) {
+			if (_pos >= _end) {
+				return -1;
+			}
+			final int n = MathUtils.min(len, _end - _pos);
+			System.arraycopy(_data, _pos, buf, off, n);
+			_pos += n;
+			return n;
+		}
+	}
+
+	private final static int WINDOW_SIZE = 1 << 15;
+
+	private final static int WINDOW_MASK = WINDOW_SIZE - 1;
+
+	private final static int STATE_ZLIB_HEADER = 0;
+
+	private final static int STATE_BLOCK_HEADER = 1;
+
+	private final static int STATE_STORED = 2;
+
+	private final static int STATE_HUFFMAN = 3;
+
+	private final static int STATE_COPY = 4;
+
+	private final static int STATE_DONE = 5;
+
+	private static int[] FIXED_LITERAL_TABLE;
+
+	private static int FIXED_LITERAL_BITS;
+
+	private static int[] FIXED_DISTANCE_TABLE;
+
+	private static int FIXED_DISTANCE_BITS;
+
+	/**
+	 * 解压完整的ZLIB数据
+	 *
+	 * @param data
+	 * @return
+	 */
+	public static byte[] decompress(byte[] data) {
+		final ZLibInflate inflate = new ZLibInflate(data, 0, data.length, true);
+		final ArrayByte out = new ArrayByte(MathUtils.max(64, data.length * 3));
+		final byte[] buffer = new byte[8192];
+		for (int n; (n = inflate.inflate(buffer, 0, buffer.length)) > 0;) {
+			out.write(buffer, 0, n);
+		}
+		return out.getBytes();
+	}
+
+	private final Input _input;
+
+	private final byte[] _inBuffer = new byte[4096];
+
+	private int _inPos;
+
+	private int _inLength;
+
+	private boolean _inEnd;
+
+	private int _bitBuf;
+
+	private int _bitCount;
+
+	private final byte[] _window = new byte[WINDOW_SIZE];
+
+	private int _windowPos;
+
+	private final boolean _zlib;
+
+	private int _state;
+
+	private boolean _lastBlock;
+
+	private int _storedRemaining;
+
+	private int _copyLength;
+
+	private int _copyDistance;
+
+	private int[] _literalTable;
+
+	private int _literalBits;
+
+	private int[] _distanceTable;
+
+	private int _distanceBits;
+
+	private int[] _dynamicLiteral;
+
+	private int[] _dynamicDistance;
+
+	private long _totalOut;
+
+	public ZLibInflate(byte[] data) {
+		this(data, 0, data.length, true);
+	}
+
+	public ZLibInflate(byte[] data, int off, int len, boolean zlib) {
+		this(new ArrayInput(data, off, len), zlib);
+	}
+
+	/**
+	 * @param input 压缩数据来源
+	 * @param zlib  为true时数据带有ZLIB头与校验,否则为原始DEFLATE流
+	 */
+	public ZLibInflate(Input input, boolean zlib) {
+		this._input = input;
+		this._zlib = zlib;
+		this._state = zlib ? STATE_ZLIB_HEADER : STATE_BLOCK_HEADER;
+	}
+
+	public boolean isFinished() {
+		return _state == STATE_DONE;
+	}
+
+	public long getTotalOut() {
+		return _totalOut;
+	}
+
+	/**
+	 * 解压最多len字节到out,返回实际写入的字节数,数据结束时返回-1
+	 *
+	 * @param out
+	 * @param off
+	 * @param len
+	 * @return
+	 */
+	public int inflate(byte[] out, int off, int len) {
+		final int start = off;
+		final int end = off + len;
+		final byte[] window = _window;
+		for (; off < end;) {
+			switch (_state) {
+			case STATE_ZLIB_HEADER:
+				readZLibHeader();
+				_state = STATE_BLOCK_HEADER;
+				break;
+			case STATE_BLOCK_HEADER:
+				if (_lastBlock) {
+					finish();
+					break;
+				}
+				readBlockHeader();
+				break;
+			case STATE_STORED: {
+				int n = MathUtils.min(_storedRemaining, end - off);
+				for (int i = 0; i < n; i++) {
+					final byte b = (byte) readByteAligned();
+					out[off++] = b;
+					window[_windowPos] = b;
+					_windowPos = (_windowPos + 1) & WINDOW_MASK;
+				}
+				_storedRemaining -= n;
+				if (_storedRemaining == 0) {
+					_state = STATE_BLOCK_HEADER;
+				}
+				break;
+			}
+			case STATE_HUFFMAN: {
+				for (; off < end;) {
+					final int sym = decode(_literalTable, _literalBits);
+					if (sym < 256) {
+						final byte b = (byte) sym;
+						out[off++] = b;
+						window[_windowPos] = b;
+						_windowPos = (_windowPos + 1) & WINDOW_MASK;
+					} else if (sym == 256) {
+						_state = STATE_BLOCK_HEADER;
+						break;
+					} else {
+						final int lc = sym - 257;
+						if (lc >= ZLibDeflate.LENGTH_BASE.length) {
+							throw new LSysException("Invalid deflate length code " + sym);
+						}
+						_copyLength = ZLibDeflate.LENGTH_BASE[lc] + readBits(ZLibDeflate.LENGTH_EXTRA[lc]);
+						final int dc = decode(_distanceTable, _distanceBits);
+						if (dc >= ZLibDeflate.DIST_BASE.length) {
+							throw new LSysException("Invalid deflate distance code " + dc);
+						}
+						_copyDistance = ZLibDeflate.DIST_BASE[dc] + readBits(ZLibDeflate.DIST_EXTRA[dc]);
+						if (_copyDistance > _totalOut + (off - start)) {
+							throw new LSysException("Invalid deflate distance " + _copyDistance);
+						}
+						_state = STATE_COPY;
+						break;
+					}
+				}
+				break;
+			}
+			case STATE_COPY: {
+				final int n = MathUtils.min(_copyLength, end - off);
+				int from = (_windowPos - _copyDistance) & WINDOW_MASK;
+				for (int i = 0; i < n; i++) {
+					final byte b = window[from];
+					from = (from + 1) & WINDOW_MASK;
+					out[off++] = b;
+					window[_windowPos] = b;
+					_windowPos = (_windowPos + 1) & WINDOW_MASK;
+				}
+				_copyLength -= n;
+				if (_copyLength == 0) {
+					_state = STATE_HUFFMAN;
+				}
+				break;
+			}
+			default:
+				final int count = off - start;
+				_totalOut += count;
+				return count == 0 ? -1 : count;
+			}
+		}
+		final int count = off - start;
+		_totalOut += count;
+		return count;
+	}
+
+	/**
+	 * 读满len字节,数据不足时抛出异常
+	 *
+	 * @param out
+	 * @param off
+	 * @param len
+	 */
+	public void inflateFully(byte[] out, int off, int len) {
+		for (; len > 0;) {
+			final int n = inflate(out, off, len);
+			if (n < 0) {
+				throw new LSysException("Unexpected end of deflate data");
+			}
+			off += n;
+			len -= n;
+		}
+	}
+
+	private void readZLibHeader() {
+		final int cmf = readBits(8);
+		final int flg = readBits(8);
+		if ((cmf & 0x0F) != 8 || ((cmf << 8) + flg) % 31 != 0) {
+			throw new LSysException("Invalid zlib header");
+		}
+		if ((flg & 0x20) != 0) {
+			throw new LSysException("Preset zlib dictionary is not supported");
+		}
+	}
+
+	private void finish() {
+		if (_zlib) {
+			alignByte();
+			// adler32校验,此处只跳过
+			for (int i = 0; i < 4; i++) {
+				if (_bitCount >= 8) {
+					readBits(8);
+				} else if (nextByte() < 0) {
+					break;
+				}
+			}
+		}
+		_state = STATE_DONE;
+	}
+
+	private void readBlockHeader() {
+		_lastBlock = readBits(1) == 1;
+		final int type = readBits(2);
+		switch (type) {
+		case 0:
+			alignByte();
+			final int len = readByteAligned() | (readByteAligned() << 8);
+			final int nlen = readByteAligned() | (readByteAligned() << 8);
+			if ((len ^ 0xFFFF) != nlen) {
+				throw new LSysException("Invalid stored block length");
+			}
+			_storedRemaining = len;
+			_state = len == 0 ? STATE_BLOCK_HEADER : STATE_STORED;
+			break;
+		case 1:
+			if (FIXED_LITERAL_TABLE == null) {
+				makeFixedTables();
+			}
+			_literalTable = FIXED_LITERAL_TABLE;
+			_literalBits = FIXED_LITERAL_BITS;
+			_distanceTable = FIXED_DISTANCE_TABLE;
+			_distanceBits = FIXED_DISTANCE_BITS;
+			_state = STATE_HUFFMAN;
+			break;
+		case 2:
+			readDynamicTables();
+			_state = STATE_HUFFMAN;
+			break;
+		default:
+			throw new LSysException("Invalid deflate block type");
+		}
+	}
+
+	private synchronized static void makeFixedTables() {
+		if (FIXED_LITERAL_TABLE != null) {
+			return;
+		}
+		final int[] lit = new int[288];
+		for (int i = 0; i < 288; i++) {
+			lit[i] = i < 144 ? 8 : (i < 256 ? 9 : (i < 280 ? 7 : 8));
+		}
+		final int[] dist = new int[30];
+		for (int i = 0; i < 30; i++) {
+			dist[i] = 5;
+		}
+		FIXED_DISTANCE_BITS = 5;
+		FIXED_DISTANCE_TABLE = buildTable(dist, 30, 5, null);
+		FIXED_LITERAL_BITS = 9;
+		FIXED_LITERAL_TABLE = buildTable(lit, 288, 9, null);
+	}
+
+	private void readDynamicTables() {
+		final int hlit = readBits(5) + 257;
+		final int hdist = readBits(5) + 1;
+		final int hclen = readBits(4) + 4;
+		final int[] clLens = new int[19];
+		for (int i = 0; i < hclen; i++) {
+			clLens[ZLibDeflate.CODE_LENGTH_ORDER[i]] = readBits(3);
+		}
+		final int clBits = maxLength(clLens, 19);
+		if (clBits == 0) {
+			throw new LSysException("Invalid code length codes");
+		}
+		final int[] clTable = buildTable(clLens, 19, clBits, null);
+		final int[] lens = new int[hlit + hdist];
+		for (int i = 0; i < hlit + hdist;) {
+			final int sym = decode(clTable, clBits);
+			if (sym < 16) {
+				lens[i++] = sym;
+				continue;
+			}
+			int repeat, value = 0;
+			if (sym == 16) {
+				if (i == 0) {
+					throw new LSysException("Invalid code length repeat");
+				}
+				value = lens[i - 1];
+				repeat = 3 + readBits(2);
+			} else if (sym == 17) {
+				repeat = 3 + readBits(3);
+			} else {
+				repeat = 11 + readBits(7);
+			}
+			if (i + repeat > hlit + hdist) {
+				throw new LSysException("Invalid code length repeat");
+			}
+			for (; repeat-- > 0;) {
+				lens[i++] = value;
+			}
+		}
+		if (lens[256] == 0) {
+			throw new LSysException("Missing end-of-block code");
+		}
+		final int[] litLens = new int[hlit];
+		System.arraycopy(lens, 0, litLens, 0, hlit);
+		final int[] distLens = new int[hdist];
+		System.arraycopy(lens, hlit, distLens, 0, hdist);
+		_literalBits = maxLength(litLens, hlit);
+		_dynamicLiteral = buildTable(litLens, hlit, _literalBits, _dynamicLiteral);
+		_literalTable = _dynamicLiteral;
+		_distanceBits = MathUtils.max(1, maxLength(distLens, hdist));
+		_dynamicDistance = buildTable(distLens, hdist, _distanceBits, _dynamicDistance);
+		_distanceTable = _dynamicDistance;
+	}
+
+	private static int maxLength(int[] lens, int n) {
+		int max = 0;
+		for (int i = 0; i < n; i++) {
+			if (lens[i] > max) {
+				max = lens[i];
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * 建立单级查找表,表项为(symbol << 4 | length),未使用的表项为0
+	 */
+	private static int[] buildTable(int[] lens, int n, int bits, int[] table) {
+		final int size = 1 << bits;
+		if (table == null || table.length < size) {
+			table = new int[size];
+		} else {
+			for (int i = 0; i < size; i++) {
+				table[i] = 0;
+			}
+		}
+		final int[] count = new int[16];
+		for (int i = 0; i < n; i++) {
+			count[lens[i]]++;
+		}
+		count[0] = 0;
+		final int[] next = new int[16];
+		int code = 0;
+		for (int b = 1; b < 16; b++) {
+			code = (code + count[b - 1]) << 1;
+			next[b] = code;
+		}
+		for (int sym = 0; sym < n; sym++) {
+			final int len = lens[sym];
+			if (len == 0) {
+				continue;
+			}
+			final int reversed = ZLibDeflate.reverse(next[len]++, len);
+			if (reversed >= size) {
+				throw new LSysException("Invalid huffman code lengths");
+			}
+			final int entry = (sym << 4) | len;
+			for (int i = reversed; i < size; i += 1 << len) {
+				table[i] = entry;
+			}
+		}
+		return table;
+	}
+
+	private int decode(int[] table, int bits) {
+		for (; _bitCount < bits;) {
+			final int b = nextByte();
+			if (b < 0) {
+				break;
+			}
+			_bitBuf |= b << _bitCount;
+			_bitCount += 8;
+		}
+		final int entry = table[_bitBuf & ((1 << bits) - 1)];
+		final int len = entry & 0xF;
+		if (len == 0 || len > _bitCount) {
+			throw new LSysException("Invalid huffman code in deflate data");
+		}
+		_bitBuf >>>= len;
+		_bitCount -= len;
+		return entry >>> 4;
+	}
+
+	private int readBits(int n) {
+		if (n == 0) {
+			return 0;
+		}
+		for (; _bitCount < n;) {
+			final int b = nextByte();
+			if (b < 0) {
+				throw new LSysException("Unexpected end of deflate data");
+			}
+			_bitBuf |= b << _bitCount;
+			_bitCount += 8;
+		}
+		final int v = _bitBuf & ((1 << n) - 1);
+		_bitBuf >>>= n;
+		_bitCount -= n;
+		return v;
+	}
+
+	private void alignByte() {
+		final int drop = _bitCount & 7;
+		_bitBuf >>>= drop;
+		_bitCount -= drop;
+	}
+
+	private int readByteAligned() {
+		if (_bitCount >= 8) {
+			return readBits(8);
+		}
+		final int b = nextByte();
+		if (b < 0) {
+			throw new LSysException("Unexpected end of deflate data");
+		}
+		return b;
+	}
+
+	private int nextByte() {
+		if (_inPos >= _inLength) {
+			if (_inEnd) {
+				return -1;
+			}
+			final int n = _input.read(_inBuffer, 0, _inBuffer.length);
+			if (n <= 0) {
+				_inEnd = true;
+				return -1;
+			}
+			_inPos = 0;
+			_inLength = n;
+		}
+		return _inBuffer[_inPos++] & 0xFF;
+	}
+
+}
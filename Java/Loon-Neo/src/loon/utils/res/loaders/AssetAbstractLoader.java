@@ -23,6 +23,7 @@ package loon.utils.res.loaders;
 import loon.LSysException;
 import loon.LSystem;
 import loon.utils.StringUtils;
+import loon.utils.TArray;
 
 public abstract class AssetAbstractLoader<T> implements AssetLoader {
 
@@ -32,6 +33,16 @@ public abstract class AssetAbstractLoader<T> implements AssetLoader {
 
 	protected boolean _runThrowException;
 
+	protected int _priority;
+
+	protected long _byteSize = -1;
+
+	protected TArray<String> _dependencies;
+
+	private volatile boolean _prepared;
+
+	private Throwable _prepareError;
+
 	protected void set(String path, String nickname) {
 		if (StringUtils.isEmpty(path)) {
 			throw new LSysException("The path name cannot be empty !");
@@ -69,6 +80,112 @@ public abstract class AssetAbstractLoader<T> implements AssetLoader {
 		return result;
 	}
 
+	/**
+	 * 在工作线程中预先读取与解码数据,此函数不得访问图形设备,完成后由游戏线程调用loadData完成最终构建
+	 */
+	public final void prepare() {
+		if (_prepared) {
+			return;
+		}
+		try {
+			prepareData();
+		} catch (Throwable cause) {
+			_prepareError = cause;
+		} finally {
+			_prepared = true;
+		}
+	}
+
+	/**
+	 * 子类可重载此函数实现可在后台执行的读取与解码,默认不做任何处理(全部交由loadData在游戏线程完成)
+	 */
+	protected void prepareData() {
+	}
+
+	/**
+	 * 丢弃后台预处理的数据
+	 */
+	protected void resetPrepared() {
+		_prepared = false;
+		_prepareError = null;
+	}
+
+	/**
+	 * 计算文本以UTF-8编码时的字节数
+	 * 
+	 * @param text
+	 * @return
+	 */
+	protected static long textByteSize(String text) {
+		if (text == null) {
+			return -1;
+		}
+		long size = 0;
+		for (int i = 0, len = text.length(); i < len; i++) {
+			final char ch = text.charAt(i);
+			if (ch < 0x80) {
+				size += 1;
+			} else if (ch < 0x800) {
+				size += 2;
+			} else if (Character.isHighSurrogate(ch)) {
+				size += 4;
+				i++;
+			} else {
+				size += 3;
+			}
+		}
+		return size;
+	}
+
+	public boolean isPrepared() {
+		return _prepared;
+	}
+
+	public Throwable getPrepareError() {
+		return _prepareError;
+	}
+
+	/**
+	 * 声明依赖资源(需要先于当前资源加载完毕的纹理路径),也可以由prepareData在解析文件后自动声明
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public AssetAbstractLoader<T> addDependency(String path) {
+		if (StringUtils.isEmpty(path)) {
+			return this;
+		}
+		if (_dependencies == null) {
+			_dependencies = new TArray<String>();
+		}
+		if (!_dependencies.contains(path)) {
+			_dependencies.add(path);
+		}
+		return this;
+	}
+
+	public TArray<String> getDependencies() {
+		return _dependencies;
+	}
+
+	public int getPriority() {
+		return _priority;
+	}
+
+	public AssetAbstractLoader<T> setPriority(int p) {
+		this._priority = p;
+		return this;
+	}
+
+	/**
+	 * 当前资源的数据字节数,未知时返回-1
+	 * 
+	 * @return
+	 */
+	public long getByteSize() {
+		return _byteSize;
+	}
+
 	public void unload() {
 		close();
 	}
@@ -20,6 +20,7 @@
  */
 package loon.utils.res.loaders;
 
+import loon.LSystem;
 import loon.font.BMFont;
 
 public class BMFontAssetLoader extends AssetAbstractLoader<BMFont> {
@@ -38,6 +39,12 @@ public class BMFontAssetLoader extends AssetAbstractLoader<BMFont> {
 		return _font != null && !_font.isClosed();
 	}
 
+	@Override
+	protected void prepareData() {
+		// 字体页面图片作为依赖纹理先行加载,BMFont绘制时将直接命中纹理缓存
+		addDependency(_imgPath == null ? LSystem.getAllFileName(_path) + ".png" : _imgPath);
+	}
+
 	@Override
 	public void loadData() {
 		close();
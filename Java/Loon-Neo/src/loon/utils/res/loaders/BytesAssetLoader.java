@@ -27,6 +27,8 @@ public class BytesAssetLoader extends AssetAbstractLoader<ArrayByte> {
 
 	private ArrayByte _bytes;
 
+	private ArrayByte _prepareBytes;
+
 	public BytesAssetLoader(String path, String nickname) {
 		set(path, nickname);
 	}
@@ -41,10 +43,20 @@ public class BytesAssetLoader extends AssetAbstractLoader<ArrayByte> {
 		return _bytes;
 	}
 
+	@Override
+	protected void prepareData() {
+		_prepareBytes = BaseIO.loadArrayByte(_path);
+		if (_prepareBytes != null) {
+			_byteSize = _prepareBytes.length();
+		}
+	}
+
 	@Override
 	public void loadData() {
+		final ArrayByte bytes = _prepareBytes;
+		_prepareBytes = null;
 		close();
-		_bytes = BaseIO.loadArrayByte(_path);
+		_bytes = (bytes != null) ? bytes : BaseIO.loadArrayByte(_path);
 	}
 
 	@Override
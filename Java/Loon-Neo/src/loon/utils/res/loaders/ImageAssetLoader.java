@@ -27,6 +27,8 @@ public class ImageAssetLoader extends AssetAbstractLoader<Image> {
 
 	private Image _image;
 
+	private Image _prepareImage;
+
 	public ImageAssetLoader(String path, String nickname) {
 		this.set(path, nickname);
 	}
@@ -36,10 +38,20 @@ public class ImageAssetLoader extends AssetAbstractLoader<Image> {
 		return _image != null && !_image.isClosed();
 	}
 
+	@Override
+	protected void prepareData() {
+		_prepareImage = BaseIO.loadImage(_path);
+		if (_prepareImage != null) {
+			_byteSize = (long) _prepareImage.pixelWidth() * _prepareImage.pixelHeight() * 4;
+		}
+	}
+
 	@Override
 	public void loadData() {
+		final Image image = _prepareImage;
+		_prepareImage = null;
 		close();
-		_image = BaseIO.loadImage(_path);
+		_image = (image != null) ? image : BaseIO.loadImage(_path);
 	}
 
 	@Override
@@ -32,6 +32,10 @@ public class JsonAssetLoader extends AssetAbstractLoader<Json.Object> {
 
 	private String _context;
 
+	private String _prepareContext;
+
+	private Object _prepareObject;
+
 	public JsonAssetLoader(String path, String nickname) {
 		set(path, nickname);
 	}
@@ -41,14 +45,38 @@ public class JsonAssetLoader extends AssetAbstractLoader<Json.Object> {
 		return _jsonObj != null || _jsonArray != null;
 	}
 
+	@Override
+	protected void prepareData() {
+		String context = BaseIO.loadText(_path);
+		if (context == null && _path.indexOf('.') == -1) {
+			context = BaseIO.loadText(_path + ".json");
+		}
+		if (context == null) {
+			return;
+		}
+		_byteSize = textByteSize(context);
+		_prepareObject = BaseIO.loadJsonObjectContext(context);
+		_prepareContext = context;
+	}
+
 	@Override
 	public void loadData() {
+		final String context = _prepareContext;
+		final Object prepared = _prepareObject;
 		close();
+		if (context != null && prepared != null) {
+			_context = context;
+			if (prepared instanceof Json.Object) {
+				_jsonObj = (Json.Object) prepared;
+			} else {
+				_jsonArray = (Json.Array) prepared;
+			}
+			return;
+		}
 		_context = TextResource.get().loadText(_path);
 		if (_context == null && _path.indexOf('.') == -1) {
-			_context = (_path + ".json");
+			_context = TextResource.get().loadText(_path + ".json");
 		}
-		_context = TextResource.get().loadText(_context);
 		if (_context == null) {
 			return;
 		}
@@ -85,6 +113,8 @@ public class JsonAssetLoader extends AssetAbstractLoader<Json.Object> {
 	@Override
 	public void close() {
 		_context = null;
+		_prepareContext = null;
+		_prepareObject = null;
 		_jsonObj = null;
 		_jsonArray = null;
 	}
@@ -28,6 +28,8 @@ public class PixmapAssetLoader extends AssetAbstractLoader<Pixmap> {
 
 	private Pixmap _image;
 
+	private Pixmap _prepareImage;
+
 	public PixmapAssetLoader(String path, String nickname) {
 		this.set(path, nickname);
 	}
@@ -37,9 +39,25 @@ public class PixmapAssetLoader extends AssetAbstractLoader<Pixmap> {
 		return _image != null && !_image.isClosed();
 	}
 
+	@Override
+	protected void prepareData() {
+		final Image img = BaseIO.loadImage(_path);
+		if (img == null) {
+			return;
+		}
+		_prepareImage = img.getPixmap();
+		_byteSize = (long) img.pixelWidth() * img.pixelHeight() * 4;
+	}
+
 	@Override
 	public void loadData() {
+		final Pixmap pixmap = _prepareImage;
+		_prepareImage = null;
 		close();
+		if (pixmap != null) {
+			_image = pixmap;
+			return;
+		}
 		Image img = BaseIO.loadImage(_path);
 		if (img == null) {
 			return;
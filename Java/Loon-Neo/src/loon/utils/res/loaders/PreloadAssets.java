@@ -40,6 +40,8 @@ public class PreloadAssets implements LRelease {
 
 	private boolean _runThrowException;
 
+	private PreloadStreamer _streamer;
+
 	public PreloadAssets() {
 		this(false);
 	}
@@ -57,10 +59,86 @@ public class PreloadAssets implements LRelease {
 		if (!_loads.contains(loader)) {
 			loader.setRunThrowException(_runThrowException);
 			this._loads.add(loader);
+			if (_streamer != null) {
+				_streamer.add(loader);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * 是否使用流水线方式加载资源(后台线程读取与解码,游戏线程按每帧预算完成构建)
+	 * 
+	 * @param s
+	 * @return
+	 */
+	public PreloadAssets streaming(boolean s) {
+		if (s && _streamer == null) {
+			_streamer = new PreloadStreamer(this);
+			for (int i = 0; i < _loads.size; i++) {
+				_streamer.add(_loads.get(i));
+			}
+		} else if (!s && _streamer != null) {
+			_streamer.close();
+			_streamer = null;
+		}
+		return this;
+	}
+
+	public boolean isStreaming() {
+		return _streamer != null;
+	}
+
+	public PreloadStreamer getStreamer() {
+		return _streamer;
+	}
+
+	/**
+	 * 设定指定资源的加载优先级(数值越大越先加载,仅流水线方式有效)
+	 * 
+	 * @param path
+	 * @param priority
+	 * @return
+	 */
+	public PreloadAssets priority(String path, int priority) {
+		final AssetLoader loader = findLoad(path);
+		if (loader instanceof AssetAbstractLoader) {
+			((AssetAbstractLoader<?>) loader).setPriority(priority);
+		}
+		if (loader != null && _streamer != null) {
+			_streamer.setPriority(loader, priority);
+		}
+		return this;
+	}
+
+	/**
+	 * 声明资源依赖的纹理,依赖纹理未加入时会自动加入,并保证其先于该资源完成加载
+	 * 
+	 * @param path
+	 * @param texturePath
+	 * @return
+	 */
+	public PreloadAssets dependsOn(String path, String texturePath) {
+		final AssetLoader loader = findLoad(path);
+		if (loader instanceof AssetAbstractLoader) {
+			((AssetAbstractLoader<?>) loader).addDependency(texturePath);
 		}
 		return this;
 	}
 
+	private AssetLoader findLoad(String path) {
+		if (StringUtils.isEmpty(path)) {
+			return null;
+		}
+		for (int i = 0; i < _loads.size; i++) {
+			final AssetLoader loader = _loads.get(i);
+			if (loader != null && (path.equals(loader.getPath()) || path.equals(loader.getNickName()))) {
+				return loader;
+			}
+		}
+		return null;
+	}
+
 	public PreloadAssets runThrowException(boolean r) {
 		_runThrowException = r;
 		return this;
@@ -536,6 +614,9 @@ public class PreloadAssets implements LRelease {
 		if (_loads.size == 0) {
 			return false;
 		}
+		if (_streamer != null) {
+			return _streamer.update();
+		}
 		final AssetLoader loader = this._loads.first();
 		if (loader != null && loader.load()) {
 			final PreloadItem item = loader.item();
@@ -553,10 +634,24 @@ public class PreloadAssets implements LRelease {
 		return false;
 	}
 
+	void finish(AssetLoader loader, boolean loaded) {
+		if (loaded) {
+			final PreloadItem item = loader.item();
+			TArray<AssetLoader> list = _preloadMap.get(item);
+			if (list == null) {
+				list = new TArray<AssetLoader>();
+				_preloadMap.put(item, list);
+			}
+			list.add(loader);
+		}
+		_loads.removeValue(loader, true);
+	}
+
 	public boolean completed() {
 		return _loads.isEmpty();
 	}
 
+
 	public int waiting() {
 		return _loads.size;
 	}
@@ -575,6 +670,9 @@ public class PreloadAssets implements LRelease {
 			}
 		}
 		_preloadMap.clear();
+		if (_streamer != null) {
+			_streamer.close();
+		}
 	}
 
 }
@@ -55,11 +55,20 @@ public class PreloadControl implements LRelease {
 
 		@Override
 		public void run(LTimerContext time) {
-			_control.setCurrentAsset(_assets.getFirstAsset());
+			final PreloadStreamer streamer = _assets.getStreamer();
+			if (streamer == null) {
+				_control.setCurrentAsset(_assets.getFirstAsset());
+			}
 			if (!_assets.completed()) {
 				_assets.detection();
 			}
-			_control.updatePercent((_maxValue - _assets.waiting()), _maxValue);
+			if (streamer != null) {
+				// 流水线方式按字节计算进度
+				_control.setCurrentAsset(streamer.getLastLoaded());
+				_control.updatePercent(streamer.getProgress() * _maxValue, _maxValue);
+			} else {
+				_control.updatePercent((_maxValue - _assets.waiting()), _maxValue);
+			}
 			_control.preloadProgress(_control._percent);
 			if (_assets.completed()) {
 				_control.prefinish();
@@ -92,6 +101,10 @@ public class PreloadControl implements LRelease {
 
 	private long _preloadInterval;
 
+	private boolean _streaming;
+
+	private long _frameBudget = 8;
+
 	private PreloadLoader _loader;
 
 	public PreloadControl(PreloadLoader loader) {
@@ -117,6 +130,10 @@ public class PreloadControl implements LRelease {
 			this._preAssets = null;
 		}
 		this._preAssets = new PreloadAssets(_runThrowException);
+		if (_streaming) {
+			this._preAssets.streaming(true);
+			this._preAssets.getStreamer().setFrameBudget(_frameBudget);
+		}
 		this._assetsLoading = true;
 		this._assetsFailure = false;
 	}
@@ -130,6 +147,39 @@ public class PreloadControl implements LRelease {
 		return _runThrowException;
 	}
 
+	/**
+	 * 使用流水线方式加载(后台线程读取解码,游戏线程按每帧时间预算完成纹理上传等工作)
+	 * 
+	 * @param s
+	 * @return
+	 */
+	public PreloadControl setStreaming(boolean s) {
+		this._streaming = s;
+		return this;
+	}
+
+	public boolean isStreaming() {
+		return _streaming;
+	}
+
+	/**
+	 * 流水线方式下每帧用于完成资源构建的时间(毫秒)
+	 * 
+	 * @param millis
+	 * @return
+	 */
+	public PreloadControl setFrameBudget(long millis) {
+		this._frameBudget = millis;
+		if (_preAssets != null && _preAssets.isStreaming()) {
+			_preAssets.getStreamer().setFrameBudget(millis);
+		}
+		return this;
+	}
+
+	public long getFrameBudget() {
+		return _frameBudget;
+	}
+
 	public PreloadControl loadAssets(String... others) {
 		if (others == null || others.length == 0) {
 			return this;
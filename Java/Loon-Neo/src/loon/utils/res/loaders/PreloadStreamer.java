@@ -0,0 +1,463 @@
+/**
+ * Copyright 2008 - 2023 The Loon Game Engine Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @project loon
+ * @author cping
+ * @email：javachenpeng@yahoo.com
+ * @version 0.5
+ */
+package loon.utils.res.loaders;
+
+import loon.LRelease;
+import loon.LSysException;
+import loon.LSystem;
+import loon.utils.MathUtils;
+import loon.utils.ObjectMap;
+import loon.utils.StringUtils;
+import loon.utils.TArray;
+import loon.utils.TimeUtils;
+
+/**
+ * 流水线式资源加载器,文件读取与解码(图片,json,xml,字体与纹理包描述等)在工作线程中并行执行,
+ * 游戏线程只在每帧的时间预算内完成最终构建(纹理上传等),并按优先级与依赖关系(纹理包->纹理,BMFont->页面图片)排序.
+ *
+ * 工作线程由后端通过setExecutor注入,未注入时使用LSystem.invokeAsync(Asyn),平台不支持异步时在游戏线程中按预算逐个执行.
+ */
+public class PreloadStreamer implements LRelease {
+
+	/**
+	 * 执行后台预处理任务的接口,由支持多线程的平台实现
+	 */
+	public static interface Executor {
+
+		void execute(Runnable task);
+
+	}
+
+	private static Executor _executor;
+
+	public static void setExecutor(Executor executor) {
+		_executor = executor;
+	}
+
+	public static Executor getExecutor() {
+		return _executor;
+	}
+
+	private final static int PENDING = 0;
+
+	private final static int PREPARING = 1;
+
+	private final static int READY = 2;
+
+	private final static int DONE = 3;
+
+	private static class Entry {
+
+		final AssetLoader loader;
+
+		TArray<Entry> depends;
+
+		int priority;
+
+		int state;
+
+		long byteSize = -1;
+
+		Entry(AssetLoader loader, int priority) {
+			this.loader = loader;
+			this.priority = priority;
+		}
+
+		boolean isPrepared() {
+			if (loader instanceof AssetAbstractLoader) {
+				return ((AssetAbstractLoader<?>) loader).isPrepared();
+			}
+			return true;
+		}
+
+		void prepare() {
+			if (loader instanceof AssetAbstractLoader) {
+				((AssetAbstractLoader<?>) loader).prepare();
+			}
+		}
+
+		boolean dependsReady() {
+			if (depends == null) {
+				return true;
+			}
+			for (int i = 0; i < depends.size; i++) {
+				if (depends.get(i).state != DONE) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class PrepareTask implements Runnable {
+
+		private final Entry _entry;
+
+		PrepareTask(Entry e) {
+			this._entry = e;
+		}
+
+		@Override
+		public void run() {
+			_entry.prepare();
+		}
+	}
+
+	private final PreloadAssets _assets;
+
+	private final ObjectMap<AssetLoader, Entry> _entries = new ObjectMap<AssetLoader, Entry>();
+
+	private final ObjectMap<String, Entry> _textures = new ObjectMap<String, Entry>();
+
+	private final TArray<Entry> _pending = new TArray<Entry>();
+
+	private final TArray<Entry> _preparing = new TArray<Entry>();
+
+	private final TArray<Entry> _ready = new TArray<Entry>();
+
+	private long _frameBudget = 8;
+
+	private int _maxInFlight = 32;
+
+	private int _totalCount, _doneCount, _failedCount, _knownCount, _doneUnknownCount;
+
+	private long _knownBytes, _loadedKnownBytes;
+
+	private AssetLoader _lastLoaded;
+
+	private float _progress;
+
+	public PreloadStreamer(PreloadAssets assets) {
+		this._assets = assets;
+	}
+
+	/**
+	 * 加入一个待加载资源
+	 *
+	 * @param loader
+	 * @return
+	 */
+	public PreloadStreamer add(AssetLoader loader) {
+		final int priority = (loader instanceof AssetAbstractLoader) ? ((AssetAbstractLoader<?>) loader).getPriority()
+				: 0;
+		return add(loader, priority);
+	}
+
+	public PreloadStreamer add(AssetLoader loader, int priority) {
+		if (loader == null || _entries.containsKey(loader)) {
+			return this;
+		}
+		final Entry entry = new Entry(loader, priority);
+		_entries.put(loader, entry);
+		if (loader instanceof TextureAssetLoader) {
+			_textures.put(toKey(loader.getPath()), entry);
+		}
+		_totalCount++;
+		insert(_pending, entry);
+		return this;
+	}
+
+	/**
+	 * 修改资源优先级(数值越大越先加载)
+	 *
+	 * @param loader
+	 * @param priority
+	 * @return
+	 */
+	public PreloadStreamer setPriority(AssetLoader loader, int priority) {
+		final Entry entry = _entries.get(loader);
+		if (entry != null) {
+			raise(entry, priority, true);
+		}
+		return this;
+	}
+
+	/**
+	 * 每帧推进一次,返回本帧是否有资源完成加载
+	 *
+	 * @return
+	 */
+	public boolean update() {
+		final boolean async = (_executor != null) || LSystem.isAsyncSupported();
+		if (async) {
+			submit();
+		}
+		collect();
+		final long start = TimeUtils.millis();
+		boolean result = false;
+		for (;;) {
+			Entry entry = nextReady();
+			if (entry == null && !async) {
+				// 不支持异步时,在游戏线程中按预算执行预处理
+				if (_pending.size > 0) {
+					final Entry e = _pending.removeIndex(0);
+					e.state = PREPARING;
+					e.prepare();
+					_preparing.add(e);
+					collect();
+					entry = nextReady();
+				}
+			}
+			if (entry == null) {
+				break;
+			}
+			finish(entry);
+			result = true;
+			if (TimeUtils.millis() - start >= _frameBudget) {
+				break;
+			}
+		}
+		return result;
+	}
+
+	private void submit() {
+		for (; _pending.size > 0 && _preparing.size < _maxInFlight;) {
+			final Entry entry = _pending.removeIndex(0);
+			entry.state = PREPARING;
+			_preparing.add(entry);
+			if (entry.loader instanceof AssetAbstractLoader) {
+				final PrepareTask task = new PrepareTask(entry);
+				if (_executor != null) {
+					_executor.execute(task);
+				} else {
+					LSystem.invokeAsync(task);
+				}
+			}
+		}
+	}
+
+	private void collect() {
+		for (int i = _preparing.size - 1; i > -1; i--) {
+			final Entry entry = _preparing.get(i);
+			if (entry.isPrepared()) {
+				_preparing.removeIndex(i);
+				entry.state = READY;
+				if (entry.loader instanceof AssetAbstractLoader) {
+					final AssetAbstractLoader<?> loader = (AssetAbstractLoader<?>) entry.loader;
+					entry.byteSize = loader.getByteSize();
+					final TArray<String> depends = loader.getDependencies();
+					if (depends != null) {
+						linkDepends(entry, depends);
+					}
+				}
+				if (entry.byteSize >= 0) {
+					_knownCount++;
+					_knownBytes += entry.byteSize;
+				}
+				insert(_ready, entry);
+			}
+		}
+	}
+
+	private Entry nextReady() {
+		for (int i = 0; i < _ready.size; i++) {
+			final Entry entry = _ready.get(i);
+			if (entry.dependsReady()) {
+				_ready.removeIndex(i);
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private void finish(Entry entry) {
+		boolean loaded = false;
+		try {
+			loaded = entry.loader.load();
+		} catch (LSysException ex) {
+			if (_assets.isRunThrowException()) {
+				throw ex;
+			}
+			LSystem.error("Preload [" + entry.loader.getPath() + "] failed", ex);
+		} catch (Throwable cause) {
+			if (_assets.isRunThrowException()) {
+				throw new LSysException("Preload [" + entry.loader.getPath() + "] failed", cause);
+			}
+			LSystem.error("Preload [" + entry.loader.getPath() + "] failed", cause);
+		}
+		entry.state = DONE;
+		_doneCount++;
+		if (!loaded) {
+			_failedCount++;
+		}
+		if (entry.byteSize >= 0) {
+			_loadedKnownBytes += entry.byteSize;
+		} else {
+			_doneUnknownCount++;
+		}
+		_lastLoaded = entry.loader;
+		_assets.finish(entry.loader, loaded);
+	}
+
+	private void linkDepends(Entry entry, TArray<String> depends) {
+		for (int i = 0; i < depends.size; i++) {
+			final String path = depends.get(i);
+			if (StringUtils.isEmpty(path)) {
+				continue;
+			}
+			Entry dep = _textures.get(toKey(path));
+			if (dep == null) {
+				// 未声明的依赖纹理自动加入加载队列
+				_assets.texture(path);
+				dep = _textures.get(toKey(path));
+			}
+			if (dep == null || dep == entry) {
+				continue;
+			}
+			if (entry.depends == null) {
+				entry.depends = new TArray<Entry>();
+			}
+			if (!entry.depends.contains(dep)) {
+				entry.depends.add(dep);
+			}
+			// 依赖资源至少继承使用者的优先级
+			raise(dep, entry.priority + 1, false);
+		}
+	}
+
+	private void raise(Entry entry, int priority, boolean force) {
+		if (!force && entry.priority >= priority) {
+			return;
+		}
+		entry.priority = priority;
+		if (entry.state == PENDING && _pending.removeValue(entry, true)) {
+			insert(_pending, entry);
+		} else if (entry.state == READY && _ready.removeValue(entry, true)) {
+			insert(_ready, entry);
+		}
+	}
+
+	private static void insert(TArray<Entry> list, Entry entry) {
+		int idx = list.size;
+		for (; idx > 0 && list.get(idx - 1).priority < entry.priority;) {
+			idx--;
+		}
+		list.insert(idx, entry);
+	}
+
+	private static String toKey(String path) {
+		return path == null ? LSystem.EMPTY : path.trim().toLowerCase();
+	}
+
+	public boolean completed() {
+		return _doneCount >= _totalCount;
+	}
+
+	/**
+	 * 已完成加载的字节数(未知大小的资源以已知资源的平均大小估算)
+	 *
+	 * @return
+	 */
+	public long getLoadedBytes() {
+		return _loadedKnownBytes + _doneUnknownCount * averageBytes();
+	}
+
+	/**
+	 * 全部资源的字节数(全部资源完成预处理后为准确值)
+	 *
+	 * @return
+	 */
+	public long getTotalBytes() {
+		return _knownBytes + (_totalCount - _knownCount) * averageBytes();
+	}
+
+	private long averageBytes() {
+		return _knownCount == 0 ? 0 : _knownBytes / _knownCount;
+	}
+
+	/**
+	 * 按字节计算的加载进度(总字节数为估算值时,进度不会回退)
+	 *
+	 * @return
+	 */
+	public float getProgress() {
+		if (_totalCount == 0 || completed()) {
+			return 1f;
+		}
+		final long total = getTotalBytes();
+		final float progress = (total <= 0) ? (float) _doneCount / _totalCount
+				: MathUtils.clamp((float) getLoadedBytes() / total, 0f, 1f);
+		if (progress > _progress) {
+			_progress = progress;
+		}
+		return _progress;
+	}
+
+	public int getTotalCount() {
+		return _totalCount;
+	}
+
+	public int getLoadedCount() {
+		return _doneCount;
+	}
+
+	public int getFailedCount() {
+		return _failedCount;
+	}
+
+	public AssetLoader getLastLoaded() {
+		return _lastLoaded;
+	}
+
+	public long getFrameBudget() {
+		return _frameBudget;
+	}
+
+	/**
+	 * 设定游戏线程每帧用于完成资源构建的时间预算(毫秒,每帧至少完成一个资源)
+	 *
+	 * @param millis
+	 * @return
+	 */
+	public PreloadStreamer setFrameBudget(long millis) {
+		this._frameBudget = MathUtils.max(0L, millis);
+		return this;
+	}
+
+	public int getMaxInFlight() {
+		return _maxInFlight;
+	}
+
+	/**
+	 * 设定同时在后台预处理的资源上限,用以限制解码数据占用的内存
+	 *
+	 * @param max
+	 * @return
+	 */
+	public PreloadStreamer setMaxInFlight(int max) {
+		this._maxInFlight = MathUtils.max(1, max);
+		return this;
+	}
+
+	@Override
+	public void close() {
+		_entries.clear();
+		_textures.clear();
+		_pending.clear();
+		_preparing.clear();
+		_ready.clear();
+		_totalCount = _doneCount = _failedCount = _knownCount = _doneUnknownCount = 0;
+		_knownBytes = _loadedKnownBytes = 0;
+		_progress = 0f;
+		_lastLoaded = null;
+	}
+
+}
@@ -20,6 +20,7 @@
  */
 package loon.utils.res.loaders;
 
+import loon.BaseIO;
 import loon.utils.StringUtils;
 import loon.utils.res.TextResource;
 
@@ -27,6 +28,8 @@ public class TextAssetLoader extends AssetAbstractLoader<String> {
 
 	private String _context;
 
+	private String _prepareText;
+
 	public TextAssetLoader(String path, String nickname) {
 		this.set(path, nickname);
 	}
@@ -41,10 +44,19 @@ public class TextAssetLoader extends AssetAbstractLoader<String> {
 		return _context != null;
 	}
 
+	@Override
+	protected void prepareData() {
+		_prepareText = BaseIO.loadText(_path);
+		_byteSize = textByteSize(_prepareText);
+	}
+
 	@Override
 	public void loadData() {
+		final String text = _prepareText;
 		close();
-		if (!StringUtils.isEmpty(_path) && StringUtils.isNullOrEmpty(_context)) {
+		if (text != null) {
+			this._context = text;
+		} else if (!StringUtils.isEmpty(_path) && StringUtils.isNullOrEmpty(_context)) {
 			this._context = TextResource.get().loadText(_path);
 		}
 	}
@@ -62,6 +74,7 @@ public class TextAssetLoader extends AssetAbstractLoader<String> {
 	@Override
 	public void close() {
 		_context = null;
+		_prepareText = null;
 	}
 
 }
@@ -20,8 +20,10 @@
  */
 package loon.utils.res.loaders;
 
+import loon.BaseIO;
 import loon.LTexture;
 import loon.LTextures;
+import loon.canvas.Image;
 
 public class TextureAssetLoader extends AssetAbstractLoader<LTexture> {
 
@@ -29,6 +31,8 @@ public class TextureAssetLoader extends AssetAbstractLoader<LTexture> {
 
 	private LTexture.Format _textureFormat;
 
+	private Image _prepareImage;
+
 	public TextureAssetLoader(String path, String nickname, LTexture.Format f) {
 		this.set(path, nickname);
 		this._textureFormat = f;
@@ -39,10 +43,25 @@ public class TextureAssetLoader extends AssetAbstractLoader<LTexture> {
 		return _texture != null && !_texture.isClosed() && _texture.isLoaded();
 	}
 
+	@Override
+	protected void prepareData() {
+		_prepareImage = BaseIO.loadImage(_path);
+		if (_prepareImage != null) {
+			_byteSize = (long) _prepareImage.pixelWidth() * _prepareImage.pixelHeight() * 4;
+		}
+	}
+
 	@Override
 	public void loadData() {
+		final Image image = _prepareImage;
+		_prepareImage = null;
 		close();
-		_texture = LTextures.loadTexture(_path, _textureFormat);
+		if (image != null) {
+			// 图片已在后台解码,游戏线程只执行纹理上传
+			_texture = LTextures.loadTexture(_path, image, _textureFormat);
+		} else {
+			_texture = LTextures.loadTexture(_path, _textureFormat);
+		}
 		_texture.loadTexture();
 	}
 
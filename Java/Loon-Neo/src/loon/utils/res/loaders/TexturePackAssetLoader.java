@@ -20,8 +20,14 @@
  */
 package loon.utils.res.loaders;
 
+import loon.BaseIO;
+import loon.LSystem;
 import loon.LTexture;
 import loon.opengl.LTexturePack;
+import loon.utils.PathUtils;
+import loon.utils.StringUtils;
+import loon.utils.parse.StrTokenizer;
+import loon.utils.xml.XMLParser;
 
 public class TexturePackAssetLoader extends AssetAbstractLoader<LTexturePack> {
 
@@ -39,6 +45,26 @@ public class TexturePackAssetLoader extends AssetAbstractLoader<LTexturePack> {
 		return _pack != null && !_pack.closed();
 	}
 
+	@Override
+	protected void prepareData() {
+		final String context = BaseIO.loadText(_path);
+		if (context == null) {
+			return;
+		}
+		_byteSize = textByteSize(context);
+		// 解析打包文件得到其使用的纹理,作为依赖先行加载
+		String imagePath = null;
+		if ("atlas".equals(PathUtils.getExtension(_path).trim().toLowerCase())) {
+			final StrTokenizer reader = new StrTokenizer(context, LSystem.NL + LSystem.BRANCH);
+			for (; reader.hasMoreTokens() && StringUtils.isEmpty(imagePath);) {
+				imagePath = reader.nextToken();
+			}
+		} else {
+			imagePath = XMLParser.loadText(context).getRoot().getAttribute("file", null);
+		}
+		addDependency(imagePath);
+	}
+
 	@Override
 	public void loadData() {
 		close();
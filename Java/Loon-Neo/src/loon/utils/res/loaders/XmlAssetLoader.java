@@ -20,6 +20,7 @@
  */
 package loon.utils.res.loaders;
 
+import loon.BaseIO;
 import loon.utils.res.TextResource;
 import loon.utils.xml.XMLDocument;
 import loon.utils.xml.XMLListener;
@@ -31,6 +32,8 @@ public class XmlAssetLoader extends AssetAbstractLoader<XMLDocument> {
 
 	private XMLDocument _xmlDoc;
 
+	private XMLDocument _prepareDoc;
+
 	public XmlAssetLoader(String path, String nickname, XMLListener listener) {
 		this.set(path, nickname);
 		this._listener = listener;
@@ -46,9 +49,29 @@ public class XmlAssetLoader extends AssetAbstractLoader<XMLDocument> {
 		return _xmlDoc != null && !_xmlDoc.isClosed();
 	}
 
+	@Override
+	protected void prepareData() {
+		// 存在监听器时,回调必须在游戏线程触发,因此只在无监听器时后台解析
+		if (_listener != null) {
+			return;
+		}
+		final String context = BaseIO.loadText(_path);
+		if (context == null) {
+			return;
+		}
+		_byteSize = textByteSize(context);
+		_prepareDoc = XMLParser.loadText(context);
+	}
+
 	@Override
 	public void loadData() {
+		final XMLDocument doc = _prepareDoc;
+		_prepareDoc = null;
 		close();
+		if (doc != null) {
+			_xmlDoc = doc;
+			return;
+		}
 		_xmlDoc = XMLParser.loadText(TextResource.get().loadText(_path), _listener);
 	}
 